@@ -137,6 +137,7 @@ import maspack.render.Viewer;
 import maspack.widgets.GuiUtils;
 import maspack.render.GL.GLViewerFrame;
 import maspack.solvers.PardisoSolver;
+import maspack.solvers.SupernodalLDLTSolver;
 import maspack.solvers.SparseSolverId;
 import maspack.util.ClassFinder;
 import maspack.util.IndentingPrintWriter;
@@ -1639,6 +1640,7 @@ public class Main implements DriverInterface, ComponentChangeListener {
          numThreads = numSolverThreads.value;
       }
       PardisoSolver.setDefaultNumThreads(numThreads);
+      SupernodalLDLTSolver.setDefaultNumThreads(numThreads);
       
       // display ill-conditioned solves
       mySimulationSettings.setShowIllConditionedSolves (
@@ -2839,7 +2841,8 @@ public class Main implements DriverInterface, ComponentChangeListener {
          "-disableHybridSolves %v #disable hybrid linear solves",
          disableHybridSolves);
       parser.addOption (
-         "-matrixSolver %s{Pardiso,Umfpack} #default matrix solver",
+         "-matrixSolver %s{Pardiso,Umfpack,SupernodalLDLT} " +
+         "#default matrix solver",
          matrixSolver);
       parser.addOption (
          "-numSolverThreads %d #number of threads to use for linear solver",
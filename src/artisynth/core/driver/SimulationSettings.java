@@ -9,6 +9,7 @@ import artisynth.core.mechmodels.MechSystemSolver.PosStabilization;
 import artisynth.core.modelbase.ModelBase;
 import maspack.properties.PropertyList;
 import maspack.solvers.PardisoSolver;
+import maspack.solvers.SupernodalLDLTSolver;
 import maspack.solvers.SparseSolverId;
 import maspack.util.EnumRange;
 import maspack.util.Range;
@@ -148,6 +149,7 @@ public class SimulationSettings extends SettingsBase {
 
    public void setNumSolverThreads (int num) {
       PardisoSolver.setDefaultNumThreads(num);
+      SupernodalLDLTSolver.setDefaultNumThreads(num);
    } 
 
    public boolean getShowIllConditionedSolves () {
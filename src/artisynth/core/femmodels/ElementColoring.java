@@ -0,0 +1,219 @@
+package artisynth.core.femmodels;
+
+import java.util.HashMap;
+
+import maspack.util.ListView;
+
+/**
+ * Partitions a list of FEM elements into colors, such that no two elements
+ * of the same color share a node. Elements of the same color can then be
+ * processed concurrently while accumulating values into their nodes (or into
+ * node neighbor blocks owned by those nodes) without any synchronization.
+ *
+ * <p>Two coloring strategies are provided. The <i>greedy</i> strategy visits
+ * the elements in list order and assigns each the smallest color not already
+ * used by an element that shares one of its nodes. The <i>ordered</i>
+ * strategy assigns each element a color one greater than the largest color of
+ * any earlier element that shares one of its nodes. This generally produces
+ * more colors, but guarantees that, for every node, the colors of its
+ * elements increase with their position in the list. Processing the colors
+ * in sequence therefore accumulates nodal values in exactly the same order
+ * as a serial loop over the elements.
+ */
+public class ElementColoring {
+
+   protected int[] myColors;        // color of each element
+   protected int[] myColorOffsets;  // start of each color in myElemIdxs
+   protected int[] myElemIdxs;      // element indices, sorted by color
+   protected boolean myOrderedP;
+
+   /**
+    * Creates a coloring for a list of elements.
+    *
+    * @param elems elements to color
+    * @param ordered if {@code true}, use the ordered strategy that preserves
+    * the serial accumulation order at every node
+    */
+   public ElementColoring (
+      ListView<? extends FemElement3dBase> elems, boolean ordered) {
+
+      int nelems = elems.size();
+      myOrderedP = ordered;
+
+      // map nodes to consecutive indices
+      HashMap<FemNode3d,Integer> nodeIdxs = new HashMap<>();
+      int[][] elemNodes = new int[nelems][];
+      for (int ei=0; ei<nelems; ei++) {
+         FemNode3d[] nodes = elems.get(ei).getNodes();
+         int[] idxs = new int[nodes.length];
+         for (int i=0; i<nodes.length; i++) {
+            Integer idx = nodeIdxs.get (nodes[i]);
+            if (idx == null) {
+               idx = nodeIdxs.size();
+               nodeIdxs.put (nodes[i], idx);
+            }
+            idxs[i] = idx;
+         }
+         elemNodes[ei] = idxs;
+      }
+      myColors = new int[nelems];
+      int ncolors;
+      if (ordered) {
+         ncolors = computeOrderedColors (elemNodes, nodeIdxs.size());
+      }
+      else {
+         ncolors = computeGreedyColors (elemNodes, nodeIdxs.size());
+      }
+
+      // bucket element indices by color, preserving list order
+      myColorOffsets = new int[ncolors+1];
+      for (int ei=0; ei<nelems; ei++) {
+         myColorOffsets[myColors[ei]+1]++;
+      }
+      for (int c=0; c<ncolors; c++) {
+         myColorOffsets[c+1] += myColorOffsets[c];
+      }
+      int[] next = new int[ncolors];
+      myElemIdxs = new int[nelems];
+      for (int ei=0; ei<nelems; ei++) {
+         int c = myColors[ei];
+         myElemIdxs[myColorOffsets[c] + next[c]++] = ei;
+      }
+   }
+
+   private int computeOrderedColors (int[][] elemNodes, int nnodes) {
+      // largest color assigned so far to an element containing each node
+      int[] nodeMax = new int[nnodes];
+      for (int i=0; i<nnodes; i++) {
+         nodeMax[i] = -1;
+      }
+      int ncolors = 0;
+      for (int ei=0; ei<elemNodes.length; ei++) {
+         int c = -1;
+         for (int ni : elemNodes[ei]) {
+            c = Math.max (c, nodeMax[ni]);
+         }
+         c++;
+         for (int ni : elemNodes[ei]) {
+            nodeMax[ni] = c;
+         }
+         myColors[ei] = c;
+         ncolors = Math.max (ncolors, c+1);
+      }
+      return ncolors;
+   }
+
+   private int computeGreedyColors (int[][] elemNodes, int nnodes) {
+      int nelems = elemNodes.length;
+      // build node-to-element adjacency in compressed row form
+      int[] nodeOffs = new int[nnodes+1];
+      for (int ei=0; ei<nelems; ei++) {
+         for (int ni : elemNodes[ei]) {
+            nodeOffs[ni+1]++;
+         }
+      }
+      for (int i=0; i<nnodes; i++) {
+         nodeOffs[i+1] += nodeOffs[i];
+      }
+      int[] nodeElems = new int[nodeOffs[nnodes]];
+      int[] cnt = new int[nnodes];
+      for (int ei=0; ei<nelems; ei++) {
+         for (int ni : elemNodes[ei]) {
+            nodeElems[nodeOffs[ni] + cnt[ni]++] = ei;
+         }
+      }
+      // mark[c] == ei indicates that color c is used by a neighbor of ei
+      int[] mark = new int[16];
+      for (int c=0; c<mark.length; c++) {
+         mark[c] = -1;
+      }
+      int ncolors = 0;
+      for (int ei=0; ei<nelems; ei++) {
+         for (int ni : elemNodes[ei]) {
+            for (int k=nodeOffs[ni]; k<nodeOffs[ni+1]; k++) {
+               int ej = nodeElems[k];
+               if (ej < ei) {
+                  mark[myColors[ej]] = ei;
+               }
+            }
+         }
+         int c = 0;
+         while (c < ncolors && mark[c] == ei) {
+            c++;
+         }
+         if (c == ncolors) {
+            ncolors++;
+            if (ncolors > mark.length) {
+               int[] newmark = new int[2*mark.length];
+               for (int k=0; k<newmark.length; k++) {
+                  newmark[k] = (k < mark.length ? mark[k] : -1);
+               }
+               mark = newmark;
+            }
+         }
+         myColors[ei] = c;
+      }
+      return ncolors;
+   }
+
+   /**
+    * Returns the number of colors.
+    *
+    * @return number of colors
+    */
+   public int numColors() {
+      return myColorOffsets.length-1;
+   }
+
+   /**
+    * Returns the number of elements that were colored.
+    *
+    * @return number of elements
+    */
+   public int numElements() {
+      return myColors.length;
+   }
+
+   /**
+    * Returns the color assigned to a specific element.
+    *
+    * @param ei index of the element in the original list
+    * @return color of the element
+    */
+   public int getColor (int ei) {
+      return myColors[ei];
+   }
+
+   /**
+    * Returns the element indices sorted by color. The indices for color
+    * {@code c} are located between {@link #getColorStart getColorStart(c)}
+    * (inclusive) and {@code getColorStart(c+1)} (exclusive), in increasing
+    * order. The returned array should not be modified.
+    *
+    * @return element indices sorted by color
+    */
+   public int[] getElementIndices() {
+      return myElemIdxs;
+   }
+
+   /**
+    * Returns the location within {@link #getElementIndices} of the first
+    * element of a given color. For {@code c == numColors()}, this returns the
+    * total number of elements.
+    *
+    * @param c color index
+    * @return start of the color within the element indices
+    */
+   public int getColorStart (int c) {
+      return myColorOffsets[c];
+   }
+
+   /**
+    * Queries whether this coloring was computed using the ordered strategy.
+    *
+    * @return {@code true} if the coloring is ordered
+    */
+   public boolean isOrdered() {
+      return myOrderedP;
+   }
+}
@@ -0,0 +1,71 @@
+package artisynth.core.femmodels;
+
+import artisynth.core.materials.LinearMaterial;
+import artisynth.core.materials.NeoHookeanMaterial;
+import maspack.matrix.Vector3d;
+import maspack.util.Benchmark;
+
+/**
+ * Benchmarks for computing the stress and stiffness of hexahedral FEM beams
+ * of increasing size, using both linear and hyperelastic materials. Run with
+ * <code>-help</code> for options.
+ */
+public class FemBenchmark {
+
+   /**
+    * Creates a hex beam of length 1 with a square cross section whose
+    * resolution is one quarter that along the length, and randomly perturbs
+    * the node positions so that the elements are deformed.
+    */
+   static FemModel3d createBeam (int nx) {
+      int ny = Math.max (1, nx/4);
+      FemModel3d fem = FemFactory.createHexGrid (
+         null, 1.0, ny/(double)nx, ny/(double)nx, nx, ny, ny);
+      fem.setDensity (1000);
+      double h = 1.0/nx;
+      Vector3d del = new Vector3d();
+      for (FemNode3d n : fem.getNodes()) {
+         del.setRandom (-0.1*h, 0.1*h);
+         n.getPosition().add (del);
+      }
+      return fem;
+   }
+
+   static void addStressAndStiffness (
+      Benchmark bench, String matName, int nx) {
+
+      bench.add ("FemModel3d.updateStressAndStiffness/"+matName+"/"+nx, () -> {
+            FemModel3d fem = createBeam (nx);
+            if (matName.equals ("neohookean")) {
+               fem.setMaterial (new NeoHookeanMaterial (100000, 0.33));
+            }
+            else {
+               fem.setMaterial (new LinearMaterial (100000, 0.33));
+            }
+            return () -> {
+               fem.invalidateStressAndStiffness();
+               fem.updateStressAndStiffness();
+            };
+         });
+   }
+
+   /**
+    * Adds the benchmarks of this suite to a benchmark harness.
+    *
+    * @param bench harness to add the benchmarks to
+    */
+   public static void addBenchmarks (Benchmark bench) {
+      for (String matName : new String[] { "linear", "neohookean" }) {
+         for (int nx : new int[] { 8, 16, 32, 64 }) {
+            addStressAndStiffness (bench, matName, nx);
+         }
+      }
+   }
+
+   public static void main (String[] args) {
+      Benchmark bench = new Benchmark();
+      addBenchmarks (bench);
+      System.exit (
+         bench.runAndReport ("artisynth.core.femmodels.FemBenchmark", args));
+   }
+}
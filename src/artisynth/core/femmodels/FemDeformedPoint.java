@@ -14,6 +14,8 @@ public class FemDeformedPoint extends DeformedPointBase {
    // both of these are used for computing rest and spatial positions on demand
    protected IntegrationPoint3d myIpnt;
    protected FemElement3dBase myElem;
+   // integration data, used for caching field values
+   protected IntegrationData3d myIdat;
 
    public FemDeformedPoint() {
       super();
@@ -25,6 +27,17 @@ public class FemDeformedPoint extends DeformedPointBase {
    public Matrix3d getJ() {
       return myJ;
    }
+
+   /**
+    * Returns the integration data for the integration point this point was
+    * last set from. Fields whose values depend only on the rest position
+    * can use this to cache their values.
+    *
+    * @return integration data for this point
+    */
+   public IntegrationData3d getIntegrationData() {
+      return myIdat;
+   }
    
    public void setCoordsOnly (
       IntegrationPoint3d ipnt, IntegrationData3d idat,
@@ -40,6 +53,7 @@ public class FemDeformedPoint extends DeformedPointBase {
       myElemNum = elem.getNumber();
       myElemSubIndex = ipnt.getNumber();
       myIpnt = ipnt;
+      myIdat = idat;
       myP = 0; // assume 0 by default
 
       FemNode3d[] nodes = (FemNode3d[])elem.getNodes();
@@ -70,6 +84,7 @@ public class FemDeformedPoint extends DeformedPointBase {
       myElemNum = elem.getNumber();
       myElemSubIndex = ipnt.getNumber();
       myIpnt = ipnt;
+      myIdat = idat;
       myP = 0; // assume 0 by default
 
       FemNode3d[] nodes = (FemNode3d[])elem.getNodes();
@@ -108,6 +123,7 @@ public class FemDeformedPoint extends DeformedPointBase {
       myElemNum = elem.getNumber();
       myElemSubIndex = ipnt.getNumber();
       myIpnt = ipnt;
+      myIdat = idat;
       myP = 0; // assume 0 by default
 
       FemNode3d[] nodes = (FemNode3d[])elem.getNodes();
@@ -144,7 +160,7 @@ public class FemDeformedPoint extends DeformedPointBase {
    public Point3d getSpatialPos() {
       if (!mySpatialPosValid) {
          myIpnt.computePosition (mySpatialPos, myElem.getNodes());
-         mySpatialPosValid = false;
+         mySpatialPosValid = true;
       }
       return mySpatialPos;
    }
@@ -152,7 +168,7 @@ public class FemDeformedPoint extends DeformedPointBase {
    public Point3d getRestPos() {
       if (!myRestPosValid) {
          myIpnt.computeRestPosition (myRestPos, myElem.getNodes());
-         myRestPosValid = false;
+         myRestPosValid = true;
       }
       return myRestPos;
    }
@@ -68,6 +68,7 @@ import artisynth.core.util.IntegerToken;
 import artisynth.core.util.ScalableUnits;
 import artisynth.core.util.ScanToken;
 import artisynth.core.util.StringToken;
+import maspack.concurrency.ParallelLoop;
 import maspack.geometry.AABBTree;
 import maspack.geometry.BVFeatureQuery;
 import maspack.geometry.BVNode;
@@ -243,6 +244,18 @@ PointAttachable, ConnectableBody {
    protected static boolean DEFAULT_USE_CONSISTENT_MASS = false;
    protected boolean myUseConsistentMass = DEFAULT_USE_CONSISTENT_MASS;
 
+   protected static int DEFAULT_NUM_STRESS_THREADS = 1;
+   protected int myNumStressThreads = DEFAULT_NUM_STRESS_THREADS;
+
+   protected static boolean DEFAULT_DETERMINISTIC_STRESS = false;
+   protected boolean myDeterministicStress = DEFAULT_DETERMINISTIC_STRESS;
+
+   // thread pool, per-thread workspaces and element coloring used for
+   // multi-threaded stress and stiffness computation; created on demand
+   protected ParallelLoop myStressLoop;
+   protected StressWorkspace[] myStressWorkspaces;
+   protected ElementColoring myElementColoring;
+
    // maximum number of pressure DOFs that can occur in an element
    private static int MAX_PRESSURE_VALS = 8;
    // maximum number of nodes for elements associated with nodal
@@ -311,6 +324,14 @@ PointAttachable, ConnectableBody {
          "useConsistentMass",
          "use consistent mass matrix and gravity loadings", 
          DEFAULT_USE_CONSISTENT_MASS);
+      myProps.add (
+         "numStressThreads",
+         "number of threads used to compute element stresses and stiffnesses",
+         DEFAULT_NUM_STRESS_THREADS, "[1,inf]");
+      myProps.add (
+         "deterministicStress",
+         "make multi-threaded stress and stiffness identical to serial results",
+         DEFAULT_DETERMINISTIC_STRESS);
    }
 
    public PropertyList getAllPropertyInfo() {
@@ -593,6 +614,69 @@ PointAttachable, ConnectableBody {
       }
    }
 
+   /**
+    * Queries the number of threads used to compute the stress and stiffness
+    * of the volumetric elements. See {@link #setNumStressThreads}.
+    *
+    * @return number of stress computation threads
+    */
+   public int getNumStressThreads() {
+      return myNumStressThreads;
+   }
+
+   /**
+    * Sets the number of threads used to compute the stress and stiffness of
+    * the volumetric elements. The default value of 1 computes these
+    * serially. For larger values, the elements are partitioned into colors
+    * such that no two elements of the same color share a node, and the
+    * elements of each color are then processed concurrently, with each
+    * thread accumulating directly into the forces and stiffness blocks of
+    * its elements' nodes. Shell elements are always processed serially.
+    *
+    * <p>All FEM materials used by the model, including augmenting and
+    * muscle materials, must be safe to evaluate concurrently when more than
+    * one thread is used.
+    *
+    * @param num number of stress computation threads
+    */
+   public void setNumStressThreads (int num) {
+      myNumStressThreads = Math.max (1, num);
+      if (myStressLoop != null) {
+         myStressLoop.setNumThreads (myNumStressThreads);
+      }
+   }
+
+   /**
+    * Queries whether multi-threaded stress and stiffness computation is
+    * made bitwise identical to the serial computation. See {@link
+    * #setDeterministicStress}.
+    *
+    * @return {@code true} if deterministic stress computation is enabled
+    */
+   public boolean getDeterministicStress() {
+      return myDeterministicStress;
+   }
+
+   /**
+    * Sets whether multi-threaded stress and stiffness computation is made
+    * bitwise identical to the serial computation. Multi-threaded results are
+    * always reproducible from step to step, independently of the number of
+    * threads, but by default nodal contributions are summed in a different
+    * order than in the serial case, causing round-off level differences.
+    * Enabling this property colors the elements so that the serial summation
+    * order is preserved, at the expense of fewer elements being available
+    * for concurrent processing. It has no effect when {@link
+    * #getNumStressThreads} is 1.
+    *
+    * @param enable if {@code true}, enables deterministic stress computation
+    */
+   public void setDeterministicStress (boolean enable) {
+      if (enable != myDeterministicStress) {
+         myDeterministicStress = enable;
+         myElementColoring = null;
+      }
+   }
+
    protected void setDefaultValues() {
       super.setDefaultValues();
       //myDensity = DEFAULT_DENSITY;
@@ -1981,6 +2065,7 @@ PointAttachable, ConnectableBody {
       myHardIncompMethodValidP = false;
       myHardIncompConfigValidP = false;
       myAllElements = null;
+      myElementColoring = null;
       myNumTetElements = -1; // invalidates all element counts
       //myNodeNeighborsValidP = false;
    }
@@ -2594,13 +2679,24 @@ PointAttachable, ConnectableBody {
    
    protected void computePressuresAndRinv(
       FemElement3d e, IncompressibleMaterialBase imat, FemDeformedPoint dpnt) {
+      computePressuresAndRinv (e, imat, dpnt, myPressures, myRinv);
+   }
+
+   /**
+    * Computes the element pressures and inverse pressure stiffness for
+    * element-based soft incompressibility, storing the results in
+    * {@code pressures} and {@code Rinv}.
+    */
+   protected void computePressuresAndRinv(
+      FemElement3d e, IncompressibleMaterialBase imat, FemDeformedPoint dpnt,
+      VectorNd pressures, MatrixNd Rinv) {
 
       int npvals = e.numPressureVals();
 
-      myRinv.setSize(npvals, npvals);
-      myPressures.setSize(npvals);
+      Rinv.setSize(npvals, npvals);
+      pressures.setSize(npvals);
 
-      double[] pbuf = myPressures.getBuffer();
+      double[] pbuf = pressures.getBuffer();
       double restVol = e.getRestVolume();
       double K;
       if (imat.getBulkModulusField() != null) {
@@ -2613,12 +2709,12 @@ PointAttachable, ConnectableBody {
       }
       
       if (npvals > 1) {
-         myPressures.setZero();
+         pressures.setZero();
          IntegrationPoint3d[] ipnts = e.getIntegrationPoints();
          IntegrationData3d[] idata = e.getIntegrationData();
 
          if (imat.getBulkPotential() != BulkPotential.QUADRATIC) {
-            myRinv.setZero();
+            Rinv.setZero();
          }
          for (int k = 0; k < ipnts.length; k++) {
             IntegrationPoint3d pt = ipnts[k];
@@ -2634,31 +2730,31 @@ PointAttachable, ConnectableBody {
                double mod = imat.getEffectiveModulus(K, detJ);
                for (int i = 0; i < npvals; i++) {
                   for (int j = 0; j < npvals; j++) {
-                     myRinv.add(i, j, H[i] * H[j] * mod * dV);
+                     Rinv.add(i, j, H[i] * H[j] * mod * dV);
                   }
                }
             }
          }
          Matrix W = e.getPressureWeightMatrix();
-         W.mul(myPressures, myPressures);
-         myPressures.scale(1 / restVol);
+         W.mul(pressures, pressures);
+         pressures.scale(1 / restVol);
          if (imat.getBulkPotential() == BulkPotential.QUADRATIC) {
-            myRinv.set(W);
-            myRinv.scale(K/restVol);
+            Rinv.set(W);
+            Rinv.scale(K/restVol);
          }
          else {
             // optimize later
             MatrixNd Wtmp = new MatrixNd(W);
             Wtmp.scale(1.0 / restVol);
-            myRinv.mul(Wtmp);
-            myRinv.mul(Wtmp, myRinv);
+            Rinv.mul(Wtmp);
+            Rinv.mul(Wtmp, Rinv);
          }
       }
       else {
          double Jpartial = e.myVolumes[0] / e.myRestVolumes[0];
          pbuf[0] = (imat.getEffectivePressure(K, Jpartial) +
             0 * e.myLagrangePressures[0]);
-         myRinv.set(0, 0, imat.getEffectiveModulus(K, Jpartial) / restVol);
+         Rinv.set(0, 0, imat.getEffectiveModulus(K, Jpartial) / restVol);
       }
    }
    
@@ -2971,14 +3067,19 @@ PointAttachable, ConnectableBody {
 
       ArrayList<FemMaterial> amats = getAugmentingMaterials();
 
-      for (FemElement3d e : myElements) {
-         FemMaterial mat = getElementMaterial(e);
-         computeStressAndStiffness(e, mat, amats, D, softIncomp);
-         if (checkTangentStability) {
-            double s = checkMatrixStability(D);
-            if (s < mins) {
-               mins = s;
-               minE = e;
+      if (myNumStressThreads > 1 && !checkTangentStability) {
+         computeStressAndStiffnessConcurrently (amats, softIncomp);
+      }
+      else {
+         for (FemElement3d e : myElements) {
+            FemMaterial mat = getElementMaterial(e);
+            computeStressAndStiffness(e, mat, amats, D, softIncomp);
+            if (checkTangentStability) {
+               double s = checkMatrixStability(D);
+               if (s < mins) {
+                  mins = s;
+                  minE = e;
+               }
             }
          }
       }
@@ -3054,6 +3155,140 @@ PointAttachable, ConnectableBody {
       }
    }
 
+   /**
+    * Per-thread storage used when computing element stresses and stiffnesses
+    * concurrently. This replaces the temporary storage and element condition
+    * information that the serial computation keeps in the model itself.
+    */
+   protected static class StressWorkspace {
+      Matrix6d myD = new Matrix6d();
+      VectorNd myPressures = new VectorNd(MAX_PRESSURE_VALS);
+      MatrixNd myRinv = new MatrixNd();
+      Vector3d[] myNodalConstraints = new Vector3d[MAX_NODAL_INCOMP_NODES];
+      Vector3d[] myGNx = new Vector3d[0];
+
+      // element condition info. The list index of the element with minimum
+      // detJ is recorded so that ties are resolved as in the serial case.
+      double myMinDetJ;
+      FemElement3dBase myMinDetJElement;
+      int myMinDetJIdx;
+      int myNumInverted;
+      int myElemIdx; // list index of the element being processed
+
+      StressWorkspace() {
+         for (int i=0; i<MAX_NODAL_INCOMP_NODES; i++) {
+            myNodalConstraints[i] = new Vector3d();
+         }
+         clearElementConditionInfo();
+      }
+
+      void setElement (FemElement3dBase e, int idx) {
+         int numn = e.numNodes();
+         if (myGNx.length < numn) {
+            myGNx = new Vector3d[numn];
+            for (int i=0; i<numn; i++) {
+               myGNx[i] = new Vector3d();
+            }
+         }
+         myElemIdx = idx;
+      }
+
+      void clearElementConditionInfo() {
+         myMinDetJ = Double.MAX_VALUE;
+         myMinDetJElement = null;
+         myMinDetJIdx = -1;
+         myNumInverted = 0;
+      }
+
+      void checkElementCondition (
+         FemElement3dBase e, double detJ, boolean recordInversion) {
+         if (detJ < myMinDetJ ||
+             (detJ == myMinDetJ && myElemIdx < myMinDetJIdx)) {
+            myMinDetJ = detJ;
+            myMinDetJElement = e;
+            myMinDetJIdx = myElemIdx;
+         }
+         if (detJ <= 0 && recordInversion) {
+            e.setInverted(true);
+            myNumInverted++;
+         }
+      }
+   }
+
+   /**
+    * Returns a coloring of the volumetric elements in which no two elements
+    * of the same color share a node, creating it if necessary.
+    */
+   protected ElementColoring getElementColoring() {
+      if (myElementColoring == null ||
+          myElementColoring.numElements() != myElements.size()) {
+         // make sure that lazily allocated data which is shared between
+         // elements of the same type exists before elements are processed
+         // concurrently
+         for (FemElement3d e : myElements) {
+            e.getIntegrationPoints();
+            e.getWarpingPoint();
+            e.getNodalAveragingMatrix();
+            e.getPressureWeightMatrix();
+         }
+         myElementColoring =
+            new ElementColoring (myElements, myDeterministicStress);
+      }
+      return myElementColoring;
+   }
+
+   /**
+    * Computes the stress and stiffness of the volumetric elements using
+    * {@link #getNumStressThreads} threads. Colors are processed in sequence,
+    * with the elements of each color processed concurrently.
+    */
+   protected void computeStressAndStiffnessConcurrently (
+      ArrayList<FemMaterial> amats, IncompMethod softIncomp) {
+
+      ElementColoring coloring = getElementColoring();
+      if (myStressLoop == null) {
+         myStressLoop = new ParallelLoop ("FemStress", myNumStressThreads);
+      }
+      int nthreads = myStressLoop.getNumThreads();
+      if (myStressWorkspaces == null || myStressWorkspaces.length != nthreads) {
+         myStressWorkspaces = new StressWorkspace[nthreads];
+         for (int w=0; w<nthreads; w++) {
+            myStressWorkspaces[w] = new StressWorkspace();
+         }
+      }
+      StressWorkspace[] workspaces = myStressWorkspaces;
+      for (StressWorkspace ws : workspaces) {
+         ws.clearElementConditionInfo();
+      }
+      int[] elemIdxs = coloring.getElementIndices();
+      for (int c=0; c<coloring.numColors(); c++) {
+         myStressLoop.forRange (
+            coloring.getColorStart(c), coloring.getColorStart(c+1),
+            (lo, hi, w) -> {
+               StressWorkspace ws = workspaces[w];
+               for (int k=lo; k<hi; k++) {
+                  FemElement3d e = myElements.get (elemIdxs[k]);
+                  ws.setElement (e, elemIdxs[k]);
+                  computeStressAndStiffness (
+                     e, getElementMaterial(e), amats, ws.myD, softIncomp, ws);
+               }
+            });
+      }
+      // merge condition info, resolving ties by element index as in the
+      // serial computation
+      int minIdx = -1;
+      for (StressWorkspace ws : workspaces) {
+         if (ws.myMinDetJElement != null &&
+             (ws.myMinDetJ < myMinDetJ ||
+              (ws.myMinDetJ == myMinDetJ && ws.myMinDetJIdx < minIdx))) {
+            myMinDetJ = ws.myMinDetJ;
+            myMinDetJElement = ws.myMinDetJElement;
+            minIdx = ws.myMinDetJIdx;
+         }
+         myNumInverted += ws.myNumInverted;
+      }
+   }
+
    /**
     * Accumulates nodal stress and strain values for linear materials.
     */
@@ -3257,6 +3492,19 @@ PointAttachable, ConnectableBody {
    public void computeStressAndStiffness (
       FemElement3d e, FemMaterial mat, ArrayList<FemMaterial> amats, 
       Matrix6d D, IncompMethod softIncomp) {
+      computeStressAndStiffness (e, mat, amats, D, softIncomp, null);
+   }
+
+   /**
+    * Computes the stress and stiffness for a volumetric element. If {@code
+    * ws} is non-null, all temporary storage and element condition
+    * information is taken from, or recorded in, {@code ws} instead of this
+    * model, allowing elements that share no nodes to be processed
+    * concurrently.
+    */
+   protected void computeStressAndStiffness (
+      FemElement3d e, FemMaterial mat, ArrayList<FemMaterial> amats, 
+      Matrix6d D, IncompMethod softIncomp, StressWorkspace ws) {
 
       IntegrationPoint3d[] ipnts = e.getIntegrationPoints();
       IntegrationData3d[] idata = e.getIntegrationData();
@@ -3349,10 +3597,15 @@ PointAttachable, ConnectableBody {
       MatrixBlock[] constraints = null;
       SymmetricMatrix3d C = new SymmetricMatrix3d();
 
+      // temporary storage for pressures and nodal constraints
+      VectorNd pressures = (ws != null ? ws.myPressures : myPressures);
+      MatrixNd Rinv = (ws != null ? ws.myRinv : myRinv);
+      Vector3d[] nodalConstraints =
+         (ws != null ? ws.myNodalConstraints : myNodalConstraints);
+
       // initialize incompressible pressure
-      double[] pbuf = myPressures.getBuffer();
       if (softIncomp == IncompMethod.ELEMENT) {
-         computePressuresAndRinv (e, imat, dpnt);
+         computePressuresAndRinv (e, imat, dpnt, pressures, Rinv);
          if (D != null) {
             constraints = e.getIncompressConstraints();
             for (int i = 0; i < e.myNodes.length; i++) {
@@ -3360,6 +3613,7 @@ PointAttachable, ConnectableBody {
             }
          }
       }
+      double[] pbuf = pressures.getBuffer();
 
       int needsStressStrain = e.needsStressStrain();
       if (mat.isLinear()) {
@@ -3383,11 +3637,25 @@ PointAttachable, ConnectableBody {
          dpnt.setFromIntegrationPoint (pt, dt, null, e, k);
 
          double detJ = invJ.fastInvert(dpnt.getJ()); // pt.computeInverseJacobian();
-         checkElementCondition (e, detJ, !invertible);
+         if (ws != null) {
+            ws.checkElementCondition (e, detJ, !invertible);
+         }
+         else {
+            checkElementCondition (e, detJ, !invertible);
+         }
 
          // compute shape function gradient and volume fraction
          double dv = detJ * pt.getWeight();
-         Vector3d[] GNx = pt.updateShapeGradient(invJ);
+         Vector3d[] GNx;
+         if (ws != null) {
+            // integration points are shared between elements, so use
+            // workspace storage for the gradient
+            GNx = ws.myGNx;
+            pt.computeShapeGradient (invJ, GNx);
+         }
+         else {
+            GNx = pt.updateShapeGradient(invJ);
+         }
 
          // compute pressure
          double pressure = 0;
@@ -3553,16 +3821,16 @@ PointAttachable, ConnectableBody {
       if (D != null) {
          if (softIncomp == IncompMethod.NODAL && e instanceof TetElement) {
             // tet nodal incompressibility
-            ((TetElement)e).getAreaWeightedNormals(myNodalConstraints);
+            ((TetElement)e).getAreaWeightedNormals(nodalConstraints);
             for (int i = 0; i < 4; i++) {
-               myNodalConstraints[i].scale(-1 / 12.0);
+               nodalConstraints[i].scale(-1 / 12.0);
             }
 
             for (int i=0; i<e.numNodes(); ++i) {
                for (FemNodeNeighbor nbr : getNodeNeighbors(e.myNodes[i])) {
                   int j = e.getLocalNodeIndex(nbr.myNode);
                   if (j != -1) {
-                     nbr.myDivBlk.scaledAdd(1, myNodalConstraints[j]);
+                     nbr.myDivBlk.scaledAdd(1, nodalConstraints[j]);
                   }
                }
             }
@@ -3576,7 +3844,7 @@ PointAttachable, ConnectableBody {
                      int bj = e.myNodes[j].getLocalSolveIndex();
                      if (!mySolveMatrixSymmetricP || bj >= bi) {
                         e.myNbrs[i][j].addDilationalStiffness(
-                           myRinv, constraints[i], constraints[j]);
+                           Rinv, constraints[i], constraints[j]);
                      }
                   }
                }
@@ -5483,6 +5751,9 @@ PointAttachable, ConnectableBody {
       fem.myNodalIncompConstraintsAllocatedP = false;
 
       fem.myPressures = new VectorNd(MAX_PRESSURE_VALS);
+      fem.myStressLoop = null;
+      fem.myStressWorkspaces = null;
+      fem.myElementColoring = null;
       fem.myKp = new double[MAX_PRESSURE_VALS];
       fem.myNodalConstraints = new Vector3d[MAX_NODAL_INCOMP_NODES];
       for (int i = 0; i < MAX_NODAL_INCOMP_NODES; i++) {
@@ -605,11 +605,95 @@ public class FemModel3dTest extends UnitTest {
       checkNumbering (fem, /*zeroBased=*/true);
    }
 
+   private FemModel3d createStressTestModel (
+      boolean hex, FemMaterial mat, ArrayList<Vector3d> disps) {
+      FemModel3d fem;
+      if (hex) {
+         fem = FemFactory.createHexGrid (null, 1.0, 0.4, 0.3, 6, 3, 2);
+      }
+      else {
+         fem = FemFactory.createTetGrid (null, 1.0, 0.4, 0.3, 6, 3, 2);
+      }
+      fem.setMaterial (mat);
+      int i = 0;
+      for (FemNode3d n : fem.getNodes()) {
+         Point3d pos = new Point3d (n.getRestPosition());
+         pos.add (disps.get(i++));
+         n.setPosition (pos);
+      }
+      return fem;
+   }
+
+   private void checkStressAndStiffness (
+      String msg, FemModel3d fem0, FemModel3d fem1, double tol) {
+      for (int i=0; i<fem0.numNodes(); i++) {
+         FemNode3d n0 = fem0.getNodes().get(i);
+         FemNode3d n1 = fem1.getNodes().get(i);
+         checkEquals (
+            msg+": force for node "+i,
+            n1.getInternalForce(), n0.getInternalForce(), tol);
+         ArrayList<FemNodeNeighbor> nbrs0 = fem0.getNodeNeighbors(n0);
+         ArrayList<FemNodeNeighbor> nbrs1 = fem1.getNodeNeighbors(n1);
+         for (int k=0; k<nbrs0.size(); k++) {
+            checkEquals (
+               msg+": stiffness for node "+i+", neighbor "+k,
+               nbrs1.get(k).getK00(), nbrs0.get(k).getK00(), tol);
+         }
+      }
+      checkEquals (
+         msg+": min detJ", fem1.myMinDetJ, fem0.myMinDetJ, tol);
+      checkEquals (
+         msg+": num inverted", fem1.myNumInverted, fem0.myNumInverted);
+   }
+
+   private void testConcurrentStressAndStiffness (
+      boolean hex, FemMaterial mat) {
+      ArrayList<Vector3d> disps = new ArrayList<>();
+      for (int i=0; i<7*4*3; i++) {
+         Vector3d d = new Vector3d();
+         d.setRandom (-0.02, 0.02);
+         disps.add (d);
+      }
+      FemModel3d fem0 = createStressTestModel (hex, mat, disps);
+      fem0.updateStressAndStiffness();
+
+      // deterministic mode should reproduce the serial results exactly
+      FemModel3d fem1 = createStressTestModel (hex, mat, disps);
+      fem1.setNumStressThreads (4);
+      fem1.setDeterministicStress (true);
+      fem1.updateStressAndStiffness();
+      checkStressAndStiffness ("deterministic", fem0, fem1, 0);
+
+      // otherwise, results should agree to within round-off
+      FemModel3d fem2 = createStressTestModel (hex, mat, disps);
+      fem2.setNumStressThreads (4);
+      fem2.setDeterministicStress (false);
+      fem2.updateStressAndStiffness();
+      checkStressAndStiffness ("concurrent", fem0, fem2, 1e-8);
+
+      // and should not change when recomputed
+      fem2.invalidateStressAndStiffness();
+      fem2.updateStressAndStiffness();
+      checkStressAndStiffness ("concurrent, recomputed", fem0, fem2, 1e-8);
+   }
+
+   private void testConcurrentStressAndStiffness() {
+      testConcurrentStressAndStiffness (
+         true, new MooneyRivlinMaterial (15000, 0, 0, 900, 0, 1e6));
+      testConcurrentStressAndStiffness (
+         false, new MooneyRivlinMaterial (15000, 0, 0, 900, 0, 1e6));
+      testConcurrentStressAndStiffness (
+         true, new NeoHookeanMaterial (50000, 0.45));
+      testConcurrentStressAndStiffness (
+         false, new LinearMaterial (50000, 0.33));
+   }
+
    public void test() {
       //testFrameRelativeMass();
       testFindNearestElement();
       testSetNumbering();
       testFemCopy();
+      testConcurrentStressAndStiffness();
    }
 
    public static void main (String[] args) {
@@ -6,6 +6,8 @@
  */
 package artisynth.core.femmodels;
 
+import java.util.Arrays;
+
 import maspack.matrix.*;
 import maspack.util.DataBuffer;
 import artisynth.core.materials.ViscoelasticState;
@@ -27,6 +29,13 @@ public class IntegrationData3d {
    //protected ViscoelasticState myViscoState;
    // protected MaterialStateObject myStateObject;
    protected MaterialStateObject[] myStateObjects;
+
+   // values of fields that depend only on the rest position of this point,
+   // together with the field versions for which they were computed
+   protected Object[] myFieldKeys;
+   protected long[] myFieldVersions;
+   protected double[] myFieldValues;
+   protected int myNumFieldValues;
    
    private void init() {
       myInvJ0 = new Matrix3d(Matrix3d.IDENTITY);
@@ -107,18 +116,21 @@ public class IntegrationData3d {
    
    public double setRestJacobian(Matrix3d J0) {
       myDetJ0 = myInvJ0.fastInvert(J0);
+      clearCachedFieldValues();
       return myDetJ0;
    }
    
    public double setRestInverseJacobian(Matrix3d invJ0) {
       myInvJ0.set(invJ0);
       myDetJ0 = 1.0/invJ0.determinant();
+      clearCachedFieldValues();
       return myDetJ0;
    }
    
    public void setRestInverseJacobian(Matrix3d invJ0, double detJ0) {
       myInvJ0.set(invJ0);
       myDetJ0 = detJ0;
+      clearCachedFieldValues();
    }
    
 //   public static double computeRestJacobian (
@@ -144,9 +156,83 @@ public class IntegrationData3d {
    public double computeInverseRestJacobian (
       IntegrationPoint3d ipnt, FemNode3d[] nodes) {
       myDetJ0 = ipnt.computeInverseRestJacobian (myInvJ0, nodes);
+      // rest position may have changed
+      clearCachedFieldValues();
       return myDetJ0;
    }
 
+   /**
+    * Finds a scalar field value cached at this integration point. Fields
+    * whose value at the point depends only on its rest position can use this
+    * to avoid repeating spatial lookups each time the value is requested.
+    *
+    * @param field field whose value is sought
+    * @param version version of the field for which the value is required.
+    * This should change whenever the field's values change.
+    * @return index of the cached value, or -1 if there is no value cached
+    * for {@code field} and {@code version}
+    */
+   public int findCachedFieldValue (Object field, long version) {
+      for (int i=0; i<myNumFieldValues; i++) {
+         if (myFieldKeys[i] == field) {
+            return myFieldVersions[i] == version ? i : -1;
+         }
+      }
+      return -1;
+   }
+
+   /**
+    * Returns a cached scalar field value located by {@link
+    * #findCachedFieldValue}.
+    *
+    * @param idx index of the cached value
+    * @return cached value
+    */
+   public double getCachedFieldValue (int idx) {
+      return myFieldValues[idx];
+   }
+
+   /**
+    * Caches a scalar field value at this integration point, replacing any
+    * value previously cached for the same field.
+    *
+    * @param field field whose value is being cached
+    * @param version version of the field for which the value was computed
+    * @param value value to cache
+    */
+   public void setCachedFieldValue (Object field, long version, double value) {
+      int idx = 0;
+      while (idx < myNumFieldValues && myFieldKeys[idx] != field) {
+         idx++;
+      }
+      if (idx == myNumFieldValues) {
+         if (myFieldKeys == null) {
+            myFieldKeys = new Object[2];
+            myFieldVersions = new long[2];
+            myFieldValues = new double[2];
+         }
+         else if (idx == myFieldKeys.length) {
+            myFieldKeys = Arrays.copyOf (myFieldKeys, 2*idx);
+            myFieldVersions = Arrays.copyOf (myFieldVersions, 2*idx);
+            myFieldValues = Arrays.copyOf (myFieldValues, 2*idx);
+         }
+         myFieldKeys[idx] = field;
+         myNumFieldValues++;
+      }
+      myFieldVersions[idx] = version;
+      myFieldValues[idx] = value;
+   }
+
+   /**
+    * Clears all field values cached at this integration point.
+    */
+   public void clearCachedFieldValues() {
+      if (myFieldKeys != null) {
+         Arrays.fill (myFieldKeys, 0, myNumFieldValues, null);
+      }
+      myNumFieldValues = 0;
+   }
+
 //   /** 
 //    * Gets the number of integers required to store structure data.
 //    */
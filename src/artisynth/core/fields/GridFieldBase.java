@@ -2,6 +2,7 @@ package artisynth.core.fields;
 
 import artisynth.core.modelbase.FemFieldPoint;
 import artisynth.core.modelbase.GridCompBase;
+import maspack.geometry.InterpolatingGridBase;
 import maspack.properties.PropertyList;
 
 /**
@@ -19,6 +20,9 @@ public abstract class GridFieldBase extends GridCompBase {
    protected static boolean DEFAULT_CLIP_TO_GRID = true;
    protected boolean myClipToGrid = DEFAULT_CLIP_TO_GRID;
 
+   // incremented whenever the grid or a setting affecting queries changes
+   protected int myFieldVersion = 0;
+
    public static PropertyList myProps =
       new PropertyList (GridFieldBase.class, GridCompBase.class);
 
@@ -66,6 +70,7 @@ public abstract class GridFieldBase extends GridCompBase {
     */
    public void setUseLocalValuesForField (boolean enable) {
       myUseLocalValuesForFieldP = enable;
+      myFieldVersion++;
    }
 
    /**
@@ -92,6 +97,7 @@ public abstract class GridFieldBase extends GridCompBase {
     */
    public void setUseFemRestPositions (boolean enable) {
       myUseFemRestPositions = enable;
+      myFieldVersion++;
    }
 
    /**
@@ -116,6 +122,41 @@ public abstract class GridFieldBase extends GridCompBase {
     */
    public void setClipToGrid (boolean enable) {
       myClipToGrid = enable;
+      myFieldVersion++;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void setGrid (InterpolatingGridBase gridBase) {
+      super.setGrid (gridBase);
+      myFieldVersion++;
+   }
+
+   /**
+    * Returns a version number for the values of this field. This changes
+    * whenever the grid is replaced, the values, geometry or local-to-world
+    * transform of the grid are changed (as indicated by {@link
+    * InterpolatingGridBase#getVersion}), or any of the field's query
+    * settings are changed. It is used to validate field values that are
+    * cached at FEM integration points.
+    *
+    * @return field value version
+    */
+   public long getValueVersion() {
+      long version = ((long)myFieldVersion) << 32;
+      if (myGridBase != null) {
+         version |= (myGridBase.getVersion() & 0xffffffffL);
+      }
+      return version;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void clearCacheIfNecessary() {
+      // FEM structure has changed
+      myFieldVersion++;
    }
 
 }      
@@ -1,5 +1,6 @@
 package artisynth.core.fields;
 
+import artisynth.core.femmodels.*;
 import artisynth.core.mechmodels.*;
 import artisynth.core.modelbase.*;
 import artisynth.core.modelbase.ScanTest;
@@ -164,6 +165,83 @@ public class GridFieldTest extends FieldTestBase {
       checkVectorGridField (vgfieldChk);      
    }
 
+   /**
+    * Checks the values of a scalar grid field at the integration points of
+    * an FEM model against uncached values. Returns the number of values
+    * that were found in the integration point caches.
+    */
+   int checkFemFieldValues (FemModel3d fem, ScalarGridField field) {
+      FemDeformedPoint dpnt = new FemDeformedPoint();
+      int numCached = 0;
+      for (FemElement3d elem : fem.getElements()) {
+         IntegrationPoint3d[] ipnts = elem.getIntegrationPoints();
+         IntegrationData3d[] idata = elem.getIntegrationData();
+         for (int k=0; k<ipnts.length; k++) {
+            dpnt.setFromIntegrationPoint (ipnts[k], idata[k], null, elem, k);
+            if (idata[k].findCachedFieldValue (
+                   field, field.getValueVersion()) != -1) {
+               numCached++;
+            }
+            Point3d pos = new Point3d();
+            ipnts[k].computeRestPosition (pos, elem.getNodes());
+            checkEquals (
+               "field value at integration point", field.getValue (dpnt),
+               field.getValue (pos), 0);
+            check ("field value not cached",
+                   idata[k].findCachedFieldValue (
+                      field, field.getValueVersion()) != -1);
+         }
+      }
+      return numCached;
+   }
+
+   public void testFemCaching() {
+      FemModel3d fem = FemFactory.createHexGrid (null, 1.0, 1.0, 1.0, 2, 2, 2);
+      ScalarGrid grid = new ScalarGrid (
+         new Vector3d (1.2, 1.2, 1.2), new Vector3i (3, 3, 3));
+      ScalarGridField field = new ScalarGridField (grid);
+      for (int i=0; i<field.numVertices(); i++) {
+         field.setVertexValue (i, RandomGenerator.nextDouble (0, 10));
+      }
+      fem.addField (field);
+      int numPnts = 0;
+      for (FemElement3d elem : fem.getElements()) {
+         numPnts += elem.numIntegrationPoints();
+      }
+
+      checkEquals ("initially cached", checkFemFieldValues (fem, field), 0);
+      checkEquals ("cached", checkFemFieldValues (fem, field), numPnts);
+
+      // changing values, grid geometry, or field settings should
+      // invalidate cached values
+      field.setVertexValue (5, 100.0);
+      checkEquals (
+         "cached after value change", checkFemFieldValues (fem, field), 0);
+      grid.setCenter (new Vector3d (0.1, 0, 0));
+      checkEquals (
+         "cached after grid change", checkFemFieldValues (fem, field), 0);
+      field.setClipToGrid (false);
+      checkEquals (
+         "cached after clip change", checkFemFieldValues (fem, field), 0);
+      RigidTransform3d TLW = new RigidTransform3d();
+      TLW.setRandom();
+      field.setLocalToWorld (TLW);
+      field.setUseLocalValuesForField (false);
+      checkEquals (
+         "cached after world change", checkFemFieldValues (fem, field), 0);
+      checkEquals ("cached", checkFemFieldValues (fem, field), numPnts);
+
+      // as should changing rest positions
+      FemNode3d node = fem.getNodes().get(13);
+      Point3d rest = new Point3d (node.getRestPosition());
+      rest.x += 0.05;
+      node.setRestPosition (rest);
+      checkEquals (
+         "cached after rest position change",
+         checkFemFieldValues (fem, field), 0);
+      checkEquals ("cached", checkFemFieldValues (fem, field), numPnts);
+   }
+
    public void test() {
       PolygonalMesh mesh = MeshFactory.createBox (1.0, 2.0, 3.0);
       MechModel mech = new MechModel();
@@ -207,6 +285,8 @@ public class GridFieldTest extends FieldTestBase {
       testVectorGridField (
          mech, "vfield8",
          new MatrixNdGrid (2, 2, widths, res, TCL));
+
+      testFemCaching();
    }
 
    public static void main (String[] args) {
@@ -7,6 +7,8 @@ import java.util.Deque;
 import java.util.LinkedList;
 import java.util.List;
 
+import artisynth.core.femmodels.FemDeformedPoint;
+import artisynth.core.femmodels.IntegrationData3d;
 import artisynth.core.mechmodels.FixedMeshBody;
 import artisynth.core.modelbase.ComponentUtils;
 import artisynth.core.modelbase.CompositeComponent;
@@ -356,6 +358,22 @@ public class ScalarGridField
    public double getValue (FemFieldPoint fp) {
       Point3d pos;
       if (myUseFemRestPositions) {
+         IntegrationData3d idat = null;
+         if (fp instanceof FemDeformedPoint) {
+            idat = ((FemDeformedPoint)fp).getIntegrationData();
+         }
+         if (idat != null) {
+            // value depends only on the rest position, so it can be cached
+            // at the integration point
+            long version = getValueVersion();
+            int idx = idat.findCachedFieldValue (this, version);
+            if (idx != -1) {
+               return idat.getCachedFieldValue (idx);
+            }
+            double value = getValue (fp.getRestPos());
+            idat.setCachedFieldValue (this, version, value);
+            return value;
+         }
          pos = fp.getRestPos();
       }
       else {
@@ -1092,13 +1092,16 @@ public class NumericProbePanel extends JPanel
 
          // Create line plot
          int segNum = -1;
-         double prevt = -1;
+         double prevt = Double.NaN;
          for (int i = 0; i < maxXPixels; i++) {
             float xpixel = i + myMargins[LEFT];
             double x = xform.pixelToXvalue ((int)xpixel);
+            prevKnot = list.interpolate (yvec, x, getInterpolation(), prevKnot);
             if (linearInterp) {
-               NumericListKnot nextKnot = list.findKnotAtOrBefore (x, prevKnot);
-               if (nextKnot != prevKnot) {
+               // segments are identified by knot time, since knots returned
+               // by columnar lists are not list members
+               if (prevKnot != null && prevKnot.t != prevt) {
+                  prevt = prevKnot.t;
                   segNum++;
                }
                segNums[i] = segNum;
@@ -1106,7 +1109,6 @@ public class NumericProbePanel extends JPanel
             else {
                segNums[i] = i;
             }
-            prevKnot = list.interpolate (yvec, x, getInterpolation(), prevKnot);
             for (int k = 0; k < yvec.size(); k++) {
                yBuffer[k][i] = xform.yvalueToPixel (yvec.get(k));
             }
@@ -2393,6 +2395,10 @@ public class NumericProbePanel extends JPanel
                try {
                   double newVal = Double.parseDouble (input);
                   newKnot.v.set (dirtyIndex, newVal);
+                  if (getNumericList().isColumnar()) {
+                     // knot is a copy, so replace the knot in the list
+                     getNumericList().add (newKnot);
+                  }
                }
                catch (Exception ex) {
                   System.err.println (ex.getMessage());
@@ -2596,8 +2602,8 @@ public class NumericProbePanel extends JPanel
       NumericList nlist, int width, int height,
       boolean largeDisplay, boolean inputData) {
 
-      double xstart = nlist.getFirst().t;
-      double xlast = nlist.getLast().t;
+      double xstart = nlist.getFirstTime();
+      double xlast = nlist.getLastTime();
 
       myProbe = null;
       myNumericList = nlist;
@@ -5,6 +5,7 @@ import java.util.ArrayList;
 import artisynth.core.modelbase.*;
 
 import maspack.matrix.MatrixNd;
+import maspack.matrix.SparseCRSMatrix;
 import maspack.matrix.VectorNd;
 import maspack.util.*;
 import maspack.properties.*;
@@ -114,4 +115,48 @@ public class BoundsTerm extends QPConstraintTermBase {
       return rowoff;
 
    }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int getTerm (
+      SparseCRSMatrix A, VectorNd b, int rowoff, double t0, double t1) {
+
+      TrackingController controller = getController();
+      if (controller == null) {
+         return rowoff;
+      }
+      
+      int numex = controller.myExciters.size();
+      boolean incremental = controller.getComputeIncrementally();
+      int[] col = new int[1];
+
+      // same row ordering as the dense version: lower bounds, then upper
+      for (int i=0; i<numex; i++) {
+         double lower =
+            controller.myExciters.get(i).getExcitationBounds().getLowerBound();
+         if (lower > Double.NEGATIVE_INFINITY) {
+            col[0] = i;
+            A.addRow (col, new double[] { 1.0 }, 1); // x >= lb
+            if (incremental) {
+               lower -= controller.getExcitation(i);
+            }
+            b.set (rowoff++, lower);
+         }
+      }
+      for (int i=0; i<numex; i++) {
+         double upper =
+            controller.myExciters.get(i).getExcitationBounds().getUpperBound();
+         if (upper < Double.POSITIVE_INFINITY) {
+            col[0] = i;
+            A.addRow (col, new double[] { -1.0 }, 1); // -x >= -ub
+            if (incremental) {
+               upper -= controller.getExcitation(i);
+            }
+            b.set (rowoff++, -upper);
+         }
+      }
+      return rowoff;
+   }
 }
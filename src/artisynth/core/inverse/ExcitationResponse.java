@@ -40,6 +40,9 @@ public class ExcitationResponse
 {
    public static final boolean DEFAULT_NORMALIZE = false;
    boolean useFactorSolveForIncremental = true;
+   // when using the pre-factored KKT system, solve for all the columns of Hu
+   // and Hlam together using a single multi-rhs solve
+   boolean useBlockSolve = true;
 
    boolean debug = false;
    public static boolean debugHu = false;
@@ -75,6 +78,12 @@ public class ExcitationResponse
    VectorNd curEx = new VectorNd(0);
    VectorNd curVel = new VectorNd(0);
 
+   // right hand sides and solutions for block solves
+   MatrixNd Bf = new MatrixNd();
+   MatrixNd HuMat = new MatrixNd();
+   MatrixNd HlamMat = new MatrixNd();
+   VectorNd dexs = new VectorNd(0);
+
    protected double computeError (Vector v0, Vector v1) {
       VectorNd diff = new VectorNd (v0);
       diff.sub (new VectorNd(v1));
@@ -192,6 +201,14 @@ public class ExcitationResponse
       //System.out.println ("MA=\n"+S.getBlock(0,0).toString ("%12.8f"));
 
       lam0.set (myMechSysSolver.getLambda ());
+      boolean factorEachColumn =
+         (myController.getUseKKTFactorization() ||
+          (incremental && useFactorSolveForIncremental));
+      boolean blockSolve = (useBlockSolve && !factorEachColumn);
+      if (blockSolve) {
+         Bf.setSize (velSize, exSize);
+         dexs.setSize (exSize);
+      }
       // where e_j is elementary unit vector
       for (int j = 0; j < exSize; j++) {
          double dex = deltaEx;
@@ -229,8 +246,12 @@ public class ExcitationResponse
             bf.scale (h);
          }
          
-         if (myController.getUseKKTFactorization() || 
-             (incremental && useFactorSolveForIncremental)) {        
+         if (blockSolve) {
+            // defer the solve until all the right hand sides are known
+            Bf.setColumn (j, bf);
+            dexs.set (j, dex);
+         }
+         else if (factorEachColumn) {        
             if (useTrapezoidal) {
                // use Trapezoidal integration
                myMechSysSolver.KKTFactorAndSolve (
@@ -266,6 +287,19 @@ public class ExcitationResponse
             }            
          }
       }
+      if (blockSolve) {
+         // use pre-factored KKT system, back-substituting all the columns
+         // together. Note neglecting change in jacobians due to excitation
+         myMechSysSolver.KKTSolve (HuMat, HlamMat, Bf);
+         for (int j = 0; j < exSize; j++) {
+            HuMat.getColumn (j, HuCols[j]);
+            HlamMat.getColumn (j, HlamCols[j]);
+            if (incremental) {
+               HuCols[j].scale (1/dexs.get(j));
+               HlamCols[j].scale (1/dexs.get(j));
+            }
+         }
+      }
 
       // XXX rest now done in motion target term
 
@@ -11,6 +11,7 @@ import maspack.util.ReaderTokenizer;
 import maspack.util.NumberFormat;
 import maspack.matrix.VectorNd;
 import maspack.matrix.MatrixNd;
+import maspack.matrix.SparseCRSMatrix;
 
 /**
  * Constraint term to bound the excitation values generated by the controller,
@@ -87,6 +88,42 @@ public class NonuniformBoundsTerm extends QPConstraintTermBase {
       return rowoff;
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int getTerm (
+      SparseCRSMatrix A, VectorNd b, int rowoff, double t0, double t1) {
+      TrackingController controller = getController();
+      if (controller == null) {
+         return rowoff;
+      }
+      int numex = A.colSize();
+      boolean incremental = controller.getComputeIncrementally();
+      int[] col = new int[1];
+      int numc = Math.min (myLowerBound.size(), numex);
+      for (int i=0; i<numc; i++) {
+         col[0] = i;
+         A.addRow (col, new double[] { 1.0 }, 1); // x >= lb
+         double lower = myLowerBound.get (i);
+         if (incremental) {
+            lower -= controller.getExcitation(i);
+         }
+         b.set (rowoff++, lower);
+      }
+      numc = Math.min (myUpperBound.size(), numex);
+      for (int i=0; i<numc; i++) {
+         col[0] = i;
+         A.addRow (col, new double[] { -1.0 }, 1); // -x >= -ub
+         double upper = myUpperBound.get (i);
+         if (incremental) {
+            upper -= controller.getExcitation(i);
+         }
+         b.set (rowoff++, -upper);
+      }
+      return rowoff;
+   }
+
    @Override
    public int numConstraints (int qpsize) {
       int result = 0;
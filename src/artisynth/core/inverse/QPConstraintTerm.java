@@ -1,6 +1,7 @@
 package artisynth.core.inverse;
 
 import maspack.matrix.MatrixNd;
+import maspack.matrix.SparseCRSMatrix;
 import maspack.matrix.VectorNd;
 
 /**
@@ -30,6 +31,47 @@ public interface QPConstraintTerm extends QPTerm {
     */
    public int getTerm (MatrixNd A, VectorNd b, int rowoff, double t0, double t1);
 
+   /**
+    * Sparse version of {@link #getTerm(MatrixNd,VectorNd,int,double,double)}
+    * that appends the constraints for this term as new rows of the sparse
+    * matrix A, whose column size gives the size of the quadratic program.
+    * The default implementation obtains the constraints from the dense
+    * version and copies their non-zero entries into A; terms with very
+    * sparse constraints, such as bounds, should override it.
+    * 
+    * @param A sparse quadratic program constraint matrix
+    * @param b quadratic program offset vector
+    * @param rowoff row offset within b where the constraints should be
+    * added. Should equal the row size of A on input.
+    * @param t0 time at start of step
+    * @param t1 time at end of step
+    * @return updated row offset
+    */
+   public default int getTerm (
+      SparseCRSMatrix A, VectorNd b, int rowoff, double t0, double t1) {
+
+      int size = A.colSize();
+      int numc = numConstraints (size);
+      MatrixNd Ad = new MatrixNd (numc, size);
+      VectorNd bd = new VectorNd (numc);
+      int nrows = getTerm (Ad, bd, 0, t0, t1);
+      int[] cols = new int[size];
+      double[] vals = new double[size];
+      for (int i=0; i<nrows; i++) {
+         int nvals = 0;
+         for (int j=0; j<size; j++) {
+            double v = Ad.get (i, j);
+            if (v != 0) {
+               cols[nvals] = j;
+               vals[nvals++] = v;
+            }
+         }
+         A.addRow (cols, vals, nvals);
+         b.set (rowoff++, bd.get (i));
+      }
+      return rowoff;
+   }
+
    /**
     * Returns the number of constraints associated with this term.
     * @param qpsize size of the quadratic program. For the tracking
@@ -5,8 +5,10 @@ import java.util.List;
 import java.util.Collection;
 
 import maspack.matrix.MatrixNd;
+import maspack.matrix.SparseCRSMatrix;
 import maspack.matrix.VectorNd;
 import maspack.util.*;
+import maspack.solvers.ActiveSetQPSolver;
 import maspack.solvers.DantzigQPSolver;
 import maspack.solvers.DantzigQPSolver.Status;
 
@@ -15,15 +17,132 @@ import maspack.solvers.DantzigQPSolver.Status;
  */
 public class QPSolver {
 
+   /**
+    * Describes the method used to solve the quadratic program.
+    */
+   public enum Type {
+      /**
+       * Dense solve using Dantzig's LCP pivoting algorithm, as implemented
+       * by {@link DantzigQPSolver}.
+       */
+      DANTZIG,
+
+      /**
+       * Primal active-set solve, as implemented by {@link
+       * ActiveSetQPSolver}, with the constraints assembled in sparse form
+       * and the active set warm-started from the previous solve. If the
+       * active-set solve fails (which can happen if the warm-started
+       * solution does not give a feasible starting point), the problem is
+       * solved using {@link #DANTZIG} instead.
+       */
+      ACTIVE_SET
+   }
+
+   public static Type DEFAULT_TYPE = Type.DANTZIG;
+   Type myType = DEFAULT_TYPE;
+
    /*
     * Default solver
     */
    DantzigQPSolver mySolver = new DantzigQPSolver();
+   ActiveSetQPSolver myActiveSetSolver;
    String myQPTestCaseFile = null; // "frameQP.txt";
    int myQPTestCaseCnt = 200;
    int myQPCnt = 0;
    FunctionTimer timer = new FunctionTimer();
 
+   // solve statistics
+   int mySolveCnt = 0;
+   int myFallbackCnt = 0;
+   int myLastIterationCnt = 0;
+   double myLastSolveTimeUsec = 0;
+   double myTotalSolveTimeUsec = 0;
+
+   /**
+    * Returns the method used to solve the quadratic program.
+    *
+    * @return solve method
+    */
+   public Type getType() {
+      return myType;
+   }
+
+   /**
+    * Sets the method used to solve the quadratic program. The default is
+    * {@link Type#DANTZIG}.
+    *
+    * @param type solve method
+    */
+   public void setType (Type type) {
+      if (type != myType) {
+         myType = type;
+         myActiveSetSolver = null;
+         resetStatistics();
+      }
+   }
+
+   /**
+    * Returns the number of iterations used by the most recent solve. For
+    * {@link Type#DANTZIG}, this is the number of LCP pivots.
+    *
+    * @return number of iterations for the last solve
+    */
+   public int getLastIterationCount() {
+      return myLastIterationCnt;
+   }
+
+   /**
+    * Returns the time required for the most recent solve, in microseconds.
+    * This includes the time needed to assemble the problem from its cost
+    * and constraint terms.
+    *
+    * @return time for the last solve (usec)
+    */
+   public double getLastSolveTime() {
+      return myLastSolveTimeUsec;
+   }
+
+   /**
+    * Returns the average time per solve, in microseconds, since the
+    * statistics were last reset.
+    *
+    * @return average solve time (usec)
+    */
+   public double getAverageSolveTime() {
+      return mySolveCnt > 0 ? myTotalSolveTimeUsec/mySolveCnt : 0;
+   }
+
+   /**
+    * Returns the number of solves since the statistics were last reset.
+    *
+    * @return number of solves
+    */
+   public int getSolveCount() {
+      return mySolveCnt;
+   }
+
+   /**
+    * Returns the number of {@link Type#ACTIVE_SET} solves, since the
+    * statistics were last reset, that failed and were redone using {@link
+    * Type#DANTZIG}.
+    *
+    * @return number of fallback solves
+    */
+   public int getFallbackCount() {
+      return myFallbackCnt;
+   }
+
+   /**
+    * Resets the solve statistics.
+    */
+   public void resetStatistics() {
+      mySolveCnt = 0;
+      myFallbackCnt = 0;
+      myLastIterationCnt = 0;
+      myLastSolveTimeUsec = 0;
+      myTotalSolveTimeUsec = 0;
+   }
+
    /**
     * Solves the quadratic program of the form:
     * <pre>
@@ -49,9 +168,22 @@ public class QPSolver {
       List<QPConstraintTerm> constraintTerms, 
       int size, double t0, double t1) {
 
-      MatrixNd Q = new MatrixNd (size, size);
-      VectorNd P = new VectorNd (size);
+      long time0 = System.nanoTime();
+      VectorNd x;
+      if (myType == Type.ACTIVE_SET) {
+         x = solveActiveSet (costTerms, constraintTerms, size, t0, t1);
+      }
+      else {
+         x = solveDantzig (costTerms, constraintTerms, size, t0, t1);
+      }
+      myLastSolveTimeUsec = (System.nanoTime()-time0)*1e-3;
+      myTotalSolveTimeUsec += myLastSolveTimeUsec;
+      mySolveCnt++;
+      return x;
+   }
 
+   private int[] countConstraints (
+      List<QPConstraintTerm> constraintTerms, int size) {
       int numEq = 0;
       int numIneq = 0;
       if (constraintTerms != null) {
@@ -66,6 +198,93 @@ public class QPSolver {
             }
          }
       }
+      return new int[] { numIneq, numEq };
+   }
+
+   /**
+    * Solves the program using ActiveSetQPSolver, with the constraints
+    * assembled into sparse matrices.
+    */
+   private VectorNd solveActiveSet (
+      List<QPCostTerm> costTerms,
+      List<QPConstraintTerm> constraintTerms, 
+      int size, double t0, double t1) {
+
+      if (myActiveSetSolver == null) {
+         myActiveSetSolver = new ActiveSetQPSolver();
+      }
+      MatrixNd Q = new MatrixNd (size, size);
+      VectorNd P = new VectorNd (size);
+
+      int[] counts = countConstraints (constraintTerms, size);
+      SparseCRSMatrix A = new SparseCRSMatrix (0, size);
+      VectorNd b = new VectorNd (counts[0]);
+      SparseCRSMatrix Aeq = new SparseCRSMatrix (0, size);
+      VectorNd beq = new VectorNd (counts[1]);
+
+      VectorNd x = new VectorNd (size);
+
+      // collect all cost terms
+      for (QPCostTerm term : costTerms) {
+         if (term.isEnabled ()) {
+            term.getQP (Q,P,t0,t1);
+         }
+      }
+      int rowEq = 0;
+      int rowIneq = 0;
+
+      // collect all constraint terms
+      if (constraintTerms != null) {
+         for (QPConstraintTerm term : constraintTerms) {
+            if (term.isEnabled()) {
+               if (term.getType() == QPConstraintTerm.Type.EQUALITY) {
+                  rowEq = term.getTerm (Aeq, beq, rowEq, t0, t1);
+               }
+               else if (term.getType() == QPConstraintTerm.Type.INEQUALITY) {
+                  rowIneq = term.getTerm (A, b, rowIneq, t0, t1);
+               }
+            }
+         }
+      }
+      b.setSize (rowIneq);
+      beq.setSize (rowEq);
+
+      try {
+         ActiveSetQPSolver.Status status =
+            myActiveSetSolver.solve (x, Q, P, A, b, Aeq, beq);
+         myLastIterationCnt = myActiveSetSolver.getIterationCount();
+         if (status != ActiveSetQPSolver.Status.SOLVED) {
+            myFallbackCnt++;
+            MatrixNd Ad = new MatrixNd (A);
+            MatrixNd Aeqd = new MatrixNd (Aeq);
+            Status qpStatus = mySolver.solve (x, Q, P, Ad, b, Aeqd, beq);
+            myLastIterationCnt += mySolver.getIterationCount();
+            if (qpStatus != Status.SOLVED) {
+               System.err.println (
+                  "InverseSolve failed: solver status = "+qpStatus.toString ());
+            }
+         }
+      }
+      catch (Exception e) {
+         e.printStackTrace();
+      }
+      return x;
+   }
+
+   /**
+    * Solves the program using DantzigQPSolver, with all matrices dense.
+    */
+   private VectorNd solveDantzig (
+      List<QPCostTerm> costTerms,
+      List<QPConstraintTerm> constraintTerms, 
+      int size, double t0, double t1) {
+
+      MatrixNd Q = new MatrixNd (size, size);
+      VectorNd P = new VectorNd (size);
+
+      int[] counts = countConstraints (constraintTerms, size);
+      int numIneq = counts[0];
+      int numEq = counts[1];
 
       MatrixNd A = new MatrixNd (numIneq, size);
       VectorNd b = new VectorNd (numIneq);
@@ -113,6 +332,7 @@ public class QPSolver {
                }
             }
             mySolver.solve (x,Q,P,A,b);
+            myLastIterationCnt = mySolver.getIterationCount();
             if (myQPTestCaseFile != null) {
                if (myQPCnt == myQPTestCaseCnt) {
                   timer.stop();
@@ -124,6 +344,7 @@ public class QPSolver {
          }
          else {
             Status qpStatus = mySolver.solve (x, Q, P, A, b, Aeq, beq);
+            myLastIterationCnt = mySolver.getIterationCount();
             if (qpStatus != Status.SOLVED) {
                System.err.println (
                   "InverseSolve failed: solver status = "+qpStatus.toString ());
@@ -139,6 +139,9 @@ public class TrackingController extends ControllerBase
    private static boolean DEFAULT_COMPUTE_INCREMENTALLY = false;
    private boolean myComputeIncrementally = DEFAULT_COMPUTE_INCREMENTALLY;
 
+   // method used to solve the quadratic program
+   public static QPSolver.Type DEFAULT_QP_SOLVER_TYPE = QPSolver.DEFAULT_TYPE;
+
    // ========= other parameter attributes =========
 
    // 1 for true, 0 for false, -1 for automatic
@@ -228,6 +231,10 @@ public class TrackingController extends ControllerBase
          "computeIncrementally",
          "compute excitations incrementally at each time step",
          DEFAULT_COMPUTE_INCREMENTALLY);
+      myProps.add(
+         "qpSolverType getQPSolverType setQPSolverType",
+         "method used to solve the quadratic program",
+         DEFAULT_QP_SOLVER_TYPE);
    }
 
    /**
@@ -436,6 +443,41 @@ public class TrackingController extends ControllerBase
       }
    }
 
+   /**
+    * Queries the method used to solve the quadratic program for the
+    * excitations, as described in {@link #setQPSolverType}.
+    *
+    * @return quadratic program solve method
+    */
+   public QPSolver.Type getQPSolverType () {
+      return myQPSolver.getType();
+   }
+
+   /**
+    * Sets the method used to solve the quadratic program for the
+    * excitations. {@link QPSolver.Type#DANTZIG}, the default, uses dense
+    * matrices and solves each program from scratch. {@link
+    * QPSolver.Type#ACTIVE_SET} keeps the constraints in sparse form and
+    * warm-starts each solve from the active set of the previous time step,
+    * which is usually much faster when there are many exciters. Solve time
+    * and iteration statistics are available from {@link #getQPSolver}.
+    *
+    * @param type quadratic program solve method
+    */
+   public void setQPSolverType (QPSolver.Type type) {
+      myQPSolver.setType (type);
+   }
+
+   /**
+    * Returns the solver used for the quadratic program, which can be
+    * queried for solve time and iteration statistics.
+    *
+    * @return quadratic program solver
+    */
+   public QPSolver getQPSolver () {
+      return myQPSolver;
+   }
+
    /**
     * Queries whether or not KKT factorization is enabled, as described in
     * {@link #setUseKKTFactorization(boolean)}.
@@ -26,8 +26,14 @@ public class CubicHyperelastic extends IncompressibleMaterialBase {
    ScalarFieldComponent myG30Field = null;
    ScalarFieldComponent myG20Field = null;
 
-   private SymmetricMatrix3d myB;
-   private SymmetricMatrix3d myTmp;
+   // scratch storage, allocated per thread
+   private static class Workspace {
+      SymmetricMatrix3d B = new SymmetricMatrix3d();
+      SymmetricMatrix3d tmp = new SymmetricMatrix3d();
+   }
+
+   private static final ThreadLocal<Workspace> myWorkspace =
+      ThreadLocal.withInitial (Workspace::new);
 
    static {
       myProps.addInheritableWithField (
@@ -43,8 +49,6 @@ public class CubicHyperelastic extends IncompressibleMaterialBase {
    }
 
    public CubicHyperelastic (){
-      myB = new SymmetricMatrix3d();
-      myTmp = new SymmetricMatrix3d();
    }
 
    public CubicHyperelastic (
@@ -192,15 +196,18 @@ public class CubicHyperelastic extends IncompressibleMaterialBase {
    public void computeDevStressAndTangent (
       SymmetricMatrix3d sigma, Matrix6d D, DeformedPoint def, 
       Matrix3d Q, double excitation, MaterialStateObject state) { 
+      Workspace ws = myWorkspace.get();
+      SymmetricMatrix3d B = ws.B;
+      SymmetricMatrix3d tmp = ws.tmp;
 
       double J = def.getDetF();
 
       // calculate deviatoric left Cauchy-Green tensor
-      computeDevLeftCauchyGreen(myB,def);
+      computeDevLeftCauchyGreen(B,def);
 
       // Invariants of B (= invariants of C)
       // Note that these are the invariants of Btilde, not of B!
-      double I1 = myB.trace();
+      double I1 = B.trace();
 
       //
       // W = G10*(I1-3) + G20*(I1-3)^2 + G30*(I1-3)^3
@@ -217,7 +224,7 @@ public class CubicHyperelastic extends IncompressibleMaterialBase {
       // T = F*dW/dC*Ft
       // 
       //   mat3ds T = B*(W1 + W2*I1) - B2*W2;
-      sigma.scale (W1, myB);
+      sigma.scale (W1, B);
 
       // calculate stress: s = pI + (2/J)dev[T]
       // 
@@ -254,15 +261,15 @@ public class CubicHyperelastic extends IncompressibleMaterialBase {
          TensorUtils.addScaledIdentityProduct (D, 4.0/9.0*Ji*(wcc-w0));
          TensorUtils.addScaledIdentity (D, 4.0/3.0*Ji*w0);
 
-         myTmp.deviator (sigma); // need to call this???
+         tmp.deviator (sigma); // need to call this???
          TensorUtils.addSymmetricTensorProduct (
-            D, -2.0/3.0, myTmp, SymmetricMatrix3d.IDENTITY);
+            D, -2.0/3.0, tmp, SymmetricMatrix3d.IDENTITY);
 
-         TensorUtils.addTensorProduct (D, w2*4.0*Ji, myB);
+         TensorUtils.addTensorProduct (D, w2*4.0*Ji, B);
 
-         myTmp.scale (wc1, myB);  
+         tmp.scale (wc1, B);  
          TensorUtils.addSymmetricTensorProduct (
-            D, -4.0/3.0*Ji,myTmp,SymmetricMatrix3d.IDENTITY);
+            D, -4.0/3.0*Ji,tmp,SymmetricMatrix3d.IDENTITY);
 
          D.setLowerToUpper();
       }
@@ -285,8 +292,6 @@ public class CubicHyperelastic extends IncompressibleMaterialBase {
 
    public CubicHyperelastic clone() {
       CubicHyperelastic mat = (CubicHyperelastic)super.clone();
-      mat.myB = new SymmetricMatrix3d();
-      mat.myTmp = new SymmetricMatrix3d();
       return mat;
    }
 
@@ -332,5 +337,4 @@ public class CubicHyperelastic extends IncompressibleMaterialBase {
       }
    }
 
-
 }
@@ -96,6 +96,22 @@ public abstract class EquilibriumAxialMuscle extends AxialMuscleMaterialBase {
    double myMuscleVel; // cached value of muscle velocity
    boolean myMuscleLengthValid = false;
 
+   // inputs for which the muscle length was last computed by an
+   // EquilibriumMuscleBatch, allowing computeF() to skip the solve
+   boolean myBatchValid = false;
+   double myBatchL;
+   double myBatchLdot;
+   double myBatchEx;
+   // identifies the batch this material was last added to, and whether
+   // it was added more than once (i.e., is shared by several springs)
+   int myBatchStamp;
+   boolean myBatchShared;
+
+   // function objects used by the muscle length solves, created on demand
+   // and reused to avoid allocation
+   private GFunctionWithVmFromLm myGFxnWithVmFromLm;
+   private GFunctionWithVmConstant myGFxnWithVmConstant;
+
    public static PropertyList myProps =
       new PropertyList(EquilibriumAxialMuscle.class,
                        AxialMuscleMaterialBase.class);
@@ -414,7 +430,13 @@ public abstract class EquilibriumAxialMuscle extends AxialMuscleMaterialBase {
          // times the same time step (e.g., by the inverse controller). without
          // having to call adbvancestate again.
          //if (!myLengthValid) {
-         updateMuscleLength (l, ldot, excitation);
+         // The exception is if the length was just computed for the same
+         // inputs by an EquilibriumMuscleBatch.
+         if (!myBatchValid || l != myBatchL || ldot != myBatchLdot ||
+             excitation != myBatchEx) {
+            updateMuscleLength (l, ldot, excitation);
+         }
+         myBatchValid = false;
          myLengthValid = true;
          //}
          return getTendonForce (myLength-myMuscleLength);
@@ -470,8 +492,7 @@ public abstract class EquilibriumAxialMuscle extends AxialMuscleMaterialBase {
       double myA;
       double myH;
       
-      GFunctionWithVmFromLm (
-         double l, double ldot, double h, double a) {
+      void set (double l, double ldot, double h, double a) {
          myL = l;
          myLDot = ldot;
          myA = a;
@@ -494,8 +515,7 @@ public abstract class EquilibriumAxialMuscle extends AxialMuscleMaterialBase {
       double myA;
       double myVm;
       
-      GFunctionWithVmConstant (
-         double l, double vm, double a) {
+      void set (double l, double vm, double a) {
          myL = l;
          myVm = vm;
          myA = a;
@@ -555,15 +575,21 @@ public abstract class EquilibriumAxialMuscle extends AxialMuscleMaterialBase {
          vm = 0.0;
       }
 
-      Diff1Function1x1 gfxn = new GFunctionWithVmConstant (l, vm, a);
-      return findLm (gfxn, l, a, -1);
+      if (myGFxnWithVmConstant == null) {
+         myGFxnWithVmConstant = new GFunctionWithVmConstant();
+      }
+      myGFxnWithVmConstant.set (l, vm, a);
+      return findLm (myGFxnWithVmConstant, l, a, -1);
    }
 
    public double computeLmWithVmFromLm (
       double l, double ldot, double a, double h) {
       
-      Diff1Function1x1 gfxn = new GFunctionWithVmFromLm (l, ldot, h, a);
-      return findLm (gfxn, l, a, h);
+      if (myGFxnWithVmFromLm == null) {
+         myGFxnWithVmFromLm = new GFunctionWithVmFromLm();
+      }
+      myGFxnWithVmFromLm.set (l, ldot, h, a);
+      return findLm (myGFxnWithVmFromLm, l, a, h);
    }
 
    private double findRoot (
@@ -649,6 +675,20 @@ public abstract class EquilibriumAxialMuscle extends AxialMuscleMaterialBase {
       myMuscleVel = vm;
    }
 
+   /**
+    * Called by {@link EquilibriumMuscleBatch} to compute the muscle length
+    * ahead of a subsequent call to {@link #computeF}, which will then reuse
+    * the result if it is called with the same inputs.
+    */
+   void updateMuscleLengthForBatch (double l, double ldot, double excitation) {
+      updateMuscleLength (l, ldot, excitation);
+      myLengthValid = true;
+      myBatchL = l;
+      myBatchLdot = ldot;
+      myBatchEx = excitation;
+      myBatchValid = true;
+   }
+
    void computeDerivs (double l, double lm, double vm, double a) {
 
       double H = myHeight;
@@ -944,6 +984,7 @@ public abstract class EquilibriumAxialMuscle extends AxialMuscleMaterialBase {
       myH = data.dget();
       myMuscleLengthValid = data.zgetBool(); // XXX need this?
       myLengthValid = data.zgetBool(); // XXX need this?
+      myBatchValid = false;
    }
 
    public void getState (DataBuffer data) {
@@ -961,6 +1002,7 @@ public abstract class EquilibriumAxialMuscle extends AxialMuscleMaterialBase {
          myMuscleLengthPrev = myMuscleLength;
          myLengthPrev = myLength;
          myLengthValid = false;
+         myBatchValid = false;
       }
    }
    
@@ -1027,6 +1069,7 @@ public abstract class EquilibriumAxialMuscle extends AxialMuscleMaterialBase {
       myMuscleLengthPrev *= s;
       myLength *= s;
       myLengthPrev *= s;
+      myBatchValid = false;
    }
 
    public void scaleMass(double s) {
@@ -1034,5 +1077,16 @@ public abstract class EquilibriumAxialMuscle extends AxialMuscleMaterialBase {
       myMaxIsoForce *= s;
       myDamping *= s;
    }
+
+   public EquilibriumAxialMuscle clone() {
+      EquilibriumAxialMuscle mat = (EquilibriumAxialMuscle)super.clone();
+      // function objects refer to this material, so must not be shared
+      mat.myGFxnWithVmFromLm = null;
+      mat.myGFxnWithVmConstant = null;
+      mat.myBatchValid = false;
+      mat.myBatchStamp = 0;
+      mat.myBatchShared = false;
+      return mat;
+   }
 }
 
@@ -0,0 +1,212 @@
+package artisynth.core.materials;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import maspack.concurrency.ParallelLoop;
+
+/**
+ * Solves the muscle length equilibria of a set of {@link
+ * EquilibriumAxialMuscle} materials together, optionally using multiple
+ * threads. Each step, a mechanical system clears the batch, adds the
+ * material of each of its muscles along with the length, length derivative
+ * and excitation that will subsequently be passed to the material's {@link
+ * EquilibriumAxialMuscle#computeF computeF()} method, and then calls {@link
+ * #solve}. Each material records the inputs for which it was solved, and
+ * {@code computeF()} reuses the solution when called with the same
+ * inputs. Otherwise, it solves for the muscle length itself as usual, so
+ * that the batch affects only when the solve is performed, not its
+ * results.
+ *
+ * <p>Materials are grouped by class, and the inputs for each group are
+ * stored in contiguous arrays which are reused from step to step. Materials
+ * with rigid tendons, which do not require a solve, are not added, and
+ * neither is any material that is added more than once (as happens when a
+ * material is shared by several springs), since its solution depends on the
+ * order in which the springs are evaluated.
+ */
+public class EquilibriumMuscleBatch {
+
+   // source of batch stamps, shared by all batches so that the stamps
+   // are unique
+   private static AtomicInteger myNextStamp = new AtomicInteger(1);
+
+   // minimum number of materials claimed by a thread at one time
+   private static final int GRAIN_SIZE = 8;
+
+   /**
+    * Materials of a single class, together with their inputs.
+    */
+   private static class Group {
+      Class<?> myType;
+      EquilibriumAxialMuscle[] myMats = new EquilibriumAxialMuscle[16];
+      double[] myL = new double[16];
+      double[] myLdot = new double[16];
+      double[] myEx = new double[16];
+      int mySize;
+
+      Group (Class<?> type) {
+         myType = type;
+      }
+
+      void add (EquilibriumAxialMuscle mat, double l, double ldot, double ex) {
+         if (mySize == myMats.length) {
+            int cap = 2*mySize;
+            myMats = Arrays.copyOf (myMats, cap);
+            myL = Arrays.copyOf (myL, cap);
+            myLdot = Arrays.copyOf (myLdot, cap);
+            myEx = Arrays.copyOf (myEx, cap);
+         }
+         myMats[mySize] = mat;
+         myL[mySize] = l;
+         myLdot[mySize] = ldot;
+         myEx[mySize] = ex;
+         mySize++;
+      }
+
+      void solve (int lo, int hi) {
+         for (int i=lo; i<hi; i++) {
+            EquilibriumAxialMuscle mat = myMats[i];
+            if (!mat.myBatchShared) {
+               try {
+                  mat.updateMuscleLengthForBatch (myL[i], myLdot[i], myEx[i]);
+               }
+               catch (RuntimeException e) {
+                  // leave the solve to computeF(), which will report any
+                  // error in the usual way
+                  mat.myBatchValid = false;
+               }
+            }
+         }
+      }
+
+      void clear() {
+         Arrays.fill (myMats, 0, mySize, null);
+         mySize = 0;
+      }
+   }
+
+   private ArrayList<Group> myGroups = new ArrayList<>();
+   private int myStamp;
+   private int myNumThreads = 1;
+   private ParallelLoop myLoop;
+
+   /**
+    * Creates a new, empty batch.
+    */
+   public EquilibriumMuscleBatch() {
+      myStamp = myNextStamp.getAndIncrement();
+   }
+
+   /**
+    * Queries the number of threads used by {@link #solve}.
+    *
+    * @return number of solve threads
+    */
+   public int getNumThreads() {
+      return myNumThreads;
+   }
+
+   /**
+    * Sets the number of threads used by {@link #solve}. The default value
+    * is 1.
+    *
+    * @param num number of solve threads
+    */
+   public void setNumThreads (int num) {
+      myNumThreads = Math.max (1, num);
+      if (myLoop != null) {
+         myLoop.setNumThreads (myNumThreads);
+      }
+   }
+
+   /**
+    * Removes all materials from this batch.
+    */
+   public void clear() {
+      for (Group g : myGroups) {
+         g.clear();
+      }
+      myStamp = myNextStamp.getAndIncrement();
+   }
+
+   /**
+    * Adds a material to this batch, along with the inputs that will be
+    * passed to its {@code computeF()} method.
+    *
+    * @param mat material to add
+    * @param l spring length
+    * @param ldot spring length derivative
+    * @param ex excitation
+    * @return {@code true} if the material was added
+    */
+   public boolean add (
+      EquilibriumAxialMuscle mat, double l, double ldot, double ex) {
+      if (mat.hasRigidTendon()) {
+         return false;
+      }
+      if (mat.myBatchStamp == myStamp) {
+         // already added; exclude it from the solve
+         mat.myBatchShared = true;
+         return false;
+      }
+      mat.myBatchStamp = myStamp;
+      mat.myBatchShared = false;
+      mat.myBatchValid = false;
+      getGroup (mat.getClass()).add (mat, l, ldot, ex);
+      return true;
+   }
+
+   private Group getGroup (Class<?> type) {
+      for (int k=0; k<myGroups.size(); k++) {
+         if (myGroups.get(k).myType == type) {
+            return myGroups.get(k);
+         }
+      }
+      Group g = new Group (type);
+      myGroups.add (g);
+      return g;
+   }
+
+   /**
+    * Returns the number of materials currently in this batch.
+    *
+    * @return number of materials
+    */
+   public int size() {
+      int size = 0;
+      for (Group g : myGroups) {
+         size += g.mySize;
+      }
+      return size;
+   }
+
+   /**
+    * Solves for the muscle lengths of all the materials in this batch.
+    */
+   public void solve() {
+      for (Group g : myGroups) {
+         if (myNumThreads > 1 && g.mySize > GRAIN_SIZE) {
+            if (myLoop == null) {
+               myLoop = new ParallelLoop ("MuscleBatch", myNumThreads);
+            }
+            myLoop.forEach (
+               0, g.mySize, GRAIN_SIZE, (lo, hi, w) -> g.solve (lo, hi));
+         }
+         else {
+            g.solve (0, g.mySize);
+         }
+      }
+   }
+
+   /**
+    * Shuts down any threads used by this batch. The batch can still be used
+    * afterwards.
+    */
+   public void dispose() {
+      if (myLoop != null) {
+         myLoop.dispose();
+      }
+   }
+}
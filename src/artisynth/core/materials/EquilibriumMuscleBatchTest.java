@@ -0,0 +1,170 @@
+package artisynth.core.materials;
+
+import java.util.ArrayList;
+
+import artisynth.core.mechmodels.MechModel;
+import artisynth.core.mechmodels.Muscle;
+import artisynth.core.mechmodels.Particle;
+import artisynth.core.mechmodels.PointSpringList;
+import artisynth.core.modelbase.ComponentState;
+import artisynth.core.util.TimeBase;
+import artisynth.core.workspace.RootModel;
+import maspack.solvers.SparseSolverId;
+import maspack.util.*;
+
+/**
+ * Checks that solving the muscle lengths of equilibrium muscles with an
+ * {@link EquilibriumMuscleBatch} gives exactly the same forces as solving
+ * them one at a time.
+ */
+public class EquilibriumMuscleBatchTest extends UnitTest {
+
+   // number of muscles of each type; more than the batch grain size so that
+   // the solves are actually divided among threads
+   static final int NUM_MUSCLES = 20;
+
+   EquilibriumAxialMuscle createMaterial (int i) {
+      double fmax = 50 + 5*i;
+      double lopt = 0.1 + 0.002*i;
+      double tslack = 0.2 - 0.001*i;
+      double penAng = 0.05*(i%4);
+      if (i%2 == 0) {
+         return new Millard2012AxialMuscle (fmax, lopt, tslack, penAng);
+      }
+      else {
+         return new Thelen2003AxialMuscle (fmax, lopt, tslack, penAng);
+      }
+   }
+
+   /**
+    * Creates a muscle that supports a particle hanging beneath a fixed
+    * particle.
+    */
+   Muscle addMuscle (
+      MechModel mech, PointSpringList<Muscle> list, String name,
+      double x, double len, double excitation) {
+      Particle p0 = new Particle (name+"_p0", 1.0, x, 0, 0);
+      p0.setDynamic (false);
+      Particle p1 = new Particle (name+"_p1", 0.5, x, 0, -len);
+      mech.addParticle (p0);
+      mech.addParticle (p1);
+      Muscle muscle = new Muscle (name);
+      muscle.setPoints (p0, p1);
+      muscle.setExcitation (excitation);
+      list.add (muscle);
+      return muscle;
+   }
+
+   RootModel createRoot (int nthreads, ArrayList<Muscle> muscles) {
+      MechModel mech = new MechModel ("mech");
+      // use a Java solver so that no native libraries are needed
+      mech.setMatrixSolver (SparseSolverId.SupernodalLDLT);
+      mech.setPointDamping (1.0);
+      mech.setNumMuscleThreads (nthreads);
+
+      PointSpringList<Muscle> list =
+         new PointSpringList<Muscle> (Muscle.class, "muscles", "m");
+      mech.add (list);
+      for (int i=0; i<2*NUM_MUSCLES; i++) {
+         Muscle muscle = addMuscle (
+            mech, list, "muscle"+i, 0.1*i, 0.28 + 0.003*i, 0.05 + 0.005*i);
+         muscle.setMaterial (createMaterial (i));
+         muscles.add (muscle);
+      }
+      // two muscles without materials of their own, which therefore share
+      // the material of their list
+      PointSpringList<Muscle> shared =
+         new PointSpringList<Muscle> (Muscle.class, "shared", "s");
+      shared.setMaterial (new Millard2012AxialMuscle (80, 0.11, 0.19, 0.1));
+      mech.add (shared);
+      for (int i=0; i<2; i++) {
+         Muscle muscle = addMuscle (
+            mech, shared, "shared"+i, -0.1*(i+1), 0.27 + 0.02*i, 0.1 + 0.1*i);
+         muscle.setMaterial (null);
+         muscles.add (muscle);
+      }
+
+      RootModel root = new RootModel ("root");
+      root.setMaxStepSize (0.01);
+      root.addModel (mech);
+      return root;
+   }
+
+   void advance (
+      RootModel root, ArrayList<Muscle> muscles,
+      ArrayList<ComponentState> states, ArrayList<double[]> forces,
+      int nsteps) {
+      root.initialize (0);
+      double h = root.getMaxStepSize();
+      double t0 = 0;
+      for (int k=0; k<nsteps; k++) {
+         double t1 = TimeBase.round (t0+h);
+         root.advance (t0, t1, 0);
+         states.add (root.getState (/*annotated=*/false));
+         double[] f = new double[muscles.size()];
+         for (int i=0; i<muscles.size(); i++) {
+            f[i] = muscles.get(i).getForceNorm();
+         }
+         forces.add (f);
+         t0 = t1;
+      }
+   }
+
+   public void test() {
+      int nsteps = 50;
+
+      ArrayList<Muscle> serialMuscles = new ArrayList<>();
+      ArrayList<ComponentState> serialStates = new ArrayList<>();
+      ArrayList<double[]> serialForces = new ArrayList<>();
+      advance (createRoot (1, serialMuscles), serialMuscles,
+               serialStates, serialForces, nsteps);
+
+      ArrayList<Muscle> muscles = new ArrayList<>();
+      ArrayList<ComponentState> states = new ArrayList<>();
+      ArrayList<double[]> forces = new ArrayList<>();
+      advance (createRoot (4, muscles), muscles, states, forces, nsteps);
+
+      for (int k=0; k<nsteps; k++) {
+         double[] f = forces.get(k);
+         double[] fchk = serialForces.get(k);
+         for (int i=0; i<f.length; i++) {
+            if (Double.doubleToLongBits (f[i]) !=
+                Double.doubleToLongBits (fchk[i])) {
+               throw new TestException (
+                  "force of " + muscles.get(i).getName() + " at step " + k +
+                  " is " + f[i] + ", expected " + fchk[i]);
+            }
+         }
+         StringBuilder msg = new StringBuilder();
+         if (!states.get(k).equals (serialStates.get(k), msg)) {
+            throw new TestException ("states differ at step " + k + ": " + msg);
+         }
+      }
+      // make sure the muscles are actually under tension
+      double[] f = serialForces.get(nsteps-1);
+      for (int i=0; i<f.length; i++) {
+         check ("no force in " + muscles.get(i).getName(), f[i] > 0);
+      }
+      // make sure the muscles were actually solved by the batch, except for
+      // the shared material, which should have been excluded
+      for (Muscle muscle : muscles) {
+         EquilibriumAxialMuscle mat =
+            (EquilibriumAxialMuscle)muscle.getEffectiveMaterial();
+         boolean shared = (muscle.getMaterial() == null);
+         check (muscle.getName() + " not added to batch",
+                mat.myBatchStamp != 0);
+         checkEquals (muscle.getName() + " shared", mat.myBatchShared, shared);
+      }
+      for (Muscle muscle : serialMuscles) {
+         EquilibriumAxialMuscle mat =
+            (EquilibriumAxialMuscle)muscle.getEffectiveMaterial();
+         check (muscle.getName() + " added to batch in serial model",
+                mat.myBatchStamp == 0);
+      }
+   }
+
+   public static void main (String[] args) {
+      EquilibriumMuscleBatchTest tester = new EquilibriumMuscleBatchTest();
+      tester.runtest();
+   }
+}
@@ -19,7 +19,13 @@ public class IncompNeoHookeanMaterial extends IncompressibleMaterialBase {
    PropertyMode myGMode = PropertyMode.Inherited;
    ScalarFieldComponent myGField = null;
 
-   private SymmetricMatrix3d myB;
+   // scratch storage, allocated per thread
+   private static class Workspace {
+      SymmetricMatrix3d B = new SymmetricMatrix3d();
+   }
+
+   private static final ThreadLocal<Workspace> myWorkspace =
+      ThreadLocal.withInitial (Workspace::new);
 
    static {
       myProps.addInheritableWithField (
@@ -31,11 +37,9 @@ public class IncompNeoHookeanMaterial extends IncompressibleMaterialBase {
    }
 
    public IncompNeoHookeanMaterial (){
-      myB = new SymmetricMatrix3d();
    }
 
    public IncompNeoHookeanMaterial (double E, double kappa) {
-      myB = new SymmetricMatrix3d();
       setShearModulus (E);
       setBulkModulus (kappa);
    }
@@ -81,27 +85,28 @@ public class IncompNeoHookeanMaterial extends IncompressibleMaterialBase {
    public void computeDevStressAndTangent (
       SymmetricMatrix3d sigma, Matrix6d D, DeformedPoint def, 
       Matrix3d Q, double excitation, MaterialStateObject state) {
+      SymmetricMatrix3d B = myWorkspace.get().B;
       
       double J = def.getDetF();
 
-      computeLeftCauchyGreen (myB,def);
+      computeLeftCauchyGreen (B,def);
 
       double G = getShearModulus (def);
       double muJ = G/Math.pow(J, 5.0/3.0);
-      double diagTerm = -muJ*(myB.m00 + myB.m11 + myB.m22)/3.0;
+      double diagTerm = -muJ*(B.m00 + B.m11 + B.m22)/3.0;
 
-      sigma.scale (muJ, myB);
+      sigma.scale (muJ, B);
       sigma.m00 += diagTerm;
       sigma.m11 += diagTerm;
       sigma.m22 += diagTerm;
 
       if (D != null) {
-         double Ib = myB.m00+myB.m11+myB.m22;
+         double Ib = B.m00+B.m11+B.m22;
          D.setZero();
          TensorUtils.addScaledIdentityProduct (D, 2/9.0*muJ*Ib);
          TensorUtils.addScaledIdentity (D, 2/3.0*muJ*Ib);
          TensorUtils.addSymmetricTensorProduct (
-            D, -2/3.0*muJ, myB, SymmetricMatrix3d.IDENTITY);
+            D, -2/3.0*muJ, B, SymmetricMatrix3d.IDENTITY);
          D.setLowerToUpper();         
       }
    }
@@ -121,7 +126,6 @@ public class IncompNeoHookeanMaterial extends IncompressibleMaterialBase {
 
    public IncompNeoHookeanMaterial clone() {
       IncompNeoHookeanMaterial mat = (IncompNeoHookeanMaterial)super.clone();
-      mat.myB = new SymmetricMatrix3d();
       return mat;
    }
 
@@ -72,13 +72,18 @@ public abstract class LinearMaterialBase extends FemMaterial {
       return myCorotatedMode;
    }
 
-   private SVDecomposition3d mySVD = null;
+   // scratch storage, allocated per thread
+   private static class Workspace {
+      SVDecomposition3d svd = new SVDecomposition3d();
+   }
+
+   private static final ThreadLocal<Workspace> myWorkspace =
+      ThreadLocal.withInitial (Workspace::new);
+
    protected RotationMatrix3d computeRotation(Matrix3d F, SymmetricMatrix3d P) {
-      if (mySVD == null) {
-         mySVD = new SVDecomposition3d();
-      }
+      SVDecomposition3d svd = myWorkspace.get().svd;
       RotationMatrix3d R = new RotationMatrix3d();
-      mySVD.polarDecomposition (R, P, F);
+      svd.polarDecomposition (R, P, F);
       return R;
    }
    
@@ -14,6 +14,7 @@ import maspack.numerics.*;
 import maspack.matrix.*;
 import maspack.function.*;
 import maspack.interpolation.CubicHermiteSpline1d;
+import maspack.interpolation.CubicHermiteTable1d;
 import maspack.interpolation.CubicHermiteSpline1d.Knot;
 
 /**
@@ -51,6 +52,13 @@ public class Millard2012AxialMuscle extends EquilibriumAxialMuscle
    CubicHermiteSpline1d myTendonForceLengthCurve;
    CubicHermiteSpline1d myForceVelocityCurve;
 
+   // flattened copies of the curves used for evaluation, which are
+   // recreated whenever the corresponding curve changes
+   CubicHermiteTable1d myActiveForceLengthTable;
+   CubicHermiteTable1d myPassiveForceLengthTable;
+   CubicHermiteTable1d myTendonForceLengthTable;
+   CubicHermiteTable1d myForceVelocityTable;
+
    // from OpenSim Millard2012EquilibriumMuscle:
 
    public static double DEFAULT_MAX_PENNATION_ANGLE = Math.acos(0.1);
@@ -110,32 +118,52 @@ public class Millard2012AxialMuscle extends EquilibriumAxialMuscle
       myMuscleLengthPrev = myMuscleLength;
    }
 
+   /**
+    * Returns a table for evaluating a curve, creating a new one if
+    * the existing table is null or out of date.
+    */
+   private static CubicHermiteTable1d updateTable (
+      CubicHermiteTable1d table, CubicHermiteSpline1d curve) {
+      if (table == null || !table.isCurrent (curve)) {
+         table = new CubicHermiteTable1d (curve);
+      }
+      return table;
+   }
+
    /**
     * {@inheritDoc}
     */
    protected double computeActiveForceLength (double ln) {
-      return myActiveForceLengthCurve.evalY (ln);
+      myActiveForceLengthTable =
+         updateTable (myActiveForceLengthTable, myActiveForceLengthCurve);
+      return myActiveForceLengthTable.evalY (ln);
    }
 
    /**
     * {@inheritDoc}
     */
    protected double computeActiveForceLengthDeriv (double ln) {
-      return myActiveForceLengthCurve.evalDy (ln);
+      myActiveForceLengthTable =
+         updateTable (myActiveForceLengthTable, myActiveForceLengthCurve);
+      return myActiveForceLengthTable.evalDy (ln);
    }
    
    /**
     * {@inheritDoc}
     */
    protected double computePassiveForceLength (double ln) {
-      return myPassiveForceLengthCurve.evalY (ln);
+      myPassiveForceLengthTable =
+         updateTable (myPassiveForceLengthTable, myPassiveForceLengthCurve);
+      return myPassiveForceLengthTable.evalY (ln);
    }
 
    /**
     * {@inheritDoc}
     */
    protected double computePassiveForceLengthDeriv (double ln) {
-      return myPassiveForceLengthCurve.evalDy (ln);
+      myPassiveForceLengthTable =
+         updateTable (myPassiveForceLengthTable, myPassiveForceLengthCurve);
+      return myPassiveForceLengthTable.evalDy (ln);
    }
 
    /**
@@ -146,7 +174,9 @@ public class Millard2012AxialMuscle extends EquilibriumAxialMuscle
          return 0;
       }
       else {
-         return myForceVelocityCurve.evalY (vn);
+         myForceVelocityTable =
+            updateTable (myForceVelocityTable, myForceVelocityCurve);
+         return myForceVelocityTable.evalY (vn);
       }
    }
 
@@ -158,7 +188,9 @@ public class Millard2012AxialMuscle extends EquilibriumAxialMuscle
          return 0;
       }
       else {
-         return myForceVelocityCurve.evalDy (vn);
+         myForceVelocityTable =
+            updateTable (myForceVelocityTable, myForceVelocityCurve);
+         return myForceVelocityTable.evalDy (vn);
       }
    }
 
@@ -166,14 +198,18 @@ public class Millard2012AxialMuscle extends EquilibriumAxialMuscle
     * {@inheritDoc}
     */
    protected double computeTendonForce (double tln) {
-      return myTendonForceLengthCurve.evalY (tln);
+      myTendonForceLengthTable =
+         updateTable (myTendonForceLengthTable, myTendonForceLengthCurve);
+      return myTendonForceLengthTable.evalY (tln);
    }
 
    /**
     * {@inheritDoc}
     */
    protected double computeTendonForceDeriv (double tln) {
-      return myTendonForceLengthCurve.evalDy (tln);
+      myTendonForceLengthTable =
+         updateTable (myTendonForceLengthTable, myTendonForceLengthCurve);
+      return myTendonForceLengthTable.evalDy (tln);
    }
 
    public static CubicHermiteSpline1d getDefaultActiveForceLengthCurve() {
@@ -47,12 +47,16 @@ public class MooneyRivlinMaterial extends IncompressibleMaterialBase {
    ScalarFieldComponent myC20Field = null;
    ScalarFieldComponent myC02Field = null;
 
-   private SymmetricMatrix3d myB;
-   private SymmetricMatrix3d myB2;
-   private SymmetricMatrix3d myTmp;
+   // scratch storage, allocated per thread
+   private static class Workspace {
+      SymmetricMatrix3d B = new SymmetricMatrix3d();
+      SymmetricMatrix3d B2 = new SymmetricMatrix3d();
+      SymmetricMatrix3d tmp = new SymmetricMatrix3d();
+      double[] phiVals = new double[3];
+   }
 
-   // storage for phi and it's first two derivatives
-   private double[] myPhiVals = new double[3];
+   private static final ThreadLocal<Workspace> myWorkspace =
+      ThreadLocal.withInitial (Workspace::new);
 
    static {
       myProps.addInheritableWithField (
@@ -76,9 +80,6 @@ public class MooneyRivlinMaterial extends IncompressibleMaterialBase {
    }
 
    public MooneyRivlinMaterial (){
-      myB = new SymmetricMatrix3d();
-      myB2 = new SymmetricMatrix3d();
-      myTmp = new SymmetricMatrix3d();
    }
 
    public MooneyRivlinMaterial (
@@ -317,9 +318,10 @@ public class MooneyRivlinMaterial extends IncompressibleMaterialBase {
    }
 
    public double computeDeviatoricEnergy (Matrix3dBase Cdev) {
+      SymmetricMatrix3d tmp = myWorkspace.get().tmp;
       double I1 = Cdev.trace();
-      myTmp.mulTransposeLeft (Cdev);
-      double I2 = 0.5*(I1*I1 - myTmp.trace());
+      tmp.mulTransposeLeft (Cdev);
+      double I2 = 0.5*(I1*I1 - tmp.trace());
       double I1_3 = I1-3;
       double I2_3 = I2-3;
       double W = (myC10*I1_3 + myC01*I2_3 + myC11*I1_3*I2_3 +
@@ -330,6 +332,11 @@ public class MooneyRivlinMaterial extends IncompressibleMaterialBase {
    public void computeDevStressAndTangent (
       SymmetricMatrix3d sigma, Matrix6d D, DeformedPoint def, 
       Matrix3d Q, double excitation, MaterialStateObject state) {   
+      Workspace ws = myWorkspace.get();
+      SymmetricMatrix3d B = ws.B;
+      SymmetricMatrix3d B2 = ws.B2;
+      SymmetricMatrix3d tmp = ws.tmp;
+      double[] phiVals = ws.phiVals;
 
       // Methods and naming conventions follow the paper "Finite element
       // implementation of incompressible, isotropic hyperelasticity", by
@@ -338,14 +345,14 @@ public class MooneyRivlinMaterial extends IncompressibleMaterialBase {
 
       double J = def.getDetF();
 
-      computePhiVals (myPhiVals, J);
-      double phi = myPhiVals[0];
-      double dphi = myPhiVals[1];
+      computePhiVals (phiVals, J);
+      double phi = phiVals[0];
+      double dphi = phiVals[1];
 
-      computeLeftCauchyGreen(myB,def);
+      computeLeftCauchyGreen(B,def);
       // scale to compute deviatoric part; use phi in place of pow(J,-2/3);
-      myB.scale (phi);
-      myB2.mulTransposeLeft (myB); // compute B*B
+      B.scale (phi);
+      B2.mulTransposeLeft (B); // compute B*B
 
       double c10 = getC10(def);
       double c01 = getC01(def);
@@ -353,14 +360,14 @@ public class MooneyRivlinMaterial extends IncompressibleMaterialBase {
       double c20 = getC20(def);
       double c02 = getC02(def);
       
-      double I1 = myB.trace();
-      double I2 = 0.5*(I1*I1 - myB2.trace());
+      double I1 = B.trace();
+      double I2 = 0.5*(I1*I1 - B2.trace());
 
       double W1 = c10 + c11*(I2-3) + c20*2*(I1-3);
       double W2 = c01 + c11*(I1-3) + c02*2*(I2-3);
 
-      sigma.scale (W1 + W2*I1, myB);
-      sigma.scaledAdd (-W2, myB2, sigma);
+      sigma.scale (W1 + W2*I1, B);
+      sigma.scaledAdd (-W2, B2, sigma);
 
       double dev = (dphi/phi)*sigma.trace();
       sigma.scale (2.0/J);
@@ -371,7 +378,7 @@ public class MooneyRivlinMaterial extends IncompressibleMaterialBase {
       if (D != null) {
 
          double Ji = 1.0/J;
-         double ddphi = myPhiVals[2];
+         double ddphi = phiVals[2];
 
          double W11 = 2*c20;
          double W12 = c11;
@@ -402,15 +409,15 @@ public class MooneyRivlinMaterial extends IncompressibleMaterialBase {
          TensorUtils.addSymmetricTensorProduct (
             D, J*r, sigma, SymmetricMatrix3d.IDENTITY);
 
-         TensorUtils.addTensorProduct4 (D, w1*4.0*Ji, myB);
-         TensorUtils.addTensorProduct (D, w2*4.0*Ji, myB);
-         TensorUtils.addSymmetricTensorProduct (D, w3*4.0*Ji, myB, myB2);
-         TensorUtils.addTensorProduct (D, w4*4.0*Ji, myB2);
+         TensorUtils.addTensorProduct4 (D, w1*4.0*Ji, B);
+         TensorUtils.addTensorProduct (D, w2*4.0*Ji, B);
+         TensorUtils.addSymmetricTensorProduct (D, w3*4.0*Ji, B, B2);
+         TensorUtils.addTensorProduct (D, w4*4.0*Ji, B2);
 
-         myTmp.scale (wc1, myB);  
-         myTmp.scaledAdd (wc2, myB2);
+         tmp.scale (wc1, B);  
+         tmp.scaledAdd (wc2, B2);
          TensorUtils.addSymmetricTensorProduct (
-            D, 2*r,myTmp,SymmetricMatrix3d.IDENTITY);
+            D, 2*r,tmp,SymmetricMatrix3d.IDENTITY);
 
          D.setLowerToUpper();
       }
@@ -435,9 +442,6 @@ public class MooneyRivlinMaterial extends IncompressibleMaterialBase {
 
    public MooneyRivlinMaterial clone() {
       MooneyRivlinMaterial mat = (MooneyRivlinMaterial)super.clone();
-      mat.myB = new SymmetricMatrix3d();
-      mat.myB2 = new SymmetricMatrix3d();
-      mat.myTmp = new SymmetricMatrix3d();
       return mat;
    }
 
@@ -22,7 +22,14 @@ public class NeoHookeanMaterial extends FemMaterial {
    PropertyMode myNuMode = PropertyMode.Inherited;
    PropertyMode myEMode = PropertyMode.Inherited;
 
-   private SymmetricMatrix3d myB;
+   // scratch storage, allocated per thread
+   private static class Workspace {
+      SymmetricMatrix3d B = new SymmetricMatrix3d();
+   }
+
+   private static final ThreadLocal<Workspace> myWorkspace =
+      ThreadLocal.withInitial (Workspace::new);
+
    //private SymmetricMatrix3d myB2;
 
    static {
@@ -37,7 +44,6 @@ public class NeoHookeanMaterial extends FemMaterial {
    }
 
    public NeoHookeanMaterial (){
-      myB = new SymmetricMatrix3d();
       //myB2 = new SymmetricMatrix3d();
    }
    
@@ -103,6 +109,7 @@ public class NeoHookeanMaterial extends FemMaterial {
    public void computeStressAndTangent (
       SymmetricMatrix3d sigma, Matrix6d D, DeformedPoint def, 
       Matrix3d Q, double excitation, MaterialStateObject state) {
+      SymmetricMatrix3d B = myWorkspace.get().B;
 
       double J = def.getDetF();
 
@@ -112,9 +119,9 @@ public class NeoHookeanMaterial extends FemMaterial {
       double lam = (E*myNu)/((1-2*myNu)*(1+myNu));
       double mu = G;
       
-      computeLeftCauchyGreen (myB,def);
+      computeLeftCauchyGreen (B,def);
 
-      sigma.scale (mu/J, myB);
+      sigma.scale (mu/J, B);
       double diagTerm = (lam*Math.log(J)-mu)/J;
       sigma.m00 += diagTerm;
       sigma.m11 += diagTerm;
@@ -144,7 +151,6 @@ public class NeoHookeanMaterial extends FemMaterial {
 
    public NeoHookeanMaterial clone() {
       NeoHookeanMaterial mat = (NeoHookeanMaterial)super.clone();
-      mat.myB = new SymmetricMatrix3d();
       //mat.myB2 = new SymmetricMatrix3d();
       return mat;
    }
@@ -60,10 +60,16 @@ public class OgdenMaterial extends IncompressibleMaterialBase {
    ScalarFieldComponent myAlpha5Field = null;
    ScalarFieldComponent myAlpha6Field = null;
 
-   private SymmetricMatrix3d myB;
-   private SymmetricMatrix3d myB2;
-   private SymmetricMatrix3d myTmp;
-   
+   // scratch storage, allocated per thread
+   private static class Workspace {
+      SymmetricMatrix3d B = new SymmetricMatrix3d();
+      SymmetricMatrix3d B2 = new SymmetricMatrix3d();
+      SymmetricMatrix3d tmp = new SymmetricMatrix3d();
+   }
+
+   private static final ThreadLocal<Workspace> myWorkspace =
+      ThreadLocal.withInitial (Workspace::new);
+
    static {
       myProps.addInheritableWithField (
          "Alpha1:Inherited", "Alpha1", DEFAULT_ALPHA1);
@@ -96,9 +102,6 @@ public class OgdenMaterial extends IncompressibleMaterialBase {
    }
 
    public OgdenMaterial () {
-      myB   = new SymmetricMatrix3d();
-      myB2  = new SymmetricMatrix3d();
-      myTmp = new SymmetricMatrix3d();
    }
    
    public OgdenMaterial (double[] mu, double[] alpha, double kappa) {
@@ -520,13 +523,17 @@ public class OgdenMaterial extends IncompressibleMaterialBase {
    public void computeDevStressAndTangent (
       SymmetricMatrix3d sigma, Matrix6d D, DeformedPoint def, 
       Matrix3d Q, double excitation, MaterialStateObject state) {
+      Workspace ws = myWorkspace.get();
+      SymmetricMatrix3d B = ws.B;
+      SymmetricMatrix3d B2 = ws.B2;
+      SymmetricMatrix3d tmp = ws.tmp;
 
       double J = def.getDetF();
 
       sigma.setZero();
 
       // Calculate Deviatoric left Cauchy-Green tensor
-      computeLeftCauchyGreen(myB,def);
+      computeLeftCauchyGreen(B,def);
 
       Vector3d principalStretch   = new Vector3d();
       Vector3d principalStretch2  = new Vector3d();
@@ -550,7 +557,7 @@ public class OgdenMaterial extends IncompressibleMaterialBase {
       alpha[5] = getAlpha6(def);
       
       // Calculate principal stretches and principal directions
-      myB.getEigenValues(principalStretch2, principalDirection);
+      B.getEigenValues(principalStretch2, principalDirection);
       for ( int i=0; i<3; i++) {
          principalStretch.set(i, Math.sqrt(principalStretch2.get(i)) );
       }
@@ -579,7 +586,7 @@ public class OgdenMaterial extends IncompressibleMaterialBase {
          principalStretchDevPow = new double[3][6];
 
          // Calculate square of B
-         myB2.mulTransposeLeft(myB);
+         B2.mulTransposeLeft(B);
 
          // Calculate 1st and 3rd strain invariants
          double I1 = (principalStretch2.get(0) +
@@ -655,9 +662,9 @@ public class OgdenMaterial extends IncompressibleMaterialBase {
                   ( principalStretch2.get(i) - principalStretch2.get(k) );
 
                // the matrix mi - Eq. 2.15 of Simo and Taylor (1991)
-               ma.set(myB2);
-               ma.scaledAdd (-principalStretch2.get(k), myB);
-               ma.scaledAdd (-principalStretch2.get(j), myB);
+               ma.set(B2);
+               ma.scaledAdd (-principalStretch2.get(k), B);
+               ma.scaledAdd (-principalStretch2.get(j), B);
                ma.scaledAdd ( principalStretch2.get(j) * principalStretch2.get(k), 
                               SymmetricMatrix3d.IDENTITY);
                ma.scale (1.0 / Di);
@@ -674,23 +681,21 @@ public class OgdenMaterial extends IncompressibleMaterialBase {
                   }
                }
                // Calculate dgm term in Eq 2.68 of Simo and Taylor (1991)
-               TensorUtils.addTensorProduct4 (D, 2.0 * beta / J / Di, myB);
-               TensorUtils.addTensorProduct  (D, -2.0 * beta / J / Di, myB);
+               TensorUtils.addTensorProduct4 (D, 2.0 * beta / J / Di, B);
+               TensorUtils.addTensorProduct  (D, -2.0 * beta / J / Di, B);
                TensorUtils.addScaledIdentityProduct (D, I3 * 2.0 * beta / J / Di / 
                                                      principalStretch2.get(i));
                TensorUtils.addScaledIdentity (D, -I3 * 2.0 * beta / J / Di / 
                                               principalStretch2.get(i));
 
-
                TensorUtils.addSymmetricTensorProduct (
-                  D, 2.0 * beta / J / Di * principalStretch2.get(i), myB, ma);
+                  D, 2.0 * beta / J / Di * principalStretch2.get(i), B, ma);
                TensorUtils.addTensorProduct  (D, -1.0 * beta / J / Di * Dpi * 
                                               principalStretch.get(i), ma);
                TensorUtils.addSymmetricTensorProduct (
                   D, -2.0 * beta / J / Di * I3 / principalStretch2.get(i), 
                   SymmetricMatrix3d.IDENTITY, ma);
 
-                        
                for ( int n=0; n<3; n++) {
                   j = ( n + 1 ) % 3;              
                   k = ( j + 1 ) % 3; 
@@ -699,9 +704,9 @@ public class OgdenMaterial extends IncompressibleMaterialBase {
                      ( principalStretch2.get(n) - principalStretch2.get(k) );
                     
                   // the matrix mi - Eq. 2.15 of Simo and Taylor (1991)
-                  mb.set(myB2);
-                  mb.scaledAdd (-principalStretch2.get(k), myB);
-                  mb.scaledAdd (-principalStretch2.get(j), myB);
+                  mb.set(B2);
+                  mb.scaledAdd (-principalStretch2.get(k), B);
+                  mb.scaledAdd (-principalStretch2.get(j), B);
                   mb.scaledAdd ( principalStretch2.get(j)*principalStretch2.get(k), 
                                  SymmetricMatrix3d.IDENTITY);
                   mb.scale (1.0 / Di);
@@ -801,22 +806,22 @@ public class OgdenMaterial extends IncompressibleMaterialBase {
             }
               
             // the matrix mi - Eq. 2.15 of Simo and Taylor (1991)
-            ma.set (myB2);
-            ma.scaledAdd (-principalStretch2.get(k), myB);
-            ma.scaledAdd (-principalStretch2.get(j), myB);
+            ma.set (B2);
+            ma.scaledAdd (-principalStretch2.get(k), B);
+            ma.scaledAdd (-principalStretch2.get(j), B);
             ma.scaledAdd ( principalStretch2.get(j) * principalStretch2.get(k),
                            SymmetricMatrix3d.IDENTITY);
             ma.scale (1.0 / Di);
 
             // Calculate dgm term in Eq. 2.48b and Eq 2.70 of Simo and Taylor (1991)
-            TensorUtils.addTensorProduct4 (D, 2.0 * (beta3-beta1) / J / Di, myB);
-            TensorUtils.addTensorProduct  (D, -2.0 * (beta3-beta1) / J / Di, myB);
+            TensorUtils.addTensorProduct4 (D, 2.0 * (beta3-beta1) / J / Di, B);
+            TensorUtils.addTensorProduct  (D, -2.0 * (beta3-beta1) / J / Di, B);
             TensorUtils.addScaledIdentityProduct (
                D, 2.0 * (beta3-beta1) / J * I3 / Di / principalStretch2.get(i));
             TensorUtils.addScaledIdentity (
                D, -2.0 * (beta3-beta1) / J * I3 / Di / principalStretch2.get(i));
             TensorUtils.addSymmetricTensorProduct (
-               D, 2.0 * (beta3-beta1) / J / Di * principalStretch2.get(i),myB,ma);
+               D, 2.0 * (beta3-beta1) / J / Di * principalStretch2.get(i),B,ma);
             TensorUtils.addTensorProduct  (
                D, -1.0 * (beta3-beta1) / J / Di * Dpi * principalStretch.get(i), ma);
             TensorUtils.addSymmetricTensorProduct (
@@ -825,11 +830,11 @@ public class OgdenMaterial extends IncompressibleMaterialBase {
 
             // Calculate other terms in Eq 2.70 of Simo and Taylor (1991)
             TensorUtils.addScaledIdentity (D, -2.0 * beta1 / J);
-            myTmp.set (SymmetricMatrix3d.IDENTITY);
-            myTmp.scaledAdd (-1.0, ma);
-            TensorUtils.addTensorProduct  (D, g11 / J, myTmp);
+            tmp.set (SymmetricMatrix3d.IDENTITY);
+            tmp.scaledAdd (-1.0, ma);
+            TensorUtils.addTensorProduct  (D, g11 / J, tmp);
             TensorUtils.addTensorProduct  (D, g33 / J, ma);
-            TensorUtils.addSymmetricTensorProduct (D, g13 / J, ma, myTmp);
+            TensorUtils.addSymmetricTensorProduct (D, g13 / J, ma, tmp);
          }
          D.setLowerToUpper();
       }
@@ -851,7 +856,6 @@ public class OgdenMaterial extends IncompressibleMaterialBase {
 
    public OgdenMaterial clone() {
       OgdenMaterial mat = (OgdenMaterial)super.clone();
-      mat.myB = new SymmetricMatrix3d();
       return mat;
    }
 
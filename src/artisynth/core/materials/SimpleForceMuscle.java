@@ -29,8 +29,14 @@ public class SimpleForceMuscle extends MuscleMaterial {
    protected PropertyMode myMaxStressMode = PropertyMode.Inherited;
    protected ScalarFieldComponent myMaxStressField = null;
 
-   protected Vector3d myTmp = new Vector3d();
-   protected Matrix3d myMat = new Matrix3d();
+   // scratch storage, allocated per thread
+   private static class Workspace {
+      Vector3d tmp = new Vector3d();
+      Matrix3d mat = new Matrix3d();
+   }
+
+   private static final ThreadLocal<Workspace> myWorkspace =
+      ThreadLocal.withInitial (Workspace::new);
 
    // Set this true to keep the tangent matrix continuous (and symmetric) at
    // lam = lamOpt, at the expense of slightly negative forces for lam < lamOpt
@@ -185,6 +191,8 @@ public class SimpleForceMuscle extends MuscleMaterial {
    public void computeStressAndTangent (
       SymmetricMatrix3d sigma, Matrix6d D, DeformedPoint def, 
       Vector3d dir0, double excitation, MaterialStateObject state) {
+      Workspace ws = myWorkspace.get();
+      Matrix3d mat = ws.mat;
 
       // Methods and naming conventions follow the paper "Finite element
       // implementation of incompressible, isotropic hyperelasticity", by
@@ -200,7 +208,7 @@ public class SimpleForceMuscle extends MuscleMaterial {
          return;
       }
       
-      Vector3d a = myTmp;
+      Vector3d a = ws.tmp;
       def.getF().mul (a, dir0);
       double lam = a.norm();
       if (lam == 0.0) {
@@ -229,11 +237,11 @@ public class SimpleForceMuscle extends MuscleMaterial {
          //
          // compute -2/3 (dev sigma (X) I)' - 4 wa/(3J) (a (X) a (X) I)'
          //
-         myMat.outerProduct (a, a);
-         myMat.scale (2*wa/J); // will be scaled again by -2/3 below
-         addStress (myMat, J, I4, W4, a);
-         myMat.scale (-2/3.0);
-         TensorUtils.addSymmetricIdentityProduct (D, myMat);
+         mat.outerProduct (a, a);
+         mat.scale (2*wa/J); // will be scaled again by -2/3 below
+         addStress (mat, J, I4, W4, a);
+         mat.scale (-2/3.0);
+         TensorUtils.addSymmetricIdentityProduct (D, mat);
          TensorUtils.addScaledIdentity (D, 4/3.0*w0/J);
          TensorUtils.addScaledIdentityProduct (D, 4/9.0*(wa-w0)/J);
          
@@ -261,8 +269,6 @@ public class SimpleForceMuscle extends MuscleMaterial {
 
    public SimpleForceMuscle clone() {
       SimpleForceMuscle mat = (SimpleForceMuscle)super.clone();
-      mat.myTmp = new Vector3d();
-      mat.myMat = new Matrix3d();
       return mat;
    }
 
@@ -33,8 +33,14 @@ public class SimpleMuscle extends MuscleMaterial {
    //protected ScalarFieldPointFunction myMaxStressFunction = null;
    protected ScalarFieldComponent myMaxStressField = null;
 
-   protected Vector3d myTmp = new Vector3d();
-   protected Matrix3d myMat = new Matrix3d();
+   // scratch storage, allocated per thread
+   private static class Workspace {
+      Vector3d tmp = new Vector3d();
+      Matrix3d mat = new Matrix3d();
+   }
+
+   private static final ThreadLocal<Workspace> myWorkspace =
+      ThreadLocal.withInitial (Workspace::new);
 
    // Set this true to keep the tangent matrix continuous (and symmetric) at
    // lam = lamOpt, at the expense of slightly negative forces for lam < lamOpt
@@ -189,6 +195,8 @@ public class SimpleMuscle extends MuscleMaterial {
    public void computeStressAndTangent (
       SymmetricMatrix3d sigma, Matrix6d D, DeformedPoint def, 
       Vector3d dir0, double excitation, MaterialStateObject state) {
+      Workspace ws = myWorkspace.get();
+      Matrix3d mat = ws.mat;
 
       // Methods and naming conventions follow the paper "Finite element
       // implementation of incompressible, isotropic hyperelasticity", by
@@ -201,7 +209,7 @@ public class SimpleMuscle extends MuscleMaterial {
          return;
       }
 
-      Vector3d dir = myTmp;
+      Vector3d dir = ws.tmp;
       def.getF().mul (dir, dir0);
       double mag = dir.norm();
       dir.scale (1/mag);
@@ -219,11 +227,11 @@ public class SimpleMuscle extends MuscleMaterial {
          //
          // compute -2/3 (dev sigma (X) I)' - 4 wa/(3J) (dir (X) dir (X) I)'
          //
-         myMat.outerProduct (dir, dir);
-         myMat.scale (2*wa/J); // will be scaled again by -2/3 below
-         addStress (myMat, J, I4, W4, dir);
-         myMat.scale (-2/3.0);
-         TensorUtils.addSymmetricIdentityProduct (D, myMat);
+         mat.outerProduct (dir, dir);
+         mat.scale (2*wa/J); // will be scaled again by -2/3 below
+         addStress (mat, J, I4, W4, dir);
+         mat.scale (-2/3.0);
+         TensorUtils.addSymmetricIdentityProduct (D, mat);
          TensorUtils.addScaledIdentity (D, 4/3.0*w0/J);
          TensorUtils.addScaledIdentityProduct (D, 4/9.0*(wa-w0)/J);
          
@@ -251,8 +259,6 @@ public class SimpleMuscle extends MuscleMaterial {
 
    public SimpleMuscle clone() {
       SimpleMuscle mat = (SimpleMuscle)super.clone();
-      mat.myTmp = new Vector3d();
-      mat.myMat = new Matrix3d();
       return mat;
    }
 
@@ -272,6 +278,4 @@ public class SimpleMuscle extends MuscleMaterial {
       }
    }
 
-
-   
 }
@@ -29,8 +29,14 @@ public class StVenantKirchoffMaterial extends FemMaterial {
    PropertyMode myNuMode = PropertyMode.Inherited;
    PropertyMode myEMode = PropertyMode.Inherited;
 
-   private SymmetricMatrix3d myB;
-   private SymmetricMatrix3d myB2;
+   // scratch storage, allocated per thread
+   private static class Workspace {
+      SymmetricMatrix3d B = new SymmetricMatrix3d();
+      SymmetricMatrix3d B2 = new SymmetricMatrix3d();
+   }
+
+   private static final ThreadLocal<Workspace> myWorkspace =
+      ThreadLocal.withInitial (Workspace::new);
 
    static {
       myProps.addInheritableWithField (
@@ -44,8 +50,6 @@ public class StVenantKirchoffMaterial extends FemMaterial {
    }
 
    public StVenantKirchoffMaterial (){
-      myB = new SymmetricMatrix3d();
-      myB2 = new SymmetricMatrix3d();
    }
 
    public StVenantKirchoffMaterial (double E, double nu) {
@@ -113,6 +117,9 @@ public class StVenantKirchoffMaterial extends FemMaterial {
    public void computeStressAndTangent (
       SymmetricMatrix3d sigma, Matrix6d D, DeformedPoint def, 
       Matrix3d Q, double excitation, MaterialStateObject state) {
+      Workspace ws = myWorkspace.get();
+      SymmetricMatrix3d B = ws.B;
+      SymmetricMatrix3d B2 = ws.B2;
 
       double J = def.getDetF();
 
@@ -123,19 +130,19 @@ public class StVenantKirchoffMaterial extends FemMaterial {
       double lam = (E*myNu)/((1-2*myNu)*(1+myNu));
       double mu = G;
 
-      computeLeftCauchyGreen (myB,def);
+      computeLeftCauchyGreen (B,def);
 
-      double tr = 0.5*(myB.m00 + myB.m11 + myB.m22 - 3);
+      double tr = 0.5*(B.m00 + B.m11 + B.m22 - 3);
 
-      myB2.mulTransposeLeft (myB); // myB2 = B*B
+      B2.mulTransposeLeft (B); // B2 = B*B
 
-      sigma.scale ((lam*tr-mu)/J, myB);
-      sigma.scaledAdd (mu/J, myB2);
+      sigma.scale ((lam*tr-mu)/J, B);
+      sigma.scaledAdd (mu/J, B2);
 
       if (D != null) {
          D.setZero();
-         TensorUtils.addTensorProduct (D, lam/J, myB, myB);
-         TensorUtils.addSymmetricTensorProduct4 (D, mu/J, myB, myB);
+         TensorUtils.addTensorProduct (D, lam/J, B, B);
+         TensorUtils.addSymmetricTensorProduct4 (D, mu/J, B, B);
          D.setLowerToUpper();         
       }
    }
@@ -156,8 +163,6 @@ public class StVenantKirchoffMaterial extends FemMaterial {
 
    public StVenantKirchoffMaterial clone() {
       StVenantKirchoffMaterial mat = (StVenantKirchoffMaterial)super.clone();
-      mat.myB = new SymmetricMatrix3d();
-      mat.myB2 = new SymmetricMatrix3d();
       return mat;
    }
 
@@ -195,5 +200,4 @@ public class StVenantKirchoffMaterial extends FemMaterial {
       }
    }
 
-
 }
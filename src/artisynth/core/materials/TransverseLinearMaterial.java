@@ -293,7 +293,7 @@ public class TransverseLinearMaterial extends LinearMaterialBase {
    }
    
    @Override
-   protected void multiplyC (
+   protected synchronized void multiplyC (
       SymmetricMatrix3d sigma, SymmetricMatrix3d eps, DeformedPoint defp) {
       
       // update stiffness
@@ -324,7 +324,7 @@ public class TransverseLinearMaterial extends LinearMaterialBase {
    }
    
    @Override
-   protected void getC(Matrix6d C, DeformedPoint defp) {
+   protected synchronized void getC(Matrix6d C, DeformedPoint defp) {
       maybeUpdateStiffness(defp);
       C.set(myC);
    }
@@ -123,6 +123,29 @@ public class AxialSpring extends PointSpringBase
       f.scale (F, mySeg.uvec);
    }
 
+   /**
+    * Returns the excitation passed to the material when computing
+    * the tension in {@link #computeForce}.
+    */
+   protected double getForceExcitation() {
+      return 0;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void addToMuscleBatch (EquilibriumMuscleBatch batch) {
+      AxialMaterial mat = getEffectiveMaterial();
+      if (mat instanceof EquilibriumAxialMuscle) {
+         double l = mySeg.updateU();
+         if (l != 0) {
+            batch.add (
+               (EquilibriumAxialMuscle)mat, l, mySeg.getLengthDot(),
+               getForceExcitation());
+         }
+      }
+   }
+
    public void applyForces (double t) {
       Vector3d tmp = new Vector3d();
       computeForce (tmp);
@@ -8,6 +8,7 @@ import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -18,8 +19,13 @@ import maspack.collision.MeshCollider;
 import maspack.collision.SurfaceMeshIntersector;
 import maspack.collision.SurfaceMeshIntersector.RegionType;
 import maspack.collision.SignedDistanceCollider;
+import maspack.collision.SweepAndPrune;
+import maspack.concurrency.ParallelLoop;
 import maspack.geometry.PolygonalMesh;
 import maspack.geometry.DistanceGrid;
+import maspack.matrix.Point3d;
+import maspack.matrix.RigidTransform3d;
+import maspack.matrix.RotationMatrix3d;
 import maspack.matrix.SparseBlockMatrix;
 import maspack.matrix.Vector3d;
 import maspack.matrix.VectorNd;
@@ -166,12 +172,180 @@ public class CollisionManager extends RenderableCompositeBase
 
    AbstractCollider myCollider = null;
 
-   SurfaceMeshIntersector myAjlIntersector = null;
-   SignedDistanceCollider mySDCollider = null;
-   MeshCollider myTriTriCollider = null;
+   // colliders used when contact information is computed serially
+   NarrowPhaseColliders myColliders = new NarrowPhaseColliders();
+
+   static int DEFAULT_NUM_NARROW_PHASE_THREADS = 1;
+   int myNumNarrowPhaseThreads = DEFAULT_NUM_NARROW_PHASE_THREADS;
+
+   // thread pool and per-worker colliders for computing contact
+   // information concurrently; created on demand
+   ParallelLoop myNarrowPhaseLoop;
+   NarrowPhaseColliders[] myWorkerColliders;
+   // candidate pairs collected for concurrent contact computation
+   ArrayList<ContactCandidate> myCandidates = new ArrayList<>();
+   boolean myCollectingCandidates = false;
+
+   static boolean DEFAULT_USE_BROAD_PHASE = true;
+   boolean myUseBroadPhase = DEFAULT_USE_BROAD_PHASE;
+
+   // broad phase over the world bounds of the collision meshes, with boxes
+   // indexed by collidable index; valid only while contacts are being
+   // computed in updateConstraints()
+   SweepAndPrune myBroadPhase;
+   boolean myBroadPhaseValid = false;
 
    double myMaxpen; // accumulates maximum penetration 
 
+   /**
+    * Colliders used to compute contact information. Since the colliders
+    * store intermediate results, each thread requires its own set.
+    */
+   static class NarrowPhaseColliders {
+      SurfaceMeshIntersector myAjlIntersector = null;
+      SignedDistanceCollider mySDCollider = null;
+      MeshCollider myTriTriCollider = null;
+   }
+
+   /**
+    * Collidable pair for which contact information is to be computed.  All
+    * information needed from the collidables is obtained when the candidate
+    * is created, so that {@link #computeContactInfo} does not access the
+    * collidables and can be called concurrently for different candidates.
+    */
+   static class ContactCandidate {
+      CollidableBody myC0;
+      CollidableBody myC1;
+      CollisionBehavior myBehav;
+      BehaviorSource mySrc;
+
+      PolygonalMesh myMesh0;
+      PolygonalMesh myMesh1;
+      DistanceGrid myGrid0;
+      DistanceGrid myGrid1;
+      ColliderType myColliderType;
+      RegionType myRegions0 = RegionType.INSIDE;
+      RegionType myRegions1 = RegionType.INSIDE;
+      // true if the broad phase has found that the meshes are disjoint
+      boolean myCulled;
+
+      ContactInfo myCinfo;
+
+      ContactCandidate (
+         CollidableBody c0, CollidableBody c1,
+         CollisionBehavior behav, BehaviorSource src,
+         SweepAndPrune broadPhase) {
+
+         myC0 = c0;
+         myC1 = c1;
+         myBehav = behav;
+         mySrc = src;
+         myMesh0 = c0.getCollisionMesh();
+         myMesh1 = c1.getCollisionMesh();
+         ColliderType colliderType = behav.getColliderType();
+         if (colliderType == ColliderType.SIGNED_DISTANCE) {
+            // if using signed distance collider, at least one collidable
+            // must be rigid and support signed distance grids
+            if ((c0.isDeformable() || !c0.hasDistanceGrid()) &&
+                (c1.isDeformable() || !c1.hasDistanceGrid())) {
+               colliderType = ColliderType.AJL_CONTOUR;
+            }
+         }
+         if (colliderType == ColliderType.AJL_CONTOUR) {
+            Method method = behav.getMethod();
+            if (method != Method.VERTEX_EDGE_PENETRATION &&
+                method != Method.CONTOUR_REGION &&
+                behav.getBodyFaceContact() == false) {
+               // vertex penetration method may not require computing
+               // regions for both meshes
+               if (CollisionHandler.isRigid (c0) && 
+                   !CollisionHandler.isRigid (c1)) {
+                  myRegions0 = RegionType.NONE;
+               }
+               else if (CollisionHandler.isRigid (c1) && 
+                        !CollisionHandler.isRigid (c0)) {
+                  myRegions1 = RegionType.NONE;
+               }
+            }
+         }
+         else if (colliderType == ColliderType.SIGNED_DISTANCE) {
+            DistanceGridComp gcomp0 = c0.getDistanceGridComp();
+            DistanceGridComp gcomp1 = c1.getDistanceGridComp();
+            myGrid0 = (gcomp0 != null ? gcomp0.getGrid() : null);
+            myGrid1 = (gcomp1 != null ? gcomp1.getGrid() : null);
+         }
+         myColliderType = colliderType;
+         myCulled = (broadPhase != null &&
+                     !broadPhase.overlaps (
+                        c0.getCollidableIndex(), c1.getCollidableIndex(),
+                        getCullingMargin()));
+      }
+
+      /**
+       * Returns the margin by which the broad phase boxes are grown when
+       * deciding whether this candidate can be culled. The signed distance
+       * collider reports contact wherever the interpolated grid distance is
+       * {@code <= 0}, which can happen up to one cell away from the mesh
+       * surface, so the margin is the largest cell diagonal of the grids.
+       */
+      double getCullingMargin() {
+         double margin = 0;
+         if (myGrid0 != null) {
+            margin = myGrid0.getCellWidths().norm();
+         }
+         if (myGrid1 != null) {
+            margin = Math.max (margin, myGrid1.getCellWidths().norm());
+         }
+         return margin;
+      }
+
+      ContactInfo computeContactInfo (NarrowPhaseColliders colliders) {
+         if (myCulled) {
+            // produce the same result as the colliders do for disjoint
+            // meshes, which is null unless contours are being computed
+            if (myColliderType == ColliderType.AJL_CONTOUR) {
+               return SurfaceMeshIntersector.createEmptyContactInfo (
+                  myMesh0, myRegions0, myMesh1, myRegions1);
+            }
+            else {
+               return null;
+            }
+         }
+         ContactInfo cinfo;
+         switch (myColliderType) {
+            case AJL_CONTOUR: {
+               if (colliders.myAjlIntersector == null) {
+                  colliders.myAjlIntersector = new SurfaceMeshIntersector();
+               }
+               cinfo = colliders.myAjlIntersector.findContoursAndRegions (
+                  myMesh0, myRegions0, myMesh1, myRegions1);
+               break;
+            }
+            case TRI_INTERSECTION: {
+               if (colliders.myTriTriCollider == null) {
+                  colliders.myTriTriCollider = new MeshCollider();
+               }
+               cinfo = colliders.myTriTriCollider.getContacts (
+                  myMesh0, myMesh1);
+               break;
+            }
+            case SIGNED_DISTANCE: {
+               if (colliders.mySDCollider == null) {
+                  colliders.mySDCollider = new SignedDistanceCollider();
+               }
+               cinfo = colliders.mySDCollider.getContacts (
+                  myMesh0, myGrid0, myMesh1, myGrid1);
+               break;
+            }
+            default: {
+               throw new UnsupportedOperationException (
+                  "Unimplemented collider type " + myColliderType);
+            }
+         }
+         return cinfo;
+      }
+   }
+
    /**
     * Specifies the collider that generates contact information between the
     * two meshes. Contact information is returned in a 
@@ -412,6 +586,14 @@ public class CollisionManager extends RenderableCompositeBase
       myProps.addInheritable (
          "colliderType", "type of collider to use for collisions",
          myDefaultColliderType);
+      myProps.add (
+         "numNarrowPhaseThreads",
+         "number of threads used to compute contacts between collidable pairs",
+         DEFAULT_NUM_NARROW_PHASE_THREADS, "[1,inf]");
+      myProps.add (
+         "useBroadPhase",
+         "skip collision checks for bodies whose bounding boxes are disjoint",
+         DEFAULT_USE_BROAD_PHASE);
       myProps.addInheritable (
          "reduceConstraints:Inherited",
          "try to reduce the number of constraints", 
@@ -615,6 +797,8 @@ public class CollisionManager extends RenderableCompositeBase
       myMethodMode = PropertyMode.Inherited;
       myColliderType = myDefaultColliderType;
       myColliderTypeMode = PropertyMode.Inherited;
+      myNumNarrowPhaseThreads = DEFAULT_NUM_NARROW_PHASE_THREADS;
+      myUseBroadPhase = DEFAULT_USE_BROAD_PHASE;
    }
 
    ArrayList<CollisionHandler> collisionHandlers() {
@@ -1467,6 +1651,57 @@ public class CollisionManager extends RenderableCompositeBase
       return myColliderTypeMode;
    }
 
+   /**
+    * Queries the number of threads used to compute contact information
+    * between collidable pairs. See {@link #setNumNarrowPhaseThreads}.
+    *
+    * @return number of narrow phase threads
+    */
+   public int getNumNarrowPhaseThreads() {
+      return myNumNarrowPhaseThreads;
+   }
+
+   /**
+    * Sets the number of threads used to compute contact information between
+    * collidable pairs. The default value of 1 processes the pairs one at a
+    * time. For larger values, the pairs requiring collision checks are first
+    * collected, their contact information is computed concurrently, with
+    * each thread using its own colliders, and the collision handlers are then
+    * updated serially in the same pair order used for serial processing, so
+    * that results do not depend on the number of threads. This setting
+    * applies only to collisions handled by this manager; sub-models have
+    * their own collision managers.
+    *
+    * @param num number of narrow phase threads
+    */
+   public void setNumNarrowPhaseThreads (int num) {
+      myNumNarrowPhaseThreads = Math.max (1, num);
+   }
+
+   /**
+    * Queries whether a broad phase is used to skip collision checks between
+    * bodies that cannot be in contact. See {@link #setUseBroadPhase}.
+    *
+    * @return {@code true} if the broad phase is enabled
+    */
+   public boolean getUseBroadPhase() {
+      return myUseBroadPhase;
+   }
+
+   /**
+    * Sets whether a broad phase is used to skip collision checks between
+    * bodies that cannot be in contact. If enabled (the default), the world
+    * bounding boxes of the bodies' collision meshes are maintained in a
+    * sweep and prune structure, and pairs whose boxes are disjoint are not
+    * passed to the collider. Since the colliders find no contacts for such
+    * pairs anyway, this does not change the results.
+    *
+    * @param enable if {@code true}, enables the broad phase
+    */
+   public void setUseBroadPhase (boolean enable) {
+      myUseBroadPhase = enable;
+   }
+
    // end of property accessors
 
    // behavior and response accessors
@@ -2515,71 +2750,9 @@ public class CollisionManager extends RenderableCompositeBase
    ContactInfo computeContactInfo (
       CollidableBody c0, CollidableBody c1, CollisionBehavior behav) {
 
-      PolygonalMesh mesh0 = c0.getCollisionMesh();
-      PolygonalMesh mesh1 = c1.getCollisionMesh();
-      ContactInfo cinfo;
-      ColliderType colliderType = behav.getColliderType();
-      if (colliderType == ColliderType.SIGNED_DISTANCE) {
-         // if using signed distance collider, at least one collidable
-         // must be rigid and support signed distance grids
-         if ((c0.isDeformable() || !c0.hasDistanceGrid()) &&
-             (c1.isDeformable() || !c1.hasDistanceGrid())) {
-            colliderType = ColliderType.AJL_CONTOUR;
-         }
-      }
-      //FunctionTimer timer = new FunctionTimer();
-      //timer.start();
-      switch (colliderType) {
-         case AJL_CONTOUR: {
-            if (myAjlIntersector == null) {
-               myAjlIntersector = new SurfaceMeshIntersector();
-            }
-            // types of regions that we need to compute for mesh0 and mesh1
-            RegionType regions0 = RegionType.INSIDE;
-            RegionType regions1 = RegionType.INSIDE;
-            Method method = behav.getMethod();
-            if (method != Method.VERTEX_EDGE_PENETRATION &&
-                method != Method.CONTOUR_REGION &&
-                behav.getBodyFaceContact() == false) {
-               // vertex penetration method may not require computing
-               // regions for both meshes
-               if (CollisionHandler.isRigid (c0) && 
-                   !CollisionHandler.isRigid (c1)) {
-                  regions0 = RegionType.NONE;
-               }
-               else if (CollisionHandler.isRigid (c1) && 
-                        !CollisionHandler.isRigid (c0)) {
-                  regions1 = RegionType.NONE;
-               }
-            }
-            cinfo = myAjlIntersector.findContoursAndRegions (
-               mesh0, regions0, mesh1, regions1);
-            break;
-         }
-         case TRI_INTERSECTION: {
-            if (myTriTriCollider == null) {
-               myTriTriCollider = new MeshCollider();
-            }
-            cinfo = myTriTriCollider.getContacts (mesh0, mesh1);
-            break;
-         }
-         case SIGNED_DISTANCE: {
-            if (mySDCollider == null) {
-               mySDCollider = new SignedDistanceCollider();
-            }
-            DistanceGridComp gcomp0 = c0.getDistanceGridComp();
-            DistanceGridComp gcomp1 = c1.getDistanceGridComp();
-            cinfo = mySDCollider.getContacts (
-               mesh0, gcomp0 != null ? gcomp0.getGrid() : null,
-               mesh1, gcomp1 != null ? gcomp1.getGrid() : null);
-            break;
-         }
-         default: {
-            throw new UnsupportedOperationException (
-               "Unimplemented collider type " + colliderType);
-         }
-      }
-      return cinfo;    
+      ContactCandidate cand =
+         new ContactCandidate (c0, c1, behav, null, getValidBroadPhase());
+      return cand.computeContactInfo (myColliders);
    }
    
    void checkForContact (
@@ -2598,6 +2771,12 @@ public class CollisionManager extends RenderableCompositeBase
       if (testMode) {
          cinfo = new ContactInfo (c0.getCollisionMesh(), c1.getCollisionMesh());
       }
+      else if (myCollectingCandidates) {
+         // contact info will be computed later by computeCandidateContacts()
+         myCandidates.add (
+            new ContactCandidate (c0, c1, behav, src, getValidBroadPhase()));
+         return;
+      }
       else {
          cinfo = computeContactInfo (c0, c1, behav);
       }
@@ -2606,6 +2785,169 @@ public class CollisionManager extends RenderableCompositeBase
       }     
    }
 
+   /**
+    * Returns the broad phase used to cull candidate pairs whose collision
+    * meshes cannot be in contact, or {@code null} if it is not valid.
+    */
+   private SweepAndPrune getValidBroadPhase() {
+      return (myBroadPhaseValid ? myBroadPhase : null);
+   }
+
+   /**
+    * Computes a world-aligned box containing the collision mesh of a body.
+    * The box is computed from the mesh's local bounds, which do not need to
+    * be recomputed when only the mesh-to-world transform changes. The box is
+    * grown by a small tolerance, equal to the default bounding volume tree
+    * margin, so that meshes which are just touching are not culled because
+    * of rounding error.
+    */
+   private void getWorldBounds (
+      Point3d min, Point3d max, CollidableBody cbody) {
+      PolygonalMesh mesh = cbody.getCollisionMesh();
+      if (mesh == null || mesh.numVertices() == 0) {
+         // no mesh info, so don't cull anything
+         double inf = Double.POSITIVE_INFINITY;
+         min.set (-inf, -inf, -inf);
+         max.set (inf, inf, inf);
+         return;
+      }
+      mesh.getLocalBounds (min, max);
+      double tol = 1e-8*min.distance (max)/2;
+      if (!mesh.meshToWorldIsIdentity()) {
+         RigidTransform3d X = mesh.getMeshToWorld();
+         RotationMatrix3d R = X.R;
+         Point3d cen = new Point3d();
+         Vector3d hw = new Vector3d();
+         cen.add (min, max);
+         cen.scale (0.5);
+         cen.transform (X);
+         hw.sub (max, min);
+         hw.scale (0.5);
+         double hx = (Math.abs(R.m00)*hw.x + Math.abs(R.m01)*hw.y +
+                      Math.abs(R.m02)*hw.z);
+         double hy = (Math.abs(R.m10)*hw.x + Math.abs(R.m11)*hw.y +
+                      Math.abs(R.m12)*hw.z);
+         double hz = (Math.abs(R.m20)*hw.x + Math.abs(R.m21)*hw.y +
+                      Math.abs(R.m22)*hw.z);
+         min.set (cen.x-hx, cen.y-hy, cen.z-hz);
+         max.set (cen.x+hx, cen.y+hy, cen.z+hz);
+      }
+      min.set (min.x-tol, min.y-tol, min.z-tol);
+      max.set (max.x+tol, max.y+tol, max.z+tol);
+   }
+
+   private void addBroadPhaseBodies (
+      ArrayList<CollidableBody> bodies, ArrayList<CollidableBody> cbodies) {
+      if (cbodies != null) {
+         bodies.addAll (cbodies);
+      }
+   }
+
+   /**
+    * Updates the broad phase with the current bounds of all the bodies whose
+    * collisions are checked by this manager.
+    */
+   private void updateBroadPhase (ArrayList<MechModel> subMechs) {
+      ArrayList<CollidableBody> bodies = new ArrayList<>();
+      for (CollidablePair pair : myExplicitBehaviors.keySet()) {
+         bodies.add ((CollidableBody)pair.myComp0);
+         bodies.add ((CollidableBody)pair.myComp1);
+      }
+      addBroadPhaseBodies (bodies, myRigidExts);
+      addBroadPhaseBodies (bodies, myDeformableExts);
+      addBroadPhaseBodies (bodies, myDeformableInts);
+      for (int i=1; i<subMechs.size(); i++) {
+         CollisionManager cm = subMechs.get(i).getCollisionManager();
+         addBroadPhaseBodies (bodies, cm.myRigidExts);
+         addBroadPhaseBodies (bodies, cm.myDeformableExts);
+      }
+      int numBoxes = 0;
+      for (CollidableBody cbody : bodies) {
+         numBoxes = Math.max (numBoxes, cbody.getCollidableIndex()+1);
+      }
+      if (myBroadPhase == null) {
+         myBroadPhase = new SweepAndPrune();
+      }
+      myBroadPhase.setNumBoxes (numBoxes);
+      for (int i=0; i<numBoxes; i++) {
+         myBroadPhase.setEmpty (i);
+      }
+      Point3d min = new Point3d();
+      Point3d max = new Point3d();
+      for (CollidableBody cbody : bodies) {
+         getWorldBounds (min, max, cbody);
+         myBroadPhase.setBounds (cbody.getCollidableIndex(), min, max);
+      }
+      myBroadPhase.update();
+      myBroadPhaseValid = true;
+   }
+
+   /**
+    * Updates the lazily computed data of a mesh that is used by the
+    * colliders, so that the mesh can then be queried by several threads at
+    * once.
+    */
+   private void prepareForConcurrentQueries (PolygonalMesh mesh) {
+      mesh.updateFaceNormals();
+      mesh.getBVTree();
+      mesh.getArrays();
+      mesh.isTriangular();
+      mesh.isClosed();
+      mesh.getLocalBounds (null, null);
+      RenderableUtils.getRadius (mesh);
+   }
+
+   /**
+    * Computes the contact information for all candidates collected by
+    * checkForContact(), using multiple threads, and then adds or updates
+    * the corresponding handlers. Handlers are processed in the order in
+    * which the candidates were collected, so the results are the same as
+    * those obtained by computing the contact information serially.
+    */
+   private void computeCandidateContacts() {
+      int num = myCandidates.size();
+      IdentityHashMap<PolygonalMesh,PolygonalMesh> meshes =
+         new IdentityHashMap<>();
+      for (int k=0; k<num; k++) {
+         ContactCandidate cand = myCandidates.get(k);
+         if (!cand.myCulled) {
+            meshes.put (cand.myMesh0, cand.myMesh0);
+            meshes.put (cand.myMesh1, cand.myMesh1);
+         }
+      }
+      for (PolygonalMesh mesh : meshes.keySet()) {
+         prepareForConcurrentQueries (mesh);
+      }
+      int nthreads = myNumNarrowPhaseThreads;
+      if (myNarrowPhaseLoop == null) {
+         myNarrowPhaseLoop = new ParallelLoop ("narrowPhase", nthreads);
+      }
+      myNarrowPhaseLoop.setNumThreads (nthreads);
+      if (myWorkerColliders == null || myWorkerColliders.length != nthreads) {
+         myWorkerColliders = new NarrowPhaseColliders[nthreads];
+         // the calling thread is always worker 0
+         myWorkerColliders[0] = myColliders;
+         for (int w=1; w<nthreads; w++) {
+            myWorkerColliders[w] = new NarrowPhaseColliders();
+         }
+      }
+      // pair costs vary widely, so candidates are claimed one at a time
+      myNarrowPhaseLoop.forEach (0, num, 1, (lo, hi, w) -> {
+         for (int k=lo; k<hi; k++) {
+            ContactCandidate cand = myCandidates.get(k);
+            cand.myCinfo = cand.computeContactInfo (myWorkerColliders[w]);
+         }
+      });
+      for (int k=0; k<num; k++) {
+         ContactCandidate cand = myCandidates.get(k);
+         if (cand.myCinfo != null) {
+            addOrUpdateHandler (
+               cand.myCinfo, cand.myC0, cand.myC1, cand.myBehav, cand.mySrc);
+         }
+      }
+      myCandidates.clear();
+   }
+
    CollisionBehavior getBehavior (
       CollidableBody c0, CollidableBody c1, BehaviorSource src) {
       switch (src) {
@@ -2959,6 +3301,16 @@ public class CollisionManager extends RenderableCompositeBase
       // start of handlers added by this manager only
       int hidx1 = handlers.size(); 
       myHandlerTable.saveLastConstraintData();
+
+      // if computing contacts concurrently, checkForContact() just collects
+      // candidate pairs, which are then processed all at once
+      myCandidates.clear();
+      myCollectingCandidates = (myNumNarrowPhaseThreads > 1 && !testMode);
+
+      myBroadPhaseValid = false;
+      if (myUseBroadPhase && !testMode) {
+         updateBroadPhase (subMechs);
+      }
       //myHandlerTable.setHandlerActivity (false);
 
       // compute explicit collisions
@@ -2996,6 +3348,11 @@ public class CollisionManager extends RenderableCompositeBase
                cmi.myDeformableExts, cmj.myDeformableExts, testMode);
          }
       }
+      if (myCollectingCandidates) {
+         myCollectingCandidates = false;
+         computeCandidateContacts();
+      }
+      myBroadPhaseValid = false;
 
       myHandlerTable.removeInactiveHandlers();
       myHandlerTable.collectHandlers (handlers);
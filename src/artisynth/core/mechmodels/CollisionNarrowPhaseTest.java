@@ -0,0 +1,158 @@
+package artisynth.core.mechmodels;
+
+import java.util.ArrayList;
+
+import artisynth.core.femmodels.FemFactory;
+import artisynth.core.femmodels.FemModel3d;
+import artisynth.core.mechmodels.CollisionManager.ColliderType;
+import artisynth.core.modelbase.ComponentState;
+import artisynth.core.util.TimeBase;
+import artisynth.core.workspace.RootModel;
+import maspack.matrix.RigidTransform3d;
+import maspack.solvers.SparseSolverId;
+import maspack.util.*;
+
+/**
+ * Checks that computing contacts with several narrow phase threads gives the
+ * same contacts, in the same order, and the same simulation states as the
+ * serial narrow phase.
+ */
+public class CollisionNarrowPhaseTest extends UnitTest {
+
+   static final String FMT = "%.17g";
+
+   RootModel createRoot (int nthreads, boolean useBroadPhase) {
+      MechModel mech = new MechModel ("mech");
+      // use a Java solver so that no native libraries are needed
+      mech.setMatrixSolver (SparseSolverId.SupernodalLDLT);
+
+      RigidBody ground = RigidBody.createBox ("ground", 4.0, 4.0, 0.2, 1000.0);
+      ground.setPose (new RigidTransform3d (0, 0, -0.1));
+      ground.setDynamic (false);
+      mech.addRigidBody (ground);
+
+      // boxes and spheres placed slightly above the ground and each other,
+      // and tilted so that the contacts are not symmetric
+      for (int i=0; i<4; i++) {
+         RigidBody box = RigidBody.createBox (
+            "box"+i, 0.4, 0.3, 0.2, 1000.0);
+         box.setPose (new RigidTransform3d (
+            -1.2+0.8*i, 0.1*i, 0.11+0.05*i, 0.1*i, 0.05, 0.03*(i+1)));
+         mech.addRigidBody (box);
+         RigidBody ball = RigidBody.createIcosahedralSphere (
+            "ball"+i, 0.15, 1000.0, 2);
+         ball.setPose (new RigidTransform3d (
+            -1.1+0.8*i, 0.05-0.1*i, 0.36+0.05*i, 0, 0, 0.2*i));
+         mech.addRigidBody (ball);
+      }
+      FemModel3d fem = FemFactory.createHexGrid (
+         new FemModel3d ("fem"), 0.6, 0.4, 0.2, 3, 2, 2);
+      fem.setDensity (1000.0);
+      fem.transformGeometry (new RigidTransform3d (0.2, 1.2, 0.15, 0, 0.1, 0));
+      mech.addModel (fem);
+
+      mech.setDefaultCollisionBehavior (true, 0.2);
+      // FEM and signed distance contacts are bilateral; keep them
+      // frictionless so that 1D bilateral friction is not mixed with 2D
+      // unilateral friction
+      mech.setCollisionBehavior (fem, Collidable.Rigid, true, 0);
+      // use the signed distance collider for one pair
+      CollisionBehavior behav = new CollisionBehavior (true, 0);
+      behav.setColliderType (ColliderType.SIGNED_DISTANCE);
+      mech.setCollisionBehavior (
+         mech.rigidBodies().get("box1"), ground, behav);
+
+      CollisionManager cm = mech.getCollisionManager();
+      cm.setNumNarrowPhaseThreads (nthreads);
+      cm.setUseBroadPhase (useBroadPhase);
+
+      RootModel root = new RootModel ("root");
+      root.setMaxStepSize (0.01);
+      root.addModel (mech);
+      return root;
+   }
+
+   /**
+    * Returns a string describing each contact constraint of each collision
+    * handler, in the order that they are stored.
+    */
+   String getContacts (CollisionManager cm) {
+      StringBuilder sb = new StringBuilder();
+      for (CollisionHandler handler : cm.getHandlers()) {
+         sb.append (handler.getCollidable(0).getName());
+         sb.append (" ");
+         sb.append (handler.getCollidable(1).getName());
+         sb.append ("\n");
+         for (ContactConstraint c : handler.myBilaterals.values()) {
+            sb.append (" B " + c.toString (FMT));
+            sb.append (" n=" + c.getNormal().toString (FMT) + "\n");
+         }
+         for (ContactConstraint c : handler.myUnilaterals.values()) {
+            sb.append (" U " + c.toString (FMT));
+            sb.append (" n=" + c.getNormal().toString (FMT) + "\n");
+         }
+      }
+      return sb.toString();
+   }
+
+   void advance (
+      RootModel root, ArrayList<ComponentState> states,
+      ArrayList<String> contacts, int nsteps) {
+      MechModel mech = (MechModel)root.models().get(0);
+      root.initialize (0);
+      double h = root.getMaxStepSize();
+      double t0 = 0;
+      for (int k=0; k<nsteps; k++) {
+         double t1 = TimeBase.round (t0+h);
+         root.advance (t0, t1, 0);
+         states.add (root.getState (/*annotated=*/false));
+         contacts.add (getContacts (mech.getCollisionManager()));
+         t0 = t1;
+      }
+   }
+
+   void testThreads (int nthreads, boolean useBroadPhase) {
+      int nsteps = 60;
+      ArrayList<ComponentState> serialStates = new ArrayList<>();
+      ArrayList<String> serialContacts = new ArrayList<>();
+      advance (createRoot (1, useBroadPhase),
+               serialStates, serialContacts, nsteps);
+
+      ArrayList<ComponentState> states = new ArrayList<>();
+      ArrayList<String> contacts = new ArrayList<>();
+      advance (createRoot (nthreads, useBroadPhase), states, contacts, nsteps);
+
+      String msg = nthreads + " threads, broadPhase=" + useBroadPhase;
+      int numWithContact = 0;
+      for (int k=0; k<nsteps; k++) {
+         if (!contacts.get(k).equals (serialContacts.get(k))) {
+            throw new TestException (
+               msg + ": contacts differ at step " + k + ":\n" +
+               contacts.get(k) + "\nexpected:\n" + serialContacts.get(k));
+         }
+         StringBuilder smsg = new StringBuilder();
+         if (!states.get(k).equals (serialStates.get(k), smsg)) {
+            throw new TestException (
+               msg + ": states differ at step " + k + ": " + smsg);
+         }
+         if (serialContacts.get(k).contains (" U ")) {
+            numWithContact++;
+         }
+      }
+      // make sure the test actually produced contacts
+      check (msg + ": only " + numWithContact + " steps with contact",
+             numWithContact > nsteps/2);
+   }
+
+   public void test() {
+      for (int nthreads : new int[] { 2, 3, 4 }) {
+         testThreads (nthreads, /*useBroadPhase=*/true);
+      }
+      testThreads (4, /*useBroadPhase=*/false);
+   }
+
+   public static void main (String[] args) {
+      CollisionNarrowPhaseTest tester = new CollisionNarrowPhaseTest();
+      tester.runtest();
+   }
+}
@@ -1,7 +1,20 @@
 package artisynth.core.mechmodels;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Deque;
@@ -12,12 +25,15 @@ import artisynth.core.modelbase.CompositeComponent;
 import artisynth.core.modelbase.GridCompBase;
 import artisynth.core.modelbase.ModelComponent;
 import artisynth.core.modelbase.ScanWriteUtils;
+import artisynth.core.util.ArtisynthPath;
 import artisynth.core.util.ScanToken;
 import maspack.geometry.DistanceGrid;
 import maspack.geometry.DistanceGridSurfCalc;
+import maspack.geometry.Face;
 import maspack.geometry.Feature;
 import maspack.geometry.InterpolatingGridBase;
 import maspack.geometry.PolygonalMesh;
+import maspack.geometry.Vertex3d;
 import maspack.matrix.Matrix3d;
 import maspack.matrix.Point3d;
 import maspack.matrix.RigidTransform3d;
@@ -77,6 +93,65 @@ public class DistanceGridComp extends GridCompBase {
    static double DEFAULT_MARGIN_FRACTION = 0.1;
    double myMarginFraction = DEFAULT_MARGIN_FRACTION;
 
+   // version of the grid cache format, included in the cache keys
+   private static final int GRID_CACHE_VERSION = 1;
+
+   private static boolean myGridCacheEnabled = false;
+   private static File myGridCacheDir = null;
+
+   /**
+    * Enables or disables caching of automatically generated grids. When
+    * enabled, a grid generated from a single polygonal mesh is written to a
+    * cache file whose name is a hash of the mesh geometry and the grid
+    * generation parameters, and subsequent grids with the same hash are
+    * read from that file instead of being recomputed. This can considerably
+    * reduce model load times when high resolution grids are used. Caching is
+    * disabled by default.
+    *
+    * @param enable if <code>true</code>, enables grid caching
+    * @see #getGridCacheDir
+    */
+   public static void setGridCacheEnabled (boolean enable) {
+      myGridCacheEnabled = enable;
+   }
+
+   /**
+    * Queries whether caching of automatically generated grids is enabled.
+    *
+    * @return <code>true</code> if grid caching is enabled
+    * @see #setGridCacheEnabled
+    */
+   public static boolean isGridCacheEnabled () {
+      return myGridCacheEnabled;
+   }
+
+   /**
+    * Sets the directory used to store cached grids. Specifying
+    * <code>null</code> restores the default directory, which is
+    * <code>distanceGrids</code> within the ArtiSynth cache directory.
+    *
+    * @param dir grid cache directory
+    * @see #setGridCacheEnabled
+    */
+   public static void setGridCacheDir (File dir) {
+      myGridCacheDir = dir;
+   }
+
+   /**
+    * Returns the directory used to store cached grids.
+    *
+    * @return grid cache directory
+    * @see #setGridCacheDir
+    */
+   public static File getGridCacheDir () {
+      if (myGridCacheDir == null) {
+         return new File (ArtisynthPath.getCacheDir(), "distanceGrids");
+      }
+      else {
+         return myGridCacheDir;
+      }
+   }
+
    protected static SurfaceType DEFAULT_SURFACE_TYPE = SurfaceType.QUADRATIC;
    private SurfaceType mySurfaceType = DEFAULT_SURFACE_TYPE;
 
@@ -426,47 +501,31 @@ public class DistanceGridComp extends GridCompBase {
 
       if (canGenerateGrid()) {
          
-         // create the grid with the specified resolution
          int maxRes = myMaxResolution;
          if (!myResolution.equals (Vector3i.ZERO)) {
-            grid = new DistanceGrid (myResolution);
             maxRes = 0;
          }
-         else {
-            // resolution will be recomputed in computeFromFeatures
-            grid = new DistanceGrid (new Vector3i (1,1,1));
-         }
-                  
-         // fit the grid to the faces
-         ArrayList<List<? extends Feature>> faceLists = new ArrayList<>();
-         for (PolygonalMesh mesh : myPolygonalMeshes) {
-            faceLists.add (mesh.getFaces());
+         // grids generated from a single mesh can be cached
+         File cacheFile = null;
+         if (myGridCacheEnabled && myPolygonalMeshes.size() == 1) {
+            String key =
+               computeGridCacheKey (myPolygonalMeshes.get(0), maxRes);
+            if (key != null) {
+               cacheFile = new File (getGridCacheDir(), key + ".dgrid");
+               grid = readCachedGrid (cacheFile, myPolygonalMeshes.get(0));
+            }
          }
-         if (myFitWithOBB) {
-            grid.fitToFeaturesOBB (
-               faceLists, myMarginFraction, maxRes);
+         if (grid != null) {
+            // grid was read from the cache
+            grid.setLocalToWorld (getLocalToWorld());
+            setRenderRanges (myRenderRanges);
          }
          else {
-            grid.fitToFeatures (
-               faceLists, myMarginFraction, /*TCL=*/null, maxRes);
-         }
-         grid.setLocalToWorld (getLocalToWorld());
-
-         grid.computeDistances (myPolygonalMeshes.get(0), /*signed=*/true);
-         if (myPolygonalMeshes.size() > 1) {
-            for (PolygonalMesh mesh : myPolygonalMeshes) {
-               grid.computeUnion (mesh);
+            grid = generateGrid (maxRes);
+            if (cacheFile != null) {
+               writeCachedGrid (cacheFile, grid);
             }
-            grid.computeDistances (
-               grid.createDistanceSurface(), /*signed=*/true);
          }
-         setRenderRanges (myRenderRanges);
-         // estimate the minimum distance from the surface to the grid
-         // boundary, and then mark any quad tets whose nodes have a greater
-         // distance as being "outside"
-         Vector3d margins = new Vector3d(grid.getWidths());
-         margins.scale (myMarginFraction);
-         //grid.markOutsideQuadtets (margins.minElement());         
       }
       super.setGrid (grid); // set myBaseGrid in the super class
       myGrid = grid;
@@ -474,6 +533,182 @@ public class DistanceGridComp extends GridCompBase {
       myGridValidP = true;
    }
 
+   /**
+    * Generates a grid from the polygonal meshes.
+    */
+   private DistanceGrid generateGrid (int maxRes) {
+      DistanceGrid grid;
+
+      // create the grid with the specified resolution
+      if (!myResolution.equals (Vector3i.ZERO)) {
+         grid = new DistanceGrid (myResolution);
+      }
+      else {
+         // resolution will be recomputed in computeFromFeatures
+         grid = new DistanceGrid (new Vector3i (1,1,1));
+      }
+               
+      // fit the grid to the faces
+      ArrayList<List<? extends Feature>> faceLists = new ArrayList<>();
+      for (PolygonalMesh mesh : myPolygonalMeshes) {
+         faceLists.add (mesh.getFaces());
+      }
+      if (myFitWithOBB) {
+         grid.fitToFeaturesOBB (
+            faceLists, myMarginFraction, maxRes);
+      }
+      else {
+         grid.fitToFeatures (
+            faceLists, myMarginFraction, /*TCL=*/null, maxRes);
+      }
+      grid.setLocalToWorld (getLocalToWorld());
+
+      grid.computeDistances (myPolygonalMeshes.get(0), /*signed=*/true);
+      if (myPolygonalMeshes.size() > 1) {
+         for (PolygonalMesh mesh : myPolygonalMeshes) {
+            grid.computeUnion (mesh);
+         }
+         grid.computeDistances (
+            grid.createDistanceSurface(), /*signed=*/true);
+      }
+      setRenderRanges (myRenderRanges);
+      // estimate the minimum distance from the surface to the grid
+      // boundary, and then mark any quad tets whose nodes have a greater
+      // distance as being "outside"
+      Vector3d margins = new Vector3d(grid.getWidths());
+      margins.scale (myMarginFraction);
+      //grid.markOutsideQuadtets (margins.minElement());         
+      return grid;
+   }
+
+   /**
+    * Computes the key used to cache a grid generated from a single mesh. The
+    * key is a SHA-256 hash of the mesh geometry and everything else that
+    * affects the grid, or <code>null</code> if the hash cannot be computed.
+    */
+   private String computeGridCacheKey (PolygonalMesh mesh, int maxRes) {
+      MessageDigest md;
+      try {
+         md = MessageDigest.getInstance ("SHA-256");
+      }
+      catch (NoSuchAlgorithmException e) {
+         return null;
+      }
+      // data only needs to reach the digest, so the stream discards it
+      OutputStream nullStream = new OutputStream() {
+            public void write (int b) {
+            }
+            public void write (byte[] b, int off, int len) {
+            }
+         };
+      try {
+         DataOutputStream dos = new DataOutputStream (
+            new BufferedOutputStream (new DigestOutputStream (nullStream, md)));
+         dos.writeInt (GRID_CACHE_VERSION);
+         dos.writeInt (myResolution.x);
+         dos.writeInt (myResolution.y);
+         dos.writeInt (myResolution.z);
+         dos.writeInt (maxRes);
+         dos.writeDouble (myMarginFraction);
+         dos.writeBoolean (myFitWithOBB);
+         dos.writeUTF (DistanceGrid.DEFAULT_DISTANCE_METHOD.toString());
+         writeTransform (dos, getLocalToWorld());
+         writeTransform (dos, mesh.getMeshToWorld());
+         dos.writeInt (mesh.numVertices());
+         for (Vertex3d vtx : mesh.getVertices()) {
+            dos.writeDouble (vtx.pnt.x);
+            dos.writeDouble (vtx.pnt.y);
+            dos.writeDouble (vtx.pnt.z);
+         }
+         dos.writeInt (mesh.numFaces());
+         for (Face face : mesh.getFaces()) {
+            int[] idxs = face.getVertexIndices();
+            dos.writeInt (idxs.length);
+            for (int idx : idxs) {
+               dos.writeInt (idx);
+            }
+         }
+         dos.close();
+      }
+      catch (IOException e) {
+         return null;
+      }
+      StringBuilder key = new StringBuilder();
+      for (byte b : md.digest()) {
+         key.append (String.format ("%02x", b));
+      }
+      return key.toString();
+   }
+
+   private void writeTransform (DataOutputStream dos, RigidTransform3d T)
+      throws IOException {
+      for (int i=0; i<3; i++) {
+         for (int j=0; j<3; j++) {
+            dos.writeDouble (T.R.get (i, j));
+         }
+      }
+      dos.writeDouble (T.p.x);
+      dos.writeDouble (T.p.y);
+      dos.writeDouble (T.p.z);
+   }
+
+   /**
+    * Reads a cached grid, returning <code>null</code> if the cache file
+    * does not exist or cannot be read.
+    */
+   private DistanceGrid readCachedGrid (File file, PolygonalMesh mesh) {
+      if (!file.isFile()) {
+         return null;
+      }
+      try (DataInputStream dis = new DataInputStream (
+              new BufferedInputStream (new FileInputStream (file)))) {
+         if (dis.readInt() != GRID_CACHE_VERSION) {
+            return null;
+         }
+         DistanceGrid grid = new DistanceGrid();
+         grid.readBinary (dis, mesh.getFaces());
+         return grid;
+      }
+      catch (IOException e) {
+         System.out.println (
+            "Warning: can't read cached distance grid " + file + ": " + e);
+         return null;
+      }
+   }
+
+   /**
+    * Writes a grid to the cache. The grid is first written to a temporary
+    * file, which is then renamed, so that other processes never see a
+    * partially written cache file.
+    */
+   private void writeCachedGrid (File file, DistanceGrid grid) {
+      File tmp = null;
+      try {
+         File dir = file.getParentFile();
+         if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException ("can't create directory " + dir);
+         }
+         tmp = File.createTempFile ("dgrid", ".tmp", dir);
+         try (DataOutputStream dos = new DataOutputStream (
+                 new BufferedOutputStream (new FileOutputStream (tmp)))) {
+            dos.writeInt (GRID_CACHE_VERSION);
+            grid.writeBinary (dos);
+         }
+         Files.move (
+            tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+         tmp = null;
+      }
+      catch (IOException e) {
+         System.out.println (
+            "Warning: can't write cached distance grid " + file + ": " + e);
+      }
+      finally {
+         if (tmp != null) {
+            tmp.delete();
+         }
+      }
+   }
+
    /**
     * Explicitly sets the grid for this DistanceGridComp. The grid is set by
     * reference (i.e., it is not copied). The grid's {@code renderRanges} and
@@ -37,6 +37,8 @@ import maspack.util.NumberFormat;
 import maspack.util.FunctionTimer;
 import maspack.util.Range;
 import maspack.util.EnumRange;
+import artisynth.core.materials.EquilibriumAxialMuscle;
+import artisynth.core.materials.EquilibriumMuscleBatch;
 import artisynth.core.mechmodels.MechSystemSolver.PosStabilization;
 import artisynth.core.mechmodels.MechSystemSolver.Integrator;
 import artisynth.core.modelbase.*;
@@ -125,6 +127,11 @@ public abstract class MechSystemBase extends RenderableModelBase
       DEFAULT_USE_IMPLICIT_FRICTION;
    protected boolean myUseImplicitFriction = myDefaultUseImplicitFriction;
 
+   protected static int DEFAULT_NUM_MUSCLE_THREADS = 1;
+   protected int myNumMuscleThreads = DEFAULT_NUM_MUSCLE_THREADS;
+   // batch used to solve equilibrium muscles concurrently; created on demand
+   protected EquilibriumMuscleBatch myMuscleBatch;
+
    protected boolean myInsideAdvanceP = false;
    protected double myAvgSolveTime;
    protected StepAdjustment myStepAdjust;
@@ -245,6 +252,10 @@ public abstract class MechSystemBase extends RenderableModelBase
       myProps.add (
          "useImplicitFriction", "combine friction with implicit integration",
          DEFAULT_USE_IMPLICIT_FRICTION);
+      myProps.add (
+         "numMuscleThreads",
+         "number of threads used to solve equilibrium muscle lengths",
+         DEFAULT_NUM_MUSCLE_THREADS, "[1,inf]");
          
 
    }
@@ -282,6 +293,36 @@ public abstract class MechSystemBase extends RenderableModelBase
       setUseImplicitFriction (DEFAULT_USE_IMPLICIT_FRICTION);
    }
 
+   /**
+    * Queries the number of threads used to solve for the muscle lengths of
+    * equilibrium muscle materials. See {@link #setNumMuscleThreads}.
+    *
+    * @return number of muscle solve threads
+    */
+   public int getNumMuscleThreads() {
+      return myNumMuscleThreads;
+   }
+
+   /**
+    * Sets the number of threads used to solve for the muscle lengths of
+    * point-to-point springs and muscles whose materials are instances of
+    * {@link EquilibriumAxialMuscle}, such as {@link
+    * artisynth.core.materials.Millard2012AxialMuscle}. The default value of
+    * 1 solves each muscle when its forces are applied. For larger values,
+    * the muscles are gathered into an {@link EquilibriumMuscleBatch} before
+    * forces are applied and solved concurrently. This does not change the
+    * computed forces, and is useful for models containing large numbers of
+    * such muscles.
+    *
+    * @param num number of muscle solve threads
+    */
+   public void setNumMuscleThreads (int num) {
+      myNumMuscleThreads = Math.max (1, num);
+      if (myMuscleBatch != null) {
+         myMuscleBatch.setNumThreads (myNumMuscleThreads);
+      }
+   }
+
    public boolean getDynamicsEnabled() {
       return myDynamicsEnabled;
    }
@@ -1633,7 +1674,8 @@ public abstract class MechSystemBase extends RenderableModelBase
       return new EnumRange<SparseSolverId>(
          SparseSolverId.class, new SparseSolverId[] {
             SparseSolverId.Pardiso,
-            SparseSolverId.Umfpack });
+            SparseSolverId.Umfpack,
+            SparseSolverId.SupernodalLDLT });
    }
 
    public void setIntegrator (Integrator integrator) {
@@ -2192,6 +2234,7 @@ public abstract class MechSystemBase extends RenderableModelBase
       }      
 
       msb.myMassMatrix = null;
+      msb.myMuscleBatch = null;
 
       //msb.myStabilization = myStabilization;
       msb.myDynamicsEnabled = myDynamicsEnabled;
@@ -2326,12 +2369,35 @@ public abstract class MechSystemBase extends RenderableModelBase
             myDynamicComponents.get(i).applyExternalForces();
          }
       }
+      if (myNumMuscleThreads > 1) {
+         solveMuscleBatch();
+      }
       for (int i=0; i<myForceEffectors.size(); i++) {
          myForceEffectors.get(i).applyForces (t);
       }
       applyAttachmentForces();
    }
 
+   /**
+    * Solves for the muscle lengths of all the equilibrium muscle materials
+    * used by point springs in this system, so that they need not be solved
+    * one at a time when the spring forces are applied.
+    */
+   protected void solveMuscleBatch() {
+      if (myMuscleBatch == null) {
+         myMuscleBatch = new EquilibriumMuscleBatch();
+         myMuscleBatch.setNumThreads (myNumMuscleThreads);
+      }
+      myMuscleBatch.clear();
+      for (int i=0; i<myForceEffectors.size(); i++) {
+         ForceEffector fe = myForceEffectors.get(i);
+         if (fe instanceof PointSpringBase) {
+            ((PointSpringBase)fe).addToMuscleBatch (myMuscleBatch);
+         }
+      }
+      myMuscleBatch.solve();
+   }
+
    public void addPosJacobian (
       SparseNumberedBlockMatrix S, VectorNd f, double s) {
       updateDynamicComponentLists();
@@ -35,12 +35,14 @@ import maspack.matrix.SparseNumberedBlockMatrix;
 import maspack.matrix.Vector3d;
 import maspack.matrix.VectorNd;
 import maspack.matrix.VectorNi;
+import maspack.solvers.AnalysisCache;
 import maspack.solvers.CGSolver;
 import maspack.solvers.DirectSolver;
 import maspack.solvers.IterativeSolver;
 import maspack.solvers.IterativeSolver.ToleranceType;
 import maspack.solvers.KKTSolver;
 import maspack.solvers.PardisoSolver;
+import maspack.solvers.SupernodalLDLTSolver;
 import maspack.solvers.UmfpackSolver;
 import maspack.solvers.LCPSolver;
 import maspack.solvers.SparseSolverId;
@@ -198,6 +200,18 @@ public class MechSystemSolver {
    public static boolean profileConstraintSolves = false;
    private boolean myHybridSolveP = false;
 
+   /**
+    * Default number of analyzed KKT solvers to cache for recurring
+    * bilateral constraint structures. 0 disables caching.
+    */
+   public static int DEFAULT_KKT_ANALYSIS_CACHE_SIZE = 0;
+   private int myKKTAnalysisCacheSize = DEFAULT_KKT_ANALYSIS_CACHE_SIZE;
+   private AnalysisCache<KKTSolver> myKKTAnalysisCache;
+   // solve matrix version, size, and type for which the cache is valid
+   private int myKKTCacheMatrixVersion = -1;
+   private int myKKTCacheVelSize = -1;
+   private int myKKTCacheMatrixType = -1;
+
    int myStateSizeVersion = -1;
    int myParametricPosSize = 0;
    int myParametricVelSize = 0;
@@ -299,6 +313,91 @@ public class MechSystemSolver {
       }
    }
 
+   /**
+    * Queries whether contact solves are warm started. See {@link
+    * #setContactWarmStart}.
+    *
+    * @return {@code true} if contact solves are warm started
+    */
+   public boolean getContactWarmStart () {
+      return myContactWarmStartP;
+   }
+
+   /**
+    * Enables or disables warm starting of the LCP contact solves used with
+    * implicit friction. When enabled (the default), each solve starts from
+    * the contact and friction states stored by the unilateral constraints
+    * (such as the contacts maintained by each {@link CollisionHandler},
+    * which are identified by their contact points) at the end of the
+    * previous solve. Scenes whose contact set is nearly stationary then
+    * require only a few pivots per step.
+    *
+    * @param enable if {@code true}, enables warm starting
+    */
+   public void setContactWarmStart (boolean enable) {
+      myContactWarmStartP = enable;
+      if (myMurtySolver != null) {
+         myMurtySolver.setWarmStart (enable);
+      }
+   }
+
+   /**
+    * Returns the maximum number of analyzed KKT solvers that are cached for
+    * recurring bilateral constraint structures.
+    *
+    * @return KKT analysis cache size
+    * @see #setKKTAnalysisCacheSize
+    */
+   public int getKKTAnalysisCacheSize () {
+      return myKKTAnalysisCacheSize;
+   }
+
+   /**
+    * Sets the maximum number of analyzed KKT solvers that are cached for
+    * recurring bilateral constraint structures. When the structure of the
+    * bilateral constraint matrix GT changes to one that has been seen
+    * recently (as can happen when contacts are made and broken repeatedly),
+    * the solver analyzed for that structure is reused instead of performing
+    * another symbolic analysis. Since each cached solver retains its own
+    * factorization storage, memory use grows with the cache size. A value of
+    * 0 disables caching.
+    *
+    * @param size maximum number of cached solvers
+    */
+   public void setKKTAnalysisCacheSize (int size) {
+      if (size < 0) {
+         throw new IllegalArgumentException (
+            "Cache size must be non-negative; got " + size);
+      }
+      myKKTAnalysisCacheSize = size;
+      if (myKKTAnalysisCache != null) {
+         if (size == 0) {
+            myKKTAnalysisCache.clear();
+         }
+         myKKTAnalysisCache.setCapacity (size);
+      }
+   }
+
+   /**
+    * Returns the number of KKT analyses that have been avoided by
+    * reusing a cached solver.
+    *
+    * @return number of KKT analysis cache hits
+    */
+   public int getKKTAnalysisCacheHits () {
+      return myKKTAnalysisCache != null ? myKKTAnalysisCache.getHitCount() : 0;
+   }
+
+   /**
+    * Returns the number of times the KKT analysis cache was consulted
+    * without finding a solver for the current constraint structure.
+    *
+    * @return number of KKT analysis cache misses
+    */
+   public int getKKTAnalysisCacheMisses () {
+      return myKKTAnalysisCache != null ? myKKTAnalysisCache.getMissCount() : 0;
+   }
+
    public boolean getUseImplicitFriction () {
       return myUseImplicitFriction;
    }
@@ -324,10 +423,12 @@ public class MechSystemSolver {
 
    PardisoSolver myPardisoSolver;
    UmfpackSolver myUmfpackSolver;
+   SupernodalLDLTSolver mySupernodalSolver;
    KKTSolver myKKTSolver;
    KKTSolver myConSolver;
    KKTSolver myStaticSolver;
    MurtyMechSolver myMurtySolver;
+   boolean myContactWarmStartP = true;
 
    private SparseSolverId myMatrixSolver = SparseSolverId.Pardiso;
    Integrator myIntegrator = Integrator.SymplecticEuler;
@@ -581,7 +682,8 @@ public class MechSystemSolver {
       if (solver != myMatrixSolver) {
          switch (solver) {
             case Pardiso: 
-            case Umfpack: {
+            case Umfpack: 
+            case SupernodalLDLT: {
                break;
             }
             default: {
@@ -626,6 +728,35 @@ public class MechSystemSolver {
             myUseDirectSolver = true;
             break;
          }
+         case SupernodalLDLT: {
+            DirectSolver solver;
+            if (myMatrixSolver.isCompatible (mySys.getSolveMatrixType())) {
+               if (mySupernodalSolver == null) {
+                  mySupernodalSolver = new SupernodalLDLTSolver();
+               }
+               solver = mySupernodalSolver;
+            }
+            else if (PardisoSolver.isAvailable()) {
+               // supernodal solver is symmetric only; fall back to Pardiso
+               if (myPardisoSolver == null) {
+                  myPardisoSolver = new PardisoSolver();
+               }
+               solver = myPardisoSolver;
+            }
+            else {
+               if (myUmfpackSolver == null) {
+                  myUmfpackSolver = new UmfpackSolver();
+               }
+               solver = myUmfpackSolver;
+            }
+            if (solver != myDirectSolver) {
+               // force analysis with the new solver
+               myRegSolveMatrixVersion = -1;
+            }
+            myDirectSolver = solver;
+            myUseDirectSolver = true;
+            break;
+         }
          case ConjugateGradient: {
             if (!(myIterativeSolver instanceof CGSolver)) {
                setIterativeSolver (new CGSolver());
@@ -664,6 +795,7 @@ public class MechSystemSolver {
    public MechSystemSolver (MechSystem system, MechSystemSolver solver) {
       this (system);
       setHybridSolve (solver.getHybridSolve());
+      setKKTAnalysisCacheSize (solver.getKKTAnalysisCacheSize());
       setIntegrator (solver.getIntegrator());
       setMatrixSolver (solver.getMatrixSolver());
       setUseImplicitFriction (solver.getUseImplicitFriction());
@@ -1470,6 +1602,10 @@ public class MechSystemSolver {
          System.out.println (
             "Total solve time (usec): " +
             myMurtySolverTimer.getTimeUsec()/myKKTCnt);
+         System.out.printf (
+            "Contact solver: pivots/solve=%g warmStarts=%d/%d\n",
+            cs.getAvgPivotCount(), cs.getTotalWarmStartCount(),
+            cs.getTotalLCPSolveCount());
          
       }
    }
@@ -1733,8 +1869,7 @@ public class MechSystemSolver {
                if (profileKKTSolveTime|profileImplicitFriction) {
                   timerStart (myKKTTimer);
                }
-               myKKTSolver.analyze (
-                  S, velSize, myGT, myRg, mySys.getSolveMatrixType());
+               analyzeKKTSolver (S, velSize);
                if (profileKKTSolveTime|profileImplicitFriction) {
                   timerStop ("    KKT solve: analyze", myKKTTimer);
                }
@@ -2107,6 +2242,82 @@ public class MechSystemSolver {
          throw new IllegalStateException (
             "Velocity size != current active velocity state size");
       }
+      checkKKTSolveState();
+
+      lam.setSize (myGT.colSize());
+      if (myNT != null) {
+         the.setSize (myNT.colSize());
+      }
+      else {
+         the.setSize (0);
+      }
+      if (velSize != 0) {
+         if (usingImplicitFriction()) {
+            myMurtySolver.resolveMG (vel, lam, bf, myBg);
+         }
+         else {
+            myKKTSolver.solve (vel, lam, the, bf, myBg, myBn);
+         }
+      }
+   }
+
+   /** 
+    * Solves the KKT system for multiple right hand sides, given by the
+    * columns of <code>bf</code>, with the velocities and bilateral constraint
+    * impulses for each returned in the corresponding columns of
+    * <code>vel</code> and <code>lam</code>. This is equivalent to calling
+    * {@link #KKTSolve(VectorNd,VectorNd,VectorNd,VectorNd)} for each column,
+    * and the same requirements apply. However, if there are no unilateral
+    * constraints and implicit friction is not being used, so that each solve
+    * is linear, the columns are back-substituted together in a single
+    * blocked solve, which is considerably faster for direct solvers that
+    * support multiple right hand sides.
+    *
+    * @param vel returns the velocities, one per column. Will be resized if
+    * necessary.
+    * @param lam returns the bilateral constraint impulses, one per column.
+    * Will be resized if necessary.
+    * @param bf right hand sides, one per column
+    */
+   public void KKTSolve (MatrixNd vel, MatrixNd lam, MatrixNd bf) {
+
+      int velSize = mySys.getActiveVelStateSize();
+      if (velSize != bf.rowSize()) {
+         throw new IllegalStateException (
+            "Right hand side size != current active velocity state size");
+      }
+      checkKKTSolveState();
+
+      int nrhs = bf.colSize();
+      int gsize = myGT.colSize();
+      vel.setSize (velSize, nrhs);
+      lam.setSize (gsize, nrhs);
+      if (velSize == 0) {
+         return;
+      }
+      if (usingImplicitFriction() || (myNT != null && myNT.colSize() > 0)) {
+         // solves involve an LCP, so do them one at a time
+         VectorNd vcol = new VectorNd (velSize);
+         VectorNd lcol = new VectorNd (gsize);
+         VectorNd bcol = new VectorNd (velSize);
+         VectorNd the = new VectorNd ();
+         for (int j=0; j<nrhs; j++) {
+            bf.getColumn (j, bcol);
+            KKTSolve (vcol, lcol, the, bcol);
+            vel.setColumn (j, vcol);
+            lam.setColumn (j, lcol);
+         }
+      }
+      else {
+         MatrixNd bg = new MatrixNd (gsize, nrhs);
+         for (int j=0; j<nrhs; j++) {
+            bg.setColumn (j, myBg);
+         }
+         myKKTSolver.solve (vel, lam, bf, bg);
+      }
+   }
+
+   private void checkKKTSolveState() {
       if (myKKTSolveMatrixVersion != mySys.getStructureVersion()) {
          throw new IllegalStateException ("Solve structure has changed");
       }
@@ -2131,22 +2342,6 @@ public class MechSystemSolver {
                "KKTFactorAndSolve must be called prior to KKTSolve");
          }
       }
-
-      lam.setSize (myGT.colSize());
-      if (myNT != null) {
-         the.setSize (myNT.colSize());
-      }
-      else {
-         the.setSize (0);
-      }
-      if (velSize != 0) {
-         if (usingImplicitFriction()) {
-            myMurtySolver.resolveMG (vel, lam, bf, myBg);
-         }
-         else {
-            myKKTSolver.solve (vel, lam, the, bf, myBg, myBn);
-         }
-      }
    }
 
    protected boolean updateAndProjectFrictionConstraints (
@@ -2848,6 +3043,55 @@ public class MechSystemSolver {
 
     }
 
+   /**
+    * Performs the symbolic analysis for myKKTSolver, given the solve matrix S
+    * and the bilateral constraints myGT. If KKT analysis caching is enabled,
+    * and a solver has already been analyzed for the current GT structure,
+    * that solver becomes myKKTSolver and no analysis is done. Otherwise, the
+    * newly analyzed solver is added to the cache.
+    */
+   private void analyzeKKTSolver (SparseNumberedBlockMatrix S, int velSize) {
+      int type = mySys.getSolveMatrixType();
+      if (myKKTAnalysisCacheSize == 0 || myAlwaysAnalyze) {
+         myKKTSolver.analyze (S, velSize, myGT, myRg, type);
+         return;
+      }
+      if (myKKTAnalysisCache == null) {
+         myKKTAnalysisCache = new AnalysisCache<KKTSolver> (
+            myKKTAnalysisCacheSize, (s) -> disposeCachedKKTSolver(s));
+      }
+      if (myKKTCacheMatrixVersion != mySolveMatrixVersion ||
+          myKKTCacheVelSize != velSize ||
+          myKKTCacheMatrixType != type) {
+         // cached analyses are only valid for the same solve matrix
+         myKKTAnalysisCache.clear();
+         myKKTCacheMatrixVersion = mySolveMatrixVersion;
+         myKKTCacheVelSize = velSize;
+         myKKTCacheMatrixType = type;
+      }
+      // getGTVersion() has just been called, so myGTSignature is current
+      SparseBlockSignature sig = myGTSignature;
+      KKTSolver solver = myKKTAnalysisCache.get (sig);
+      if (solver != null) {
+         myKKTSolver = solver;
+      }
+      else {
+         if (myKKTAnalysisCache.containsValue (myKKTSolver)) {
+            // current solver holds a cached analysis, so leave it alone
+            myKKTSolver = new KKTSolver (myMatrixSolver);
+         }
+         myKKTSolver.analyze (S, velSize, myGT, myRg, type);
+         myKKTAnalysisCache.put (sig, myKKTSolver);
+      }
+   }
+
+   private void disposeCachedKKTSolver (KKTSolver solver) {
+      // the current solver is disposed separately in disposeSolvers()
+      if (solver != myKKTSolver) {
+         solver.dispose();
+      }
+   }
+
    protected void computeStiffnessPosCorrection (
       VectorNd vel, int velSize, double t) {
       boolean analyze = myAlwaysAnalyze;
@@ -2870,8 +3114,7 @@ public class MechSystemSolver {
          myKKTGTVersion = getGTVersion();
       }
       if (analyze) {
-         myKKTSolver.analyze (
-            S, velSize, myGT, myRg, mySys.getSolveMatrixType());
+         analyzeKKTSolver (S, velSize);
       }
       if (myHybridSolveP && !analyze && myNT.colSize() == 0) {
          myKKTSolver.factorAndSolve (
@@ -3935,6 +4178,9 @@ public class MechSystemSolver {
          myPardisoSolver.dispose();
          myPardisoSolver = null;
       }
+      if (myKKTAnalysisCache != null) {
+         myKKTAnalysisCache.clear();
+      }
       if (myKKTSolver != null) {
          myKKTSolver.dispose();
          myKKTSolver = null;
@@ -3955,6 +4201,10 @@ public class MechSystemSolver {
          myUmfpackSolver.dispose();
          myUmfpackSolver = null;
       }
+      if (mySupernodalSolver != null) {
+         mySupernodalSolver.dispose();
+         mySupernodalSolver = null;
+      }
       if (myRBSolver != null) {
          myRBSolver.dispose();
          myRBSolver = null;
@@ -3993,7 +4243,11 @@ public class MechSystemSolver {
    private void initMurtySolverIfNecessary() {
       if (myMurtySolver == null) {
          myMurtySolver = new MurtyMechSolver();
+         if (myMatrixSolver == SparseSolverId.SupernodalLDLT) {
+            myMurtySolver.setSolverType (myMatrixSolver);
+         }
          myMurtySolver.setHybridSolves (myHybridSolveP);
+         myMurtySolver.setWarmStart (myContactWarmStartP);
       }
    }
    /*
@@ -29,6 +29,7 @@ import artisynth.core.materials.AxialMaterial;
 import artisynth.core.materials.SimpleAxialMuscle;
 import artisynth.core.materials.AxialMuscleMaterial;
 import artisynth.core.materials.EquilibriumAxialMuscle;
+import artisynth.core.materials.EquilibriumMuscleBatch;
 import artisynth.core.materials.ConstantAxialMuscle;
 import artisynth.core.materials.LinearAxialMaterial;
 import artisynth.core.materials.LinearAxialMuscle;
@@ -374,6 +375,18 @@ public class MultiPointMuscle extends MultiPointSpring implements ExcitationComp
          return 0;
       }
    }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void addToMuscleBatch (EquilibriumMuscleBatch batch) {
+      AxialMaterial mat = getEffectiveMaterial();
+      if (enabled && mat instanceof EquilibriumAxialMuscle) {
+         batch.add (
+            (EquilibriumAxialMuscle)mat, getActiveLength(),
+            getActiveLengthDot(), getNetExcitation());
+      }
+   }
    
    /**
     * Computes the force magnitude acting along the unit vector from the first
@@ -15,6 +15,8 @@ import java.util.List;
 import java.util.Map;
 
 import artisynth.core.materials.AxialMaterial;
+import artisynth.core.materials.EquilibriumAxialMuscle;
+import artisynth.core.materials.EquilibriumMuscleBatch;
 import artisynth.core.materials.LinearAxialMaterial;
 import artisynth.core.modelbase.ComponentUtils;
 import artisynth.core.modelbase.CompositeComponent;
@@ -3253,6 +3255,18 @@ public class MultiPointSpring extends PointSpringBase
     * @param t
     * time (seconds)
     */
+   /**
+    * {@inheritDoc}
+    */
+   public void addToMuscleBatch (EquilibriumMuscleBatch batch) {
+      AxialMaterial mat = getEffectiveMaterial();
+      if (mat instanceof EquilibriumAxialMuscle) {
+         batch.add (
+            (EquilibriumAxialMuscle)mat, getActiveLength(),
+            getActiveLengthDot(), 0);
+      }
+   }
+
    public void applyForces (double t) {
       double len = getActiveLength();
       double dldt = getActiveLengthDot();
@@ -352,6 +352,13 @@ public class Muscle extends AxialSpring
    public double computeF (double l, double ldot) {
       return computeF (l, ldot, getNetExcitation());
    }
+
+   /**
+    * {@inheritDoc}
+    */
+   protected double getForceExcitation() {
+      return getNetExcitation();
+   }
    
    /**
     * Computes the passive tension F acting along the unit vector from the
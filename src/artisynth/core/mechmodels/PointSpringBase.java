@@ -25,6 +25,7 @@ import maspack.render.RenderProps;
 import maspack.util.DataBuffer;
 import artisynth.core.materials.AxialMaterial;
 import artisynth.core.materials.AxialMuscleMaterial;
+import artisynth.core.materials.EquilibriumMuscleBatch;
 import artisynth.core.materials.LinearAxialMaterial;
 import artisynth.core.materials.MaterialBase;
 import artisynth.core.materials.MaterialChangeEvent;
@@ -224,6 +225,20 @@ public abstract class PointSpringBase extends Spring
    
    /* ======== End renderable implementation ======= */
 
+   /**
+    * Adds the material of this spring to a batch of equilibrium muscle
+    * materials whose muscle lengths are solved together before forces are
+    * applied, if the material is an {@link
+    * artisynth.core.materials.EquilibriumAxialMuscle}. The inputs supplied
+    * to the batch must be the same as those that {@link #applyForces} will
+    * subsequently pass to the material. The default implementation does
+    * nothing, so that the material is solved in the usual way.
+    *
+    * @param batch batch to add the material to
+    */
+   public void addToMuscleBatch (EquilibriumMuscleBatch batch) {
+   }
+
    /**
     * Computes the tension F acting along the unit vector from the first to the
     * second particle.
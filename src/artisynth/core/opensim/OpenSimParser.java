@@ -8,6 +8,7 @@ import javax.xml.parsers.DocumentBuilderFactory;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
 
 import artisynth.core.mechmodels.MechModel;
 import artisynth.core.mechmodels.ForceComponent;
@@ -16,6 +17,7 @@ import artisynth.core.mechmodels.RigidBody;
 import artisynth.core.modelbase.ModelComponent;
 import artisynth.core.modelbase.*;
 import artisynth.core.util.ArtisynthPath;
+import artisynth.core.opensim.components.GeometryCache;
 import artisynth.core.opensim.components.ModelBase;
 import artisynth.core.opensim.components.ModelComponentMap;
 import artisynth.core.opensim.components.OpenSimDocument;
@@ -34,6 +36,11 @@ public class OpenSimParser {
    OpenSimDocument myDocument;
    File myGeometryPath;
    ModelComponentMap myComponentMap;
+   boolean myStreamingParse = true;
+   boolean myGeometryPrefetch = true;
+   // names of geometry files referenced by geometry_file and mesh_file
+   ArrayList<String> myGeometryFiles = new ArrayList<>();
+   ArrayList<String> myMeshFiles = new ArrayList<>();
 
    /**
     * Creates a new parser
@@ -64,6 +71,23 @@ public class OpenSimParser {
    }
 
    private void parseOSimFile() {
+      if (myStreamingParse) {
+         OpenSimStreamReader reader = new OpenSimStreamReader();
+         try {
+            myDOM = reader.read (myOsimFile);
+         }
+         catch (Exception e) {
+            e.printStackTrace();
+         }
+         myGeometryFiles = reader.getGeometryFiles();
+         myMeshFiles = reader.getMeshFiles();
+      }
+      else {
+         parseOSimFileDOM();
+      }
+   }
+
+   private void parseOSimFileDOM() {
       // get factory 
       DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
 
@@ -77,6 +101,39 @@ public class OpenSimParser {
       } catch (Exception e) {
          e.printStackTrace();
       }
+      myGeometryFiles = collectFileNames ("geometry_file");
+      myMeshFiles = collectFileNames ("mesh_file");
+   }
+
+   private ArrayList<String> collectFileNames (String tag) {
+      ArrayList<String> names = new ArrayList<>();
+      if (myDOM != null) {
+         NodeList nodes = myDOM.getElementsByTagName (tag);
+         for (int i=0; i<nodes.getLength(); i++) {
+            OpenSimStreamReader.addFileName (
+               names, nodes.item(i).getTextContent());
+         }
+      }
+      return names;
+   }
+
+   /**
+    * Loads the geometry files referenced by the model into the {@link
+    * GeometryCache}, using several threads, so that they are available
+    * when the model components are created.
+    */
+   private void prefetchGeometry (File geometryPath) {
+      ArrayList<File> files = new ArrayList<>();
+      for (String name : myGeometryFiles) {
+         // resolved as in DisplayGeometry
+         files.add (new File (geometryPath, name));
+      }
+      for (String name : myMeshFiles) {
+         // resolved as in Mesh
+         files.add (ArtisynthPath.convertToLocalSeparators (
+                       new File (geometryPath, name)));
+      }
+      GeometryCache.prefetch (files);
    }
 
    private void parseDocument() {
@@ -97,6 +154,35 @@ public class OpenSimParser {
       return myGeometryPath;
    }
 
+   /**
+    * Sets whether the file is read using a streaming (StAX) parser rather
+    * than a full DOM parser. The default is {@code true}.
+    * 
+    * @param enable if {@code true}, use the streaming parser
+    */
+   public void setStreamingParse (boolean enable) {
+      myStreamingParse = enable;
+   }
+
+   public boolean getStreamingParse() {
+      return myStreamingParse;
+   }
+
+   /**
+    * Sets whether the geometry files referenced by the model are loaded
+    * concurrently into the {@link GeometryCache} before the model components
+    * are created. The default is {@code true}.
+    * 
+    * @param enable if {@code true}, prefetch the geometry
+    */
+   public void setGeometryPrefetch (boolean enable) {
+      myGeometryPrefetch = enable;
+   }
+
+   public boolean getGeometryPrefetch() {
+      return myGeometryPrefetch;
+   }
+
    /**
     * Populates the provided model, creating one if it doesn't exist
     * @param mech mechanical model
@@ -114,6 +200,9 @@ public class OpenSimParser {
       if (geometryPath == null) {
          geometryPath = DEFAULT_GEOMETRY_PATH;
       }
+      if (myGeometryPrefetch) {
+         prefetchGeometry (geometryPath);
+      }
       
       return model.createModel (mech, geometryPath, myComponentMap);
 
@@ -0,0 +1,209 @@
+package artisynth.core.opensim;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Reads an OpenSim file using a streaming (StAX) parser, and builds from it
+ * a compact DOM that can be handed to the OpenSim object factories. Compared
+ * with a full DOM parse, whitespace between elements and comments are
+ * omitted, and DTDs are not processed. The names of any referenced geometry
+ * files are collected while reading, so that they can be loaded before the
+ * model itself is created.
+ */
+public class OpenSimStreamReader {
+
+   private ArrayList<String> myGeometryFiles = new ArrayList<>();
+   private ArrayList<String> myMeshFiles = new ArrayList<>();
+
+   /**
+    * Reads an OpenSim file.
+    *
+    * @param file file to read
+    * @return DOM for the file
+    * @throws IOException if the file cannot be read or parsed
+    */
+   public Document read (File file) throws IOException {
+      try (InputStream in =
+              new BufferedInputStream (new FileInputStream (file))) {
+         return read (in);
+      }
+   }
+
+   /**
+    * Reads OpenSim content from an input stream.
+    *
+    * @param in stream to read from
+    * @return DOM for the content
+    * @throws IOException if the content cannot be read or parsed
+    */
+   public Document read (InputStream in) throws IOException {
+      myGeometryFiles.clear();
+      myMeshFiles.clear();
+      XMLInputFactory xif = XMLInputFactory.newInstance();
+      xif.setProperty (XMLInputFactory.IS_COALESCING, true);
+      xif.setProperty (XMLInputFactory.SUPPORT_DTD, false);
+      xif.setProperty (XMLInputFactory.IS_NAMESPACE_AWARE, false);
+      XMLStreamReader reader = null;
+      try {
+         Document doc = DocumentBuilderFactory.newInstance().
+            newDocumentBuilder().newDocument();
+         reader = xif.createXMLStreamReader (in);
+         buildDocument (doc, reader);
+         return doc;
+      }
+      catch (XMLStreamException | ParserConfigurationException e) {
+         throw new IOException ("Error parsing OpenSim file", e);
+      }
+      finally {
+         if (reader != null) {
+            try {
+               reader.close();
+            }
+            catch (XMLStreamException e) {
+               // ignore
+            }
+         }
+      }
+   }
+
+   private void buildDocument (Document doc, XMLStreamReader reader)
+      throws XMLStreamException {
+
+      ArrayDeque<Node> parents = new ArrayDeque<>();
+      // text accumulated for the current element
+      StringBuilder text = new StringBuilder();
+      Node parent = doc;
+
+      while (reader.hasNext()) {
+         switch (reader.next()) {
+            case XMLStreamConstants.START_ELEMENT: {
+               flushText (doc, parent, text);
+               Element elem = doc.createElement (getName (reader));
+               for (int i=0; i<reader.getAttributeCount(); i++) {
+                  String prefix = reader.getAttributePrefix (i);
+                  String name = reader.getAttributeLocalName (i);
+                  if (prefix != null && prefix.length() > 0) {
+                     name = prefix + ":" + name;
+                  }
+                  elem.setAttribute (name, reader.getAttributeValue (i));
+               }
+               parent.appendChild (elem);
+               parents.push (parent);
+               parent = elem;
+               break;
+            }
+            case XMLStreamConstants.END_ELEMENT: {
+               if (parent.getFirstChild() == null) {
+                  recordFileName (parent.getNodeName(), text);
+               }
+               flushText (doc, parent, text);
+               parent = parents.pop();
+               break;
+            }
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.CDATA:
+            case XMLStreamConstants.SPACE: {
+               if (parent != doc) {
+                  text.append (
+                     reader.getTextCharacters(), reader.getTextStart(),
+                     reader.getTextLength());
+               }
+               break;
+            }
+            case XMLStreamConstants.COMMENT: {
+               // comments separate text nodes in a DOM
+               flushText (doc, parent, text);
+               break;
+            }
+            default: {
+               break;
+            }
+         }
+      }
+   }
+
+   private String getName (XMLStreamReader reader) {
+      String prefix = reader.getPrefix();
+      String name = reader.getLocalName();
+      if (prefix != null && prefix.length() > 0) {
+         name = prefix + ":" + name;
+      }
+      return name;
+   }
+
+   /**
+    * Adds any accumulated text to the parent node. Whitespace-only text is
+    * kept only if it would be the parent's first child, so that the first
+    * text of each element is the same as in a full DOM.
+    */
+   private void flushText (Document doc, Node parent, StringBuilder text) {
+      if (text.length() > 0) {
+         if (parent.getFirstChild() == null || !isWhitespace (text)) {
+            parent.appendChild (doc.createTextNode (text.toString()));
+         }
+         text.setLength (0);
+      }
+   }
+
+   private boolean isWhitespace (StringBuilder text) {
+      for (int i=0; i<text.length(); i++) {
+         if (!Character.isWhitespace (text.charAt(i))) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   private void recordFileName (String elemName, StringBuilder text) {
+      if (elemName.equals ("geometry_file")) {
+         addFileName (myGeometryFiles, text.toString());
+      }
+      else if (elemName.equals ("mesh_file")) {
+         addFileName (myMeshFiles, text.toString());
+      }
+   }
+
+   static void addFileName (ArrayList<String> list, String text) {
+      String name = text.trim();
+      if (name.length() > 0) {
+         list.add (name);
+      }
+   }
+
+   /**
+    * Returns the names of the geometry files referenced by
+    * <code>geometry_file</code> elements in the most recently read file.
+    *
+    * @return geometry file names
+    */
+   public ArrayList<String> getGeometryFiles() {
+      return myGeometryFiles;
+   }
+
+   /**
+    * Returns the names of the geometry files referenced by
+    * <code>mesh_file</code> elements in the most recently read file.
+    *
+    * @return mesh file names
+    */
+   public ArrayList<String> getMeshFiles() {
+      return myMeshFiles;
+   }
+}
@@ -0,0 +1,173 @@
+package artisynth.core.opensim;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import artisynth.core.util.ArtisynthPath;
+import maspack.util.*;
+
+/**
+ * Checks that the DOM built by {@link OpenSimStreamReader} has the same
+ * elements, attributes and first text values as one built by a full DOM
+ * parse, these being the parts of the DOM used by the OpenSim object
+ * factories.
+ */
+public class OpenSimStreamReaderTest extends UnitTest {
+
+   Document parseDOM (InputStream in) throws IOException {
+      try {
+         DocumentBuilder db =
+            DocumentBuilderFactory.newInstance().newDocumentBuilder();
+         return db.parse (in);
+      }
+      catch (ParserConfigurationException | SAXException e) {
+         throw new IOException ("Error parsing DOM", e);
+      }
+      finally {
+         in.close();
+      }
+   }
+
+   /**
+    * Returns the first text value of an element, in the same way as
+    * OpenSimObjectFactory.parseTextValue().
+    */
+   String getFirstText (Element elem) {
+      Node child = elem.getFirstChild();
+      while (child != null) {
+         if (child.getNodeType() == Node.TEXT_NODE) {
+            return child.getNodeValue().trim();
+         }
+         child = child.getNextSibling();
+      }
+      return null;
+   }
+
+   ArrayList<Element> getChildElements (Element elem) {
+      ArrayList<Element> elems = new ArrayList<>();
+      for (Node c=elem.getFirstChild(); c!=null; c=c.getNextSibling()) {
+         if (c.getNodeType() == Node.ELEMENT_NODE) {
+            elems.add ((Element)c);
+         }
+      }
+      return elems;
+   }
+
+   /**
+    * Returns the number of elements in the tree rooted at elem.
+    */
+   int checkElementsEqual (String path, Element elem, Element check) {
+      path += "/" + check.getNodeName();
+      checkEquals (path + ": name", elem.getNodeName(), check.getNodeName());
+      NamedNodeMap attrs = elem.getAttributes();
+      NamedNodeMap cattrs = check.getAttributes();
+      checkEquals (path + ": num attributes",
+                   attrs.getLength(), cattrs.getLength());
+      for (int i=0; i<cattrs.getLength(); i++) {
+         Node cattr = cattrs.item(i);
+         checkEquals (path + ": attribute " + cattr.getNodeName(),
+                      elem.getAttribute (cattr.getNodeName()),
+                      cattr.getNodeValue());
+      }
+      String text = getFirstText (elem);
+      String ctext = getFirstText (check);
+      if (text == null ? ctext != null : !text.equals (ctext)) {
+         throw new TestException (
+            path + ": first text is '" + text + "', expected '" + ctext + "'");
+      }
+      ArrayList<Element> elems = getChildElements (elem);
+      ArrayList<Element> celems = getChildElements (check);
+      checkEquals (path + ": num child elements", elems.size(), celems.size());
+      int num = 1;
+      for (int i=0; i<celems.size(); i++) {
+         num += checkElementsEqual (path, elems.get(i), celems.get(i));
+      }
+      return num;
+   }
+
+   ArrayList<String> collectFileNames (Document doc, String tag) {
+      ArrayList<String> names = new ArrayList<>();
+      NodeList nodes = doc.getElementsByTagName (tag);
+      for (int i=0; i<nodes.getLength(); i++) {
+         OpenSimStreamReader.addFileName (
+            names, nodes.item(i).getTextContent());
+      }
+      return names;
+   }
+
+   void testFile (String fileName) throws IOException {
+      File file = ArtisynthPath.getSrcRelativeFile (this, fileName);
+      OpenSimStreamReader reader = new OpenSimStreamReader();
+      Document doc = reader.read (file);
+      Document check = parseDOM (new FileInputStream (file));
+      int num = checkElementsEqual (
+         fileName, doc.getDocumentElement(), check.getDocumentElement());
+      check (fileName + ": only " + num + " elements", num > 100);
+      checkEquals (fileName + ": geometry files",
+                   reader.getGeometryFiles(),
+                   collectFileNames (check, "geometry_file"));
+      checkEquals (fileName + ": mesh files",
+                   reader.getMeshFiles(),
+                   collectFileNames (check, "mesh_file"));
+      check (fileName + ": no geometry files found",
+             reader.getGeometryFiles().size() +
+             reader.getMeshFiles().size() > 0);
+   }
+
+   void testContent() throws IOException {
+      // comments, entities and mixed whitespace, which affect how
+      // text is divided into nodes
+      String content =
+         "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+         "<OpenSimDocument Version=\"30000\">\n" +
+         "  <!-- leading comment -->\n" +
+         "  <Model name=\"a &amp; b\">\n" +
+         "    <credits>x &lt; y</credits>\n" +
+         "    <empty/>\n" +
+         "    <spaces>   </spaces>\n" +
+         "    <values> 1 2 <!-- skip --> 3 </values>\n" +
+         "    <commented><!-- first --> 4 5 </commented>\n" +
+         "    <set>\n" +
+         "      <!-- the first child is whitespace -->\n" +
+         "      <objects><Body name=\"b0\"/></objects>\n" +
+         "    </set>\n" +
+         "    <mesh_file> bone.vtp </mesh_file>\n" +
+         "  </Model>\n" +
+         "</OpenSimDocument>\n";
+      OpenSimStreamReader reader = new OpenSimStreamReader();
+      Document doc =
+         reader.read (new ByteArrayInputStream (content.getBytes()));
+      Document check =
+         parseDOM (new ByteArrayInputStream (content.getBytes()));
+      checkElementsEqual (
+         "content", doc.getDocumentElement(), check.getDocumentElement());
+      checkEquals ("mesh files", reader.getMeshFiles(),
+                   collectFileNames (check, "mesh_file"));
+   }
+
+   public void test() throws IOException {
+      testContent();
+      testFile ("osim/arm26.osim");
+      testFile ("osim/arm26_v4.osim");
+   }
+
+   public static void main (String[] args) {
+      OpenSimStreamReaderTest tester = new OpenSimStreamReaderTest();
+      tester.runtest();
+   }
+}
@@ -5,7 +5,6 @@ import java.io.IOException;
 
 import maspack.geometry.MeshBase;
 import maspack.geometry.PolygonalMesh;
-import maspack.geometry.io.GenericMeshReader;
 import maspack.matrix.RigidTransform3d;
 import maspack.matrix.Vector3d;
 import maspack.render.ColorMapProps;
@@ -76,8 +75,7 @@ public class DisplayGeometry extends VisibleBase {
       if (geometry_file != null) {
          File meshFile = new File(geometryPath, geometry_file);
          try {
-            mesh =
-               GenericMeshReader.readMesh (meshFile);
+            mesh = GeometryCache.readMesh (meshFile);
             // scale and transform
             Vector3d scale = getScaleFactors ();
             if (scale != null) {
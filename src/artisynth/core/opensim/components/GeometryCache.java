@@ -0,0 +1,224 @@
+package artisynth.core.opensim.components;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import maspack.concurrency.ParallelLoop;
+import maspack.geometry.MeshBase;
+import maspack.geometry.io.GenericMeshReader;
+
+/**
+ * Caches the meshes read from OpenSim geometry files, so that files
+ * referenced by several components, or by models that are loaded more than
+ * once, are only read once. Meshes are stored as read, and callers receive
+ * copies that they are free to scale, transform or triangulate. A cached
+ * mesh is reread if its file's length or modification time changes.
+ * The cache holds at most {@link #getMaxCachedMeshes} meshes, beyond which
+ * the least recently used ones are discarded.
+ *
+ * <p>The cache can also be filled ahead of time using {@link #prefetch},
+ * which reads the geometry files for a model concurrently.
+ */
+public class GeometryCache {
+
+   private static class Entry {
+      MeshBase mesh;
+      long length;
+      long lastModified;
+
+      Entry (MeshBase mesh, File file) {
+         this.mesh = mesh;
+         this.length = file.length();
+         this.lastModified = file.lastModified();
+      }
+
+      boolean isCurrent (File file) {
+         return (file.length() == length &&
+                 file.lastModified() == lastModified);
+      }
+   }
+
+   /**
+    * Default maximum number of meshes held by the cache.
+    */
+   public static final int DEFAULT_MAX_CACHED_MESHES = 256;
+
+   private static boolean myEnabled = true;
+   private static int myMaxCachedMeshes = DEFAULT_MAX_CACHED_MESHES;
+   // access ordered, so that the eldest entry is the least recently used
+   private static LinkedHashMap<String,Entry> myEntries =
+      new LinkedHashMap<String,Entry>(16, 0.75f, /*accessOrder=*/true) {
+         // Entry must be qualified, since Map.Entry is inherited here
+         protected boolean removeEldestEntry (
+            Map.Entry<String,GeometryCache.Entry> e) {
+            return size() > myMaxCachedMeshes;
+         }
+      };
+   private static int myNumThreads = ParallelLoop.numAvailableProcessors();
+
+   /**
+    * Queries whether geometry caching is enabled.
+    *
+    * @return {@code true} if caching is enabled
+    */
+   public static boolean isEnabled() {
+      return myEnabled;
+   }
+
+   /**
+    * Enables or disables geometry caching. Disabling the cache also
+    * clears it. Caching is enabled by default.
+    *
+    * @param enable if {@code true}, enables caching
+    */
+   public static void setEnabled (boolean enable) {
+      myEnabled = enable;
+      if (!enable) {
+         clear();
+      }
+   }
+
+   /**
+    * Returns the maximum number of threads used by {@link #prefetch}.
+    *
+    * @return maximum number of prefetch threads
+    */
+   public static int getNumThreads() {
+      return myNumThreads;
+   }
+
+   /**
+    * Sets the maximum number of threads used by {@link #prefetch}.
+    * The default is the number of available processors.
+    *
+    * @param num maximum number of prefetch threads
+    */
+   public static void setNumThreads (int num) {
+      myNumThreads = Math.max (1, num);
+   }
+
+   /**
+    * Returns the maximum number of meshes held by the cache.
+    *
+    * @return maximum number of cached meshes
+    */
+   public static int getMaxCachedMeshes() {
+      return myMaxCachedMeshes;
+   }
+
+   /**
+    * Sets the maximum number of meshes held by the cache. If the cache
+    * currently holds more meshes than this, the least recently used ones
+    * are removed. The default is {@link #DEFAULT_MAX_CACHED_MESHES}.
+    *
+    * @param max maximum number of cached meshes
+    */
+   public static synchronized void setMaxCachedMeshes (int max) {
+      myMaxCachedMeshes = Math.max (0, max);
+      Iterator<String> it = myEntries.keySet().iterator();
+      while (myEntries.size() > myMaxCachedMeshes && it.hasNext()) {
+         it.next();
+         it.remove();
+      }
+   }
+
+   /**
+    * Removes all meshes from the cache.
+    */
+   public static synchronized void clear() {
+      myEntries.clear();
+   }
+
+   /**
+    * Returns the number of meshes currently in the cache.
+    *
+    * @return number of cached meshes
+    */
+   public static synchronized int numCachedMeshes() {
+      return myEntries.size();
+   }
+
+   private static synchronized MeshBase getCachedMesh (File file) {
+      Entry entry = myEntries.get (file.getAbsolutePath());
+      if (entry != null && entry.isCurrent (file)) {
+         return entry.mesh;
+      }
+      return null;
+   }
+
+   private static synchronized void putCachedMesh (File file, MeshBase mesh) {
+      myEntries.put (file.getAbsolutePath(), new Entry (mesh, file));
+   }
+
+   /**
+    * Reads a mesh from a geometry file, using the cache if possible. The
+    * returned mesh is a copy that belongs to the caller.
+    *
+    * @param file geometry file
+    * @return mesh read from the file
+    * @throws IOException if the file cannot be read
+    */
+   public static MeshBase readMesh (File file) throws IOException {
+      if (!myEnabled) {
+         return GenericMeshReader.readMesh (file);
+      }
+      MeshBase mesh = getCachedMesh (file);
+      if (mesh == null) {
+         mesh = GenericMeshReader.readMesh (file);
+         putCachedMesh (file, mesh);
+      }
+      return mesh.copy();
+   }
+
+   /**
+    * Reads a set of geometry files into the cache, using several threads.
+    * Files which are already cached, do not exist, or cannot be read are
+    * skipped; errors for the latter are reported when the mesh is
+    * subsequently requested using {@link #readMesh}. At most {@link
+    * #getMaxCachedMeshes} files are read, since any more would displace
+    * each other before they are used. Does nothing if caching is disabled.
+    *
+    * @param files geometry files to read
+    */
+   public static void prefetch (Collection<File> files) {
+      if (!myEnabled) {
+         return;
+      }
+      ArrayList<File> toRead = new ArrayList<>();
+      for (File file : new LinkedHashSet<File>(files)) {
+         if (toRead.size() == myMaxCachedMeshes) {
+            break;
+         }
+         if (file.isFile() && getCachedMesh (file) == null) {
+            toRead.add (file);
+         }
+      }
+      int nthreads = Math.min (myNumThreads, toRead.size());
+      if (nthreads == 0) {
+         return;
+      }
+      ParallelLoop loop = new ParallelLoop ("GeometryCache", nthreads);
+      try {
+         loop.forEach (0, toRead.size(), 1, (lo, hi, w) -> {
+            for (int i=lo; i<hi; i++) {
+               File file = toRead.get(i);
+               try {
+                  putCachedMesh (file, GenericMeshReader.readMesh (file));
+               }
+               catch (Exception e) {
+                  // ignore; will be reported by readMesh
+               }
+            }
+         });
+      }
+      finally {
+         loop.dispose();
+      }
+   }
+}
@@ -0,0 +1,107 @@
+package artisynth.core.opensim.components;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import maspack.geometry.MeshBase;
+import maspack.util.*;
+
+/**
+ * Checks that the {@link GeometryCache} keeps at most the maximum number of
+ * meshes, discarding the least recently used ones first.
+ */
+public class GeometryCacheTest extends UnitTest {
+
+   /**
+    * Writes a single triangle whose first vertex has an x coordinate
+    * given by a single digit, so that the file length does not depend on it.
+    */
+   void writeMesh (File file, int digit) throws IOException {
+      try (FileWriter fw = new FileWriter (file)) {
+         fw.write ("v " + digit + " 0 0\nv 1 0 0\nv 0 1 0\nf 1 2 3\n");
+      }
+   }
+
+   File createMeshFile (int digit) throws IOException {
+      File file = File.createTempFile ("geometryCacheTest", ".obj");
+      file.deleteOnExit();
+      writeMesh (file, digit);
+      return file;
+   }
+
+   /**
+    * Queries whether a file's mesh is cached, by changing the file's
+    * contents without changing its length or modification time and seeing
+    * whether the old contents are still returned. If the mesh was not
+    * cached, the cache is cleared afterwards, since it would otherwise hold
+    * the changed contents.
+    */
+   boolean isCached (File file, int digit) throws IOException {
+      long modTime = file.lastModified();
+      writeMesh (file, (digit+1)%10);
+      file.setLastModified (modTime);
+      boolean cached =
+         (GeometryCache.readMesh (file).getVertex(0).pnt.x == digit);
+      writeMesh (file, digit);
+      file.setLastModified (modTime);
+      if (!cached) {
+         GeometryCache.clear();
+      }
+      return cached;
+   }
+
+   void testLRU() throws IOException {
+      ArrayList<File> files = new ArrayList<>();
+      for (int i=0; i<5; i++) {
+         files.add (createMeshFile (i));
+      }
+      GeometryCache.setMaxCachedMeshes (3);
+      for (int i=0; i<3; i++) {
+         MeshBase mesh = GeometryCache.readMesh (files.get(i));
+         checkEquals ("mesh "+i+" vertex", mesh.getVertex(0).pnt.x, (double)i);
+      }
+      checkEquals ("num cached meshes", GeometryCache.numCachedMeshes(), 3);
+      // use mesh 0, so that mesh 1 is the least recently used
+      GeometryCache.readMesh (files.get(0));
+      GeometryCache.readMesh (files.get(3));
+      checkEquals ("num cached meshes", GeometryCache.numCachedMeshes(), 3);
+      check ("mesh 0 not cached", isCached (files.get(0), 0));
+      check ("mesh 3 not cached", isCached (files.get(3), 3));
+      check ("mesh 1 cached", !isCached (files.get(1), 1));
+
+      // reducing the maximum discards the least recently used meshes
+      GeometryCache.clear();
+      for (int i=0; i<3; i++) {
+         GeometryCache.readMesh (files.get(i));
+      }
+      GeometryCache.setMaxCachedMeshes (1);
+      checkEquals ("num cached meshes", GeometryCache.numCachedMeshes(), 1);
+      check ("mesh 2 not cached", isCached (files.get(2), 2));
+
+      // prefetch reads no more than the maximum
+      GeometryCache.clear();
+      GeometryCache.setMaxCachedMeshes (2);
+      GeometryCache.prefetch (files);
+      checkEquals ("num prefetched meshes", GeometryCache.numCachedMeshes(), 2);
+      check ("mesh 0 not prefetched", isCached (files.get(0), 0));
+   }
+
+   public void test() throws IOException {
+      int saveMax = GeometryCache.getMaxCachedMeshes();
+      try {
+         GeometryCache.clear();
+         testLRU();
+      }
+      finally {
+         GeometryCache.setMaxCachedMeshes (saveMax);
+         GeometryCache.clear();
+      }
+   }
+
+   public static void main (String[] args) {
+      GeometryCacheTest tester = new GeometryCacheTest();
+      tester.runtest();
+   }
+}
@@ -7,7 +7,6 @@ import artisynth.core.mechmodels.RigidMeshComp;
 import artisynth.core.util.ArtisynthPath;
 import maspack.geometry.MeshBase;
 import maspack.geometry.PolygonalMesh;
-import maspack.geometry.io.GenericMeshReader;
 import maspack.matrix.Vector3d;
 
 public class Mesh extends Geometry {
@@ -39,7 +38,7 @@ public class Mesh extends Geometry {
          try {
             File file = ArtisynthPath.convertToLocalSeparators 
                (new File(geometryPath, mesh_file));
-            mesh = GenericMeshReader.readMesh (file);
+            mesh = GeometryCache.readMesh (file);
             // scale and transform
             Vector3d scale = getScaleFactors ();
             if (scale != null) {
@@ -184,9 +184,8 @@ public class AffineNumericInputProbe extends NumericInputProbe {
       updateJythonVariables(myVariables, tloc);
       for (int i = 0; i < myDrivers.size(); i++) {
          NumericProbeDriver driver = myDrivers.get(i);
-         double[] vals = driver.eval(myVariables, myJythonLocals);
-         Object valObj = myConverters[i].arrayToObject(vals);
-         myPropList.get(i).set(valObj);
+         double[] vals = driver.eval(myVariables, tloc, myJythonLocals);
+         myConverters[i].setValues(myPropList.get(i), vals);
       }
    }
 }
@@ -0,0 +1,405 @@
+package artisynth.core.probes;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+
+import maspack.interpolation.Interpolation.Order;
+import maspack.interpolation.NumericList;
+import maspack.interpolation.NumericListKnot;
+
+/**
+ * Reads and writes numeric probe data in a compact binary format, allowing
+ * output probes to stream their data to a file as the simulation runs and
+ * input probes to replay it without parsing text.
+ *
+ * <p>A file consists of a header followed by a sequence of fixed-size
+ * records. The header contains a magic number, a version number, the length
+ * of the remaining header information, and then the start time, stop time,
+ * scale, interpolation order, vector size, and a list of variable names.
+ * Each record contains a time value followed by <code>vsize</code> data
+ * values, all stored as big-endian doubles. The number of records is not
+ * stored, and is instead inferred from the file length, so that a file
+ * remains readable even if it was not closed properly.
+ */
+public class NumericBinaryFile {
+
+   /**
+    * Magic number identifying a binary numeric probe file. The first byte is
+    * not a valid text character, so these files are not confused with the
+    * text format read by {@link NumericProbeBase#read(File,boolean)}.
+    */
+   public static final int MAGIC = 0x89414e50;
+   public static final int VERSION = 1;
+
+   private static final int BUFFER_SIZE = 1 << 16;
+
+   protected double myStartTime = 0;
+   protected double myStopTime = 1;
+   protected double myScale = 1;
+   protected Order myOrder = Order.Linear;
+   protected int myVsize;
+   protected String[] myNames = new String[0];
+
+   // state used for writing
+   protected RandomAccessFile myFile;
+   protected FileChannel myChannel;
+   protected ByteBuffer myBuffer;
+   protected long myDataOffset;
+   protected double myLastTime;
+   protected boolean myHasRecords;
+
+   /**
+    * Creates a new binary file descriptor for data vectors of size
+    * <code>vsize</code>.
+    *
+    * @param vsize size of the data vectors
+    */
+   public NumericBinaryFile (int vsize) {
+      myVsize = vsize;
+   }
+
+   public int getVsize() {
+      return myVsize;
+   }
+
+   public double getStartTime() {
+      return myStartTime;
+   }
+
+   public double getStopTime() {
+      return myStopTime;
+   }
+
+   public double getScale() {
+      return myScale;
+   }
+
+   /**
+    * Sets the start and stop times and scale stored in the header.
+    *
+    * @param startTime start time
+    * @param stopTime stop time
+    * @param scale time scale
+    */
+   public void setTimes (double startTime, double stopTime, double scale) {
+      myStartTime = startTime;
+      myStopTime = stopTime;
+      myScale = scale;
+   }
+
+   public Order getInterpolationOrder() {
+      return myOrder;
+   }
+
+   public void setInterpolationOrder (Order order) {
+      myOrder = order;
+   }
+
+   public String[] getNames() {
+      return myNames;
+   }
+
+   /**
+    * Sets the variable names stored in the header.
+    *
+    * @param names variable names
+    */
+   public void setNames (String[] names) {
+      myNames = (names != null ? names.clone() : new String[0]);
+   }
+
+   /**
+    * Returns the size in bytes of each data record.
+    *
+    * @return record size
+    */
+   public int getRecordSize() {
+      return 8*(myVsize+1);
+   }
+
+   /**
+    * Returns <code>true</code> if this file is currently open for writing.
+    *
+    * @return <code>true</code> if open for writing
+    */
+   public boolean isOpen() {
+      return myChannel != null;
+   }
+
+   private byte[] createHeaderInfo() throws IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream dos = new DataOutputStream (bytes);
+      dos.writeDouble (myStartTime);
+      dos.writeDouble (myStopTime);
+      dos.writeDouble (myScale);
+      dos.writeUTF (myOrder.toString());
+      dos.writeInt (myVsize);
+      dos.writeInt (myNames.length);
+      for (String name : myNames) {
+         dos.writeUTF (name);
+      }
+      dos.close();
+      return bytes.toByteArray();
+   }
+
+   private void scanHeaderInfo (byte[] info) throws IOException {
+      DataInputStream dis =
+         new DataInputStream (new ByteArrayInputStream (info));
+      myStartTime = dis.readDouble();
+      myStopTime = dis.readDouble();
+      myScale = dis.readDouble();
+      String orderStr = dis.readUTF();
+      myOrder = Order.fromString (orderStr);
+      if (myOrder == null) {
+         throw new IOException (
+            "unknown interpolation order '" + orderStr + "'");
+      }
+      myVsize = dis.readInt();
+      if (myVsize < 0) {
+         throw new IOException ("negative vector size " + myVsize);
+      }
+      int numNames = dis.readInt();
+      myNames = new String[numNames];
+      for (int i=0; i<numNames; i++) {
+         myNames[i] = dis.readUTF();
+      }
+   }
+
+   /**
+    * Opens a file for writing and writes the header. Any existing contents
+    * of the file are discarded.
+    *
+    * @param file file to write to
+    * @throws IOException if an I/O error occurs
+    */
+   public void open (File file) throws IOException {
+      close();
+      RandomAccessFile raf = new RandomAccessFile (file, "rw");
+      try {
+         raf.setLength (0);
+         byte[] info = createHeaderInfo();
+         raf.writeInt (MAGIC);
+         raf.writeInt (VERSION);
+         raf.writeInt (info.length);
+         raf.write (info);
+      }
+      catch (IOException e) {
+         raf.close();
+         throw e;
+      }
+      myFile = raf;
+      myChannel = raf.getChannel();
+      myDataOffset = myChannel.position();
+      int recSize = getRecordSize();
+      myBuffer =
+         ByteBuffer.allocate (Math.max (1, BUFFER_SIZE/recSize)*recSize);
+      myHasRecords = false;
+   }
+
+   /**
+    * Appends a data record to a file opened by {@link #open}. If
+    * <code>t</code> is less than or equal to the time of the last record
+    * written, then all records with times {@code >= t} are first removed,
+    * in the same way that {@link NumericList#add(NumericListKnot)
+    * NumericList.add()} replaces knots with equal time and output probes
+    * clear knots that follow the current time.
+    *
+    * @param t time of the record
+    * @param vals data values for the record. Must have a length {@code >=}
+    * the vector size.
+    * @throws IOException if an I/O error occurs
+    */
+   public void write (double t, double[] vals) throws IOException {
+      if (myChannel == null) {
+         throw new IOException ("file is not open for writing");
+      }
+      if (myHasRecords && t <= myLastTime) {
+         truncateFrom (t);
+      }
+      if (myBuffer.remaining() < getRecordSize()) {
+         flushBuffer();
+      }
+      myBuffer.putDouble (t);
+      for (int i=0; i<myVsize; i++) {
+         myBuffer.putDouble (vals[i]);
+      }
+      myLastTime = t;
+      myHasRecords = true;
+   }
+
+   private void flushBuffer() throws IOException {
+      myBuffer.flip();
+      while (myBuffer.hasRemaining()) {
+         myChannel.write (myBuffer);
+      }
+      myBuffer.clear();
+   }
+
+   /**
+    * Removes all written records whose time is {@code >= t}, using a binary
+    * search over the record times already in the file.
+    */
+   private void truncateFrom (double t) throws IOException {
+      flushBuffer();
+      int recSize = getRecordSize();
+      long numRecs = (myChannel.size()-myDataOffset)/recSize;
+      ByteBuffer tbuf = ByteBuffer.allocate (8);
+      long lo = 0;
+      long hi = numRecs;
+      while (lo < hi) {
+         long mid = (lo+hi) >>> 1;
+         tbuf.clear();
+         myChannel.read (tbuf, myDataOffset+mid*recSize);
+         if (tbuf.getDouble (0) < t) {
+            lo = mid+1;
+         }
+         else {
+            hi = mid;
+         }
+      }
+      long pos = myDataOffset+lo*recSize;
+      myChannel.truncate (pos);
+      myChannel.position (pos);
+      myHasRecords = (lo > 0);
+      if (myHasRecords) {
+         tbuf.clear();
+         myChannel.read (tbuf, pos-recSize);
+         myLastTime = tbuf.getDouble (0);
+      }
+   }
+
+   /**
+    * Writes any buffered records to the file.
+    *
+    * @throws IOException if an I/O error occurs
+    */
+   public void flush() throws IOException {
+      if (myChannel != null) {
+         flushBuffer();
+      }
+   }
+
+   /**
+    * Flushes any buffered records and closes the file, if it is open for
+    * writing.
+    *
+    * @throws IOException if an I/O error occurs
+    */
+   public void close() throws IOException {
+      if (myChannel != null) {
+         try {
+            flushBuffer();
+         }
+         finally {
+            myFile.close();
+            myFile = null;
+            myChannel = null;
+            myBuffer = null;
+         }
+      }
+   }
+
+   /**
+    * Writes the entire contents of a numeric list to a file.
+    *
+    * @param file file to write to
+    * @param list list containing the data
+    * @throws IOException if an I/O error occurs
+    */
+   public void write (File file, NumericList list) throws IOException {
+      open (file);
+      try {
+         for (NumericListKnot knot : list) {
+            write (knot.t, knot.v.getBuffer());
+         }
+      }
+      finally {
+         close();
+      }
+   }
+
+   /**
+    * Returns <code>true</code> if a file starts with the magic number
+    * identifying the binary numeric probe format.
+    *
+    * @param file file to check
+    * @return <code>true</code> if the file is a binary numeric probe file
+    */
+   public static boolean isBinaryFile (File file) {
+      if (!file.isFile() || file.length() < 4) {
+         return false;
+      }
+      try (RandomAccessFile raf = new RandomAccessFile (file, "r")) {
+         return raf.readInt() == MAGIC;
+      }
+      catch (IOException e) {
+         return false;
+      }
+   }
+
+   /**
+    * Reads a binary numeric probe file. The header information is stored in
+    * this object, and the records are added to <code>list</code>, if it is
+    * not <code>null</code>. The record data is memory-mapped, so that large
+    * files are read without intermediate copying. A trailing partial record,
+    * such as may be left by a file that was not closed properly, is ignored.
+    *
+    * @param file file to read
+    * @param list if not <code>null</code>, list to which the records are
+    * added. Its vector size must equal that of the file.
+    * @throws IOException if an I/O or format error occurs
+    */
+   public void read (File file, NumericList list) throws IOException {
+      try (RandomAccessFile raf = new RandomAccessFile (file, "r")) {
+         if (raf.length() < 12 || raf.readInt() != MAGIC) {
+            throw new IOException (
+               "file '"+file+"' is not a binary numeric probe file");
+         }
+         int version = raf.readInt();
+         if (version > VERSION) {
+            throw new IOException (
+               "file '"+file+"' has unsupported version " + version);
+         }
+         byte[] info = new byte[raf.readInt()];
+         raf.readFully (info);
+         scanHeaderInfo (info);
+         if (list == null) {
+            return;
+         }
+         if (list.getVectorSize() != myVsize) {
+            throw new IOException (
+               "file '"+file+"' has vector size "+myVsize+
+               ", expecting "+list.getVectorSize());
+         }
+         FileChannel channel = raf.getChannel();
+         long dataOffset = channel.position();
+         long numRecs = (channel.size()-dataOffset)/getRecordSize();
+         // map the records in segments to stay within the 2 GB map limit
+         long maxRecs = Integer.MAX_VALUE/getRecordSize();
+         NumericListKnot knot = new NumericListKnot (myVsize);
+         double[] vbuf = knot.v.getBuffer();
+         long k = 0;
+         while (k < numRecs) {
+            long nrecs = Math.min (maxRecs, numRecs-k);
+            DoubleBuffer dbuf = channel.map (
+               FileChannel.MapMode.READ_ONLY,
+               dataOffset+k*getRecordSize(),
+               nrecs*getRecordSize()).asDoubleBuffer();
+            for (long i=0; i<nrecs; i++) {
+               knot.t = dbuf.get();
+               dbuf.get (vbuf, 0, myVsize);
+               list.add (knot.v, knot.t);
+            }
+            k += nrecs;
+         }
+      }
+   }
+}
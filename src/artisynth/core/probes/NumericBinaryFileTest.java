@@ -0,0 +1,120 @@
+package artisynth.core.probes;
+
+import java.io.File;
+import java.io.IOException;
+
+import maspack.interpolation.Interpolation.Order;
+import maspack.interpolation.NumericList;
+import maspack.matrix.VectorNd;
+import maspack.util.*;
+
+public class NumericBinaryFileTest extends UnitTest {
+
+   NumericList createRandomList (int vsize, int numk) {
+      NumericList list = new NumericList (vsize);
+      VectorNd vec = new VectorNd (vsize);
+      for (int k=0; k<numk; k++) {
+         vec.setRandom();
+         list.add (vec, 0.01*k);
+      }
+      return list;
+   }
+
+   NumericList readList (File file, NumericBinaryFile bfile)
+      throws IOException {
+      NumericList list = new NumericList (bfile.getVsize());
+      bfile.read (file, list);
+      return list;
+   }
+
+   void checkEquals (String msg, NumericList list, NumericList check) {
+      if (!list.equals (check)) {
+         throw new TestException (
+            msg + ": expecting list\n" + check.toString ("%10.6f") +
+            "Got:\n" + list.toString ("%10.6f"));
+      }
+   }
+
+   void testReadWrite (File file, int vsize, int numk) throws IOException {
+      NumericList list = createRandomList (vsize, numk);
+      NumericBinaryFile bfile = new NumericBinaryFile (vsize);
+      bfile.setTimes (1.5, 4.0, 2.0);
+      bfile.setInterpolationOrder (Order.Cubic);
+      bfile.setNames (new String[] { "P0", "P1" });
+      bfile.write (file, list);
+      check ("file not recognized as binary",
+             NumericBinaryFile.isBinaryFile (file));
+
+      NumericBinaryFile rfile = new NumericBinaryFile (0);
+      rfile.read (file, null);
+      checkEquals ("vsize", rfile.getVsize(), vsize);
+      checkEquals ("start time", rfile.getStartTime(), 1.5);
+      checkEquals ("stop time", rfile.getStopTime(), 4.0);
+      checkEquals ("scale", rfile.getScale(), 2.0);
+      checkEquals (
+         "interpolation", rfile.getInterpolationOrder(), Order.Cubic);
+      checkEquals ("names", rfile.getNames().length, 2);
+      checkEquals ("name 1", rfile.getNames()[1], "P1");
+      checkEquals ("read list", readList (file, rfile), list);
+
+      // a list with the wrong vector size should be rejected
+      boolean rejected = false;
+      try {
+         rfile.read (file, new NumericList (vsize+1));
+      }
+      catch (IOException e) {
+         rejected = true;
+      }
+      check ("list with wrong vector size not rejected", rejected);
+   }
+
+   void testStreaming (File file, int vsize, int numk) throws IOException {
+      NumericList list0 = createRandomList (vsize, numk);
+      NumericList list1 = createRandomList (vsize, numk);
+      double[][] vals0 = list0.getValues();
+      double[][] vals1 = list1.getValues();
+      NumericBinaryFile bfile = new NumericBinaryFile (vsize);
+      bfile.open (file);
+      double[] vec = new double[vsize];
+      for (int k=0; k<numk; k++) {
+         System.arraycopy (vals0[k], 1, vec, 0, vsize);
+         bfile.write (vals0[k][0], vec);
+      }
+      // emulate a reset to an earlier time followed by a rerun, which should
+      // replace all records at or after that time
+      int kreset = numk/4;
+      for (int k=kreset; k<numk; k++) {
+         System.arraycopy (vals1[k], 1, vec, 0, vsize);
+         bfile.write (vals1[k][0], vec);
+      }
+      bfile.close();
+      double[][] vals = new double[numk][];
+      for (int k=0; k<numk; k++) {
+         vals[k] = (k < kreset ? vals0[k] : vals1[k]);
+      }
+      NumericList check = new NumericList (vsize);
+      check.setValues (vals);
+      checkEquals ("streamed list", readList (file, bfile), check);
+   }
+
+   public void test() throws IOException {
+      File file = File.createTempFile ("numericBinaryFileTest", ".bin");
+      file.deleteOnExit();
+      try {
+         testReadWrite (file, 3, 100);
+         testReadWrite (file, 7, 5000);
+         testReadWrite (file, 1, 0);
+         testStreaming (file, 3, 100);
+         testStreaming (file, 16, 20000);
+      }
+      finally {
+         file.delete();
+      }
+   }
+
+   public static void main (String[] args) {
+      NumericBinaryFileTest tester = new NumericBinaryFileTest();
+      RandomGenerator.setSeed (0x1234);
+      tester.runtest();
+   }
+}
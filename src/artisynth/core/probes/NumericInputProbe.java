@@ -418,9 +418,8 @@ public class NumericInputProbe extends NumericProbeBase
       updateJythonVariables (myVariables, tloc);
       for (int i = 0; i < myDrivers.size(); i++) {
          NumericProbeDriver driver = myDrivers.get (i);
-         double[] vals = driver.eval (myVariables, myJythonLocals);
-         Object valObj = myConverters[i].arrayToObject (vals);
-         myPropList.get (i).set (valObj);
+         double[] vals = driver.eval (myVariables, tloc, myJythonLocals);
+         myConverters[i].setValues (myPropList.get (i), vals);
       }
    }
    
@@ -445,8 +444,7 @@ public class NumericInputProbe extends NumericProbeBase
       nstate.dEnsureCapacity (myVsize);
       if (myVsize > 0) {
          for (int i=0; i<myPropList.size(); i++) {
-            Object obj = myPropList.get (i).get();
-            double[] vals = myConverters[i].objectToArray (obj);
+            double[] vals = myConverters[i].getValues (myPropList.get (i));
             for (int j=0; j<vals.length; j++) {
                nstate.dput (vals[j]);
             }
@@ -467,8 +465,7 @@ public class NumericInputProbe extends NumericProbeBase
             for (int j=0; j<vals.length; j++) {
                vals[j] = nstate.dget();
             }
-            Object valObj = myConverters[i].arrayToObject (vals);
-            myPropList.get (i).set (valObj);        
+            myConverters[i].setValues (myPropList.get (i), vals);
          }
       }
    }
@@ -504,9 +501,8 @@ public class NumericInputProbe extends NumericProbeBase
             NumericProbeDriver driver = myDrivers.get (i);
             if (driver.usesVariable (entry.getKey())) {
                // set variable at buf[k];
-               Object val = myPropList.get (i).get();
                double[] array =
-                  myConverters[i].objectToArray (myPropList.get (i).get());
+                  myConverters[i].getValues (myPropList.get (i));
                for (int j = 0; j < array.length; j++) {
                   buf[k + j] = array[j];
                }
@@ -288,7 +288,7 @@ public class NumericMonitorProbe extends NumericDataFunctionProbe {
    public void setVsize (int vsize, PlotTraceInfo[] traceInfos) {
 
       myVsize = vsize;
-      myNumericList = new NumericList (myVsize);
+      myNumericList = new NumericList (myVsize, /*columnar=*/true);
 
       if (traceInfos != null) {
          myPlotTraceManager.rebuild (getPropsOrDimens(), traceInfos);
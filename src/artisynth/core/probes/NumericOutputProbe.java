@@ -32,6 +32,20 @@ public class NumericOutputProbe extends NumericProbeBase
    private boolean myShowHeader;
    private static boolean defaultShowHeader = true;
 
+   private boolean myStreamToFile;
+   private static boolean defaultStreamToFile = false;
+
+   private int myStreamWindow;
+   private static int defaultStreamWindow = 10000;
+
+   // binary file to which data is streamed, when streaming is active
+   private NumericBinaryFile myStream;
+   // file most recently opened for streaming
+   private File myStreamFile;
+   // numeric list from which early samples have been removed because they
+   // were streamed, or null if the current list is complete
+   private NumericList myTrimmedList;
+
    public static PropertyList myProps =
       new PropertyList (NumericOutputProbe.class, NumericProbeBase.class);
 
@@ -43,6 +57,14 @@ public class NumericOutputProbe extends NumericProbeBase
       myProps.add (
          "showHeader * *", "show header explicitly in output file",
          defaultShowHeader);
+      myProps.add (
+         "streamToFile * *",
+         "stream binary data to the attached file during simulation",
+         defaultStreamToFile);
+      myProps.add (
+         "streamWindow * *",
+         "number of data samples kept in memory when streaming",
+         defaultStreamWindow, "[1,inf]");
    }
 
    public PropertyList getAllPropertyInfo() {
@@ -53,6 +75,8 @@ public class NumericOutputProbe extends NumericProbeBase
       super.setDefaultValues();
       myShowTime = defaultShowTime;
       myShowHeader = defaultShowHeader;
+      myStreamToFile = defaultStreamToFile;
+      myStreamWindow = defaultStreamWindow;
    }
 
    public boolean getShowTime() {
@@ -71,6 +95,122 @@ public class NumericOutputProbe extends NumericProbeBase
       myShowHeader = enable;
    }
 
+   /**
+    * Queries whether this probe streams its data to its attached file.
+    *
+    * @return <code>true</code> if data is streamed
+    * @see #setStreamToFile
+    */
+   public boolean getStreamToFile() {
+      return myStreamToFile;
+   }
+
+   /**
+    * Sets whether this probe streams its data to its attached file. When
+    * streaming is enabled, each data sample is appended to the attached file
+    * in the binary format of {@link NumericBinaryFile} as the simulation
+    * runs, and {@link #save} writes the binary format instead of text. Only
+    * the most recent samples, as controlled by {@link #setStreamWindow
+    * setStreamWindow()}, are then kept in memory for display. Streamed files
+    * can be read back by {@link NumericProbeBase#read(File,boolean) read()}
+    * and loaded into input probes.
+    *
+    * <p>If the simulation is reset to an earlier time, streamed samples with
+    * later times are removed from the file. If streaming is disabled after
+    * samples have been removed from memory, {@link #save} leaves the
+    * streamed file in place rather than overwriting it with the incomplete
+    * in-memory data.
+    *
+    * @param enable if <code>true</code>, enables streaming
+    */
+   public void setStreamToFile (boolean enable) {
+      if (enable != myStreamToFile) {
+         if (!enable) {
+            closeStream();
+         }
+         myStreamToFile = enable;
+      }
+   }
+
+   /**
+    * Returns the number of data samples kept in memory when streaming.
+    *
+    * @return number of samples kept in memory
+    * @see #setStreamWindow
+    */
+   public int getStreamWindow() {
+      return myStreamWindow;
+   }
+
+   /**
+    * Sets the number of most recent data samples kept in memory when data
+    * is being streamed to a file. To avoid removing samples at every step,
+    * the number held in memory may temporarily grow to twice this value.
+    *
+    * @param num number of samples to keep in memory
+    * @see #setStreamToFile
+    */
+   public void setStreamWindow (int num) {
+      myStreamWindow = Math.max (1, num);
+   }
+
+   /**
+    * Flushes and closes the file to which data is being streamed, if any.
+    * A subsequent call to {@link #apply} while streaming is enabled will
+    * restart the stream.
+    */
+   public void closeStream() {
+      if (myStream != null) {
+         try {
+            myStream.close();
+         }
+         catch (IOException e) {
+            System.out.println (
+               "Warning: error closing probe stream: " + e.getMessage());
+         }
+         myStream = null;
+      }
+   }
+
+   /**
+    * Appends a data sample to the stream file, opening the file if
+    * necessary.
+    */
+   private void streamKnot (NumericListKnot knot) {
+      File file = getAttachedFile();
+      try {
+         if (myStream == null) {
+            if (isAttachedFileRelative()) {
+               file.getParentFile().mkdirs();
+            }
+            myStream = createBinaryFile();
+            myStream.open (file);
+            myStreamFile = file;
+         }
+         myStream.write (knot.t, knot.v.getBuffer());
+      }
+      catch (IOException e) {
+         closeStream();
+         throw new RuntimeException (
+            "Error streaming probe data to '"+file+"'", e);
+      }
+   }
+
+   private NumericBinaryFile createBinaryFile() {
+      NumericBinaryFile bfile = new NumericBinaryFile (myVsize);
+      bfile.setTimes (getStartTime(), getStopTime(), myScale);
+      bfile.setInterpolationOrder (myInterpolation.getOrder());
+      if (myVariables != null) {
+         bfile.setNames (myVariables.keySet().toArray (new String[0]));
+      }
+      return bfile;
+   }
+
+   public void setAttachedFileName (String fileName) {
+      closeStream();
+      super.setAttachedFileName (fileName);
+   }
+
    public NumericOutputProbe() {
       setDefaultValues();
       myPlotTraceManager = new PlotTraceManager ("output");
@@ -196,6 +336,23 @@ public class NumericOutputProbe extends NumericProbeBase
    public void save() throws IOException {
       File file = getAttachedFile();
       if (file != null && !file.isDirectory ()) {
+         if (myStream != null) {
+            // data has already been written; just make sure it is flushed
+            myStream.flush();
+            return;
+         }
+         if (myTrimmedList == myNumericList && file.equals (myStreamFile)) {
+            // memory holds only the most recent samples, while the file
+            // holds the complete streamed data, so leave the file as is
+            return;
+         }
+         if (myStreamToFile) {
+            if (isAttachedFileRelative()) {
+               file.getParentFile().mkdirs();
+            }
+            createBinaryFile().write (file, myNumericList);
+            return;
+         }
          if (isAttachedFileRelative()) {
             file.getParentFile().mkdirs();
          }
@@ -257,15 +414,14 @@ public class NumericOutputProbe extends NumericProbeBase
       NumericListKnot knot = new NumericListKnot (myVsize);
       int i = 0;
       for (NumericProbeVariable var : myVariables.values()) {
-         Object obj = myPropList.get (i).get();
-         var.setValues (myConverters[i].objectToArray (obj));
+         var.setValues (myConverters[i].getValues (myPropList.get (i)));
          i++;
       }
       updateJythonVariables (myVariables, tloc);
       int k = 0;
       double[] buf = knot.v.getBuffer();
       for (NumericProbeDriver driver : myDrivers) {
-         double[] vals = driver.eval (myVariables, myJythonLocals);
+         double[] vals = driver.eval (myVariables, tloc, myJythonLocals);
          for (int j = 0; j < vals.length; j++) {
             buf[k++] = vals[j];
          }
@@ -273,6 +429,26 @@ public class NumericOutputProbe extends NumericProbeBase
       knot.t = tloc;
       myNumericList.add (knot);
       myNumericList.clearAfter (knot);
+      if (myTrimmedList != null && myNumericList.getNumKnots() == 1) {
+         // recording has restarted, so no samples are missing from the list
+         myTrimmedList = null;
+      }
+      if (myStreamToFile && getAttachedFile() != null) {
+         streamKnot (knot);
+         int numk = myNumericList.getNumKnots();
+         if (numk > 2*myStreamWindow) {
+            myNumericList.removeFirst (numk-myStreamWindow);
+            myTrimmedList = myNumericList;
+         }
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void dispose() {
+      closeStream();
+      super.dispose();
    }
 
    // public void display (Component c, Graphics g)
@@ -281,6 +457,9 @@ public class NumericOutputProbe extends NumericProbeBase
 
    public Object clone() throws CloneNotSupportedException {
       NumericOutputProbe probe = (NumericOutputProbe)super.clone();
+      probe.myStream = null;
+      probe.myStreamFile = null;
+      probe.myTrimmedList = null;
       //probe.myNumericList.clear();
       return probe;
    }
@@ -503,7 +682,7 @@ public class NumericOutputProbe extends NumericProbeBase
          for (int i = 0; i < newDrivers.size(); i++) {
             myVsize += newDrivers.get (i).getOutputSize();
          }
-         myNumericList = new NumericList (myVsize);
+         myNumericList = new NumericList (myVsize, /*columnar=*/true);
       }
 
       if (traceInfos != null) {
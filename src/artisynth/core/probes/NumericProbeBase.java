@@ -683,7 +683,7 @@ public abstract class NumericProbeBase extends Probe implements Displayable {
       double t = getVirtualTime (sec);
       myNumericList.interpolate (
          vals, t, myNumericList.getInterpolation().getOrder(), 
-         true, myNumericList.getLast());
+         true, null);
       return vals;
    }
    
@@ -970,6 +970,12 @@ public abstract class NumericProbeBase extends Probe implements Displayable {
     * <p>
     * The character '#' is a comment character, causing all subsequent input up
     * to the next new line to be ignored.
+    *
+    * <p>The file may also be a binary file written by {@link
+    * NumericBinaryFile}, such as one streamed by a {@link NumericOutputProbe}.
+    * In that case, the same information is read from the binary header and
+    * records, and the vector size given by the file must equal that of this
+    * probe.
     * 
     * @param file
     * File from which to read the probe information
@@ -981,6 +987,10 @@ public abstract class NumericProbeBase extends Probe implements Displayable {
     */
    public void read (File file, boolean setTimes) throws IOException {
       // myAttachedFile = null;
+      if (NumericBinaryFile.isBinaryFile (file)) {
+         readBinary (file, setTimes);
+         return;
+      }
       ReaderTokenizer rtok =
          new ReaderTokenizer (new BufferedReader (new FileReader (file)));
       try {
@@ -1062,6 +1072,20 @@ public abstract class NumericProbeBase extends Probe implements Displayable {
       addData (rtok, timeStep);
    }
 
+   protected void readBinary (File file, boolean setTimes) throws IOException {
+      NumericBinaryFile bfile = new NumericBinaryFile (myVsize);
+      NumericList list = new NumericList (myVsize);
+      bfile.read (file, list);
+      if (setTimes) {
+         setStartTime (bfile.getStartTime());
+         setStopTime (bfile.getStopTime());
+         setScale (bfile.getScale());
+      }
+      myNumericList = list;
+      myInterpolation.setOrder (bfile.getInterpolationOrder());
+      myNumericList.setInterpolation (myInterpolation);
+   }
+
    protected void load(boolean setTimes) throws IOException {
       File file = getAttachedFile();
       if (file != null) {
@@ -17,14 +17,23 @@ import maspack.matrix.*;
 /**
  * Encapsulates the code used to map inputs to properties for a
  * NumericInputProbe, or properties to outputs for a NumericOutputProbe.
+ * Expressions are compiled into a {@link NumericProbeExpression} when
+ * possible, and are otherwise evaluated using Jython.
  */
 public class NumericProbeDriver {
+
+   /**
+    * If <code>false</code>, expressions are always evaluated using Jython.
+    */
+   public static boolean compileExpressions = true;
+
    String myExpression = "";
    double[] myValues = new double[0];
    // LinkedHashMap<String,NumericProbeVariable> myVariables;
    String myVariable;
    PyCode myCode;
    NumericConverter myConverter;
+   NumericProbeExpression myCompiled;
 
    public NumericProbeDriver() {
       // myVariables = new LinkedHashMap<String,NumericProbeVariable>();
@@ -33,6 +42,7 @@ public class NumericProbeDriver {
       myValues = new double[0];
       myCode = null;
       myConverter = null;
+      myCompiled = null;
    }
 
    public NumericProbeDriver (NumericProbeDriver driver) {
@@ -40,6 +50,10 @@ public class NumericProbeDriver {
       myValues = new double[driver.myValues.length];
       myVariable = driver.myVariable;
       myCode = driver.myCode;
+      if (driver.myCompiled != null) {
+         // compiled expressions have state, so they can't be shared
+         myCompiled = driver.myCompiled.copy();
+      }
       if (driver.myConverter != null) {
          myConverter = new NumericConverter (driver.myConverter);
       }
@@ -67,6 +81,7 @@ public class NumericProbeDriver {
    public void setInvalid() {
       myExpression = "";
       myVariable = null;
+      myCompiled = null;
    }
 
    public boolean isValid() {
@@ -139,13 +154,23 @@ public class NumericProbeDriver {
       setOutputSize (conv.getDimension());
       myCode = code;
       myConverter = conv;
+      myCompiled = null;
       myExpression = expr;
       myVariable = null;
    }
 
+   private NumericProbeExpression compileExpression (
+      String expr, HashMap<String,NumericProbeVariable> variables) {
+      if (!compileExpressions) {
+         return null;
+      }
+      return NumericProbeExpression.compile (expr, variables);
+   }
+
    public void setExpression (
       String expr, HashMap<String,NumericProbeVariable> variables) {
       String varname = extractSingleVariable (expr);
+      NumericProbeExpression cexpr;
       if (varname != null) {
          NumericProbeVariable var = variables.get (varname);
          if (var == null) {
@@ -157,6 +182,15 @@ public class NumericProbeDriver {
          myExpression = varname;
          myCode = null;
          myConverter = null;
+         myCompiled = null;
+      }
+      else if ((cexpr = compileExpression (expr, variables)) != null) {
+         setOutputSize (cexpr.getSize());
+         myVariable = null;
+         myExpression = expr;
+         myCode = null;
+         myConverter = null;
+         myCompiled = cexpr;
       }
       else {
          if (!JythonInit.jythonIsAvailable()) {
@@ -226,6 +260,16 @@ public class NumericProbeDriver {
       return myCode != null;
    }
 
+   /**
+    * Queries whether this driver's expression has been compiled into a
+    * {@link NumericProbeExpression}.
+    *
+    * @return {@code true} if the expression is compiled
+    */
+   public boolean usesCompiledExpression() {
+      return myCompiled != null;
+   }
+
    public boolean renameVariable (String oldname, String newname) {
       if (myVariable != null) {
          if (myVariable.equals (oldname)) {
@@ -240,8 +284,39 @@ public class NumericProbeDriver {
       return false;
    }
 
+   /**
+    * Evaluates this driver, with the time taken from the value of
+    * <code>t</code> in <code>locals</code>, if present.
+    *
+    * @param variables probe variables
+    * @param locals Jython locals, or <code>null</code> if the probe
+    * has no Jython expressions
+    * @return values of this driver
+    */
    public double[] eval (
       HashMap<String,NumericProbeVariable> variables, PyStringMap locals) {
+      double t = 0;
+      if (locals != null) {
+         PyObject tobj = locals.__finditem__ ("t");
+         if (tobj != null) {
+            t = tobj.asDouble();
+         }
+      }
+      return eval (variables, t, locals);
+   }
+
+   /**
+    * Evaluates this driver.
+    *
+    * @param variables probe variables
+    * @param t probe time, used for the variable <code>t</code>
+    * @param locals Jython locals, or <code>null</code> if the probe
+    * has no Jython expressions
+    * @return values of this driver
+    */
+   public double[] eval (
+      HashMap<String,NumericProbeVariable> variables, double t,
+      PyStringMap locals) {
       if (myVariable != null) {
          NumericProbeVariable var = variables.get (myVariable);
          if (var != null) {
@@ -254,6 +329,22 @@ public class NumericProbeDriver {
             Py.tojava (Py.runCode (myCode, locals, locals), Object.class);
          return myConverter.objectToArray (res);
       }
+      else if (myCompiled != null) {
+         if (myCompiled.getExpression() != myExpression ||
+             !myCompiled.bind (variables)) {
+            // expression has been renamed, or its variables have changed
+            NumericProbeExpression cexpr =
+               NumericProbeExpression.compile (myExpression, variables);
+            if (cexpr == null || cexpr.getSize() != myValues.length) {
+               throw new IllegalStateException (
+                  "expression '" + myExpression +
+                  "' no longer consistent with its variables");
+            }
+            myCompiled = cexpr;
+         }
+         myCompiled.eval (myValues, t);
+         return myValues;
+      }
       else {
          return null;
       }
@@ -0,0 +1,1107 @@
+package artisynth.core.probes;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Compiled form of a numeric probe driver expression. The expression is
+ * parsed into a tree of nodes that operate directly on the <code>double</code>
+ * values of the probe's {@link NumericProbeVariable}s, so that it can be
+ * evaluated without the boxing and interpretation overhead of Jython.
+ *
+ * <p>The supported grammar is the subset of the Jython driver grammar
+ * consisting of
+ *
+ * <ul>
+ * <li>numeric literals, the probe variables, and the time <code>t</code>;
+ * <li>the operators <code>+ - * / // % **</code>, with Python precedence
+ * and semantics;
+ * <li>the builtins <code>abs</code>, <code>min</code>, <code>max</code>,
+ * <code>pow</code> and <code>float</code>, and the static methods of
+ * <code>java.lang.Math</code>, such as <code>Math.sin(t)</code>;
+ * <li>for vector variables, element access <code>v[i]</code> using an
+ * integer literal, addition and subtraction of vectors, multiplication and
+ * division by scalars, negation, <code>abs()</code>, and the methods
+ * <code>norm()</code>, <code>normSquared()</code>, <code>sum()</code>,
+ * <code>maxElement()</code>, <code>minElement()</code>,
+ * <code>get(i)</code> and <code>dot(w)</code>.
+ * </ul>
+ *
+ * Anything else, including the division of two integers (which truncates in
+ * Jython), causes {@link #compile} to return <code>null</code>, in which case
+ * the expression should be evaluated with Jython instead. Scalar division,
+ * modulus and power operations raise an {@link ArithmeticException} in the
+ * same cases where Jython raises an exception.
+ */
+public class NumericProbeExpression {
+
+   String myExpression;
+   Node myRoot;
+   double myTime;
+
+   // variable nodes, together with the variables map they are bound to
+   ArrayList<VarNode> myVarNodes = new ArrayList<VarNode>();
+   Map<String,NumericProbeVariable> myVariables;
+
+   /**
+    * Thrown internally when an expression uses unsupported syntax.
+    */
+   private static class UnsupportedException extends Exception {
+      private static final long serialVersionUID = 1L;
+
+      UnsupportedException() {
+         super (null, null, false, false);
+      }
+   }
+
+   private static final UnsupportedException UNSUPPORTED =
+      new UnsupportedException();
+
+   private NumericProbeExpression (String expr) {
+      myExpression = expr;
+   }
+
+   /**
+    * Compiles an expression with respect to a set of probe variables.
+    *
+    * @param expr expression to compile
+    * @param variables probe variables, by name
+    * @return compiled expression, or <code>null</code> if the expression
+    * uses syntax that is not supported
+    */
+   public static NumericProbeExpression compile (
+      String expr, Map<String,NumericProbeVariable> variables) {
+      NumericProbeExpression cexpr = new NumericProbeExpression (expr);
+      try {
+         Parser parser = cexpr.new Parser (expr, variables);
+         cexpr.myRoot = parser.parse();
+      }
+      catch (UnsupportedException e) {
+         return null;
+      }
+      cexpr.myVariables = variables;
+      return cexpr;
+   }
+
+   /**
+    * Returns a copy of this expression, bound to the same variables.
+    *
+    * @return copy of this expression
+    */
+   public NumericProbeExpression copy() {
+      return compile (myExpression, myVariables);
+   }
+
+   /**
+    * Returns the expression string from which this expression was compiled.
+    *
+    * @return expression string
+    */
+   public String getExpression() {
+      return myExpression;
+   }
+
+   /**
+    * Returns the number of values produced by this expression, which is 1
+    * for scalar expressions.
+    *
+    * @return expression size
+    */
+   public int getSize() {
+      return myRoot.mySize;
+   }
+
+   /**
+    * Binds this expression to a set of probe variables. Variables are
+    * looked up by name if <code>variables</code> differs from the set this
+    * expression is currently bound to.
+    *
+    * @param variables probe variables, by name
+    * @return <code>false</code> if a variable used by the expression is
+    * missing or has a different dimension than when the expression was
+    * compiled, in which case the expression should be recompiled
+    */
+   public boolean bind (Map<String,NumericProbeVariable> variables) {
+      if (variables != myVariables) {
+         for (VarNode node : myVarNodes) {
+            NumericProbeVariable var = variables.get (node.myName);
+            if (var == null) {
+               return false;
+            }
+            node.myVar = var;
+         }
+         myVariables = variables;
+      }
+      for (VarNode node : myVarNodes) {
+         if (node.myVar.myValues.length != node.myDim) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Evaluates this expression, using the current values of its variables.
+    *
+    * @param res returns the {@link #getSize} values of the expression
+    * @param t value of the time variable <code>t</code>
+    */
+   public void eval (double[] res, double t) {
+      myTime = t;
+      if (myRoot.mySize == 1) {
+         res[0] = myRoot.value();
+      }
+      else {
+         System.arraycopy (myRoot.values(), 0, res, 0, myRoot.mySize);
+      }
+   }
+
+   public String toString() {
+      return myExpression;
+   }
+
+   /* --- Python arithmetic --- */
+
+   static double divide (double a, double b) {
+      if (b == 0) {
+         throw new ArithmeticException ("float division by zero");
+      }
+      return a/b;
+   }
+
+   static double mod (double a, double b) {
+      if (b == 0) {
+         throw new ArithmeticException ("float modulo");
+      }
+      double mod = a % b;
+      if (mod != 0) {
+         if ((b < 0) != (mod < 0)) {
+            mod += b;
+         }
+      }
+      else {
+         mod = Math.copySign (0.0, b);
+      }
+      return mod;
+   }
+
+   static double floorDivide (double a, double b) {
+      if (b == 0) {
+         throw new ArithmeticException ("float divmod()");
+      }
+      double mod = a % b;
+      double div = (a - mod)/b;
+      if (mod != 0) {
+         if ((b < 0) != (mod < 0)) {
+            div -= 1.0;
+         }
+      }
+      double floordiv;
+      if (div != 0) {
+         floordiv = Math.floor (div);
+         if (div - floordiv > 0.5) {
+            floordiv += 1.0;
+         }
+      }
+      else {
+         floordiv = Math.copySign (0.0, a/b);
+      }
+      return floordiv;
+   }
+
+   static double power (double a, double b) {
+      if (b == 0) {
+         return 1.0;
+      }
+      if (a == 0 && b < 0) {
+         throw new ArithmeticException (
+            "0.0 cannot be raised to a negative power");
+      }
+      if (a < 0 && b != Math.floor (b)) {
+         throw new ArithmeticException (
+            "negative number cannot be raised to a fractional power");
+      }
+      return Math.pow (a, b);
+   }
+
+   /* --- expression nodes --- */
+
+   /**
+    * Base class for expression nodes. Scalar nodes (with size 1) are
+    * evaluated using {@link #value}, and vector nodes using {@link #values},
+    * which returns a buffer owned by the node.
+    */
+   static abstract class Node {
+      int mySize = 1;
+      boolean myIntegral; // true if the value is a Python integer
+
+      double value() {
+         throw new UnsupportedOperationException();
+      }
+
+      double[] values() {
+         throw new UnsupportedOperationException();
+      }
+
+      boolean isConstant() {
+         return false;
+      }
+   }
+
+   static class ConstNode extends Node {
+      double myValue;
+
+      ConstNode (double value, boolean integral) {
+         myValue = value;
+         myIntegral = integral;
+      }
+
+      double value() {
+         return myValue;
+      }
+
+      boolean isConstant() {
+         return true;
+      }
+   }
+
+   class TimeNode extends Node {
+      double value() {
+         return myTime;
+      }
+   }
+
+   static class VarNode extends Node {
+      String myName;
+      NumericProbeVariable myVar;
+      int myDim;
+
+      VarNode (String name, NumericProbeVariable var) {
+         myName = name;
+         myVar = var;
+         myDim = var.getDimension();
+         mySize = myDim;
+      }
+
+      double value() {
+         return myVar.myValues[0];
+      }
+
+      double[] values() {
+         return myVar.myValues;
+      }
+   }
+
+   static final int ADD = 0;
+   static final int SUB = 1;
+   static final int MUL = 2;
+   static final int DIV = 3;
+   static final int FLOORDIV = 4;
+   static final int MOD = 5;
+   static final int POW = 6;
+
+   static class BinaryNode extends Node {
+      Node myA;
+      Node myB;
+      int myOp;
+
+      BinaryNode (int op, Node a, Node b) {
+         myOp = op;
+         myA = a;
+         myB = b;
+         myIntegral = (a.myIntegral && b.myIntegral);
+      }
+
+      double value() {
+         double a = myA.value();
+         double b = myB.value();
+         switch (myOp) {
+            case ADD: return a + b;
+            case SUB: return a - b;
+            case MUL: return a * b;
+            case DIV: return divide (a, b);
+            case FLOORDIV: return floorDivide (a, b);
+            case MOD: return mod (a, b);
+            case POW: return power (a, b);
+            default: {
+               throw new UnsupportedOperationException (
+                  "Unknown operator " + myOp);
+            }
+         }
+      }
+   }
+
+   static class NegateNode extends Node {
+      Node myA;
+
+      NegateNode (Node a) {
+         myA = a;
+         myIntegral = a.myIntegral;
+      }
+
+      double value() {
+         return -myA.value();
+      }
+   }
+
+   static class FunctionNode extends Node {
+      Node myA;
+      DoubleUnaryOperator myFxn;
+
+      FunctionNode (DoubleUnaryOperator fxn, Node a) {
+         myFxn = fxn;
+         myA = a;
+      }
+
+      double value() {
+         return myFxn.applyAsDouble (myA.value());
+      }
+   }
+
+   static class Function2Node extends Node {
+      Node myA;
+      Node myB;
+      DoubleBinaryOperator myFxn;
+
+      Function2Node (DoubleBinaryOperator fxn, Node a, Node b) {
+         myFxn = fxn;
+         myA = a;
+         myB = b;
+      }
+
+      double value() {
+         return myFxn.applyAsDouble (myA.value(), myB.value());
+      }
+   }
+
+   /**
+    * Python builtin <code>min()</code> or <code>max()</code>, which return
+    * the first of the extreme arguments.
+    */
+   static class MinMaxNode extends Node {
+      Node[] myArgs;
+      boolean myMax;
+
+      MinMaxNode (boolean max, Node[] args) {
+         myMax = max;
+         myArgs = args;
+         myIntegral = true;
+         for (Node arg : args) {
+            myIntegral &= arg.myIntegral;
+         }
+      }
+
+      double value() {
+         double m = myArgs[0].value();
+         for (int i=1; i<myArgs.length; i++) {
+            double v = myArgs[i].value();
+            if (myMax ? v > m : v < m) {
+               m = v;
+            }
+         }
+         return m;
+      }
+   }
+
+   static abstract class VectorNode extends Node {
+      double[] myBuf;
+
+      VectorNode (int size) {
+         mySize = size;
+         myBuf = new double[size];
+      }
+   }
+
+   static class VectorAddNode extends VectorNode {
+      Node myA;
+      Node myB;
+      boolean mySub;
+
+      VectorAddNode (boolean sub, Node a, Node b) {
+         super (a.mySize);
+         mySub = sub;
+         myA = a;
+         myB = b;
+      }
+
+      double[] values() {
+         double[] a = myA.values();
+         double[] b = myB.values();
+         if (mySub) {
+            for (int i=0; i<mySize; i++) {
+               myBuf[i] = a[i] - b[i];
+            }
+         }
+         else {
+            for (int i=0; i<mySize; i++) {
+               myBuf[i] = a[i] + b[i];
+            }
+         }
+         return myBuf;
+      }
+   }
+
+   static class VectorScaleNode extends VectorNode {
+      Node myV;
+      Node myS;
+      boolean myDivide;
+
+      VectorScaleNode (boolean divide, Node v, Node s) {
+         super (v.mySize);
+         myDivide = divide;
+         myV = v;
+         myS = s;
+      }
+
+      double[] values() {
+         double s = myS.value();
+         if (myDivide) {
+            // Jython scales by the reciprocal
+            s = divide (1.0, s);
+         }
+         double[] v = myV.values();
+         for (int i=0; i<mySize; i++) {
+            myBuf[i] = s*v[i];
+         }
+         return myBuf;
+      }
+   }
+
+   static class VectorNegateNode extends VectorNode {
+      Node myV;
+      boolean myAbs;
+
+      VectorNegateNode (boolean abs, Node v) {
+         super (v.mySize);
+         myAbs = abs;
+         myV = v;
+      }
+
+      double[] values() {
+         double[] v = myV.values();
+         if (myAbs) {
+            for (int i=0; i<mySize; i++) {
+               myBuf[i] = Math.abs (v[i]);
+            }
+         }
+         else {
+            for (int i=0; i<mySize; i++) {
+               myBuf[i] = -v[i];
+            }
+         }
+         return myBuf;
+      }
+   }
+
+   static class ElementNode extends Node {
+      Node myV;
+      int myIdx;
+
+      ElementNode (Node v, int idx) {
+         myV = v;
+         myIdx = idx;
+      }
+
+      double value() {
+         return myV.values()[myIdx];
+      }
+   }
+
+   static final int NORM = 0;
+   static final int NORM_SQUARED = 1;
+   static final int SUM = 2;
+   static final int MAX_ELEMENT = 3;
+   static final int MIN_ELEMENT = 4;
+
+   static class ReduceNode extends Node {
+      Node myV;
+      int myOp;
+
+      ReduceNode (int op, Node v) {
+         myOp = op;
+         myV = v;
+      }
+
+      double value() {
+         double[] v = myV.values();
+         int size = myV.mySize;
+         double res;
+         switch (myOp) {
+            case NORM:
+            case NORM_SQUARED: {
+               res = 0;
+               for (int i=0; i<size; i++) {
+                  res += v[i]*v[i];
+               }
+               return myOp == NORM ? Math.sqrt (res) : res;
+            }
+            case SUM: {
+               res = 0;
+               for (int i=0; i<size; i++) {
+                  res += v[i];
+               }
+               return res;
+            }
+            case MAX_ELEMENT: {
+               res = Double.NEGATIVE_INFINITY;
+               for (int i=0; i<size; i++) {
+                  if (v[i] > res) {
+                     res = v[i];
+                  }
+               }
+               return res;
+            }
+            case MIN_ELEMENT: {
+               res = Double.POSITIVE_INFINITY;
+               for (int i=0; i<size; i++) {
+                  if (v[i] < res) {
+                     res = v[i];
+                  }
+               }
+               return res;
+            }
+            default: {
+               throw new UnsupportedOperationException (
+                  "Unknown reduction " + myOp);
+            }
+         }
+      }
+   }
+
+   static class DotNode extends Node {
+      Node myA;
+      Node myB;
+
+      DotNode (Node a, Node b) {
+         myA = a;
+         myB = b;
+      }
+
+      double value() {
+         double[] a = myA.values();
+         double[] b = myB.values();
+         double sum = 0;
+         for (int i=0; i<myA.mySize; i++) {
+            sum += a[i]*b[i];
+         }
+         return sum;
+      }
+   }
+
+   /* --- parser --- */
+
+   static DoubleUnaryOperator getMathFunction (String name) {
+      switch (name) {
+         case "sin": return Math::sin;
+         case "cos": return Math::cos;
+         case "tan": return Math::tan;
+         case "asin": return Math::asin;
+         case "acos": return Math::acos;
+         case "atan": return Math::atan;
+         case "sinh": return Math::sinh;
+         case "cosh": return Math::cosh;
+         case "tanh": return Math::tanh;
+         case "exp": return Math::exp;
+         case "expm1": return Math::expm1;
+         case "log": return Math::log;
+         case "log10": return Math::log10;
+         case "log1p": return Math::log1p;
+         case "sqrt": return Math::sqrt;
+         case "cbrt": return Math::cbrt;
+         case "abs": return Math::abs;
+         case "floor": return Math::floor;
+         case "ceil": return Math::ceil;
+         case "rint": return Math::rint;
+         case "signum": return Math::signum;
+         case "toRadians": return Math::toRadians;
+         case "toDegrees": return Math::toDegrees;
+         default: return null;
+      }
+   }
+
+   static DoubleBinaryOperator getMathFunction2 (String name) {
+      switch (name) {
+         case "atan2": return Math::atan2;
+         case "hypot": return Math::hypot;
+         case "pow": return Math::pow;
+         case "max": return Math::max;
+         case "min": return Math::min;
+         default: return null;
+      }
+   }
+
+   /**
+    * Recursive descent parser for the supported grammar:
+    *
+    * <pre>
+    * expr    := term (('+' | '-') term)*
+    * term    := unary (('*' | '/' | '//' | '%') unary)*
+    * unary   := ('-' | '+') unary | power
+    * power   := postfix ('**' unary)?
+    * postfix := primary ('[' int ']' | '.' name '(' args ')')*
+    * primary := number | name | name '(' args ')' |
+    *            'Math' '.' name '(' args ')' | '(' expr ')'
+    * </pre>
+    */
+   class Parser {
+      String myStr;
+      int myPos;
+      Map<String,NumericProbeVariable> myVars;
+
+      Parser (String str, Map<String,NumericProbeVariable> vars) {
+         myStr = str;
+         myVars = vars;
+      }
+
+      Node parse() throws UnsupportedException {
+         Node node = parseExpr();
+         skipWhitespace();
+         if (myPos != myStr.length()) {
+            throw UNSUPPORTED;
+         }
+         return node;
+      }
+
+      void skipWhitespace() {
+         while (myPos < myStr.length() &&
+                (myStr.charAt(myPos) == ' ' || myStr.charAt(myPos) == '\t')) {
+            myPos++;
+         }
+      }
+
+      /**
+       * Consumes the operator <code>op</code> if it is next in the input,
+       * and is not the start of a longer operator.
+       */
+      boolean accept (String op) {
+         skipWhitespace();
+         if (!myStr.startsWith (op, myPos)) {
+            return false;
+         }
+         int end = myPos + op.length();
+         if ((op.equals ("*") || op.equals ("/")) &&
+             end < myStr.length() && myStr.charAt(end) == op.charAt(0)) {
+            return false;
+         }
+         myPos = end;
+         return true;
+      }
+
+      void expect (String op) throws UnsupportedException {
+         if (!accept (op)) {
+            throw UNSUPPORTED;
+         }
+      }
+
+      String acceptName() {
+         skipWhitespace();
+         int start = myPos;
+         if (myPos < myStr.length() && isNameStart (myStr.charAt(myPos))) {
+            myPos++;
+            while (myPos < myStr.length() &&
+                   (isNameStart (myStr.charAt(myPos)) ||
+                    Character.isDigit (myStr.charAt(myPos)))) {
+               myPos++;
+            }
+            return myStr.substring (start, myPos);
+         }
+         return null;
+      }
+
+      boolean isNameStart (char c) {
+         return ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_');
+      }
+
+      String expectName() throws UnsupportedException {
+         String name = acceptName();
+         if (name == null) {
+            throw UNSUPPORTED;
+         }
+         return name;
+      }
+
+      Node parseExpr() throws UnsupportedException {
+         Node node = parseTerm();
+         while (true) {
+            if (accept ("+")) {
+               node = createBinary (ADD, node, parseTerm());
+            }
+            else if (accept ("-")) {
+               node = createBinary (SUB, node, parseTerm());
+            }
+            else {
+               return node;
+            }
+         }
+      }
+
+      Node parseTerm() throws UnsupportedException {
+         Node node = parseUnary();
+         while (true) {
+            if (accept ("*")) {
+               node = createBinary (MUL, node, parseUnary());
+            }
+            else if (accept ("//")) {
+               node = createBinary (FLOORDIV, node, parseUnary());
+            }
+            else if (accept ("/")) {
+               node = createBinary (DIV, node, parseUnary());
+            }
+            else if (accept ("%")) {
+               node = createBinary (MOD, node, parseUnary());
+            }
+            else {
+               return node;
+            }
+         }
+      }
+
+      Node parseUnary() throws UnsupportedException {
+         if (accept ("-")) {
+            Node a = parseUnary();
+            if (a.mySize > 1) {
+               return new VectorNegateNode (false, a);
+            }
+            return fold (new NegateNode (a));
+         }
+         else if (accept ("+")) {
+            return parseUnary();
+         }
+         else {
+            return parsePower();
+         }
+      }
+
+      Node parsePower() throws UnsupportedException {
+         Node node = parsePostfix();
+         if (accept ("**")) {
+            // right associative, and binds less tightly than a unary
+            // operator on its right
+            node = createBinary (POW, node, parseUnary());
+         }
+         return node;
+      }
+
+      Node parsePostfix() throws UnsupportedException {
+         Node node = parsePrimary();
+         while (true) {
+            if (accept ("[")) {
+               int idx = parseIndex (node);
+               expect ("]");
+               node = new ElementNode (node, idx);
+            }
+            else if (accept (".")) {
+               node = parseMethod (node, expectName());
+            }
+            else {
+               return node;
+            }
+         }
+      }
+
+      int parseIndex (Node vec) throws UnsupportedException {
+         Node idx = parseExpr();
+         if (vec.mySize == 1 || !idx.isConstant() || !idx.myIntegral) {
+            throw UNSUPPORTED;
+         }
+         double value = idx.value();
+         if (value < 0 || value >= vec.mySize) {
+            throw UNSUPPORTED;
+         }
+         return (int)value;
+      }
+
+      Node parseMethod (Node vec, String name) throws UnsupportedException {
+         if (vec.mySize == 1) {
+            throw UNSUPPORTED;
+         }
+         expect ("(");
+         Node node;
+         switch (name) {
+            case "norm": node = new ReduceNode (NORM, vec); break;
+            case "normSquared": node = new ReduceNode (NORM_SQUARED, vec); break;
+            case "sum": node = new ReduceNode (SUM, vec); break;
+            case "maxElement": node = new ReduceNode (MAX_ELEMENT, vec); break;
+            case "minElement": node = new ReduceNode (MIN_ELEMENT, vec); break;
+            case "get": {
+               node = new ElementNode (vec, parseIndex (vec));
+               break;
+            }
+            case "dot": {
+               Node w = parseExpr();
+               if (w.mySize != vec.mySize) {
+                  throw UNSUPPORTED;
+               }
+               node = new DotNode (vec, w);
+               break;
+            }
+            default: {
+               throw UNSUPPORTED;
+            }
+         }
+         expect (")");
+         return node;
+      }
+
+      Node parsePrimary() throws UnsupportedException {
+         skipWhitespace();
+         if (myPos == myStr.length()) {
+            throw UNSUPPORTED;
+         }
+         char c = myStr.charAt(myPos);
+         if (Character.isDigit (c) || c == '.') {
+            return parseNumber();
+         }
+         else if (accept ("(")) {
+            Node node = parseExpr();
+            expect (")");
+            return node;
+         }
+         String name = acceptName();
+         if (name == null) {
+            throw UNSUPPORTED;
+         }
+         boolean isCall = accept ("(");
+         if (name.equals ("t")) {
+            // time is always bound to t, overriding any variable
+            if (isCall) {
+               throw UNSUPPORTED;
+            }
+            return new TimeNode();
+         }
+         if (myVars.containsKey (name)) {
+            if (isCall) {
+               throw UNSUPPORTED;
+            }
+            VarNode node = new VarNode (name, myVars.get (name));
+            myVarNodes.add (node);
+            return node;
+         }
+         else if (isCall) {
+            Node node = parseBuiltin (name, parseArgs());
+            return fold (node);
+         }
+         else if (name.equals ("Math") && accept (".")) {
+            String fname = expectName();
+            expect ("(");
+            return fold (parseMathCall (fname, parseArgs()));
+         }
+         throw UNSUPPORTED;
+      }
+
+      /**
+       * Parses a comma-separated argument list, after the opening
+       * parenthesis, along with the closing parenthesis.
+       */
+      Node[] parseArgs() throws UnsupportedException {
+         ArrayList<Node> args = new ArrayList<Node>();
+         if (!accept (")")) {
+            do {
+               args.add (parseExpr());
+            }
+            while (accept (","));
+            expect (")");
+         }
+         return args.toArray (new Node[0]);
+      }
+
+      void checkScalarArgs (Node[] args, int num) throws UnsupportedException {
+         if (num != -1 && args.length != num) {
+            throw UNSUPPORTED;
+         }
+         for (Node arg : args) {
+            if (arg.mySize > 1) {
+               throw UNSUPPORTED;
+            }
+         }
+      }
+
+      Node parseBuiltin (String name, Node[] args)
+         throws UnsupportedException {
+         if (name.equals ("abs")) {
+            if (args.length == 1 && args[0].mySize > 1) {
+               return new VectorNegateNode (true, args[0]);
+            }
+            checkScalarArgs (args, 1);
+            Node node = new FunctionNode (Math::abs, args[0]);
+            node.myIntegral = args[0].myIntegral;
+            return node;
+         }
+         else if (name.equals ("min") || name.equals ("max")) {
+            if (args.length < 2) {
+               throw UNSUPPORTED;
+            }
+            checkScalarArgs (args, -1);
+            return new MinMaxNode (name.equals ("max"), args);
+         }
+         else if (name.equals ("pow")) {
+            checkScalarArgs (args, 2);
+            return new BinaryNode (POW, args[0], args[1]);
+         }
+         else if (name.equals ("float")) {
+            checkScalarArgs (args, 1);
+            return new FunctionNode (x -> x, args[0]);
+         }
+         throw UNSUPPORTED;
+      }
+
+      Node parseMathCall (String name, Node[] args)
+         throws UnsupportedException {
+         Node node;
+         if (args.length == 1) {
+            checkScalarArgs (args, 1);
+            DoubleUnaryOperator fxn = getMathFunction (name);
+            if (fxn == null) {
+               throw UNSUPPORTED;
+            }
+            node = new FunctionNode (fxn, args[0]);
+         }
+         else if (args.length == 2) {
+            checkScalarArgs (args, 2);
+            DoubleBinaryOperator fxn = getMathFunction2 (name);
+            if (fxn == null) {
+               throw UNSUPPORTED;
+            }
+            node = new Function2Node (fxn, args[0], args[1]);
+         }
+         else {
+            throw UNSUPPORTED;
+         }
+         if (name.equals ("abs") || name.equals ("max") || name.equals ("min")) {
+            // the integer overloads are chosen for integer arguments
+            node.myIntegral = (args[0].myIntegral &&
+                               (args.length == 1 || args[1].myIntegral));
+         }
+         return node;
+      }
+
+      Node parseNumber() throws UnsupportedException {
+         int start = myPos;
+         boolean integral = true;
+         while (myPos < myStr.length() && Character.isDigit (myStr.charAt(myPos))) {
+            myPos++;
+         }
+         if (myPos < myStr.length() && myStr.charAt(myPos) == '.') {
+            integral = false;
+            myPos++;
+            while (myPos < myStr.length() &&
+                   Character.isDigit (myStr.charAt(myPos))) {
+               myPos++;
+            }
+         }
+         if (myPos < myStr.length() &&
+             (myStr.charAt(myPos) == 'e' || myStr.charAt(myPos) == 'E')) {
+            integral = false;
+            myPos++;
+            if (myPos < myStr.length() &&
+                (myStr.charAt(myPos) == '+' || myStr.charAt(myPos) == '-')) {
+               myPos++;
+            }
+            int expStart = myPos;
+            while (myPos < myStr.length() &&
+                   Character.isDigit (myStr.charAt(myPos))) {
+               myPos++;
+            }
+            if (myPos == expStart) {
+               throw UNSUPPORTED;
+            }
+         }
+         String str = myStr.substring (start, myPos);
+         if (str.equals (".") ||
+             (myPos < myStr.length() &&
+              (isNameStart (myStr.charAt(myPos)) ||
+               myStr.charAt(myPos) == '.'))) {
+            // suffixes such as L or j, and hex literals, are not supported
+            throw UNSUPPORTED;
+         }
+         if (integral && (str.length() > 15 ||
+                          (str.length() > 1 && str.charAt(0) == '0'))) {
+            // long or octal integer literals are not supported
+            throw UNSUPPORTED;
+         }
+         return new ConstNode (Double.parseDouble (str), integral);
+      }
+
+      Node createBinary (int op, Node a, Node b) throws UnsupportedException {
+         boolean avec = (a.mySize > 1);
+         boolean bvec = (b.mySize > 1);
+         if (!avec && !bvec) {
+            if (op == DIV && a.myIntegral && b.myIntegral) {
+               // Jython truncates integer division
+               throw UNSUPPORTED;
+            }
+            return fold (new BinaryNode (op, a, b));
+         }
+         switch (op) {
+            case ADD:
+            case SUB: {
+               if (avec && bvec && a.mySize == b.mySize) {
+                  return new VectorAddNode (op == SUB, a, b);
+               }
+               break;
+            }
+            case MUL: {
+               if (avec && !bvec) {
+                  return new VectorScaleNode (false, a, b);
+               }
+               else if (!avec && bvec) {
+                  return new VectorScaleNode (false, b, a);
+               }
+               break;
+            }
+            case DIV: {
+               if (avec && !bvec) {
+                  return new VectorScaleNode (true, a, b);
+               }
+               break;
+            }
+         }
+         throw UNSUPPORTED;
+      }
+
+      /**
+       * Replaces a scalar node whose arguments are all constant with a
+       * constant node. Nodes whose evaluation fails are left as is, so that
+       * the failure occurs at evaluation time.
+       */
+      Node fold (Node node) {
+         if (!isFoldable (node)) {
+            return node;
+         }
+         try {
+            return new ConstNode (node.value(), node.myIntegral);
+         }
+         catch (ArithmeticException e) {
+            return node;
+         }
+      }
+
+      boolean isFoldable (Node node) {
+         if (node instanceof BinaryNode) {
+            BinaryNode bnode = (BinaryNode)node;
+            return bnode.myA.isConstant() && bnode.myB.isConstant();
+         }
+         else if (node instanceof NegateNode) {
+            return ((NegateNode)node).myA.isConstant();
+         }
+         else if (node instanceof FunctionNode) {
+            return ((FunctionNode)node).myA.isConstant();
+         }
+         else if (node instanceof Function2Node) {
+            Function2Node fnode = (Function2Node)node;
+            return fnode.myA.isConstant() && fnode.myB.isConstant();
+         }
+         else if (node instanceof MinMaxNode) {
+            for (Node arg : ((MinMaxNode)node).myArgs) {
+               if (!arg.isConstant()) {
+                  return false;
+               }
+            }
+            return true;
+         }
+         return false;
+      }
+   }
+}
@@ -0,0 +1,178 @@
+package artisynth.core.probes;
+
+import java.util.HashMap;
+
+import maspack.matrix.VectorNd;
+import maspack.util.*;
+
+public class NumericProbeExpressionTest extends UnitTest {
+
+   HashMap<String,NumericProbeVariable> myVars;
+
+   NumericProbeVariable addVariable (String name, double... vals) {
+      NumericProbeVariable var = new NumericProbeVariable (vals.length);
+      var.setValues (vals);
+      myVars.put (name, var);
+      return var;
+   }
+
+   double[] eval (String expr, double t) {
+      NumericProbeExpression cexpr =
+         NumericProbeExpression.compile (expr, myVars);
+      if (cexpr == null) {
+         throw new TestException (
+            "expression '" + expr + "' not compiled");
+      }
+      double[] res = new double[cexpr.getSize()];
+      cexpr.eval (res, t);
+      return res;
+   }
+
+   void checkScalar (String expr, double t, double chk) {
+      double[] res = eval (expr, t);
+      checkEquals ("size of '"+expr+"'", res.length, 1);
+      // results should be identical to those computed directly
+      if (Double.doubleToLongBits (res[0]) != Double.doubleToLongBits (chk)) {
+         throw new TestException (
+            "'" + expr + "' evaluated to " + res[0] + ", expected " + chk);
+      }
+   }
+
+   void checkVector (String expr, double t, VectorNd chk) {
+      double[] res = eval (expr, t);
+      checkEquals ("'"+expr+"'", new VectorNd (res), chk);
+   }
+
+   void checkUnsupported (String expr) {
+      if (NumericProbeExpression.compile (expr, myVars) != null) {
+         throw new TestException (
+            "expression '" + expr + "' should not be compiled");
+      }
+   }
+
+   void checkArithmeticException (String expr) {
+      try {
+         eval (expr, 0);
+      }
+      catch (ArithmeticException e) {
+         return;
+      }
+      throw new TestException (
+         "expression '" + expr + "' did not throw ArithmeticException");
+   }
+
+   public void test() {
+      myVars = new HashMap<String,NumericProbeVariable>();
+      addVariable ("x", 1.5);
+      addVariable ("y", -0.25);
+      NumericProbeVariable u = addVariable ("u", 1.0, -2.0, 3.0);
+      addVariable ("w", 0.5, 0.25, -1.0);
+      VectorNd uvec = new VectorNd (1.0, -2.0, 3.0);
+      VectorNd wvec = new VectorNd (0.5, 0.25, -1.0);
+
+      double x = 1.5;
+      double y = -0.25;
+      double t = 0.7;
+
+      // scalar arithmetic and precedence
+      checkScalar ("x", t, x);
+      checkScalar ("x + 2*y", t, x + 2*y);
+      checkScalar ("(x - y)/t", t, (x - y)/t);
+      checkScalar ("-2**2", t, -4);
+      checkScalar ("2**-1", t, 0.5);
+      checkScalar ("2**3**2", t, 512);
+      checkScalar ("x**2 + -y", t, Math.pow (x, 2) + -y);
+      checkScalar (" 3*t ", t, 3*t);
+      checkScalar ("1.0/2", t, 0.5);
+      checkScalar ("1e-3*x", t, 1e-3*x);
+      checkScalar ("-7 % 3", t, 2);
+      checkScalar ("7.5 % -2", t, -0.5);
+      checkScalar ("7.5 // -2", t, -4);
+      checkScalar ("x // 1", t, 1);
+
+      // functions
+      checkScalar ("Math.sin(2*t)*x", t, Math.sin (2*t)*x);
+      checkScalar ("Math.atan2 (y, x)", t, Math.atan2 (y, x));
+      checkScalar ("Math.sqrt(abs(y))", t, Math.sqrt (Math.abs (y)));
+      checkScalar ("max(x, y, t)", t, x);
+      checkScalar ("min(x, y, t)", t, y);
+      checkScalar ("pow(x, 3)", t, Math.pow (x, 3));
+      checkScalar ("float(3)/2", t, 1.5);
+
+      // vector operations
+      checkVector ("u", t, uvec);
+      VectorNd chk = new VectorNd (3);
+      chk.add (uvec, wvec);
+      checkVector ("u + w", t, chk);
+      chk.sub (uvec, wvec);
+      checkVector ("u - w", t, chk);
+      chk.scale (2*t, uvec);
+      checkVector ("2*t*u", t, chk);
+      chk.scale (1/x, uvec);
+      checkVector ("u/x", t, chk);
+      chk.negate (uvec);
+      checkVector ("-u", t, chk);
+      chk.absolute (uvec);
+      checkVector ("abs(u)", t, chk);
+      checkScalar ("u[1]", t, -2.0);
+      checkScalar ("u.get(2)", t, 3.0);
+      checkScalar ("u.norm()", t, uvec.norm());
+      checkScalar ("u.normSquared()", t, uvec.normSquared());
+      checkScalar ("u.sum()", t, uvec.sum());
+      checkScalar ("u.maxElement()", t, uvec.maxElement());
+      checkScalar ("u.minElement()", t, uvec.minElement());
+      checkScalar ("u.dot(w)", t, uvec.dot (wvec));
+      chk.add (uvec, wvec);
+      checkScalar ("(u+w).norm()*x", t, chk.norm()*x);
+
+      // variables values are read at evaluation time
+      NumericProbeExpression cexpr =
+         NumericProbeExpression.compile ("u*t", myVars);
+      double[] res = new double[3];
+      u.setValues (new double[] { 4.0, 5.0, 6.0 });
+      cexpr.eval (res, 2.0);
+      checkEquals ("u*t", new VectorNd (res), new VectorNd (8.0, 10.0, 12.0));
+
+      // rebinding to a new variable set
+      HashMap<String,NumericProbeVariable> vars = myVars;
+      myVars = new HashMap<String,NumericProbeVariable>();
+      addVariable ("u", 1.0, 1.0, 1.0);
+      check ("rebind failed", cexpr.bind (myVars));
+      cexpr.eval (res, 3.0);
+      checkEquals ("u*t", new VectorNd (res), new VectorNd (3.0, 3.0, 3.0));
+      myVars.get ("u").setDimension (2);
+      check ("rebind should fail", !cexpr.bind (myVars));
+      myVars = vars;
+
+      // constructs that Jython evaluates differently, or which are not
+      // supported, should not be compiled
+      checkUnsupported ("1/2");
+      checkUnsupported ("x/(3/2)");
+      checkUnsupported ("u*w");
+      checkUnsupported ("2 + u");
+      checkUnsupported ("u[3]");
+      checkUnsupported ("u[-1]");
+      checkUnsupported ("x[0]");
+      checkUnsupported ("x < y");
+      checkUnsupported ("sin(x)");
+      checkUnsupported ("z*2");
+      checkUnsupported ("010*x");
+      checkUnsupported ("2L*x");
+      checkUnsupported ("[x, y]");
+      checkUnsupported ("x(2)");
+      checkUnsupported ("x +");
+      checkUnsupported ("");
+
+      // division by zero raises an exception, as in Jython
+      checkArithmeticException ("x/(y-y)");
+      checkArithmeticException ("x % (t*0)");
+      checkArithmeticException ("u/(t*0)");
+      checkArithmeticException ("(y-y)**-1");
+      checkArithmeticException ("y**0.5");
+   }
+
+   public static void main (String[] args) {
+      NumericProbeExpressionTest tester = new NumericProbeExpressionTest();
+      tester.runtest();
+   }
+}
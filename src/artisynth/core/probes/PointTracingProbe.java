@@ -155,7 +155,7 @@ public class PointTracingProbe extends TracingProbe {
       if (myNumericList == null || myNumericList.isEmpty()) {
          return;
       }
-      double tend = myNumericList.getLast().t;
+      double tend = myNumericList.getLastTime();
       VertexIterable vi = new VertexIterable (tend);
       if (myPointTracing) {
          for (float[] vtx : vi) {
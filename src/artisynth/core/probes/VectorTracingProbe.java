@@ -133,7 +133,7 @@ public class VectorTracingProbe extends TracingProbe {
 
       double t = Main.getMain().getTime();
 
-      if (myNumericList.getLast() == null ||
+      if (myNumericList.isEmpty() ||
           myRefPositionProp == null ||
           t < getStartTime() || t > getStopTime()) {
          return;
@@ -142,7 +142,7 @@ public class VectorTracingProbe extends TracingProbe {
       myNumericList.interpolate (
          tmpVec, t, 
          myNumericList.getInterpolation().getOrder(), true/* extend data */,
-         myNumericList.getLast());
+         null);
       vec.set (tmpVec);
       vec.scale (myLengthScaling);
 
@@ -21,6 +21,7 @@ import javax.swing.JFrame;
 import javax.swing.JTabbedPane;
 import javax.swing.JMenuItem;
 
+import maspack.concurrency.ParallelLoop;
 import maspack.matrix.AxisAngle;
 import maspack.matrix.AxisAlignedRotation;
 import maspack.matrix.NumericalException;
@@ -140,6 +141,16 @@ public class RootModel extends RenderableModelBase
 
    protected boolean myAdaptiveStepping = DEFAULT_ADAPTIVE_STEPPING;
    protected double myMinStepSize = DEFAULT_MIN_STEP_SIZE;
+   protected boolean myParallelModelAdvance = DEFAULT_PARALLEL_MODEL_ADVANCE;
+   private ParallelLoop myModelLoop;
+   // maximum number of threads used to advance models concurrently; if <= 0,
+   // the number of available processors is used
+   static int maxModelThreads = 0;
+   // held by the calling thread while models are advanced concurrently
+   private final Object myConcurrentAdvanceLock = new Object();
+   // model being advanced by the current thread during a concurrent advance
+   private final ThreadLocal<ModelInfo> myConcurrentInfo =
+      new ThreadLocal<ModelInfo>();
 
    private static final Point3d DEFAULT_VIEWER_CENTER = new Point3d();
    private static final Point3d DEFAULT_VIEWER_EYE = new Point3d (0, -1, 0);
@@ -147,6 +158,7 @@ public class RootModel extends RenderableModelBase
       new AxisAngle(0,0,0,0);
    private static final double DEFAULT_MIN_STEP_SIZE = 1e-7;
    private static final boolean DEFAULT_ADAPTIVE_STEPPING = false;
+   private static final boolean DEFAULT_PARALLEL_MODEL_ADVANCE = false;
    private File myWorkingFolder = null;
 
    AxisAngle myDefaultViewOrientation = 
@@ -174,6 +186,13 @@ public class RootModel extends RenderableModelBase
       int successCnt;
       int failedIncreaseCnt;
       boolean attemptingIncrease;
+      // start of the final sub-step of a concurrent advance, whose monitors
+      // and output probes are applied after all models have advanced
+      double pendingStepStart;
+      // change events raised by the model during a concurrent advance, which
+      // are delivered after all models have advanced
+      ArrayList<ComponentChangeEvent> pendingChanges =
+         new ArrayList<ComponentChangeEvent>();
 
       // state-bearing components created during last call to getInitialState()
       ArrayList<ModelComponent> initialStateComps;
@@ -200,6 +219,7 @@ public class RootModel extends RenderableModelBase
          successCnt = 0;
          failedIncreaseCnt = 0;
          attemptingIncrease = false;
+         pendingStepStart = -1;
       }
       
       void createState() {
@@ -568,6 +588,10 @@ public class RootModel extends RenderableModelBase
       myProps.add (
          "adaptiveStepping",
          "enables/disables adaptive step sizing", DEFAULT_ADAPTIVE_STEPPING);
+      myProps.add (
+         "parallelModelAdvance",
+         "advance independent models concurrently",
+         DEFAULT_PARALLEL_MODEL_ADVANCE);
       // remove and replace maxStepSize to redefine default value and range
       myProps.remove ("maxStepSize");
       myProps.add (
@@ -589,6 +613,41 @@ public class RootModel extends RenderableModelBase
       myAdaptiveStepping = enable;
    }
    
+   /**
+    * Queries whether the top-level models of this root model are advanced
+    * concurrently. See {@link #setParallelModelAdvance}.
+    *
+    * @return {@code true} if models are advanced concurrently
+    */
+   public boolean getParallelModelAdvance() {
+      return myParallelModelAdvance;
+   }
+
+   /**
+    * Enables the top-level models of this root model to be advanced
+    * concurrently within each time step. This should only be enabled if the
+    * models are independent: no model, or any controller, monitor or probe
+    * associated with it, may reference components of another model. The
+    * controllers, monitors and probes associated with the root model itself
+    * are still applied before and after the models advance.
+    *
+    * <p>Each model, together with its input probes and controllers, is
+    * advanced in its own thread. The monitors and output probes for each
+    * model's final sub-step are applied once all models have finished, in
+    * the order of the models. If a model takes several sub-steps, the
+    * monitors and output probes for the intermediate sub-steps are applied
+    * by the thread advancing that model. Component change events raised
+    * while the models are advancing are delivered to the root model by the
+    * calling thread, in the order of the models, once all models have
+    * finished. Change events raised by other threads wait until the models
+    * have finished, as they wait for the current step of a serial advance.
+    *
+    * @param enable if {@code true}, enables concurrent model advance
+    */
+   public void setParallelModelAdvance (boolean enable) {
+      myParallelModelAdvance = enable;
+   }
+
    public double getMinStepSize() {
       return myMinStepSize;
    }
@@ -1397,6 +1456,27 @@ public class RootModel extends RenderableModelBase
 
    public void componentChanged (ComponentChangeEvent e) {
       // no need to notify parent since there is none
+      if (myConcurrentAdvanceLock == null) {
+         // called in constructor, before any models can be advanced
+         doComponentChanged (e);
+         return;
+      }
+      ModelInfo cinfo = myConcurrentInfo.get();
+      if (cinfo != null) {
+         // raised while advancing a model concurrently with others; deliver
+         // it once all the models have finished
+         cinfo.pendingChanges.add (e);
+      }
+      else {
+         // otherwise wait for any concurrent advance to finish, as we would
+         // for the current step of a serial advance
+         synchronized (myConcurrentAdvanceLock) {
+            doComponentChanged (e);
+         }
+      }
+   }
+
+   private void doComponentChanged (ComponentChangeEvent e) {
       if (e.getCode() == ComponentChangeEvent.Code.STRUCTURE_CHANGED) {
          synchronized (this) {
             // invalidate modelInfo if component is unknown, or the RootModel
@@ -1422,9 +1502,13 @@ public class RootModel extends RenderableModelBase
    }
 
    public void notifyStructureChanged (Object comp) {
-      synchronized (this) {
-         myModelInfoValid = false;
+      if (myConcurrentInfo == null || myConcurrentInfo.get() == null) {
+         synchronized (this) {
+            myModelInfoValid = false;
+         }
       }
+      // otherwise, the model info is invalidated when the resulting change
+      // event is delivered
       super.notifyStructureChanged (comp);
    }
 
@@ -1677,6 +1761,25 @@ public class RootModel extends RenderableModelBase
    }
 
    public synchronized void applyInputProbes (List<Probe> list, double t) {
+      doApplyInputProbes (list, t);
+   }
+
+   public synchronized void applyControllers (
+      List<Controller> list, double t0, double t1) {
+      doApplyControllers (list, t0, t1);
+   }
+
+   public synchronized void applyMonitors (
+      List<Monitor> list, double t0, double t1) {
+      doApplyMonitors (list, t0, t1);
+   }
+
+   public synchronized void applyOutputProbes (
+      List<Probe> list, double t1, ModelInfo info) {
+      doApplyOutputProbes (list, t1, info);
+   }
+
+   private void doApplyInputProbes (List<Probe> list, double t) {
       for (Probe p : list) {
          if (p.isActive() && 
              TimeBase.compare (p.getStartTime(), t) <= 0 && 
@@ -1686,7 +1789,7 @@ public class RootModel extends RenderableModelBase
       }
    }
 
-   public synchronized void applyControllers (
+   private void doApplyControllers (
       List<Controller> list, double t0, double t1) {
 
       for (Controller c : list) {
@@ -1696,7 +1799,7 @@ public class RootModel extends RenderableModelBase
       }
    }
 
-   public synchronized void applyMonitors (
+   private void doApplyMonitors (
       List<Monitor> list, double t0, double t1) {
 
       for (Monitor m : list) {
@@ -1706,7 +1809,7 @@ public class RootModel extends RenderableModelBase
       }
    }
 
-   public synchronized void applyOutputProbes (
+   private void doApplyOutputProbes (
       List<Probe> list, double t1, ModelInfo info) {
 
       // see if t1 coincides with the model's max step size
@@ -1787,14 +1890,30 @@ public class RootModel extends RenderableModelBase
    
    protected void advanceModel (
       ModelInfo info, double t0, double t1, int flags) {
+      advanceModel (info, t0, t1, flags, /*concurrent=*/false);
+   }
 
+   /**
+    * Advances a model from t0 to t1. If {@code concurrent} is true, the model
+    * is being advanced in parallel with other models; the root model is then
+    * not locked, output probes are not applied at time 0, and the monitors
+    * and output probes for the final sub-step are left to the caller, with
+    * the start time of that sub-step stored in {@code info.pendingStepStart}.
+    */
+   private void advanceModel (
+      ModelInfo info, double t0, double t1, int flags, boolean concurrent) {
+
+      // when advancing concurrently, there is no need to lock anything other
+      // than the model's own info
+      Object lock = (concurrent ? info : this);
       double ta = t0;
-      if (t0 == 0) {
+      if (t0 == 0 && !concurrent) {
          applyOutputProbes (info.outputProbes, t0, info);
       }
+      info.pendingStepStart = -1;
       while (ta < t1) {
          double s;
-         synchronized (this) {
+         synchronized (lock) {
             info.getModelAndControllersState (info.state);
          }
          if (testSaveAndRestoreState) {  
@@ -1816,14 +1935,14 @@ public class RootModel extends RenderableModelBase
          
          double tb = info.getNextAdvanceTime (ta, t1);
          do {
-            synchronized (this) {
+            synchronized (lock) {
                StepAdjustment adj;
                //info.model.setDefaultInputs (ta, tb);
                adj = info.model.preadvance (ta, tb, flags);
                s = getRecommendedScaling (adj);
                if (s >= 1) {
-                  applyInputProbes (info.inputProbes, tb);
-                  applyControllers (info.controllers, ta, tb);
+                  doApplyInputProbes (info.inputProbes, tb);
+                  doApplyControllers (info.controllers, ta, tb);
                   adj = info.model.advance (ta, tb, flags);
                   s = getRecommendedScaling (adj);
                }
@@ -1839,13 +1958,85 @@ public class RootModel extends RenderableModelBase
          if (!(myAdaptiveStepping && s < 1)) {
             // then we have advanced to tb:
             info.updateStepInfo (s);
-            applyMonitors (info.monitors, ta, tb);
-            applyOutputProbes (info.outputProbes, tb, info);
+            if (concurrent && TimeBase.compare (tb, t1) >= 0) {
+               info.pendingStepStart = ta;
+            }
+            else if (concurrent) {
+               doApplyMonitors (info.monitors, ta, tb);
+               doApplyOutputProbes (info.outputProbes, tb, info);
+            }
+            else {
+               applyMonitors (info.monitors, ta, tb);
+               applyOutputProbes (info.outputProbes, tb, info);
+            }
             ta = tb;
          }
       }
    }
 
+   private ParallelLoop getModelLoop (int nthreads) {
+      if (myModelLoop == null) {
+         myModelLoop = new ParallelLoop ("RootModelAdvance", nthreads);
+      }
+      else {
+         myModelLoop.setNumThreads (nthreads);
+      }
+      return myModelLoop;
+   }
+
+   /**
+    * Advances all top-level models from t0 to t1 concurrently, and then
+    * applies the monitors and output probes for each model's final sub-step
+    * in model order.
+    */
+   protected void advanceModelsConcurrently (double t0, double t1, int flags) {
+      int nmods = myModels.size();
+      ModelInfo[] infos = new ModelInfo[nmods];
+      for (int i=0; i<nmods; i++) {
+         infos[i] = myModelInfo.get (myModels.get(i));
+         if (t0 == 0) {
+            applyOutputProbes (infos[i].outputProbes, t0, infos[i]);
+         }
+      }
+      int nthreads = Math.min (
+         nmods, maxModelThreads > 0 ?
+         maxModelThreads : ParallelLoop.numAvailableProcessors());
+      // the root model itself is not locked, since the models may raise
+      // change events that require it. These events are instead collected
+      // for each model and delivered once all models have finished.
+      try {
+         synchronized (myConcurrentAdvanceLock) {
+            getModelLoop (nthreads).forEach (0, nmods, 1, (lo, hi, w) -> {
+               for (int i=lo; i<hi; i++) {
+                  myConcurrentInfo.set (infos[i]);
+                  try {
+                     advanceModel (
+                        infos[i], t0, t1, flags, /*concurrent=*/true);
+                  }
+                  finally {
+                     myConcurrentInfo.remove();
+                  }
+               }
+            });
+         }
+      }
+      finally {
+         for (ModelInfo info : infos) {
+            for (ComponentChangeEvent e : info.pendingChanges) {
+               componentChanged (e);
+            }
+            info.pendingChanges.clear();
+         }
+      }
+      for (ModelInfo info : infos) {
+         if (info.pendingStepStart != -1) {
+            applyMonitors (info.monitors, info.pendingStepStart, t1);
+            applyOutputProbes (info.outputProbes, t1, info);
+            info.pendingStepStart = -1;
+         }
+      }
+   }
+
    protected void doadvance (double t0, double t1, int flags) {
 
       if (myWayPoints.isEventTime (t0)) {
@@ -1861,8 +2052,13 @@ public class RootModel extends RenderableModelBase
          //setDefaultInputs (ta, tb);
          applyInputProbes (myRootInfo.inputProbes, tb);
          applyControllers (myRootInfo.controllers, ta, tb);
-         for (Model m : myModels) {
-            advanceModel (myModelInfo.get(m), ta, tb, flags);
+         if (myParallelModelAdvance && myModels.size() > 1) {
+            advanceModelsConcurrently (ta, tb, flags);
+         }
+         else {
+            for (Model m : myModels) {
+               advanceModel (myModelInfo.get(m), ta, tb, flags);
+            }
          }
          applyMonitors (myRootInfo.monitors, ta, tb);
          applyOutputProbes (myRootInfo.outputProbes, tb, myRootInfo);
@@ -2031,6 +2227,10 @@ public class RootModel extends RenderableModelBase
          myControlPanelsFrame.setVisible (false);
          myControlPanelTabs.removeAll ();
       }
+      if (myModelLoop != null) {
+         myModelLoop.dispose();
+         myModelLoop = null;
+      }
    }
 
    public void setWayPointChecking (boolean enable) {
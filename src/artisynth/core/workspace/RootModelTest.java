@@ -0,0 +1,177 @@
+package artisynth.core.workspace;
+
+import java.util.ArrayList;
+
+import artisynth.core.mechmodels.AxialSpring;
+import artisynth.core.mechmodels.MechModel;
+import artisynth.core.mechmodels.Particle;
+import artisynth.core.mechmodels.RigidBody;
+import artisynth.core.modelbase.ComponentChangeEvent;
+import artisynth.core.modelbase.ComponentChangeListener;
+import artisynth.core.modelbase.ComponentState;
+import artisynth.core.modelbase.ControllerBase;
+import artisynth.core.modelbase.StructureChangeEvent;
+import artisynth.core.probes.NumericOutputProbe;
+import artisynth.core.util.TimeBase;
+import maspack.matrix.Point3d;
+import maspack.solvers.SparseSolverId;
+import maspack.util.*;
+
+public class RootModelTest extends UnitTest {
+
+   /**
+    * Controller that raises a structure change event each time it is
+    * applied, as happens when a controller edits its model.
+    */
+   class ChangeController extends ControllerBase {
+      MechModel myMech;
+
+      ChangeController (MechModel mech) {
+         myMech = mech;
+      }
+
+      public void apply (double t0, double t1) {
+         myMech.notifyParentOfChange (
+            new StructureChangeEvent (myMech, /*stateIsChanged=*/false));
+      }
+   }
+
+   /**
+    * Records the change events received by the root model, and the threads
+    * they are delivered on.
+    */
+   class ChangeRecorder implements ComponentChangeListener {
+      ArrayList<ComponentChangeEvent> myEvents =
+         new ArrayList<ComponentChangeEvent>();
+      ArrayList<Thread> myThreads = new ArrayList<Thread>();
+
+      public void componentChanged (ComponentChangeEvent e) {
+         myEvents.add (e);
+         myThreads.add (Thread.currentThread());
+      }
+   }
+
+   MechModel createMechModel (String name, double k, double maxStep) {
+      MechModel mech = new MechModel (name);
+      mech.setMaxStepSize (maxStep);
+      // use a Java solver so that no native libraries are needed
+      mech.setMatrixSolver (SparseSolverId.SupernodalLDLT);
+      Particle p0 = new Particle ("p0", 1.0, 0, 0, 0);
+      p0.setDynamic (false);
+      Particle p1 = new Particle ("p1", 0.5, 1.0, 0, 0);
+      mech.addParticle (p0);
+      mech.addParticle (p1);
+      mech.addAxialSpring (new AxialSpring ("s0", k, 0.1, 0.5));
+      mech.axialSprings().get(0).setPoints (p0, p1);
+      RigidBody box = RigidBody.createBox ("box", 0.2, 0.2, 0.2, 1000.0);
+      box.setPosition (new Point3d (1.0, 0, -0.5));
+      mech.addRigidBody (box);
+      AxialSpring s1 = new AxialSpring ("s1", 2*k, 0.2, 0.4);
+      mech.attachAxialSpring (
+         p1, mech.addFrameMarker (box, new Point3d()), s1);
+      return mech;
+   }
+
+   RootModel createRoot (boolean parallel) {
+      RootModel root = new RootModel ("root");
+      root.setParallelModelAdvance (parallel);
+      root.setMaxStepSize (0.01);
+      // the second model takes two sub-steps per root step, so that output
+      // probes are applied both during and after the concurrent advance
+      double[] stiffness = new double[] { 10.0, 25.0 };
+      double[] maxSteps = new double[] { 0.01, 0.005 };
+      for (int i=0; i<2; i++) {
+         MechModel mech = createMechModel ("mech"+i, stiffness[i], maxSteps[i]);
+         root.addModel (mech);
+         root.addController (new ChangeController (mech), mech);
+         NumericOutputProbe probe = new NumericOutputProbe (
+            mech.particles().get("p1"), "position", 0, 1, maxSteps[i]);
+         root.addOutputProbe (probe);
+         probe = new NumericOutputProbe (
+            mech.rigidBodies().get("box"), "velocity", 0, 1, 0.01);
+         root.addOutputProbe (probe);
+      }
+      return root;
+   }
+
+   ArrayList<ComponentState> advance (
+      RootModel root, ChangeRecorder recorder, int nsteps) {
+      ArrayList<ComponentState> states = new ArrayList<ComponentState>();
+      root.addComponentChangeListener (recorder);
+      root.initialize (0);
+      double h = root.getMaxStepSize();
+      double t0 = 0;
+      for (int k=0; k<nsteps; k++) {
+         double t1 = TimeBase.round (t0+h);
+         root.advance (t0, t1, 0);
+         states.add (root.getState (/*annotated=*/false));
+         t0 = t1;
+      }
+      return states;
+   }
+
+   void testParallelAdvance (int nthreads) {
+      int nsteps = 50;
+      int saveMaxThreads = RootModel.maxModelThreads;
+      RootModel.maxModelThreads = nthreads;
+      try {
+         RootModel serial = createRoot (/*parallel=*/false);
+         RootModel parallel = createRoot (/*parallel=*/true);
+         ChangeRecorder serialChanges = new ChangeRecorder();
+         ChangeRecorder parallelChanges = new ChangeRecorder();
+         ArrayList<ComponentState> serialStates =
+            advance (serial, serialChanges, nsteps);
+         ArrayList<ComponentState> parallelStates =
+            advance (parallel, parallelChanges, nsteps);
+
+         for (int k=0; k<nsteps; k++) {
+            StringBuilder msg = new StringBuilder();
+            if (!parallelStates.get(k).equals (serialStates.get(k), msg)) {
+               throw new TestException (
+                  "states differ at step " + k + ": " + msg);
+            }
+         }
+         checkEquals (
+            "num output probes", parallel.getOutputProbes().size(),
+            serial.getOutputProbes().size());
+         for (int i=0; i<serial.getOutputProbes().size(); i++) {
+            NumericOutputProbe sprobe =
+               (NumericOutputProbe)serial.getOutputProbes().get(i);
+            NumericOutputProbe pprobe =
+               (NumericOutputProbe)parallel.getOutputProbes().get(i);
+            check ("output probe "+i+" has no data",
+                   sprobe.getNumericList().getNumKnots() > nsteps);
+            if (!pprobe.getNumericList().equals (sprobe.getNumericList())) {
+               throw new TestException (
+                  "data for output probe " + i + " differs");
+            }
+         }
+         // change events raised while advancing should all have been
+         // delivered, in model order, by the thread that called advance
+         checkEquals (
+            "num change events", parallelChanges.myEvents.size(),
+            serialChanges.myEvents.size());
+         for (int i=0; i<parallelChanges.myEvents.size(); i++) {
+            checkEquals (
+               "component of change event "+i,
+               parallelChanges.myEvents.get(i).getComponent().getName(),
+               serialChanges.myEvents.get(i).getComponent().getName());
+            check ("change event "+i+" delivered by a worker thread",
+                   parallelChanges.myThreads.get(i) == Thread.currentThread());
+         }
+      }
+      finally {
+         RootModel.maxModelThreads = saveMaxThreads;
+      }
+   }
+
+   public void test() {
+      testParallelAdvance (1);
+      testParallelAdvance (2);
+   }
+
+   public static void main (String[] args) {
+      RootModelTest tester = new RootModelTest();
+      tester.runtest();
+   }
+}
@@ -120,7 +120,6 @@ public class ExactForceProbe extends NumericMonitorProbe {
 
       if (t == getStopTime()) {
          NumericList list = getNumericList();
-         NumericListKnot knot;
 
          // integrate the results
          Vector3d vel = new Vector3d();
@@ -129,7 +128,7 @@ public class ExactForceProbe extends NumericMonitorProbe {
          Vector3d exactPos = new Vector3d();
 
          NumericListKnot prev = null;
-         for (knot=list.getFirst(); knot!=null; knot=knot.getNext()) {
+         for (NumericListKnot knot : list) {
             if (prev != null) {
                double h = knot.t - prev.t;
                integrate (
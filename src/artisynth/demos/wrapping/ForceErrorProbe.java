@@ -107,6 +107,8 @@ public class ForceErrorProbe extends NumericMonitorProbe {
 
    public void apply (double t) {
       NumericList list = getNumericList();
+      // knots are modified in place, which requires linked storage
+      list.setColumnar (false);
       NumericListKnot knot;
       if (t == 0) {        myMaxF = 0;
          knot=list.getFirst();
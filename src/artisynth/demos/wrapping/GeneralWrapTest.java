@@ -732,7 +732,6 @@ public class GeneralWrapTest extends OneStrandWrapBase {
 
    public Vector3d[] loadProbeForceValues (NumericProbeBase probe) {
       NumericList list = probe.getNumericList();
-      NumericListKnot knot;
       if (list.getVectorSize() != 3) {
          System.out.println (
             "Probe must have vector size of 3, has " + list.getVectorSize());
@@ -740,7 +739,7 @@ public class GeneralWrapTest extends OneStrandWrapBase {
       }
       Vector3d[] values = new Vector3d[list.getNumKnots()];
       int k = 0;
-      for (knot=list.getFirst(); knot!=null; knot=knot.getNext()) {
+      for (NumericListKnot knot : list) {
          values[k++] = new Vector3d (knot.v);
       }
       return values;
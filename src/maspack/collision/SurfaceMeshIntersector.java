@@ -846,7 +846,38 @@ public class SurfaceMeshIntersector {
             regions1 == RegionType.INSIDE);
       }
       return cinfo;
-   }      
+   }
+
+   /**
+    * Creates the {@link ContactInfo} that {@link
+    * #findContoursAndRegions(PolygonalMesh,RegionType,PolygonalMesh,RegionType)}
+    * returns for two meshes that do not intersect: the contour list is empty,
+    * as are the region lists for each mesh whose region type is not
+    * <code>NONE</code>. This can be used when the meshes are already known
+    * to be disjoint, such as when their bounding boxes do not overlap.
+    *
+    * @param mesh0 first mesh
+    * @param regions0 type of penetration regions for <code>mesh0</code>
+    * @param mesh1 second mesh
+    * @param regions1 type of penetration regions for <code>mesh1</code>
+    * @return {@link ContactInfo} object with no contours or regions
+    */
+   public static ContactInfo createEmptyContactInfo (
+      PolygonalMesh mesh0, RegionType regions0,
+      PolygonalMesh mesh1, RegionType regions1) {
+
+      ContactInfo cinfo = new ContactInfo (mesh0, mesh1);
+      cinfo.myContours = new ArrayList<IntersectionContour>();
+      cinfo.myRegionsType0 = regions0;
+      cinfo.myRegionsType1 = regions1;
+      if (regions0 != RegionType.NONE) {
+         cinfo.myRegions0 = new ArrayList<PenetrationRegion>();
+      }
+      if (regions1 != RegionType.NONE) {
+         cinfo.myRegions1 = new ArrayList<PenetrationRegion>();
+      }
+      return cinfo;
+   }
 
    /**
       State transitions as we track points within a face:
@@ -0,0 +1,437 @@
+package maspack.collision;
+
+import maspack.matrix.Vector3d;
+
+/**
+ * Broad phase collision culling using sweep and prune. Maintains a set of
+ * axis-aligned bounding boxes, identified by indices in the range {@code [0,
+ * numBoxes-1]}, and determines which pairs of boxes overlap.
+ *
+ * <p>The boxes are kept sorted by their minimum coordinate along a sweep
+ * axis, and this order persists between calls to {@link #update}. When the
+ * boxes move coherently from one update to the next, as they do in a
+ * simulation, the order changes little and can be restored with an
+ * insertion sort in close to linear time. A sweep over the sorted boxes then
+ * finds the overlapping pairs, testing only those pairs that overlap along
+ * the sweep axis. The sweep axis is chosen as the one along which the box
+ * centers are most spread out.
+ *
+ * <p>Boxes that are empty, either because they were never set or because
+ * {@link #setEmpty} was called, do not overlap anything.
+ */
+public class SweepAndPrune {
+
+   private int myNumBoxes = 0;
+   // box bounds, stored as 3 consecutive values per box
+   private double[] myMin = new double[0];
+   private double[] myMax = new double[0];
+   // box indices sorted by minimum coordinate along the sweep axis
+   private int[] myOrder = new int[0];
+   private int myAxis = 0;
+
+   // overlapping boxes for each box, in compressed row form
+   private int[] myOverlapOffs = new int[1];
+   private int[] myOverlapIdxs = new int[0];
+   private int myNumPairs = 0;
+   private boolean myOverlapsValid = false;
+
+   // workspace for collecting pairs during the sweep
+   private int[] myPairs = new int[0];
+
+   /**
+    * Creates a new sweep and prune structure with no boxes.
+    */
+   public SweepAndPrune() {
+   }
+
+   /**
+    * Creates a new sweep and prune structure with a specified number of
+    * empty boxes.
+    *
+    * @param num number of boxes
+    */
+   public SweepAndPrune (int num) {
+      setNumBoxes (num);
+   }
+
+   /**
+    * Returns the number of boxes in this structure.
+    *
+    * @return number of boxes
+    */
+   public int numBoxes() {
+      return myNumBoxes;
+   }
+
+   /**
+    * Sets the number of boxes in this structure. Existing boxes with indices
+    * less than {@code num} retain their bounds, and any new boxes are empty.
+    * Overlap information is invalid until the next call to {@link #update}.
+    *
+    * @param num new number of boxes
+    */
+   public void setNumBoxes (int num) {
+      if (num < 0) {
+         throw new IllegalArgumentException (
+            "number of boxes must be non-negative; got " + num);
+      }
+      if (num == myNumBoxes) {
+         return;
+      }
+      double[] min = new double[3*num];
+      double[] max = new double[3*num];
+      int ncopy = Math.min (num, myNumBoxes);
+      System.arraycopy (myMin, 0, min, 0, 3*ncopy);
+      System.arraycopy (myMax, 0, max, 0, 3*ncopy);
+      myMin = min;
+      myMax = max;
+      // keep the current order for the retained boxes
+      int[] order = new int[num];
+      int k = 0;
+      for (int i=0; i<myNumBoxes; i++) {
+         if (myOrder[i] < num) {
+            order[k++] = myOrder[i];
+         }
+      }
+      for (int i=myNumBoxes; i<num; i++) {
+         order[k++] = i;
+      }
+      myOrder = order;
+      for (int i=ncopy; i<num; i++) {
+         setEmpty (i);
+      }
+      myNumBoxes = num;
+      myOverlapsValid = false;
+   }
+
+   /**
+    * Sets the bounds of a box.
+    *
+    * @param idx index of the box
+    * @param min minimum coordinates of the box
+    * @param max maximum coordinates of the box
+    */
+   public void setBounds (int idx, Vector3d min, Vector3d max) {
+      int k = 3*idx;
+      myMin[k  ] = min.x;
+      myMin[k+1] = min.y;
+      myMin[k+2] = min.z;
+      myMax[k  ] = max.x;
+      myMax[k+1] = max.y;
+      myMax[k+2] = max.z;
+      myOverlapsValid = false;
+   }
+
+   /**
+    * Gets the bounds of a box. If the box is empty, the minimum coordinates
+    * will be positive infinity and the maximum coordinates will be negative
+    * infinity.
+    *
+    * @param min returns the minimum coordinates of the box
+    * @param max returns the maximum coordinates of the box
+    * @param idx index of the box
+    */
+   public void getBounds (Vector3d min, Vector3d max, int idx) {
+      int k = 3*idx;
+      min.set (myMin[k], myMin[k+1], myMin[k+2]);
+      max.set (myMax[k], myMax[k+1], myMax[k+2]);
+   }
+
+   /**
+    * Makes a box empty, so that it does not overlap any other box.
+    *
+    * @param idx index of the box
+    */
+   public void setEmpty (int idx) {
+      int k = 3*idx;
+      for (int j=0; j<3; j++) {
+         myMin[k+j] = Double.POSITIVE_INFINITY;
+         myMax[k+j] = Double.NEGATIVE_INFINITY;
+      }
+      myOverlapsValid = false;
+   }
+
+   /**
+    * Queries whether a box is empty.
+    *
+    * @param idx index of the box
+    * @return {@code true} if the box is empty
+    */
+   public boolean isEmpty (int idx) {
+      int k = 3*idx;
+      return (myMin[k] > myMax[k] ||
+              myMin[k+1] > myMax[k+1] ||
+              myMin[k+2] > myMax[k+2]);
+   }
+
+   /**
+    * Returns the current sweep axis (0, 1, or 2 for x, y, or z).
+    *
+    * @return sweep axis
+    */
+   public int getSweepAxis() {
+      return myAxis;
+   }
+
+   private boolean boxesOverlap (int i, int j) {
+      int ki = 3*i;
+      int kj = 3*j;
+      for (int a=0; a<3; a++) {
+         double maxi = myMax[ki+a];
+         double maxj = myMax[kj+a];
+         // the last two tests exclude boxes that are empty along this axis
+         if (myMin[ki+a] > maxj || myMin[kj+a] > maxi ||
+             myMin[ki+a] > maxi || myMin[kj+a] > maxj) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Chooses the axis along which the centers of the non-empty boxes have
+    * the greatest variance. To avoid needless re-sorting, the axis is only
+    * changed if the variance along the new axis is significantly larger.
+    */
+   private int chooseSweepAxis() {
+      double[] sum = new double[3];
+      double[] sumSqr = new double[3];
+      int num = 0;
+      for (int i=0; i<myNumBoxes; i++) {
+         if (!isEmpty (i)) {
+            int k = 3*i;
+            for (int a=0; a<3; a++) {
+               double c = (myMin[k+a]+myMax[k+a])/2;
+               sum[a] += c;
+               sumSqr[a] += c*c;
+            }
+            num++;
+         }
+      }
+      if (num < 2) {
+         return myAxis;
+      }
+      double[] var = new double[3];
+      int maxAxis = myAxis;
+      for (int a=0; a<3; a++) {
+         var[a] = sumSqr[a] - sum[a]*sum[a]/num;
+         if (var[a] > var[maxAxis]) {
+            maxAxis = a;
+         }
+      }
+      return (var[maxAxis] > 2*var[myAxis] ? maxAxis : myAxis);
+   }
+
+   /**
+    * Sorts myOrder by the minimum box coordinate along the sweep axis. An
+    * insertion sort is used, since the order is usually nearly correct.
+    */
+   private void sortBoxes() {
+      int[] order = myOrder;
+      int axis = myAxis;
+      for (int i=1; i<myNumBoxes; i++) {
+         int idx = order[i];
+         double key = myMin[3*idx+axis];
+         int j = i-1;
+         while (j >= 0 && myMin[3*order[j]+axis] > key) {
+            order[j+1] = order[j];
+            j--;
+         }
+         order[j+1] = idx;
+      }
+   }
+
+   /**
+    * Updates the sort order of the boxes and determines which pairs of boxes
+    * overlap. Must be called after the bounds of the boxes have been set
+    * and before overlaps are queried.
+    */
+   public void update() {
+      myAxis = chooseSweepAxis();
+      sortBoxes();
+
+      int axis = myAxis;
+      int npairs = 0;
+      for (int k=0; k<myNumBoxes; k++) {
+         int i = myOrder[k];
+         double maxi = myMax[3*i+axis];
+         if (myMin[3*i+axis] > maxi) {
+            // empty boxes have an infinite minimum and so occur only at the
+            // end, but boxes that are empty along other axes may be anywhere
+            if (myMin[3*i+axis] == Double.POSITIVE_INFINITY) {
+               break;
+            }
+            continue;
+         }
+         for (int l=k+1; l<myNumBoxes; l++) {
+            int j = myOrder[l];
+            if (myMin[3*j+axis] > maxi) {
+               break;
+            }
+            if (boxesOverlap (i, j)) {
+               if (2*npairs+2 > myPairs.length) {
+                  int[] pairs = new int[Math.max (16, 2*myPairs.length)];
+                  System.arraycopy (myPairs, 0, pairs, 0, 2*npairs);
+                  myPairs = pairs;
+               }
+               myPairs[2*npairs  ] = i;
+               myPairs[2*npairs+1] = j;
+               npairs++;
+            }
+         }
+      }
+      buildOverlaps (npairs);
+      myNumPairs = npairs;
+      myOverlapsValid = true;
+   }
+
+   private void buildOverlaps (int npairs) {
+      if (myOverlapOffs.length < myNumBoxes+1) {
+         myOverlapOffs = new int[myNumBoxes+1];
+      }
+      if (myOverlapIdxs.length < 2*npairs) {
+         myOverlapIdxs = new int[2*npairs];
+      }
+      int[] offs = myOverlapOffs;
+      for (int i=0; i<=myNumBoxes; i++) {
+         offs[i] = 0;
+      }
+      for (int p=0; p<2*npairs; p++) {
+         offs[myPairs[p]+1]++;
+      }
+      for (int i=0; i<myNumBoxes; i++) {
+         offs[i+1] += offs[i];
+      }
+      // use the end offsets as insertion points, then restore them
+      int[] next = new int[myNumBoxes];
+      System.arraycopy (offs, 0, next, 0, myNumBoxes);
+      for (int p=0; p<npairs; p++) {
+         int i = myPairs[2*p];
+         int j = myPairs[2*p+1];
+         myOverlapIdxs[next[i]++] = j;
+         myOverlapIdxs[next[j]++] = i;
+      }
+      // sort each row so that overlaps() can use binary search
+      for (int i=0; i<myNumBoxes; i++) {
+         for (int k=offs[i]+1; k<offs[i+1]; k++) {
+            int idx = myOverlapIdxs[k];
+            int l = k-1;
+            while (l >= offs[i] && myOverlapIdxs[l] > idx) {
+               myOverlapIdxs[l+1] = myOverlapIdxs[l];
+               l--;
+            }
+            myOverlapIdxs[l+1] = idx;
+         }
+      }
+   }
+
+   private void checkOverlapsValid() {
+      if (!myOverlapsValid) {
+         throw new IllegalStateException (
+            "box bounds have changed since the last call to update()");
+      }
+   }
+
+   /**
+    * Queries whether two boxes overlapped at the time of the last call to
+    * {@link #update}. A box is not considered to overlap itself.
+    *
+    * @param i index of the first box
+    * @param j index of the second box
+    * @return {@code true} if the boxes overlap
+    * @throws IllegalStateException if the bounds have changed since the
+    * last update
+    */
+   public boolean overlaps (int i, int j) {
+      checkOverlapsValid();
+      // search the shorter list
+      if (myOverlapOffs[i+1]-myOverlapOffs[i] >
+          myOverlapOffs[j+1]-myOverlapOffs[j]) {
+         int tmp = i; i = j; j = tmp;
+      }
+      int lo = myOverlapOffs[i];
+      int hi = myOverlapOffs[i+1]-1;
+      while (lo <= hi) {
+         int mid = (lo+hi) >>> 1;
+         int idx = myOverlapIdxs[mid];
+         if (idx < j) {
+            lo = mid+1;
+         }
+         else if (idx > j) {
+            hi = mid-1;
+         }
+         else {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * Queries whether two boxes overlap when each is grown by a margin in
+    * every direction. Pairs that overlapped at the time of the last call to
+    * {@link #update} are found as for {@link #overlaps(int,int)}; otherwise,
+    * the bounds of the two boxes are compared directly. A box is not
+    * considered to overlap itself, and empty boxes do not overlap anything.
+    *
+    * @param i index of the first box
+    * @param j index of the second box
+    * @param margin distance by which each box is grown
+    * @return {@code true} if the grown boxes overlap
+    * @throws IllegalStateException if the bounds have changed since the
+    * last update
+    */
+   public boolean overlaps (int i, int j, double margin) {
+      if (overlaps (i, j)) {
+         return true;
+      }
+      if (margin <= 0 || i == j || isEmpty (i) || isEmpty (j)) {
+         return false;
+      }
+      for (int a=0; a<3; a++) {
+         if (myMin[3*i+a] > myMax[3*j+a]+2*margin ||
+             myMin[3*j+a] > myMax[3*i+a]+2*margin) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Returns the number of overlapping box pairs found by the last call to
+    * {@link #update}.
+    *
+    * @return number of overlapping pairs
+    */
+   public int numOverlappingPairs() {
+      checkOverlapsValid();
+      return myNumPairs;
+   }
+
+   /**
+    * Returns the number of boxes that overlapped a given box at the time of
+    * the last call to {@link #update}.
+    *
+    * @param idx index of the box
+    * @return number of overlapping boxes
+    */
+   public int numOverlaps (int idx) {
+      checkOverlapsValid();
+      return myOverlapOffs[idx+1]-myOverlapOffs[idx];
+   }
+
+   /**
+    * Returns the indices of the boxes that overlapped a given box at the time
+    * of the last call to {@link #update}, in increasing order.
+    *
+    * @param idx index of the box
+    * @return indices of the overlapping boxes
+    */
+   public int[] getOverlaps (int idx) {
+      checkOverlapsValid();
+      int off = myOverlapOffs[idx];
+      int[] idxs = new int[myOverlapOffs[idx+1]-off];
+      System.arraycopy (myOverlapIdxs, off, idxs, 0, idxs.length);
+      return idxs;
+   }
+}
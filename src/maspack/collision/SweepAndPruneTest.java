@@ -0,0 +1,240 @@
+package maspack.collision;
+
+import maspack.geometry.DistanceGrid;
+import maspack.geometry.MeshFactory;
+import maspack.geometry.PolygonalMesh;
+import maspack.matrix.*;
+import maspack.util.*;
+
+/**
+ * Test program for SweepAndPrune.
+ */
+public class SweepAndPruneTest extends UnitTest {
+
+   Vector3d[] myMin;
+   Vector3d[] myMax;
+   boolean[] myEmpty;
+
+   void setRandomBoxes (SweepAndPrune sap, int num, double size) {
+      myMin = new Vector3d[num];
+      myMax = new Vector3d[num];
+      myEmpty = new boolean[num];
+      sap.setNumBoxes (num);
+      for (int i=0; i<num; i++) {
+         myMin[i] = new Vector3d();
+         myMax[i] = new Vector3d();
+         myMin[i].setRandom (0, 10);
+         myMax[i].setRandom (0, size);
+         myMax[i].add (myMin[i]);
+         sap.setBounds (i, myMin[i], myMax[i]);
+      }
+   }
+
+   void moveBoxes (SweepAndPrune sap, double step) {
+      Vector3d del = new Vector3d();
+      for (int i=0; i<myMin.length; i++) {
+         del.setRandom (-step, step);
+         myMin[i].add (del);
+         myMax[i].add (del);
+         if (!myEmpty[i]) {
+            sap.setBounds (i, myMin[i], myMax[i]);
+         }
+      }
+   }
+
+   boolean boxesOverlap (int i, int j) {
+      return boxesOverlap (i, j, 0);
+   }
+
+   boolean boxesOverlap (int i, int j, double margin) {
+      if (myEmpty[i] || myEmpty[j]) {
+         return false;
+      }
+      for (int a=0; a<3; a++) {
+         if (myMin[i].get(a) > myMax[j].get(a)+2*margin ||
+             myMin[j].get(a) > myMax[i].get(a)+2*margin) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   void checkOverlaps (SweepAndPrune sap) {
+      int num = sap.numBoxes();
+      int npairs = 0;
+      for (int i=0; i<num; i++) {
+         int nover = 0;
+         for (int j=0; j<num; j++) {
+            boolean check = (i != j && boxesOverlap (i, j));
+            if (sap.overlaps (i, j) != check) {
+               throw new TestException (
+                  "overlaps("+i+","+j+") returned "+sap.overlaps (i, j));
+            }
+            boolean checkm = (i != j && boxesOverlap (i, j, 0.1));
+            if (sap.overlaps (i, j, 0.1) != checkm) {
+               throw new TestException (
+                  "overlaps("+i+","+j+",0.1) returned "+
+                  sap.overlaps (i, j, 0.1));
+            }
+            if (check) {
+               nover++;
+               if (j > i) {
+                  npairs++;
+               }
+            }
+         }
+         checkEquals ("numOverlaps("+i+")", sap.numOverlaps (i), nover);
+         int[] idxs = sap.getOverlaps (i);
+         for (int k=1; k<idxs.length; k++) {
+            check ("getOverlaps("+i+") not increasing", idxs[k-1] < idxs[k]);
+         }
+      }
+      checkEquals ("numOverlappingPairs", sap.numOverlappingPairs(), npairs);
+   }
+
+   public void testRandom() {
+      SweepAndPrune sap = new SweepAndPrune();
+      setRandomBoxes (sap, 100, 1.5);
+      sap.update();
+      checkOverlaps (sap);
+      for (int k=0; k<20; k++) {
+         moveBoxes (sap, 0.2);
+         if (k == 5) {
+            for (int i=0; i<myEmpty.length; i += 7) {
+               myEmpty[i] = true;
+               sap.setEmpty (i);
+            }
+         }
+         sap.update();
+         checkOverlaps (sap);
+      }
+      // stretch the boxes along z so that the sweep axis changes
+      for (int i=0; i<myMin.length; i++) {
+         double w = myMax[i].z-myMin[i].z;
+         myMin[i].z *= 10;
+         myMax[i].z = myMin[i].z + w;
+         if (!myEmpty[i]) {
+            sap.setBounds (i, myMin[i], myMax[i]);
+         }
+      }
+      sap.update();
+      checkEquals ("sweep axis", sap.getSweepAxis(), 2);
+      checkOverlaps (sap);
+   }
+
+   public void testResize() {
+      SweepAndPrune sap = new SweepAndPrune (10);
+      sap.update();
+      checkEquals ("numOverlappingPairs", sap.numOverlappingPairs(), 0);
+      check ("new box not empty", sap.isEmpty (3));
+
+      setRandomBoxes (sap, 50, 2.0);
+      sap.update();
+      checkOverlaps (sap);
+
+      // shrink, keeping the bounds of the remaining boxes
+      Vector3d[] min = myMin;
+      Vector3d[] max = myMax;
+      sap.setNumBoxes (30);
+      myMin = new Vector3d[30];
+      myMax = new Vector3d[30];
+      myEmpty = new boolean[30];
+      for (int i=0; i<30; i++) {
+         myMin[i] = min[i];
+         myMax[i] = max[i];
+      }
+      sap.update();
+      checkOverlaps (sap);
+
+      checkForIllegalArgumentException (() -> sap.setNumBoxes (-1));
+      sap.setEmpty (0);
+      checkForException (
+         new IllegalStateException(), () -> sap.overlaps (0, 1));
+   }
+
+   /**
+    * Sets the bounds of a box to enclose the world coordinates of a mesh,
+    * grown by the same tolerance as the boxes used by the collision manager.
+    */
+   void setMeshBounds (SweepAndPrune sap, int idx, PolygonalMesh mesh) {
+      Point3d min = new Point3d();
+      Point3d max = new Point3d();
+      mesh.getWorldBounds (min, max);
+      double tol = 1e-8*min.distance (max)/2;
+      min.set (min.x-tol, min.y-tol, min.z-tol);
+      max.set (max.x+tol, max.y+tol, max.z+tol);
+      sap.setBounds (idx, min, max);
+   }
+
+   /**
+    * Checks that a pair of meshes is not culled when the signed distance
+    * collider finds contact between them. The second mesh rests on the top
+    * face of the first, so the two boxes are just touching.
+    */
+   public void testSignedDistanceContact() {
+      PolygonalMesh mesh0 = MeshFactory.createBox (1.0, 1.0, 1.0);
+      PolygonalMesh mesh1 = MeshFactory.createBox (0.4, 0.4, 0.2);
+      DistanceGrid grid0 =
+         mesh0.getSignedDistanceGrid (0.1, new Vector3i (20, 20, 20));
+      double margin = grid0.getCellWidths().norm();
+      SignedDistanceCollider collider = new SignedDistanceCollider();
+      SweepAndPrune sap = new SweepAndPrune (2);
+
+      RigidTransform3d X0 = new RigidTransform3d();
+      RigidTransform3d X10 = new RigidTransform3d();
+      RigidTransform3d X1 = new RigidTransform3d();
+      int ncontacts = 0;
+      for (int k=0; k<100; k++) {
+         X0.setRandom();
+         // gaps around zero, from slight penetration to slight separation
+         double gap = 1e-10*(k%5-2);
+         X10.p.set (
+            RandomGenerator.nextDouble (-0.3, 0.3),
+            RandomGenerator.nextDouble (-0.3, 0.3), 0.6+gap);
+         X10.R.setRpy (RandomGenerator.nextDouble (-Math.PI, Math.PI), 0, 0);
+         X1.mul (X0, X10);
+         mesh0.setMeshToWorld (X0);
+         mesh1.setMeshToWorld (X1);
+         setMeshBounds (sap, 0, mesh0);
+         setMeshBounds (sap, 1, mesh1);
+         sap.update();
+         if (collider.getContacts (mesh0, grid0, mesh1, null) != null) {
+            ncontacts++;
+            check ("meshes in contact are culled at step " + k,
+                   sap.overlaps (0, 1, margin));
+         }
+         else if (gap < 0) {
+            throw new TestException (
+               "no contact for penetrating meshes at step " + k);
+         }
+      }
+      check ("no contacts found", ncontacts > 0);
+
+      // with a gap smaller than one grid cell, the boxes are only found to
+      // overlap when grown by the margin
+      X0.setIdentity();
+      X10.R.setIdentity();
+      X10.p.set (0, 0, 0.6 + margin/2);
+      mesh0.setMeshToWorld (X0);
+      mesh1.setMeshToWorld (X10);
+      setMeshBounds (sap, 0, mesh0);
+      setMeshBounds (sap, 1, mesh1);
+      sap.update();
+      check ("near-touching boxes overlap", !sap.overlaps (0, 1));
+      check ("near-touching boxes do not overlap with margin",
+             sap.overlaps (0, 1, margin));
+      check ("box overlaps itself", !sap.overlaps (0, 0, margin));
+   }
+
+   public void test() {
+      testRandom();
+      testResize();
+      testSignedDistanceContact();
+   }
+
+   public static void main (String[] args) {
+      SweepAndPruneTest tester = new SweepAndPruneTest();
+      RandomGenerator.setSeed (0x1234);
+      tester.runtest();
+   }
+}
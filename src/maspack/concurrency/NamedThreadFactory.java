@@ -10,17 +10,30 @@ public class NamedThreadFactory implements ThreadFactory {
 	private final ThreadGroup group;
 	private final AtomicInteger threadNumber = new AtomicInteger(1);
 	private final String namePrefix;
+	private final boolean daemon;
 
 	public NamedThreadFactory(String baseName) {
+		this (baseName, false);
+	}
+
+	/**
+	 * Creates a factory whose threads are optionally daemon threads, so that
+	 * idle pool threads do not prevent the JVM from exiting.
+	 * 
+	 * @param baseName base name for the created threads
+	 * @param daemon if {@code true}, created threads are daemon threads
+	 */
+	public NamedThreadFactory(String baseName, boolean daemon) {
 		group = Thread.currentThread().getThreadGroup();
 		namePrefix = baseName + "-thread-";
+		this.daemon = daemon;
 	}
 
 	public Thread newThread(Runnable r) {
 		Thread t = new Thread(group, r, namePrefix
 				+ threadNumber.getAndIncrement(), 0);
-		if (t.isDaemon())
-			t.setDaemon(false);
+		if (t.isDaemon() != daemon)
+			t.setDaemon(daemon);
 		if (t.getPriority() != Thread.NORM_PRIORITY)
 			t.setPriority(Thread.NORM_PRIORITY);
 		return t;
@@ -0,0 +1,237 @@
+package maspack.concurrency;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes the iterations of a loop over an integer index range using a
+ * fixed number of worker threads. The calling thread always acts as worker
+ * 0, and the remaining workers are taken from a private pool whose threads
+ * are daemon threads that time out when idle.
+ *
+ * <p>Each call to a loop method blocks until all iterations are complete.
+ * The loop body is told which worker is executing it, so that callers can
+ * maintain per-worker workspaces without synchronization. If an iteration
+ * throws an exception, the first such exception is rethrown in the calling
+ * thread once all workers have finished.
+ */
+public class ParallelLoop {
+
+   /**
+    * Body of a parallel loop.
+    */
+   public interface RangeBody {
+      /**
+       * Processes the indices in a given sub-range.
+       *
+       * @param lo first index to process
+       * @param hi one past the last index to process
+       * @param worker index of the worker executing this sub-range, in
+       * the range {@code [0, numThreads-1]}
+       */
+      void run (int lo, int hi, int worker);
+   }
+
+   protected static long defaultTimeoutMS = 2000;
+
+   private String myName;
+   private int myNumThreads;
+   private ThreadPoolExecutor myExecutor;
+
+   /**
+    * Creates a new parallel loop with a specified number of worker threads.
+    *
+    * @param name base name for the worker threads
+    * @param numThreads number of workers (including the calling thread).
+    * Values less than 1 are set to 1.
+    */
+   public ParallelLoop (String name, int numThreads) {
+      myName = name;
+      myNumThreads = Math.max (1, numThreads);
+   }
+
+   /**
+    * Returns the number of workers used by this loop, including the calling
+    * thread.
+    *
+    * @return number of workers
+    */
+   public int getNumThreads() {
+      return myNumThreads;
+   }
+
+   /**
+    * Sets the number of workers used by this loop, including the calling
+    * thread. Values less than 1 are set to 1.
+    *
+    * @param num number of workers
+    */
+   public synchronized void setNumThreads (int num) {
+      num = Math.max (1, num);
+      if (num != myNumThreads) {
+         dispose();
+         myNumThreads = num;
+      }
+   }
+
+   /**
+    * Returns the number of processors available to the JVM, which is a
+    * reasonable upper bound for the number of workers.
+    *
+    * @return number of available processors
+    */
+   public static int numAvailableProcessors() {
+      return Runtime.getRuntime().availableProcessors();
+   }
+
+   private synchronized ThreadPoolExecutor getExecutor() {
+      if (myExecutor == null) {
+         int n = myNumThreads-1;
+         myExecutor = new ThreadPoolExecutor (
+            n, n, defaultTimeoutMS, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            new NamedThreadFactory (myName, /*daemon=*/true));
+         myExecutor.allowCoreThreadTimeOut (true);
+      }
+      return myExecutor;
+   }
+
+   /**
+    * Executes a loop over the indices {@code [lo, hi)}, dividing them into
+    * one contiguous sub-range per worker. The assignment of indices to
+    * workers depends only on the range and the number of workers, and so is
+    * the same each time the loop is executed.
+    *
+    * @param lo first loop index
+    * @param hi one past the last loop index
+    * @param body loop body
+    */
+   public void forRange (int lo, int hi, RangeBody body) {
+      int num = hi-lo;
+      int nchunks = Math.min (myNumThreads, num);
+      if (nchunks <= 1) {
+         if (num > 0) {
+            body.run (lo, hi, 0);
+         }
+         return;
+      }
+      ThreadPoolExecutor executor = getExecutor();
+      ArrayList<Future<?>> futures = new ArrayList<>(nchunks-1);
+      for (int k=1; k<nchunks; k++) {
+         final int klo = lo + (int)((long)num*k/nchunks);
+         final int khi = lo + (int)((long)num*(k+1)/nchunks);
+         final int w = k;
+         futures.add (executor.submit (() -> body.run (klo, khi, w)));
+      }
+      Throwable error = null;
+      try {
+         body.run (lo, lo + num/nchunks, 0);
+      }
+      catch (Throwable e) {
+         error = e;
+      }
+      awaitAll (futures, error);
+   }
+
+   /**
+    * Executes a loop over the indices {@code [lo, hi)}, with workers
+    * repeatedly claiming blocks of {@code grain} consecutive indices until
+    * the range is exhausted. This balances the load when iterations have
+    * widely varying costs, but the worker that executes a given index is
+    * not fixed, so iterations must not depend on the worker index except to
+    * select a workspace.
+    *
+    * @param lo first loop index
+    * @param hi one past the last loop index
+    * @param grain number of indices claimed by a worker at a time
+    * @param body loop body
+    */
+   public void forEach (int lo, int hi, int grain, RangeBody body) {
+      int num = hi-lo;
+      grain = Math.max (1, grain);
+      int nworkers = Math.min (myNumThreads, (num+grain-1)/grain);
+      if (nworkers <= 1) {
+         if (num > 0) {
+            body.run (lo, hi, 0);
+         }
+         return;
+      }
+      final AtomicInteger next = new AtomicInteger (lo);
+      final int g = grain;
+      ThreadPoolExecutor executor = getExecutor();
+      ArrayList<Future<?>> futures = new ArrayList<>(nworkers-1);
+      for (int k=1; k<nworkers; k++) {
+         final int w = k;
+         futures.add (
+            executor.submit (() -> claimBlocks (next, hi, g, w, body)));
+      }
+      Throwable error = null;
+      try {
+         claimBlocks (next, hi, g, 0, body);
+      }
+      catch (Throwable e) {
+         error = e;
+      }
+      awaitAll (futures, error);
+   }
+
+   private void claimBlocks (
+      AtomicInteger next, int hi, int grain, int w, RangeBody body) {
+      int klo;
+      while ((klo = next.getAndAdd (grain)) < hi) {
+         body.run (klo, Math.min (klo+grain, hi), w);
+      }
+   }
+
+   private void awaitAll (ArrayList<Future<?>> futures, Throwable error) {
+      for (Future<?> fut : futures) {
+         try {
+            boolean interrupted = false;
+            while (true) {
+               try {
+                  fut.get();
+                  break;
+               }
+               catch (InterruptedException e) {
+                  // must wait for the worker, since it may still be
+                  // writing to caller-owned data
+                  interrupted = true;
+               }
+            }
+            if (interrupted) {
+               Thread.currentThread().interrupt();
+            }
+         }
+         catch (ExecutionException e) {
+            if (error == null) {
+               error = e.getCause();
+            }
+         }
+      }
+      if (error instanceof RuntimeException) {
+         throw (RuntimeException)error;
+      }
+      else if (error instanceof Error) {
+         throw (Error)error;
+      }
+      else if (error != null) {
+         throw new RuntimeException (error);
+      }
+   }
+
+   /**
+    * Shuts down the worker threads. The loop can still be used afterwards,
+    * in which case new threads will be created as needed.
+    */
+   public synchronized void dispose() {
+      if (myExecutor != null) {
+         myExecutor.shutdown();
+         myExecutor = null;
+      }
+   }
+}
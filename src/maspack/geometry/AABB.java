@@ -37,6 +37,17 @@ public class AABB extends BVNode {
       center.add (myMin, myMax);
       center.scale (0.5);
    }
+
+   public double getSurfaceArea() {
+      double dx = myMax.x - myMin.x;
+      double dy = myMax.y - myMin.y;
+      double dz = myMax.z - myMin.z;
+      if (dx < 0 || dy < 0 || dz < 0) {
+         // box is empty
+         return 0;
+      }
+      return 2*(dx*dy + dy*dz + dz*dx);
+   }
    
    public void getHalfWidths(Vector3d hw) {
       hw.sub(myMax, myMin);
@@ -6,29 +6,119 @@
  */
 package maspack.geometry;
 
+import java.util.ArrayList;
+
+import maspack.concurrency.ParallelLoop;
 import maspack.matrix.Vector3d;
 
 public class AABBTree extends BVTree {
 
    private static final double INF = Double.POSITIVE_INFINITY;
+
+   // minimum number of leaf nodes for which leaf updates are done in parallel
+   static int minParallelLeafNodes = 4000;
+   // number of leaf nodes claimed at a time by each parallel worker
+   static int leafUpdateGrain = 256;
+
+   private static int myDefaultNumThreads = -1;
    
    protected AABB myRoot;
 
+   // leaf nodes, and internal nodes in bottom-up order, used by update()
+   private AABB[] myLeafNodes;
+   private AABB[] myInternalNodes;
+   private int myNumThreads = myDefaultNumThreads;
+   private ParallelLoop myLoop;
+
+   // if not null, supplies the triangle geometry during a build
+   private PolygonalMeshArrays myBuildArrays;
+
    private class ElemDesc {
       Vector3d myCentroid;
       Boundable myElem;
+      int myTri;
 
       ElemDesc (Boundable elem) {
          myElem = elem;
          myCentroid = new Vector3d();
          elem.computeCentroid (myCentroid);
       }
+
+      ElemDesc (Boundable elem, PolygonalMeshArrays arrays, int tidx) {
+         myElem = elem;
+         myTri = tidx;
+         myCentroid = new Vector3d();
+         arrays.computeTriangleCentroid (myCentroid, tidx);
+      }
    }
 
    public AABB getRoot() {
       return myRoot;
    }
 
+   protected void setRoot (BVNode root) {
+      myRoot = (AABB)root;
+      myLeafNodes = null;
+   }
+
+   /**
+    * Sets the default number of threads that are assigned to an
+    * <code>AABBTree</code> when it is created. Setting <code>num</code> to a
+    * value {@code <=} 0 will cause trees to use the number of available
+    * processors.
+    *
+    * @param num default number of threads to use
+    * @see #getDefaultNumThreads
+    */
+   public static void setDefaultNumThreads (int num) {
+      myDefaultNumThreads = num;
+   }
+
+   /**
+    * Returns the default number of threads that are assigned to an
+    * <code>AABBTree</code> when it is created.
+    *
+    * @return default number of threads
+    * @see #setDefaultNumThreads
+    */
+   public static int getDefaultNumThreads () {
+      return myDefaultNumThreads;
+   }
+
+   /**
+    * Sets the number of threads used to update the leaf nodes within {@link
+    * #update}. Multiple threads are only used when the tree has a large
+    * number of leaf nodes, as is the case for big deforming meshes. Setting
+    * <code>num</code> to a value {@code <=} 0 will cause the tree to use the
+    * number of available processors.
+    *
+    * @param num number of threads to use
+    * @see #getNumThreads
+    */
+   public void setNumThreads (int num) {
+      myNumThreads = num;
+      if (myLoop != null) {
+         myLoop.dispose();
+         myLoop = null;
+      }
+   }
+
+   /**
+    * Returns the number of threads used to update the leaf nodes within
+    * {@link #update}.
+    *
+    * @return number of threads to use
+    * @see #setNumThreads
+    */
+   public int getNumThreads () {
+      if (myNumThreads <= 0) {
+         return ParallelLoop.numAvailableProcessors();
+      }
+      else {
+         return myNumThreads;
+      }
+   }
+
    public AABBTree () {
    }
 
@@ -100,8 +190,17 @@ public class AABBTree extends BVTree {
    private void setNodeBounds (AABB node, ElemDesc[] edescs, int nelems) {
       node.myMax.set (-INF, -INF, -INF);
       node.myMin.set ( INF,  INF,  INF);
-      for (int i=0; i<nelems; i++) {
-         edescs[i].myElem.updateBounds (node.myMin, node.myMax);
+      PolygonalMeshArrays arrays = myBuildArrays;
+      if (arrays != null) {
+         for (int i=0; i<nelems; i++) {
+            arrays.updateTriangleBounds (
+               node.myMin, node.myMax, edescs[i].myTri);
+         }
+      }
+      else {
+         for (int i=0; i<nelems; i++) {
+            edescs[i].myElem.updateBounds (node.myMin, node.myMax);
+         }
       }
       node.myMax.add ( myMargin,  myMargin,  myMargin);
       node.myMin.add (-myMargin, -myMargin, -myMargin);
@@ -134,6 +233,40 @@ public class AABBTree extends BVTree {
       return node;
    }
 
+   /**
+    * {@inheritDoc}
+    *
+    * <p>For triangular polygonal meshes, the face centroids and bounds used
+    * to build the tree are computed from the mesh's {@link
+    * PolygonalMesh#getArrays array-based view}, avoiding traversal of the
+    * face and vertex objects.
+    */
+   public void build (MeshBase mesh) {
+      if (mesh instanceof PolygonalMesh &&
+          ((PolygonalMesh)mesh).isTriangular()) {
+         PolygonalMesh pmesh = (PolygonalMesh)mesh;
+         PolygonalMeshArrays arrays = pmesh.getArrays();
+         ArrayList<Face> faces = pmesh.getFaces();
+         int nelems = faces.size();
+         ElemDesc[] edescs = new ElemDesc[nelems];
+         for (int i=0; i<nelems; i++) {
+            edescs[i] = new ElemDesc (faces.get(i), arrays, i);
+         }
+         myBuildArrays = arrays;
+         try {
+            myRoot = buildNodesRecursively (edescs, nelems, 0);
+         }
+         finally {
+            myBuildArrays = null;
+         }
+         myLeafNodes = null;
+         recordBuildCosts (myRoot);
+      }
+      else {
+         super.build (mesh);
+      }
+   }
+
    public void build (
       Boundable[] elements, int nelems) {
       //myPoints = new Point3d[maxPoints];
@@ -142,6 +275,52 @@ public class AABBTree extends BVTree {
          edescs[i] = new ElemDesc (elements[i]);
       }
       myRoot = buildNodesRecursively (edescs, nelems, 0);
+      myLeafNodes = null;
+      recordBuildCosts (myRoot);
+   }
+
+   protected AABB buildSubtree (Boundable[] elements, int nelems) {
+      ElemDesc[] edescs = new ElemDesc[nelems];
+      for (int i=0; i<nelems; i++) {
+         edescs[i] = new ElemDesc (elements[i]);
+      }
+      return buildNodesRecursively (edescs, nelems, 0);
+   }
+
+   /**
+    * Collects the leaf nodes, along with the internal nodes in an order such
+    * that each node appears after its children.
+    */
+   private void collectNodes () {
+      ArrayList<AABB> leafs = new ArrayList<AABB>();
+      ArrayList<AABB> internals = new ArrayList<AABB>();
+      collectNodes (leafs, internals, myRoot);
+      myLeafNodes = leafs.toArray (new AABB[0]);
+      myInternalNodes = internals.toArray (new AABB[0]);
+   }
+
+   private void collectNodes (
+      ArrayList<AABB> leafs, ArrayList<AABB> internals, AABB node) {
+      if (node.isLeaf()) {
+         leafs.add (node);
+      }
+      else {
+         BVNode child;
+         for (child=node.myFirstChild; child!=null; child=child.myNext) {
+            collectNodes (leafs, internals, (AABB)child);
+         }
+         internals.add (node);
+      }
+   }
+
+   private ParallelLoop getLoop (int nthreads) {
+      if (myLoop == null) {
+         myLoop = new ParallelLoop ("AABBTree", nthreads);
+      }
+      else {
+         myLoop.setNumThreads (nthreads);
+      }
+      return myLoop;
    }
 
    protected void updateRecursively (AABB node) {
@@ -166,7 +345,45 @@ public class AABBTree extends BVTree {
    }
 
    public void update() {
-      updateRecursively (myRoot);
+      if (myRoot == null) {
+         return;
+      }
+      if (myLeafNodes == null) {
+         collectNodes();
+      }
+      double margin = myMargin;
+      AABB[] leafs = myLeafNodes;
+      int nthreads = 1;
+      if (leafs.length >= minParallelLeafNodes) {
+         nthreads = getNumThreads();
+      }
+      if (nthreads > 1) {
+         getLoop(nthreads).forEach (
+            0, leafs.length, leafUpdateGrain, (lo, hi, w) -> {
+               for (int i=lo; i<hi; i++) {
+                  leafs[i].update (margin);
+               }
+            });
+      }
+      else {
+         for (int i=0; i<leafs.length; i++) {
+            leafs[i].update (margin);
+         }
+      }
+      // refit internal nodes bottom-up
+      for (AABB node : myInternalNodes) {
+         AABB child = (AABB)node.myFirstChild;
+         node.set (child, margin);
+         child = (AABB)child.getNext();
+         while (child != null) {
+            node.updateForAABB (child, margin);
+            child = (AABB)child.getNext();
+         }
+      }
+      if (rebuildDegradedSubtrees()) {
+         myLeafNodes = null;
+         numberNodes();
+      }
    }
 
 }
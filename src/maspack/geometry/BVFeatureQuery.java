@@ -69,7 +69,10 @@ public class BVFeatureQuery {
       if (!mesh.isTriangular()) {
          throw new IllegalArgumentException ("mesh is not triangular");
       }
-      Face face = nearestFaceToPoint (nearPnt, uv, mesh.getBVTree(), pnt);
+      // get the tree first, since building it may update the arrays
+      BVTree bvh = mesh.getBVTree();
+      Face face = nearestFaceToPoint (
+         nearPnt, uv, bvh, mesh.getArrays(), pnt);
       return face;
    }
 
@@ -106,12 +109,25 @@ public class BVFeatureQuery {
     */
    public Face nearestFaceToPoint (
       Point3d nearPnt, Vector2d uv, BVTree bvh, Point3d pnt) {
+      return nearestFaceToPoint (nearPnt, uv, bvh, null, pnt);
+   }
+
+   /**
+    * Implements nearestFaceToPoint. If <code>arrays</code> is not
+    * <code>null</code>, the face vertex positions are obtained from
+    * it instead of from the vertices themselves.
+    */
+   private Face nearestFaceToPoint (
+      Point3d nearPnt, Vector2d uv, BVTree bvh, 
+      PolygonalMeshArrays arrays, Point3d pnt) {
 
       if (myPointFaceCalc == null) {
          myPointFaceCalc = new PointFaceDistanceCalculator();
       }
       myPointFaceCalc.setPoint (pnt, bvh.getBvhToWorld());
+      myPointFaceCalc.myArrays = arrays;
       Boundable nearest = nearestObject (bvh, myPointFaceCalc);
+      myPointFaceCalc.myArrays = null;
 
       if (nearest != null) {
          myPointFaceCalc.nearestDistance (nearest);
@@ -1184,6 +1200,11 @@ public class BVFeatureQuery {
       Vector2d myUv;
       Face myFace;
       double myDist;
+      // if not null, supplies the face vertex positions
+      PolygonalMeshArrays myArrays;
+      Point3d myP0;
+      Point3d myP1;
+      Point3d myP2;
 
       public PointFaceDistanceCalculator () {
          if (myIntersector == null) {
@@ -1192,6 +1213,9 @@ public class BVFeatureQuery {
          myPnt = new Point3d();
          myNearest = new Point3d();
          myUv = new Vector2d();
+         myP0 = new Point3d();
+         myP1 = new Point3d();
+         myP2 = new Point3d();
          reset();
       }
 
@@ -1220,7 +1244,15 @@ public class BVFeatureQuery {
 
       public double nearestDistance (Boundable e) {
          myFace = null;
-         if (e instanceof Face) {
+         if (e instanceof Face && myArrays != null) {
+            Face face = (Face)e;
+            myArrays.getTriangleVertices (myP0, myP1, myP2, face.getIndex());
+            myFace = face;
+            myDist = myIntersector.nearestpoint (
+               myP0, myP1, myP2, myPnt, myNearest, myUv);
+            return myDist;
+         }
+         else if (e instanceof Face) {
             Face face = (Face)e;
             HalfEdge he0 = face.firstHalfEdge();
             HalfEdge he = he0;
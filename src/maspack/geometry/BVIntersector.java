@@ -64,8 +64,11 @@ public class BVIntersector {
       if (!mesh2.isTriangular()) {
          throw new IllegalArgumentException ("mesh2 is not triangular");
       }
+      // get the trees first, since building them may update the arrays
+      BVTree bvh1 = mesh1.getBVTree();
+      BVTree bvh2 = mesh2.getBVTree();
       return intersectMeshMesh (
-         intersections, mesh1.getBVTree(), mesh2.getBVTree());
+         intersections, bvh1, bvh2, mesh1.getArrays(), mesh2.getArrays());
    }
 
    /**
@@ -86,6 +89,18 @@ public class BVIntersector {
    public boolean intersectMeshMesh (
       ArrayList<TriTriIntersection> intersections,
       BVTree bvh1, BVTree bvh2) {
+      return intersectMeshMesh (intersections, bvh1, bvh2, null, null);
+   }
+
+   /**
+    * Implements intersectMeshMesh. If <code>arrays1</code> and
+    * <code>arrays2</code> are not <code>null</code>, they supply the
+    * triangle vertex positions for the faces of the first and second trees.
+    */
+   private boolean intersectMeshMesh (
+      ArrayList<TriTriIntersection> intersections,
+      BVTree bvh1, BVTree bvh2,
+      PolygonalMeshArrays arrays1, PolygonalMeshArrays arrays2) {
 
       double tol = Math.min(bvh1.getRadius()*EPS, bvh1.getRadius()*EPS);
       myTriIntersector.setEpsilon(tol);
@@ -99,9 +114,18 @@ public class BVIntersector {
       ArrayList<BVNode> nodes2 = new ArrayList<BVNode>();
 
       bvh1.intersectTree (nodes1, nodes2, bvh2, X21);
-      for (int i=0; i<nodes1.size(); i++) {
-         intersectBoundingVolumeTriangles (
-            intersections, nodes1.get(i), nodes2.get(i), X21);
+      if (arrays1 != null && arrays2 != null) {
+         for (int i=0; i<nodes1.size(); i++) {
+            intersectBoundingVolumeTriangles (
+               intersections, nodes1.get(i), nodes2.get(i), X21,
+               arrays1, arrays2);
+         }
+      }
+      else {
+         for (int i=0; i<nodes1.size(); i++) {
+            intersectBoundingVolumeTriangles (
+               intersections, nodes1.get(i), nodes2.get(i), X21);
+         }
       }
 
       RigidTransform3d X1W = bvh1.getBvhToWorld();
@@ -292,6 +316,52 @@ public class BVIntersector {
 
    }
 
+   /**
+    * Version of intersectBoundingVolumeTriangles that obtains the triangle
+    * vertex positions from the array-based views of the two meshes, with
+    * face and triangle indices assumed to be the same.
+    */
+   void intersectBoundingVolumeTriangles (
+      ArrayList<TriTriIntersection> intersections,
+      BVNode node1, BVNode node2, RigidTransform3d X21,
+      PolygonalMeshArrays arrays1, PolygonalMeshArrays arrays2) {
+
+      Boundable[] elems1 = node1.getElements();
+      Boundable[] elems2 = node2.getElements();
+      Point3d p0 = new Point3d();
+      Point3d p1 = new Point3d();
+      Point3d p2 = new Point3d();
+
+      for (int k0 = 0; k0 < elems1.length; k0++) {
+
+         if (elems1[k0] instanceof Face) {
+            Face face0 = (Face)elems1[k0];
+            arrays1.getTriangleVertices (p0, p1, p2, face0.getIndex());
+
+            for (int k1 = 0; k1 < elems2.length; k1++) {
+               if (elems2[k1] instanceof Face) {
+                  Face face1 = (Face)elems2[k1];
+                  arrays2.getTriangleVertices (
+                     myP0, myP1, myP2, face1.getIndex());
+                  myP0.transform (X21);
+                  myP1.transform (X21);
+                  myP2.transform (X21);
+
+                  Point3d[] points =
+                     myTriIntersector.intersectTriangleTriangle (
+                        p0, p1, p2, myP0, myP1, myP2);
+                  if (points != null) {
+                     // intersections are now in coords of first mesh
+                     intersections.add (
+                        new TriTriIntersection (
+                           face0, face1, points));
+                  }
+               }
+            }
+         }
+      }
+   }
+
    void intersectBoundingVolumeTriangles (
       ArrayList<TriLineIntersection> intersections,
       BVNode node, Line l) {
@@ -23,6 +23,8 @@ public abstract class BVNode implements IsRenderable {
    BVNode myParent;
    Boundable[] myElements;
    int myNumber;
+   double myBuildCost;   // surface area cost of the subtree when last built
+   double mySubtreeArea; // surface area sum for the subtree, used by BVTree
    
    public BVNode() {
    }
@@ -44,6 +46,39 @@ public abstract class BVNode implements IsRenderable {
       child.myParent = this;
    }
 
+   /**
+    * Replaces a child volume of this bounding volume with another volume,
+    * which takes the same position in the child list.
+    *
+    * @param oldChild child to be replaced
+    * @param newChild replacement child
+    */
+   void replaceChild (BVNode oldChild, BVNode newChild) {
+      BVNode prev = null;
+      BVNode child = myFirstChild;
+      while (child != null && child != oldChild) {
+         prev = child;
+         child = child.myNext;
+      }
+      if (child == null) {
+         throw new IllegalArgumentException (
+            "oldChild is not a child of this node");
+      }
+      newChild.myNext = oldChild.myNext;
+      newChild.myParent = this;
+      if (prev == null) {
+         myFirstChild = newChild;
+      }
+      else {
+         prev.myNext = newChild;
+      }
+      if (myLastChild == oldChild) {
+         myLastChild = newChild;
+      }
+      oldChild.myNext = null;
+      oldChild.myParent = null;
+   }
+
    /**
     * Returns the first child volume, if any, associated with this bounding
     * volume
@@ -95,6 +130,15 @@ public abstract class BVNode implements IsRenderable {
     */
    public abstract double getRadius();
 
+   /**
+    * Returns the surface area of this bounding volume. This is used to
+    * assess the quality of a bounding volume tree using the surface area
+    * heuristic.
+    *
+    * @return surface area of the volume
+    */
+   public abstract double getSurfaceArea();
+
    /**
     * Returns a center point for this bounding volume.
     *
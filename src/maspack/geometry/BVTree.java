@@ -18,6 +18,11 @@ import java.util.Collection;
 /**
  * Base class for a bounding volume tree composed of a hierarchy of bounding
  * volumes.
+ *
+ * <p>By default, {@link #update} rebuilds any subtree whose surface area
+ * cost has grown by more than {@link #DEFAULT_REBUILD_RATIO}, so this
+ * applies to all {@link AABBTree} and {@link OBBTree} instances. It can be
+ * adjusted or disabled for each tree using {@link #setRebuildRatio}.
  * 
  * @author lloyd
  */
@@ -28,6 +33,13 @@ public abstract class BVTree implements IsRenderable {
    protected static final double INF = Double.POSITIVE_INFINITY;
 
    protected RigidTransform3d myBvhToWorld = RigidTransform3d.IDENTITY;
+
+   /**
+    * Default value for the rebuild ratio. See {@link #setRebuildRatio}.
+    */
+   public static final double DEFAULT_REBUILD_RATIO = 1.5;
+   protected double myRebuildRatio = DEFAULT_REBUILD_RATIO;
+   protected int myRebuildCnt = 0;
    
    /**
     * Returns an approximate "radius" for this bounding volume hierarchy.
@@ -182,6 +194,190 @@ public abstract class BVTree implements IsRenderable {
       return myMargin;
    }
 
+   /**
+    * Returns the ratio by which the surface area cost of a subtree must
+    * increase before the subtree is rebuilt by {@link #update}.
+    *
+    * @return subtree rebuild ratio
+    * @see #setRebuildRatio
+    */
+   public double getRebuildRatio () {
+      return myRebuildRatio;
+   }
+
+   /**
+    * Sets the ratio by which the surface area cost of a subtree must
+    * increase before the subtree is rebuilt by {@link #update}.
+    *
+    * <p>The cost of a subtree is the sum of the surface areas of its nodes,
+    * divided by the area of its root node, which is proportional to the
+    * expected number of nodes visited by a query that reaches the root (the
+    * "surface area heuristic"). This cost is recorded for every internal
+    * node when the tree is built. When the elements move, {@link #update}
+    * refits the volumes without changing the tree's structure, which
+    * works well for rigid and mildly deforming meshes but lets the tree
+    * degrade when elements migrate relative to each other. After each
+    * update, any subtree whose cost exceeds its recorded value by more than
+    * this ratio is rebuilt from its elements, starting with the subtrees
+    * nearest the root. A value {@code <=} 0 disables rebuilding.
+    *
+    * @param ratio subtree rebuild ratio
+    * @see #getRebuildRatio
+    */
+   public void setRebuildRatio (double ratio) {
+      myRebuildRatio = ratio;
+   }
+
+   /**
+    * Returns the number of subtrees that have been rebuilt by {@link
+    * #update} since this tree was created.
+    *
+    * @return number of subtree rebuilds
+    * @see #setRebuildRatio
+    */
+   public int getRebuildCount () {
+      return myRebuildCnt;
+   }
+
+   /**
+    * Computes the surface area cost of this tree, which is the sum of the
+    * surface areas of all its nodes, divided by the surface area of the root
+    * node. Smaller values indicate a tree that can be queried more
+    * efficiently.
+    *
+    * @return surface area cost of this tree
+    * @see #setRebuildRatio
+    */
+   public double getSurfaceAreaCost () {
+      BVNode root = getRoot();
+      if (root == null) {
+         return 0;
+      }
+      double area = root.getSurfaceArea();
+      return area > 0 ? updateSubtreeAreas (root)/area : 0;
+   }
+
+   /**
+    * Builds a subtree for a set of elements, for use in replacing a subtree
+    * that has degraded. The parent of the returned subtree root will be set
+    * by the caller.
+    *
+    * @param elems elements around which the subtree is to be built
+    * @param num number of elements
+    * @return root node of the new subtree
+    */
+   protected abstract BVNode buildSubtree (Boundable[] elems, int num);
+
+   /**
+    * Sets the root node of this tree. Used when the entire tree is rebuilt
+    * by {@link #rebuildDegradedSubtrees}.
+    *
+    * @param root new root node
+    */
+   protected abstract void setRoot (BVNode root);
+
+   /**
+    * Computes and stores the surface area sum for each node in a subtree,
+    * and returns the sum for the subtree root.
+    */
+   double updateSubtreeAreas (BVNode node) {
+      double sum = node.getSurfaceArea();
+      BVNode child;
+      for (child=node.myFirstChild; child!=null; child=child.myNext) {
+         sum += updateSubtreeAreas (child);
+      }
+      node.mySubtreeArea = sum;
+      return sum;
+   }
+
+   /**
+    * Records the surface area cost of each internal node in a subtree. This
+    * should be called whenever the subtree is built.
+    *
+    * @param node root node of the subtree
+    */
+   protected void recordBuildCosts (BVNode node) {
+      updateSubtreeAreas (node);
+      recursivelyRecordBuildCosts (node);
+   }
+
+   private void recursivelyRecordBuildCosts (BVNode node) {
+      double area = node.getSurfaceArea();
+      node.myBuildCost = (area > 0 ? node.mySubtreeArea/area : 0);
+      BVNode child;
+      for (child=node.myFirstChild; child!=null; child=child.myNext) {
+         if (!child.isLeaf()) {
+            recursivelyRecordBuildCosts (child);
+         }
+      }
+   }
+
+   /**
+    * Rebuilds each subtree whose surface area cost has increased by more
+    * than the rebuild ratio since it was built. Should be called by {@link
+    * #update} after the volumes have been refit.
+    *
+    * @return {@code true} if any subtrees were rebuilt
+    */
+   protected boolean rebuildDegradedSubtrees () {
+      BVNode root = getRoot();
+      if (myRebuildRatio <= 0 || root == null) {
+         return false;
+      }
+      updateSubtreeAreas (root);
+      return recursivelyRebuildDegradedSubtrees (root);
+   }
+
+   private boolean recursivelyRebuildDegradedSubtrees (BVNode node) {
+      double area = node.getSurfaceArea();
+      if (node.myBuildCost > 0 && area > 0 &&
+          node.mySubtreeArea/area > myRebuildRatio*node.myBuildCost) {
+         rebuildSubtree (node);
+         return true;
+      }
+      boolean rebuilt = false;
+      BVNode child = node.myFirstChild;
+      while (child != null) {
+         // get next now since child may be replaced
+         BVNode next = child.myNext;
+         if (!child.isLeaf()) {
+            rebuilt |= recursivelyRebuildDegradedSubtrees (child);
+         }
+         child = next;
+      }
+      return rebuilt;
+   }
+
+   private void rebuildSubtree (BVNode node) {
+      ArrayList<Boundable> elist = new ArrayList<Boundable>();
+      collectElements (elist, node);
+      BVNode newNode =
+         buildSubtree (elist.toArray (new Boundable[0]), elist.size());
+      BVNode parent = node.getParent();
+      if (parent == null) {
+         setRoot (newNode);
+      }
+      else {
+         parent.replaceChild (node, newNode);
+      }
+      recordBuildCosts (newNode);
+      myRebuildCnt++;
+   }
+
+   private void collectElements (ArrayList<Boundable> elist, BVNode node) {
+      if (node.isLeaf()) {
+         if (node.myElements != null) {
+            elist.addAll (Arrays.asList (node.myElements));
+         }
+      }
+      else {
+         BVNode child;
+         for (child=node.myFirstChild; child!=null; child=child.myNext) {
+            collectElements (elist, child);
+         }
+      }
+   }
+
    // public abstract void build (
    //    IndexedPointSource[] elements, int nelems, int maxPoints);
 
@@ -587,7 +783,8 @@ public abstract class BVTree implements IsRenderable {
     * Updates the bounding volumes in this tree to ensure that they
     * properly contain their enclosed elements. This should be called
     * when the positions of the elements changes (such when the vertices
-    * of mesh change position).
+    * of mesh change position). Subtrees whose quality has degraded
+    * may also be rebuilt, as described for {@link #setRebuildRatio}.
     *
     * @see #setMargin 
     */
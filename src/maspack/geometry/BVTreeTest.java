@@ -433,7 +433,105 @@ public class BVTreeTest {
          testFeaturesBoundedByNodes (obbTree.getRoot(), obbTree.getMargin());
       }
    }
-      
+
+   private void twistMesh (MeshBase mesh, double ang) {
+      for (Vertex3d vtx : mesh.getVertices()) {
+         Point3d p = vtx.pnt;
+         double c = Math.cos (ang*p.z);
+         double s = Math.sin (ang*p.z);
+         p.set (c*p.x - s*p.y, s*p.x + c*p.y, p.z);
+      }
+      mesh.notifyVertexPositionsModified();
+   }
+
+   private void checkLeafBoundsEqual (AABBTree tree1, AABBTree tree2) {
+      ArrayList<BVNode> leafs1 = tree1.getLeafNodes();
+      ArrayList<BVNode> leafs2 = tree2.getLeafNodes();
+      if (leafs1.size() != leafs2.size()) {
+         throw new TestException (
+            "trees have "+leafs1.size()+" and "+leafs2.size()+" leaf nodes");
+      }
+      for (int i=0; i<leafs1.size(); i++) {
+         AABB node1 = (AABB)leafs1.get(i);
+         AABB node2 = (AABB)leafs2.get(i);
+         if (!node1.myMin.equals (node2.myMin) ||
+             !node1.myMax.equals (node2.myMax)) {
+            throw new TestException ("leaf node "+i+" bounds differ");
+         }
+      }
+   }
+
+   private int numElements (BVTree tree) {
+      int num = 0;
+      for (BVNode node : tree.getLeafNodes()) {
+         num += node.getNumElements();
+      }
+      return num;
+   }
+
+   /**
+    * Twists a mesh progressively, so that its elements move relative to each
+    * other, and checks that update() rebuilds degraded subtrees while
+    * keeping the trees valid.
+    */
+   public void testRebuilding (PolygonalMesh mesh) {
+
+      AABBTree aabbTree = new AABBTree (mesh);
+      OBBTree obbTree = new OBBTree (mesh);
+      AABBTree refitTree = new AABBTree (mesh);
+      refitTree.setRebuildRatio (0);
+
+      // tree whose leaf nodes are updated in parallel
+      int saveMinLeafNodes = AABBTree.minParallelLeafNodes;
+      AABBTree.minParallelLeafNodes = 0;
+      AABBTree parallelTree = new AABBTree (mesh);
+      parallelTree.setNumThreads (3);
+
+      try {
+         for (int i=0; i<40; i++) {
+            twistMesh (mesh, 0.1);
+            aabbTree.update();
+            obbTree.update();
+            refitTree.update();
+            parallelTree.update();
+
+            for (BVTree tree : new BVTree[] {
+                  aabbTree, obbTree, refitTree }) {
+               testFeaturesContainedInAncestors (tree);
+               testFeaturesBoundedByNodes (tree.getRoot(), tree.getMargin());
+               if (numElements (tree) != mesh.numFaces()) {
+                  throw new TestException (
+                     "tree contains "+numElements (tree)+
+                     " elements; expected "+mesh.numFaces());
+               }
+            }
+            checkLeafBoundsEqual (parallelTree, aabbTree);
+         }
+      }
+      finally {
+         AABBTree.minParallelLeafNodes = saveMinLeafNodes;
+         parallelTree.setNumThreads (1);
+      }
+      if (aabbTree.getRebuildCount() == 0) {
+         throw new TestException ("no AABBTree subtrees were rebuilt");
+      }
+      if (obbTree.getRebuildCount() == 0) {
+         throw new TestException ("no OBBTree subtrees were rebuilt");
+      }
+      if (refitTree.getRebuildCount() != 0) {
+         throw new TestException (
+            "subtrees rebuilt with rebuilding disabled");
+      }
+      double cost = aabbTree.getSurfaceAreaCost();
+      double refitCost = refitTree.getSurfaceAreaCost();
+      double freshCost = new AABBTree (mesh).getSurfaceAreaCost();
+      if (cost >= refitCost || cost > 1.5*freshCost) {
+         throw new TestException (
+            "rebuilt tree cost="+cost+", refit cost="+refitCost+
+            ", fresh cost="+freshCost);
+      }
+   }
+
    public void test() {
       testIntersectTree();
       testContainment (MeshFactory.createBox (1.0, 1.5, 2.0));
@@ -447,6 +545,8 @@ public class BVTreeTest {
       testUpdating (new PolygonalMesh (myComplexMesh1));
       testUpdating (MeshFactory.createSphericalPolyline (8.0, 12, 12));
       testUpdating (MeshFactory.createRandomPointMesh (200, 5));
+
+      testRebuilding (MeshFactory.createSphere (1.0, 20));
    }
 
    public static void main (String[] args) {
@@ -15,6 +15,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
+import maspack.concurrency.ParallelLoop;
 import maspack.matrix.Matrix3d;
 import maspack.matrix.Point3d;
 import maspack.matrix.RigidTransform3d;
@@ -181,6 +182,14 @@ public class DistanceGrid extends ScalarGridBase {
       DistanceMethod.BRIDSON;
    protected DistanceMethod myDistanceMethod = DEFAULT_DISTANCE_METHOD;
 
+   // minimum number of grid vertices for which distances are computed in
+   // parallel
+   static int minParallelVertices = 20000;
+
+   private static int myDefaultNumThreads = -1;
+   private int myNumThreads = myDefaultNumThreads;
+   private ParallelLoop myLoop;
+
    /**
     * Sets the method used to compute distance values from polygonal meshes.
     * Specifying {@code null} sets the method to the default value,
@@ -204,6 +213,96 @@ public class DistanceGrid extends ScalarGridBase {
       return myDistanceMethod;
    }
 
+   /**
+    * Sets the default number of threads that are assigned to a
+    * <code>DistanceGrid</code> when it is created. Setting <code>num</code>
+    * to a value {@code <=} 0 will cause grids to use the number of available
+    * processors.
+    *
+    * @param num default number of threads to use
+    * @see #getDefaultNumThreads
+    */
+   public static void setDefaultNumThreads (int num) {
+      myDefaultNumThreads = num;
+   }
+
+   /**
+    * Returns the default number of threads that are assigned to a
+    * <code>DistanceGrid</code> when it is created.
+    *
+    * @return default number of threads
+    * @see #setDefaultNumThreads
+    */
+   public static int getDefaultNumThreads () {
+      return myDefaultNumThreads;
+   }
+
+   /**
+    * Sets the number of threads used to compute distance values from
+    * features or meshes. Multiple threads are only used when the grid has a
+    * large number of vertices. The computed distances do not depend on the
+    * number of threads. Setting <code>num</code> to a value {@code <=} 0 will
+    * cause the grid to use the number of available processors.
+    *
+    * @param num number of threads to use
+    * @see #getNumThreads
+    */
+   public void setNumThreads (int num) {
+      myNumThreads = num;
+      if (myLoop != null) {
+         myLoop.dispose();
+         myLoop = null;
+      }
+   }
+
+   /**
+    * Returns the number of threads used to compute distance values from
+    * features or meshes.
+    *
+    * @return number of threads to use
+    * @see #setNumThreads
+    */
+   public int getNumThreads () {
+      if (myNumThreads <= 0) {
+         return ParallelLoop.numAvailableProcessors();
+      }
+      else {
+         return myNumThreads;
+      }
+   }
+
+   private ParallelLoop getLoop (int nthreads) {
+      if (myLoop == null) {
+         myLoop = new ParallelLoop ("DistanceGrid", nthreads);
+      }
+      else {
+         myLoop.setNumThreads (nthreads);
+      }
+      return myLoop;
+   }
+
+   /**
+    * Returns the number of threads to use for a distance computation
+    * involving <code>numv</code> vertices.
+    */
+   private int numThreadsForVertices (int numv) {
+      return numv >= minParallelVertices ? getNumThreads() : 1;
+   }
+
+   /**
+    * Executes a loop body over <code>[lo, hi)</code>, in parallel if
+    * <code>nthreads</code> exceeds 1.
+    */
+   private void forEach (
+      int nthreads, int lo, int hi, int grain, ParallelLoop.RangeBody body) {
+      if (nthreads > 1) {
+         getLoop(nthreads).forEach (lo, hi, grain, body);
+      }
+      else if (hi > lo) {
+         body.run (lo, hi, 0);
+      }
+   }
+
    /**
     * Default constructor. Should not be called by applications, unless
     * {@link #scan} is called immediately after.
@@ -700,6 +799,105 @@ public class DistanceGrid extends ScalarGridBase {
       mySignedP = signed;
       myRobValid = false;
    }
+
+   /**
+    * Writes this grid's resolution, widths, center and orientation,
+    * distances, and closest feature indices (if present) to a binary data
+    * stream. This is much faster than the text format produced by {@link
+    * #write}, and is intended for caching computed grids. The features
+    * themselves are not written, and must be supplied again when the grid is
+    * read back using {@link #readBinary}.
+    *
+    * @param dos data stream to write to
+    * @throws IOException if an I/O error occurs
+    */
+   public void writeBinary (DataOutputStream dos) throws IOException {
+      dos.writeInt (myNx-1);
+      dos.writeInt (myNy-1);
+      dos.writeInt (myNz-1);
+      dos.writeDouble (myWidths.x);
+      dos.writeDouble (myWidths.y);
+      dos.writeDouble (myWidths.z);
+      RigidTransform3d TCL = getCenterAndOrientation();
+      for (int i=0; i<3; i++) {
+         for (int j=0; j<3; j++) {
+            dos.writeDouble (TCL.R.get (i, j));
+         }
+      }
+      dos.writeDouble (TCL.p.x);
+      dos.writeDouble (TCL.p.y);
+      dos.writeDouble (TCL.p.z);
+      dos.writeBoolean (mySignedP);
+      int numv = numVertices();
+      for (int i=0; i<numv; i++) {
+         dos.writeDouble (myValues[i]);
+      }
+      dos.writeBoolean (myClosestFeatureIdxs != null);
+      if (myClosestFeatureIdxs != null) {
+         for (int i=0; i<numv; i++) {
+            dos.writeInt (myClosestFeatureIdxs[i]);
+         }
+      }
+   }
+
+   /**
+    * Reads this grid from a binary data stream written by {@link
+    * #writeBinary}. The local-to-world transform is not changed.
+    *
+    * @param dis data stream to read from
+    * @param features if not <code>null</code>, and the stream contains
+    * closest feature indices, the features with which the grid was computed.
+    * These are then associated with the grid as described for {@link
+    * #setDistancesAndFeatures}.
+    * @throws IOException if an I/O or format error occurs
+    */
+   public void readBinary (
+      DataInputStream dis, List<? extends Feature> features)
+      throws IOException {
+      Vector3i resolution =
+         new Vector3i (dis.readInt(), dis.readInt(), dis.readInt());
+      if (resolution.x < 1 || resolution.y < 1 || resolution.z < 1) {
+         throw new IOException ("invalid grid resolution " + resolution);
+      }
+      Vector3d widths =
+         new Vector3d (dis.readDouble(), dis.readDouble(), dis.readDouble());
+      RigidTransform3d TCL = new RigidTransform3d();
+      for (int i=0; i<3; i++) {
+         for (int j=0; j<3; j++) {
+            TCL.R.set (i, j, dis.readDouble());
+         }
+      }
+      TCL.p.set (dis.readDouble(), dis.readDouble(), dis.readDouble());
+      boolean signed = dis.readBoolean();
+      clearFeatures(); // so that setResolution() does not recompute distances
+      initGrid (widths, resolution, TCL);
+      int numv = numVertices();
+      double[] distances = new double[numv];
+      for (int i=0; i<numv; i++) {
+         distances[i] = dis.readDouble();
+      }
+      int[] closestFeatures = null;
+      if (dis.readBoolean()) {
+         closestFeatures = new int[numv];
+         for (int i=0; i<numv; i++) {
+            closestFeatures[i] = dis.readInt();
+         }
+      }
+      if (features != null && closestFeatures != null) {
+         for (int i=0; i<numv; i++) {
+            int idx = closestFeatures[i];
+            if (idx < 0 || idx >= features.size()) {
+               throw new IOException (
+                  "closest feature index "+idx+" at vertex "+i+
+                  " is out of range");
+            }
+         }
+         setDistancesAndFeatures (distances, features, closestFeatures, signed);
+      }
+      else {
+         setVertexDistances (distances, signed);
+      }
+   }
    
    private void updateQuadGridToWorld (VectorTransformer3d quadGridToLocal) {
       if (myTLocalToWorld == null) {
@@ -1088,51 +1286,86 @@ public class DistanceGrid extends ScalarGridBase {
          closestFeatureIdxs[i] = -1;
       }
 
-      BVFeatureQuery query = new BVFeatureQuery();
-      Point3d pnt = new Point3d();
-      Point3d near = new Point3d();
-      for (int xi = 0; xi < myNx; xi++) {
-         for (int yj = 0; yj < myNy; yj++) {
-            for (int zk = 0; zk < myNz; zk++) {
-               int vi = xyzIndicesToVertex (xi, yj, zk);
-               myGridToLocal.transformPnt (pnt, new Vector3d (xi, yj, zk));
-               myLocalToWorld.transformPnt (pnt, pnt);
-
-               boolean inside = false;
-               Face face = null;
-               if (signed) {
-                  // inside = query.isInsideOrientedMesh (mesh, pnt, -1);
-                  // face = query.getFaceForInsideOrientedTest (near, null);
-                  // if (face == null) {
-                  //    // face wasn't computed because isInsideOrientedMesh() was
-                  //    // able to determine the point was outside without it
-                  //    face = query.nearestFaceToPoint (near, null, mesh, pnt);
-                  // }
-                  InsideQuery res = query.isInsideMesh (mesh, pnt);
-                  if (res == InsideQuery.UNSURE) {
-                     System.out.println ("UNSURE");
+      int nthreads = numThreadsForVertices (numv);
+      if (nthreads > 1 && !mesh.isTriangular()) {
+         // nearest point queries on polygonal faces update face state
+         nthreads = 1;
+      }
+      if (nthreads > 1) {
+         // make sure that lazily computed mesh quantities are computed
+         // before the queries are run in parallel
+         mesh.getBVTree().getRadius();
+         mesh.getArrays();
+         mesh.isClosed();
+         for (Face face : mesh.getFaces()) {
+            face.getNormal();
+         }
+      }
+      int[] featIdxs = closestFeatureIdxs;
+      forEach (nthreads, 0, myNx, 1, (lo, hi, w) -> {
+         BVFeatureQuery query = new BVFeatureQuery();
+         Point3d pnt = new Point3d();
+         Point3d near = new Point3d();
+         for (int xi = lo; xi < hi; xi++) {
+            for (int yj = 0; yj < myNy; yj++) {
+               for (int zk = 0; zk < myNz; zk++) {
+                  int vi = xyzIndicesToVertex (xi, yj, zk);
+                  myGridToLocal.transformPnt (pnt, new Vector3d (xi, yj, zk));
+                  myLocalToWorld.transformPnt (pnt, pnt);
+
+                  boolean inside = false;
+                  Face face = null;
+                  if (signed) {
+                     InsideQuery res = query.isInsideMesh (mesh, pnt);
+                     if (res == InsideQuery.UNSURE) {
+                        System.out.println ("UNSURE");
+                     }
+                     inside = (res == InsideQuery.INSIDE);
+                     face = query.nearestFaceToPoint (near, null, mesh, pnt);
+                  }
+                  else {
+                     face = query.nearestFaceToPoint (near, null, mesh, pnt);
+                  }
+                  if (face != null) {
+                     featIdxs[vi] = face.getIndex();
+                     double d = near.distance (pnt);
+                     phi[vi] = (inside ? -d : d);
                   }
-                  inside = (res == InsideQuery.INSIDE);
-                  face = query.nearestFaceToPoint (near, null, mesh, pnt);
-               }
-               else {
-                  face = query.nearestFaceToPoint (near, null, mesh, pnt);
-               }
-               if (face != null) {
-                  closestFeatureIdxs[vi] = face.getIndex();
-                  double d = near.distance (pnt);
-                  phi[vi] = (inside ? -d : d);
-
                }
             }
          }
-      }   
+      });
       timer.stop();
       System.out.println ("BVH: " + timer.result(1));
    }
 
+   /**
+    * Returns <code>true</code> if the nearest point queries for a set of
+    * features can be safely called from multiple threads. This is true for
+    * triangular faces and vertices, whose queries do not update any internal
+    * state.
+    */
+   private boolean featuresSupportParallelQueries (Feature[] features) {
+      for (Feature feat : features) {
+         if (feat instanceof Face) {
+            if (!((Face)feat).isTriangle()) {
+               return false;
+            }
+         }
+         else if (!(feat instanceof Vertex3d)) {
+            return false;
+         }
+      }
+      return true;
+   }
+
    /** 
     * Calculates the distance field.
+    *
+    * <p>When multiple threads are used, the grid vertices are partitioned
+    * into blocks of y rows, and each block processes all the features in
+    * order, so that the distances and closest features are the same as those
+    * computed serially.
     */
    void calculatePhi (
       double[] phi, int[] closestFeatureIdxs,
@@ -1166,143 +1399,177 @@ public class DistanceGrid extends ScalarGridBase {
       
       int zIntersectCount[] = null;
       if (signed) {
+         for (Feature feature : features) {
+            if (!(feature instanceof Face)) {
+               throw new IllegalArgumentException (
+                  "Signed grid can only be created if all features are Faces");
+            }
+         }
          zIntersectCount = new int[numv];
-         for (int i = 0; i < numv; i++) {
-            zIntersectCount[i] = 0;
-         }
-      }
-      Point3d featPnt    = new Point3d();
-      Point3d gridPnt    = new Point3d();
-      Vector3i gridMin   = new Vector3i();
-      Vector3i gridMax   = new Vector3i();
-      Point3d nearPntLoc = new Point3d();
-      Point3d featPntLoc = new Point3d();
-      Vector3i hi = new Vector3i();
-      Vector3i lo = new Vector3i();
-
-      // For every feature ...
-      for (int t=0; t<features.length; ++t) {
-         // Find the vertex-aligned parallelpiped containing the feature's
-         // bounding box.
-         Feature feature = features[t];
-
-         gridMin.set (myNx+1, myNy+1, myNz+1);
-         gridMax.set (-1, -1, -1);
-         double maxz = -INF; // max, minz of the feature in grid coords
-         double minz = INF;
-         for (int i=0; i<feature.numPoints(); i++) {
-            featPnt = feature.getPoint(i);
-            
-            myGridToLocal.inverseTransformPnt (gridPnt, featPnt);
-
-            lo.x = clip((int)gridPnt.x, 0, myNx-1);
-            lo.y = clip((int)gridPnt.y, 0, myNy-1);
-            lo.z = clip((int)gridPnt.z, 0, myNz-1);
-            hi.x = clip((int)(gridPnt.x+1), 0, myNx-1);
-            hi.y = clip((int)(gridPnt.y+1), 0, myNy-1);
-            hi.z = clip((int)(gridPnt.z+1), 0, myNz-1);
-            if (gridPnt.z < minz) {
-               minz = gridPnt.z;
+         if (!RobustPreds.isInitialized()) {
+            // initialize before use by multiple threads
+            RobustPreds.initialize();
+         }
+      }
+      int nthreads = numThreadsForVertices (numv);
+      if (nthreads > 1 && !featuresSupportParallelQueries (features)) {
+         nthreads = 1;
+      }
+
+      // Find the vertex-aligned parallelpiped containing each feature's
+      // bounding box, along with the feature's z range in grid coordinates.
+      int nf = features.length;
+      int[] gridBounds = new int[6*nf];
+      double[] zbounds = new double[2*nf];
+      forEach (nthreads, 0, nf, 256, (lo, hi, w) -> {
+         Point3d gridPnt  = new Point3d();
+         Vector3i gridMin = new Vector3i();
+         Vector3i gridMax = new Vector3i();
+         Vector3i vhi = new Vector3i();
+         Vector3i vlo = new Vector3i();
+         for (int t=lo; t<hi; t++) {
+            Feature feature = features[t];
+
+            gridMin.set (myNx+1, myNy+1, myNz+1);
+            gridMax.set (-1, -1, -1);
+            double maxz = -INF; // max, minz of the feature in grid coords
+            double minz = INF;
+            for (int i=0; i<feature.numPoints(); i++) {
+               Point3d featPnt = feature.getPoint(i);
+
+               myGridToLocal.inverseTransformPnt (gridPnt, featPnt);
+
+               vlo.x = clip((int)gridPnt.x, 0, myNx-1);
+               vlo.y = clip((int)gridPnt.y, 0, myNy-1);
+               vlo.z = clip((int)gridPnt.z, 0, myNz-1);
+               vhi.x = clip((int)(gridPnt.x+1), 0, myNx-1);
+               vhi.y = clip((int)(gridPnt.y+1), 0, myNy-1);
+               vhi.z = clip((int)(gridPnt.z+1), 0, myNz-1);
+               if (gridPnt.z < minz) {
+                  minz = gridPnt.z;
+               }
+               if (gridPnt.z > maxz) {
+                  maxz = gridPnt.z;
+               }
+               vlo.updateBounds (gridMin, gridMax);
+               vhi.updateBounds (gridMin, gridMax);
             }
-            if (gridPnt.z > maxz) {
-               maxz = gridPnt.z;
+            gridBounds[6*t  ] = gridMin.x;
+            gridBounds[6*t+1] = gridMin.y;
+            gridBounds[6*t+2] = gridMin.z;
+            gridBounds[6*t+3] = gridMax.x;
+            gridBounds[6*t+4] = gridMax.y;
+            gridBounds[6*t+5] = gridMax.z;
+            zbounds[2*t  ] = minz;
+            zbounds[2*t+1] = maxz;
+         }
+      });
+
+      // For every feature, go through the parallelpiped and calculate
+      // distance and closestFeature. Each block of y rows is only updated by
+      // the worker processing it.
+      int[] featIdxs = closestFeatureIdxs;
+      int[] zcounts = zIntersectCount;
+      forEach (nthreads, 0, myNy, 4, (ylo, yhi, w) -> {
+         Point3d gridPnt    = new Point3d();
+         Point3d nearPntLoc = new Point3d();
+         Point3d featPntLoc = new Point3d();
+         Point3d bot = new Point3d();
+         Point3d top = new Point3d();
+         Point3d ipnt = new Point3d();
+         for (int t=0; t<nf; ++t) {
+            int y0 = Math.max (gridBounds[6*t+1], ylo);
+            int y1 = Math.min (gridBounds[6*t+4], yhi-1);
+            if (y0 > y1) {
+               continue;
             }
-            lo.updateBounds (gridMin, gridMax);
-            hi.updateBounds (gridMin, gridMax);
-         }
-
-         // Go through the entire parallelpiped. Calculate distance and
-         // closestFeature.
-         for (int zk = gridMin.z; zk <= gridMax.z; zk++) {
-            for (int yj = gridMin.y; yj <= gridMax.y; yj++) {
-               for (int xi = gridMin.x; xi <= gridMax.x; xi++) {
-                  // Get features coordinates
-                  featPntLoc.set (xi, yj, zk);
-                  myGridToLocal.transformPnt (featPntLoc, featPntLoc);
-                  // Get the distance from this point to the Feature.
-                  feature.nearestPoint (nearPntLoc, featPntLoc);
-                  double distance = featPntLoc.distance (nearPntLoc);
-                  int index = xyzIndicesToVertex (xi, yj, zk);
-                  if (index >= numv) {
-                     System.out.println ("coords = " +xi+" "+yj+" "+zk);
-                  }
-                  if (distance < phi[index]) {
-                     phi[index] = distance;
-                     if (closestFeatureIdxs != null) {
-                        closestFeatureIdxs [index] = t;
+            Feature feature = features[t];
+            int x0 = gridBounds[6*t];
+            int x1 = gridBounds[6*t+3];
+            for (int zk = gridBounds[6*t+2]; zk <= gridBounds[6*t+5]; zk++) {
+               for (int yj = y0; yj <= y1; yj++) {
+                  for (int xi = x0; xi <= x1; xi++) {
+                     // Get features coordinates
+                     featPntLoc.set (xi, yj, zk);
+                     myGridToLocal.transformPnt (featPntLoc, featPntLoc);
+                     // Get the distance from this point to the Feature.
+                     feature.nearestPoint (nearPntLoc, featPntLoc);
+                     double distance = featPntLoc.distance (nearPntLoc);
+                     int index = xyzIndicesToVertex (xi, yj, zk);
+                     if (distance < phi[index]) {
+                        phi[index] = distance;
+                        featIdxs[index] = t;
                      }
                   }
                }
             }
-         }
 
-         if (signed) {
-            if (!(feature instanceof Face)) {
-               throw new IllegalArgumentException (
-                  "Signed grid can only be created if all features are Faces");
+            if (signed) {
+               Face face = (Face)feature;
+               double minz = zbounds[2*t];
+               double maxz = zbounds[2*t+1];
+               // Ray-casts from bottom x-y plane, upwards, counting
+               // intersections. We're building zIntersectCount[] to use in
+               // ray casting below.
+               for (int yj = y0; yj <= y1; yj++) {
+                  for (int xi = x0; xi <= x1; xi++) {
+                     int res = 0;
+                     if (maxz >= 0) {
+                        myGridToLocal.transformPnt (
+                           bot, new Point3d (xi, yj, minz-1));
+                        myGridToLocal.transformPnt (
+                           top, new Point3d (xi, yj, maxz+1));
+
+                        res = RobustPreds.intersectSegmentTriangle (
+                           ipnt, bot, top, face, maxDist,
+                           /*worldCoords=*/false);
+                     }
+                     if (res > 0) {
+                        myGridToLocal.inverseTransformPnt (gridPnt, ipnt);
+                        int zInterval =
+                           clip((int)Math.ceil(gridPnt.z), 0, myNz-1);
+                        ++zcounts [xyzIndicesToVertex (xi, yj, zInterval)];
+                     } // point in triangle
+                  } // x
+               } // y 
             }
-            Face face = (Face)feature;
-            Point3d bot = new Point3d();
-            Point3d top = new Point3d();
-            // Ray-casts from bottom x-y plane, upwards, counting intersections.
-            // We're building intersectionCount[] to use in ray casting below.
-            for (int yj = gridMin.y; yj <= gridMax.y; yj++) {
-               for (int xi = gridMin.x; xi <= gridMax.x; xi++) {
-
-                  Point3d ipnt = new Point3d();
-                  int res = 0;
-                  if (maxz >= 0) {
-                     myGridToLocal.transformPnt (
-                        bot, new Point3d (xi, yj, minz-1));
-                     myGridToLocal.transformPnt (
-                        top, new Point3d (xi, yj, maxz+1));
-                     
-                     res = RobustPreds.intersectSegmentTriangle (
-                        ipnt, bot, top, face, maxDist, /*worldCoords=*/false);
-                  }
-                  
-                  if (res > 0) {
-                     myGridToLocal.inverseTransformPnt (gridPnt, ipnt);
-                     int zInterval = clip((int)Math.ceil(gridPnt.z), 0, myNz-1);
-                     ++zIntersectCount [xyzIndicesToVertex (xi, yj, zInterval)];
-                  } // point in triangle
-               } // x
-            } // y 
          }
-      }
+      });
 
       // Done all triangles.
       // Sweep, propagating values throughout the grid volume.
       for (int pass = 0; pass < 2; pass++) {
-         sweep(phi, +1, +1, +1, closestFeatureIdxs, features);
-         sweep(phi, -1, -1, -1, closestFeatureIdxs, features);
-         sweep(phi, +1, +1, -1, closestFeatureIdxs, features);
-         sweep(phi, -1, -1, +1, closestFeatureIdxs, features);
-         sweep(phi, +1, -1, +1, closestFeatureIdxs, features);
-         sweep(phi, -1, +1, -1, closestFeatureIdxs, features);
-         sweep(phi, +1, -1, -1, closestFeatureIdxs, features);
-         sweep(phi, -1, +1, +1, closestFeatureIdxs, features);
+         sweep(phi, +1, +1, +1, featIdxs, features, nthreads);
+         sweep(phi, -1, -1, -1, featIdxs, features, nthreads);
+         sweep(phi, +1, +1, -1, featIdxs, features, nthreads);
+         sweep(phi, -1, -1, +1, featIdxs, features, nthreads);
+         sweep(phi, +1, -1, +1, featIdxs, features, nthreads);
+         sweep(phi, -1, +1, -1, featIdxs, features, nthreads);
+         sweep(phi, +1, -1, -1, featIdxs, features, nthreads);
+         sweep(phi, -1, +1, +1, featIdxs, features, nthreads);
       }
 
       if (signed) {
          // This is a ray-casting implementation to find the sign of each
          // vertex in the grid.
-         for (int xi = 0; xi < myNx; xi++) {
-            for (int yj = 0; yj < myNy; yj++) {
-               int total_count = 0;
-               //Count the intersections of the x axis
-               for (int zk = 0; zk < myNz; zk++) {
-                  int index = xyzIndicesToVertex (xi, yj, zk);
-                  total_count += zIntersectCount [index];
-                  
-                  // If parity of intersections so far is odd, we are inside the 
-                  // mesh.
-                  if (total_count % 2 == 1) {
-                     phi[index] =- phi[index];
+         forEach (nthreads, 0, myNy, 4, (ylo, yhi, w) -> {
+            for (int xi = 0; xi < myNx; xi++) {
+               for (int yj = ylo; yj < yhi; yj++) {
+                  int total_count = 0;
+                  //Count the intersections of the x axis
+                  for (int zk = 0; zk < myNz; zk++) {
+                     int index = xyzIndicesToVertex (xi, yj, zk);
+                     total_count += zcounts [index];
+
+                     // If parity of intersections so far is odd, we are
+                     // inside the mesh.
+                     if (total_count % 2 == 1) {
+                        phi[index] =- phi[index];
+                     }
                   }
                }
             }
-         }         
+         });
       }
       //timer.stop();
       //System.out.println ("BRIDSON: " + timer.result(1));
@@ -1976,9 +2243,19 @@ public class DistanceGrid extends ScalarGridBase {
    protected void sweep (
       double[] phi, int dx, int dy, int dz, 
       int[] featIdxs, Feature[] features) {
+      sweep (phi, dx, dy, dz, featIdxs, features, 1);
+   }
 
-      Point3d pc = new Point3d();
-      Point3d p1 = new Point3d();
+   /**
+    * Sweeps across the entire grid, propagating distance values, using
+    * <code>nthreads</code> threads. Each x row depends only on the rows
+    * preceding it in y and z, and so when multiple threads are used the rows
+    * are processed as a wavefront, with the rows on each (y, z) anti-diagonal
+    * processed in parallel. This gives the same result as a serial sweep.
+    */
+   private void sweep (
+      double[] phi, int dx, int dy, int dz, 
+      int[] featIdxs, Feature[] features, int nthreads) {
 
       int x0, x1;
       if (dx > 0) {
@@ -2007,27 +2284,65 @@ public class DistanceGrid extends ScalarGridBase {
          z0 = myNz-2;
          z1 = -1;
       }
-      for (int z = z0; z != z1; z += dz) {
-         for (int y = y0; y != y1; y += dy) {
-            for (int x = x0; x != x1; x += dx) {
-               // What are the neighbours? Depending on dx,dy,dz...
-               checkNeighbouringVertex (
-                  phi, x, y, z, x-dx,    y   , z, pc, p1, features, featIdxs);
-               checkNeighbouringVertex (
-                  phi, x, y, z,    x, y-dy   , z, pc, p1, features, featIdxs);
-               checkNeighbouringVertex (
-                  phi, x, y, z, x-dx, y-dy   , z, pc, p1, features, featIdxs);
-               checkNeighbouringVertex (
-                  phi, x, y, z,    x,    y, z-dz, pc, p1, features, featIdxs);
-               checkNeighbouringVertex (
-                  phi, x, y, z, x-dx,    y, z-dz, pc, p1, features, featIdxs);
-               checkNeighbouringVertex (
-                  phi, x, y, z,    x, y-dy, z-dz, pc, p1, features, featIdxs);
-               checkNeighbouringVertex (
-                  phi, x, y, z, x-dx, y-dy, z-dz, pc, p1, features, featIdxs);
+      if (nthreads <= 1) {
+         Point3d pc = new Point3d();
+         Point3d p1 = new Point3d();
+         for (int z = z0; z != z1; z += dz) {
+            for (int y = y0; y != y1; y += dy) {
+               sweepRow (
+                  phi, x0, x1, y, z, dx, dy, dz, pc, p1, featIdxs, features);
             }
          }
       }
+      else {
+         int ny = myNy-1; // number of rows along y and z
+         int nz = myNz-1;
+         Point3d[] pcs = new Point3d[nthreads];
+         Point3d[] p1s = new Point3d[nthreads];
+         for (int i=0; i<nthreads; i++) {
+            pcs[i] = new Point3d();
+            p1s[i] = new Point3d();
+         }
+         ParallelLoop loop = getLoop (nthreads);
+         for (int d=0; d<ny+nz-1; d++) {
+            int diag = d;
+            loop.forEach (
+               Math.max (0, d-nz+1), Math.min (ny-1, d)+1, 2, (lo, hi, w) -> {
+                  for (int a=lo; a<hi; a++) {
+                     sweepRow (
+                        phi, x0, x1, y0+a*dy, z0+(diag-a)*dz, dx, dy, dz,
+                        pcs[w], p1s[w], featIdxs, features);
+                  }
+               });
+         }
+      }
+   }
+
+   /**
+    * Sweeps along a single x row of the grid, propagating distance values
+    * from neighbouring vertices.
+    */
+   private void sweepRow (
+      double[] phi, int x0, int x1, int y, int z, int dx, int dy, int dz, 
+      Point3d pc, Point3d p1, int[] featIdxs, Feature[] features) {
+
+      for (int x = x0; x != x1; x += dx) {
+         // What are the neighbours? Depending on dx,dy,dz...
+         checkNeighbouringVertex (
+            phi, x, y, z, x-dx,    y   , z, pc, p1, features, featIdxs);
+         checkNeighbouringVertex (
+            phi, x, y, z,    x, y-dy   , z, pc, p1, features, featIdxs);
+         checkNeighbouringVertex (
+            phi, x, y, z, x-dx, y-dy   , z, pc, p1, features, featIdxs);
+         checkNeighbouringVertex (
+            phi, x, y, z,    x,    y, z-dz, pc, p1, features, featIdxs);
+         checkNeighbouringVertex (
+            phi, x, y, z, x-dx,    y, z-dz, pc, p1, features, featIdxs);
+         checkNeighbouringVertex (
+            phi, x, y, z,    x, y-dy, z-dz, pc, p1, features, featIdxs);
+         checkNeighbouringVertex (
+            phi, x, y, z, x-dx, y-dy, z-dz, pc, p1, features, featIdxs);
+      }
    }
 
    /**
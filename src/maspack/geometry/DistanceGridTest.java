@@ -386,6 +386,69 @@ public class DistanceGridTest extends UnitTest {
       }
    }
 
+   private void testParallel (
+      PolygonalMesh mesh, Vector3i resolution, boolean signed,
+      DistanceMethod method) {
+      int saveMin = DistanceGrid.minParallelVertices;
+      DistanceGrid.minParallelVertices = 0;
+      try {
+         // serial and parallel computations should give identical results
+         DistanceGrid serial = new DistanceGrid (resolution);
+         serial.setNumThreads (1);
+         serial.setDistanceMethod (method);
+         serial.fitToFeatures (mesh.getFaces(), 0.1, null, 0);
+         serial.computeDistances (mesh, signed);
+         DistanceGrid parallel = new DistanceGrid (resolution);
+         parallel.setNumThreads (4);
+         parallel.setDistanceMethod (method);
+         parallel.fitToFeatures (mesh.getFaces(), 0.1, null, 0);
+         parallel.computeDistances (mesh, signed);
+         parallel.setNumThreads (1); // dispose of the threads
+         if (!parallel.epsilonEquals (serial, 0)) {
+            throw new TestException (
+               "parallel and serial distance computations differ");
+         }
+         for (int vi=0; vi<serial.numVertices(); vi++) {
+            if (serial.getClosestFeature (vi) !=
+                parallel.getClosestFeature (vi)) {
+               throw new TestException (
+                  "parallel and serial closest features differ at vertex "+vi);
+            }
+         }
+      }
+      finally {
+         DistanceGrid.minParallelVertices = saveMin;
+      }
+   }
+
+   private void testBinaryWriteRead (DistanceGrid grid, PolygonalMesh mesh) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DistanceGrid newGrid = new DistanceGrid();
+      try {
+         DataOutputStream dos = new DataOutputStream (bytes);
+         grid.writeBinary (dos);
+         dos.close();
+         newGrid.readBinary (
+            new DataInputStream (
+               new ByteArrayInputStream (bytes.toByteArray())),
+            mesh.getFaces());
+      }
+      catch (IOException e) {
+         e.printStackTrace(); 
+         throw new TestException ("exception during binary write/read test");
+      }
+      newGrid.setLocalToWorld (grid.getLocalToWorld());
+      if (!grid.epsilonEquals (newGrid, 0)) {
+         throw new TestException ("binary write/read test failed");
+      }
+      for (int vi=0; vi<grid.numVertices(); vi++) {
+         if (grid.getClosestFeature (vi) != newGrid.getClosestFeature (vi)) {
+            throw new TestException (
+               "closest feature differs after binary write/read at vertex "+vi);
+         }
+      }
+   }
+
    public void timing() {
 
       double a = 3.0;
@@ -712,6 +775,21 @@ public class DistanceGridTest extends UnitTest {
       }
 
       testScanWrite (gridT);
+      testBinaryWriteRead (grid, torus);
+
+      PolygonalMesh sphere = MeshFactory.createIcosahedralSphere (1.0, 2);
+      testParallel (
+         torus, new Vector3i (20, 20, 10), /*signed=*/true,
+         DistanceMethod.BRIDSON);
+      testParallel (
+         sphere, new Vector3i (15, 12, 17), /*signed=*/true,
+         DistanceMethod.BRIDSON);
+      testParallel (
+         sphere, new Vector3i (8, 30, 6), /*signed=*/false,
+         DistanceMethod.BRIDSON);
+      testParallel (
+         sphere, new Vector3i (10, 10, 10), /*signed=*/true,
+         DistanceMethod.BVH);
 
    }
 
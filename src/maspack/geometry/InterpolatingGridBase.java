@@ -92,6 +92,7 @@ public abstract class InterpolatingGridBase implements Renderable, Scannable {
    protected RenderObject myRob;      // render object used for rendering
    protected boolean myVertexRenderingEnabled = true;
    protected boolean myRobValid = false;
+   protected int myVersion = 0; // incremented when values or geometry change
    private static final int VECTOR_GROUP = 0; // rendering line group for vectors
    private static final int EDGE_GROUP = 1;   // rendering line group for edges
 
@@ -147,6 +148,7 @@ public abstract class InterpolatingGridBase implements Renderable, Scannable {
     */
    public void setLocalToWorld (RigidTransform3d TLW) {
       myTLocalToWorld = TLW.copy();
+      myVersion++;
       if (!TLW.isIdentity()) {
          myLocalToWorld = myTLocalToWorld;
          myHasLocalToWorld = true;
@@ -246,6 +248,7 @@ public abstract class InterpolatingGridBase implements Renderable, Scannable {
          myNy = nvy;
          myNz = nvz;
          myNxNy = myNx*myNy;  
+         myVersion++;
 
          // clear or recompute distances
          int numV = myNx*myNy*myNz;
@@ -356,6 +359,7 @@ public abstract class InterpolatingGridBase implements Renderable, Scannable {
          myGridToLocal = null;
       }
       myTCL.set (grid.myTCL);
+      myVersion++;
 
       myRadius = grid.myRadius;
 
@@ -545,6 +549,7 @@ public abstract class InterpolatingGridBase implements Renderable, Scannable {
    }
 
    protected void updateGridToLocal () {
+      myVersion++;
       Vector3d origin = new Vector3d();
       Vector3d cwidths = getCellWidths();
       origin.scale (-0.5, myWidths);
@@ -1029,6 +1034,19 @@ public abstract class InterpolatingGridBase implements Renderable, Scannable {
       }
    }
 
+   /**
+    * Returns a version number for this grid, which is incremented whenever
+    * its vertex values, resolution, widths, center, orientation, or
+    * local-to-world transform are changed. This allows quantities derived
+    * from the grid to be cached. Changes made directly to the array returned
+    * by a subclass's {@code getVertexValues()} method are not detected.
+    *
+    * @return grid version number
+    */
+   public int getVersion() {
+      return myVersion;
+   }
+
    /**
     * {@inheritDoc}
     */
@@ -1497,6 +1515,7 @@ public abstract class InterpolatingGridBase implements Renderable, Scannable {
          scaleTransformer (myGridToLocal, s);
       }
       myRobValid = false;
+      myVersion++;
    }
 
    
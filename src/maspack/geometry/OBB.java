@@ -101,6 +101,11 @@ public class OBB extends BVNode {
       center.set (myX.p);
    }
 
+   public double getSurfaceArea() {
+      Vector3d hw = myHalfWidths;
+      return 8*(hw.x*hw.y + hw.y*hw.z + hw.z*hw.x);
+   }
+
    /**
     * Sets the widths for this OBB. These are the extents of the OBB along each
     * of its principal axes.
@@ -58,6 +58,10 @@ public class OBBTree extends BVTree {
       return root;
    }
 
+   protected void setRoot (BVNode root) {
+      this.root = (OBB)root;
+   }
+
    // DBG
    public boolean debug = false;
 
@@ -130,6 +134,16 @@ public class OBBTree extends BVTree {
          elemData[i] = edata;
       }
       root = computeOBBNode (elemData, num, null);
+      recordBuildCosts (root);
+   }
+
+   protected OBB buildSubtree (Boundable[] elems, int num) {
+      ElemData[] edata = new ElemData[num];
+      for (int i = 0; i < num; i++) {
+         edata[i] = new ElemData (elems[i], i);
+         elems[i].computeCentroid (edata[i].myCentroid);
+      }
+      return computeOBBNode (edata, num, null);
    }
 
    private OBB computeOBBNode (
@@ -265,6 +279,9 @@ public class OBBTree extends BVTree {
 
    public void update() {
       updateRecursively (getRoot());
+      if (rebuildDegradedSubtrees()) {
+         numberNodes();
+      }
    }
 
 }
@@ -70,6 +70,7 @@ public class PolygonalMesh extends MeshBase {
    //private boolean bvHierarchyValid = false;
    private BVTree myBVTree = null;
    private boolean myBVTreeUpdated = false;
+   private volatile PolygonalMeshArrays myArrays = null;
    
    // topological properties
    private boolean myTopologyPredicatesValid = false;
@@ -152,6 +153,9 @@ public class PolygonalMesh extends MeshBase {
       super.notifyVertexPositionsModified();
       myFaceNormalsValid = false;
       myRenderNormalsValid = false;
+      if (myArrays != null) {
+         myArrays.invalidateCoords();
+      }
    }
 
    /** 
@@ -161,6 +165,7 @@ public class PolygonalMesh extends MeshBase {
       super.notifyStructureChanged();
       myNumHardEdges = -1;
       myTopologyPredicatesValid = false;
+      myArrays = null;
    }
 
    public static int computedFaceNormals = 0;
@@ -3096,6 +3101,7 @@ public class PolygonalMesh extends MeshBase {
       
       mesh.myBVTree = null;
       mesh.myBVTreeUpdated = false;
+      mesh.myArrays = null;
       if (sdGrid != null) {
          System.out.println (
             "Warning: mesh copy not implemented for signed distance grids");
@@ -3617,6 +3623,29 @@ public class PolygonalMesh extends MeshBase {
       myBVTree = null;
    }
 
+   /**
+    * Returns a compact array-based view of this mesh's vertex coordinates
+    * and triangle connectivity, for use by queries on large meshes. The
+    * view is created on demand, and its coordinates are updated if {@link
+    * #notifyVertexPositionsModified} has been called since it was last
+    * obtained. Before the mesh is queried by several threads at once, this
+    * method should be called once beforehand, so that the queries all see
+    * the same up-to-date view.
+    *
+    * @return array-based view of this mesh
+    */
+   public PolygonalMeshArrays getArrays() {
+      PolygonalMeshArrays arrays = myArrays;
+      if (arrays == null) {
+         arrays = new PolygonalMeshArrays (this);
+         myArrays = arrays;
+      }
+      else if (!arrays.coordsAreValid()) {
+         arrays.updateCoords();
+      }
+      return arrays;
+   }
+
    /**
     * If this mesh is triangular, returns the nearest distance to a point. This
     * method uses the default bounding volume hierarchy returned by {@link
@@ -0,0 +1,317 @@
+package maspack.geometry;
+
+import java.util.ArrayList;
+
+import maspack.matrix.Point3d;
+import maspack.matrix.Vector3d;
+
+/**
+ * Compact, array-based view of the vertex coordinates and triangle
+ * connectivity of a {@link PolygonalMesh}. Vertex coordinates are stored
+ * consecutively in a single <code>double[]</code> array, triangles as
+ * consecutive triples of vertex indices in an <code>int[]</code> array, and
+ * the adjacency between triangles as an <code>int[]</code> array of opposite
+ * half-edge links. This allows geometric queries on large meshes to proceed
+ * without traversing the mesh's {@link Vertex3d}, {@link HalfEdge} and {@link
+ * Face} objects.
+ *
+ * <p>Faces with more than three sides are divided into triangles about
+ * their first vertex, so that the triangles of a face are contiguous and
+ * the face corresponding to each triangle is given by {@link
+ * #getTriangleFaces}. If the mesh is triangular, then triangle and face
+ * indices are the same.
+ *
+ * <p>Edge <code>k</code> of triangle <code>t</code> runs from vertex
+ * <code>k</code> to vertex <code>(k+1)%3</code> of the triangle, and is
+ * identified by the half-edge index <code>3*t+k</code>. The opposite of a
+ * half-edge is the half-edge in an adjacent triangle running in the reverse
+ * direction, or -1 if there is no adjacent triangle.
+ *
+ * <p>Instances are obtained using {@link PolygonalMesh#getArrays}, which
+ * keeps them synchronized with the mesh: the coordinates are refreshed
+ * after {@link PolygonalMesh#notifyVertexPositionsModified} is called, and a
+ * new instance is created after the mesh structure changes. The arrays are
+ * in mesh coordinates, and should not be modified by the caller.
+ */
+public class PolygonalMeshArrays {
+
+   protected PolygonalMesh myMesh;
+   protected int myNumVertices;
+   protected int myNumTriangles;
+   protected volatile double[] myCoords;   // 3 values per vertex
+   protected int[] myTris;        // 3 vertex indices per triangle
+   protected int[] myTriFaces;    // face index for each triangle
+   protected int[] myOpposites;   // opposite half-edge for each half-edge
+   protected volatile boolean myCoordsValid;
+
+   /**
+    * Creates the arrays for a mesh. Applications should normally obtain
+    * these using {@link PolygonalMesh#getArrays}.
+    *
+    * @param mesh mesh for which the arrays are created
+    */
+   public PolygonalMeshArrays (PolygonalMesh mesh) {
+      myMesh = mesh;
+      buildTriangles();
+      buildOpposites();
+      updateCoords();
+   }
+
+   private void buildTriangles() {
+      ArrayList<Face> faces = myMesh.getFaces();
+      int ntris = 0;
+      for (int i=0; i<faces.size(); i++) {
+         ntris += faces.get(i).numEdges()-2;
+      }
+      myNumTriangles = ntris;
+      myTris = new int[3*ntris];
+      myTriFaces = new int[ntris];
+      int t = 0;
+      for (int i=0; i<faces.size(); i++) {
+         Face face = faces.get(i);
+         HalfEdge he0 = face.firstHalfEdge();
+         int vidx0 = he0.head.getIndex();
+         HalfEdge he = he0.next;
+         int vidx1 = he.head.getIndex();
+         he = he.next;
+         do {
+            int vidx2 = he.head.getIndex();
+            myTris[3*t  ] = vidx0;
+            myTris[3*t+1] = vidx1;
+            myTris[3*t+2] = vidx2;
+            myTriFaces[t] = i;
+            vidx1 = vidx2;
+            he = he.next;
+            t++;
+         }
+         while (he != he0);
+      }
+   }
+
+   /**
+    * Finds opposite half-edges by bucketing the half-edges according to
+    * their tail vertex, and then searching the bucket of each half-edge's
+    * head vertex for a half-edge leading back to its tail.
+    */
+   private void buildOpposites() {
+      int nverts = myMesh.numVertices();
+      int nhedges = 3*myNumTriangles;
+      myNumVertices = nverts;
+
+      int[] offsets = new int[nverts+1];
+      for (int h=0; h<nhedges; h++) {
+         offsets[myTris[h]+1]++;
+      }
+      for (int i=0; i<nverts; i++) {
+         offsets[i+1] += offsets[i];
+      }
+      int[] fill = new int[nverts];
+      int[] hedgesByTail = new int[nhedges];
+      for (int h=0; h<nhedges; h++) {
+         int tail = myTris[h];
+         hedgesByTail[offsets[tail]+fill[tail]++] = h;
+      }
+      myOpposites = new int[nhedges];
+      for (int h=0; h<nhedges; h++) {
+         int tail = myTris[h];
+         int head = myTris[nextHalfEdge(h)];
+         int opp = -1;
+         for (int j=offsets[head]; j<offsets[head+1]; j++) {
+            int g = hedgesByTail[j];
+            if (myTris[nextHalfEdge(g)] == tail) {
+               opp = g;
+               break;
+            }
+         }
+         myOpposites[h] = opp;
+      }
+   }
+
+   private static int nextHalfEdge (int h) {
+      return (h%3 == 2 ? h-2 : h+1);
+   }
+
+   /**
+    * Copies the current vertex positions into a new coordinate array, which
+    * then replaces the existing one. The existing array is not modified, so
+    * that threads still reading it do not see a mix of old and new values.
+    */
+   protected void updateCoords() {
+      ArrayList<Vertex3d> verts = myMesh.getVertices();
+      double[] coords = new double[3*myNumVertices];
+      for (int i=0; i<myNumVertices; i++) {
+         Point3d pnt = verts.get(i).pnt;
+         coords[3*i  ] = pnt.x;
+         coords[3*i+1] = pnt.y;
+         coords[3*i+2] = pnt.z;
+      }
+      myCoords = coords;
+      myCoordsValid = true;
+   }
+
+   void invalidateCoords() {
+      myCoordsValid = false;
+   }
+
+   boolean coordsAreValid() {
+      return myCoordsValid;
+   }
+
+   /**
+    * Returns the mesh associated with these arrays.
+    *
+    * @return associated mesh
+    */
+   public PolygonalMesh getMesh() {
+      return myMesh;
+   }
+
+   /**
+    * Returns the number of vertices.
+    *
+    * @return number of vertices
+    */
+   public int numVertices() {
+      return myNumVertices;
+   }
+
+   /**
+    * Returns the number of triangles.
+    *
+    * @return number of triangles
+    */
+   public int numTriangles() {
+      return myNumTriangles;
+   }
+
+   /**
+    * Queries whether each face corresponds to exactly one triangle, in which
+    * case triangle and face indices are the same.
+    *
+    * @return <code>true</code> if the mesh is triangular
+    */
+   public boolean isTriangular() {
+      return myNumTriangles == myMesh.numFaces();
+   }
+
+   /**
+    * Returns the vertex coordinates, stored as consecutive (x, y, z)
+    * triples in mesh coordinates.
+    *
+    * @return vertex coordinates. Should not be modified.
+    */
+   public double[] getCoords() {
+      return myCoords;
+   }
+
+   /**
+    * Returns the triangle vertex indices, stored as consecutive triples
+    * in counter-clockwise order.
+    *
+    * @return triangle vertex indices. Should not be modified.
+    */
+   public int[] getTriangles() {
+      return myTris;
+   }
+
+   /**
+    * Returns the index of the face associated with each triangle.
+    *
+    * @return triangle face indices. Should not be modified.
+    */
+   public int[] getTriangleFaces() {
+      return myTriFaces;
+   }
+
+   /**
+    * Returns the opposite half-edge of each half-edge, or -1 if there is
+    * none. If an edge is shared by more than two triangles, the first
+    * matching half-edge is used.
+    *
+    * @return opposite half-edge indices. Should not be modified.
+    */
+   public int[] getOpposites() {
+      return myOpposites;
+   }
+
+   /**
+    * Returns the position of a vertex, in mesh coordinates.
+    *
+    * @param pnt returns the vertex position
+    * @param vidx vertex index
+    */
+   public void getVertex (Point3d pnt, int vidx) {
+      double[] coords = myCoords;
+      pnt.set (coords[3*vidx], coords[3*vidx+1], coords[3*vidx+2]);
+   }
+
+   /**
+    * Returns the vertex positions of a triangle, in mesh coordinates.
+    *
+    * @param p0 returns the first vertex position
+    * @param p1 returns the second vertex position
+    * @param p2 returns the third vertex position
+    * @param tidx triangle index
+    */
+   public void getTriangleVertices (
+      Point3d p0, Point3d p1, Point3d p2, int tidx) {
+      getVertex (p0, myTris[3*tidx  ]);
+      getVertex (p1, myTris[3*tidx+1]);
+      getVertex (p2, myTris[3*tidx+2]);
+   }
+
+   /**
+    * Computes the centroid of a triangle, in mesh coordinates. The result is
+    * identical to that computed by {@link Face#computeCentroid} for a
+    * triangular face.
+    *
+    * @param centroid returns the centroid
+    * @param tidx triangle index
+    */
+   public void computeTriangleCentroid (Vector3d centroid, int tidx) {
+      double[] coords = myCoords;
+      int k0 = 3*myTris[3*tidx  ];
+      int k1 = 3*myTris[3*tidx+1];
+      int k2 = 3*myTris[3*tidx+2];
+      centroid.set (
+         (coords[k0  ]+coords[k1  ])+coords[k2  ],
+         (coords[k0+1]+coords[k1+1])+coords[k2+1],
+         (coords[k0+2]+coords[k1+2])+coords[k2+2]);
+      centroid.scale (1/3.0);
+   }
+
+   /**
+    * Updates minimum and maximum bounds to include a triangle.
+    *
+    * @param min minimum bounds to update
+    * @param max maximum bounds to update
+    * @param tidx triangle index
+    */
+   public void updateTriangleBounds (Vector3d min, Vector3d max, int tidx) {
+      double[] coords = myCoords;
+      for (int j=0; j<3; j++) {
+         int k = 3*myTris[3*tidx+j];
+         double x = coords[k];
+         double y = coords[k+1];
+         double z = coords[k+2];
+         if (x > max.x) {
+            max.x = x;
+         }
+         if (x < min.x) {
+            min.x = x;
+         }
+         if (y > max.y) {
+            max.y = y;
+         }
+         if (y < min.y) {
+            min.y = y;
+         }
+         if (z > max.z) {
+            max.z = z;
+         }
+         if (z < min.z) {
+            min.z = z;
+         }
+      }
+   }
+}
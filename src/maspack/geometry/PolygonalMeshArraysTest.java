@@ -0,0 +1,223 @@
+package maspack.geometry;
+
+import java.util.ArrayList;
+
+import maspack.matrix.*;
+import maspack.util.*;
+
+public class PolygonalMeshArraysTest extends UnitTest {
+
+   private int nextHalfEdge (int h) {
+      return (h%3 == 2 ? h-2 : h+1);
+   }
+
+   void checkCoords (PolygonalMeshArrays arrays, PolygonalMesh mesh) {
+      double[] coords = arrays.getCoords();
+      checkEquals ("num vertices", arrays.numVertices(), mesh.numVertices());
+      for (int i=0; i<mesh.numVertices(); i++) {
+         Point3d pnt = mesh.getVertex(i).pnt;
+         Point3d chk = new Point3d (coords[3*i], coords[3*i+1], coords[3*i+2]);
+         checkEquals ("coords for vertex "+i, chk, pnt);
+      }
+   }
+
+   void testArrays (PolygonalMesh mesh) {
+      PolygonalMeshArrays arrays = mesh.getArrays();
+      checkCoords (arrays, mesh);
+      int[] tris = arrays.getTriangles();
+      int[] triFaces = arrays.getTriangleFaces();
+      int[] opps = arrays.getOpposites();
+
+      int ntris = 0;
+      for (Face face : mesh.getFaces()) {
+         ntris += face.numVertices()-2;
+      }
+      checkEquals ("num triangles", arrays.numTriangles(), ntris);
+      checkEquals (
+         "isTriangular", arrays.isTriangular(), mesh.isTriangular());
+
+      // triangles should fan about the first vertex of each face
+      int t = 0;
+      for (Face face : mesh.getFaces()) {
+         int[] idxs = face.getVertexIndices();
+         for (int k=1; k<idxs.length-1; k++) {
+            checkEquals ("face for triangle "+t, triFaces[t], face.getIndex());
+            checkEquals ("vertex 0 of triangle "+t, tris[3*t], idxs[0]);
+            checkEquals ("vertex 1 of triangle "+t, tris[3*t+1], idxs[k]);
+            checkEquals ("vertex 2 of triangle "+t, tris[3*t+2], idxs[k+1]);
+            t++;
+         }
+      }
+
+      // opposites should run in the reverse direction, and be symmetric
+      for (int h=0; h<3*ntris; h++) {
+         int opp = opps[h];
+         if (opp != -1) {
+            checkEquals (
+               "opposite tail of half edge "+h, tris[opp], tris[nextHalfEdge(h)]);
+            checkEquals (
+               "opposite head of half edge "+h, tris[nextHalfEdge(opp)], tris[h]);
+            checkEquals ("opposite of opposite "+h, opps[opp], h);
+         }
+      }
+
+      if (mesh.isTriangular()) {
+         // opposites should match those of the mesh half edges
+         for (Face face : mesh.getFaces()) {
+            HalfEdge he = face.firstHalfEdge();
+            for (int k=0; k<3; k++) {
+               // he runs from vertex k-1 to k
+               int h = 3*face.getIndex() + (k+2)%3;
+               int check = -1;
+               if (he.opposite != null) {
+                  Face oface = he.opposite.getFace();
+                  int m = 0;
+                  HalfEdge ohe = oface.firstHalfEdge();
+                  while (ohe != he.opposite) {
+                     ohe = ohe.getNext();
+                     m++;
+                  }
+                  check = 3*oface.getIndex() + (m+2)%3;
+               }
+               checkEquals ("opposite of half edge "+h, opps[h], check);
+               he = he.getNext();
+            }
+         }
+      }
+   }
+
+   void testSync() {
+      PolygonalMesh mesh = MeshFactory.createIcosahedralSphere (1.0, 2);
+      PolygonalMeshArrays arrays = mesh.getArrays();
+      check ("arrays not reused", mesh.getArrays() == arrays);
+
+      // moving vertices should refresh the coordinates, replacing the
+      // coordinate array rather than modifying it
+      double[] coords = arrays.getCoords();
+      for (Vertex3d vtx : mesh.getVertices()) {
+         vtx.pnt.scale (2.0);
+      }
+      mesh.notifyVertexPositionsModified();
+      check ("arrays not reused after move", mesh.getArrays() == arrays);
+      check ("coordinates not replaced", arrays.getCoords() != coords);
+      checkCoords (arrays, mesh);
+
+      // changing the structure should create new arrays
+      Vertex3d v0 = mesh.addVertex (new Point3d (3, 0, 0));
+      Vertex3d v1 = mesh.addVertex (new Point3d (3, 1, 0));
+      Vertex3d v2 = mesh.addVertex (new Point3d (3, 0, 1));
+      mesh.addFace (new Vertex3d[] { v0, v1, v2 });
+      PolygonalMeshArrays newArrays = mesh.getArrays();
+      check ("arrays not recreated", newArrays != arrays);
+      checkEquals (
+         "num triangles", newArrays.numTriangles(), mesh.numFaces());
+      testArrays (mesh);
+   }
+
+   void checkTreesEqual (BVNode node, BVNode check) {
+      AABB box = (AABB)node;
+      AABB cbox = (AABB)check;
+      checkEquals ("node minimum", box.myMin, cbox.myMin);
+      checkEquals ("node maximum", box.myMax, cbox.myMax);
+      checkEquals ("num children", node.numChildren(), check.numChildren());
+      if (node.isLeaf()) {
+         Boundable[] elems = node.getElements();
+         Boundable[] celems = check.getElements();
+         checkEquals ("num elements", elems.length, celems.length);
+         for (int i=0; i<elems.length; i++) {
+            check ("element "+i+" differs", elems[i] == celems[i]);
+         }
+      }
+      else {
+         BVNode child = node.getFirstChild();
+         BVNode cchild = check.getFirstChild();
+         while (child != null) {
+            checkTreesEqual (child, cchild);
+            child = child.getNext();
+            cchild = cchild.getNext();
+         }
+      }
+   }
+
+   void testAABBTree (PolygonalMesh mesh) {
+      AABBTree tree = new AABBTree (mesh);
+      AABBTree check = new AABBTree();
+      check.setMaxLeafElements (tree.getMaxLeafElements());
+      check.setMargin (tree.getMargin());
+      check.build (mesh.getFaces());
+      checkTreesEqual (tree.getRoot(), check.getRoot());
+   }
+
+   void testQueries (PolygonalMesh mesh) {
+      RigidTransform3d X = new RigidTransform3d();
+      X.setRandom();
+      mesh.setMeshToWorld (X);
+      BVFeatureQuery query = new BVFeatureQuery();
+      Point3d near = new Point3d();
+      Point3d nearChk = new Point3d();
+      Vector2d uv = new Vector2d();
+      Vector2d uvChk = new Vector2d();
+      for (int i=0; i<100; i++) {
+         Point3d pnt = new Point3d();
+         pnt.setRandom();
+         pnt.scale (2);
+         pnt.transform (X);
+         Face face = query.nearestFaceToPoint (near, uv, mesh, pnt);
+         Face check = query.nearestFaceToPoint (
+            nearChk, uvChk, mesh.getBVTree(), pnt);
+         check ("nearest face differs", face == check);
+         checkEquals ("nearest point", near, nearChk);
+         checkEquals ("nearest uv", uv, uvChk);
+      }
+
+      PolygonalMesh mesh2 = mesh.clone();
+      RigidTransform3d X2 = new RigidTransform3d (X);
+      X2.p.add (new Vector3d (0.3, 0.2, 0.1));
+      mesh2.setMeshToWorld (X2);
+      BVIntersector intersector = new BVIntersector();
+      ArrayList<TriTriIntersection> isects =
+         new ArrayList<TriTriIntersection>();
+      ArrayList<TriTriIntersection> checks =
+         new ArrayList<TriTriIntersection>();
+      intersector.intersectMeshMesh (isects, mesh, mesh2);
+      intersector.intersectMeshMesh (
+         checks, mesh.getBVTree(), mesh2.getBVTree());
+      check ("no intersections found", isects.size() > 0);
+      checkEquals ("num intersections", isects.size(), checks.size());
+      for (int i=0; i<isects.size(); i++) {
+         TriTriIntersection isect = isects.get(i);
+         TriTriIntersection chk = checks.get(i);
+         check ("face0 differs", isect.face0 == chk.face0);
+         check ("face1 differs", isect.face1 == chk.face1);
+         checkEquals ("num points", isect.points.length, chk.points.length);
+         for (int k=0; k<isect.points.length; k++) {
+            checkEquals ("intersection point", isect.points[k], chk.points[k]);
+         }
+      }
+   }
+
+   public void test() {
+      PolygonalMesh sphere = MeshFactory.createIcosahedralSphere (1.0, 3);
+      PolygonalMesh torus = MeshFactory.createTorus (2.0, 0.5, 24, 12);
+      PolygonalMesh qbox = MeshFactory.createQuadBox (1.0, 2.0, 3.0);
+      PolygonalMesh tbox = MeshFactory.createBox (1.0, 2.0, 3.0);
+      tbox.removeFace (tbox.getFace (0)); // create an open mesh
+
+      testArrays (sphere);
+      testArrays (torus);
+      testArrays (qbox);
+      testArrays (tbox);
+      testSync();
+
+      testAABBTree (sphere);
+      testAABBTree (torus);
+      testQueries (sphere);
+      testQueries (torus);
+   }
+
+   public static void main (String[] args) {
+      PolygonalMeshArraysTest tester = new PolygonalMeshArraysTest();
+      RandomGenerator.setSeed (0x1234);
+      tester.runtest();
+   }
+}
@@ -130,7 +130,7 @@ public class RobustPreds {
       }
    }
 
-   private static boolean isInitialized() {
+   static boolean isInitialized() {
       return nativeSupportLoaded;
    }
 
@@ -83,6 +83,7 @@ public class ScalarGridBase extends InterpolatingGridBase {
       }
       myValues = Arrays.copyOf (values, numv);
       myRobValid = false;
+      myVersion++;
    }
 
    /**
@@ -111,6 +112,7 @@ public class ScalarGridBase extends InterpolatingGridBase {
       }
       myValues[vi] = value;
       myRobValid = false;
+      myVersion++;
    }
 
    /**
@@ -123,6 +125,7 @@ public class ScalarGridBase extends InterpolatingGridBase {
     */   
    public void setVertexValue (int xi, int yj, int zk, double value) {
       myValues[xyzIndicesToVertex(xi, yj, zk)] = value;
+      myVersion++;
    }
 
    /**
@@ -172,6 +175,7 @@ public class ScalarGridBase extends InterpolatingGridBase {
             myValues[i] = 0;
          }
          myRobValid = false;
+         myVersion++;
       }
    }
    
@@ -0,0 +1,876 @@
+package maspack.geometry;
+
+import maspack.concurrency.ParallelLoop;
+import maspack.geometry.BVFeatureQuery.InsideQuery;
+import maspack.matrix.Matrix3d;
+import maspack.matrix.Point3d;
+import maspack.matrix.RigidTransform3d;
+import maspack.matrix.Vector3d;
+import maspack.matrix.Vector3i;
+
+/**
+ * A narrow-band variant of {@link DistanceGrid} that stores distance values
+ * only within a band about the surface of a mesh, allowing much finer
+ * resolutions to be used for the same amount of memory.
+ *
+ * <p>The grid vertices are partitioned into cubic blocks containing {@link
+ * #BLOCK_SIZE} vertices along each axis. Blocks that may contain vertices
+ * within the band distance of the mesh surface store the exact distance for
+ * each of their vertices, while the remaining blocks store nothing. Distances
+ * for vertices in these far-field blocks are instead obtained by trilinear
+ * interpolation of a coarse grid whose vertices are spaced {@link
+ * #BLOCK_SIZE} cells apart. Blocks are also stored whenever the corners of
+ * their enclosing coarse cell do not all have the same sign, so that
+ * far-field distances always have the correct sign.
+ *
+ * <p>The grid is axis-aligned with respect to its local coordinate frame, and
+ * distances and normals are interpolated in the same way as for {@link
+ * DistanceGrid}, via {@link #getLocalDistanceAndNormal} and {@link
+ * #getLocalDistanceAndGradient}. Within the band, the results are the same as
+ * those of a {@link DistanceGrid} with the same resolution whose distances are
+ * computed using {@link DistanceGrid.DistanceMethod#BVH}.
+ */
+public class SparseDistanceGrid {
+
+   /**
+    * Value returned by distance queries for points outside the grid.
+    */
+   public static final double OUTSIDE_GRID = DistanceGrid.OUTSIDE_GRID;
+
+   private static final int BLOCK_SHIFT = 3;
+   /**
+    * Number of vertices along each axis of a storage block.
+    */
+   public static final int BLOCK_SIZE = (1 << BLOCK_SHIFT);
+   private static final int BLOCK_MASK = BLOCK_SIZE-1;
+
+   public static int DEFAULT_BAND_CELLS = 3;
+
+   // minimum number of blocks for which distances are computed in parallel
+   static int minParallelBlocks = 64;
+
+   protected int myNx; // number of vertices along x
+   protected int myNy; // number of vertices along y
+   protected int myNz; // number of vertices along z
+   protected Vector3d myWidths = new Vector3d();
+   protected Vector3d myCellWidths = new Vector3d();
+   protected Point3d myCenter = new Point3d();
+   protected Point3d myOrigin = new Point3d(); // local position of vertex 0
+   protected RigidTransform3d myTLocalToWorld = new RigidTransform3d();
+   protected boolean mySignedP;
+   protected double myBandWidth;
+
+   protected int myNbx; // number of blocks along x
+   protected int myNby; // number of blocks along y
+   protected int myNbz; // number of blocks along z
+   // distances for each block, or null for far-field blocks
+   protected double[][] myBlocks;
+   protected int myNumActiveBlocks;
+
+   protected int myNcx; // number of coarse vertices along x
+   protected int myNcy; // number of coarse vertices along y
+   protected int myNcz; // number of coarse vertices along z
+   protected double[] myCoarseValues;
+
+   private int myNumThreads = DistanceGrid.getDefaultNumThreads();
+   private ParallelLoop myLoop;
+
+   /**
+    * Creates a sparse distance grid for a triangular mesh, axis-aligned and
+    * centered on the mesh, with a uniform cell width along all axes defined
+    * so that the resolution along the maximum width axis is
+    * <code>maxRes</code>. The grid is fit in the same way as for {@link
+    * DistanceGrid#fitToFeatures(java.util.List,double,RigidTransform3d,int)
+    * DistanceGrid.fitToFeatures()}. The local coordinates of the grid are
+    * those of the mesh, and the local-to-world transform is set to the
+    * mesh-to-world transform.
+    *
+    * @param mesh triangular mesh used to compute the distances. Must be
+    * closed if <code>signed</code> is <code>true</code>.
+    * @param marginFrac fractional amount that the grid should be grown in
+    * each direction to better contain the mesh
+    * @param maxRes resolution along the longest width
+    * @param bandCells width of the band, in units of the maximum cell width,
+    * within which exact distances are stored. Values less than 2 are set to
+    * 2.
+    * @param signed if <code>true</code>, the distances are signed
+    */
+   public SparseDistanceGrid (
+      PolygonalMesh mesh, double marginFrac, int maxRes, int bandCells,
+      boolean signed) {
+      if (maxRes < 1) {
+         throw new IllegalArgumentException (
+            "maxRes is "+maxRes+"; must be at least 1");
+      }
+      Vector3d widths = new Vector3d();
+      Vector3d center = new Vector3d();
+      fitToMesh (widths, center, mesh, marginFrac);
+      double cwidth = widths.maxElement()/maxRes;
+      Vector3i resolution = new Vector3i (
+         (int)(Math.ceil(widths.x/cwidth)),
+         (int)(Math.ceil(widths.y/cwidth)),
+         (int)(Math.ceil(widths.z/cwidth)));
+      widths.set (resolution);
+      widths.scale (cwidth);
+      initGrid (widths, resolution, center);
+      computeFromMesh (mesh, bandCells, signed);
+   }
+
+   /**
+    * Creates a signed sparse distance grid for a closed triangular mesh, with
+    * a band width of {@link #DEFAULT_BAND_CELLS} cells. The grid is fit to
+    * the mesh as described for {@link
+    * #SparseDistanceGrid(PolygonalMesh,double,int,int,boolean)}.
+    *
+    * @param mesh closed triangular mesh used to compute the distances
+    * @param marginFrac fractional amount that the grid should be grown in
+    * each direction to better contain the mesh
+    * @param maxRes resolution along the longest width
+    */
+   public SparseDistanceGrid (
+      PolygonalMesh mesh, double marginFrac, int maxRes) {
+      this (mesh, marginFrac, maxRes, DEFAULT_BAND_CELLS, /*signed=*/true);
+   }
+
+   /**
+    * Creates a sparse distance grid for a triangular mesh with specified
+    * widths, resolution and center. The local coordinates of the grid are
+    * those of the mesh, and the local-to-world transform is set to the
+    * mesh-to-world transform.
+    *
+    * @param mesh triangular mesh used to compute the distances. Must be
+    * closed if <code>signed</code> is <code>true</code>.
+    * @param widths widths along the x, y and z axes
+    * @param resolution cell resolution along the x, y and z axes
+    * @param center center of the grid in local coordinates
+    * @param bandCells width of the band, in units of the maximum cell width,
+    * within which exact distances are stored. Values less than 2 are set to
+    * 2.
+    * @param signed if <code>true</code>, the distances are signed
+    */
+   public SparseDistanceGrid (
+      PolygonalMesh mesh, Vector3d widths, Vector3i resolution,
+      Point3d center, int bandCells, boolean signed) {
+      initGrid (widths, resolution, center);
+      computeFromMesh (mesh, bandCells, signed);
+   }
+
+   private void fitToMesh (
+      Vector3d widths, Vector3d center, PolygonalMesh mesh,
+      double marginFrac) {
+
+      Vector3d min = new Vector3d (
+         Double.POSITIVE_INFINITY,
+         Double.POSITIVE_INFINITY,
+         Double.POSITIVE_INFINITY);
+      Vector3d max = new Vector3d (
+         Double.NEGATIVE_INFINITY,
+         Double.NEGATIVE_INFINITY,
+         Double.NEGATIVE_INFINITY);
+      for (Vertex3d vtx : mesh.getVertices()) {
+         vtx.pnt.updateBounds (min, max);
+      }
+      widths.sub (max, min);
+      center.add (max, min);
+      center.scale (0.5);
+      double maxw = widths.maxElement();
+      if (maxw == 0) {
+         maxw = 1.0;
+      }
+      double minw = 0.05*maxw;
+      widths.x = Math.max (widths.x, minw);
+      widths.y = Math.max (widths.y, minw);
+      widths.z = Math.max (widths.z, minw);
+      widths.scale (1+2*marginFrac);
+   }
+
+   private void initGrid (
+      Vector3d widths, Vector3i resolution, Vector3d center) {
+      if (resolution.x < 1 || resolution.y < 1 || resolution.z < 1) {
+         throw new IllegalArgumentException (
+            "Resolution is "+resolution+"; must be at least 1 along each axis");
+      }
+      myNx = resolution.x+1;
+      myNy = resolution.y+1;
+      myNz = resolution.z+1;
+      myWidths.set (widths);
+      myCellWidths.set (
+         widths.x/resolution.x, widths.y/resolution.y, widths.z/resolution.z);
+      myCenter.set (center);
+      myOrigin.scaledAdd (-0.5, widths, center);
+
+      myNbx = (myNx+BLOCK_MASK) >> BLOCK_SHIFT;
+      myNby = (myNy+BLOCK_MASK) >> BLOCK_SHIFT;
+      myNbz = (myNz+BLOCK_MASK) >> BLOCK_SHIFT;
+      // the coarse grid extends one coarse cell beyond the last block
+      // vertex, so that all far-field vertices can be interpolated
+      myNcx = ((myNx-1) >> BLOCK_SHIFT) + 2;
+      myNcy = ((myNy-1) >> BLOCK_SHIFT) + 2;
+      myNcz = ((myNz-1) >> BLOCK_SHIFT) + 2;
+   }
+
+   /**
+    * Sets the number of threads used to compute distances. Setting
+    * <code>num</code> to a value {@code <=} 0 will cause the grid to use the
+    * number of available processors. The default value is given by {@link
+    * DistanceGrid#getDefaultNumThreads}.
+    *
+    * @param num number of threads to use
+    */
+   public void setNumThreads (int num) {
+      myNumThreads = num;
+      if (myLoop != null) {
+         myLoop.dispose();
+         myLoop = null;
+      }
+   }
+
+   /**
+    * Returns the number of threads used to compute distances.
+    *
+    * @return number of threads to use
+    */
+   public int getNumThreads () {
+      if (myNumThreads <= 0) {
+         return ParallelLoop.numAvailableProcessors();
+      }
+      else {
+         return myNumThreads;
+      }
+   }
+
+   private void forEach (
+      int nthreads, int lo, int hi, int grain, ParallelLoop.RangeBody body) {
+      if (nthreads > 1) {
+         if (myLoop == null) {
+            myLoop = new ParallelLoop ("SparseDistanceGrid", nthreads);
+         }
+         else {
+            myLoop.setNumThreads (nthreads);
+         }
+         myLoop.forEach (lo, hi, grain, body);
+      }
+      else if (hi > lo) {
+         body.run (lo, hi, 0);
+      }
+   }
+
+   /**
+    * Computes the distance from a local point to the mesh, using queries
+    * that are safe to run in parallel for triangular meshes.
+    */
+   private double computeDistance (
+      BVFeatureQuery query, PolygonalMesh mesh, Point3d pnt, Point3d near) {
+      Point3d wpnt = new Point3d();
+      wpnt.transform (mesh.getMeshToWorld(), pnt);
+      Face face = query.nearestFaceToPoint (near, null, mesh, wpnt);
+      double d = (face != null ? near.distance (wpnt) : 0);
+      if (mySignedP &&
+          BVFeatureQuery.isInsideMesh (mesh, wpnt) == InsideQuery.INSIDE) {
+         d = -d;
+      }
+      return d;
+   }
+
+   private void computeFromMesh (
+      PolygonalMesh mesh, int bandCells, boolean signed) {
+
+      if (!mesh.isTriangular()) {
+         throw new IllegalArgumentException ("mesh is not triangular");
+      }
+      if (signed && !mesh.isClosed()) {
+         throw new IllegalArgumentException (
+            "mesh must be closed to compute signed distances");
+      }
+      mySignedP = signed;
+      myTLocalToWorld.set (mesh.getMeshToWorld());
+      myBandWidth = Math.max (2, bandCells)*myCellWidths.maxElement();
+
+      // make sure that lazily computed mesh quantities are computed before
+      // the queries are run in parallel
+      mesh.getBVTree().getRadius();
+      mesh.getArrays();
+      for (Face face : mesh.getFaces()) {
+         face.getNormal();
+      }
+
+      // compute distances at the coarse grid vertices
+      myCoarseValues = new double[myNcx*myNcy*myNcz];
+      int nblks = myNbx*myNby*myNbz;
+      int nthreads = (nblks >= minParallelBlocks ? getNumThreads() : 1);
+      forEach (nthreads, 0, myNcz, 1, (lo, hi, w) -> {
+         BVFeatureQuery query = new BVFeatureQuery();
+         Point3d pnt = new Point3d();
+         Point3d near = new Point3d();
+         for (int k=lo; k<hi; k++) {
+            for (int j=0; j<myNcy; j++) {
+               for (int i=0; i<myNcx; i++) {
+                  getLocalVertexCoords (
+                     pnt, i << BLOCK_SHIFT, j << BLOCK_SHIFT, k << BLOCK_SHIFT);
+                  myCoarseValues[i + myNcx*(j + myNcy*k)] =
+                     computeDistance (query, mesh, pnt, near);
+               }
+            }
+         }
+      });
+
+      // activate blocks that may contain vertices within the band. Since
+      // distance is 1-Lipschitz, no vertex within a block can be closer to
+      // the surface than the distance at the block center minus the block's
+      // half-diagonal.
+      double halfDiag = 0.5*BLOCK_MASK*myCellWidths.norm();
+      myBlocks = new double[nblks][];
+      boolean[] isActive = new boolean[nblks];
+      forEach (nthreads, 0, myNbz, 1, (lo, hi, w) -> {
+         BVFeatureQuery query = new BVFeatureQuery();
+         Point3d pnt = new Point3d();
+         Point3d near = new Point3d();
+         for (int bk=lo; bk<hi; bk++) {
+            for (int bj=0; bj<myNby; bj++) {
+               for (int bi=0; bi<myNbx; bi++) {
+                  getLocalVertexCoords (
+                     pnt, bi << BLOCK_SHIFT, bj << BLOCK_SHIFT,
+                     bk << BLOCK_SHIFT);
+                  pnt.scaledAdd (0.5*BLOCK_MASK, myCellWidths);
+                  double d = computeDistance (query, mesh, pnt, near);
+                  boolean active = (Math.abs(d) - halfDiag <= myBandWidth);
+                  // far-field distances are interpolated from the corners of
+                  // the enclosing coarse cell, so activate the block if any
+                  // of these has a different sign
+                  for (int c=0; c<8 && !active; c++) {
+                     int ci = bi + (c & 1);
+                     int cj = bj + ((c >> 1) & 1);
+                     int ck = bk + ((c >> 2) & 1);
+                     if (myCoarseValues[ci + myNcx*(cj + myNcy*ck)]*d <= 0) {
+                        active = true;
+                     }
+                  }
+                  isActive[bi + myNbx*(bj + myNby*bk)] = active;
+               }
+            }
+         }
+      });
+      int[] active = new int[nblks];
+      int nactive = 0;
+      for (int b=0; b<nblks; b++) {
+         if (isActive[b]) {
+            active[nactive++] = b;
+         }
+      }
+      myNumActiveBlocks = nactive;
+
+      // compute exact distances within the active blocks
+      forEach (nthreads, 0, nactive, 4, (lo, hi, w) -> {
+         BVFeatureQuery query = new BVFeatureQuery();
+         Point3d pnt = new Point3d();
+         Point3d near = new Point3d();
+         for (int a=lo; a<hi; a++) {
+            int b = active[a];
+            int bi = b % myNbx;
+            int bj = (b / myNbx) % myNby;
+            int bk = b / (myNbx*myNby);
+            double[] vals = new double[BLOCK_SIZE*BLOCK_SIZE*BLOCK_SIZE];
+            for (int k=0; k<BLOCK_SIZE; k++) {
+               int zk = (bk << BLOCK_SHIFT) + k;
+               for (int j=0; j<BLOCK_SIZE; j++) {
+                  int yj = (bj << BLOCK_SHIFT) + j;
+                  for (int i=0; i<BLOCK_SIZE; i++) {
+                     int xi = (bi << BLOCK_SHIFT) + i;
+                     if (xi < myNx && yj < myNy && zk < myNz) {
+                        getLocalVertexCoords (pnt, xi, yj, zk);
+                        vals[blockOffset (xi, yj, zk)] =
+                           computeDistance (query, mesh, pnt, near);
+                     }
+                  }
+               }
+            }
+            myBlocks[b] = vals;
+         }
+      });
+   }
+
+   private int blockOffset (int xi, int yj, int zk) {
+      return ((((zk & BLOCK_MASK) << BLOCK_SHIFT) + (yj & BLOCK_MASK))
+              << BLOCK_SHIFT) + (xi & BLOCK_MASK);
+   }
+
+   /**
+    * Returns the local coordinates of a vertex, as specified by its x, y, z
+    * indices. The indices may exceed the grid resolution.
+    */
+   private void getLocalVertexCoords (Point3d pnt, int xi, int yj, int zk) {
+      pnt.x = myOrigin.x + xi*myCellWidths.x;
+      pnt.y = myOrigin.y + yj*myCellWidths.y;
+      pnt.z = myOrigin.z + zk*myCellWidths.z;
+   }
+
+   /**
+    * Returns the distance at a vertex, as specified by its x, y, z
+    * indices. For vertices within the band, this is the exact distance to
+    * the mesh; otherwise, it is interpolated from the coarse far-field grid.
+    *
+    * @param xi x vertex index
+    * @param yj y vertex index
+    * @param zk z vertex index
+    * @return distance at the vertex
+    */
+   public double getVertexDistance (int xi, int yj, int zk) {
+      int bi = xi >> BLOCK_SHIFT;
+      int bj = yj >> BLOCK_SHIFT;
+      int bk = zk >> BLOCK_SHIFT;
+      double[] vals = myBlocks[bi + myNbx*(bj + myNby*bk)];
+      if (vals != null) {
+         return vals[blockOffset (xi, yj, zk)];
+      }
+      // trilinear interpolation of the coarse grid
+      double dx = (xi & BLOCK_MASK)/(double)BLOCK_SIZE;
+      double dy = (yj & BLOCK_MASK)/(double)BLOCK_SIZE;
+      double dz = (zk & BLOCK_MASK)/(double)BLOCK_SIZE;
+      int c000 = bi + myNcx*(bj + myNcy*bk);
+      int ncxy = myNcx*myNcy;
+      double[] cv = myCoarseValues;
+      return
+         (1-dz)*((1-dy)*((1-dx)*cv[c000] + dx*cv[c000+1]) +
+                 dy*((1-dx)*cv[c000+myNcx] + dx*cv[c000+myNcx+1])) +
+         dz*((1-dy)*((1-dx)*cv[c000+ncxy] + dx*cv[c000+ncxy+1]) +
+             dy*((1-dx)*cv[c000+ncxy+myNcx] + dx*cv[c000+ncxy+myNcx+1]));
+   }
+
+   /**
+    * Returns <code>true</code> if the distance at a vertex is stored
+    * exactly, and not interpolated from the coarse far-field grid.
+    *
+    * @param xi x vertex index
+    * @param yj y vertex index
+    * @param zk z vertex index
+    * @return <code>true</code> if the vertex is within an active block
+    */
+   public boolean isVertexInBand (int xi, int yj, int zk) {
+      int b =
+         (xi >> BLOCK_SHIFT) +
+         myNbx*((yj >> BLOCK_SHIFT) + myNby*(zk >> BLOCK_SHIFT));
+      return myBlocks[b] != null;
+   }
+
+   /**
+    * Computes the normal at a vertex by mid-point differencing of the
+    * distances at adjacent vertices, in the same way as {@link DistanceGrid}.
+    */
+   private void computeVertexNormal (Vector3d nrm, int x, int y, int z) {
+      if (x == myNx - 1) {
+         nrm.x = getVertexDistance (x, y, z) - getVertexDistance (x-1, y, z);
+      }
+      else if (x == 0) {
+         nrm.x = getVertexDistance (x+1, y, z) - getVertexDistance (x, y, z);
+      }
+      else {
+         nrm.x = getVertexDistance (x+1, y, z) - getVertexDistance (x-1, y, z);
+         nrm.x *= 0.5;
+      }
+      if (y == myNy - 1) {
+         nrm.y = getVertexDistance (x, y, z) - getVertexDistance (x, y-1, z);
+      }
+      else if (y == 0) {
+         nrm.y = getVertexDistance (x, y+1, z) - getVertexDistance (x, y, z);
+      }
+      else {
+         nrm.y = getVertexDistance (x, y+1, z) - getVertexDistance (x, y-1, z);
+         nrm.y *= 0.5;
+      }
+      if (z == myNz - 1) {
+         nrm.z = getVertexDistance (x, y, z) - getVertexDistance (x, y, z-1);
+      }
+      else if (z == 0) {
+         nrm.z = getVertexDistance (x, y, z+1) - getVertexDistance (x, y, z);
+      }
+      else {
+         nrm.z = getVertexDistance (x, y, z+1) - getVertexDistance (x, y, z-1);
+         nrm.z *= 0.5;
+      }
+      nrm.x /= myCellWidths.x;
+      nrm.y /= myCellWidths.y;
+      nrm.z /= myCellWidths.z;
+      nrm.normalize();
+   }
+
+   /**
+    * Finds the cell containing a local point, returning the indices of its
+    * minimum vertex in <code>vidx</code> and the point's coordinates within
+    * the cell in <code>coords</code>. Returns <code>false</code> if the point
+    * is outside the grid.
+    */
+   private boolean getCellCoords (
+      Vector3i vidx, Vector3d coords, Point3d point) {
+      double gx = (point.x-myOrigin.x)/myCellWidths.x;
+      double gy = (point.y-myOrigin.y)/myCellWidths.y;
+      double gz = (point.z-myOrigin.z)/myCellWidths.z;
+      if (gx < 0 || gx > myNx-1 ||
+          gy < 0 || gy > myNy-1 ||
+          gz < 0 || gz > myNz-1) {
+         return false;
+      }
+      vidx.x = Math.min ((int)gx, myNx-2);
+      vidx.y = Math.min ((int)gy, myNy-2);
+      vidx.z = Math.min ((int)gz, myNz-2);
+      coords.x = gx - vidx.x;
+      coords.y = gy - vidx.y;
+      coords.z = gz - vidx.z;
+      return true;
+   }
+
+   /**
+    * Calculates the distance at an arbitrary point in local coordinates using
+    * multilinear interpolation of the vertex values for the grid cell
+    * containing the point. If the point lies outside the grid volume, {@link
+    * #OUTSIDE_GRID} is returned.
+    *
+    * @param point point at which to calculate the distance (local
+    * coordinates).
+    * @return interpolated distance, or <code>OUTSIDE_GRID</code>.
+    */
+   public double getLocalDistance (Point3d point) {
+      return getLocalDistanceAndGradient (null, point);
+   }
+
+   /**
+    * Calculates the distance and normal at an arbitrary point in local
+    * coordinates, as described for {@link
+    * DistanceGrid#getLocalDistanceAndNormal(Vector3d,Point3d)}.
+    * If the point lies outside the grid volume, {@link #OUTSIDE_GRID} is
+    * returned.
+    *
+    * @param norm returns the normal (local coordinates)
+    * @param point point at which to calculate the normal and distance
+    * (local coordinates).
+    * @return interpolated distance, or <code>OUTSIDE_GRID</code>.
+    */
+   public double getLocalDistanceAndNormal (Vector3d norm, Point3d point) {
+      return getLocalDistanceAndNormal (norm, null, point);
+   }
+
+   /**
+    * Calculates the distance and normal at an arbitrary point in world
+    * coordinates, as described for {@link
+    * #getLocalDistanceAndNormal(Vector3d,Point3d)}. If the point lies outside
+    * the grid volume, {@link #OUTSIDE_GRID} is returned.
+    *
+    * @param norm returns the normal (world coordinates)
+    * @param point point at which to calculate the normal and distance
+    * (world coordinates).
+    * @return interpolated distance, or <code>OUTSIDE_GRID</code>.
+    */
+   public double getWorldDistanceAndNormal (Vector3d norm, Point3d point) {
+      Point3d lpnt = new Point3d();
+      lpnt.inverseTransform (myTLocalToWorld, point);
+      double d = getLocalDistanceAndNormal (norm, null, lpnt);
+      if (norm != null && d != OUTSIDE_GRID) {
+         norm.transform (myTLocalToWorld);
+      }
+      return d;
+   }
+
+   /**
+    * Calculates the distance and normal at an arbitrary point in local
+    * coordinates, as described for {@link
+    * DistanceGrid#getLocalDistanceAndNormal(Vector3d,Matrix3d,Point3d)}. If
+    * <code>Dnrm</code> is non-<code>null</code>, the method also calculates
+    * the normal derivative. If the point lies outside the grid volume,
+    * {@link #OUTSIDE_GRID} is returned.
+    *
+    * @param norm returns the normal (local coordinates)
+    * @param Dnrm if non-null, returns the normal derivative (local
+    * coordinates)
+    * @param point point at which to calculate the normal and distance
+    * (local coordinates).
+    * @return interpolated distance, or <code>OUTSIDE_GRID</code>.
+    */
+   public double getLocalDistanceAndNormal (
+      Vector3d norm, Matrix3d Dnrm, Point3d point) {
+
+      Vector3d coords = new Vector3d();
+      Vector3i vidx = new Vector3i();
+      if (!getCellCoords (vidx, coords, point)) {
+         return OUTSIDE_GRID;
+      }
+      double dx = coords.x;
+      double dy = coords.y;
+      double dz = coords.z;
+
+      double w001z = (1-dx)*(1-dy);
+      double w011z = (1-dx)*dy;
+      double w101z = dx*(1-dy);
+      double w111z = dx*dy;
+
+      double[] w = new double[] {
+         w001z*(1-dz), w001z*dz, w011z*(1-dz), w011z*dz,
+         w101z*(1-dz), w101z*dz, w111z*(1-dz), w111z*dz };
+      double[] dvals = new double[8];
+      getCellDistances (dvals, vidx);
+      double d = 0;
+      for (int c=0; c<8; c++) {
+         d += w[c]*dvals[c];
+      }
+      if (norm == null && Dnrm == null) {
+         return d;
+      }
+      // cell vertex normals, in the order 000, 001, 010, 011, 100, ...
+      Vector3d[] n = new Vector3d[8];
+      for (int c=0; c<8; c++) {
+         n[c] = new Vector3d();
+         computeVertexNormal (
+            n[c], vidx.x+((c>>2)&1), vidx.y+((c>>1)&1), vidx.z+(c&1));
+      }
+      if (norm == null) {
+         norm = new Vector3d();
+      }
+      norm.setZero();
+      for (int c=0; c<8; c++) {
+         norm.scaledAdd (w[c], n[c]);
+      }
+      if (Dnrm != null) {
+         // derivatives of the weights with respect to dx, dy and dz
+         double w100x = (1-dy)*(1-dz);
+         double w101x = (1-dy)*dz;
+         double w110x = dy*(1-dz);
+         double w111x = dy*dz;
+
+         double w010y = (1-dx)*(1-dz);
+         double w011y = (1-dx)*dz;
+         double w110y = dx*(1-dz);
+         double w111y = dx*dz;
+
+         double[] wx = new double[] {
+            -w100x, -w101x, -w110x, -w111x, w100x, w101x, w110x, w111x };
+         double[] wy = new double[] {
+            -w010y, -w011y, w010y, w011y, -w110y, -w111y, w110y, w111y };
+         double[] wz = new double[] {
+            -w001z, w001z, -w011z, w011z, -w101z, w101z, -w111z, w111z };
+
+         Dnrm.setZero();
+         Vector3d grad = new Vector3d();
+         for (int c=0; c<8; c++) {
+            double gx = wx[c]/myCellWidths.x;
+            double gy = wy[c]/myCellWidths.y;
+            double gz = wz[c]/myCellWidths.z;
+            Dnrm.m00 += gx*n[c].x;
+            Dnrm.m01 += gy*n[c].x;
+            Dnrm.m02 += gz*n[c].x;
+            Dnrm.m10 += gx*n[c].y;
+            Dnrm.m11 += gy*n[c].y;
+            Dnrm.m12 += gz*n[c].y;
+            Dnrm.m20 += gx*n[c].z;
+            Dnrm.m21 += gy*n[c].z;
+            Dnrm.m22 += gz*n[c].z;
+            grad.x += gx*dvals[c];
+            grad.y += gy*dvals[c];
+            grad.z += gz*dvals[c];
+         }
+         Dnrm.scale (d);
+         Dnrm.addOuterProduct (norm, grad);
+      }
+      return d;
+   }
+
+   /**
+    * Collects the distances at the vertices of a cell, in the order 000,
+    * 001, 010, 011, 100, 101, 110, 111, where the digits give the x, y and z
+    * offsets.
+    */
+   private void getCellDistances (double[] dvals, Vector3i vidx) {
+      for (int c=0; c<8; c++) {
+         dvals[c] = getVertexDistance (
+            vidx.x+((c>>2)&1), vidx.y+((c>>1)&1), vidx.z+(c&1));
+      }
+   }
+
+   /**
+    * Calculates the distance and gradient at an arbitrary point in local
+    * coordinates, as described for {@link
+    * DistanceGrid#getLocalDistanceAndGradient(Vector3d,Point3d)}. If the
+    * point lies outside the grid volume, {@link #OUTSIDE_GRID} is returned.
+    *
+    * @param grad returns the gradient (local coordinates)
+    * @param point point at which to calculate the gradient and distance
+    * (local coordinates).
+    * @return interpolated distance, or <code>OUTSIDE_GRID</code>.
+    */
+   public double getLocalDistanceAndGradient (Vector3d grad, Point3d point) {
+
+      Vector3d coords = new Vector3d();
+      Vector3i vidx = new Vector3i();
+      if (!getCellCoords (vidx, coords, point)) {
+         return OUTSIDE_GRID;
+      }
+      double dx = coords.x;
+      double dy = coords.y;
+      double dz = coords.z;
+
+      double[] dvals = new double[8];
+      getCellDistances (dvals, vidx);
+      double d000 = dvals[0];
+      double d001 = dvals[1];
+      double d010 = dvals[2];
+      double d011 = dvals[3];
+      double d100 = dvals[4];
+      double d101 = dvals[5];
+      double d110 = dvals[6];
+      double d111 = dvals[7];
+
+      double w001z = (1-dx)*(1-dy);
+      double w011z = (1-dx)*dy;
+      double w101z = dx*(1-dy);
+      double w111z = dx*dy;
+
+      if (grad != null) {
+         double w100x = (1-dy)*(1-dz);
+         double w101x = (1-dy)*dz;
+         double w110x = dy*(1-dz);
+         double w111x = dy*dz;
+
+         double w010y = (1-dx)*(1-dz);
+         double w011y = (1-dx)*dz;
+         double w110y = dx*(1-dz);
+         double w111y = dx*dz;
+
+         grad.x = (-w100x*d000 - w101x*d001 - w110x*d010 - w111x*d011
+                   +w100x*d100 + w101x*d101 + w110x*d110 + w111x*d111);
+         grad.y = (-w010y*d000 - w011y*d001 + w010y*d010 + w011y*d011
+                   -w110y*d100 - w111y*d101 + w110y*d110 + w111y*d111);
+         grad.z = (-w001z*d000 + w001z*d001 - w011z*d010 + w011z*d011
+                   -w101z*d100 + w101z*d101 - w111z*d110 + w111z*d111);
+         grad.x /= myCellWidths.x;
+         grad.y /= myCellWidths.y;
+         grad.z /= myCellWidths.z;
+      }
+      return (w001z*((1-dz)*d000 + dz*d001) +
+              w011z*((1-dz)*d010 + dz*d011) +
+              w101z*((1-dz)*d100 + dz*d101) +
+              w111z*((1-dz)*d110 + dz*d111));
+   }
+
+   /**
+    * Calculates the distance and gradient at an arbitrary point in world
+    * coordinates, as described for {@link
+    * #getLocalDistanceAndGradient(Vector3d,Point3d)}. If the point lies
+    * outside the grid volume, {@link #OUTSIDE_GRID} is returned.
+    *
+    * @param grad returns the gradient (world coordinates)
+    * @param point point at which to calculate the gradient and distance
+    * (world coordinates).
+    * @return interpolated distance, or <code>OUTSIDE_GRID</code>.
+    */
+   public double getWorldDistanceAndGradient (Vector3d grad, Point3d point) {
+      Point3d lpnt = new Point3d();
+      lpnt.inverseTransform (myTLocalToWorld, point);
+      double d = getLocalDistanceAndGradient (grad, lpnt);
+      if (grad != null && d != OUTSIDE_GRID) {
+         grad.transform (myTLocalToWorld);
+      }
+      return d;
+   }
+
+   /**
+    * Returns the transform from local to world coordinates. This is
+    * initialized to the mesh-to-world transform of the mesh used to create
+    * the grid.
+    *
+    * @return local-to-world transform (should not be modified)
+    */
+   public RigidTransform3d getLocalToWorld() {
+      return myTLocalToWorld;
+   }
+
+   /**
+    * Sets the transform from local to world coordinates.
+    *
+    * @param TLW new local-to-world transform
+    */
+   public void setLocalToWorld (RigidTransform3d TLW) {
+      myTLocalToWorld.set (TLW);
+   }
+
+   /**
+    * Returns the resolution of this grid along the x, y and z axes.
+    *
+    * @return grid resolution
+    */
+   public Vector3i getResolution() {
+      return new Vector3i (myNx-1, myNy-1, myNz-1);
+   }
+
+   /**
+    * Returns the widths of this grid along the x, y and z axes.
+    *
+    * @return grid widths
+    */
+   public Vector3d getWidths() {
+      return new Vector3d (myWidths);
+   }
+
+   /**
+    * Returns the cell widths of this grid along the x, y and z axes.
+    *
+    * @return cell widths
+    */
+   public Vector3d getCellWidths() {
+      return new Vector3d (myCellWidths);
+   }
+
+   /**
+    * Returns the center of this grid in local coordinates.
+    *
+    * @return grid center
+    */
+   public Point3d getCenter() {
+      return new Point3d (myCenter);
+   }
+
+   /**
+    * Queries whether this grid is signed.
+    *
+    * @return <code>true</code> if this grid is signed.
+    */
+   public boolean isSigned() {
+      return mySignedP;
+   }
+
+   /**
+    * Returns the width of the band within which exact distances are stored.
+    *
+    * @return band width (local coordinates)
+    */
+   public double getBandWidth() {
+      return myBandWidth;
+   }
+
+   /**
+    * Returns the total number of vertices in this grid.
+    *
+    * @return number of grid vertices
+    */
+   public int numVertices() {
+      return myNx*myNy*myNz;
+   }
+
+   /**
+    * Returns the number of blocks for which exact distances are stored.
+    *
+    * @return number of active blocks
+    */
+   public int numActiveBlocks() {
+      return myNumActiveBlocks;
+   }
+
+   /**
+    * Returns the number of distance values stored by this grid, including
+    * those in the active blocks and in the coarse far-field grid. This can be
+    * compared with {@link #numVertices} to determine the memory saved with
+    * respect to a dense grid.
+    *
+    * @return number of stored distance values
+    */
+   public int numStoredValues() {
+      return (myNumActiveBlocks*BLOCK_SIZE*BLOCK_SIZE*BLOCK_SIZE +
+              myCoarseValues.length);
+   }
+}
@@ -0,0 +1,127 @@
+package maspack.geometry;
+
+import maspack.matrix.*;
+import maspack.util.*;
+import maspack.geometry.DistanceGrid.DistanceMethod;
+
+public class SparseDistanceGridTest extends UnitTest {
+
+   private Point3d randomPoint (Point3d center, Vector3d widths) {
+      Point3d p = new Point3d (
+         RandomGenerator.nextDouble (-0.5, 0.5)*widths.x,
+         RandomGenerator.nextDouble (-0.5, 0.5)*widths.y,
+         RandomGenerator.nextDouble (-0.5, 0.5)*widths.z);
+      p.add (center);
+      return p;
+   }
+
+   /**
+    * Returns true if all the vertices of the cell containing a point are
+    * within the band of the sparse grid, and those of the adjacent cells as
+    * well, so that the vertex normals are computed from exact distances.
+    */
+   private boolean cellInBand (SparseDistanceGrid sgrid, Point3d p) {
+      Vector3d cw = sgrid.getCellWidths();
+      Vector3i res = sgrid.getResolution();
+      Point3d origin = sgrid.getCenter();
+      origin.scaledAdd (-0.5, sgrid.getWidths());
+      int xi = (int)((p.x-origin.x)/cw.x);
+      int yj = (int)((p.y-origin.y)/cw.y);
+      int zk = (int)((p.z-origin.z)/cw.z);
+      for (int i=xi-1; i<=xi+2; i++) {
+         for (int j=yj-1; j<=yj+2; j++) {
+            for (int k=zk-1; k<=zk+2; k++) {
+               if (i >= 0 && i <= res.x &&
+                   j >= 0 && j <= res.y &&
+                   k >= 0 && k <= res.z &&
+                   !sgrid.isVertexInBand (i, j, k)) {
+                  return false;
+               }
+            }
+         }
+      }
+      return true;
+   }
+
+   private void testMesh (PolygonalMesh mesh, int maxRes) {
+      RigidTransform3d TMW = new RigidTransform3d();
+      TMW.setRandom();
+      mesh.setMeshToWorld (TMW);
+
+      DistanceGrid grid = new DistanceGrid (new Vector3i (1, 1, 1));
+      grid.setDistanceMethod (DistanceMethod.BVH);
+      grid.fitToFeatures (mesh.getFaces(), 0.1, null, maxRes);
+      grid.setLocalToWorld (TMW);
+      grid.computeDistances (mesh, /*signed=*/true);
+
+      Point3d center = new Point3d();
+      grid.getCenter (center);
+      Vector3d widths = grid.getWidths();
+      SparseDistanceGrid sgrid = new SparseDistanceGrid (
+         mesh, widths, grid.getResolution(), center, 3, /*signed=*/true);
+      check ("resolution differs from dense grid",
+             sgrid.getResolution().equals (grid.getResolution()));
+      check ("sparse grid has no active blocks", sgrid.numActiveBlocks() > 0);
+
+      double tol = 1e-10*widths.maxElement();
+      double diag = grid.getCellWidths().norm();
+      int nband = 0;
+      for (int i=0; i<2000; i++) {
+         Point3d p = randomPoint (center, widths);
+         Point3d pw = new Point3d();
+         pw.transform (TMW, p);
+         Vector3d nrm = new Vector3d();
+         Vector3d snrm = new Vector3d();
+         Matrix3d Dnrm = new Matrix3d();
+         Matrix3d sDnrm = new Matrix3d();
+         Vector3d grad = new Vector3d();
+         Vector3d sgrad = new Vector3d();
+         double d = grid.getLocalDistanceAndNormal (nrm, Dnrm, p);
+         double sd = sgrid.getLocalDistanceAndNormal (snrm, sDnrm, p);
+         if (cellInBand (sgrid, p)) {
+            nband++;
+            checkEquals ("distance", sd, d, tol);
+            checkEquals ("normal", snrm, nrm, 1e-8);
+            checkEquals (
+               "Dnrm", sDnrm, Dnrm, 1e-8*Math.max(1,Dnrm.infinityNorm()));
+            d = grid.getLocalDistanceAndGradient (grad, p);
+            sd = sgrid.getLocalDistanceAndGradient (sgrad, p);
+            checkEquals ("gradient distance", sd, d, tol);
+            checkEquals ("gradient", sgrad, grad, 1e-8);
+            d = grid.getWorldDistanceAndNormal (nrm, pw);
+            sd = sgrid.getWorldDistanceAndNormal (snrm, pw);
+            checkEquals ("world distance", sd, d, tol);
+            checkEquals ("world normal", snrm, nrm, 1e-8);
+         }
+         else if (Math.abs (d) > diag) {
+            // far-field distances should at least have the right sign
+            check ("far-field distance has wrong sign", sd*d > 0);
+         }
+      }
+      check ("no test points within the band", nband > 0);
+      checkEquals (
+         "outside grid",
+         sgrid.getLocalDistance (new Point3d (2*widths.maxElement(), 0, 0)),
+         SparseDistanceGrid.OUTSIDE_GRID);
+   }
+
+   private void testMemory () {
+      PolygonalMesh sphere = MeshFactory.createIcosahedralSphere (1.0, 3);
+      SparseDistanceGrid sgrid = new SparseDistanceGrid (sphere, 0.1, 128);
+      check ("sparse grid stores more than half the dense values",
+             2*sgrid.numStoredValues() < sgrid.numVertices());
+   }
+
+   public void test() {
+      testMesh (MeshFactory.createTorus (1.0, 0.5, 24, 24), 40);
+      testMesh (MeshFactory.createIcosahedralSphere (1.0, 2), 50);
+      testMesh (MeshFactory.createBox (1.0, 2.0, 0.5), 30);
+      testMemory();
+   }
+
+   public static void main (String[] args) {
+      SparseDistanceGridTest tester = new SparseDistanceGridTest();
+      RandomGenerator.setSeed (0x1234);
+      tester.runtest();
+   }
+}
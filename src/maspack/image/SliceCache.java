@@ -0,0 +1,105 @@
+package maspack.image;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least-recently-used cache of decoded image slices, for use by volume
+ * images whose data is decoded lazily from a file. Once the cache holds its
+ * maximum number of slices, adding another slice discards the one that was
+ * least recently accessed. All methods are thread-safe.
+ *
+ * @param <K> key identifying a slice
+ * @param <V> decoded slice data
+ */
+public class SliceCache<K,V> {
+
+   /**
+    * Default maximum number of slices held by a cache.
+    */
+   public static final int DEFAULT_CAPACITY = 64;
+
+   private int myCapacity;
+   private LinkedHashMap<K,V> mySlices;
+
+   /**
+    * Creates a cache with the default capacity.
+    */
+   public SliceCache() {
+      this (DEFAULT_CAPACITY);
+   }
+
+   /**
+    * Creates a cache with a specified capacity.
+    *
+    * @param capacity maximum number of slices to hold (at least 1)
+    */
+   public SliceCache (int capacity) {
+      myCapacity = Math.max (1, capacity);
+      mySlices = new LinkedHashMap<K,V> (16, 0.75f, /*accessOrder=*/true) {
+         private static final long serialVersionUID = 1L;
+         protected boolean removeEldestEntry (Map.Entry<K,V> eldest) {
+            return size() > myCapacity;
+         }
+      };
+   }
+
+   /**
+    * Returns the maximum number of slices held by this cache.
+    *
+    * @return cache capacity
+    */
+   public synchronized int getCapacity() {
+      return myCapacity;
+   }
+
+   /**
+    * Sets the maximum number of slices held by this cache, discarding the
+    * least recently used slices if necessary.
+    *
+    * @param capacity maximum number of slices to hold (at least 1)
+    */
+   public synchronized void setCapacity (int capacity) {
+      myCapacity = Math.max (1, capacity);
+      while (mySlices.size() > myCapacity) {
+         K eldest = mySlices.keySet().iterator().next();
+         mySlices.remove (eldest);
+      }
+   }
+
+   /**
+    * Returns a cached slice, marking it as the most recently used.
+    *
+    * @param key slice key
+    * @return cached slice, or {@code null} if it is not in the cache
+    */
+   public synchronized V get (K key) {
+      return mySlices.get (key);
+   }
+
+   /**
+    * Adds a slice to the cache.
+    *
+    * @param key slice key
+    * @param slice decoded slice data
+    */
+   public synchronized void put (K key, V slice) {
+      mySlices.put (key, slice);
+   }
+
+   /**
+    * Returns the number of slices currently in the cache.
+    *
+    * @return number of cached slices
+    */
+   public synchronized int size() {
+      return mySlices.size();
+   }
+
+   /**
+    * Removes all slices from the cache.
+    */
+   public synchronized void clear() {
+      mySlices.clear();
+   }
+}
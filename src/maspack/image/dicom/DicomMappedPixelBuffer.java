@@ -0,0 +1,199 @@
+package maspack.image.dicom;
+
+import java.nio.ByteBuffer;
+
+import maspack.image.SliceCache;
+import maspack.image.dicom.DicomElement.VR;
+
+/**
+ * Pixel buffer for a raw (non-encoded) frame whose data is memory-mapped from
+ * the DICOM file. The frame is only decoded when its pixels are requested,
+ * and decoded frames are held in a least-recently-used cache that is shared
+ * by all mapped buffers, so that large series can be browsed without holding
+ * every frame in memory.
+ *
+ * @see DicomReader#setMemoryMapped(boolean)
+ */
+public class DicomMappedPixelBuffer implements DicomPixelBuffer {
+
+   private static SliceCache<DicomMappedPixelBuffer,DicomPixelBuffer>
+      frameCache = new SliceCache<>(4*SliceCache.DEFAULT_CAPACITY);
+
+   DicomHeader header;
+   VR vr;
+   ByteBuffer data;
+   DicomImageDecoderRaw decoder;
+
+   // properties of the decoded frame, which are the same for all frames
+   PixelType pixelType;
+   int numPixels;
+   int numChannels;
+   boolean signed;
+   double rescaleSlope;
+   double rescaleIntercept;
+
+   // intensity range, computed on demand
+   double minIntensity = Double.NaN;
+   double maxIntensity = Double.NaN;
+
+   /**
+    * Creates a buffer for a mapped frame, decoding it once to determine its
+    * pixel properties.
+    *
+    * @param header DICOM header
+    * @param vr value representation of the data (OB or OW)
+    * @param data mapped frame data, with the transfer syntax byte order
+    * @param decoder decoder for the raw data
+    */
+   DicomMappedPixelBuffer(
+      DicomHeader header, VR vr, ByteBuffer data, DicomImageDecoderRaw decoder) {
+      this(header, vr, data, decoder, null);
+   }
+
+   /**
+    * Creates a buffer for a mapped frame, taking its pixel properties from
+    * another frame of the same file.
+    *
+    * @param header DICOM header
+    * @param vr value representation of the data (OB or OW)
+    * @param data mapped frame data, with the transfer syntax byte order
+    * @param decoder decoder for the raw data
+    * @param template frame from which to copy the pixel properties, or
+    * {@code null} if the frame should be decoded to determine them
+    */
+   DicomMappedPixelBuffer(
+      DicomHeader header, VR vr, ByteBuffer data, DicomImageDecoderRaw decoder,
+      DicomPixelBuffer template) {
+      this.header = header;
+      this.vr = vr;
+      this.data = data;
+      this.decoder = decoder;
+      if (template == null) {
+         template = getDecoded();
+      }
+      pixelType = template.getPixelType();
+      numPixels = template.getNumPixels();
+      numChannels = template.getNumChannels();
+      signed = template.isSigned();
+      rescaleSlope = template.getRescaleSlope();
+      rescaleIntercept = template.getRescaleIntercept();
+   }
+
+   /**
+    * Returns the cache of decoded frames shared by all mapped buffers. Its
+    * capacity can be adjusted to trade memory for speed.
+    *
+    * @return decoded frame cache
+    */
+   public static SliceCache<DicomMappedPixelBuffer,DicomPixelBuffer>
+      getFrameCache() {
+      return frameCache;
+   }
+
+   /**
+    * Returns the decoded frame, decoding it if it is not in the cache.
+    *
+    * @return decoded pixel buffer
+    */
+   public DicomPixelBuffer getDecoded() {
+      DicomPixelBuffer decoded = frameCache.get(this);
+      if (decoded == null) {
+         decoded = decode();
+         frameCache.put(this, decoded);
+      }
+      return decoded;
+   }
+
+   private DicomPixelBuffer decode() {
+      // duplicate so that concurrent decodes don't share a position
+      ByteBuffer buff = data.duplicate().order(data.order());
+      buff.rewind();
+      DicomPixelData pdata;
+      if (vr == VR.OW) {
+         short[] s = new short[buff.remaining()/2];
+         buff.asShortBuffer().get(s);
+         pdata = new DicomPixelData(vr, s);
+      } else {
+         byte[] b = new byte[buff.remaining()];
+         buff.get(b);
+         pdata = new DicomPixelData(vr, b);
+      }
+      return decoder.decodeFrame(header, pdata);
+   }
+
+   @Override
+   public PixelType getPixelType() {
+      return pixelType;
+   }
+
+   @Override
+   public int getNumPixels() {
+      return numPixels;
+   }
+
+   @Override
+   public boolean isSigned() {
+      return signed;
+   }
+
+   @Override
+   public int getPixels(
+      int x, int dx, int nx, PixelType type, DicomPixelInterpolator interp,
+      ByteBuffer pixels) {
+      return getDecoded().getPixels(x, dx, nx, type, interp, pixels);
+   }
+
+   @Override
+   public int getPixels(
+      int x, int dx, int nx, PixelType type, DicomPixelInterpolator interp,
+      int[] pixels, int offset) {
+      return getDecoded().getPixels(x, dx, nx, type, interp, pixels, offset);
+   }
+
+   @Override
+   public double getMaxIntensity() {
+      if (Double.isNaN(maxIntensity)) {
+         maxIntensity = getDecoded().getMaxIntensity();
+      }
+      return maxIntensity;
+   }
+
+   @Override
+   public double getMinIntensity() {
+      if (Double.isNaN(minIntensity)) {
+         minIntensity = getDecoded().getMinIntensity();
+      }
+      return minIntensity;
+   }
+
+   @Override
+   public double getRescaleSlope() {
+      return rescaleSlope;
+   }
+
+   @Override
+   public double getRescaleIntercept() {
+      return rescaleIntercept;
+   }
+
+   @Override
+   public int getValue(int x) {
+      return getDecoded().getValue(x);
+   }
+
+   @Override
+   public double getRescaledValue(int x) {
+      return getDecoded().getRescaledValue(x);
+   }
+
+   @Override
+   public int getNumChannels() {
+      return numChannels;
+   }
+
+   @Override
+   public Object getBuffer() {
+      return getDecoded().getBuffer();
+   }
+
+}
@@ -11,6 +11,10 @@ import java.io.EOFException;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
@@ -45,6 +49,11 @@ public class DicomReader {
     */
    boolean myUseConcurrent = false;
 
+   /**
+    * If true, raw pixel data is memory-mapped and decoded on demand
+    */
+   boolean myMemoryMapped = false;
+
    /**
     * List of known image decoders
     */
@@ -100,6 +109,30 @@ public class DicomReader {
       imageDecoders.add(decoder);
    }
 
+   /**
+    * Sets whether raw (non-encoded) pixel data should be memory-mapped
+    * rather than read. Mapped frames are only decoded when their pixels are
+    * accessed, and decoded frames are held in a bounded cache (see {@link
+    * DicomMappedPixelBuffer#getFrameCache()}), which reduces memory use and
+    * load time for large series. Encoded data is always read and decoded
+    * immediately. Memory mapping is disabled by default.
+    * 
+    * @param enable if true, enables memory mapping
+    */
+   public void setMemoryMapped(boolean enable) {
+      myMemoryMapped = enable;
+   }
+
+   /**
+    * Queries whether raw pixel data is memory-mapped.
+    * 
+    * @return true if memory mapping is enabled
+    * @see #setMemoryMapped(boolean)
+    */
+   public boolean isMemoryMapped() {
+      return myMemoryMapped;
+   }
+
    private class SliceReaderCallable implements Callable<DicomSlice[]> {
 
       private File file;
@@ -482,7 +515,13 @@ public class DicomReader {
 
       if (lastTagId.value == DicomTag.PIXEL_DATA) {
 
-         DicomPixelBuffer[] pixels = decodeFrames(header, in);
+         DicomPixelBuffer[] pixels = null;
+         if (myMemoryMapped) {
+            pixels = mapFrames(header, file, in);
+         }
+         if (pixels == null) {
+            pixels = decodeFrames(header, in);
+         }
          DicomSlice[] out = new DicomSlice[pixels.length];
 
          // split up into frames
@@ -1136,6 +1175,89 @@ public class DicomReader {
    //
    // }
 
+   /**
+    * Memory-maps raw pixel data, creating a lazily decoded buffer for each
+    * frame. Returns null, with the stream reset to the start of the pixel
+    * data, if the data is encoded or cannot otherwise be mapped.
+    */
+   private DicomPixelBuffer[] mapFrames(
+      DicomHeader header, File file, BinaryFileInputStream in) {
+
+      DicomTransferSyntax dts = header.getTransferSyntax();
+      if (dts == null || dts.encoded) {
+         return null;
+      }
+
+      try {
+         in.mark(in.available());
+      } catch (IOException e) {
+         return null;
+      }
+
+      try {
+         int nFrames = header.getIntValue(DicomTag.NUMBER_OF_FRAMES, 1);
+
+         // check type, as in DicomImageDecoderBase
+         VR vr = null;
+         if (!dts.explicit && dts.littleEndian) {
+            vr = VR.OW;
+         } else {
+            char c0 = in.readChar();
+            char c1 = in.readChar();
+            vr = VR.get(c0, c1);
+            in.skip(2); // reserved
+         }
+         int length = in.readInt();
+
+         // only fixed-length byte or word data can be mapped
+         if (length == 0xFFFFFFFF || nFrames < 1
+            || (vr != VR.OB && vr != VR.OW)) {
+            in.reset();
+            return null;
+         }
+
+         long offset = in.getByteCount();
+         int frameBytes = length / nFrames;
+         long size = (long)frameBytes*nFrames;
+         ByteBuffer region;
+         try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() < offset + size) {
+               in.reset();
+               return null;
+            }
+            region = raf.getChannel().map(
+               FileChannel.MapMode.READ_ONLY, offset, size);
+         }
+         ByteOrder order = 
+            in.isLittleEndian() ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+
+         DicomImageDecoderRaw decoder = new DicomImageDecoderRaw();
+         DicomPixelBuffer[] frames = new DicomPixelBuffer[nFrames];
+         DicomMappedPixelBuffer first = null;
+         for (int i = 0; i < nFrames; i++) {
+            region.limit(i*frameBytes + frameBytes);
+            region.position(i*frameBytes);
+            ByteBuffer data = region.slice().order(order);
+            if (first == null) {
+               // decodes the first frame, validating the data
+               first = new DicomMappedPixelBuffer(header, vr, data, decoder);
+               frames[i] = first;
+            } else {
+               frames[i] = 
+                  new DicomMappedPixelBuffer(header, vr, data, decoder, first);
+            }
+         }
+         return frames;
+      } catch (Exception e) {
+         try {
+            in.reset();
+         } catch (IOException re) {
+            // fall through to non-mapped decoders
+         }
+         return null;
+      }
+   }
+
    private DicomPixelBuffer[] decodeFrames(
       DicomHeader header, BinaryFileInputStream in)
       throws IOException {
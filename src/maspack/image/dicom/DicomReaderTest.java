@@ -0,0 +1,207 @@
+package maspack.image.dicom;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import maspack.util.*;
+
+/**
+ * Checks that slices read with memory mapping enabled contain the same pixel
+ * values as those that are decoded when the file is read.
+ */
+public class DicomReaderTest extends UnitTest {
+
+   static final String EXPLICIT_LE = "1.2.840.10008.1.2.1";
+   static final String EXPLICIT_BE = "1.2.840.10008.1.2.2";
+
+   /**
+    * Writes DICOM elements into a buffer using explicit value
+    * representations.
+    */
+   static class ElementWriter {
+      ByteBuffer myBuf = ByteBuffer.allocate (1 << 16);
+
+      ElementWriter (ByteOrder order) {
+         myBuf.order (order);
+      }
+
+      void setOrder (ByteOrder order) {
+         myBuf.order (order);
+      }
+
+      void putTag (int tagId, String vr) {
+         myBuf.putShort ((short)(tagId >>> 16));
+         myBuf.putShort ((short)tagId);
+         myBuf.put ((byte)vr.charAt(0));
+         myBuf.put ((byte)vr.charAt(1));
+      }
+
+      void putString (int tagId, String vr, String str, char pad) {
+         if (str.length() % 2 != 0) {
+            str += pad;
+         }
+         putTag (tagId, vr);
+         myBuf.putShort ((short)str.length());
+         myBuf.put (str.getBytes());
+      }
+
+      void putUShort (int tagId, int value) {
+         putTag (tagId, "US");
+         myBuf.putShort ((short)2);
+         myBuf.putShort ((short)value);
+      }
+
+      void putPixelData (String vr, ByteBuffer data) {
+         putTag (DicomTag.PIXEL_DATA, vr);
+         myBuf.putShort ((short)0); // reserved
+         myBuf.putInt (data.capacity());
+         myBuf.put (data.array());
+      }
+
+      void write (File file) throws IOException {
+         try (FileOutputStream fos = new FileOutputStream (file)) {
+            fos.write (new byte[128]); // preamble
+            fos.write ("DICM".getBytes());
+            fos.write (myBuf.array(), 0, myBuf.position());
+         }
+      }
+   }
+
+   /**
+    * Creates a multi-frame monochrome DICOM file with a given transfer
+    * syntax, pixel size and signedness.
+    */
+   File createFile (
+      String syntax, int nrows, int ncols, int nframes,
+      int bits, boolean signed) throws IOException {
+
+      ByteOrder order = (syntax.equals (EXPLICIT_BE) ?
+         ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+
+      // file meta information is always explicit little endian
+      ElementWriter writer = new ElementWriter (ByteOrder.LITTLE_ENDIAN);
+      writer.putString (DicomTag.TRANSFER_SYNTAX_UID, "UI", syntax, '\0');
+      writer.setOrder (order);
+      writer.putUShort (DicomTag.SAMPLES_PER_PIXEL, 1);
+      writer.putString (
+         DicomTag.PHOTOMETRIC_ITERPRETATION, "CS", "MONOCHROME2", ' ');
+      writer.putString (
+         DicomTag.NUMBER_OF_FRAMES, "IS", Integer.toString (nframes), ' ');
+      writer.putUShort (DicomTag.ROWS, nrows);
+      writer.putUShort (DicomTag.COLUMNS, ncols);
+      writer.putUShort (DicomTag.BITS_ALLOCATED, bits);
+      writer.putUShort (DicomTag.BITS_STORED, bits);
+      writer.putUShort (DicomTag.HIGH_BIT, bits-1);
+      writer.putUShort (DicomTag.PIXEL_REPRESENTATION, signed ? 1 : 0);
+      writer.putString (DicomTag.RESCALE_INTERCEPT, "DS", "-2.5", ' ');
+      writer.putString (DicomTag.RESCALE_SLOPE, "DS", "0.5", ' ');
+
+      int npix = nrows*ncols*nframes;
+      ByteBuffer data = ByteBuffer.allocate (npix*bits/8);
+      data.order (order);
+      for (int n=0; n<npix; n++) {
+         // vary both bytes of each pixel, including the sign bit
+         int value = 0x9d3b*n + 0x1234;
+         if (bits == 8) {
+            data.put ((byte)value);
+         }
+         else {
+            data.putShort ((short)value);
+         }
+      }
+      writer.putPixelData (bits == 8 ? "OB" : "OW", data);
+
+      File file = File.createTempFile ("dicomTest", ".dcm");
+      file.deleteOnExit();
+      writer.write (file);
+      return file;
+   }
+
+   DicomSlice[] readSlices (File file, boolean mapped) throws IOException {
+      DicomReader reader = new DicomReader();
+      reader.setMemoryMapped (mapped);
+      return reader.readSlices ("test", file);
+   }
+
+   void testMapped (
+      String syntax, int bits, boolean signed) throws IOException {
+
+      String msg = syntax + ", " + bits + " bits, signed=" + signed;
+      int nrows = 3;
+      int ncols = 5;
+      int nframes = 4;
+      File file = createFile (syntax, nrows, ncols, nframes, bits, signed);
+      DicomSlice[] slices = readSlices (file, /*mapped=*/true);
+      DicomSlice[] checks = readSlices (file, /*mapped=*/false);
+      checkEquals (msg + ": num slices", slices.length, nframes);
+      checkEquals (msg + ": num check slices", checks.length, nframes);
+      for (int f=0; f<nframes; f++) {
+         DicomPixelBuffer buff = slices[f].getPixelBuffer();
+         DicomPixelBuffer cbuff = checks[f].getPixelBuffer();
+         check (msg + ": frame " + f + " not mapped",
+                buff instanceof DicomMappedPixelBuffer);
+         check (msg + ": check frame " + f + " is mapped",
+                !(cbuff instanceof DicomMappedPixelBuffer));
+         checkEquals (msg + ": pixel type",
+                      buff.getPixelType(), cbuff.getPixelType());
+         checkEquals (msg + ": num pixels",
+                      buff.getNumPixels(), cbuff.getNumPixels());
+         checkEquals (msg + ": signed", buff.isSigned(), cbuff.isSigned());
+         checkEquals (msg + ": max intensity",
+                      buff.getMaxIntensity(), cbuff.getMaxIntensity());
+         checkEquals (msg + ": min intensity",
+                      buff.getMinIntensity(), cbuff.getMinIntensity());
+         for (int y=0; y<nrows; y++) {
+            for (int x=0; x<ncols; x++) {
+               int idx = y*ncols + x;
+               if (buff.getValue (idx) != cbuff.getValue (idx)) {
+                  throw new TestException (
+                     msg + ": value (" + f + "," + x + "," + y + ") is " +
+                     buff.getValue (idx) + ", expected " +
+                     cbuff.getValue (idx));
+               }
+               double val = slices[f].getPixelValue (0, x, y);
+               double chk = checks[f].getPixelValue (0, x, y);
+               if (val != chk) {
+                  throw new TestException (
+                     msg + ": pixel value (" + f + "," + x + "," + y +
+                     ") is " + val + ", expected " + chk);
+               }
+            }
+         }
+      }
+   }
+
+   void testKnownValues() throws IOException {
+      // the first pixel of each frame is known, and is not symmetric under a
+      // byte swap, so that byte order errors are detected
+      for (String syntax : new String[] { EXPLICIT_LE, EXPLICIT_BE }) {
+         File file = createFile (syntax, 2, 2, 2, 16, false);
+         DicomSlice[] slices = readSlices (file, /*mapped=*/true);
+         for (int f=0; f<slices.length; f++) {
+            int value = (0x9d3b*4*f + 0x1234) & 0xFFFF;
+            checkEquals (
+               "first pixel of frame " + f + ", " + syntax,
+               slices[f].getPixelBuffer().getValue (0), value);
+         }
+      }
+   }
+
+   public void test() throws IOException {
+      testKnownValues();
+      for (String syntax : new String[] { EXPLICIT_LE, EXPLICIT_BE }) {
+         testMapped (syntax, 8, false);
+         testMapped (syntax, 8, true);
+         testMapped (syntax, 16, false);
+         testMapped (syntax, 16, true);
+      }
+   }
+
+   public static void main (String[] args) {
+      DicomReaderTest tester = new DicomReaderTest();
+      tester.runtest();
+   }
+}
@@ -337,7 +337,7 @@ public class MappedPixelGenerator extends NiftiPixelGenerator {
    }
    
    public void detectDefault(NiftiImage image) {
-      detectDefault(image.buff);
+      detectDefault(image.getDataBuffer());
    }
    
    public void detectDefault(NiftiDataBuffer buff) {
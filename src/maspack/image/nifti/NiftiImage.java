@@ -28,6 +28,8 @@ public class NiftiImage implements VolumeImage, Clonable {
    
    // vals,x,y,z,t
    NiftiDataBuffer buff;
+   // lazily decoded data, used instead of buff if the image is memory-mapped
+   NiftiMappedData mapped;
    
    public NiftiImage(String title, String fileName) {
       this(title, new File(fileName));
@@ -48,8 +50,26 @@ public class NiftiImage implements VolumeImage, Clonable {
    public NiftiImage(String title, NiftiHeader header, NiftiDataBuffer buff) {
       setTitle(title);
       this.header = header;
-      this.buff = buff;
-      
+      this.buff = scaleData(header, buff);
+   }
+   
+   /**
+    * Creates an image whose data is memory-mapped and decoded lazily.
+    * Images of this type are normally created using {@link
+    * NiftiReader#readMapped(File)}.
+    * 
+    * @param title image title
+    * @param header image header
+    * @param data mapped image data
+    */
+   public NiftiImage(String title, NiftiHeader header, NiftiMappedData data) {
+      setTitle(title);
+      this.header = header;
+      this.buff = null;
+      this.mapped = data;
+   }
+   
+   private NiftiDataBuffer scaleData(NiftiHeader header, NiftiDataBuffer buff) {
       // maybe adjust buff to apply slope and scale?
       if (buff.getDataType() != DataType.NIFTI_TYPE_RGB24
          && header != null && header.scl_slope != 0) {
@@ -140,36 +160,29 @@ public class NiftiImage implements VolumeImage, Clonable {
             
          }
          
-         this.buff = nbuff;
+         return nbuff;
       }
+      return buff;
    }
    
    private double toUnsigned(byte d) {
-      if (d >= 0) {
-         return d;
-      }
-      return ((double)Byte.MAX_VALUE)+(double)(-d);
+      return d & 0xFF;
    }
    
    private double toUnsigned(short d) {
-      if (d >= 0) {
-         return d;
-      }
-      return ((double)Short.MAX_VALUE)+(double)(-d);
+      return d & 0xFFFF;
    }
    
    private double toUnsigned(int d) {
-      if (d >= 0) {
-         return d;
-      }
-      return ((double)Integer.MAX_VALUE)+(double)(-d);
+      return d & 0xFFFFFFFFL;
    }
    
    private double toUnsigned(long d) {
-      if (d >= 0) {
-         return d;
+      double v = d;
+      if (v < 0) {
+         v += 18446744073709551616.0; // add 2^64
       }
-      return ((double)Long.MAX_VALUE)+(double)(-d);
+      return v;
    }
    
    public void setTitle(String title) {
@@ -270,20 +283,24 @@ public class NiftiImage implements VolumeImage, Clonable {
       return (int)header.dim[1+idx];
    }
    
+   private int[] getDims() {
+      return mapped != null ? mapped.getDims() : buff.dims;
+   }
+   
    public int getNumCols() {
-      return buff.dims[0];
+      return getDims()[0];
    }
    
    public int getNumRows() {
-      return buff.dims[1];
+      return getDims()[1];
    }
    
    public int getNumSlices() {
-      return buff.dims[2];
+      return getDims()[2];
    }
    
    public int getNumTimes() {
-      return buff.dims[3];
+      return getDims()[3];
    }
    
    /**
@@ -295,14 +312,52 @@ public class NiftiImage implements VolumeImage, Clonable {
    }
    
    public int getNumValuesPerVoxel() {
-      return buff.dims[4];
+      return getDims()[4];
    }
    
    public DataType getDataType() {
+      if (mapped != null) {
+         return mapped.getDataType();
+      }
       return buff.dataType;
    }
    
-   public NiftiDataBuffer getDataBuffer() {
+   /**
+    * Queries whether the data for this image is memory-mapped and decoded
+    * lazily.
+    * 
+    * @return {@code true} if the image data is memory-mapped
+    */
+   public boolean isMapped() {
+      return mapped != null;
+   }
+   
+   /**
+    * Returns the mapped data for this image, or {@code null} if the image
+    * is not memory-mapped.
+    * 
+    * @return mapped image data
+    */
+   public NiftiMappedData getMappedData() {
+      return mapped;
+   }
+   
+   /**
+    * Returns the buffer containing the image data. If the image is
+    * memory-mapped, this reads all of the data into memory the first time
+    * it is called.
+    * 
+    * @return image data buffer
+    */
+   public synchronized NiftiDataBuffer getDataBuffer() {
+      if (buff == null) {
+         try {
+            buff = scaleData(header, mapped.readDataBuffer());
+         }
+         catch (IOException e) {
+            throw new RuntimeException("Cannot read image data", e);
+         }
+      }
       return buff;
    }
    
@@ -311,6 +366,9 @@ public class NiftiImage implements VolumeImage, Clonable {
    }
    
    public double getValue(int v, int i, int j, int k, int t) {
+      if (mapped != null) {
+         return mapped.getValue(0, v, i, j, k, t);
+      }
       int idx = buff.getIndex(v, i, j, k, t);
       switch(buff.getDataType()) {
          case DT_BINARY:
@@ -351,63 +409,63 @@ public class NiftiImage implements VolumeImage, Clonable {
    }
    
    public float getFloat32(int v, int i, int j, int k, int t) {
-      int idx = buff.getIndex(v, i, j, k, t);
-      return buff.floats[idx];
+      int idx = getDataBuffer().getIndex(v, i, j, k, t);
+      return getDataBuffer().floats[idx];
    }
    
    public double getFloat64(int v, int i, int j, int k, int t) {
-      int idx = buff.getIndex(v, i, j, k, t);
-      return buff.doubles[idx];
+      int idx = getDataBuffer().getIndex(v, i, j, k, t);
+      return getDataBuffer().doubles[idx];
    }
    
    public double getComplex128Real(int v, int i, int j, int k, int t) {
-      int idx = buff.getRealIndex(v, i, j, k, t);
-      return buff.doubles[idx];
+      int idx = getDataBuffer().getRealIndex(v, i, j, k, t);
+      return getDataBuffer().doubles[idx];
    }
    
    public double getComplex128Imaginary(int v, int i, int j, int k, int t) {
-      int idx = buff.getImaginaryIndex(v, i, j, k, t);
-      return buff.doubles[idx];
+      int idx = getDataBuffer().getImaginaryIndex(v, i, j, k, t);
+      return getDataBuffer().doubles[idx];
    }
    
    public long getInt64(int v, int i, int j, int k, int t) {
-      int idx = buff.getIndex(v, i, j, k, t);
-      return buff.longs[idx];
+      int idx = getDataBuffer().getIndex(v, i, j, k, t);
+      return getDataBuffer().longs[idx];
    }
    
    public int getInt32(int v, int i, int j, int k, int t) {
-      int idx = buff.getIndex(v, i, j, k, t);
-      return buff.ints[idx];
+      int idx = getDataBuffer().getIndex(v, i, j, k, t);
+      return getDataBuffer().ints[idx];
    }
    
    public short getInt16(int v, int i, int j, int k, int t) {
-      int idx = buff.getIndex(v, i, j, k, t);
-      return buff.shorts[idx];
+      int idx = getDataBuffer().getIndex(v, i, j, k, t);
+      return getDataBuffer().shorts[idx];
    }
    
    public byte getInt8(int v, int i, int j, int k, int t) {
-      int idx = buff.getIndex(v, i, j, k, t);
-      return buff.bytes[idx];
+      int idx = getDataBuffer().getIndex(v, i, j, k, t);
+      return getDataBuffer().bytes[idx];
    }
    
    public boolean getBinary(int v, int i, int j, int k, int t) {
-      int idx = buff.getIndex(v, i, j, k, t);
-      return buff.bools[idx];
+      int idx = getDataBuffer().getIndex(v, i, j, k, t);
+      return getDataBuffer().bools[idx];
    }
    
    public byte getRed(int v, int i, int j, int k, int t) {
-      int idx = buff.getRedIndex(v, i, j, k, t);
-      return buff.bytes[idx];
+      int idx = getDataBuffer().getRedIndex(v, i, j, k, t);
+      return getDataBuffer().bytes[idx];
    }
    
    public byte getGreen(int v, int i, int j, int k, int t) {
-      int idx = buff.getGreenIndex(v, i, j, k, t);
-      return buff.bytes[idx];
+      int idx = getDataBuffer().getGreenIndex(v, i, j, k, t);
+      return getDataBuffer().bytes[idx];
    }
    
    public byte getBlue(int v, int i, int j, int k, int t) {
-      int idx = buff.getBlueIndex(v, i, j, k, t);
-      return buff.bytes[idx];
+      int idx = getDataBuffer().getBlueIndex(v, i, j, k, t);
+      return getDataBuffer().bytes[idx];
    }
 
    /**
@@ -420,8 +478,8 @@ public class NiftiImage implements VolumeImage, Clonable {
       ByteBuffer pixels) {
 
       int offset = pixels.position();
-      voxelator.getPixels(buff, i, di, ni, j, dj, nj, k, dk, nk, t, scanline,
-         pageline, pixels);
+      voxelator.getPixels(getDataBuffer(), i, di, ni, j, dj, nj, k, dk, nk, t,
+         scanline, pageline, pixels);
       return pixels.position()-offset;
    }
    
@@ -429,7 +487,9 @@ public class NiftiImage implements VolumeImage, Clonable {
       try {
          NiftiImage copy = (NiftiImage)super.clone();
          copy.header = header.clone();
-         copy.buff = buff.clone();
+         if (buff != null) {
+            copy.buff = buff.clone();
+         }
          return copy;
       }
       catch (CloneNotSupportedException e) {
@@ -440,13 +500,21 @@ public class NiftiImage implements VolumeImage, Clonable {
 
    @Override
    public double getValue (int channel, int col, int row, int slice) {
+      if (mapped != null) {
+         int v = channel / mapped.getNumEntitiesPerValue ();
+         int e = channel % mapped.getNumEntitiesPerValue ();
+         return mapped.getValue (e, v, col, row, slice, 0);
+      }
       int v = channel / buff.getNumEntitiesPerValue ();
       int e = channel % buff.getNumEntitiesPerValue ();
-      return buff.getValue (v, e, col, row, slice, 0);
+      return buff.getValue (e, v, col, row, slice, 0);
    }
 
    @Override
    public int getNumChannels () {
+      if (mapped != null) {
+         return getNumValuesPerVoxel ()*mapped.getNumEntitiesPerValue ();
+      }
       return buff.getNumValuesPerVoxel ()*buff.getNumEntitiesPerValue ();
    }
 }
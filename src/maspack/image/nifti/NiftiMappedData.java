@@ -0,0 +1,318 @@
+package maspack.image.nifti;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import maspack.image.SliceCache;
+import maspack.image.nifti.NiftiHeader.DataType;
+import maspack.util.BinaryInputStream;
+
+/**
+ * Memory-mapped, lazily decoded voxel data for an uncompressed NIfTI image.
+ * The voxel data in the file is mapped into memory rather than read, and
+ * individual slices (all columns and rows for a given value, time and slice
+ * index) are decoded into <code>double</code> arrays only when a voxel in
+ * them is requested. Decoded slices are kept in a least-recently-used {@link
+ * SliceCache}, so that only a bounded amount of heap is used regardless of
+ * the size of the image.
+ *
+ * <p>If the header specifies a nonzero <code>scl_slope</code>, decoded
+ * values are scaled as in {@link NiftiImage}, except for RGB data.
+ */
+public class NiftiMappedData {
+
+   // maximum size of each mapped region of the file
+   private static final long MAX_CHUNK_SIZE = (1L << 30);
+
+   File myFile;
+   long myOffset;
+   boolean myLittleEndian;
+   DataType myDataType;
+   int[] myDims;             // x,y,z,t,v
+   int myEntitiesPerValue;   // e.g., 2 for complex, 3 for RGB
+   int myEntityBytes;        // bytes per entity
+   int mySliceBytes;         // bytes per slice in the file
+   int mySlicesPerChunk;
+   MappedByteBuffer[] myChunks;
+
+   boolean myScaled;
+   double mySlope;
+   double myInter;
+
+   SliceCache<Integer,double[]> mySliceCache;
+
+   /**
+    * Queries whether data of a given type can be memory-mapped. Bit-packed
+    * binary data and 128-bit floating point data cannot.
+    *
+    * @param type data type
+    * @return {@code true} if data of this type can be mapped
+    */
+   public static boolean isSupported (DataType type) {
+      return getEntityBytes (type) > 0;
+   }
+
+   private static int getEntityBytes (DataType type) {
+      switch (type) {
+         case NIFTI_TYPE_INT8:
+         case NIFTI_TYPE_UINT8:
+         case NIFTI_TYPE_RGB24:
+            return 1;
+         case NIFTI_TYPE_INT16:
+         case NIFTI_TYPE_UINT16:
+            return 2;
+         case NIFTI_TYPE_INT32:
+         case NIFTI_TYPE_UINT32:
+         case NIFTI_TYPE_FLOAT32:
+         case NIFTI_TYPE_COMPLEX64:
+            return 4;
+         case NIFTI_TYPE_INT64:
+         case NIFTI_TYPE_UINT64:
+         case NIFTI_TYPE_FLOAT64:
+         case NIFTI_TYPE_COMPLEX128:
+            return 8;
+         default:
+            return 0;
+      }
+   }
+
+   /**
+    * Maps the voxel data for an image.
+    *
+    * @param file file containing the voxel data
+    * @param offset byte offset of the voxel data within the file
+    * @param header image header, supplying the data type and scaling
+    * @param dims image dimensions, in the order x, y, z, t, v
+    * @param littleEndian {@code true} if the data is stored in
+    * little-endian byte order. This is the byte order detected when
+    * reading the header.
+    * @throws IOException if the data type is not supported, or the file
+    * cannot be mapped
+    */
+   public NiftiMappedData (
+      File file, long offset, NiftiHeader header, int[] dims,
+      boolean littleEndian)
+      throws IOException {
+
+      myFile = file;
+      myOffset = offset;
+      myLittleEndian = littleEndian;
+      myDataType = header.datatype;
+      myDims = new int[5];
+      for (int i=0; i<5; ++i) {
+         myDims[i] = dims[i];
+      }
+      myEntityBytes = getEntityBytes (myDataType);
+      if (myEntityBytes == 0) {
+         throw new IOException (
+            "Cannot memory-map data of type " + myDataType);
+      }
+      if (myDataType == DataType.NIFTI_TYPE_RGB24) {
+         myEntitiesPerValue = 3;
+      }
+      else if (myDataType.isComplex()) {
+         myEntitiesPerValue = 2;
+      }
+      else {
+         myEntitiesPerValue = 1;
+      }
+      myScaled =
+         (myDataType != DataType.NIFTI_TYPE_RGB24 && header.scl_slope != 0);
+      mySlope = header.scl_slope;
+      myInter = header.scl_inter;
+
+      long sliceBytes =
+         (long)myDims[0]*myDims[1]*myEntitiesPerValue*myEntityBytes;
+      if (sliceBytes > MAX_CHUNK_SIZE) {
+         throw new IOException (
+            "Slice size " + sliceBytes + " too large to memory-map");
+      }
+      mySliceBytes = (int)Math.max (1, sliceBytes);
+      int nslices = numFileSlices();
+      long size = sliceBytes*nslices;
+      mySlicesPerChunk = (int)(MAX_CHUNK_SIZE/mySliceBytes);
+      int nchunks = (nslices+mySlicesPerChunk-1)/mySlicesPerChunk;
+      myChunks = new MappedByteBuffer[nchunks];
+      ByteOrder order =
+         (littleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+      try (RandomAccessFile raf = new RandomAccessFile (file, "r")) {
+         if (raf.length() < offset+size) {
+            throw new IOException (
+               "File " + file + " too short: expected " + (offset+size) +
+               " bytes, found " + raf.length());
+         }
+         FileChannel channel = raf.getChannel();
+         for (int c=0; c<nchunks; c++) {
+            long start = (long)c*mySlicesPerChunk*mySliceBytes;
+            long len = Math.min (
+               (long)mySlicesPerChunk*mySliceBytes, size-start);
+            myChunks[c] = channel.map (
+               FileChannel.MapMode.READ_ONLY, offset+start, len);
+            myChunks[c].order (order);
+         }
+      }
+      mySliceCache = new SliceCache<>();
+   }
+
+   private int numFileSlices() {
+      return myDims[2]*myDims[3]*myDims[4];
+   }
+
+   /**
+    * Returns the data type of the decoded values. This is
+    * <code>NIFTI_TYPE_FLOAT64</code> (or <code>NIFTI_TYPE_COMPLEX128</code>)
+    * if the values are scaled, and the file's data type otherwise.
+    *
+    * @return decoded data type
+    */
+   public DataType getDataType() {
+      if (myScaled) {
+         return (myDataType.isComplex() ?
+                 DataType.NIFTI_TYPE_COMPLEX128 : DataType.NIFTI_TYPE_FLOAT64);
+      }
+      return myDataType;
+   }
+
+   /**
+    * Returns the image dimensions, in the order x, y, z, t, v.
+    *
+    * @return image dimensions. Should not be modified.
+    */
+   public int[] getDims() {
+      return myDims;
+   }
+
+   /**
+    * Returns the number of entities that make up a value, such as 2 for
+    * complex numbers and 3 for RGB.
+    *
+    * @return value size
+    */
+   public int getNumEntitiesPerValue() {
+      return myEntitiesPerValue;
+   }
+
+   /**
+    * Returns the cache holding the decoded slices. Its capacity can be
+    * adjusted to trade memory for speed.
+    *
+    * @return decoded slice cache
+    */
+   public SliceCache<Integer,double[]> getSliceCache() {
+      return mySliceCache;
+   }
+
+   /**
+    * Gets a value from the image.
+    *
+    * @param e entity within value
+    * @param v value index
+    * @param i column index
+    * @param j row index
+    * @param k slice index
+    * @param t time index
+    * @return value
+    */
+   public double getValue (int e, int v, int i, int j, int k, int t) {
+      double[] slice = getSlice (v, t, k);
+      return slice[(j*myDims[0]+i)*myEntitiesPerValue+e];
+   }
+
+   /**
+    * Returns the decoded values for a given value, time and slice index,
+    * decoding them if they are not in the cache. Values are stored with
+    * the entity index varying fastest, then the column, and then the row.
+    *
+    * @param v value index
+    * @param t time index
+    * @param k slice index
+    * @return decoded slice. Should not be modified.
+    */
+   public double[] getSlice (int v, int t, int k) {
+      int sidx = (v*myDims[3] + t)*myDims[2] + k;
+      double[] slice = mySliceCache.get (sidx);
+      if (slice == null) {
+         slice = decodeSlice (sidx);
+         mySliceCache.put (sidx, slice);
+      }
+      return slice;
+   }
+
+   private double[] decodeSlice (int sidx) {
+      MappedByteBuffer chunk = myChunks[sidx/mySlicesPerChunk];
+      int pos = (sidx%mySlicesPerChunk)*mySliceBytes;
+      int n = myDims[0]*myDims[1]*myEntitiesPerValue;
+      double[] slice = new double[n];
+      // absolute gets are used, since chunks are shared between threads
+      for (int m=0; m<n; m++) {
+         slice[m] = decodeEntity (chunk, pos);
+         pos += myEntityBytes;
+      }
+      if (myScaled) {
+         for (int m=0; m<n; m++) {
+            slice[m] = myInter + mySlope*slice[m];
+         }
+      }
+      return slice;
+   }
+
+   private double decodeEntity (MappedByteBuffer buf, int pos) {
+      switch (myDataType) {
+         case NIFTI_TYPE_INT8:
+            return buf.get (pos);
+         case NIFTI_TYPE_UINT8:
+         case NIFTI_TYPE_RGB24:
+            return buf.get (pos) & 0xFF;
+         case NIFTI_TYPE_INT16:
+            return buf.getShort (pos);
+         case NIFTI_TYPE_UINT16:
+            return buf.getShort (pos) & 0xFFFF;
+         case NIFTI_TYPE_INT32:
+            return buf.getInt (pos);
+         case NIFTI_TYPE_UINT32:
+            return buf.getInt (pos) & 0xFFFFFFFFL;
+         case NIFTI_TYPE_INT64:
+            return buf.getLong (pos);
+         case NIFTI_TYPE_UINT64: {
+            double v = buf.getLong (pos);
+            if (v < 0) {
+               v += 18446744073709551616.0; // add 2^64
+            }
+            return v;
+         }
+         case NIFTI_TYPE_FLOAT32:
+         case NIFTI_TYPE_COMPLEX64:
+            return buf.getFloat (pos);
+         case NIFTI_TYPE_FLOAT64:
+         case NIFTI_TYPE_COMPLEX128:
+            return buf.getDouble (pos);
+         default:
+            return 0;
+      }
+   }
+
+   /**
+    * Reads all of the voxel data into an unscaled, on-heap data buffer.
+    *
+    * @return data buffer containing the entire image
+    * @throws IOException if the data cannot be read
+    */
+   public NiftiDataBuffer readDataBuffer() throws IOException {
+      BinaryInputStream bis = new BinaryInputStream (
+         new BufferedInputStream (new FileInputStream (myFile)));
+      bis.setLittleEndian (myLittleEndian);
+      try {
+         bis.skip (myOffset);
+         return NiftiReader.readData (bis, myDims, myDataType);
+      }
+      finally {
+         bis.close();
+      }
+   }
+}
@@ -41,36 +41,12 @@ public class NiftiReader {
       bhdr.setLittleEndian(true);
       
       NiftiHeader header = null;
-      int dims[] = new int[5];
+      int dims[] = null;
       
       try {
          header = readHeader(bhdr);
          header.extensions = readExtensions(bhdr);
-         
-         long ndims = header.dim[0];
-         
-         if (ndims == 3) {
-            // single output, no time
-            dims[0] = (int)header.dim[1];
-            dims[1] = (int)header.dim[2];
-            dims[2] = (int)header.dim[3];
-            dims[3] = 1;
-            dims[4] = 1;
-         } else if (ndims == 4) {
-            // no time
-            dims[0] = (int)header.dim[1];
-            dims[1] = (int)header.dim[2];
-            dims[2] = (int)header.dim[3];
-            dims[3] = 1;
-            dims[4] = (int)header.dim[4];
-         } else {
-            dims[0] = (int)header.dim[1];
-            dims[1] = (int)header.dim[2];
-            dims[2] = (int)header.dim[3];
-            dims[3] = (int)header.dim[4];
-            dims[4] = (int)header.dim[5];
-         }
-         
+         dims = getDataDims(header);
       } catch (IOException ioe) {
          throw ioe;
       } finally {
@@ -78,7 +54,8 @@ public class NiftiReader {
       }
       
       BinaryInputStream bimg = new BinaryInputStream(new BufferedInputStream(new FileInputStream(img)));
-      bimg.setLittleEndian (true);
+      // image data has the same byte order as the header
+      bimg.setLittleEndian (bhdr.isLittleEndian());
       
       try {
          NiftiDataBuffer buff = readData(bimg, dims, header.datatype);
@@ -102,30 +79,7 @@ public class NiftiReader {
          NiftiHeader header = readHeader(bis);
          header.extensions = readExtensions(bis);
          
-         int dims[] = new int[5];
-         long ndims = header.dim[0];
-         
-         if (ndims == 3) {
-            // single output, no time
-            dims[0] = (int)header.dim[1];
-            dims[1] = (int)header.dim[2];
-            dims[2] = (int)header.dim[3];
-            dims[3] = 1;
-            dims[4] = 1;
-         } else if (ndims == 4) {
-            // no time
-            dims[0] = (int)header.dim[1];
-            dims[1] = (int)header.dim[2];
-            dims[2] = (int)header.dim[3];
-            dims[3] = 1;
-            dims[4] = (int)header.dim[4];
-         } else {
-            dims[0] = (int)header.dim[1];
-            dims[1] = (int)header.dim[2];
-            dims[2] = (int)header.dim[3];
-            dims[3] = (int)header.dim[4];
-            dims[4] = (int)header.dim[5];
-         }
+         int dims[] = getDataDims(header);
          
          bis = advanceToOffset(bis, file, header.vox_offset);
          
@@ -141,6 +95,103 @@ public class NiftiReader {
       
    }
    
+   /**
+    * Nifti V1 or Analyze 7.5 format with separate header and image files,
+    * with the image data memory-mapped and decoded lazily. See {@link
+    * #readMapped(File)}.
+    * 
+    * @param hdr header file
+    * @param img image file
+    * @return resulting image
+    * @throws IOException on read failure
+    */
+   public static NiftiImage readMapped(File hdr, File img) throws IOException {
+      
+      NiftiHeader header = null;
+      BinaryInputStream bhdr = new BinaryInputStream(new BufferedInputStream(new FileInputStream(hdr)));
+      bhdr.setLittleEndian(true);
+      try {
+         header = readHeader(bhdr);
+         header.extensions = readExtensions(bhdr);
+      } finally {
+         bhdr.close();
+      }
+      if (!NiftiMappedData.isSupported(header.datatype)) {
+         return read(hdr, img);
+      }
+      // readHeader() sets the byte order of the stream to that of the file
+      NiftiMappedData data = new NiftiMappedData(
+         img, 0, header, getDataDims(header), bhdr.isLittleEndian());
+      return new NiftiImage(hdr.getName(), header, data);
+   }
+   
+   /**
+    * Reads a single-file Nifti image, with the image data memory-mapped
+    * rather than read into memory. Slices of the image are decoded only
+    * when their voxels are accessed, using {@link NiftiImage#getValue},
+    * and a limited number of decoded slices are cached. This allows very
+    * large images to be opened and sampled quickly. Methods that need all of
+    * the data, such as {@link NiftiImage#getDataBuffer}, cause it to be read
+    * into memory. Images whose data type cannot be mapped (see {@link
+    * NiftiMappedData#isSupported}) are read normally.
+    * 
+    * @param file Nifti file
+    * @return resulting image
+    * @throws IOException on read failure
+    */
+   public static NiftiImage readMapped(File file) throws IOException {
+      
+      NiftiHeader header = null;
+      BinaryInputStream bis = new BinaryInputStream(new BufferedInputStream(new FileInputStream(file)));
+      bis.setLittleEndian(true);
+      try {
+         header = readHeader(bis);
+         header.extensions = readExtensions(bis);
+      } finally {
+         bis.close();
+      }
+      if (!NiftiMappedData.isSupported(header.datatype)) {
+         return read(file);
+      }
+      // readHeader() sets the byte order of the stream to that of the file
+      NiftiMappedData data = new NiftiMappedData(
+         file, header.vox_offset, header, getDataDims(header),
+         bis.isLittleEndian());
+      return new NiftiImage(file.getName(), header, data);
+   }
+   
+   /**
+    * Determines the dimensions of the image data from the header, in the
+    * order x, y, z, t, v
+    */
+   private static int[] getDataDims(NiftiHeader header) {
+      int dims[] = new int[5];
+      long ndims = header.dim[0];
+      
+      if (ndims == 3) {
+         // single output, no time
+         dims[0] = (int)header.dim[1];
+         dims[1] = (int)header.dim[2];
+         dims[2] = (int)header.dim[3];
+         dims[3] = 1;
+         dims[4] = 1;
+      } else if (ndims == 4) {
+         // no time
+         dims[0] = (int)header.dim[1];
+         dims[1] = (int)header.dim[2];
+         dims[2] = (int)header.dim[3];
+         dims[3] = 1;
+         dims[4] = (int)header.dim[4];
+      } else {
+         dims[0] = (int)header.dim[1];
+         dims[1] = (int)header.dim[2];
+         dims[2] = (int)header.dim[3];
+         dims[3] = (int)header.dim[4];
+         dims[4] = (int)header.dim[5];
+      }
+      return dims;
+   }
+   
    public static Extension[] readExtensions(BinaryInputStream reader) throws IOException {
       
       byte[] extension = new byte[4];
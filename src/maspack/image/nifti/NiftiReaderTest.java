@@ -0,0 +1,270 @@
+package maspack.image.nifti;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import maspack.image.nifti.NiftiHeader.DataType;
+import maspack.util.*;
+
+/**
+ * Checks that memory-mapped images read by {@link NiftiReader#readMapped}
+ * contain the same values as those read by {@link NiftiReader#read}.
+ */
+public class NiftiReaderTest extends UnitTest {
+
+   static final int HEADER_SIZE = 348;
+   static final int VOX_OFFSET = 352;
+
+   int[] myDims = new int[] { 3, 2, 4, 1, 2 }; // x, y, z, t, v
+
+   static int entityBytes (DataType type) {
+      switch (type) {
+         case NIFTI_TYPE_INT8:
+         case NIFTI_TYPE_UINT8:
+         case NIFTI_TYPE_RGB24:
+            return 1;
+         case NIFTI_TYPE_INT16:
+         case NIFTI_TYPE_UINT16:
+            return 2;
+         case NIFTI_TYPE_INT32:
+         case NIFTI_TYPE_UINT32:
+         case NIFTI_TYPE_FLOAT32:
+            return 4;
+         case NIFTI_TYPE_INT64:
+         case NIFTI_TYPE_FLOAT64:
+            return 8;
+         default:
+            throw new UnsupportedOperationException (
+               "Type " + type + " not supported by test");
+      }
+   }
+
+   static int entitiesPerValue (DataType type) {
+      return (type == DataType.NIFTI_TYPE_RGB24 ? 3 : 1);
+   }
+
+   /**
+    * Creates a NIfTI-1 header with a given byte order, data type and
+    * scaling. If {@code singleFile} is true, the header is followed by an
+    * empty extension block and then the voxel data.
+    */
+   ByteBuffer createHeader (
+      ByteOrder order, DataType type, double slope, double inter,
+      boolean singleFile) {
+
+      ByteBuffer buf = ByteBuffer.allocate (VOX_OFFSET);
+      buf.order (order);
+      buf.putInt (0, HEADER_SIZE);
+      // dim[0] gives the number of dimensions, followed by x, y, z, t, v
+      buf.putShort (40, (short)5);
+      for (int i=0; i<5; i++) {
+         buf.putShort (42+2*i, (short)myDims[i]);
+      }
+      buf.putShort (70, (short)type.id);
+      buf.putShort (72, (short)(8*entityBytes(type)*entitiesPerValue(type)));
+      for (int i=0; i<8; i++) {
+         buf.putFloat (76+4*i, 1f);
+      }
+      buf.putFloat (108, singleFile ? VOX_OFFSET : 0);
+      buf.putFloat (112, (float)slope);
+      buf.putFloat (116, (float)inter);
+      byte[] magic = (singleFile ? "n+1" : "ni1").getBytes();
+      for (int i=0; i<magic.length; i++) {
+         buf.put (344+i, magic[i]);
+      }
+      return buf;
+   }
+
+   /**
+    * Creates voxel data with a given byte order and data type, containing
+    * values that differ from one voxel to the next and which exercise the
+    * full range of each byte.
+    */
+   ByteBuffer createData (ByteOrder order, DataType type) {
+      int nents = entitiesPerValue (type);
+      for (int d : myDims) {
+         nents *= d;
+      }
+      ByteBuffer buf = ByteBuffer.allocate (nents*entityBytes(type));
+      buf.order (order);
+      for (int n=0; n<nents; n++) {
+         long bits = 0x0102030405060708L*(n+1) + 0x7f3e5d2c1b0a9f8eL*n;
+         switch (type) {
+            case NIFTI_TYPE_INT8:
+            case NIFTI_TYPE_UINT8:
+            case NIFTI_TYPE_RGB24:
+               buf.put ((byte)bits);
+               break;
+            case NIFTI_TYPE_INT16:
+            case NIFTI_TYPE_UINT16:
+               buf.putShort ((short)bits);
+               break;
+            case NIFTI_TYPE_INT32:
+            case NIFTI_TYPE_UINT32:
+               buf.putInt ((int)bits);
+               break;
+            case NIFTI_TYPE_FLOAT32:
+               buf.putFloat ((float)(n - 0.25*(bits%1000)));
+               break;
+            case NIFTI_TYPE_INT64:
+               buf.putLong (bits);
+               break;
+            case NIFTI_TYPE_FLOAT64:
+               buf.putDouble (n*1e10 - 0.125*(bits%100000));
+               break;
+            default:
+               break;
+         }
+      }
+      return buf;
+   }
+
+   File createTempFile (String suffix) throws IOException {
+      File file = File.createTempFile ("niftiTest", suffix);
+      file.deleteOnExit();
+      return file;
+   }
+
+   void write (File file, ByteBuffer... bufs) throws IOException {
+      try (FileOutputStream fos = new FileOutputStream (file)) {
+         for (ByteBuffer buf : bufs) {
+            fos.write (buf.array());
+         }
+      }
+   }
+
+   void checkImagesEqual (String msg, NiftiImage image, NiftiImage check) {
+      check (msg + ": image not mapped", image.isMapped());
+      checkEquals (msg + ": data type", image.getDataType(),
+                   check.getDataType());
+      checkEquals (msg + ": num channels", image.getNumChannels(),
+                   check.getNumChannels());
+      NiftiDataBuffer buff = image.getDataBuffer();
+      NiftiDataBuffer cbuff = check.getDataBuffer();
+      int nents = entitiesPerValue (image.getDataType());
+      for (int v=0; v<myDims[4]; v++) {
+         for (int t=0; t<myDims[3]; t++) {
+            for (int k=0; k<myDims[2]; k++) {
+               for (int j=0; j<myDims[1]; j++) {
+                  for (int i=0; i<myDims[0]; i++) {
+                     for (int e=0; e<nents; e++) {
+                        double chk = cbuff.getValue (e, v, i, j, k, t);
+                        // check lazily decoded values
+                        double val =
+                           image.getMappedData().getValue (e, v, i, j, k, t);
+                        if (val != chk) {
+                           throw new TestException (
+                              msg + ": mapped value (" + e + "," + v + "," +
+                              i + "," + j + "," + k + "," + t + ") is " +
+                              val + ", expected " + chk);
+                        }
+                        if (t == 0) {
+                           val = image.getValue (v*nents+e, i, j, k);
+                           if (val != chk) {
+                              throw new TestException (
+                                 msg + ": channel value is " + val +
+                                 ", expected " + chk);
+                           }
+                        }
+                        // check values from the fully read buffer
+                        val = buff.getValue (e, v, i, j, k, t);
+                        if (val != chk) {
+                           throw new TestException (
+                              msg + ": buffer value (" + e + "," + v + "," +
+                              i + "," + j + "," + k + "," + t + ") is " +
+                              val + ", expected " + chk);
+                        }
+                     }
+                  }
+               }
+            }
+         }
+      }
+   }
+
+   void testMapped (
+      ByteOrder order, DataType type, double slope, double inter)
+      throws IOException {
+
+      String msg = type + " " + order + " slope=" + slope;
+      ByteBuffer data = createData (order, type);
+
+      File file = createTempFile (".nii");
+      write (file, createHeader (order, type, slope, inter, true), data);
+      NiftiImage check = NiftiReader.read (file);
+      checkImagesEqual (msg, NiftiReader.readMapped (file), check);
+
+      // separate header and image files
+      File hdr = createTempFile (".hdr");
+      File img = createTempFile (".img");
+      ByteBuffer hbuf = createHeader (order, type, slope, inter, false);
+      write (hdr, ByteBuffer.wrap (hbuf.array(), 0, HEADER_SIZE).slice());
+      write (img, data);
+      NiftiImage image = NiftiReader.readMapped (hdr, img);
+      checkImagesEqual (msg + " (hdr/img)", image, NiftiReader.read (hdr, img));
+      checkImagesEqual (msg + " (hdr/img vs nii)", image, check);
+   }
+
+   void testKnownValues() throws IOException {
+      // a 2x2 INT16 image whose values do not survive a byte order error
+      myDims = new int[] { 2, 2, 1, 1, 1 };
+      short[] vals = new short[] { 1, 2, 3, 300 };
+      for (ByteOrder order : new ByteOrder[] {
+            ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN }) {
+         ByteBuffer data = ByteBuffer.allocate (2*vals.length).order (order);
+         for (short s : vals) {
+            data.putShort (s);
+         }
+         File file = createTempFile (".nii");
+         write (file, createHeader (
+                   order, DataType.NIFTI_TYPE_INT16, 0, 0, true), data);
+         NiftiImage image = NiftiReader.readMapped (file);
+         NiftiImage check = NiftiReader.read (file);
+         for (int n=0; n<vals.length; n++) {
+            checkEquals (
+               "mapped value " + n + ", " + order,
+               image.getValue (0, n%2, n/2, 0), (double)vals[n]);
+            checkEquals (
+               "read value " + n + ", " + order,
+               check.getValue (0, n%2, n/2, 0), (double)vals[n]);
+         }
+      }
+   }
+
+   public void test() throws IOException {
+      testKnownValues();
+      myDims = new int[] { 3, 2, 4, 1, 2 };
+      DataType[] types = new DataType[] {
+         DataType.NIFTI_TYPE_INT8,
+         DataType.NIFTI_TYPE_UINT8,
+         DataType.NIFTI_TYPE_INT16,
+         DataType.NIFTI_TYPE_UINT16,
+         DataType.NIFTI_TYPE_INT32,
+         DataType.NIFTI_TYPE_UINT32,
+         DataType.NIFTI_TYPE_INT64,
+         DataType.NIFTI_TYPE_FLOAT32,
+         DataType.NIFTI_TYPE_FLOAT64,
+         DataType.NIFTI_TYPE_RGB24,
+      };
+      for (ByteOrder order : new ByteOrder[] {
+            ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN }) {
+         for (DataType type : types) {
+            testMapped (order, type, 0, 0);
+            // scaling is ignored for RGB data
+            testMapped (order, type, 0.5, -3.0);
+         }
+      }
+      // images with more than one time index
+      myDims = new int[] { 2, 3, 2, 3, 1 };
+      testMapped (ByteOrder.BIG_ENDIAN, DataType.NIFTI_TYPE_INT16, 2.0, 1.0);
+      testMapped (ByteOrder.LITTLE_ENDIAN, DataType.NIFTI_TYPE_RGB24, 0, 0);
+   }
+
+   public static void main (String[] args) {
+      NiftiReaderTest tester = new NiftiReaderTest();
+      tester.runtest();
+   }
+}
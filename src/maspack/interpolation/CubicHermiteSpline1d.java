@@ -26,6 +26,9 @@ public class CubicHermiteSpline1d extends Diff1Function1x1Base
    // 1 yes, 0 no, -1 don't know
    private int myInvertible = -1;
 
+   // incremented whenever the knots or coefficients are changed
+   private int myVersion = 0;
+
    /**
     * Describes a single knot for a specific value of x. This contains values
     * of y and its derivative. If this is not the final knot in the spline,
@@ -610,6 +613,7 @@ public class CubicHermiteSpline1d extends Diff1Function1x1Base
       myKnots.add (idx, knot);
       reindexFrom (idx);
       myInvertible = -1;
+      myVersion++;
    }
 
    public void addKnot (int idx, Knot knot) {
@@ -635,6 +639,7 @@ public class CubicHermiteSpline1d extends Diff1Function1x1Base
          reindexFrom (idx);
          knot.setIndex (-1);
          myInvertible = -1;
+         myVersion++;
          return true;
       }
       else {
@@ -648,6 +653,21 @@ public class CubicHermiteSpline1d extends Diff1Function1x1Base
       }
       myKnots.clear();
       myInvertible = -1;
+      myVersion++;
+   }
+
+   /**
+    * Returns a counter that is incremented whenever knots are added or
+    * removed, or the interpolation coefficients are updated. This allows
+    * objects derived from this spline, such as a {@link CubicHermiteTable1d},
+    * to determine whether they are out of date. Knot values that are
+    * modified directly are not detected until {@link #updateCoefficients()}
+    * is called.
+    *
+    * @return modification counter for this spline
+    */
+   public int getVersion() {
+      return myVersion;
    }
 
    /**
@@ -953,6 +973,7 @@ public class CubicHermiteSpline1d extends Diff1Function1x1Base
       if (idx >= 0 && idx < numKnots()-1) {
          knot.computeCoefficients (myKnots.get (idx+1));
       }
+      myVersion++;
    }
 
    public void updateCoefficients () {
@@ -960,6 +981,7 @@ public class CubicHermiteSpline1d extends Diff1Function1x1Base
          Knot k = myKnots.get(i);
          myKnots.get(i).computeCoefficients (myKnots.get(i+1));
       }
+      myVersion++;
    }
 
    public Iterator<Knot> iterator() {
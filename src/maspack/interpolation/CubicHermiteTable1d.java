@@ -0,0 +1,189 @@
+package maspack.interpolation;
+
+import maspack.interpolation.CubicHermiteSpline1d.Knot;
+
+/**
+ * Flattened, read-only copy of a {@link CubicHermiteSpline1d}, intended for
+ * evaluating a spline in inner loops. The knot positions and interpolation
+ * coefficients are stored in contiguous arrays and the segment containing a
+ * given {@code x} is found by bisection, rather than by scanning a list of
+ * knot objects. Evaluation gives results identical to those of the spline
+ * itself, and since evaluation does not modify the table, it can be
+ * evaluated concurrently by multiple threads.
+ *
+ * <p>The table is a snapshot: subsequent changes to the spline are not
+ * reflected in it unless {@link #set} is called again. {@link #isCurrent}
+ * can be used to determine if this is necessary.
+ */
+public class CubicHermiteTable1d {
+
+   // number of coefficients stored per knot: y0, dy0, a2, a3
+   private static final int NCOEFS = 4;
+
+   double[] myX;      // x value of each knot
+   double[] myCoefs;  // y0, dy0, a2, a3 for each knot
+   int myNumKnots;
+
+   // spline from which the table was created, and its version at the time
+   CubicHermiteSpline1d mySpline;
+   int mySplineVersion;
+
+   /**
+    * Creates an empty table, which evaluates to 0.
+    */
+   public CubicHermiteTable1d () {
+      myX = new double[0];
+      myCoefs = new double[0];
+   }
+
+   /**
+    * Creates a table for a specified spline.
+    *
+    * @param spline spline to copy
+    */
+   public CubicHermiteTable1d (CubicHermiteSpline1d spline) {
+      set (spline);
+   }
+
+   /**
+    * Sets this table to reflect the current knots of a spline.
+    *
+    * @param spline spline to copy
+    */
+   public void set (CubicHermiteSpline1d spline) {
+      int n = spline.numKnots();
+      double[] x = new double[n];
+      double[] coefs = new double[NCOEFS*n];
+      for (int k=0; k<n; k++) {
+         Knot knot = spline.getKnot(k);
+         x[k] = knot.x0;
+         coefs[NCOEFS*k  ] = knot.y0;
+         coefs[NCOEFS*k+1] = knot.dy0;
+         coefs[NCOEFS*k+2] = knot.a2;
+         coefs[NCOEFS*k+3] = knot.a3;
+      }
+      myX = x;
+      myCoefs = coefs;
+      myNumKnots = n;
+      mySpline = spline;
+      mySplineVersion = spline.getVersion();
+   }
+
+   /**
+    * Queries whether this table was created from a specified spline and
+    * still reflects its knots, as indicated by {@link
+    * CubicHermiteSpline1d#getVersion}.
+    *
+    * @param spline spline to check
+    * @return {@code true} if the table is current with respect to
+    * {@code spline}
+    */
+   public boolean isCurrent (CubicHermiteSpline1d spline) {
+      return spline == mySpline && spline.getVersion() == mySplineVersion;
+   }
+
+   /**
+    * Returns the number of knots in this table.
+    *
+    * @return number of knots
+    */
+   public int numKnots() {
+      return myNumKnots;
+   }
+
+   /**
+    * Finds the index of the last knot whose x value is {@code <= x}, or 0 if
+    * there is no such knot. This is the same knot as that chosen by the
+    * spline's evaluation methods.
+    *
+    * @param x value for which the knot is sought
+    * @return index of the segment containing {@code x}
+    */
+   public int findKnot (double x) {
+      // find the first knot for which x < x0, then step back by one
+      int lo = 0;
+      int hi = myNumKnots;
+      while (lo < hi) {
+         int mid = (lo+hi) >>> 1;
+         if (x < myX[mid]) {
+            hi = mid;
+         }
+         else {
+            lo = mid+1;
+         }
+      }
+      return lo > 0 ? lo-1 : 0;
+   }
+
+   /**
+    * Evaluates the y value at a specific x value. Values outside the knot
+    * range are extrapolated as in {@link CubicHermiteSpline1d#evalY(double)}.
+    *
+    * @param x value at which y should be evaluated
+    * @return y value
+    */
+   public double evalY (double x) {
+      if (myNumKnots == 0) {
+         return 0;
+      }
+      int k = findKnot (x);
+      int i = NCOEFS*k;
+      x -= myX[k];
+      if (x < 0) {
+         return myCoefs[i] + myCoefs[i+1]*x;
+      }
+      else {
+         return ((myCoefs[i+3]*x + myCoefs[i+2])*x + myCoefs[i+1])*x
+            + myCoefs[i];
+      }
+   }
+
+   /**
+    * Evaluates the y derivative at a specific x value. Values outside the
+    * knot range are extrapolated as in {@link
+    * CubicHermiteSpline1d#evalDy(double)}.
+    *
+    * @param x value at which the y derivative should be evaluated
+    * @return y derivative
+    */
+   public double evalDy (double x) {
+      if (myNumKnots == 0) {
+         return 0;
+      }
+      int k = findKnot (x);
+      int i = NCOEFS*k;
+      x -= myX[k];
+      if (x < 0) {
+         return myCoefs[i+1];
+      }
+      else {
+         return (3*myCoefs[i+3]*x + 2*myCoefs[i+2])*x + myCoefs[i+1];
+      }
+   }
+
+   /**
+    * Evaluates the y values for a set of x values.
+    *
+    * @param y returns the y values
+    * @param x values at which y should be evaluated
+    * @param num number of values to evaluate
+    */
+   public void evalY (double[] y, double[] x, int num) {
+      for (int i=0; i<num; i++) {
+         y[i] = evalY (x[i]);
+      }
+   }
+
+   /**
+    * Evaluates the y derivatives for a set of x values.
+    *
+    * @param dy returns the y derivatives
+    * @param x values at which the derivatives should be evaluated
+    * @param num number of values to evaluate
+    */
+   public void evalDy (double[] dy, double[] x, int num) {
+      for (int i=0; i<num; i++) {
+         dy[i] = evalDy (x[i]);
+      }
+   }
+}
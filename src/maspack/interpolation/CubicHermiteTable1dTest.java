@@ -0,0 +1,93 @@
+package maspack.interpolation;
+
+import maspack.util.*;
+
+public class CubicHermiteTable1dTest extends UnitTest {
+
+   void checkTable (CubicHermiteSpline1d spline) {
+      CubicHermiteTable1d table = new CubicHermiteTable1d (spline);
+      checkEquals ("numKnots", table.numKnots(), spline.numKnots());
+
+      double xmin = -1;
+      double xmax = 1;
+      if (spline.numKnots() > 0) {
+         xmin = spline.getFirstKnot().getX();
+         xmax = spline.getLastKnot().getX();
+      }
+      double margin = 0.5*(xmax-xmin) + 1;
+      int nx = 200;
+      double[] xs = new double[nx+spline.numKnots()];
+      for (int i=0; i<nx; i++) {
+         xs[i] = RandomGenerator.nextDouble (xmin-margin, xmax+margin);
+      }
+      // evaluate exactly at the knots as well
+      for (int k=0; k<spline.numKnots(); k++) {
+         xs[nx+k] = spline.getKnot(k).getX();
+      }
+      for (double x : xs) {
+         // results should be identical, not just close
+         if (table.evalY(x) != spline.evalY(x)) {
+            throw new TestException (
+               "evalY("+x+")="+table.evalY(x)+", expected "+spline.evalY(x));
+         }
+         if (table.evalDy(x) != spline.evalDy(x)) {
+            throw new TestException (
+               "evalDy("+x+")="+table.evalDy(x)+
+               ", expected "+spline.evalDy(x));
+         }
+      }
+      double[] ys = new double[xs.length];
+      double[] dys = new double[xs.length];
+      table.evalY (ys, xs, xs.length);
+      table.evalDy (dys, xs, xs.length);
+      for (int i=0; i<xs.length; i++) {
+         checkEquals ("batch evalY", ys[i], spline.evalY(xs[i]));
+         checkEquals ("batch evalDy", dys[i], spline.evalDy(xs[i]));
+      }
+   }
+
+   public void test() {
+      CubicHermiteSpline1d spline = new CubicHermiteSpline1d();
+      checkTable (spline);
+
+      spline.addKnot (0.3, 1.2, -0.5);
+      checkTable (spline);
+
+      spline.addKnot (1.1, 0.4, 0.2);
+      checkTable (spline);
+
+      for (int n=3; n<40; n+=7) {
+         double[] x = new double[n];
+         double[] y = new double[n];
+         double x0 = RandomGenerator.nextDouble (-2, 2);
+         for (int i=0; i<n; i++) {
+            x0 += RandomGenerator.nextDouble (0.01, 1);
+            x[i] = x0;
+            y[i] = RandomGenerator.nextDouble (-1, 1);
+         }
+         spline.setNatural (x, y);
+         checkTable (spline);
+      }
+
+      // table should be a snapshot, unaffected by later changes
+      spline.clearKnots();
+      spline.addKnot (0.0, 1.0, 2.0);
+      CubicHermiteTable1d table = new CubicHermiteTable1d (spline);
+      check ("table should be current", table.isCurrent (spline));
+      spline.addKnot (1.0, 5.0, 0.0);
+      checkEquals ("snapshot evalY", table.evalY(2.0), 5.0);
+      check ("table should not be current", !table.isCurrent (spline));
+      table.set (spline);
+      check ("table should be current", table.isCurrent (spline));
+      spline.scaleY (2.0);
+      check ("table should not be current", !table.isCurrent (spline));
+      check ("table should not be current for copy",
+             !table.isCurrent (new CubicHermiteSpline1d (spline)));
+   }
+
+   public static void main (String[] args) {
+      RandomGenerator.setSeed (0x1234);
+      CubicHermiteTable1dTest tester = new CubicHermiteTable1dTest ();
+      tester.runtest();
+   }
+}
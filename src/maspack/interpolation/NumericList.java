@@ -8,6 +8,7 @@ package maspack.interpolation;
 
 import java.util.Iterator;
 import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.NoSuchElementException;
 import java.io.*;
@@ -20,6 +21,21 @@ import maspack.util.*;
 /**
  * A linked list of vector values arranged in order with respect to a parameter
  * t. Can be interpolated to produce a continuous vector function.
+ *
+ * <p>A list can optionally be <i>columnar</i>, in which case the knot times
+ * and values are stored in primitive arrays instead of as linked {@link
+ * NumericListKnot} objects. This greatly reduces the memory and allocation
+ * overhead for long recordings, and allows knots to be located by binary
+ * search. All operations are performed directly on the columnar storage,
+ * except for smoothing. However, knots obtained from a columnar list, by
+ * iteration or by methods such as {@link #getFirst}, {@link #getLast},
+ * {@link #getKnot}, {@link #findKnotAtOrBefore findKnotAtOrBefore()} and
+ * {@link #add(NumericListKnot) add()}, are copies, and changing them does
+ * not change the list. Applications that need to modify knots in place
+ * should convert the list to linked storage using {@link #setColumnar}.
+ * Knot times and values can also be queried without creating knots, using
+ * {@link #getFirstTime}, {@link #getLastTime}, {@link #getKnotTime}, {@link
+ * #getKnotValues} and {@link #findKnotIndexAtOrBefore}.
  */
 public class NumericList
    implements Cloneable, Iterable<NumericListKnot>, Scannable {
@@ -47,6 +63,20 @@ public class NumericList
    private VectorNd myTmp0;
    private VectorNd myTmp1;
 
+   // columnar storage, used in place of the linked knots when myColumnarP
+   // is true. Values are stored in chunks of COL_CHUNK_SIZE knots, so that
+   // growing the list does not require copying existing values.
+   private static final int COL_CHUNK_SHIFT = 8;
+   private static final int COL_CHUNK_SIZE = (1 << COL_CHUNK_SHIFT);
+   private static final int COL_CHUNK_MASK = COL_CHUNK_SIZE-1;
+
+   protected boolean myColumnarP = false;
+   protected int myColNumKnots = 0;
+   protected double[] myColTimes;
+   protected double[][] myColChunks;
+   // scratch knots used to interpolate columnar data
+   private NumericListKnot[] myColWindow;
+
    private void allocateTmps (int size) {
       if (myTmp0 == null) {
          myTmp0 = new VectorNd (size);
@@ -105,6 +135,194 @@ public class NumericList
       myVsize = vsize;
    }
 
+   /**
+    * Creates an empty numeric list for holding vectors of a prescribed size,
+    * and which optionally uses columnar storage.
+    * 
+    * @param vsize
+    * size of the vectors that will form this list
+    * @param columnar if <code>true</code>, the list uses columnar storage
+    * @see #setColumnar
+    */
+   public NumericList (int vsize, boolean columnar) {
+      this (vsize);
+      setColumnar (columnar);
+   }
+
+   /**
+    * Queries whether this list uses columnar storage.
+    *
+    * @return <code>true</code> if this list is columnar
+    * @see #setColumnar
+    */
+   public boolean isColumnar() {
+      return myColumnarP;
+   }
+
+   /**
+    * Sets whether this list uses columnar storage, in which the knot times
+    * and values are stored in primitive arrays rather than as linked knot
+    * objects. Any existing knots are converted to the new storage. When a
+    * list is converted to columnar storage, its existing knots cease to be
+    * members of it.
+    *
+    * @param enable if <code>true</code>, enables columnar storage
+    */
+   public synchronized void setColumnar (boolean enable) {
+      if (enable == myColumnarP) {
+         return;
+      }
+      if (enable) {
+         int numk = getNumKnots();
+         myColNumKnots = 0;
+         myColTimes = null;
+         myColChunks = null;
+         ensureColCapacity (numk);
+         for (NumericListKnot knot=myHead; knot!=null; knot=knot.next) {
+            myColTimes[myColNumKnots] = knot.t;
+            setColValues (myColNumKnots, knot.v.getBuffer());
+            myColNumKnots++;
+            knot.myList = null;
+         }
+         myTail = myHead = myLast = null;
+         myColumnarP = true;
+      }
+      else {
+         NumericListKnot prev = null;
+         for (int k=0; k<myColNumKnots; k++) {
+            NumericListKnot knot = createColKnot (k);
+            knot.myList = this;
+            knot.prev = prev;
+            if (prev == null) {
+               myHead = knot;
+            }
+            else {
+               prev.next = knot;
+            }
+            prev = knot;
+         }
+         myTail = prev;
+         myLast = null;
+         myColumnarP = false;
+         myColNumKnots = 0;
+         myColTimes = null;
+         myColChunks = null;
+         myColWindow = null;
+      }
+   }
+
+   /**
+    * Ensures that columnar storage can hold at least <code>numk</code> knots.
+    */
+   private void ensureColCapacity (int numk) {
+      if (myColTimes == null || myColTimes.length < numk) {
+         int cap = Math.max (COL_CHUNK_SIZE, numk);
+         if (myColTimes != null) {
+            cap = Math.max (cap, 2*myColTimes.length);
+         }
+         myColTimes = (myColTimes == null ?
+            new double[cap] : Arrays.copyOf (myColTimes, cap));
+      }
+      int numc = (numk+COL_CHUNK_SIZE-1) >> COL_CHUNK_SHIFT;
+      if (myColChunks == null || myColChunks.length < numc) {
+         int cap = Math.max (numc, 4);
+         if (myColChunks != null) {
+            cap = Math.max (cap, 2*myColChunks.length);
+         }
+         myColChunks = (myColChunks == null ?
+            new double[cap][] : Arrays.copyOf (myColChunks, cap));
+      }
+      for (int c=0; c<numc; c++) {
+         if (myColChunks[c] == null) {
+            myColChunks[c] = new double[COL_CHUNK_SIZE*myVsize];
+         }
+      }
+   }
+
+   private void setColValues (int k, double[] vals) {
+      double[] chunk = myColChunks[k >> COL_CHUNK_SHIFT];
+      System.arraycopy (
+         vals, 0, chunk, (k & COL_CHUNK_MASK)*myVsize, myVsize);
+   }
+
+   private void getColValues (double[] vals, int k) {
+      double[] chunk = myColChunks[k >> COL_CHUNK_SHIFT];
+      System.arraycopy (
+         chunk, (k & COL_CHUNK_MASK)*myVsize, vals, 0, myVsize);
+   }
+
+   private void copyColKnot (int kdst, int ksrc) {
+      myColTimes[kdst] = myColTimes[ksrc];
+      System.arraycopy (
+         myColChunks[ksrc >> COL_CHUNK_SHIFT], (ksrc & COL_CHUNK_MASK)*myVsize,
+         myColChunks[kdst >> COL_CHUNK_SHIFT], (kdst & COL_CHUNK_MASK)*myVsize,
+         myVsize);
+   }
+
+   /**
+    * Creates a knot that is a copy of the k-th columnar knot.
+    */
+   private NumericListKnot createColKnot (int k) {
+      NumericListKnot knot = new NumericListKnot (myVsize);
+      knot.t = myColTimes[k];
+      getColValues (knot.v.getBuffer(), k);
+      return knot;
+   }
+
+   /**
+    * Returns the index of the last columnar knot whose time is {@code <=}
+    * t, or -1 if there is no such knot.
+    */
+   private int findColIndexAtOrBefore (double t) {
+      int lo = 0;
+      int hi = myColNumKnots-1;
+      while (lo <= hi) {
+         int mid = (lo+hi) >>> 1;
+         if (myColTimes[mid] <= t) {
+            lo = mid+1;
+         }
+         else {
+            hi = mid-1;
+         }
+      }
+      return hi;
+   }
+
+   /**
+    * Adds a knot to columnar storage, replacing any knot with the same
+    * time, in which case a copy of the replaced knot is returned.
+    */
+   private NumericListKnot addColKnot (double t, double[] vals) {
+      NumericListKnot existing = null;
+      int k = findColIndexAtOrBefore (t);
+      if (k >= 0 && myColTimes[k] == t) {
+         existing = createColKnot (k);
+      }
+      else {
+         k++;
+         ensureColCapacity (myColNumKnots+1);
+         for (int j=myColNumKnots; j>k; j--) {
+            copyColKnot (j, j-1);
+         }
+         myColNumKnots++;
+      }
+      myColTimes[k] = t;
+      setColValues (k, vals);
+      updateMinMaxValues (vals);
+      return existing;
+   }
+
+   /**
+    * Removes the k-th columnar knot.
+    */
+   private void removeColKnot (int k) {
+      for (int j=k+1; j<myColNumKnots; j++) {
+         copyColKnot (j-1, j);
+      }
+      myColNumKnots--;
+      myMinMaxValid = false;
+   }
+
    /**
     * Returns the size of the vectors associated with this list.
     */
@@ -127,6 +345,9 @@ public class NumericList
     * @see #getVectorSize
     */
    public synchronized NumericListKnot add (NumericListKnot knot) {
+      if (myColumnarP) {
+         return add (knot, null);
+      }
       NumericListKnot existing = add (knot, myLast);
       myLast = knot;
       return existing;
@@ -169,6 +390,9 @@ public class NumericList
          throw new IllegalArgumentException (
             "Knot vector has size "+knot.v.size() + ", expecting " + myVsize);
       }
+      if (myColumnarP) {
+         return addColKnot (knot.t, knot.v.getBuffer());
+      }
       if (myHead == null) { // list is empty
          knot.next = null;
          knot.prev = null;
@@ -221,6 +445,12 @@ public class NumericList
    }
    
    public void shiftTime(double t) {
+      if (myColumnarP) {
+         for (int k=0; k<myColNumKnots; k++) {
+            myColTimes[k] += t;
+         }
+         return;
+      }
       NumericListKnot nlk = myHead; 
       do {
          nlk.t += t;
@@ -238,7 +468,10 @@ public class NumericList
    }
 
    private void updateMinMaxValues (NumericListKnot knot) {
-      double[] vbuf = knot.v.getBuffer();
+      updateMinMaxValues (knot.v.getBuffer());
+   }
+
+   private void updateMinMaxValues (double[] vbuf) {
       for (int i = 0; i < myVsize; i++) {
          double x = vbuf[i];
          if (x > myMaxValue) {
@@ -251,7 +484,16 @@ public class NumericList
    }
 
    private void updateMinMaxValues() {
-      if (myHead != null) {
+      if (myColumnarP && myColNumKnots > 0) {
+         myMinValue = Double.POSITIVE_INFINITY;
+         myMaxValue = Double.NEGATIVE_INFINITY;
+         double[] vbuf = new double[myVsize];
+         for (int k=0; k<myColNumKnots; k++) {
+            getColValues (vbuf, k);
+            updateMinMaxValues (vbuf);
+         }
+      }
+      else if (myHead != null) {
          myMinValue = Double.POSITIVE_INFINITY;
          myMaxValue = Double.NEGATIVE_INFINITY;
          for (NumericListKnot knot = myHead; knot != null; knot = knot.next) {
@@ -273,7 +515,7 @@ public class NumericList
    public void getSumSquaredValues (VectorNd sumsqr) {
       sumsqr.setSize (getVectorSize());
       sumsqr.setZero();
-      for (NumericListKnot knot = myHead; knot != null; knot = knot.next) {
+      for (NumericListKnot knot : knots()) {
          for (int i=0; i<getVectorSize(); i++) {
             double x = knot.v.get(i);
             sumsqr.add (i, x*x);
@@ -291,8 +533,10 @@ public class NumericList
    public void getMinMaxValues (VectorNd min, VectorNd max) {
       min.setSize (getVectorSize());
       max.setSize (getVectorSize());
-      for (NumericListKnot knot = myHead; knot != null; knot = knot.next) {
-         if (knot == myHead) {
+      boolean first = true;
+      for (NumericListKnot knot : knots()) {
+         if (first) {
+            first = false;
             min.set (knot.v);
             max.set (knot.v);
          }
@@ -318,6 +562,15 @@ public class NumericList
     * @return removed knot, if any
     */
    public NumericListKnot remove (double t) {
+      if (myColumnarP) {
+         int k = findColIndexAtOrBefore (t);
+         if (k >= 0 && myColTimes[k] == t) {
+            NumericListKnot knot = createColKnot (k);
+            removeColKnot (k);
+            return knot;
+         }
+         return null;
+      }
       NumericListKnot knot = findKnotClosest (t);
       if (knot != null && knot.t == t) {
          remove (knot);
@@ -348,12 +601,17 @@ public class NumericList
 
    /**
     * Removes a knot from this numeric list. It is up to the application to
-    * ensure that the knot is currently a member of this list.
+    * ensure that the knot is currently a member of this list. For columnar
+    * lists, the knot with the same time is removed.
     * 
     * @param knot
     * knot to remove
     */
    public void remove (NumericListKnot knot) {
+      if (myColumnarP) {
+         remove (knot.t);
+         return;
+      }
       if (knot.prev == null) {
          myHead = knot.next;
       }
@@ -373,11 +631,18 @@ public class NumericList
    /**
     * Removes all knots after a specific knot in this list. It is up to the
     * application to ensure that the specified knot is a member of the list.
+    * For columnar lists, all knots whose time is greater than that of the
+    * specified knot are removed.
     * 
     * @param knot
     * all knots following this one will be removed
     */
    public synchronized void clearAfter (NumericListKnot knot) {
+      if (myColumnarP) {
+         myColNumKnots = findColIndexAtOrBefore (knot.t)+1;
+         myMinMaxValid = false;
+         return;
+      }
       for (NumericListKnot knotx = knot.next; knotx != null; knotx = knotx.next) {
          knotx.myList = null;
       }
@@ -386,6 +651,44 @@ public class NumericList
       myMinMaxValid = false;
    }
 
+   /**
+    * Removes the first <code>num</code> knots from this list. If
+    * <code>num</code> is greater than or equal to the number of knots, the
+    * list is cleared.
+    *
+    * @param num number of knots to remove
+    */
+   public synchronized void removeFirst (int num) {
+      if (num <= 0) {
+         return;
+      }
+      if (myColumnarP) {
+         num = Math.min (num, myColNumKnots);
+         for (int j=num; j<myColNumKnots; j++) {
+            copyColKnot (j-num, j);
+         }
+         myColNumKnots -= num;
+      }
+      else {
+         NumericListKnot knot = myHead;
+         for (int i=0; i<num && knot!=null; i++) {
+            knot.myList = null;
+            if (knot == myLast) {
+               myLast = null;
+            }
+            knot = knot.next;
+         }
+         myHead = knot;
+         if (knot == null) {
+            myTail = null;
+         }
+         else {
+            knot.prev = null;
+         }
+      }
+      myMinMaxValid = false;
+   }
+
    /**
     * Finds the knot whose t value is closest to, and if possible less or equal
     * to, a specified value.
@@ -395,6 +698,9 @@ public class NumericList
     * @return nearest knot less than t
     */
    public NumericListKnot findKnotAtOrBefore (double t, NumericListKnot last) {
+      if (myColumnarP) {
+         return getKnot (Math.max (0, findKnotIndexAtOrBefore (t)));
+      }
       if (last == null || last.myList != this) { // no hint from last knot
                                                    // point.
          if (myHead == null) {
@@ -427,12 +733,47 @@ public class NumericList
     */
    public NumericListKnot findKnotClosest (double t) {
       NumericListKnot knot = findKnotClosest (t, myLast);
-      myLast = knot;
+      if (!myColumnarP) {
+         myLast = knot;
+      }
       return knot;
    }
 
+   /**
+    * Returns the index of the last knot whose t value is less than or equal
+    * to a specified value, or -1 if there is no such knot. For columnar
+    * lists, the knot is located by binary search.
+    *
+    * @param t
+    * specified value
+    * @return index of the last knot at or before t
+    */
+   public synchronized int findKnotIndexAtOrBefore (double t) {
+      if (myColumnarP) {
+         return findColIndexAtOrBefore (t);
+      }
+      int idx = -1;
+      for (NumericListKnot knot=myHead; knot!=null && knot.t<=t;
+           knot=knot.next) {
+         idx++;
+      }
+      return idx;
+   }
+
    public synchronized NumericListKnot findKnotClosest (
       double t, NumericListKnot last) {
+      if (myColumnarP) {
+         if (myColNumKnots == 0) {
+            return null;
+         }
+         int k = Math.max (0, findColIndexAtOrBefore (t));
+         if (k < myColNumKnots-1 &&
+             myColTimes[k] < t &&
+             Math.abs (myColTimes[k]-t) >= Math.abs (myColTimes[k+1]-t)) {
+            k++;
+         }
+         return createColKnot (k);
+      }
       if (myHead == null) {
          return null;
       }
@@ -471,7 +812,10 @@ public class NumericList
     * if the list is empty
     */
    public void interpolate (VectorNd v, double t) {
-      myLast = interpolate (v, t, myInterpolation, myLast);
+      NumericListKnot last = interpolate (v, t, myInterpolation, myLast);
+      if (!myColumnarP) {
+         myLast = last;
+      }
    }
 
    public void interpolateCubic (VectorNd v, NumericListKnot prev, double t) {
@@ -809,16 +1153,63 @@ public class NumericList
    }
 
    
+   /**
+    * Loads the columnar knots surrounding the k-th knot into the scratch
+    * window, linked so that the window knot for k has the same neighbours
+    * as a linked list would, and returns that window knot. The values of
+    * the outer neighbours are only loaded if <code>loadOuter</code> is
+    * <code>true</code>.
+    */
+   private NumericListKnot loadColWindow (int k, boolean loadOuter) {
+      if (myColWindow == null || myColWindow[0].v.size() != myVsize) {
+         myColWindow = new NumericListKnot[4];
+         for (int i=0; i<4; i++) {
+            myColWindow[i] = new NumericListKnot (myVsize);
+         }
+      }
+      NumericListKnot[] w = myColWindow;
+      w[0].prev = null;
+      w[0].next = w[1];
+      w[1].prev = (k > 0 ? w[0] : null);
+      w[1].next = (k+1 < myColNumKnots ? w[2] : null);
+      w[2].prev = w[1];
+      w[2].next = (k+2 < myColNumKnots ? w[3] : null);
+      w[3].prev = w[2];
+      w[3].next = null;
+      for (int i=0; i<4; i++) {
+         int j = k-1+i;
+         if (j >= 0 && j < myColNumKnots &&
+             (loadOuter || i == 1 || i == 2)) {
+            w[i].t = myColTimes[j];
+            getColValues (w[i].v.getBuffer(), j);
+         }
+      }
+      return w[1];
+   }
+
    public synchronized NumericListKnot interpolate (
       VectorNd v, double t, Order order, boolean extendData,
       NumericListKnot last) {
-      if (myHead == null) {
-         v.setZero();
-         return null;
+      NumericListKnot prev;
+      if (myColumnarP) {
+         if (myColNumKnots == 0) {
+            v.setZero();
+            return null;
+         }
+         int k = Math.max (0, findColIndexAtOrBefore (t));
+         boolean loadOuter = (
+            order == Order.Parabolic || order == Order.Cubic ||
+            order == Order.SphericalCubic);
+         prev = loadColWindow (k, loadOuter);
+      }
+      else {
+         if (myHead == null) {
+            v.setZero();
+            return null;
+         }
+         // try to find knots that bracket the t value
+         prev = findKnotAtOrBefore (t, last);
       }
-      // try to find knots that bracket the t value
-
-      NumericListKnot prev = findKnotAtOrBefore (t, last);
       NumericListKnot next = prev.next;
 
       if (prev.t > t) // before the start of list
@@ -949,22 +1340,48 @@ public class NumericList
    }
 
    /**
-    * Returns the first knot in this list.
+    * Iterates over the knots of a columnar list, returning a copy of each.
+    */
+   private class ColumnarIterator implements Iterator<NumericListKnot> {
+      int k = 0;
+
+      public boolean hasNext() {
+         return k < myColNumKnots;
+      }
+
+      public NumericListKnot next() throws NoSuchElementException {
+         if (k >= myColNumKnots) {
+            throw new NoSuchElementException();
+         }
+         return createColKnot (k++);
+      }
+   }
+
+   /**
+    * Returns the first knot in this list. For columnar lists, the knot
+    * is a copy.
     * 
     * @return first knot in this list
     */
-   public NumericListKnot getFirst() {
+   public synchronized NumericListKnot getFirst() {
+      if (myColumnarP) {
+         return (myColNumKnots > 0 ? createColKnot (0) : null);
+      }
       NumericListKnot knot = myHead;
       // myLast = knot;
       return knot;
    }
 
    /**
-    * Returns the last knot in this list.
+    * Returns the last knot in this list. For columnar lists, the knot
+    * is a copy.
     * 
     * @return last knot in this list
     */
-   public NumericListKnot getLast() {
+   public synchronized NumericListKnot getLast() {
+      if (myColumnarP) {
+         return (myColNumKnots > 0 ? createColKnot (myColNumKnots-1) : null);
+      }
       NumericListKnot knot = myTail;
       // myLast = knot;
       return knot;
@@ -972,11 +1389,14 @@ public class NumericList
 
    /**
     * Returns the idx-th knot in this list, or {@code null} if so such
-    * knot exists;
+    * knot exists. For columnar lists, the knot is a copy.
     * 
     * @return idx-th knot
     */
-   public NumericListKnot getKnot(int idx) {
+   public synchronized NumericListKnot getKnot(int idx) {
+      if (myColumnarP) {
+         return (idx >= 0 && idx < myColNumKnots ? createColKnot (idx) : null);
+      }
       NumericListKnot knot = myHead;
       for (int i=0; i<idx && knot != null; i++) {
          knot = knot.next;
@@ -984,12 +1404,93 @@ public class NumericList
       return knot;
    }
 
+   /**
+    * Returns the time of the first knot in this list, or 0 if the list
+    * is empty.
+    * 
+    * @return time of the first knot
+    */
+   public synchronized double getFirstTime() {
+      if (myColumnarP) {
+         return (myColNumKnots > 0 ? myColTimes[0] : 0);
+      }
+      return (myHead != null ? myHead.t : 0);
+   }
+
+   /**
+    * Returns the time of the last knot in this list, or 0 if the list
+    * is empty.
+    * 
+    * @return time of the last knot
+    */
+   public synchronized double getLastTime() {
+      if (myColumnarP) {
+         return (myColNumKnots > 0 ? myColTimes[myColNumKnots-1] : 0);
+      }
+      return (myTail != null ? myTail.t : 0);
+   }
+
+   /**
+    * Returns the time of the idx-th knot in this list. For linked lists,
+    * this requires traversing the list up to the knot.
+    * 
+    * @param idx index of the knot
+    * @return time of the idx-th knot
+    * @throws IndexOutOfBoundsException if the knot does not exist
+    */
+   public synchronized double getKnotTime (int idx) {
+      if (myColumnarP) {
+         checkKnotIndex (idx, myColNumKnots);
+         return myColTimes[idx];
+      }
+      return getLinkedKnot (idx).t;
+   }
+
+   /**
+    * Returns the values of the idx-th knot in this list. For linked lists,
+    * this requires traversing the list up to the knot.
+    * 
+    * @param v returns the knot values. Its size is set to the vector size
+    * of this list.
+    * @param idx index of the knot
+    * @throws IndexOutOfBoundsException if the knot does not exist
+    */
+   public synchronized void getKnotValues (VectorNd v, int idx) {
+      v.setSize (myVsize);
+      if (myColumnarP) {
+         checkKnotIndex (idx, myColNumKnots);
+         getColValues (v.getBuffer(), idx);
+      }
+      else {
+         v.set (getLinkedKnot (idx).v);
+      }
+   }
+
+   private void checkKnotIndex (int idx, int numk) {
+      if (idx < 0 || idx >= numk) {
+         throw new IndexOutOfBoundsException (
+            "knot index "+idx+" out of range [0,"+(numk-1)+"]");
+      }
+   }
+
+   private NumericListKnot getLinkedKnot (int idx) {
+      NumericListKnot knot = (idx >= 0 ? getKnot (idx) : null);
+      if (knot == null) {
+         throw new IndexOutOfBoundsException (
+            "knot index "+idx+" out of range [0,"+(getNumKnots()-1)+"]");
+      }
+      return knot;
+   }
+
    /**
     * Returns the number of knots in this list.
     * 
     * @return number of knots
     */
    public int getNumKnots() {
+      if (myColumnarP) {
+         return myColNumKnots;
+      }
       int cnt = 0;
       for (NumericListKnot knot = myHead; knot != null; knot = knot.next) {
          cnt++;
@@ -1003,6 +1504,9 @@ public class NumericList
     * @return true if this list is empty
     */
    public boolean isEmpty() {
+      if (myColumnarP) {
+         return myColNumKnots == 0;
+      }
       return myHead == null;
    }
 
@@ -1015,6 +1519,9 @@ public class NumericList
          knot.myList = null;
       }
       myTail = myHead = myLast = null;
+      myColNumKnots = 0;
+      myColTimes = null;
+      myColChunks = null;
       myMinMaxValid = false;
    }
    
@@ -1024,6 +1531,17 @@ public class NumericList
     * @param s scale factor
     */
    public void scale (double s) {
+      if (myColumnarP) {
+         int numc = (myColNumKnots+COL_CHUNK_SIZE-1) >> COL_CHUNK_SHIFT;
+         for (int c=0; c<numc; c++) {
+            double[] chunk = myColChunks[c];
+            for (int i=0; i<chunk.length; i++) {
+               chunk[i] *= s;
+            }
+         }
+         myMinMaxValid = false;
+         return;
+      }
       for (NumericListKnot knot = myHead; knot != null; knot = knot.next) {
          knot.v.scale (s);
       }      
@@ -1045,6 +1563,13 @@ public class NumericList
       if (winSize <= 0) {
          return;
       }
+      if (myColumnarP) {
+         // smoothing is done on linked knots
+         setColumnar (false);
+         applyMovingAverageSmoothing (winSize);
+         setColumnar (true);
+         return;
+      }
       if (winSize%2 == 0) {
          winSize++;
       }
@@ -1122,6 +1647,13 @@ public class NumericList
          throw new IllegalArgumentException (
             "winSize=" + winSize + "; must be >= deg+1");
       }
+      if (myColumnarP) {
+         // smoothing is done on linked knots
+         setColumnar (false);
+         applySavitzkyGolaySmoothing (winSize, deg);
+         setColumnar (true);
+         return;
+      }
       int minWinSize = (deg%2 == 0 ? deg+1 : deg+2);
       if (winSize%2 == 0) {
          winSize++;
@@ -1176,9 +1708,19 @@ public class NumericList
     * @return iterator over ths knots
     */
    public Iterator<NumericListKnot> iterator() {
+      if (myColumnarP) {
+         return new ColumnarIterator();
+      }
       return new MyIterator (myHead);
    }
 
+   /**
+    * Returns an Iterable over the knots of this list, for internal use.
+    */
+   private Iterable<NumericListKnot> knots() {
+      return this;
+   }
+
    /** 
     * Returns the values of this numeric list as a two dimensional array of
     * doubles. This facilitates reading the values into a matlab array.  The
@@ -1191,7 +1733,7 @@ public class NumericList
    public double[][] getValues () {
       double[][] vals = new double[getNumKnots()][1+myVsize];
       int i=0;
-      for (NumericListKnot knot=myHead; knot!=null; knot=knot.next) {
+      for (NumericListKnot knot : knots()) {
          vals[i][0] = knot.t;
          for (int j=0; j<myVsize; j++) {
             vals[i][j+1] = knot.v.get (j);
@@ -1240,14 +1782,14 @@ public class NumericList
       if (myVsize != list.myVsize || getNumKnots() != list.getNumKnots()) {
          return false;
       }
-      NumericListKnot knot0 = myHead;
-      NumericListKnot knot1 = list.myHead;
-      while (knot0 != null) {
+      Iterator<NumericListKnot> it0 = iterator();
+      Iterator<NumericListKnot> it1 = list.iterator();
+      while (it0.hasNext()) {
+         NumericListKnot knot0 = it0.next();
+         NumericListKnot knot1 = it1.next();
          if (knot0.t != knot1.t || !knot0.v.equals (knot1.v)) {
             return false;
          }
-         knot0 = knot0.next;
-         knot1 = knot1.next;
       }
       return true;
    }
@@ -1290,13 +1832,11 @@ public class NumericList
     */
    public String toString (NumberFormat fmt) {
       StringBuffer sbuf = new StringBuffer (20 * getNumKnots());
-      NumericListKnot knot = myHead;
-      while (knot != null) {
+      for (NumericListKnot knot : knots()) {
          sbuf.append (fmt.format (knot.t));
          sbuf.append (' ');
          sbuf.append (knot.v.toString (fmt));
          sbuf.append ('\n');
-         knot = knot.next;
       }
       return sbuf.toString();
    }
@@ -1322,6 +1862,19 @@ public class NumericList
       l.a2 = new VectorNd (0);
       l.a3 = new VectorNd (0);
       l.myInterpolation = new Interpolation (myInterpolation);
+      l.myColWindow = null;
+      if (myColumnarP) {
+         if (myColTimes != null) {
+            l.myColTimes = myColTimes.clone();
+            l.myColChunks = myColChunks.clone();
+            for (int c=0; c<myColChunks.length; c++) {
+               if (myColChunks[c] != null) {
+                  l.myColChunks[c] = myColChunks[c].clone();
+               }
+            }
+         }
+         return l;
+      }
       NumericListKnot last = null;
       for (NumericListKnot knot = myHead; knot != null; knot = knot.next) {
          NumericListKnot newKnot = new NumericListKnot (knot);
@@ -1352,7 +1905,7 @@ public class NumericList
       pw.println ("interpolation=" + myInterpolation);
       pw.println ("knots=[");
       IndentingPrintWriter.addIndentation (pw, 2);      
-      for (NumericListKnot knot=myHead; knot!=null; knot=knot.next) {
+      for (NumericListKnot knot : knots()) {
          pw.print (fmt.format(knot.t) + " ");
          pw.println (knot.v.toString (fmt));
       }
@@ -7,7 +7,9 @@
 package maspack.interpolation;
 
 import maspack.matrix.VectorNd;
+import maspack.util.RandomGenerator;
 import maspack.util.TestException;
+import maspack.interpolation.Interpolation.Order;
 
 class NumericListTest {
    private int myVsize = 2;
@@ -81,7 +83,159 @@ class NumericListTest {
    public NumericListTest() {
    }
 
-   public void test() {
+   void checkEqual (String msg, NumericList list, NumericList check) {
+      if (!list.equals (check)) {
+         throw new TestException (
+            msg + ": expecting list\n" + check.toString ("%8.3f") +
+            "Got:\n" + list.toString ("%8.3f"));
+      }
+   }
+
+   void checkKnotsEqual (
+      String msg, NumericListKnot knot, NumericListKnot check) {
+      if ((knot == null) != (check == null) ||
+          (knot != null && (knot.t != check.t || !knot.v.equals (check.v)))) {
+         throw new TestException (msg + ": knots differ");
+      }
+   }
+
+   NumericList createRandomList (int vsize, int numk, boolean columnar) {
+      NumericList list = new NumericList (vsize, columnar);
+      // add knots in random order, with some duplicate times
+      for (int k=0; k<numk; k++) {
+         NumericListKnot knot = new NumericListKnot (vsize);
+         knot.t = 0.01*RandomGenerator.nextInt (0, 2*numk);
+         knot.v.setRandom();
+         list.add (knot);
+      }
+      return list;
+   }
+
+   /**
+    * Checks that a columnar list behaves the same as a linked list
+    * containing the same data.
+    */
+   void testColumnar (int vsize, int numk) {
+      NumericList clist = createRandomList (vsize, numk, true);
+      NumericList llist = (NumericList)clist.clone();
+      llist.setColumnar (false);
+      if (!clist.isColumnar() || llist.isColumnar()) {
+         throw new TestException ("Columnar setting not as expected");
+      }
+      if (clist.getNumKnots() != llist.getNumKnots()) {
+         throw new TestException (
+            "Columnar list has " + clist.getNumKnots() +
+            " knots, expecting " + llist.getNumKnots());
+      }
+      checkEqual ("clone", clist, llist);
+      double tmax = 0.01*2*numk;
+
+      VectorNd vc = new VectorNd (vsize);
+      VectorNd vl = new VectorNd (vsize);
+      for (Order order : Order.values()) {
+         for (boolean extend : new boolean[] { false, true }) {
+            for (int i=0; i<100; i++) {
+               double t = RandomGenerator.nextDouble (-0.1, tmax+0.1);
+               clist.interpolate (vc, t, order, extend, null);
+               llist.interpolate (vl, t, order, extend, null);
+               if (!vc.epsilonEquals (vl, 1e-12)) {
+                  throw new TestException (
+                     order + " interpolation at time " + t + "\n" +
+                     "Got " + vc.toString ("%8.3f") +
+                     ", expected " + vl.toString ("%8.3f"));
+               }
+            }
+         }
+      }
+      VectorNd minc = new VectorNd();
+      VectorNd maxc = new VectorNd();
+      VectorNd minl = new VectorNd();
+      VectorNd maxl = new VectorNd();
+      clist.getMinMaxValues (minc, maxc);
+      llist.getMinMaxValues (minl, maxl);
+      if (!minc.equals (minl) || !maxc.equals (maxl)) {
+         throw new TestException ("Min/max values differ");
+      }
+      // knot queries should match and not change the storage mode
+      checkKnotsEqual ("getFirst", clist.getFirst(), llist.getFirst());
+      checkKnotsEqual ("getLast", clist.getLast(), llist.getLast());
+      if (clist.getFirstTime() != llist.getFirstTime() ||
+          clist.getLastTime() != llist.getLastTime()) {
+         throw new TestException ("First or last times differ");
+      }
+      for (int i=0; i<20; i++) {
+         double t = RandomGenerator.nextDouble (-0.1, tmax+0.1);
+         int idx = clist.findKnotIndexAtOrBefore (t);
+         if (idx != llist.findKnotIndexAtOrBefore (t)) {
+            throw new TestException ("Knot index differs at time " + t);
+         }
+         if (idx >= 0) {
+            clist.getKnotValues (vc, idx);
+            llist.getKnotValues (vl, idx);
+            if (clist.getKnotTime (idx) != llist.getKnotTime (idx) ||
+                !vc.equals (vl)) {
+               throw new TestException ("Knot " + idx + " differs");
+            }
+            checkKnotsEqual (
+               "getKnot", clist.getKnot (idx), llist.getKnot (idx));
+         }
+         checkKnotsEqual (
+            "findKnotAtOrBefore",
+            clist.findKnotAtOrBefore (t, null),
+            llist.findKnotAtOrBefore (t, null));
+         checkKnotsEqual (
+            "findKnotClosest",
+            clist.findKnotClosest (t), llist.findKnotClosest (t));
+      }
+      if (!clist.isColumnar()) {
+         throw new TestException ("List not columnar after knot queries");
+      }
+      double[][] vals = clist.getValues();
+      NumericList check = new NumericList (vsize, true);
+      check.setValues (vals);
+      checkEqual ("setValues", check, llist);
+
+      clist.scale (2.0);
+      llist.scale (2.0);
+      clist.shiftTime (1.0);
+      llist.shiftTime (1.0);
+      checkEqual ("scale and shift", clist, llist);
+
+      // remove some knots, and clear the last part of the list
+      for (int i=0; i<numk/4; i++) {
+         double t = 1.0 + 0.01*RandomGenerator.nextInt (0, 2*numk);
+         NumericListKnot cknot = clist.remove (t);
+         NumericListKnot lknot = llist.remove (t);
+         if ((cknot == null) != (lknot == null) ||
+             (cknot != null && !cknot.v.equals (lknot.v))) {
+            throw new TestException ("Removed knot differs at time " + t);
+         }
+      }
+      checkEqual ("remove", clist, llist);
+      if (llist.getNumKnots() > 1) {
+         NumericListKnot knot = llist.getKnot (llist.getNumKnots()/2);
+         clist.clearAfter (new NumericListKnot (knot));
+         llist.clearAfter (knot);
+         checkEqual ("clearAfter", clist, llist);
+      }
+      clist.removeFirst (3);
+      llist.removeFirst (3);
+      checkEqual ("removeFirst", clist, llist);
+      // conversion back and forth should preserve the contents
+      clist.setColumnar (false);
+      checkEqual ("to linked", clist, llist);
+      clist.setColumnar (true);
+      checkEqual ("to columnar", clist, llist);
+      clist.applyMovingAverageSmoothing (5);
+      llist.applyMovingAverageSmoothing (5);
+      if (!clist.isColumnar()) {
+         throw new TestException ("List not columnar after smoothing");
+      }
+      checkEqual ("smoothing", clist, llist);
+   }
+
+   void testBasic (boolean columnar) {
+      list = new NumericList (myVsize, columnar);
       list.add (newKnot (0, 0, 0));
       list.add (newKnot (2, 4, 0));
       list.add (newKnot (4, 0, 0));
@@ -138,8 +292,18 @@ class NumericListTest {
 
    }
 
+   public void test() {
+      testBasic (false);
+      testBasic (true);
+      testColumnar (1, 10);
+      testColumnar (3, 1000);
+      testColumnar (4, 600);
+      testColumnar (7, 300);
+   }
+
    public static void main (String[] args) {
       NumericListTest tester = new NumericListTest();
+      RandomGenerator.setSeed (0x1234);
 
       try {
          tester.test();
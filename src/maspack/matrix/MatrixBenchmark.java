@@ -0,0 +1,143 @@
+package maspack.matrix;
+
+import maspack.util.Benchmark;
+import maspack.util.RandomGenerator;
+
+/**
+ * Benchmarks for sparse block and BSR matrix operations, and the small block
+ * kernels in {@link MatrixMulAdd}. Run with <code>-help</code> for options;
+ * results can be saved and compared against a baseline to detect
+ * regressions.
+ */
+public class MatrixBenchmark {
+
+   /**
+    * Creates a symmetric, diagonally dominant sparse block matrix of 3 x 3
+    * blocks, whose off-diagonal blocks lie within a given block bandwidth and
+    * are present with a given probability. This gives a structure that
+    * roughly resembles a stiffness matrix.
+    *
+    * @param nblks number of block rows and columns
+    * @param bandwidth maximum distance of an off-diagonal block from the
+    * diagonal
+    * @param density probability that an off-diagonal block within the
+    * band is present
+    * @return created matrix
+    */
+   public static SparseBlockMatrix createBandedMatrix (
+      int nblks, int bandwidth, double density) {
+
+      int[] sizes = new int[nblks];
+      for (int i=0; i<nblks; i++) {
+         sizes[i] = 3;
+      }
+      SparseBlockMatrix S = new SparseBlockMatrix (sizes, sizes);
+      double[] offDiagNorms = new double[nblks];
+      for (int i=0; i<nblks; i++) {
+         for (int j=i+1; j<Math.min(nblks,i+bandwidth+1); j++) {
+            if (RandomGenerator.nextDouble() < density) {
+               Matrix3d blk = new Matrix3d();
+               blk.setRandom();
+               S.addBlock (i, j, blk);
+               Matrix3d blkT = new Matrix3d();
+               blkT.transpose (blk);
+               S.addBlock (j, i, blkT);
+               offDiagNorms[i] += blk.infinityNorm();
+               offDiagNorms[j] += blk.infinityNorm();
+            }
+         }
+      }
+      for (int i=0; i<nblks; i++) {
+         // diagonal blocks are R^T R plus enough to ensure dominance
+         Matrix3d R = new Matrix3d();
+         R.setRandom();
+         Matrix3d D = new Matrix3d();
+         D.mulTransposeLeft (R, R);
+         D.addDiagonal (offDiagNorms[i]+1);
+         S.addBlock (i, i, D);
+      }
+      return S;
+   }
+
+   static void addSparseMul (Benchmark bench, int nblks) {
+      bench.add ("SparseBlockMatrix.mul/"+nblks, () -> {
+            SparseBlockMatrix S = createBandedMatrix (nblks, 10, 0.5);
+            VectorNd x = new VectorNd (S.colSize());
+            VectorNd y = new VectorNd (S.rowSize());
+            x.setRandom();
+            return () -> S.mul (y, x);
+         });
+      bench.add ("SparseBlockMatrix.mulTranspose/"+nblks, () -> {
+            SparseBlockMatrix S = createBandedMatrix (nblks, 10, 0.5);
+            VectorNd x = new VectorNd (S.rowSize());
+            VectorNd y = new VectorNd (S.colSize());
+            x.setRandom();
+            return () -> S.mulTranspose (y, x);
+         });
+      bench.add ("SparseBSRMatrix.mul/"+nblks, () -> {
+            SparseBSRMatrix B = new SparseBSRMatrix (
+               createBandedMatrix (nblks, 10, 0.5));
+            VectorNd x = new VectorNd (B.colSize());
+            VectorNd y = new VectorNd (B.rowSize());
+            x.setRandom();
+            return () -> B.mul (y, x);
+         });
+      bench.add ("SparseBSRMatrix.setValues/"+nblks, () -> {
+            SparseBlockMatrix S = createBandedMatrix (nblks, 10, 0.5);
+            SparseBSRMatrix B = new SparseBSRMatrix (S);
+            return () -> B.setValues (S);
+         });
+      bench.add ("SparseBlockMatrix.getCRSValues/"+nblks, () -> {
+            SparseBlockMatrix S = createBandedMatrix (nblks, 10, 0.5);
+            double[] vals = new double[S.numNonZeroVals()];
+            return () -> S.getCRSValues (vals, Matrix.Partition.Full);
+         });
+      bench.add ("SparseBSRMatrix.getCRSValues/"+nblks, () -> {
+            SparseBSRMatrix B = new SparseBSRMatrix (
+               createBandedMatrix (nblks, 10, 0.5));
+            double[] vals = new double[B.numNonZeroVals()];
+            return () -> B.getCRSValues (vals, Matrix.Partition.Full);
+         });
+   }
+
+   /**
+    * Adds the benchmarks of this suite to a benchmark harness.
+    *
+    * @param bench harness to add the benchmarks to
+    */
+   public static void addBenchmarks (Benchmark bench) {
+      for (int nblks : new int[] { 100, 1000, 10000 }) {
+         addSparseMul (bench, nblks);
+      }
+      bench.add ("MatrixMulAdd.mulAdd3x3", () -> {
+            Matrix3d MR = new Matrix3d();
+            Matrix3d M1 = new Matrix3d();
+            Matrix3d M2 = new Matrix3d();
+            M1.setRandom();
+            M2.setRandom();
+            return () -> MatrixMulAdd.mulAdd3x3 (MR, M1, M2);
+         });
+      bench.add ("MatrixMulAdd.mulAdd3x6", () -> {
+            Matrix3x6 MR = new Matrix3x6();
+            Matrix3d M1 = new Matrix3d();
+            Matrix3x6 M2 = new Matrix3x6();
+            M1.setRandom();
+            M2.setRandom();
+            return () -> MatrixMulAdd.mulAdd3x6 (MR, M1, M2);
+         });
+      bench.add ("MatrixMulAdd.mulAdd6x6", () -> {
+            Matrix6d MR = new Matrix6d();
+            Matrix6d M1 = new Matrix6d();
+            Matrix6d M2 = new Matrix6d();
+            M1.setRandom();
+            M2.setRandom();
+            return () -> MatrixMulAdd.mulAdd6x6 (MR, M1, M2);
+         });
+   }
+
+   public static void main (String[] args) {
+      Benchmark bench = new Benchmark();
+      addBenchmarks (bench);
+      System.exit (bench.runAndReport ("maspack.matrix.MatrixBenchmark", args));
+   }
+}
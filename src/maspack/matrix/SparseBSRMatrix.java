@@ -0,0 +1,783 @@
+package maspack.matrix;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import maspack.util.TestException;
+
+/**
+ * Sparse matrix stored in block compressed row (BSR) format. The block
+ * structure is frozen from a {@link SparseBlockMatrix}, after which the
+ * values of all blocks are kept in a single contiguous array, with the
+ * block column indices of each block row stored in a parallel integer
+ * array. This allows matrix-vector products and CRS export to be performed
+ * with streaming loops, without traversing the linked block lists or
+ * allocating per-block objects.
+ *
+ * <p>The structure of the matrix is fixed once it has been created. Values
+ * may be updated in place, either by copying them from a {@link
+ * SparseBlockMatrix} with the same structure, using {@link
+ * #setValues(SparseBlockMatrix)}, or by setting individual elements that lie
+ * within existing blocks. Attempting to set a non-zero element outside the
+ * block structure causes an exception.
+ *
+ * <p>Each block is stored densely in row-major order. Blocks which are
+ * themselves sparse (such as {@link Matrix3x3DiagBlock}) are therefore
+ * expanded, so that the CRS structure produced by this matrix may contain
+ * explicit zeros that are absent from the CRS structure of the original
+ * {@link SparseBlockMatrix}.
+ */
+public class SparseBSRMatrix extends SparseMatrixBase {
+
+   protected int myNumBlockRows;
+   protected int myNumBlockCols;
+   protected int[] myRowOffsets;  // starting row index for each block row
+   protected int[] myColOffsets;  // starting col index for each block col
+
+   protected int[] myRowBlkOffs;  // first block of each block row
+   protected int[] myBlkCols;     // block column index of each block
+   protected int[] myValOffs;     // offset of each block in myValues
+   protected boolean[] myBlkDense;// true if the source block is dense
+   protected double[] myValues;   // block values, row-major within blocks
+
+   /**
+    * Creates a BSR matrix whose block structure and values are copied from a
+    * sparse block matrix.
+    *
+    * @param S matrix providing the block structure and values
+    */
+   public SparseBSRMatrix (SparseBlockMatrix S) {
+      setStructure (S);
+      setValues (S);
+   }
+
+   /**
+    * Sets the block structure of this matrix to that of a sparse block
+    * matrix. Existing values are discarded and all values are set to zero.
+    *
+    * @param S matrix providing the block structure
+    */
+   public void setStructure (SparseBlockMatrix S) {
+      myNumBlockRows = S.numBlockRows();
+      myNumBlockCols = S.numBlockCols();
+      myRowOffsets = new int[myNumBlockRows+1];
+      myColOffsets = new int[myNumBlockCols+1];
+      for (int bi=0; bi<=myNumBlockRows; bi++) {
+         myRowOffsets[bi] = S.getBlockRowOffset (bi);
+      }
+      for (int bj=0; bj<=myNumBlockCols; bj++) {
+         myColOffsets[bj] = S.getBlockColOffset (bj);
+      }
+      int nblks = S.numBlocks();
+      myRowBlkOffs = new int[myNumBlockRows+1];
+      myBlkCols = new int[nblks];
+      myValOffs = new int[nblks+1];
+      myBlkDense = new boolean[nblks];
+      int k = 0;
+      int off = 0;
+      int[] counts = new int[0];
+      for (int bi=0; bi<myNumBlockRows; bi++) {
+         myRowBlkOffs[bi] = k;
+         for (MatrixBlock blk=S.firstBlockInRow(bi); blk!=null; blk=blk.next()) {
+            int nr = blk.rowSize();
+            int nc = blk.colSize();
+            myBlkCols[k] = blk.getBlockCol();
+            myValOffs[k] = off;
+            // determine whether the block reports all its entries as
+            // non-zero, in which case its CRS values can be copied directly
+            if (counts.length < nr) {
+               counts = new int[nr];
+            }
+            Arrays.fill (counts, 0, nr, 0);
+            blk.addNumNonZerosByRow (counts, 0, Partition.Full);
+            int nnz = 0;
+            for (int i=0; i<nr; i++) {
+               nnz += counts[i];
+            }
+            myBlkDense[k] = (nnz == nr*nc);
+            off += nr*nc;
+            k++;
+         }
+      }
+      myRowBlkOffs[myNumBlockRows] = k;
+      myValOffs[k] = off;
+      myValues = new double[off];
+   }
+
+   /**
+    * Returns <code>true</code> if the block structure of this matrix
+    * matches that of a sparse block matrix.
+    *
+    * @param S matrix to check
+    * @return <code>true</code> if the block structures match
+    */
+   public boolean structureEquals (SparseBlockMatrix S) {
+      if (S.numBlockRows() != myNumBlockRows ||
+          S.numBlockCols() != myNumBlockCols ||
+          S.numBlocks() != numBlocks()) {
+         return false;
+      }
+      for (int bi=0; bi<=myNumBlockRows; bi++) {
+         if (S.getBlockRowOffset (bi) != myRowOffsets[bi]) {
+            return false;
+         }
+      }
+      for (int bj=0; bj<=myNumBlockCols; bj++) {
+         if (S.getBlockColOffset (bj) != myColOffsets[bj]) {
+            return false;
+         }
+      }
+      for (int bi=0; bi<myNumBlockRows; bi++) {
+         int k = myRowBlkOffs[bi];
+         for (MatrixBlock blk=S.firstBlockInRow(bi); blk!=null; blk=blk.next()) {
+            if (k == myRowBlkOffs[bi+1] || blk.getBlockCol() != myBlkCols[k]) {
+               return false;
+            }
+            k++;
+         }
+         if (k != myRowBlkOffs[bi+1]) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Updates the values of this matrix from those of a sparse block matrix
+    * with the same block structure. The structure is assumed to be the same;
+    * only the block column indices are checked during the copy.
+    *
+    * @param S matrix providing the values
+    * @throws IllegalArgumentException if the block structure of
+    * <code>S</code> differs from that of this matrix
+    */
+   public void setValues (SparseBlockMatrix S) {
+      if (S.numBlockRows() != myNumBlockRows || S.numBlocks() != numBlocks()) {
+         throw new IllegalArgumentException (
+            "Block structure of S differs from this matrix");
+      }
+      int[] offsets = new int[0];
+      double[] buf = new double[0];
+      for (int bi=0; bi<myNumBlockRows; bi++) {
+         int k = myRowBlkOffs[bi];
+         int kend = myRowBlkOffs[bi+1];
+         for (MatrixBlock blk=S.firstBlockInRow(bi); blk!=null; blk=blk.next()) {
+            if (k == kend || blk.getBlockCol() != myBlkCols[k]) {
+               throw new IllegalArgumentException (
+                  "Block structure of S differs from this matrix in block row "
+                  + bi);
+            }
+            int nr = blk.rowSize();
+            int nc = blk.colSize();
+            int voff = myValOffs[k];
+            if (myBlkDense[k]) {
+               // CRS values of a dense block are written directly into
+               // place, one row at a time
+               if (offsets.length < nr) {
+                  offsets = new int[nr];
+               }
+               for (int i=0; i<nr; i++) {
+                  offsets[i] = voff + i*nc;
+               }
+               blk.getBlockCRSValues (myValues, offsets, Partition.Full);
+            }
+            else {
+               if (buf.length < nr*nc) {
+                  buf = new double[nr*nc];
+               }
+               blk.get (buf);
+               System.arraycopy (buf, 0, myValues, voff, nr*nc);
+            }
+            k++;
+         }
+         if (k != kend) {
+            throw new IllegalArgumentException (
+               "Block structure of S differs from this matrix in block row "
+               + bi);
+         }
+      }
+   }
+
+   /**
+    * Returns the array containing the values of all blocks. Blocks are
+    * stored contiguously in block row order, and each block is stored in
+    * row-major order, beginning at the offset returned by {@link
+    * #getBlockValueOffset}. The array is used directly by this matrix, and
+    * so can be used to update values in place.
+    *
+    * @return block value array
+    */
+   public double[] getValues() {
+      return myValues;
+   }
+
+   /**
+    * Returns the offset of the <code>k</code>-th block within the value
+    * array returned by {@link #getValues}. <code>k</code> may equal the
+    * number of blocks, in which case the total number of stored values is
+    * returned.
+    *
+    * @param k block index
+    * @return offset of the block's values
+    */
+   public int getBlockValueOffset (int k) {
+      return myValOffs[k];
+   }
+
+   /**
+    * Returns the block column index of the <code>k</code>-th block.
+    *
+    * @param k block index
+    * @return block column index
+    */
+   public int getBlockCol (int k) {
+      return myBlkCols[k];
+   }
+
+   /**
+    * Returns the index of the first block in block row <code>bi</code>.
+    * Blocks within a row are sorted by increasing block column.
+    * <code>bi</code> may equal the number of block rows, in which case
+    * the total number of blocks is returned.
+    *
+    * @param bi block row index
+    * @return index of the first block in the row
+    */
+   public int getRowBlockOffset (int bi) {
+      return myRowBlkOffs[bi];
+   }
+
+   /**
+    * Returns the number of blocks in this matrix.
+    *
+    * @return number of blocks
+    */
+   public int numBlocks() {
+      return myBlkCols.length;
+   }
+
+   public int numBlockRows() {
+      return myNumBlockRows;
+   }
+
+   public int numBlockCols() {
+      return myNumBlockCols;
+   }
+
+   public int getBlockRowOffset (int bi) {
+      return myRowOffsets[bi];
+   }
+
+   public int getBlockColOffset (int bj) {
+      return myColOffsets[bj];
+   }
+
+   public int rowSize() {
+      return myRowOffsets[myNumBlockRows];
+   }
+
+   public int colSize() {
+      return myColOffsets[myNumBlockCols];
+   }
+
+   public boolean isFixedSize() {
+      return true;
+   }
+
+   private int maxBlockRowSize() {
+      int max = 0;
+      for (int bi=0; bi<myNumBlockRows; bi++) {
+         max = Math.max (max, myRowOffsets[bi+1]-myRowOffsets[bi]);
+      }
+      return max;
+   }
+
+   private int getBlockIndex (int bi, int j) {
+      for (int k=myRowBlkOffs[bi]; k<myRowBlkOffs[bi+1]; k++) {
+         int colOff = myColOffsets[myBlkCols[k]];
+         if (j < colOff) {
+            return -1;
+         }
+         else if (j < myColOffsets[myBlkCols[k]+1]) {
+            return k;
+         }
+      }
+      return -1;
+   }
+
+   private int getBlockRowIndex (int i) {
+      int bi = Arrays.binarySearch (myRowOffsets, 0, myNumBlockRows, i);
+      // rows have nonzero size, so offsets are unique
+      return bi >= 0 ? bi : -bi-2;
+   }
+
+   private int getAlignedBlockIndex (int[] offsets, int num, int idx) {
+      int b = Arrays.binarySearch (offsets, 0, num+1, idx);
+      return b >= 0 ? b : -1;
+   }
+
+   public double get (int i, int j) {
+      if (i < 0 || i >= rowSize() || j < 0 || j >= colSize()) {
+         throw new ArrayIndexOutOfBoundsException ("" + i + "," + j);
+      }
+      int bi = getBlockRowIndex (i);
+      int k = getBlockIndex (bi, j);
+      if (k == -1) {
+         return 0;
+      }
+      int bj = myBlkCols[k];
+      int nc = myColOffsets[bj+1]-myColOffsets[bj];
+      return myValues[
+         myValOffs[k] + (i-myRowOffsets[bi])*nc + (j-myColOffsets[bj])];
+   }
+
+   /**
+    * Sets an element of this matrix. The element must lie within an
+    * existing block unless <code>val</code> is zero.
+    *
+    * @param i element row index
+    * @param j element column index
+    * @param val element value
+    * @throws IllegalArgumentException if the element lies outside the
+    * block structure and <code>val</code> is non-zero
+    */
+   public void set (int i, int j, double val) {
+      if (i < 0 || i >= rowSize() || j < 0 || j >= colSize()) {
+         throw new ArrayIndexOutOfBoundsException ("" + i + "," + j);
+      }
+      int bi = getBlockRowIndex (i);
+      int k = getBlockIndex (bi, j);
+      if (k == -1) {
+         if (val != 0) {
+            throw new IllegalArgumentException (
+               "Element ("+i+","+j+") is outside the block structure");
+         }
+         return;
+      }
+      int bj = myBlkCols[k];
+      int nc = myColOffsets[bj+1]-myColOffsets[bj];
+      myValues[
+         myValOffs[k] + (i-myRowOffsets[bi])*nc + (j-myColOffsets[bj])] = val;
+   }
+
+   /**
+    * {@inheritDoc}
+    *
+    * <p>All specified elements must lie within the existing block structure.
+    */
+   public void set (double[] values, int[] indices, int nvals) {
+      if (values.length < nvals) {
+         throw new IllegalArgumentException (
+            "nvals exceeds length of values array");
+      }
+      if (indices.length < 2 * nvals) {
+         throw new IllegalArgumentException ("insufficient index values");
+      }
+      setZero();
+      for (int k = 0; k < nvals; k++) {
+         set (indices[2*k], indices[2*k+1], values[k]);
+      }
+   }
+
+   public void setZero() {
+      Arrays.fill (myValues, 0);
+   }
+
+   public void scale (double s) {
+      for (int k=0; k<myValues.length; k++) {
+         myValues[k] *= s;
+      }
+   }
+
+   public void negate() {
+      scale (-1);
+   }
+
+   /**
+    * Sets the values of all blocks to random values. The block structure is
+    * unchanged.
+    */
+   public void setRandom (
+      double lower, double upper, Random generator, boolean symmetric) {
+      double range = upper - lower;
+      for (int k=0; k<myValues.length; k++) {
+         myValues[k] = generator.nextDouble()*range + lower;
+      }
+   }
+
+   protected void mulVec (
+      double[] res, double[] vec, int r0, int nr, int c0, int nc) {
+      for (int i=0; i<nr; i++) {
+         res[i] = 0;
+      }
+      mulAddVec (res, vec, r0, nr, c0, nc);
+   }
+
+   protected void mulAddVec (
+      double[] res, double[] vec, int r0, int nr, int c0, int nc) {
+
+      int rowf = r0 + nr;
+      int colf = c0 + nc;
+      double[] vals = myValues;
+      for (int bi=getBlockRowIndex(r0);
+           bi<myNumBlockRows && myRowOffsets[bi]<rowf; bi++) {
+         int rowOff = myRowOffsets[bi]-r0;
+         int bnr = myRowOffsets[bi+1]-myRowOffsets[bi];
+         for (int k=myRowBlkOffs[bi]; k<myRowBlkOffs[bi+1]; k++) {
+            int bj = myBlkCols[k];
+            int colOff = myColOffsets[bj];
+            if (colOff >= colf) {
+               break;
+            }
+            else if (colOff >= c0) {
+               colOff -= c0;
+               int bnc = myColOffsets[bj+1]-myColOffsets[bj];
+               int v = myValOffs[k];
+               if (bnr == 3 && bnc == 3) {
+                  double x0 = vec[colOff];
+                  double x1 = vec[colOff+1];
+                  double x2 = vec[colOff+2];
+                  res[rowOff  ] += vals[v  ]*x0 + vals[v+1]*x1 + vals[v+2]*x2;
+                  res[rowOff+1] += vals[v+3]*x0 + vals[v+4]*x1 + vals[v+5]*x2;
+                  res[rowOff+2] += vals[v+6]*x0 + vals[v+7]*x1 + vals[v+8]*x2;
+               }
+               else {
+                  for (int i=0; i<bnr; i++) {
+                     double sum = 0;
+                     for (int j=0; j<bnc; j++) {
+                        sum += vals[v++]*vec[colOff+j];
+                     }
+                     res[rowOff+i] += sum;
+                  }
+               }
+            }
+         }
+      }
+   }
+
+   protected void mulTransposeVec (
+      double[] res, double[] vec, int r0, int nr, int c0, int nc) {
+      // note that here r0, nr, c0 and nc refer to the *transposed* matrix
+      for (int j=0; j<nr; j++) {
+         res[j] = 0;
+      }
+      mulTransposeAddVec (res, vec, r0, nr, c0, nc);
+   }
+
+   protected void mulTransposeAddVec (
+      double[] res, double[] vec, int r0, int nr, int c0, int nc) {
+
+      int rowf = c0 + nc;
+      int colf = r0 + nr;
+      double[] vals = myValues;
+      for (int bi=getBlockRowIndex(c0);
+           bi<myNumBlockRows && myRowOffsets[bi]<rowf; bi++) {
+         int rowOff = myRowOffsets[bi]-c0;
+         int bnr = myRowOffsets[bi+1]-myRowOffsets[bi];
+         for (int k=myRowBlkOffs[bi]; k<myRowBlkOffs[bi+1]; k++) {
+            int bj = myBlkCols[k];
+            int colOff = myColOffsets[bj];
+            if (colOff >= colf) {
+               break;
+            }
+            else if (colOff >= r0) {
+               colOff -= r0;
+               int bnc = myColOffsets[bj+1]-myColOffsets[bj];
+               int v = myValOffs[k];
+               if (bnr == 3 && bnc == 3) {
+                  double x0 = vec[rowOff];
+                  double x1 = vec[rowOff+1];
+                  double x2 = vec[rowOff+2];
+                  res[colOff  ] += vals[v  ]*x0 + vals[v+3]*x1 + vals[v+6]*x2;
+                  res[colOff+1] += vals[v+1]*x0 + vals[v+4]*x1 + vals[v+7]*x2;
+                  res[colOff+2] += vals[v+2]*x0 + vals[v+5]*x1 + vals[v+8]*x2;
+               }
+               else {
+                  for (int i=0; i<bnr; i++) {
+                     double xi = vec[rowOff+i];
+                     for (int j=0; j<bnc; j++) {
+                        res[colOff+j] += vals[v++]*xi;
+                     }
+                  }
+               }
+            }
+         }
+      }
+   }
+
+   protected void mulCheckArgs (
+      VectorNd vr, VectorNd v1, int r0, int nr, int c0, int nc) {
+      super.mulCheckArgs (vr, v1, r0, nr, c0, nc);
+      if (getAlignedBlockIndex (myRowOffsets, myNumBlockRows, r0) == -1 ||
+          getAlignedBlockIndex (myRowOffsets, myNumBlockRows, r0+nr) == -1 ||
+          getAlignedBlockIndex (myColOffsets, myNumBlockCols, c0) == -1 ||
+          getAlignedBlockIndex (myColOffsets, myNumBlockCols, c0+nc) == -1) {
+         throw new ImproperSizeException (
+            "Specified submatrix "+getSubMatrixStr(r0,nr,c0,nc)+
+            " is not block aligned");
+      }
+   }
+
+   protected void mulTransposeCheckArgs (
+      VectorNd vr, VectorNd v1, int r0, int nr, int c0, int nc) {
+      super.mulTransposeCheckArgs (vr, v1, r0, nr, c0, nc);
+      if (getAlignedBlockIndex (myColOffsets, myNumBlockCols, r0) == -1 ||
+          getAlignedBlockIndex (myColOffsets, myNumBlockCols, r0+nr) == -1 ||
+          getAlignedBlockIndex (myRowOffsets, myNumBlockRows, c0) == -1 ||
+          getAlignedBlockIndex (myRowOffsets, myNumBlockRows, c0+nc) == -1) {
+         throw new ImproperSizeException (
+            "Specified submatrix "+getSubMatrixStr(r0,nr,c0,nc)+
+            " is not block aligned");
+      }
+   }
+
+   private void checkCRSArgs (Partition part, int numRows, int numCols) {
+      if (numRows > rowSize() || numCols > colSize()) {
+         throw new IllegalArgumentException (
+            "specified sub-matrix is out of bounds");
+      }
+      if (getAlignedBlockIndex (myRowOffsets, myNumBlockRows, numRows) == -1 ||
+          getAlignedBlockIndex (myColOffsets, myNumBlockCols, numCols) == -1) {
+         throw new IllegalArgumentException (
+            "submatrix "+getSubMatrixStr(0,numRows-1,0,numCols-1)+
+            " is not block aligned");
+      }
+      if (part != Partition.Full && part != Partition.UpperTriangular) {
+         throw new UnsupportedOperationException (
+            "Matrix partition " + part + " not supported");
+      }
+   }
+
+   /**
+    * Returns the index of the first column within the k-th block that is
+    * stored for row i, given the partition. Returns the block's column size
+    * if no columns are stored.
+    */
+   private int firstStoredCol (int k, int i, Partition part) {
+      if (part == Partition.UpperTriangular) {
+         int colOff = myColOffsets[myBlkCols[k]];
+         int bnc = myColOffsets[myBlkCols[k]+1]-colOff;
+         return Math.min (bnc, Math.max (0, i-colOff));
+      }
+      else {
+         return 0;
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public int numNonZeroVals (Partition part, int numRows, int numCols) {
+      checkCRSArgs (part, numRows, numCols);
+      int nnz = 0;
+      for (int bi=0; bi<myNumBlockRows && myRowOffsets[bi]<numRows; bi++) {
+         for (int k=myRowBlkOffs[bi]; k<myRowBlkOffs[bi+1]; k++) {
+            int bj = myBlkCols[k];
+            if (myColOffsets[bj] >= numCols) {
+               break;
+            }
+            int bnc = myColOffsets[bj+1]-myColOffsets[bj];
+            for (int i=myRowOffsets[bi]; i<myRowOffsets[bi+1]; i++) {
+               nnz += bnc-firstStoredCol (k, i, part);
+            }
+         }
+      }
+      return nnz;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public int getCRSIndices (
+      int[] colIdxs, int[] rowOffs, Partition part, int numRows, int numCols) {
+      checkCRSArgs (part, numRows, numCols);
+      int off = 0;
+      for (int bi=0; bi<myNumBlockRows && myRowOffsets[bi]<numRows; bi++) {
+         int kend = myRowBlkOffs[bi+1];
+         for (int i=myRowOffsets[bi]; i<myRowOffsets[bi+1]; i++) {
+            if (rowOffs != null) {
+               rowOffs[i] = off+1;
+            }
+            for (int k=myRowBlkOffs[bi]; k<kend; k++) {
+               int colOff = myColOffsets[myBlkCols[k]];
+               if (colOff >= numCols) {
+                  break;
+               }
+               int bnc = myColOffsets[myBlkCols[k]+1]-colOff;
+               for (int j=firstStoredCol(k,i,part); j<bnc; j++) {
+                  colIdxs[off++] = colOff+j+1;
+               }
+            }
+         }
+      }
+      if (rowOffs != null) {
+         rowOffs[numRows] = off+1;
+      }
+      return off;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public int getCRSValues (
+      double[] vals, Partition part, int numRows, int numCols) {
+      checkCRSArgs (part, numRows, numCols);
+      boolean upper = (part == Partition.UpperTriangular);
+      int[] rowPos = new int[maxBlockRowSize()];
+      int off = 0;
+      for (int bi=0; bi<myNumBlockRows && myRowOffsets[bi]<numRows; bi++) {
+         int kend = myRowBlkOffs[bi+1];
+         int rowOff = myRowOffsets[bi];
+         int bnr = myRowOffsets[bi+1]-rowOff;
+         // find where each row starts in vals
+         for (int i=0; i<bnr; i++) {
+            rowPos[i] = 0;
+         }
+         for (int k=myRowBlkOffs[bi]; k<kend; k++) {
+            int colOff = myColOffsets[myBlkCols[k]];
+            if (colOff >= numCols) {
+               break;
+            }
+            int bnc = myColOffsets[myBlkCols[k]+1]-colOff;
+            for (int i=0; i<bnr; i++) {
+               rowPos[i] += bnc - (upper ? firstStoredCol(k,rowOff+i,part) : 0);
+            }
+         }
+         for (int i=0; i<bnr; i++) {
+            int cnt = rowPos[i];
+            rowPos[i] = off;
+            off += cnt;
+         }
+         // then traverse the blocks once, copying each of their rows
+         for (int k=myRowBlkOffs[bi]; k<kend; k++) {
+            int colOff = myColOffsets[myBlkCols[k]];
+            if (colOff >= numCols) {
+               break;
+            }
+            int bnc = myColOffsets[myBlkCols[k]+1]-colOff;
+            int v = myValOffs[k];
+            if (!upper && bnc == 3) {
+               for (int i=0; i<bnr; i++) {
+                  int pos = rowPos[i];
+                  vals[pos  ] = myValues[v  ];
+                  vals[pos+1] = myValues[v+1];
+                  vals[pos+2] = myValues[v+2];
+                  rowPos[i] = pos+3;
+                  v += 3;
+               }
+            }
+            else {
+               for (int i=0; i<bnr; i++) {
+                  int j0 = (upper ? firstStoredCol(k,rowOff+i,part) : 0);
+                  int pos = rowPos[i];
+                  for (int j=j0; j<bnc; j++) {
+                     vals[pos++] = myValues[v+j];
+                  }
+                  rowPos[i] = pos;
+                  v += bnc;
+               }
+            }
+         }
+      }
+      return off;
+   }
+
+   /**
+    * Traverses the stored entries of a sub-matrix in row-major order and
+    * places their row indices and/or values in CCS order. Column offsets
+    * are computed from column counts on a first pass.
+    */
+   private int getCCSData (
+      int[] rowIdxs, int[] colOffs, double[] vals, Partition part,
+      int numRows, int numCols) {
+
+      checkCRSArgs (part, numRows, numCols);
+      int[] offs = new int[numCols+1];
+      for (int pass=0; pass<2; pass++) {
+         for (int bi=0; bi<myNumBlockRows && myRowOffsets[bi]<numRows; bi++) {
+            int rowOff = myRowOffsets[bi];
+            for (int k=myRowBlkOffs[bi]; k<myRowBlkOffs[bi+1]; k++) {
+               int colOff = myColOffsets[myBlkCols[k]];
+               if (colOff >= numCols) {
+                  break;
+               }
+               int bnc = myColOffsets[myBlkCols[k]+1]-colOff;
+               for (int i=rowOff; i<myRowOffsets[bi+1]; i++) {
+                  int v = myValOffs[k]+(i-rowOff)*bnc;
+                  for (int j=firstStoredCol(k,i,part); j<bnc; j++) {
+                     if (pass == 0) {
+                        offs[colOff+j]++;
+                     }
+                     else {
+                        int off = offs[colOff+j]++;
+                        if (rowIdxs != null) {
+                           rowIdxs[off] = i+1;
+                        }
+                        if (vals != null) {
+                           vals[off] = myValues[v+j];
+                        }
+                     }
+                  }
+               }
+            }
+         }
+         if (pass == 0) {
+            int nnz = countsToOffsets (offs, offs, numCols);
+            offs[numCols] = nnz;
+            if (colOffs != null) {
+               for (int j=0; j<=numCols; j++) {
+                  colOffs[j] = offs[j]+1;
+               }
+            }
+         }
+      }
+      return offs[numCols];
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public int getCCSIndices (
+      int[] rowIdxs, int[] colOffs, Partition part, int numRows, int numCols) {
+      return getCCSData (rowIdxs, colOffs, null, part, numRows, numCols);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public int getCCSValues (
+      double[] vals, Partition part, int numRows, int numCols) {
+      return getCCSData (null, null, vals, part, numRows, numCols);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void checkConsistency () {
+      if (myRowBlkOffs[myNumBlockRows] != myBlkCols.length ||
+          myValOffs[myBlkCols.length] != myValues.length) {
+         throw new TestException ("inconsistent number of blocks or values");
+      }
+      for (int bi=0; bi<myNumBlockRows; bi++) {
+         int lastbj = -1;
+         int bnr = myRowOffsets[bi+1]-myRowOffsets[bi];
+         for (int k=myRowBlkOffs[bi]; k<myRowBlkOffs[bi+1]; k++) {
+            int bj = myBlkCols[k];
+            if (bj <= lastbj) {
+               throw new TestException (
+                  "block row "+bi+": block columns not ascending");
+            }
+            if (bj >= myNumBlockCols) {
+               throw new TestException (
+                  "block row "+bi+": block column "+bj+" out of range");
+            }
+            int bnc = myColOffsets[bj+1]-myColOffsets[bj];
+            if (myValOffs[k+1]-myValOffs[k] != bnr*bnc) {
+               throw new TestException (
+                  "block "+k+": value count inconsistent with block size");
+            }
+            lastbj = bj;
+         }
+      }
+   }
+}
@@ -0,0 +1,242 @@
+package maspack.matrix;
+
+import maspack.matrix.Matrix.Partition;
+import maspack.util.*;
+
+/**
+ * Test program for SparseBSRMatrix.
+ */
+public class SparseBSRMatrixTest extends UnitTest {
+
+   private static double EPS = 1e-14;
+
+   int[] randomSizes (int num) {
+      int[] choices = new int[] { 1, 2, 3, 3, 3, 6 };
+      int[] sizes = new int[num];
+      for (int i=0; i<num; i++) {
+         sizes[i] = choices[RandomGenerator.nextInt (0, choices.length-1)];
+      }
+      return sizes;
+   }
+
+   MatrixBlock createRandomBlock (int nrows, int ncols) {
+      MatrixBlock blk = MatrixBlockBase.alloc (nrows, ncols);
+      MatrixNd M = new MatrixNd (nrows, ncols);
+      M.setRandom();
+      blk.set (M);
+      return blk;
+   }
+
+   /**
+    * Creates a random sparse block matrix. If the matrix is symmetric, 3x3
+    * diagonal blocks are sometimes given by Matrix3x3DiagBlock.
+    */
+   SparseBlockMatrix createRandom (
+      int[] rowSizes, int[] colSizes, double density, boolean symmetric) {
+
+      SparseBlockMatrix S = new SparseBlockMatrix (rowSizes, colSizes);
+      for (int bi=0; bi<rowSizes.length; bi++) {
+         int bj0 = (symmetric ? bi : 0);
+         for (int bj=bj0; bj<colSizes.length; bj++) {
+            if (bi == bj && symmetric) {
+               MatrixBlock blk;
+               if (rowSizes[bi] == 3 && RandomGenerator.nextDouble() < 0.5) {
+                  blk = new Matrix3x3DiagBlock();
+                  for (int i=0; i<3; i++) {
+                     blk.set (i, i, RandomGenerator.nextDouble (-1, 1));
+                  }
+               }
+               else {
+                  blk = createRandomBlock (rowSizes[bi], colSizes[bj]);
+                  MatrixNd M = new MatrixNd (blk);
+                  M.transpose();
+                  blk.add (M);
+               }
+               S.addBlock (bi, bj, blk);
+            }
+            else if (RandomGenerator.nextDouble() < density) {
+               MatrixBlock blk = createRandomBlock (rowSizes[bi], colSizes[bj]);
+               S.addBlock (bi, bj, blk);
+               if (symmetric) {
+                  S.addBlock (bj, bi, blk.createTranspose());
+               }
+            }
+         }
+      }
+      return S;
+   }
+
+   void checkMul (SparseBSRMatrix B, SparseBlockMatrix S) {
+      VectorNd x = new VectorNd (S.colSize());
+      VectorNd y = new VectorNd (S.rowSize());
+      VectorNd ychk = new VectorNd (S.rowSize());
+      x.setRandom();
+      B.mul (y, x);
+      S.mul (ychk, x);
+      checkEquals ("mul", y, ychk, EPS);
+      y.setRandom();
+      ychk.set (y);
+      B.mulAdd (y, x);
+      S.mulAdd (ychk, x);
+      checkEquals ("mulAdd", y, ychk, EPS);
+
+      x.setSize (S.rowSize());
+      x.setRandom();
+      y.setSize (S.colSize());
+      ychk.setSize (S.colSize());
+      B.mulTranspose (y, x);
+      S.mulTranspose (ychk, x);
+      checkEquals ("mulTranspose", y, ychk, EPS);
+
+      // block-aligned sub-matrix products
+      if (S.numBlockRows() > 2 && S.numBlockCols() > 2) {
+         int r0 = S.getBlockRowOffset (1);
+         int nr = S.getBlockRowOffset (S.numBlockRows()-1) - r0;
+         int c0 = S.getBlockColOffset (1);
+         int nc = S.getBlockColOffset (S.numBlockCols()-1) - c0;
+         x.setSize (nc);
+         x.setRandom();
+         y.setSize (nr);
+         ychk.setSize (nr);
+         B.mul (y, x, r0, nr, c0, nc);
+         S.mul (ychk, x, r0, nr, c0, nc);
+         checkEquals ("mul submatrix", y, ychk, EPS);
+         x.setSize (nr);
+         x.setRandom();
+         y.setSize (nc);
+         ychk.setSize (nc);
+         B.mulTranspose (y, x, c0, nc, r0, nr);
+         S.mulTranspose (ychk, x, c0, nc, r0, nr);
+         checkEquals ("mulTranspose submatrix", y, ychk, EPS);
+         if (S.getBlockRowSize(0) > 1) {
+            checkForException (
+               new ImproperSizeException(),
+               () -> B.mul (new VectorNd(1), new VectorNd(nc), 1, 1, c0, nc));
+         }
+      }
+   }
+
+   void checkCRS (
+      SparseBSRMatrix B, SparseBlockMatrix S, Partition part,
+      int nbr, int nbc) {
+
+      int nrows = S.getBlockRowOffset (nbr);
+      int ncols = S.getBlockColOffset (nbc);
+      MatrixNd Mchk = new MatrixNd (nrows, ncols);
+      S.getSubMatrix (0, 0, Mchk);
+
+      int nnz = B.numNonZeroVals (part, nrows, ncols);
+      int[] colIdxs = new int[nnz];
+      int[] rowOffs = new int[nrows+1];
+      double[] vals = new double[nnz];
+      checkEquals (
+         "num CRS indices",
+         B.getCRSIndices (colIdxs, rowOffs, part, nrows, ncols), nnz);
+      checkEquals (
+         "num CRS values", B.getCRSValues (vals, part, nrows, ncols), nnz);
+      SparseCRSMatrix C = new SparseCRSMatrix (nrows, ncols);
+      C.setCRSValues (vals, colIdxs, rowOffs, nnz, nrows, part);
+      checkEquals ("CRS matrix", new MatrixNd(C), Mchk, 0);
+
+      int[] rowIdxs = new int[nnz];
+      int[] colOffs = new int[ncols+1];
+      checkEquals (
+         "num CCS indices",
+         B.getCCSIndices (rowIdxs, colOffs, part, nrows, ncols), nnz);
+      checkEquals (
+         "num CCS values", B.getCCSValues (vals, part, nrows, ncols), nnz);
+      if (part == Partition.UpperTriangular) {
+         // CCS of the upper triangle is CRS of the lower triangle; compare
+         // with the transpose
+         C.setCRSValues (
+            vals, rowIdxs, colOffs, nnz, ncols, Partition.Full);
+         MatrixNd U = new MatrixNd (Mchk);
+         for (int i=0; i<nrows; i++) {
+            for (int j=0; j<Math.min(i,ncols); j++) {
+               U.set (i, j, 0);
+            }
+         }
+         U.transpose();
+         checkEquals ("CCS matrix", new MatrixNd(C), U, 0);
+      }
+      else {
+         C.setCCSValues (vals, rowIdxs, colOffs, nnz, ncols, part);
+         checkEquals ("CCS matrix", new MatrixNd(C), Mchk, 0);
+      }
+   }
+
+   void checkMatrix (SparseBSRMatrix B, SparseBlockMatrix S) {
+      checkEquals ("rowSize", B.rowSize(), S.rowSize());
+      checkEquals ("colSize", B.colSize(), S.colSize());
+      checkEquals ("numBlocks", B.numBlocks(), S.numBlocks());
+      B.checkConsistency();
+      check ("structure not equal", B.structureEquals (S));
+      checkEquals ("values", new MatrixNd(B), new MatrixNd(S), 0);
+      checkMul (B, S);
+      int nbr = S.numBlockRows();
+      int nbc = S.numBlockCols();
+      checkCRS (B, S, Partition.Full, nbr, nbc);
+      checkCRS (B, S, Partition.Full, nbr/2, nbc/2);
+      if (S.rowSize() == S.colSize()) {
+         checkCRS (B, S, Partition.UpperTriangular, nbr, nbc);
+      }
+   }
+
+   public void testRandom() {
+      for (int k=0; k<10; k++) {
+         int[] rowSizes = randomSizes (RandomGenerator.nextInt (3, 20));
+         int[] colSizes = randomSizes (RandomGenerator.nextInt (3, 20));
+         SparseBlockMatrix S = createRandom (rowSizes, colSizes, 0.3, false);
+         SparseBSRMatrix B = new SparseBSRMatrix (S);
+         checkMatrix (B, S);
+
+         S = createRandom (rowSizes, rowSizes, 0.3, true);
+         B = new SparseBSRMatrix (S);
+         checkMatrix (B, S);
+
+         // update the values in place
+         S.scale (2.5);
+         B.setValues (S);
+         checkMatrix (B, S);
+      }
+   }
+
+   public void testUpdates() {
+      int[] sizes = new int[] { 3, 3, 6, 3 };
+      SparseBlockMatrix S = createRandom (sizes, sizes, 0.5, true);
+      SparseBSRMatrix B = new SparseBSRMatrix (S);
+
+      // set an element inside and outside the structure
+      B.set (0, 0, 4.0);
+      S.set (0, 0, 4.0);
+      checkEquals ("values", new MatrixNd(B), new MatrixNd(S), 0);
+      if (S.getBlock (0, 3) == null) {
+         B.set (0, 12, 0.0);
+         checkForIllegalArgumentException (() -> B.set (0, 12, 1.0));
+      }
+      // modifying the value array directly
+      double[] vals = B.getValues();
+      vals[B.getBlockValueOffset(0)] = 5.0;
+      checkEquals ("value(0,0)", B.get(0,0), 5.0);
+
+      // changing the structure of S makes it incompatible
+      SparseBlockMatrix S2 = createRandom (sizes, sizes, 0.5, true);
+      if (!B.structureEquals (S2)) {
+         checkForIllegalArgumentException (() -> B.setValues (S2));
+      }
+      S.removeBlock (0, 0);
+      check ("structure equal", !B.structureEquals (S));
+      checkForIllegalArgumentException (() -> B.setValues (S));
+   }
+
+   public void test() {
+      testRandom();
+      testUpdates();
+   }
+
+   public static void main (String[] args) {
+      SparseBSRMatrixTest tester = new SparseBSRMatrixTest();
+      RandomGenerator.setSeed (0x1234);
+      tester.runtest();
+   }
+}
@@ -61,6 +61,9 @@ public class SparseBlockMatrix extends SparseMatrixBase implements Clonable {
 
    protected boolean myVerticallyLinkedP = false;
 
+   // incremented whenever blocks are added or removed
+   protected int myBlockStructureVersion = 0;
+
    public enum PrintFormat {
       MatrixMarket, CRS, CCS,
    }
@@ -88,6 +91,7 @@ public class SparseBlockMatrix extends SparseMatrixBase implements Clonable {
    }
 
    private void invalidateCRSandCCSOffsets() {
+      myBlockStructureVersion++;
       myRowIndicesPartition = Partition.None;
       myCRSNumBlkRows = -1;
       myCRSNumBlkCols = -1;
@@ -592,6 +596,20 @@ public class SparseBlockMatrix extends SparseMatrixBase implements Clonable {
       return sizes;
    }
 
+   /**
+    * Returns a version number for the block structure of this matrix,
+    * which is incremented whenever blocks are added or removed, or the
+    * matrix is otherwise restructured. This can be used by objects which
+    * cache information derived from the block structure, such as {@link
+    * SparseBlockValueMap}, to determine whether that information is still
+    * valid.
+    *
+    * @return block structure version number
+    */
+   public int getBlockStructureVersion() {
+      return myBlockStructureVersion;
+   }
+
    public int numBlocks() {
       int num = 0;
       if (isVerticallyLinked() && myNumBlockRows > myNumBlockCols) {
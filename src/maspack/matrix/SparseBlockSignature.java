@@ -169,6 +169,36 @@ public class SparseBlockSignature {
       return true;
    }
 
+   /**
+    * Queries whether this signature and another describe exactly the same
+    * structure. This is stricter than {@link #equals(SparseBlockSignature)}
+    * in that the row and column offsets (and hence the block sizes) must also
+    * be the same.
+    *
+    * @param sig signature to compare with
+    * @return {@code true} if the structures are identical
+    */
+   public boolean structureEquals (SparseBlockSignature sig) {
+      return (equals (sig) &&
+              myRowSize == sig.myRowSize &&
+              myColSize == sig.myColSize &&
+              Arrays.equals (myRowOffsets, sig.myRowOffsets) &&
+              Arrays.equals (myColOffsets, sig.myColOffsets));
+   }
+
+   /**
+    * Returns a hash code consistent with {@link #structureEquals}.
+    *
+    * @return structure hash code
+    */
+   public int structureHashCode() {
+      int hash = Arrays.hashCode (myData);
+      hash = 31*hash + Arrays.hashCode (myRowOffsets);
+      hash = 31*hash + Arrays.hashCode (myColOffsets);
+      hash = 31*hash + (myVertical ? 1 : 0);
+      return hash;
+   }
+
    public String toString() {
       StringBuilder sb = new StringBuilder();
       sb.append ("[ ");
@@ -0,0 +1,250 @@
+package maspack.matrix;
+
+import maspack.matrix.Matrix.Partition;
+
+/**
+ * Records where the values of each block of a {@link SparseBlockMatrix} are
+ * placed within a compressed row storage (CRS) or compressed column storage
+ * (CCS) value array. Once created, the map can be used to repeatedly load
+ * the current block values into the value array, without recomputing row
+ * or column offsets or traversing the matrix's block lists. This is useful
+ * for direct solvers that refactor a matrix many times while its structure
+ * stays the same.
+ *
+ * <p>The map is created using the same offset conventions as {@link
+ * SparseBlockMatrix#getBlockCRSValues(double[],int[],Partition,int,int)
+ * getBlockCRSValues()} and {@link
+ * SparseBlockMatrix#getBlockCCSValues(double[],int[],Partition,int,int)
+ * getBlockCCSValues()}, and {@link #getValues} places values exactly where
+ * those methods would. The map holds references to the matrix's blocks, and
+ * so is valid only as long as the matrix's block structure is unchanged, as
+ * indicated by {@link #isValid}.
+ */
+public class SparseBlockValueMap {
+
+   protected SparseBlockMatrix myMatrix;
+   protected int myStructureVersion;
+   protected boolean myCCS;
+   protected int myNumVals;
+
+   protected MatrixBlock[] myBlocks;  // blocks, in traversal order
+   protected Partition[] myBlkParts;  // partition used for each block
+   protected int[] myLineOffs;        // start of each block's entries in myDests
+   protected int[] myDests;           // first value location of each row or col
+   protected int[] myScratch;
+
+   /**
+    * Creates a map for the values of a block-aligned principal sub-matrix of
+    * a sparse block matrix, delimited by the first <code>numRows</code> rows
+    * and <code>numCols</code> columns.
+    *
+    * @param S matrix whose values are to be mapped
+    * @param offsets on input, gives the location in the value array of the
+    * first value for each row (CRS) or column (CCS) of the sub-matrix. On
+    * output, these are incremented by the number of values in each row or
+    * column, in the same way as <code>getBlockCRSValues()</code> or
+    * <code>getBlockCCSValues()</code>.
+    * @param part for CRS, must be {@link Partition#Full Full} or {@link
+    * Partition#UpperTriangular UpperTriangular}; for CCS, must be
+    * {@link Partition#Full Full} or {@link Partition#LowerTriangular
+    * LowerTriangular}
+    * @param numRows number of rows delimiting the sub-matrix
+    * @param numCols number of columns delimiting the sub-matrix
+    * @param ccs if <code>true</code>, map values for compressed column
+    * storage instead of compressed row storage
+    */
+   public SparseBlockValueMap (
+      SparseBlockMatrix S, int[] offsets, Partition part, int numRows,
+      int numCols, boolean ccs) {
+
+      int numBlkRows = S.getAlignedBlockRow (numRows);
+      int numBlkCols = S.getAlignedBlockCol (numCols);
+      if (numBlkRows == -1 || numBlkCols == -1) {
+         throw new IllegalArgumentException (
+            "submatrix "+numRows+"x"+numCols+" is not block aligned");
+      }
+      Partition triangular =
+         (ccs ? Partition.LowerTriangular : Partition.UpperTriangular);
+      if (part != Partition.Full && part != triangular) {
+         throw new UnsupportedOperationException (
+            "Matrix partition " + part + " not supported");
+      }
+      // count the blocks and lines that will be mapped
+      int nblks = 0;
+      int nlines = 0;
+      for (int bi=0; bi<numBlkRows; bi++) {
+         for (MatrixBlock blk=S.firstBlockInRow(bi); blk!=null;
+              blk=blk.next()) {
+            if (blk.getBlockCol() >= numBlkCols) {
+               break;
+            }
+            if (getBlockPartition (blk, part) != null) {
+               nblks++;
+               nlines += (ccs ? blk.colSize() : blk.rowSize());
+            }
+         }
+      }
+      myBlocks = new MatrixBlock[nblks];
+      myBlkParts = new Partition[nblks];
+      myLineOffs = new int[nblks+1];
+      myDests = new int[nlines];
+      int k = 0;
+      int l = 0;
+      int maxLines = 0;
+      int off0 = sumOffsets (offsets, ccs ? numCols : numRows);
+      for (int bi=0; bi<numBlkRows; bi++) {
+         for (MatrixBlock blk=S.firstBlockInRow(bi); blk!=null;
+              blk=blk.next()) {
+            if (blk.getBlockCol() >= numBlkCols) {
+               break;
+            }
+            Partition blkPart = getBlockPartition (blk, part);
+            if (blkPart == null) {
+               continue;
+            }
+            int idx, n;
+            if (ccs) {
+               idx = S.getBlockColOffset (blk.getBlockCol());
+               n = blk.colSize();
+            }
+            else {
+               idx = S.getBlockRowOffset (blk.getBlockRow());
+               n = blk.rowSize();
+            }
+            myBlocks[k] = blk;
+            myBlkParts[k] = blkPart;
+            myLineOffs[k] = l;
+            for (int i=0; i<n; i++) {
+               myDests[l++] = offsets[idx+i];
+            }
+            if (ccs) {
+               blk.addNumNonZerosByCol (offsets, idx, blkPart);
+            }
+            else {
+               blk.addNumNonZerosByRow (offsets, idx, blkPart);
+            }
+            maxLines = Math.max (maxLines, n);
+            k++;
+         }
+      }
+      myLineOffs[nblks] = l;
+      myNumVals = sumOffsets (offsets, ccs ? numCols : numRows) - off0;
+      myScratch = new int[maxLines];
+      myMatrix = S;
+      myStructureVersion = S.getBlockStructureVersion();
+      myCCS = ccs;
+   }
+
+   /**
+    * Creates a CRS value map for a block-aligned principal sub-matrix of a
+    * sparse block matrix, given the one-based CRS row offsets of the
+    * sub-matrix, such as those returned by {@link
+    * SparseBlockMatrix#getCRSIndices(int[],int[],Partition,int,int)
+    * getCRSIndices()}. Values are mapped to the same locations as used by
+    * {@link SparseBlockMatrix#getCRSValues(double[],Partition,int,int)
+    * getCRSValues()}.
+    *
+    * @param S matrix whose values are to be mapped
+    * @param rowOffs one-based CRS row offsets
+    * @param part must be {@link Partition#Full Full} or {@link
+    * Partition#UpperTriangular UpperTriangular}
+    * @param numRows number of rows delimiting the sub-matrix
+    * @param numCols number of columns delimiting the sub-matrix
+    * @return created map
+    */
+   public static SparseBlockValueMap createCRSMap (
+      SparseBlockMatrix S, int[] rowOffs, Partition part,
+      int numRows, int numCols) {
+      int[] offsets = new int[numRows];
+      for (int i=0; i<numRows; i++) {
+         offsets[i] = rowOffs[i]-1;
+      }
+      return new SparseBlockValueMap (
+         S, offsets, part, numRows, numCols, /*ccs=*/false);
+   }
+
+   private int sumOffsets (int[] offsets, int num) {
+      int sum = 0;
+      for (int i=0; i<num; i++) {
+         sum += offsets[i];
+      }
+      return sum;
+   }
+
+   /**
+    * Returns the partition with which a block's values are stored, or
+    * <code>null</code> if the block is not stored at all.
+    */
+   private Partition getBlockPartition (MatrixBlock blk, Partition part) {
+      int bi = blk.getBlockRow();
+      int bj = blk.getBlockCol();
+      if (part == Partition.UpperTriangular) {
+         return bj > bi ? Partition.Full : (bj == bi ? part : null);
+      }
+      else if (part == Partition.LowerTriangular) {
+         return bj < bi ? Partition.Full : (bj == bi ? part : null);
+      }
+      else {
+         return Partition.Full;
+      }
+   }
+
+   /**
+    * Returns <code>true</code> if this map can be used with the matrix
+    * <code>S</code>. This requires that <code>S</code> is the matrix from
+    * which the map was created, and that its block structure has not
+    * changed since then.
+    *
+    * @param S matrix to check
+    * @return <code>true</code> if this map is valid for <code>S</code>
+    */
+   public boolean isValid (SparseBlockMatrix S) {
+      return (S == myMatrix &&
+              S.getBlockStructureVersion() == myStructureVersion);
+   }
+
+   /**
+    * Returns <code>true</code> if this map is for compressed column
+    * storage.
+    *
+    * @return <code>true</code> for CCS, <code>false</code> for CRS
+    */
+   public boolean isCCS() {
+      return myCCS;
+   }
+
+   /**
+    * Returns the number of values mapped by this map.
+    *
+    * @return number of mapped values
+    */
+   public int numValues() {
+      return myNumVals;
+   }
+
+   /**
+    * Loads the current values of the mapped matrix into a value array,
+    * at the locations determined when this map was created.
+    *
+    * @param vals array into which values are loaded
+    * @return number of values loaded
+    */
+   public int getValues (double[] vals) {
+      int[] offs = myScratch;
+      int nnz = 0;
+      for (int k=0; k<myBlocks.length; k++) {
+         int l0 = myLineOffs[k];
+         int n = myLineOffs[k+1]-l0;
+         for (int i=0; i<n; i++) {
+            offs[i] = myDests[l0+i];
+         }
+         if (myCCS) {
+            nnz += myBlocks[k].getBlockCCSValues (vals, offs, myBlkParts[k]);
+         }
+         else {
+            nnz += myBlocks[k].getBlockCRSValues (vals, offs, myBlkParts[k]);
+         }
+      }
+      return nnz;
+   }
+}
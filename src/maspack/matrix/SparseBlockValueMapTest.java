@@ -0,0 +1,186 @@
+package maspack.matrix;
+
+import java.util.Arrays;
+
+import maspack.matrix.Matrix.Partition;
+import maspack.util.*;
+
+/**
+ * Test program for SparseBlockValueMap.
+ */
+public class SparseBlockValueMapTest extends UnitTest {
+
+   int[] randomSizes (int num) {
+      int[] choices = new int[] { 1, 2, 3, 3, 6 };
+      int[] sizes = new int[num];
+      for (int i=0; i<num; i++) {
+         sizes[i] = choices[RandomGenerator.nextInt (0, choices.length-1)];
+      }
+      return sizes;
+   }
+
+   MatrixBlock createRandomBlock (int nrows, int ncols) {
+      MatrixBlock blk = MatrixBlockBase.alloc (nrows, ncols);
+      MatrixNd M = new MatrixNd (nrows, ncols);
+      M.setRandom();
+      blk.set (M);
+      return blk;
+   }
+
+   SparseBlockMatrix createRandom (
+      int[] rowSizes, int[] colSizes, double density) {
+
+      SparseBlockMatrix S = new SparseBlockMatrix (rowSizes, colSizes);
+      for (int bi=0; bi<rowSizes.length; bi++) {
+         for (int bj=0; bj<colSizes.length; bj++) {
+            if (bi == bj || RandomGenerator.nextDouble() < density) {
+               S.addBlock (
+                  bi, bj, createRandomBlock (rowSizes[bi], colSizes[bj]));
+            }
+         }
+      }
+      return S;
+   }
+
+   /**
+    * Checks that a map places values and advances offsets in the same way
+    * as getBlockCRSValues() or getBlockCCSValues().
+    */
+   void checkMap (
+      SparseBlockMatrix S, Partition part, int nbr, int nbc, boolean ccs) {
+
+      int nrows = S.getBlockRowOffset (nbr);
+      int ncols = S.getBlockColOffset (nbc);
+      int nnz = S.numNonZeroVals (part, nrows, ncols);
+      int nlines = (ccs ? ncols : nrows);
+
+      // get zero-based offsets for the start of each row or column
+      int[] offs = new int[nlines+1];
+      if (ccs) {
+         S.getCCSIndices (new int[nnz], offs, part, nrows, ncols);
+      }
+      else {
+         S.getCRSIndices (new int[nnz], offs, part, nrows, ncols);
+      }
+      for (int i=0; i<nlines; i++) {
+         offs[i]--;
+      }
+      int[] offsChk = Arrays.copyOf (offs, nlines);
+      int[] offsMap = Arrays.copyOf (offs, nlines);
+      double[] vals = new double[nnz];
+      double[] valsChk = new double[nnz];
+      int numChk;
+      if (ccs) {
+         numChk = S.getBlockCCSValues (valsChk, offsChk, part, nrows, ncols);
+      }
+      else {
+         numChk = S.getBlockCRSValues (valsChk, offsChk, part, nrows, ncols);
+      }
+      SparseBlockValueMap map =
+         new SparseBlockValueMap (S, offsMap, part, nrows, ncols, ccs);
+      checkEquals ("isCCS", map.isCCS(), ccs);
+      checkEquals ("numValues", map.numValues(), numChk);
+      checkEquals ("offsets", new VectorNi(offsMap), new VectorNi(offsChk));
+      checkEquals ("num values loaded", map.getValues (vals), numChk);
+      checkEquals ("values", new VectorNd(vals), new VectorNd(valsChk));
+
+      // change the values and reload
+      S.scale (-2.0);
+      if (ccs) {
+         S.getBlockCCSValues (valsChk, offs, part, nrows, ncols);
+      }
+      else {
+         S.getBlockCRSValues (valsChk, offs, part, nrows, ncols);
+      }
+      map.getValues (vals);
+      checkEquals ("new values", new VectorNd(vals), new VectorNd(valsChk));
+   }
+
+   void checkCRSMap (SparseBlockMatrix S, Partition part, int size) {
+      int nnz = S.numNonZeroVals (part, size, size);
+      int[] colIdxs = new int[nnz];
+      int[] rowOffs = new int[size+1];
+      double[] vals = new double[nnz];
+      double[] valsChk = new double[nnz];
+      S.getCRSIndices (colIdxs, rowOffs, part, size, size);
+      S.getCRSValues (valsChk, part, size, size);
+      SparseBlockValueMap map =
+         SparseBlockValueMap.createCRSMap (S, rowOffs, part, size, size);
+      checkEquals ("num values loaded", map.getValues (vals), nnz);
+      checkEquals ("CRS values", new VectorNd(vals), new VectorNd(valsChk));
+   }
+
+   public void testRandom() {
+      for (int k=0; k<10; k++) {
+         int[] rowSizes = randomSizes (RandomGenerator.nextInt (3, 15));
+         int[] colSizes = randomSizes (RandomGenerator.nextInt (3, 15));
+         SparseBlockMatrix S = createRandom (rowSizes, colSizes, 0.3);
+         int nbr = S.numBlockRows();
+         int nbc = S.numBlockCols();
+         for (boolean ccs : new boolean[] { false, true }) {
+            checkMap (S, Partition.Full, nbr, nbc, ccs);
+            checkMap (S, Partition.Full, nbr/2, nbc-1, ccs);
+         }
+         S = createRandom (rowSizes, rowSizes, 0.3);
+         nbr = S.numBlockRows();
+         checkMap (S, Partition.UpperTriangular, nbr, nbr, false);
+         checkMap (S, Partition.UpperTriangular, nbr-1, nbr-1, false);
+         checkMap (S, Partition.LowerTriangular, nbr, nbr, true);
+         checkCRSMap (S, Partition.Full, S.rowSize());
+         checkCRSMap (
+            S, Partition.UpperTriangular, S.getBlockRowOffset (nbr-1));
+      }
+   }
+
+   public void testValidity() {
+      int[] sizes = new int[] { 3, 3, 6, 3 };
+      SparseBlockMatrix S = createRandom (sizes, sizes, 0.5);
+      SparseBlockMatrix S2 = createRandom (sizes, sizes, 0.5);
+      int n = S.rowSize();
+      int[] offs = new int[n];
+      SparseBlockValueMap map =
+         new SparseBlockValueMap (S, offs, Partition.Full, n, n, false);
+      check ("map not valid", map.isValid (S));
+      check ("map valid for other matrix", !map.isValid (S2));
+
+      // changing values does not change the structure
+      int version = S.getBlockStructureVersion();
+      S.scale (3.0);
+      S.set (0, 0, 1.0);
+      checkEquals ("structure version", S.getBlockStructureVersion(), version);
+      check ("map not valid", map.isValid (S));
+
+      S.removeBlock (0, 0);
+      check ("structure version unchanged",
+             S.getBlockStructureVersion() != version);
+      check ("map valid after removeBlock", !map.isValid (S));
+
+      map = new SparseBlockValueMap (S, offs, Partition.Full, n, n, false);
+      check ("map not valid", map.isValid (S));
+      S.addBlock (0, 0, createRandomBlock (3, 3));
+      check ("map valid after addBlock", !map.isValid (S));
+
+      checkForIllegalArgumentException (
+         () -> new SparseBlockValueMap (
+            S2, new int[n], Partition.Full, 4, 4, false));
+      checkForException (
+         new UnsupportedOperationException(),
+         () -> new SparseBlockValueMap (
+            S2, new int[n], Partition.LowerTriangular, n, n, false));
+      checkForException (
+         new UnsupportedOperationException(),
+         () -> new SparseBlockValueMap (
+            S2, new int[n], Partition.UpperTriangular, n, n, true));
+   }
+
+   public void test() {
+      testRandom();
+      testValidity();
+   }
+
+   public static void main (String[] args) {
+      SparseBlockValueMapTest tester = new SparseBlockValueMapTest();
+      RandomGenerator.setSeed (0x1234);
+      tester.runtest();
+   }
+}
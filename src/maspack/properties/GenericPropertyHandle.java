@@ -6,6 +6,7 @@
  */
 package maspack.properties;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Objects;
@@ -18,6 +19,9 @@ public class GenericPropertyHandle implements Property {
    Method myGetMethod;
    Method mySetMethod;
    Method myGetRangeMethod;
+   MethodHandle myGetHandle;
+   MethodHandle mySetHandle;
+   MethodHandle myGetRangeHandle;
    Object myKey;
    protected PropertyDesc myDesc;
 
@@ -29,6 +33,9 @@ public class GenericPropertyHandle implements Property {
       myGetMethod = desc.myGetMethod;
       mySetMethod = desc.mySetMethod;
       myGetRangeMethod = desc.myGetRangeMethod;
+      myGetHandle = desc.myGetHandle;
+      mySetHandle = desc.mySetHandle;
+      myGetRangeHandle = desc.myGetRangeHandle;
       myKey = desc.myKey;
       myDesc = desc;
    }
@@ -55,6 +62,28 @@ public class GenericPropertyHandle implements Property {
    }
 
    public Object get() {
+      if (myGetHandle != null) {
+         try {
+            if (myKey != null) {
+               return (Object)myGetHandle.invokeExact ((Object)myHost, myKey);
+            }
+            else {
+               return (Object)myGetHandle.invokeExact ((Object)myHost);
+            }
+         }
+         catch (RuntimeException e) {
+            System.out.println (
+               "exception invoking getMethod for " + getName());
+            throw e;
+         }
+         catch (Error e) {
+            throw e;
+         }
+         catch (Throwable e) {
+            e.printStackTrace();
+            throw new RuntimeException (e.getMessage());
+         }
+      }
       try {
          if (myKey != null) {
             return myGetMethod.invoke (myHost, myKey);
@@ -85,6 +114,23 @@ public class GenericPropertyHandle implements Property {
          }
          return;
       }
+      if (mySetHandle != null) {
+         try {
+            if (myKey != null) {
+               mySetHandle.invokeExact ((Object)myHost, myKey, obj);
+            }
+            else {
+               mySetHandle.invokeExact ((Object)myHost, obj);
+            }
+         }
+         catch (RuntimeException | Error e) {
+            throw e;
+         }
+         catch (Throwable e) {
+            throw new RuntimeException (e.getMessage());
+         }
+         return;
+      }
       try {
          if (myKey != null) {
             mySetMethod.invoke (myHost, myKey, obj);
@@ -105,7 +151,31 @@ public class GenericPropertyHandle implements Property {
    }
 
    public Range getRange () {
-      if (myGetRangeMethod != null) {
+      if (myGetRangeHandle != null) {
+         try {
+            if (myKey != null) {
+               return (Range)(Object)myGetRangeHandle.invokeExact (
+                  (Object)myHost, myKey);
+            }
+            else {
+               return (Range)(Object)myGetRangeHandle.invokeExact (
+                  (Object)myHost);
+            }
+         }
+         catch (RuntimeException e) {
+            System.out.println (
+               "exception invoking getRangeMethod for " + getName());
+            throw e;
+         }
+         catch (Error e) {
+            throw e;
+         }
+         catch (Throwable e) {
+            e.printStackTrace();
+            throw new RuntimeException (e.getMessage());
+         }
+      }
+      else if (myGetRangeMethod != null) {
          try {
             if (myKey != null) {
                return (Range)myGetRangeMethod.invoke (myHost, myKey);
@@ -312,15 +312,11 @@ public class NumericConverter {
             break;
          }
          case DOUBLE_ARRAY: {
-            double[] doubleAr = (double[])myObj;
-            for (i = 0; i < myDimension; i++)
-               doubleAr[i] = (double)vals[i];
+            System.arraycopy (vals, 0, (double[])myObj, 0, myDimension);
             break;
          }
          case VECTOR: {
-            Vector vec = (Vector)myObj;
-            for (i = 0; i < myDimension; i++)
-               vec.set (i, vals[i]);
+            ((Vector)myObj).set (vals, 0);
             break;
          }
          case VECTORI: {
@@ -384,6 +380,63 @@ public class NumericConverter {
       return myObj;
    }
 
+   /**
+    * Returns the property descriptor of a property if the property is
+    * a double whose value can be accessed without boxing.
+    */
+   private PropertyDesc getDoubleAccessDesc (Property prop) {
+      if (myType == PropertyDesc.TypeCode.DOUBLE &&
+          prop instanceof GenericPropertyHandle) {
+         PropertyDesc desc = ((GenericPropertyHandle)prop).myDesc;
+         if (desc.hasDoubleAccessors()) {
+            return desc;
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Gets the value of a numeric property as an array of doubles. This is
+    * equivalent to <code>objectToArray(prop.get())</code>, except that
+    * primitive double-valued properties are read without boxing.
+    *
+    * @param prop property whose value is to be obtained
+    * @return array containing the value. This is an internal buffer which
+    * is overwritten by subsequent calls.
+    */
+   public double[] getValues (Property prop) {
+      PropertyDesc desc = getDoubleAccessDesc (prop);
+      if (desc != null) {
+         myArray[0] = desc.getDoubleValue (prop.getHost());
+      }
+      else {
+         objectToArray (myArray, prop.get());
+      }
+      return myArray;
+   }
+
+   /**
+    * Sets the value of a numeric property from an array of doubles. This is
+    * equivalent to <code>prop.set(arrayToObject(vals))</code>, except that
+    * primitive double-valued properties are set without boxing.
+    *
+    * @param prop property whose value is to be set
+    * @param vals array containing the new value
+    */
+   public void setValues (Property prop, double[] vals) {
+      PropertyDesc desc = getDoubleAccessDesc (prop);
+      if (desc != null) {
+         if (vals.length < 1) {
+            throw new IllegalArgumentException (
+               "array not large enough for object");
+         }
+         desc.setDoubleValue (prop.getHost(), vals[0]);
+      }
+      else {
+         prop.set (arrayToObject (vals));
+      }
+   }
+
    public double[] objectToArray (Object obj) {
       objectToArray (myArray, obj);
       return myArray;
@@ -421,15 +474,18 @@ public class NumericConverter {
             break;
          }
          case DOUBLE_ARRAY: {
-            double[] doubleAr = (double[])obj;
-            for (i = 0; i < myDimension; i++)
-               array[i] = doubleAr[i];
+            System.arraycopy ((double[])obj, 0, array, 0, myDimension);
             break;
          }
          case VECTOR: {
             Vector vec = (Vector)obj;
-            for (i = 0; i < myDimension; i++)
-               array[i] = vec.get(i);
+            if (vec.size() == myDimension) {
+               vec.get (array);
+            }
+            else {
+               for (i = 0; i < myDimension; i++)
+                  array[i] = vec.get(i);
+            }
             break;
          }
          case VECTORI: {
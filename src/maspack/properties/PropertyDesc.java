@@ -10,6 +10,9 @@ import java.awt.Color;
 import java.awt.Font;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.util.List;
 
@@ -55,6 +58,17 @@ public class PropertyDesc implements PropertyInfo {
    protected Method myGetModeMethod;
    protected Method mySetModeMethod;
    protected Method myCreateMethod;
+   // method handles for the get, set, and getRange methods, adapted so that
+   // all arguments and the return value are Objects. These are faster to
+   // invoke than the reflective methods, and are null if the methods are
+   // null or the handles could not be created.
+   protected MethodHandle myGetHandle;
+   protected MethodHandle mySetHandle;
+   protected MethodHandle myGetRangeHandle;
+   // handles for double-valued properties whose get and set methods use
+   // a primitive double, allowing the value to be accessed without boxing
+   protected MethodHandle myGetDoubleHandle;
+   protected MethodHandle mySetDoubleHandle;
    // if present, leading argument for the methods
    protected Object myKey;
    protected Class<?> myKeyClass;
@@ -724,6 +738,49 @@ public class PropertyDesc implements PropertyInfo {
       }
    }
 
+   /**
+    * Creates a method handle for a method, adapted to a specific type.
+    * Returns <code>null</code> if the method is not accessible via a method
+    * handle, in which case it can still be invoked reflectively.
+    */
+   private static MethodHandle createHandle (Method method, MethodType type) {
+      try {
+         MethodHandle handle = MethodHandles.publicLookup().unreflect (method);
+         return handle.asType (type);
+      }
+      catch (Exception e) {
+         return null;
+      }
+   }
+
+   /**
+    * Creates a method handle for an instance method, adapted so that the
+    * host and all arguments are Objects, and the return type is
+    * <code>retType</code>, which should be either Object or void.
+    */
+   protected static MethodHandle createGenericHandle (
+      Method method, Class<?> retType) {
+      MethodType type =
+         MethodType.genericMethodType (method.getParameterCount()+1);
+      return createHandle (method, type.changeReturnType (retType));
+   }
+
+   /**
+    * Returns the argument types for a method handle that accepts the host,
+    * followed by the key, if present, followed by the specified types.
+    */
+   private Class<?>[] keyedArgTypes (Class<?>... types) {
+      int nobjs = (myKey != null ? 2 : 1);
+      Class<?>[] args = new Class<?>[nobjs+types.length];
+      for (int i=0; i<nobjs; i++) {
+         args[i] = Object.class;
+      }
+      for (int i=0; i<types.length; i++) {
+         args[nobjs+i] = types[i];
+      }
+      return args;
+   }
+
    private void initGetMethod (String methodName) {
       if (myKey != null) {
          myGetMethod = locateMethod (methodName, myKeyClass);
@@ -735,6 +792,14 @@ public class PropertyDesc implements PropertyInfo {
          setPropertyType (myGetMethod.getReturnType());
       }
       checkReturnType (myGetMethod, myValueClass);
+      myGetHandle = createGenericHandle (myGetMethod, Object.class);
+      if (myGetMethod.getReturnType() == Double.TYPE) {
+         myGetDoubleHandle = createHandle (
+            myGetMethod, MethodType.methodType (Double.TYPE, keyedArgTypes()));
+      }
+      else {
+         myGetDoubleHandle = null;
+      }
    }
 
    private void initSetMethod (String methodName) {
@@ -748,6 +813,15 @@ public class PropertyDesc implements PropertyInfo {
       else {
          mySetMethod = locateMethod (methodName, myValueClass);
       }
+      mySetHandle = createGenericHandle (mySetMethod, Void.TYPE);
+      if (myValueClass == Double.TYPE) {
+         mySetDoubleHandle = createHandle (
+            mySetMethod,
+            MethodType.methodType (Void.TYPE, keyedArgTypes (Double.TYPE)));
+      }
+      else {
+         mySetDoubleHandle = null;
+      }
    }
    
    private void initGetRangeMethod (String methodName) {
@@ -762,6 +836,8 @@ public class PropertyDesc implements PropertyInfo {
          myGetRangeMethod = locateMethod (methodName);
       }
       checkReturnType (myGetRangeMethod, Range.class);
+      myGetRangeHandle =
+         createGenericHandle (myGetRangeMethod, Object.class);
    }
 
    // not currently used
@@ -777,6 +853,7 @@ public class PropertyDesc implements PropertyInfo {
    private void maybeSetGetRangeMethod (String methodName) {
       if (methodName == null) {
          myGetRangeMethod = null;
+         myGetRangeHandle = null;
       }
       else {
          try {
@@ -784,6 +861,7 @@ public class PropertyDesc implements PropertyInfo {
          }
          catch (Exception e) {
             myGetRangeMethod = null;
+            myGetRangeHandle = null;
          }
       }
    }
@@ -1019,7 +1097,7 @@ public class PropertyDesc implements PropertyInfo {
    }
 
    protected void methodInvocationError (
-      Exception e, HasProperties host, Method method) {
+      Throwable e, HasProperties host, Method method) {
       e.printStackTrace(); 
       throw new InternalErrorException (
          "Error invoking "+host.getClass().getName()+"."+method.getName());
@@ -1048,32 +1126,124 @@ public class PropertyDesc implements PropertyInfo {
       else {
          checkHostClass (host);
          try {
-            if (myKey == null) {
+            if (myGetHandle != null) {
+               if (myKey == null) {
+                  return (Object)myGetHandle.invokeExact ((Object)host);
+               }
+               else {
+                  return (Object)myGetHandle.invokeExact ((Object)host, myKey);
+               }
+            }
+            else if (myKey == null) {
                return myGetMethod.invoke (host);
             }
             else {
                return myGetMethod.invoke (host, myKey);
             }
          }
-         catch (Exception e) {
+         catch (Error e) {
+            throw e;
+         }
+         catch (Throwable e) {
             methodInvocationError (e, host, myGetMethod);
          }
          return null;
       }
    }
 
+   /**
+    * Returns <code>true</code> if this property has a primitive
+    * <code>double</code> value which can be accessed by {@link
+    * #getDoubleValue} and {@link #setDoubleValue} without boxing.
+    *
+    * @return <code>true</code> if unboxed double access is available
+    */
+   public boolean hasDoubleAccessors() {
+      return (myGetDoubleHandle != null &&
+              (mySetDoubleHandle != null || mySetMethod == null));
+   }
+
+   /**
+    * Returns the value of a double-valued property, without boxing. Should
+    * only be called if {@link #hasDoubleAccessors} returns
+    * <code>true</code>.
+    *
+    * @param host object hosting the property
+    * @return property value
+    */
+   public double getDoubleValue (HasProperties host) {
+      checkHostClass (host);
+      try {
+         if (myKey == null) {
+            return (double)myGetDoubleHandle.invokeExact ((Object)host);
+         }
+         else {
+            return (double)myGetDoubleHandle.invokeExact ((Object)host, myKey);
+         }
+      }
+      catch (Error e) {
+         throw e;
+      }
+      catch (Throwable e) {
+         methodInvocationError (e, host, myGetMethod);
+      }
+      return 0;
+   }
+
+   /**
+    * Sets the value of a double-valued property, without boxing. Should
+    * only be called if {@link #hasDoubleAccessors} returns
+    * <code>true</code>.
+    *
+    * @param host object hosting the property
+    * @param value new property value
+    */
+   public void setDoubleValue (HasProperties host, double value) {
+      if (mySetDoubleHandle == null) {
+         return; // read-only property
+      }
+      checkHostClass (host);
+      try {
+         if (myKey == null) {
+            mySetDoubleHandle.invokeExact ((Object)host, value);
+         }
+         else {
+            mySetDoubleHandle.invokeExact ((Object)host, myKey, value);
+         }
+      }
+      catch (Error e) {
+         throw e;
+      }
+      catch (Throwable e) {
+         methodInvocationError (e, host, mySetMethod);
+      }
+   }
+
    public Range getRange (HasProperties host) {
       if (myGetRangeMethod != null) {
          checkHostClass (host);
          try {
-            if (myKey == null) {
+            if (myGetRangeHandle != null) {
+               if (myKey == null) {
+                  return (Range)(Object)myGetRangeHandle.invokeExact (
+                     (Object)host);
+               }
+               else {
+                  return (Range)(Object)myGetRangeHandle.invokeExact (
+                     (Object)host, myKey);
+               }
+            }
+            else if (myKey == null) {
                return (Range)myGetRangeMethod.invoke (host);
             }
             else {
                return (Range)myGetRangeMethod.invoke (host, myKey);
             }
          }
-         catch (Exception e) {
+         catch (Error e) {
+            throw e;
+         }
+         catch (Throwable e) {
             methodInvocationError (e, host, myGetRangeMethod);
          }
          return null;
@@ -1093,14 +1263,25 @@ public class PropertyDesc implements PropertyInfo {
       else {
          checkHostClass (host);
          try {
-            if (myKey == null) {
+            if (mySetHandle != null) {
+               if (myKey == null) {
+                  mySetHandle.invokeExact ((Object)host, value);
+               }
+               else {
+                  mySetHandle.invokeExact ((Object)host, myKey, value);
+               }
+            }
+            else if (myKey == null) {
                mySetMethod.invoke (host, value);
             }
             else {
                mySetMethod.invoke (host, myKey, value);
             }
          }
-         catch (Exception e) {
+         catch (Error e) {
+            throw e;
+         }
+         catch (Throwable e) {
             methodInvocationError (e, host, mySetMethod);
          }
       }
@@ -324,7 +324,60 @@ public class PropertyDescTest extends UnitTest implements HasProperties {
       }
    }
 
+   public void testAccessors() {
+      PropertyDesc desc = props.get ("double");
+      check ("no get handle for double", desc.myGetHandle != null);
+      check ("no set handle for double", desc.mySetHandle != null);
+      check ("no double accessors for double", desc.hasDoubleAccessors());
+      check (
+         "double accessors for int", !props.get("int").hasDoubleAccessors());
+
+      double saveDouble = myDouble;
+      desc.setDoubleValue (this, 2.5);
+      checkEquals ("myDouble", myDouble, 2.5);
+      checkEquals ("getDoubleValue", desc.getDoubleValue (this), 2.5);
+      desc.setValue (this, 1.5);
+      checkEquals ("getValue", desc.getValue (this), 1.5);
+
+      // numeric converter access for double, double array and vector values
+      Property prop = props.get ("double").createHandle (this);
+      NumericConverter conv = new NumericConverter (prop.get());
+      conv.setValues (prop, new double[] { 4.0 });
+      checkEquals ("double property", prop.get(), 4.0);
+      checkEquals ("double values", conv.getValues (prop)[0], 4.0);
+      myDouble = saveDouble;
+
+      prop = props.get ("int").createHandle (this);
+      conv = new NumericConverter (prop.get());
+      int saveInt = myInt;
+      conv.setValues (prop, new double[] { 7.0 });
+      checkEquals ("int property", myInt, 7);
+      checkEquals ("int values", conv.getValues (prop)[0], 7.0);
+      myInt = saveInt;
+
+      prop = props.get ("vectorNd").createHandle (this);
+      conv = new NumericConverter (prop.get());
+      VectorNd saveVec = new VectorNd (myVectorNd);
+      double[] vals = new double[] { 1.0, 2.0, 3.0 };
+      conv.setValues (prop, vals);
+      checkEquals ("vectorNd property", myVectorNd, new VectorNd (vals));
+      checkEquals (
+         "vectorNd values", new VectorNd (conv.getValues (prop)),
+         new VectorNd (vals));
+      myVectorNd.set (saveVec);
+
+      prop = props.get ("doubleArray").createHandle (this);
+      conv = new NumericConverter (prop.get());
+      double[] saveArray = myDoubleArray;
+      conv.setValues (prop, vals);
+      checkEquals (
+         "doubleArray property", new VectorNd (myDoubleArray),
+         new VectorNd (vals));
+      myDoubleArray = saveArray;
+   }
+
    public void test() {
+      testAccessors();
       StringWriter sw = new StringWriter (1024);
       IndentingPrintWriter pw = new IndentingPrintWriter (sw);
       
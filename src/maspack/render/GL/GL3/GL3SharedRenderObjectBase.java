@@ -50,6 +50,8 @@ public abstract class GL3SharedRenderObjectBase extends GL3ResourceBase {
    
    // track version numbers so we can detect what has changed since last use
    RenderObjectVersion lastVersionInfo;
+   // version being updated to, valid during updateDynamicVertices
+   RenderObjectVersion updateVersionInfo;
    
    protected VertexBufferObject[] vbos;
    
@@ -195,7 +197,9 @@ public abstract class GL3SharedRenderObjectBase extends GL3ResourceBase {
       // if at least one dynamic component needs to be updated, do so here
       boolean update = (updateFlag != 0);
       if (update) {
+         updateVersionInfo = rv;
          updateDynamicVertices(gl, robj, updateFlag, updateFlag == dynamicMask);
+         updateVersionInfo = null;
       }
      
       return update;
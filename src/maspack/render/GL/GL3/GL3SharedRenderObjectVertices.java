@@ -1,6 +1,7 @@
 package maspack.render.GL.GL3;
 
 import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
 
 import com.jogamp.opengl.GL3;
 
@@ -37,85 +38,256 @@ public class GL3SharedRenderObjectVertices extends GL3SharedRenderObjectBase {
    protected void updateDynamicVertices(GL3 gl, RenderObject robj, int updateMask, boolean replace) {
 
       robj.readLock (); {
-         int vertStride = robj.getVertexStride ();
-         int[] verts = robj.getVertexBuffer ();
-
-         ByteBuffer buff = null;
-         if (replace) {
-            // buff = vbos[DYNAMIC_VBO_IDX].mapNewBuffer (gl);
-            buff = BufferUtilities.newNativeByteBuffer (vbos[DYNAMIC_VBO_IDX].getSize ());
+         int[] vrange = findModifiedVertexRange (robj, updateMask);
+         if (vrange != null) {
+            updateDynamicVertexRange (gl, robj, vrange[0], vrange[1]);
          } else {
-            buff = vbos[DYNAMIC_VBO_IDX].mapBuffer (gl, GL3.GL_WRITE_ONLY);
-         }
-
-         if ( positionInfo != null && (updateMask & POSITION_FLAG) != 0) {
-            int bidx = positionInfo.offset;
-            int pidx = robj.getVertexPositionOffset();
-            
+            ByteBuffer buff = null;
+            if (replace) {
+               // buff = vbos[DYNAMIC_VBO_IDX].mapNewBuffer (gl);
+               buff = BufferUtilities.newNativeByteBuffer (vbos[DYNAMIC_VBO_IDX].getSize ());
+            } else {
+               buff = vbos[DYNAMIC_VBO_IDX].mapBuffer (gl, GL3.GL_WRITE_ONLY);
+            }
 
-            for (int i=0; i<positionInfo.count; ++i) {
-               float[] pos = robj.getPosition (verts[pidx]);
-               buff.position (bidx);
-               positionPutter.putPosition(buff, pos);
+            int nverts = robj.numVertices ();
+            if ( positionInfo != null && (updateMask & POSITION_FLAG) != 0) {
+               putPositions (buff, positionInfo.offset, robj, 0, nverts);
+            }
+            if ( normalInfo != null && (updateMask & NORMAL_FLAG) != 0) {
+               putNormals (buff, normalInfo.offset, robj, 0, nverts);
+            }
+            if ( colorInfo != null && (updateMask & COLOR_FLAG) != 0) {
+               putColors (buff, colorInfo.offset, robj, 0, nverts);
+            }
+            if ( textureInfo != null && (updateMask & TEXCOORDS_FLAG) != 0) {
+               putTextureCoords (buff, textureInfo.offset, robj, 0, nverts);
+            }
 
-               pidx += vertStride;
-               bidx += positionInfo.stride;
+            // unmap
+            if (replace) {
+               buff.flip ();
+               vbos[DYNAMIC_VBO_IDX].update (gl, buff);
+               buff = BufferUtilities.freeDirectBuffer (buff);
+            } else {
+               vbos[DYNAMIC_VBO_IDX].unmapBuffer (gl);
             }
          }
+      } robj.readUnlock ();
+   }
 
-         // normal
-         if ( normalInfo != null && (updateMask & NORMAL_FLAG) != 0) {
-            int bidx = normalInfo.offset;
-            int pidx = robj.getVertexNormalOffset();
-
-            for (int i=0; i<normalInfo.count; ++i) {
-               float[] pos = robj.getNormal (verts[pidx]);
-               buff.position (bidx);
-               normalPutter.putNormal(buff, pos);
+   /**
+    * Finds the range of vertices that reference attribute values modified
+    * since the last update, for the attributes specified by updateMask.
+    * Returns <code>null</code> if the modified ranges are unknown, or if
+    * all vertices need to be updated.
+    */
+   private int[] findModifiedVertexRange (RenderObject robj, int updateMask) {
+      RenderObjectVersion rv = updateVersionInfo;
+      RenderObjectVersion lv = lastVersionInfo;
+      if (rv == null || lv == null) {
+         return null;
+      }
+      int nverts = robj.numVertices ();
+      int[] vrange = new int[] {nverts, 0};
+      if ((updateMask & POSITION_FLAG) != 0) {
+         int[] range = rv.getPositionsModifiedRange (lv, robj.numPositions ());
+         if (!expandVertexRange (
+                vrange, robj, robj.getVertexPositionOffset (),
+                range[0], range[1], robj.numPositions ())) {
+            return null;
+         }
+      }
+      if ((updateMask & NORMAL_FLAG) != 0) {
+         int[] range = rv.getNormalsModifiedRange (lv, robj.numNormals ());
+         if (!expandVertexRange (
+                vrange, robj, robj.getVertexNormalOffset (),
+                range[0], range[1], robj.numNormals ())) {
+            return null;
+         }
+      }
+      if ((updateMask & COLOR_FLAG) != 0) {
+         int[] range = rv.getColorsModifiedRange (lv, robj.numColors ());
+         if (!expandVertexRange (
+                vrange, robj, robj.getVertexColorOffset (),
+                range[0], range[1], robj.numColors ())) {
+            return null;
+         }
+      }
+      if ((updateMask & TEXCOORDS_FLAG) != 0) {
+         int[] range =
+            rv.getTextureCoordsModifiedRange (lv, robj.numTextureCoords ());
+         if (!expandVertexRange (
+                vrange, robj, robj.getVertexTextureCoordOffset (),
+                range[0], range[1], robj.numTextureCoords ())) {
+            return null;
+         }
+      }
+      if (vrange[0] >= vrange[1]) {
+         // no vertices reference the modified values
+         vrange[0] = 0;
+         vrange[1] = 0;
+      }
+      else if (vrange[0] == 0 && vrange[1] == nverts) {
+         return null;
+      }
+      return vrange;
+   }
 
-               pidx += vertStride;
-               bidx += normalInfo.stride;
-            }  
+   /**
+    * Expands a vertex range to include all vertices whose attribute index
+    * lies within [start,end). Returns <code>false</code> if the attribute
+    * index range covers all num attributes, in which case all vertices
+    * should be updated.
+    */
+   private boolean expandVertexRange (
+      int[] vrange, RenderObject robj, int voffset, int start, int end, int num) {
+      if (voffset < 0) {
+         return true;
+      }
+      if (start <= 0 && end >= num) {
+         return false;
+      }
+      int vertStride = robj.getVertexStride ();
+      int[] verts = robj.getVertexBuffer ();
+      int nverts = robj.numVertices ();
+      int vidx = voffset;
+      for (int i=0; i<nverts; ++i) {
+         int aidx = verts[vidx];
+         if (aidx >= start && aidx < end) {
+            if (i < vrange[0]) {
+               vrange[0] = i;
+            }
+            vrange[1] = i+1;
          }
+         vidx += vertStride;
+      }
+      return true;
+   }
+
+   /**
+    * Uploads the dynamic attributes for vertices in [vstart,vend), leaving
+    * the remainder of the dynamic buffer untouched.
+    */
+   private void updateDynamicVertexRange (
+      GL3 gl, RenderObject robj, int vstart, int vend) {
+      
+      if (vend <= vstart) {
+         return;
+      }
+      int size = (vend-vstart)*dynamicVertexSize;
+      ByteBuffer buff = BufferUtilities.newNativeByteBuffer (size);
+      // all dynamic attributes must be written, since they are interleaved
+      if (isDynamic (positionInfo)) {
+         putPositions (buff, positionInfo.offset, robj, vstart, vend);
+      }
+      if (isDynamic (normalInfo)) {
+         putNormals (buff, normalInfo.offset, robj, vstart, vend);
+      }
+      if (isDynamic (colorInfo)) {
+         putColors (buff, colorInfo.offset, robj, vstart, vend);
+      }
+      if (isDynamic (textureInfo)) {
+         putTextureCoords (buff, textureInfo.offset, robj, vstart, vend);
+      }
+      buff.clear ();
+      vbos[DYNAMIC_VBO_IDX].update (
+         gl, buff, vstart*dynamicVertexSize, size);
+      BufferUtilities.freeDirectBuffer (buff);
+   }
 
-         // color
-         if ( colorInfo != null && (updateMask & COLOR_FLAG) != 0) {
-            int bidx = colorInfo.offset;
-            int pidx = robj.getVertexColorOffset();
+   private static boolean isDynamic (AttributeInfo info) {
+      return info != null && info.vboIndex == DYNAMIC_VBO_IDX;
+   }
 
-            for (int i=0; i<colorInfo.count; ++i) {
-               byte[] pos = robj.getColor (verts[pidx]);
-               buff.position (bidx);
-               colorPutter.putColor(buff, pos);
+   // The following put attribute values for vertices in [vstart,vend),
+   // starting at byte index bidx. Packed attribute storage is read
+   // directly when available, to avoid copying each value.
 
-               pidx += vertStride;
-               bidx += colorInfo.stride;
-            }
+   private void putPositions (
+      ByteBuffer buff, int bidx, RenderObject robj, int vstart, int vend) {
+      int vertStride = robj.getVertexStride ();
+      int[] verts = robj.getVertexBuffer ();
+      int pidx = robj.getVertexPositionOffset () + vstart*vertStride;
+      FloatBuffer packed = robj.getPositionBuffer ();
+
+      for (int i=vstart; i<vend; ++i) {
+         buff.position (bidx);
+         if (packed != null) {
+            int k = 3*verts[pidx];
+            positionPutter.putPosition (
+               buff, packed.get (k), packed.get (k+1), packed.get (k+2));
+         } else {
+            positionPutter.putPosition (buff, robj.getPosition (verts[pidx]));
          }
+         pidx += vertStride;
+         bidx += positionInfo.stride;
+      }
+   }
 
-         // texture
-         if ( textureInfo != null && (updateMask & TEXCOORDS_FLAG) != 0) {
-            int bidx = textureInfo.offset;
-            int pidx = robj.getVertexTextureCoordOffset ();
-
-            for (int i=0; i<textureInfo.count; ++i) {
-               float[] pos = robj.getTextureCoord (verts[pidx]);
-               buff.position (bidx);
-               texturePutter.putTextureCoord(buff, pos);
-               pidx += vertStride;
-               bidx += textureInfo.stride;
-            }
+   private void putNormals (
+      ByteBuffer buff, int bidx, RenderObject robj, int vstart, int vend) {
+      int vertStride = robj.getVertexStride ();
+      int[] verts = robj.getVertexBuffer ();
+      int pidx = robj.getVertexNormalOffset () + vstart*vertStride;
+      FloatBuffer packed = robj.getNormalBuffer ();
+
+      for (int i=vstart; i<vend; ++i) {
+         buff.position (bidx);
+         if (packed != null) {
+            int k = 3*verts[pidx];
+            normalPutter.putNormal (
+               buff, packed.get (k), packed.get (k+1), packed.get (k+2));
+         } else {
+            normalPutter.putNormal (buff, robj.getNormal (verts[pidx]));
          }
+         pidx += vertStride;
+         bidx += normalInfo.stride;
+      }
+   }
 
-         // unmap
-         if (replace) {
-            buff.flip ();
-            vbos[DYNAMIC_VBO_IDX].update (gl, buff);
-            buff = BufferUtilities.freeDirectBuffer (buff);
+   private void putColors (
+      ByteBuffer buff, int bidx, RenderObject robj, int vstart, int vend) {
+      int vertStride = robj.getVertexStride ();
+      int[] verts = robj.getVertexBuffer ();
+      int pidx = robj.getVertexColorOffset () + vstart*vertStride;
+      ByteBuffer packed = robj.getColorBuffer ();
+
+      for (int i=vstart; i<vend; ++i) {
+         buff.position (bidx);
+         if (packed != null) {
+            int k = 4*verts[pidx];
+            colorPutter.putColor (
+               buff, packed.get (k), packed.get (k+1), 
+               packed.get (k+2), packed.get (k+3));
          } else {
-            vbos[DYNAMIC_VBO_IDX].unmapBuffer (gl);
+            colorPutter.putColor (buff, robj.getColor (verts[pidx]));
          }
-      } robj.readUnlock ();
+         pidx += vertStride;
+         bidx += colorInfo.stride;
+      }
+   }
+
+   private void putTextureCoords (
+      ByteBuffer buff, int bidx, RenderObject robj, int vstart, int vend) {
+      int vertStride = robj.getVertexStride ();
+      int[] verts = robj.getVertexBuffer ();
+      int pidx = robj.getVertexTextureCoordOffset () + vstart*vertStride;
+      FloatBuffer packed = robj.getTextureCoordBuffer ();
+
+      for (int i=vstart; i<vend; ++i) {
+         buff.position (bidx);
+         if (packed != null) {
+            int k = 2*verts[pidx];
+            texturePutter.putTextureCoord (
+               buff, packed.get (k), packed.get (k+1));
+         } else {
+            texturePutter.putTextureCoord (
+               buff, robj.getTextureCoord (verts[pidx]));
+         }
+         pidx += vertStride;
+         bidx += textureInfo.stride;
+      }
    }
 
    public boolean isValid() {
@@ -155,70 +327,32 @@ public class GL3SharedRenderObjectVertices extends GL3SharedRenderObjectBase {
          buffs[DYNAMIC_VBO_IDX] = BufferUtilities.newNativeByteBuffer(nVertices*dynamicVertexSize);
       }
 
-      int vertStride = robj.getVertexStride ();
-      int[] verts = robj.getVertexBuffer ();
-
       // fill vertex buffers      
       if ( positionInfo != null ) {
-         int bidx = positionInfo.offset;
-         int pidx = robj.getVertexPositionOffset();
-         ByteBuffer buff = buffs[positionInfo.vboIndex];
-
-         for (int i=0; i<positionInfo.count; ++i) {
-            float[] pos = robj.getPosition (verts[pidx]);
-            buff.position (bidx);
-            positionPutter.putPosition(buff, pos);
-
-            pidx += vertStride;
-            bidx += positionInfo.stride;
-         }
+         putPositions (
+            buffs[positionInfo.vboIndex], positionInfo.offset, 
+            robj, 0, positionInfo.count);
       }
 
       // normal
       if ( normalInfo != null ) {
-         int bidx = normalInfo.offset;
-         int pidx = robj.getVertexNormalOffset();
-         ByteBuffer buff = buffs[normalInfo.vboIndex];
-
-         for (int i=0; i<normalInfo.count; ++i) {
-            float[] pos = robj.getNormal (verts[pidx]);
-            buff.position (bidx);
-            normalPutter.putNormal(buff, pos);
-
-            pidx += vertStride;
-            bidx += normalInfo.stride;
-         }  
+         putNormals (
+            buffs[normalInfo.vboIndex], normalInfo.offset, 
+            robj, 0, normalInfo.count);
       }
 
       // color
       if ( colorInfo != null ) {
-         int bidx = colorInfo.offset;
-         int pidx = robj.getVertexColorOffset();
-         ByteBuffer buff = buffs[colorInfo.vboIndex];
-
-         for (int i=0; i<colorInfo.count; ++i) {
-            byte[] pos = robj.getColor (verts[pidx]);
-            buff.position (bidx);
-            colorPutter.putColor(buff, pos);
-
-            pidx += vertStride;
-            bidx += colorInfo.stride;
-         }
+         putColors (
+            buffs[colorInfo.vboIndex], colorInfo.offset, 
+            robj, 0, colorInfo.count);
       }
 
       // texture
       if ( textureInfo != null ) {
-         int bidx = textureInfo.offset;
-         int pidx = robj.getVertexTextureCoordOffset ();
-         ByteBuffer buff = buffs[textureInfo.vboIndex];
-
-         for (int i=0; i<textureInfo.count; ++i) {
-            float[] pos = robj.getTextureCoord (verts[pidx]);
-            buff.position (bidx);
-            texturePutter.putTextureCoord(buff, pos);
-            pidx += vertStride;
-            bidx += textureInfo.stride;
-         }
+         putTextureCoords (
+            buffs[textureInfo.vboIndex], textureInfo.offset, 
+            robj, 0, textureInfo.count);
       }
 
       // vertex buffer object
@@ -1,6 +1,9 @@
 package maspack.render;
 
 import java.awt.Color;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -82,6 +85,17 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
       private int linesVersion;
       private int trianglesVersion;
       private int totalVersion;
+
+      // index ranges [start,end) of the attributes modified between the
+      // previous and current attribute versions
+      private int positionsModifiedStart;
+      private int positionsModifiedEnd;
+      private int normalsModifiedStart;
+      private int normalsModifiedEnd;
+      private int colorsModifiedStart;
+      private int colorsModifiedEnd;
+      private int texturesModifiedStart;
+      private int texturesModifiedEnd;
       
       private RenderObjectVersion() {
          positionsVersion = 0;
@@ -130,6 +144,168 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
       public int getVersion() {
          return totalVersion;
       }
+
+      /**
+       * Returns the index of the first position modified between the
+       * previous positions version and the one returned by {@link
+       * #getPositionsVersion}. Together with {@link
+       * #getPositionsModifiedEnd}, this allows renderers that have observed
+       * the previous version to update only the positions that changed.
+       *
+       * @return first modified position index
+       */
+      public int getPositionsModifiedStart() {
+         return positionsModifiedStart;
+      }
+
+      /**
+       * Returns one plus the index of the last position modified between the
+       * previous positions version and the one returned by {@link
+       * #getPositionsVersion}. If the exact changes are not known, this will
+       * be {@code >=} the number of positions.
+       *
+       * @return one plus the last modified position index
+       */
+      public int getPositionsModifiedEnd() {
+         return positionsModifiedEnd;
+      }
+
+      /**
+       * Returns the index of the first normal modified since the previous
+       * normals version.
+       *
+       * @return first modified normal index
+       */
+      public int getNormalsModifiedStart() {
+         return normalsModifiedStart;
+      }
+
+      /**
+       * Returns one plus the index of the last normal modified since the
+       * previous normals version.
+       *
+       * @return one plus the last modified normal index
+       */
+      public int getNormalsModifiedEnd() {
+         return normalsModifiedEnd;
+      }
+
+      /**
+       * Returns the index of the first color modified since the previous
+       * colors version.
+       *
+       * @return first modified color index
+       */
+      public int getColorsModifiedStart() {
+         return colorsModifiedStart;
+      }
+
+      /**
+       * Returns one plus the index of the last color modified since the
+       * previous colors version.
+       *
+       * @return one plus the last modified color index
+       */
+      public int getColorsModifiedEnd() {
+         return colorsModifiedEnd;
+      }
+
+      /**
+       * Returns the index of the first texture coordinate modified since the
+       * previous texture coordinates version.
+       *
+       * @return first modified texture coordinate index
+       */
+      public int getTextureCoordsModifiedStart() {
+         return texturesModifiedStart;
+      }
+
+      /**
+       * Returns one plus the index of the last texture coordinate modified
+       * since the previous texture coordinates version.
+       *
+       * @return one plus the last modified texture coordinate index
+       */
+      public int getTextureCoordsModifiedEnd() {
+         return texturesModifiedEnd;
+      }
+
+      /**
+       * Returns the range of positions that must be updated by a renderer
+       * that last observed the positions at version {@code prev}. The
+       * modified range is only known when {@code prev} immediately precedes
+       * this version; otherwise, the full range {@code [0,num)} is
+       * returned.
+       *
+       * @param prev version last observed by the renderer
+       * @param num current number of positions
+       * @return index range {@code [start,end)} of positions to update
+       */
+      public int[] getPositionsModifiedRange (
+         RenderObjectVersion prev, int num) {
+         return getModifiedRange (
+            prev.positionsVersion, positionsVersion,
+            positionsModifiedStart, positionsModifiedEnd, num);
+      }
+
+      /**
+       * Returns the range of normals that must be updated by a renderer that
+       * last observed the normals at version {@code prev}.
+       *
+       * @param prev version last observed by the renderer
+       * @param num current number of normals
+       * @return index range {@code [start,end)} of normals to update
+       * @see #getPositionsModifiedRange
+       */
+      public int[] getNormalsModifiedRange (
+         RenderObjectVersion prev, int num) {
+         return getModifiedRange (
+            prev.normalsVersion, normalsVersion,
+            normalsModifiedStart, normalsModifiedEnd, num);
+      }
+
+      /**
+       * Returns the range of colors that must be updated by a renderer that
+       * last observed the colors at version {@code prev}.
+       *
+       * @param prev version last observed by the renderer
+       * @param num current number of colors
+       * @return index range {@code [start,end)} of colors to update
+       * @see #getPositionsModifiedRange
+       */
+      public int[] getColorsModifiedRange (
+         RenderObjectVersion prev, int num) {
+         return getModifiedRange (
+            prev.colorsVersion, colorsVersion,
+            colorsModifiedStart, colorsModifiedEnd, num);
+      }
+
+      /**
+       * Returns the range of texture coordinates that must be updated by a
+       * renderer that last observed the texture coordinates at version
+       * {@code prev}.
+       *
+       * @param prev version last observed by the renderer
+       * @param num current number of texture coordinates
+       * @return index range {@code [start,end)} of texture coordinates to
+       * update
+       * @see #getPositionsModifiedRange
+       */
+      public int[] getTextureCoordsModifiedRange (
+         RenderObjectVersion prev, int num) {
+         return getModifiedRange (
+            prev.texturesVersion, texturesVersion,
+            texturesModifiedStart, texturesModifiedEnd, num);
+      }
+
+      private static int[] getModifiedRange (
+         int prevVersion, int version, int start, int end, int num) {
+         if (version != prevVersion+1) {
+            // intermediate changes were not observed, so update everything
+            return new int[] {0, num};
+         }
+         return new int[] {Math.min (start, num), Math.min (end, num)};
+      }
       
       @Override
       protected RenderObjectVersion clone() {
@@ -143,6 +319,14 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
          c.linesVersion = linesVersion;
          c.trianglesVersion = trianglesVersion;
          c.totalVersion = totalVersion;
+         c.positionsModifiedStart = positionsModifiedStart;
+         c.positionsModifiedEnd = positionsModifiedEnd;
+         c.normalsModifiedStart = normalsModifiedStart;
+         c.normalsModifiedEnd = normalsModifiedEnd;
+         c.colorsModifiedStart = colorsModifiedStart;
+         c.colorsModifiedEnd = colorsModifiedEnd;
+         c.texturesModifiedStart = texturesModifiedStart;
+         c.texturesModifiedEnd = texturesModifiedEnd;
          return c;
       }
 
@@ -336,6 +520,14 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
    ArrayList<byte[]> colors;
    ArrayList<float[]> texcoords;
 
+   // packed attribute storage, used in place of the lists above when
+   // packed storage is enabled
+   boolean packedStorage;
+   float[] packedPositions;   // 3 values per position
+   float[] packedNormals;     // 3 values per normal
+   byte[] packedColors;       // 4 values per color
+   float[] packedTexcoords;   // 2 values per texture coordinate
+
    int currentPositionIdx;
    int currentNormalIdx;
    int currentColorIdx;
@@ -346,6 +538,18 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
    boolean normalsModified;
    boolean colorsModified;
    boolean texturesModified;
+
+   // index ranges [start,end) of attributes modified since the last
+   // version update
+   static final int MODIFIED_ALL = Integer.MAX_VALUE;
+   int positionsModStart = MODIFIED_ALL;
+   int positionsModEnd = 0;
+   int normalsModStart = MODIFIED_ALL;
+   int normalsModEnd = 0;
+   int colorsModStart = MODIFIED_ALL;
+   int colorsModEnd = 0;
+   int texturesModStart = MODIFIED_ALL;
+   int texturesModEnd = 0;
    
    DrawMode buildMode;
    int buildModeStart;  // starting number of vertices when build mode began
@@ -467,7 +671,12 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     */
    public void ensurePositionCapacity(int cap) {
       writeLock();
-      positions.ensureCapacity (cap);
+      if (packedStorage) {
+         packedPositions = ensurePackedCapacity (packedPositions, 3*cap);
+      }
+      else {
+         positions.ensureCapacity (cap);
+      }
       writeUnlock();
    }
 
@@ -486,7 +695,8 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     * Adds a position by reference.  If the position is modified outside of
     * this render object, then you must manually flag the change using {@link
     * #notifyPositionsModified()}.  Otherwise, renderers are free to assume the
-    * positions have not changed.
+    * positions have not changed. If packed storage is enabled, the values
+    * are copied instead.
     * @param xyz position vector
     * @return an index referring to the added position
     */
@@ -499,10 +709,16 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
    
    private int addPositionInternal (float[] xyz) {
       int pidx = stateInfo.numPositions;
-      positions.add (xyz);
+      if (packedStorage) {
+         packedPositions = ensurePackedCapacity (packedPositions, 3*(pidx+1));
+         System.arraycopy (xyz, 0, packedPositions, 3*pidx, 3);
+      }
+      else {
+         positions.add (xyz);
+      }
       stateInfo.numPositions++;
       currentPositionIdx = pidx;
-      notifyPositionsModifiedInternal ();
+      notifyPositionsModifiedInternal (pidx, pidx+1);
       return pidx;      
    }
 
@@ -523,7 +739,7 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     */
    public void setCurrentPosition(int pidx) {
       if (pidx >= 0) {
-         if (pidx >= positions.size()) {
+         if (pidx >= stateInfo.numPositions) {
             throw new IllegalArgumentException (
                "Position "+pidx+" is not defined");
          }
@@ -566,18 +782,69 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
    
    /**
     * Updates the values of the position with index pidx, to the provide
-    * values by reference.  
+    * values by reference.  If packed storage is enabled, the values are
+    * copied instead.
     * 
     * @param pidx position to modify
     * @param pos new position values by reference
     */
    public void setPosition(int pidx, float[] pos) {
       writeLock();
-      positions.set(pidx, pos);
-      notifyPositionsModifiedInternal ();
+      if (packedStorage) {
+         checkPackedIndex (pidx, stateInfo.numPositions);
+         System.arraycopy (pos, 0, packedPositions, 3*pidx, 3);
+      }
+      else {
+         positions.set(pidx, pos);
+      }
+      notifyPositionsModifiedInternal (pidx, pidx+1);
       writeUnlock();
    }
 
+   /**
+    * Updates the values of all positions from a buffer containing
+    * consecutive {x,y,z} triples.  This is more efficient than setting the
+    * positions individually, particularly when packed storage is enabled.
+    *
+    * @param xyz buffer containing the new position values
+    * @param offset offset within <code>xyz</code> of the first value
+    */
+   public void setPositions(float[] xyz, int offset) {
+      setPositions (0, stateInfo.numPositions, xyz, offset);
+   }
+
+   /**
+    * Updates the values of <code>num</code> consecutive positions, starting
+    * at index <code>pidx</code>, from a buffer containing consecutive
+    * {x,y,z} triples. Renderers are informed that only these positions have
+    * changed.
+    *
+    * @param pidx index of the first position to modify
+    * @param num number of positions to modify
+    * @param xyz buffer containing the new position values
+    * @param offset offset within <code>xyz</code> of the first value
+    */
+   public void setPositions(int pidx, int num, float[] xyz, int offset) {
+      writeLock();
+      try {
+         checkPackedRange (pidx, num, stateInfo.numPositions);
+         if (packedStorage) {
+            System.arraycopy (xyz, offset, packedPositions, 3*pidx, 3*num);
+         }
+         else {
+            for (int i=0; i<num; ++i) {
+               int k = offset+3*i;
+               positions.set (
+                  pidx+i, new float[] {xyz[k], xyz[k+1], xyz[k+2]});
+            }
+         }
+         notifyPositionsModifiedInternal (pidx, pidx+num);
+      }
+      finally {
+         writeUnlock();
+      }
+   }
+
    /**
     * Whether or not any positions have been defined.
     */
@@ -585,7 +852,7 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
       if (positions == null) {
          return false;
       }
-      return (positions.size () > 0);
+      return (stateInfo.numPositions > 0);
    }
 
    /**
@@ -598,6 +865,8 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
    /**
     * Retrieves the position at the supplied index.  If the returned position
     * is modified, then {@link #notifyPositionsModified()} must be manually called.
+    * If packed storage is enabled, a copy of the position is returned, and
+    * changes to it will not affect this object.
     * @param pidx position index
     * @return position {x,y,z}
     */
@@ -611,25 +880,55 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
       if (pidx < 0) {
          return null;
       }
+      if (packedStorage) {
+         checkPackedIndex (pidx, stateInfo.numPositions);
+         return Arrays.copyOfRange (packedPositions, 3*pidx, 3*pidx+3);
+      }
       return positions.get(pidx);
    }
 
    /**
     * Retrieves the full list of positions.  This list should not
-    * be modified.
+    * be modified. If packed storage is enabled, the list elements are
+    * copies of the stored positions.
     * 
     * @return list of positions.
     */
    public List<float[]> getPositions() {
       if (hasPositions()) {
+         if (packedStorage) {
+            return new PackedFloatList (
+               packedPositions, 3, stateInfo.numPositions);
+         }
          return Collections.unmodifiableList(positions);
       }
       return null;
    }
 
+   /**
+    * Returns a read-only buffer containing the positions as consecutive
+    * {x,y,z} triples, if packed storage is enabled. The buffer remains
+    * valid until further positions are added.
+    *
+    * @return packed positions, or <code>null</code> if packed storage
+    * is not enabled
+    */
+   public FloatBuffer getPositionBuffer() {
+      if (!packedStorage) {
+         return null;
+      }
+      return packedFloatBuffer (packedPositions, 3*stateInfo.numPositions);
+   }
+
    private void notifyPositionsModifiedInternal() {
+      notifyPositionsModifiedInternal (0, MODIFIED_ALL);
+   }
+
+   private void notifyPositionsModifiedInternal(int start, int end) {
       positionsModified = true;
       totalModified = true;
+      positionsModStart = Math.min (positionsModStart, start);
+      positionsModEnd = Math.max (positionsModEnd, end);
    }
    
    /**
@@ -648,6 +947,10 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
    public int getPositionsVersion() {
       if (positionsModified) {
          versionInfo.positionsVersion++;
+         versionInfo.positionsModifiedStart = positionsModStart;
+         versionInfo.positionsModifiedEnd = positionsModEnd;
+         positionsModStart = MODIFIED_ALL;
+         positionsModEnd = 0;
          positionsModified = false;
       }
       return versionInfo.positionsVersion;
@@ -659,7 +962,12 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     */
    public void ensureNormalCapacity(int cap) {
       writeLock();
-      normals.ensureCapacity (cap);
+      if (packedStorage) {
+         packedNormals = ensurePackedCapacity (packedNormals, 3*cap);
+      }
+      else {
+         normals.ensureCapacity (cap);
+      }
       writeUnlock();
    }
 
@@ -679,17 +987,24 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     * is modified outside of this render object, this object
     * must be notified with {@link #notifyNormalsModified()}.
     * Otherwise, renders are free to assume there has been
-    * no change.
+    * no change. If packed storage is enabled, the values are copied
+    * instead.
     * @param nrm the normal to add
     * @return the index of the normal added
     */
    public int addNormal(float[] nrm) {
       writeLock();
       int nidx = stateInfo.numNormals;
-      normals.add (nrm);
+      if (packedStorage) {
+         packedNormals = ensurePackedCapacity (packedNormals, 3*(nidx+1));
+         System.arraycopy (nrm, 0, packedNormals, 3*nidx, 3);
+      }
+      else {
+         normals.add (nrm);
+      }
       stateInfo.numNormals++;
       currentNormalIdx = nidx;
-      notifyNormalsModifiedInternal();
+      notifyNormalsModifiedInternal (nidx, nidx+1);
       writeUnlock();
       return nidx;
    }
@@ -711,7 +1026,7 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     */
    public void setCurrentNormal(int nidx) {
       if (nidx >= 0) {
-         if (nidx >= normals.size()) {
+         if (nidx >= stateInfo.numNormals) {
             throw new IllegalArgumentException (
                "Normal "+nidx+" is not defined");
          }
@@ -754,16 +1069,65 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
    
    /**
     * Updates the new normal, by reference, with index nidx.
+    * If packed storage is enabled, the values are copied instead.
     * @param nidx normal to modify
     * @param nrm the new normal
     */
    public void setNormal(int nidx, float[] nrm) {
       writeLock();
-      normals.set(nidx, nrm);
-      notifyNormalsModifiedInternal();
+      if (packedStorage) {
+         checkPackedIndex (nidx, stateInfo.numNormals);
+         System.arraycopy (nrm, 0, packedNormals, 3*nidx, 3);
+      }
+      else {
+         normals.set(nidx, nrm);
+      }
+      notifyNormalsModifiedInternal (nidx, nidx+1);
       writeUnlock();
    }
 
+   /**
+    * Updates the values of all normals from a buffer containing
+    * consecutive {x,y,z} triples.
+    *
+    * @param nrms buffer containing the new normal values
+    * @param offset offset within <code>nrms</code> of the first value
+    */
+   public void setNormals(float[] nrms, int offset) {
+      setNormals (0, stateInfo.numNormals, nrms, offset);
+   }
+
+   /**
+    * Updates the values of <code>num</code> consecutive normals, starting
+    * at index <code>nidx</code>, from a buffer containing consecutive
+    * {x,y,z} triples.
+    *
+    * @param nidx index of the first normal to modify
+    * @param num number of normals to modify
+    * @param nrms buffer containing the new normal values
+    * @param offset offset within <code>nrms</code> of the first value
+    */
+   public void setNormals(int nidx, int num, float[] nrms, int offset) {
+      writeLock();
+      try {
+         checkPackedRange (nidx, num, stateInfo.numNormals);
+         if (packedStorage) {
+            System.arraycopy (nrms, offset, packedNormals, 3*nidx, 3*num);
+         }
+         else {
+            for (int i=0; i<num; ++i) {
+               int k = offset+3*i;
+               normals.set (
+                  nidx+i, new float[] {nrms[k], nrms[k+1], nrms[k+2]});
+            }
+         }
+         notifyNormalsModifiedInternal (nidx, nidx+num);
+      }
+      finally {
+         writeUnlock();
+      }
+   }
+
    /**
     * Whether or not any normals have been defined.
     */
@@ -771,7 +1135,7 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
       if (normals == null) {
          return false;
       }
-      return (normals.size () > 0);
+      return (stateInfo.numNormals > 0);
    }
 
    /**
@@ -784,7 +1148,7 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
    /**
     * Retrieves the normal at the supplied index.  If the returned
     * normal is modified, then {@link #notifyNormalsModified()} must
-    * be called.
+    * be called. If packed storage is enabled, a copy is returned.
     * @param nidx normal index
     * @return normal {x,y,z}
     */
@@ -797,6 +1161,10 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
       if (nidx < 0) {
          return null;
       }
+      if (packedStorage) {
+         checkPackedIndex (nidx, stateInfo.numNormals);
+         return Arrays.copyOfRange (packedNormals, 3*nidx, 3*nidx+3);
+      }
       float[] nrm = normals.get(nidx);
       return nrm;
    }
@@ -810,17 +1178,41 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     */
    public List<float[]> getNormals() {
       if (hasNormals()) {
+         if (packedStorage) {
+            return new PackedFloatList (
+               packedNormals, 3, stateInfo.numNormals);
+         }
          return Collections.unmodifiableList(normals);
       }
       return null;
    }
+
+   /**
+    * Returns a read-only buffer containing the normals as consecutive
+    * {x,y,z} triples, if packed storage is enabled.
+    *
+    * @return packed normals, or <code>null</code> if packed storage
+    * is not enabled
+    */
+   public FloatBuffer getNormalBuffer() {
+      if (!packedStorage) {
+         return null;
+      }
+      return packedFloatBuffer (packedNormals, 3*stateInfo.numNormals);
+   }
    
    /**
     * Indicate that the normals have been modified.
     */
    private void notifyNormalsModifiedInternal() {
+      notifyNormalsModifiedInternal (0, MODIFIED_ALL);
+   }
+
+   private void notifyNormalsModifiedInternal(int start, int end) {
       normalsModified = true;
       totalModified = true;
+      normalsModStart = Math.min (normalsModStart, start);
+      normalsModEnd = Math.max (normalsModEnd, end);
    }
    
    /**
@@ -840,6 +1232,10 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
    public int getNormalsVersion() {
       if (normalsModified) {
          versionInfo.normalsVersion++;
+         versionInfo.normalsModifiedStart = normalsModStart;
+         versionInfo.normalsModifiedEnd = normalsModEnd;
+         normalsModStart = MODIFIED_ALL;
+         normalsModEnd = 0;
          normalsModified = false;
       }
       return versionInfo.normalsVersion;
@@ -851,7 +1247,12 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     */
    public void ensureColorCapacity(int cap) {
       writeLock();
-      colors.ensureCapacity (cap);
+      if (packedStorage) {
+         packedColors = ensurePackedCapacity (packedColors, 4*cap);
+      }
+      else {
+         colors.ensureCapacity (cap);
+      }
       writeUnlock();
    }
 
@@ -921,24 +1322,37 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     * Adds an indexable color by reference.  If the color is modified
     * outside of this object, then {@link #notifyColorsModified()} must
     * be called.  Otherwise, renderers are free to assume the render object
-    * has not changed.
+    * has not changed. If packed storage is enabled, the values are copied
+    * instead.
     * @param rgba {red, green, blue, alpha}
     * @return the index of the color added
     */
    public int addColor(byte[] rgba) {
       writeLock();
       int cidx = stateInfo.numColors;
-      colors.add (rgba);
+      if (packedStorage) {
+         packedColors = ensurePackedCapacity (packedColors, 4*(cidx+1));
+         System.arraycopy (rgba, 0, packedColors, 4*cidx, 4);
+      }
+      else {
+         colors.add (rgba);
+      }
       stateInfo.numColors++;
       currentColorIdx = cidx;
-      notifyColorsModifiedInternal ();
+      notifyColorsModifiedInternal (cidx, cidx+1);
       writeUnlock();
       return cidx;
    }
    
    private void notifyColorsModifiedInternal() {
+      notifyColorsModifiedInternal (0, MODIFIED_ALL);
+   }
+
+   private void notifyColorsModifiedInternal(int start, int end) {
       colorsModified = true;
       totalModified = true;
+      colorsModStart = Math.min (colorsModStart, start);
+      colorsModEnd = Math.max (colorsModEnd, end);
    }
    
    public void notifyColorsModified() {
@@ -954,7 +1368,7 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     */
    public void setCurrentColor(int cidx) {
       if (cidx >= 0) {
-         if (cidx >= colors.size()) {
+         if (cidx >= stateInfo.numColors) {
             throw new IllegalArgumentException (
                "Color "+cidx+" is not defined");
          }
@@ -1025,16 +1439,66 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
    
    /**
     * Updates the values of the color, by reference, with index cidx.
+    * If packed storage is enabled, the values are copied instead.
     * @param cidx color to modify
     * @param rgba {red, green, blue, alpha}
     */
    public void setColor(int cidx, byte[] rgba) {
       writeLock();
-      colors.set(cidx, rgba);
-      notifyColorsModifiedInternal();
+      if (packedStorage) {
+         checkPackedIndex (cidx, stateInfo.numColors);
+         System.arraycopy (rgba, 0, packedColors, 4*cidx, 4);
+      }
+      else {
+         colors.set(cidx, rgba);
+      }
+      notifyColorsModifiedInternal (cidx, cidx+1);
       writeUnlock();
    }
 
+   /**
+    * Updates the values of all colors from a buffer containing
+    * consecutive {red, green, blue, alpha} quadruples.
+    *
+    * @param rgba buffer containing the new color values
+    * @param offset offset within <code>rgba</code> of the first value
+    */
+   public void setColors(byte[] rgba, int offset) {
+      setColors (0, stateInfo.numColors, rgba, offset);
+   }
+
+   /**
+    * Updates the values of <code>num</code> consecutive colors, starting
+    * at index <code>cidx</code>, from a buffer containing consecutive
+    * {red, green, blue, alpha} quadruples.
+    *
+    * @param cidx index of the first color to modify
+    * @param num number of colors to modify
+    * @param rgba buffer containing the new color values
+    * @param offset offset within <code>rgba</code> of the first value
+    */
+   public void setColors(int cidx, int num, byte[] rgba, int offset) {
+      writeLock();
+      try {
+         checkPackedRange (cidx, num, stateInfo.numColors);
+         if (packedStorage) {
+            System.arraycopy (rgba, offset, packedColors, 4*cidx, 4*num);
+         }
+         else {
+            for (int i=0; i<num; ++i) {
+               int k = offset+4*i;
+               colors.set (
+                  cidx+i,
+                  new byte[] {rgba[k], rgba[k+1], rgba[k+2], rgba[k+3]});
+            }
+         }
+         notifyColorsModifiedInternal (cidx, cidx+num);
+      }
+      finally {
+         writeUnlock();
+      }
+   }
+
    /**
     * Whether or not any colors have been defined.
     */
@@ -1042,7 +1506,7 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
       if (colors == null) {
          return false;
       }
-      return (colors.size () > 0);
+      return (stateInfo.numColors > 0);
    }
 
    /**
@@ -1055,6 +1519,7 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
    /**
     * Retrieves the color at the supplied index.  If the returned color
     * is modified, then {@link #notifyColorsModified()} must be manually called.
+    * If packed storage is enabled, a copy is returned.
     * @param cidx color index
     * @return color {red, green, blue, alpha}
     */
@@ -1067,6 +1532,10 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
       if (cidx < 0) {
          return null;
       }
+      if (packedStorage) {
+         checkPackedIndex (cidx, stateInfo.numColors);
+         return Arrays.copyOfRange (packedColors, 4*cidx, 4*cidx+4);
+      }
       return colors.get(cidx);
    }
 
@@ -1077,9 +1546,26 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     * @return list of colors.
     */
    public List<byte[]> getColors() {
+      if (packedStorage) {
+         return new PackedByteList (packedColors, 4, stateInfo.numColors);
+      }
       return Collections.unmodifiableList(colors);
    }
 
+   /**
+    * Returns a read-only buffer containing the colors as consecutive
+    * {red, green, blue, alpha} quadruples, if packed storage is enabled.
+    *
+    * @return packed colors, or <code>null</code> if packed storage
+    * is not enabled
+    */
+   public ByteBuffer getColorBuffer() {
+      if (!packedStorage) {
+         return null;
+      }
+      return packedByteBuffer (packedColors, 4*stateInfo.numColors);
+   }
+
    /**
     * Returns the latest colors version number,
     * for use in detecting if changes are present.
@@ -1087,6 +1573,10 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
    public int getColorsVersion() {
       if (colorsModified) {
          versionInfo.colorsVersion++;
+         versionInfo.colorsModifiedStart = colorsModStart;
+         versionInfo.colorsModifiedEnd = colorsModEnd;
+         colorsModStart = MODIFIED_ALL;
+         colorsModEnd = 0;
          colorsModified = false;
       }
       return versionInfo.colorsVersion;
@@ -1098,7 +1588,12 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     */
    public void ensureTextureCoordCapacity(int cap) {
       writeLock();
-      texcoords.ensureCapacity (cap);
+      if (packedStorage) {
+         packedTexcoords = ensurePackedCapacity (packedTexcoords, 2*cap);
+      }
+      else {
+         texcoords.ensureCapacity (cap);
+      }
       writeUnlock();
    }
 
@@ -1127,28 +1622,41 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     * If the texture coordinates are modified outside of this object,
     * then {@link #notifyTextureCoordsModified()} must be called.  Otherwise,
     * renderers are free to assume the render object has not changed.
+    * If packed storage is enabled, the values are copied instead.
     * @param xy x and y coordinate values
     * @return the index of the texture coordinate added
     */
    public int addTextureCoord(float[] xy) {
       writeLock();
       int tidx = stateInfo.numTexcoords;
-      texcoords.add (xy);
+      if (packedStorage) {
+         packedTexcoords = ensurePackedCapacity (packedTexcoords, 2*(tidx+1));
+         System.arraycopy (xy, 0, packedTexcoords, 2*tidx, 2);
+      }
+      else {
+         texcoords.add (xy);
+      }
       stateInfo.numTexcoords++;
       currentTextureIdx = tidx;
-      notifyTextureCoordsModifiedInternal();
+      notifyTextureCoordsModifiedInternal (tidx, tidx+1);
       writeUnlock();
       return tidx;
    }
    
    private void notifyTextureCoordsModifiedInternal() {
+      notifyTextureCoordsModifiedInternal (0, MODIFIED_ALL);
+   }
+
+   private void notifyTextureCoordsModifiedInternal(int start, int end) {
       texturesModified = true;
       totalModified = true;
+      texturesModStart = Math.min (texturesModStart, start);
+      texturesModEnd = Math.max (texturesModEnd, end);
    }
    
    public void notifyTextureCoordsModified() {
       writeLock();
-      notifyColorsModifiedInternal ();
+      notifyTextureCoordsModifiedInternal ();
       writeUnlock();
    }
 
@@ -1159,7 +1667,7 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     */
    public void setCurrentTextureCoord(int tidx) {
       if (tidx >= 0) {
-         if (tidx >= texcoords.size()) {
+         if (tidx >= stateInfo.numTexcoords) {
             throw new IllegalArgumentException (
                "Texture coordinate "+tidx+" is not defined");
          }
@@ -1201,16 +1709,64 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
    
    /**
     * Updates the values of the texture coordinate with index tidx by reference.
+    * If packed storage is enabled, the values are copied instead.
     * @param tidx coordinate index
     * @param xy x and y coordinate values
     */
    public void setTextureCoord(int tidx, float[] xy) {
       writeLock();
-      texcoords.set(tidx, xy);
-      notifyTextureCoordsModifiedInternal ();
+      if (packedStorage) {
+         checkPackedIndex (tidx, stateInfo.numTexcoords);
+         System.arraycopy (xy, 0, packedTexcoords, 2*tidx, 2);
+      }
+      else {
+         texcoords.set(tidx, xy);
+      }
+      notifyTextureCoordsModifiedInternal (tidx, tidx+1);
       writeUnlock();
    }
 
+   /**
+    * Updates the values of all texture coordinates from a buffer containing
+    * consecutive {x,y} pairs.
+    *
+    * @param xy buffer containing the new texture coordinate values
+    * @param offset offset within <code>xy</code> of the first value
+    */
+   public void setTextureCoords(float[] xy, int offset) {
+      setTextureCoords (0, stateInfo.numTexcoords, xy, offset);
+   }
+
+   /**
+    * Updates the values of <code>num</code> consecutive texture coordinates,
+    * starting at index <code>tidx</code>, from a buffer containing
+    * consecutive {x,y} pairs.
+    *
+    * @param tidx index of the first texture coordinate to modify
+    * @param num number of texture coordinates to modify
+    * @param xy buffer containing the new texture coordinate values
+    * @param offset offset within <code>xy</code> of the first value
+    */
+   public void setTextureCoords(int tidx, int num, float[] xy, int offset) {
+      writeLock();
+      try {
+         checkPackedRange (tidx, num, stateInfo.numTexcoords);
+         if (packedStorage) {
+            System.arraycopy (xy, offset, packedTexcoords, 2*tidx, 2*num);
+         }
+         else {
+            for (int i=0; i<num; ++i) {
+               int k = offset+2*i;
+               texcoords.set (tidx+i, new float[] {xy[k], xy[k+1]});
+            }
+         }
+         notifyTextureCoordsModifiedInternal (tidx, tidx+num);
+      }
+      finally {
+         writeUnlock();
+      }
+   }
+
    /**
     * Whether or not any texture coordinates have been defined.
     */
@@ -1218,7 +1774,7 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
       if (texcoords == null) {
          return false;
       }
-      return (texcoords.size () > 0);
+      return (stateInfo.numTexcoords > 0);
    }
 
    /**
@@ -1231,6 +1787,7 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
    /**
     * Retrieves the texture coordinate at the supplied index.  If the returned texture
     * coordinate is modified, then {@link #notifyTextureCoordsModified()} must be manually called.
+    * If packed storage is enabled, a copy is returned.
     * @param tidx position index
     * @return texture coordinate {x,y}
     */
@@ -1246,6 +1803,10 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
       if (tidx < 0) {
          return null;
       }
+      if (packedStorage) {
+         checkPackedIndex (tidx, stateInfo.numTexcoords);
+         return Arrays.copyOfRange (packedTexcoords, 2*tidx, 2*tidx+2);
+      }
       return texcoords.get(tidx);
    }
 
@@ -1257,11 +1818,29 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     */
    public List<float[]> getTextureCoords() {
       if (hasTextureCoords()) {
+         if (packedStorage) {
+            return new PackedFloatList (
+               packedTexcoords, 2, stateInfo.numTexcoords);
+         }
          return Collections.unmodifiableList(texcoords);
       }
       return null;
    }
 
+   /**
+    * Returns a read-only buffer containing the texture coordinates as
+    * consecutive {x,y} pairs, if packed storage is enabled.
+    *
+    * @return packed texture coordinates, or <code>null</code> if packed
+    * storage is not enabled
+    */
+   public FloatBuffer getTextureCoordBuffer() {
+      if (!packedStorage) {
+         return null;
+      }
+      return packedFloatBuffer (packedTexcoords, 2*stateInfo.numTexcoords);
+   }
+
    /**
     * Returns the latest texture coordinates version number,
     * for use in detecting if changes are present.
@@ -1269,11 +1848,223 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
    public int getTextureCoordsVersion() {
       if (texturesModified) {
          versionInfo.texturesVersion++;
+         versionInfo.texturesModifiedStart = texturesModStart;
+         versionInfo.texturesModifiedEnd = texturesModEnd;
+         texturesModStart = MODIFIED_ALL;
+         texturesModEnd = 0;
          texturesModified = false;
       }
       return versionInfo.texturesVersion;
    }
 
+   //=========================================================================
+   // Packed storage
+   //=========================================================================
+
+   /**
+    * Enables or disables packed storage of the positions, normals, colors
+    * and texture coordinates. By default, each attribute value is stored as
+    * a separate array, which may be shared by reference with the caller.
+    * When packed storage is enabled, the values for each attribute are
+    * instead stored consecutively in a single array. This avoids allocating
+    * an array per attribute value, allows bulk updates via methods such as
+    * {@link #setPositions(int,int,float[],int)}, and allows renderers to
+    * read the values directly using buffers such as those returned by
+    * {@link #getPositionBuffer()}. However, attributes are then copied
+    * when added or set, and the arrays returned by methods such as {@link
+    * #getPosition(int)} are copies, so that attributes can no longer be
+    * modified by reference. Existing attributes are converted when the
+    * storage mode changes.
+    * 
+    * @param enable if <code>true</code>, enables packed storage
+    */
+   public void setPackedStorage(boolean enable) {
+      writeLock();
+      if (enable != packedStorage && positions != null) {
+         if (enable) {
+            packedPositions = packFloats (positions, 3);
+            packedNormals = packFloats (normals, 3);
+            packedColors = packBytes (colors, 4);
+            packedTexcoords = packFloats (texcoords, 2);
+            positions = new ArrayList<>();
+            normals = new ArrayList<>();
+            colors = new ArrayList<>();
+            texcoords = new ArrayList<>();
+         }
+         else {
+            positions = unpackFloats (
+               packedPositions, 3, stateInfo.numPositions);
+            normals = unpackFloats (
+               packedNormals, 3, stateInfo.numNormals);
+            colors = unpackBytes (
+               packedColors, 4, stateInfo.numColors);
+            texcoords = unpackFloats (
+               packedTexcoords, 2, stateInfo.numTexcoords);
+            packedPositions = null;
+            packedNormals = null;
+            packedColors = null;
+            packedTexcoords = null;
+         }
+      }
+      packedStorage = enable;
+      writeUnlock();
+   }
+
+   /**
+    * Queries whether packed storage is enabled for this object.
+    * 
+    * @return <code>true</code> if packed storage is enabled
+    * @see #setPackedStorage(boolean)
+    */
+   public boolean isPackedStorage() {
+      return packedStorage;
+   }
+
+   private static float[] ensurePackedCapacity (float[] buf, int cap) {
+      if (buf == null) {
+         return new float[cap];
+      }
+      else if (buf.length < cap) {
+         // grow by 1.5, as with ArrayList
+         return Arrays.copyOf (buf, Math.max (cap, buf.length+(buf.length>>1)));
+      }
+      return buf;
+   }
+
+   private static byte[] ensurePackedCapacity (byte[] buf, int cap) {
+      if (buf == null) {
+         return new byte[cap];
+      }
+      else if (buf.length < cap) {
+         return Arrays.copyOf (buf, Math.max (cap, buf.length+(buf.length>>1)));
+      }
+      return buf;
+   }
+
+   private static void checkPackedIndex (int idx, int size) {
+      if (idx < 0 || idx >= size) {
+         throw new IndexOutOfBoundsException (
+            "Index: "+idx+", Size: "+size);
+      }
+   }
+
+   private static void checkPackedRange (int idx, int num, int size) {
+      if (idx < 0 || num < 0 || idx+num > size) {
+         throw new IndexOutOfBoundsException (
+            "Range: ["+idx+","+(idx+num)+"), Size: "+size);
+      }
+   }
+
+   private static float[] packFloats (ArrayList<float[]> list, int width) {
+      float[] buf = new float[width*list.size()];
+      for (int i=0; i<list.size(); ++i) {
+         System.arraycopy (list.get(i), 0, buf, width*i, width);
+      }
+      return buf;
+   }
+
+   private static byte[] packBytes (ArrayList<byte[]> list, int width) {
+      byte[] buf = new byte[width*list.size()];
+      for (int i=0; i<list.size(); ++i) {
+         System.arraycopy (list.get(i), 0, buf, width*i, width);
+      }
+      return buf;
+   }
+
+   private static ArrayList<float[]> unpackFloats (
+      float[] buf, int width, int num) {
+      ArrayList<float[]> list = new ArrayList<>(num);
+      for (int i=0; i<num; ++i) {
+         list.add (Arrays.copyOfRange (buf, width*i, width*(i+1)));
+      }
+      return list;
+   }
+
+   private static ArrayList<byte[]> unpackBytes (
+      byte[] buf, int width, int num) {
+      ArrayList<byte[]> list = new ArrayList<>(num);
+      for (int i=0; i<num; ++i) {
+         list.add (Arrays.copyOfRange (buf, width*i, width*(i+1)));
+      }
+      return list;
+   }
+
+   private static float[] copyPacked (float[] buf) {
+      return buf != null ? Arrays.copyOf (buf, buf.length) : null;
+   }
+
+   private static byte[] copyPacked (byte[] buf) {
+      return buf != null ? Arrays.copyOf (buf, buf.length) : null;
+   }
+
+   private static FloatBuffer packedFloatBuffer (float[] buf, int size) {
+      if (buf == null) {
+         buf = new float[0];
+      }
+      return FloatBuffer.wrap (buf, 0, size).slice().asReadOnlyBuffer();
+   }
+
+   private static ByteBuffer packedByteBuffer (byte[] buf, int size) {
+      if (buf == null) {
+         buf = new byte[0];
+      }
+      return ByteBuffer.wrap (buf, 0, size).slice().asReadOnlyBuffer();
+   }
+
+   /**
+    * Read-only list view of packed float attributes, returning a copy of
+    * each attribute value.
+    */
+   private static class PackedFloatList extends AbstractList<float[]> {
+      float[] buf;
+      int width;
+      int size;
+
+      PackedFloatList (float[] buf, int width, int size) {
+         this.buf = buf;
+         this.width = width;
+         this.size = size;
+      }
+
+      @Override
+      public float[] get (int idx) {
+         checkPackedIndex (idx, size);
+         return Arrays.copyOfRange (buf, width*idx, width*(idx+1));
+      }
+
+      @Override
+      public int size() {
+         return size;
+      }
+   }
+
+   /**
+    * Read-only list view of packed byte attributes, returning a copy of
+    * each attribute value.
+    */
+   private static class PackedByteList extends AbstractList<byte[]> {
+      byte[] buf;
+      int width;
+      int size;
+
+      PackedByteList (byte[] buf, int width, int size) {
+         this.buf = buf;
+         this.width = width;
+         this.size = size;
+      }
+
+      @Override
+      public byte[] get (int idx) {
+         checkPackedIndex (idx, size);
+         return Arrays.copyOfRange (buf, width*idx, width*(idx+1));
+      }
+
+      @Override
+      public int size() {
+         return size;
+      }
+   }
+
    //=========================================================================
    // Vertices
    //=========================================================================
@@ -2702,11 +3493,15 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
       colors = new ArrayList<> ();
       texcoords = new ArrayList<> ();
 
-      positionsModified = true;
-      normalsModified = true;
-      colorsModified = true;
-      texturesModified = true;
-      totalModified = true;
+      packedPositions = null;
+      packedNormals = null;
+      packedColors = null;
+      packedTexcoords = null;
+
+      notifyPositionsModifiedInternal ();
+      notifyNormalsModifiedInternal ();
+      notifyColorsModifiedInternal ();
+      notifyTextureCoordsModifiedInternal ();
 
       vertices = new int[0];
       numVertices = 0;
@@ -2804,10 +3599,10 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
       colors = null;
       texcoords = null;
 
-      positions = null;
-      normals = null;
-      colors = null;
-      texcoords = null;
+      packedPositions = null;
+      packedNormals = null;
+      packedColors = null;
+      packedTexcoords = null;
 
       vertices = null;
       
@@ -2867,6 +3662,14 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
          r.texcoords = null;
       }
 
+      r.packedStorage = packedStorage;
+      if (packedStorage) {
+         r.packedPositions = copyPacked (packedPositions);
+         r.packedNormals = copyPacked (packedNormals);
+         r.packedColors = copyPacked (packedColors);
+         r.packedTexcoords = copyPacked (packedTexcoords);
+      }
+
       r.stateInfo = stateInfo.clone();
 
       r.currentPositionIdx = currentPositionIdx;
@@ -2885,6 +3688,14 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
       r.normalsModified = normalsModified;
       r.colorsModified = colorsModified;
       r.texturesModified = texturesModified;
+      r.positionsModStart = positionsModStart;
+      r.positionsModEnd = positionsModEnd;
+      r.normalsModStart = normalsModStart;
+      r.normalsModEnd = normalsModEnd;
+      r.colorsModStart = colorsModStart;
+      r.colorsModEnd = colorsModEnd;
+      r.texturesModStart = texturesModStart;
+      r.texturesModEnd = texturesModEnd;
 
       r.versionInfo = versionInfo.clone();
 
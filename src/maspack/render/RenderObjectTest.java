@@ -0,0 +1,399 @@
+package maspack.render;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import maspack.render.RenderObject.RenderObjectVersion;
+import maspack.util.*;
+
+/**
+ * Tests the attribute storage and version tracking of RenderObject, which do
+ * not require a renderer.
+ */
+public class RenderObjectTest extends UnitTest {
+
+   static final int NUM = 6;
+
+   float[] myPositions;
+   float[] myNormals;
+   byte[] myColors;
+   float[] myTexcoords;
+
+   public RenderObjectTest() {
+      RandomGenerator.setSeed (0x1234);
+   }
+
+   float[] randomFloats (int num) {
+      float[] vals = new float[num];
+      for (int i=0; i<num; i++) {
+         vals[i] = (float)RandomGenerator.nextDouble (-1, 1);
+      }
+      return vals;
+   }
+
+   byte[] randomBytes (int num) {
+      byte[] vals = new byte[num];
+      for (int i=0; i<num; i++) {
+         vals[i] = (byte)RandomGenerator.nextInt (0, 255);
+      }
+      return vals;
+   }
+
+   /**
+    * Creates a render object with NUM positions, normals, colors and texture
+    * coordinates, and a vertex for each, with the vertices in reverse
+    * order.
+    */
+   RenderObject createObject (boolean packed) {
+      myPositions = randomFloats (3*NUM);
+      myNormals = randomFloats (3*NUM);
+      myColors = randomBytes (4*NUM);
+      myTexcoords = randomFloats (2*NUM);
+      RenderObject robj = new RenderObject();
+      robj.setPackedStorage (packed);
+      for (int i=0; i<NUM; i++) {
+         robj.addPosition (Arrays.copyOfRange (myPositions, 3*i, 3*i+3));
+         robj.addNormal (Arrays.copyOfRange (myNormals, 3*i, 3*i+3));
+         robj.addColor (Arrays.copyOfRange (myColors, 4*i, 4*i+4));
+         robj.addTextureCoord (Arrays.copyOfRange (myTexcoords, 2*i, 2*i+2));
+      }
+      for (int i=NUM-1; i>=0; i--) {
+         robj.addVertex (i, i, i, i);
+      }
+      for (int i=0; i+2<NUM; i+=3) {
+         robj.addTriangle (i, i+1, i+2);
+      }
+      return robj;
+   }
+
+   void checkFloats (
+      String msg, float[] vals, float[] check, int off, int width) {
+      for (int j=0; j<width; j++) {
+         if (vals[j] != check[off+j]) {
+            throw new TestException (
+               msg + " is " + Arrays.toString (vals) + ", expected " +
+               Arrays.toString (Arrays.copyOfRange (check, off, off+width)));
+         }
+      }
+   }
+
+   void checkBytes (
+      String msg, byte[] vals, byte[] check, int off, int width) {
+      for (int j=0; j<width; j++) {
+         if (vals[j] != check[off+j]) {
+            throw new TestException (
+               msg + " is " + Arrays.toString (vals) + ", expected " +
+               Arrays.toString (Arrays.copyOfRange (check, off, off+width)));
+         }
+      }
+   }
+
+   void checkFloatList (
+      String msg, List<float[]> list, float[] check, int width) {
+      checkEquals (msg + " size", list.size(), check.length/width);
+      for (int i=0; i<list.size(); i++) {
+         checkFloats (msg + " " + i, list.get(i), check, width*i, width);
+      }
+   }
+
+   void checkFloatBuffer (String msg, FloatBuffer buf, float[] check) {
+      checkEquals (msg + " size", buf.remaining(), check.length);
+      for (int k=0; k<check.length; k++) {
+         if (buf.get(k) != check[k]) {
+            throw new TestException (
+               msg + " value " + k + " is " + buf.get(k) +
+               ", expected " + check[k]);
+         }
+      }
+   }
+
+   /**
+    * Checks that the attributes and vertices of a render object match the
+    * expected values, using each of the access methods.
+    */
+   void checkAttributes (String msg, RenderObject robj) {
+      checkEquals (msg + ": numPositions", robj.numPositions(), NUM);
+      checkEquals (msg + ": numNormals", robj.numNormals(), NUM);
+      checkEquals (msg + ": numColors", robj.numColors(), NUM);
+      checkEquals (msg + ": numTextureCoords", robj.numTextureCoords(), NUM);
+      for (int i=0; i<NUM; i++) {
+         checkFloats (
+            msg + ": position " + i, robj.getPosition(i), myPositions, 3*i, 3);
+         checkFloats (
+            msg + ": normal " + i, robj.getNormal(i), myNormals, 3*i, 3);
+         checkBytes (
+            msg + ": color " + i, robj.getColor(i), myColors, 4*i, 4);
+         checkFloats (
+            msg + ": texcoord " + i, robj.getTextureCoord(i),
+            myTexcoords, 2*i, 2);
+         // vertices are in reverse order
+         int v = NUM-1-i;
+         checkFloats (
+            msg + ": vertex position " + v, robj.getVertexPosition(v),
+            myPositions, 3*i, 3);
+         checkFloats (
+            msg + ": vertex normal " + v, robj.getVertexNormal(v),
+            myNormals, 3*i, 3);
+         checkBytes (
+            msg + ": vertex color " + v, robj.getVertexColor(v),
+            myColors, 4*i, 4);
+         checkFloats (
+            msg + ": vertex texcoord " + v, robj.getVertexTextureCoord(v),
+            myTexcoords, 2*i, 2);
+      }
+      checkFloatList (msg + ": positions", robj.getPositions(), myPositions, 3);
+      checkFloatList (msg + ": normals", robj.getNormals(), myNormals, 3);
+      checkFloatList (
+         msg + ": texcoords", robj.getTextureCoords(), myTexcoords, 2);
+      List<byte[]> colors = robj.getColors();
+      checkEquals (msg + ": colors size", colors.size(), NUM);
+      for (int i=0; i<NUM; i++) {
+         checkBytes (msg + ": colors " + i, colors.get(i), myColors, 4*i, 4);
+      }
+      if (robj.isPackedStorage()) {
+         checkFloatBuffer (
+            msg + ": position buffer", robj.getPositionBuffer(), myPositions);
+         checkFloatBuffer (
+            msg + ": normal buffer", robj.getNormalBuffer(), myNormals);
+         checkFloatBuffer (
+            msg + ": texcoord buffer", robj.getTextureCoordBuffer(),
+            myTexcoords);
+         ByteBuffer cbuf = robj.getColorBuffer();
+         checkEquals (msg + ": color buffer size",
+                      cbuf.remaining(), myColors.length);
+         for (int k=0; k<myColors.length; k++) {
+            checkEquals (msg + ": color buffer value " + k,
+                         cbuf.get(k), myColors[k]);
+         }
+         check (msg + ": position buffer not read-only",
+                robj.getPositionBuffer().isReadOnly());
+      }
+      else {
+         check (msg + ": position buffer not null",
+                robj.getPositionBuffer() == null);
+         check (msg + ": color buffer not null",
+                robj.getColorBuffer() == null);
+      }
+   }
+
+   void testPackedRoundTrip() {
+      for (boolean packed : new boolean[] { false, true }) {
+         RenderObject robj = createObject (packed);
+         String msg = (packed ? "packed" : "unpacked");
+         checkEquals (msg + ": isPackedStorage", robj.isPackedStorage(), packed);
+         checkAttributes (msg, robj);
+         robj.setPackedStorage (!packed);
+         checkAttributes (msg + " converted", robj);
+         robj.setPackedStorage (packed);
+         checkAttributes (msg + " converted back", robj);
+         // setting the same mode again should change nothing
+         robj.setPackedStorage (packed);
+         checkAttributes (msg + " reset", robj);
+         checkEquals (msg + ": numVertices", robj.numVertices(), NUM);
+         checkEquals (msg + ": numTriangles", robj.numTriangles(), NUM/3);
+      }
+
+      // packed storage copies values, rather than holding them by reference
+      RenderObject robj = createObject (/*packed=*/true);
+      float[] pos = new float[] { 1f, 2f, 3f };
+      int pidx = robj.addPosition (pos);
+      pos[0] = 10f;
+      checkEquals ("packed position after external change",
+                   robj.getPosition(pidx)[0], 1f);
+      robj.getPosition(pidx)[1] = 20f;
+      checkEquals ("packed position after changing a copy",
+                   robj.getPosition(pidx)[1], 2f);
+   }
+
+   void testBulkSet() {
+      for (boolean packed : new boolean[] { false, true }) {
+         String msg = (packed ? "packed" : "unpacked");
+         RenderObject robj = createObject (packed);
+
+         // set all values from buffers with a leading offset
+         int off = 5;
+         float[] pbuf = randomFloats (off+3*NUM);
+         float[] nbuf = randomFloats (off+3*NUM);
+         byte[] cbuf = randomBytes (off+4*NUM);
+         float[] tbuf = randomFloats (off+2*NUM);
+         robj.setPositions (pbuf, off);
+         robj.setNormals (nbuf, off);
+         robj.setColors (cbuf, off);
+         robj.setTextureCoords (tbuf, off);
+         myPositions = Arrays.copyOfRange (pbuf, off, off+3*NUM);
+         myNormals = Arrays.copyOfRange (nbuf, off, off+3*NUM);
+         myColors = Arrays.copyOfRange (cbuf, off, off+4*NUM);
+         myTexcoords = Arrays.copyOfRange (tbuf, off, off+2*NUM);
+         checkAttributes (msg + " after setting all", robj);
+
+         // set a sub-range of values, from a different offset
+         int idx = 2;
+         int num = 3;
+         off = 1;
+         pbuf = randomFloats (off+3*num);
+         nbuf = randomFloats (off+3*num);
+         cbuf = randomBytes (off+4*num);
+         tbuf = randomFloats (off+2*num);
+         robj.setPositions (idx, num, pbuf, off);
+         robj.setNormals (idx, num, nbuf, off);
+         robj.setColors (idx, num, cbuf, off);
+         robj.setTextureCoords (idx, num, tbuf, off);
+         System.arraycopy (pbuf, off, myPositions, 3*idx, 3*num);
+         System.arraycopy (nbuf, off, myNormals, 3*idx, 3*num);
+         System.arraycopy (cbuf, off, myColors, 4*idx, 4*num);
+         System.arraycopy (tbuf, off, myTexcoords, 2*idx, 2*num);
+         checkAttributes (msg + " after setting a range", robj);
+
+         // ranges outside the current attributes should be rejected
+         float[] buf = new float[3*NUM+3];
+         checkForException (
+            new IndexOutOfBoundsException(),
+            () -> robj.setPositions (NUM-1, 2, buf, 0));
+         checkForException (
+            new IndexOutOfBoundsException(),
+            () -> robj.setNormals (-1, 1, buf, 0));
+         checkForException (
+            new IndexOutOfBoundsException(),
+            () -> robj.setTextureCoords (0, NUM+1, buf, 0));
+         checkAttributes (msg + " after illegal ranges", robj);
+      }
+   }
+
+   void checkRange (String msg, int start, int end, int chkStart, int chkEnd) {
+      if (start != chkStart || end != chkEnd) {
+         throw new TestException (
+            msg + " is [" + start + "," + end + "), expected [" +
+            chkStart + "," + chkEnd + ")");
+      }
+   }
+
+   void checkRange (String msg, int[] range, int chkStart, int chkEnd) {
+      checkRange (msg, range[0], range[1], chkStart, chkEnd);
+   }
+
+   void testModifiedRanges() {
+      for (boolean packed : new boolean[] { false, true }) {
+         String msg = (packed ? "packed" : "unpacked");
+         RenderObject robj = createObject (packed);
+         RenderObjectVersion v0 = robj.getVersionInfo();
+
+         // modify different ranges of each attribute
+         robj.setPositions (1, 2, randomFloats (6), 0);
+         robj.setNormal (4, new float[] { 0f, 0f, 1f });
+         robj.setColors (0, NUM, randomBytes (4*NUM), 0);
+         RenderObjectVersion v1 = robj.getVersionInfo();
+         checkEquals (
+            msg + ": positions version", v1.getPositionsVersion(),
+            v0.getPositionsVersion()+1);
+         checkEquals (
+            msg + ": texcoords version", v1.getTextureCoordsVersion(),
+            v0.getTextureCoordsVersion());
+         checkRange (
+            msg + ": positions modified", v1.getPositionsModifiedStart(),
+            v1.getPositionsModifiedEnd(), 1, 3);
+         checkRange (
+            msg + ": normals modified", v1.getNormalsModifiedStart(),
+            v1.getNormalsModifiedEnd(), 4, 5);
+         checkRange (
+            msg + ": colors modified", v1.getColorsModifiedStart(),
+            v1.getColorsModifiedEnd(), 0, NUM);
+         checkRange (
+            msg + ": positions range",
+            v1.getPositionsModifiedRange (v0, NUM), 1, 3);
+         checkRange (
+            msg + ": normals range",
+            v1.getNormalsModifiedRange (v0, NUM), 4, 5);
+
+         // several changes before the version is queried are combined
+         robj.setPosition (4, new float[] { 1f, 1f, 1f });
+         robj.setPositions (0, 1, randomFloats (3), 0);
+         robj.setTextureCoords (3, 2, randomFloats (4), 0);
+         RenderObjectVersion v2 = robj.getVersionInfo();
+         checkRange (
+            msg + ": combined positions range",
+            v2.getPositionsModifiedRange (v1, NUM), 0, 5);
+         checkRange (
+            msg + ": texcoords range",
+            v2.getTextureCoordsModifiedRange (v1, NUM), 3, 5);
+
+         // a general notification means everything has changed
+         robj.notifyNormalsModified();
+         RenderObjectVersion v3 = robj.getVersionInfo();
+         checkRange (
+            msg + ": notified normals range",
+            v3.getNormalsModifiedRange (v2, NUM), 0, NUM);
+
+         // adding attributes marks only the new ones as modified
+         robj.addColor (new byte[] { 1, 2, 3, 4 });
+         RenderObjectVersion v4 = robj.getVersionInfo();
+         checkRange (
+            msg + ": added color range",
+            v4.getColorsModifiedRange (v3, NUM+1), NUM, NUM+1);
+
+         // querying the version again, with no changes, does not advance it
+         RenderObjectVersion v5 = robj.getVersionInfo();
+         check (msg + ": version changed without modification",
+                v5.equals (v4));
+      }
+   }
+
+   void testSkippedVersions() {
+      RenderObject robj = createObject (/*packed=*/true);
+      RenderObjectVersion v0 = robj.getVersionInfo();
+      robj.setPositions (1, 1, randomFloats (3), 0);
+      RenderObjectVersion v1 = robj.getVersionInfo();
+      robj.setPositions (3, 1, randomFloats (3), 0);
+      RenderObjectVersion v2 = robj.getVersionInfo();
+
+      // a renderer that saw the previous version updates only the changes
+      checkRange (
+         "range from previous version",
+         v2.getPositionsModifiedRange (v1, NUM), 3, 4);
+      // a renderer that missed a version must update everything
+      checkRange (
+         "range after skipped version",
+         v2.getPositionsModifiedRange (v0, NUM), 0, NUM);
+      // as must one whose version is current, or ahead of, this one
+      checkRange (
+         "range from same version",
+         v2.getPositionsModifiedRange (v2, NUM), 0, NUM);
+      checkRange (
+         "range from later version",
+         v1.getPositionsModifiedRange (v2, NUM), 0, NUM);
+
+      // the same applies to each attribute
+      robj.setNormals (2, 2, randomFloats (6), 0);
+      robj.setColors (5, 1, randomBytes (4), 0);
+      robj.setTextureCoords (0, 1, randomFloats (2), 0);
+      RenderObjectVersion v3 = robj.getVersionInfo();
+      robj.setNormals (0, 1, randomFloats (3), 0);
+      robj.setColors (0, 1, randomBytes (4), 0);
+      robj.setTextureCoords (1, 1, randomFloats (2), 0);
+      RenderObjectVersion v4 = robj.getVersionInfo();
+      checkRange ("normals range", v3.getNormalsModifiedRange (v2, NUM), 2, 4);
+      checkRange ("colors range", v3.getColorsModifiedRange (v2, NUM), 5, 6);
+      checkRange (
+         "texcoords range", v3.getTextureCoordsModifiedRange (v2, NUM), 0, 1);
+      checkRange (
+         "skipped normals range", v4.getNormalsModifiedRange (v2, NUM), 0, NUM);
+      checkRange (
+         "skipped colors range", v4.getColorsModifiedRange (v2, NUM), 0, NUM);
+      checkRange (
+         "skipped texcoords range",
+         v4.getTextureCoordsModifiedRange (v2, NUM), 0, NUM);
+   }
+
+   public void test() {
+      testPackedRoundTrip();
+      testBulkSet();
+      testModifiedRanges();
+      testSkippedVersions();
+   }
+
+   public static void main (String[] args) {
+      RenderObjectTest tester = new RenderObjectTest();
+      tester.runtest();
+   }
+}
@@ -0,0 +1,651 @@
+package maspack.solvers;
+
+import java.util.Arrays;
+
+/**
+ * Computes a fill-reducing ordering for the Cholesky or LDL^T factorization
+ * of a sparse symmetric matrix, using an approximate minimum degree (AMD)
+ * algorithm. The elimination is simulated on a quotient graph, in which
+ * eliminated variables are represented as <i>elements</i> whose boundaries
+ * give the cliques formed by fill-in. The implementation follows the general
+ * approach of Amestoy, Davis and Duff, including supervariable detection,
+ * element absorption and approximate external degrees, but uses separate
+ * growable adjacency lists instead of a single compacted workspace.
+ *
+ * <p>Variables can optionally be marked as <i>delayed</i>. A delayed
+ * variable is not eliminated until at least one of its neighbors has been
+ * eliminated, or until no other variables remain. This is intended for the
+ * constraint rows of KKT systems, whose diagonal entries are zero: eliminating
+ * such a row first would produce a zero pivot, whereas eliminating it after
+ * one of its coupled variables produces a non-zero pivot from fill-in.
+ */
+public class AMDOrdering {
+
+   private int n;
+
+   // variable adjacency lists, containing uneliminated neighboring variables
+   private int[][] myVarAdj;
+   private int[] myVarLen;
+   // element adjacency lists, containing neighboring elements
+   private int[][] myElemAdj;
+   private int[] myElemLen;
+   // element boundary lists, indexed by the eliminated pivot variable
+   private int[][] myElemVars;
+   private int[] myElemVarsLen;
+   private boolean[] myElemAlive;
+
+   private int[] myNv;          // supervariable weights, 0 if not principal
+   private boolean[] myElim;    // true if the variable has been eliminated
+   private boolean[] myDelayed; // true if elimination is currently delayed
+   private boolean[] myDense;   // true if removed from the graph as dense
+   private int[] myDegree;      // approximate external degree
+
+   // degree lists
+   private int[] myHead;
+   private int[] myNext;
+   private int[] myPrev;
+   private int myMinDegree;
+
+   // variables merged into each principal variable
+   private int[] myChainNext;
+   private int[] myChainTail;
+
+   // marking workspace
+   private int[] myMark;
+   private int myStamp;
+   private int[] myW;
+   private int[] myWMark;
+
+   private int myNumDense;
+
+   /**
+    * Computes a fill-reducing ordering for the symmetric matrix whose
+    * sparsity structure is given in compressed row storage (CRS) format. The
+    * structure may describe either the full matrix or just its upper (or
+    * lower) triangle; it is symmetrized internally. Diagonal entries are
+    * ignored.
+    *
+    * @param n size of the matrix
+    * @param rowOffs row offsets for the CRS structure. Row {@code i} is
+    * described by the entries between {@code rowOffs[i]-base} (inclusive)
+    * and {@code rowOffs[i+1]-base} (exclusive).
+    * @param colIdxs column indices for the CRS structure
+    * @param base index base of {@code rowOffs} and {@code colIdxs}, which is
+    * 1 for the one-based CRS format used by maspack and Pardiso
+    * @param delayed if non-{@code null}, identifies variables whose
+    * elimination should be delayed until one of their neighbors has been
+    * eliminated
+    * @return permutation {@code perm}, such that {@code perm[k]} gives the
+    * original index of the {@code k}-th variable to be eliminated
+    */
+   public int[] computeOrdering (
+      int n, int[] rowOffs, int[] colIdxs, int base, boolean[] delayed) {
+
+      this.n = n;
+      buildGraph (rowOffs, colIdxs, base);
+      initialize (delayed);
+      int[] perm = new int[n];
+      int k = 0;
+      while (k < n) {
+         int p = selectPivot();
+         if (p == -1) {
+            // only dense variables, or delayed variables with no eliminated
+            // neighbors, remain
+            for (int i=0; i<n; i++) {
+               if (myNv[i] > 0 && !myElim[i]) {
+                  p = i;
+                  break;
+               }
+            }
+         }
+         else {
+            removeFromDegreeList (p);
+         }
+         k = addToOrdering (perm, k, p);
+         eliminate (p, k);
+      }
+      return perm;
+   }
+
+   /**
+    * Returns the number of variables whose adjacency was large enough that
+    * they were removed from the graph and ordered last, as is done for dense
+    * rows in AMD.
+    *
+    * @return number of dense variables in the last ordering
+    */
+   public int numDenseVariables() {
+      return myNumDense;
+   }
+
+   private void buildGraph (int[] rowOffs, int[] colIdxs, int base) {
+      int[] cnt = new int[n];
+      for (int i=0; i<n; i++) {
+         for (int k=rowOffs[i]-base; k<rowOffs[i+1]-base; k++) {
+            int j = colIdxs[k]-base;
+            if (j != i) {
+               cnt[i]++;
+               cnt[j]++;
+            }
+         }
+      }
+      myVarAdj = new int[n][];
+      myVarLen = new int[n];
+      for (int i=0; i<n; i++) {
+         myVarAdj[i] = new int[cnt[i]];
+      }
+      for (int i=0; i<n; i++) {
+         for (int k=rowOffs[i]-base; k<rowOffs[i+1]-base; k++) {
+            int j = colIdxs[k]-base;
+            if (j != i) {
+               myVarAdj[i][myVarLen[i]++] = j;
+               myVarAdj[j][myVarLen[j]++] = i;
+            }
+         }
+      }
+      // sort and remove duplicates, which occur if the full matrix was given
+      for (int i=0; i<n; i++) {
+         int[] adj = myVarAdj[i];
+         Arrays.sort (adj, 0, myVarLen[i]);
+         int len = 0;
+         for (int k=0; k<myVarLen[i]; k++) {
+            if (len == 0 || adj[len-1] != adj[k]) {
+               adj[len++] = adj[k];
+            }
+         }
+         myVarLen[i] = len;
+      }
+   }
+
+   private void initialize (boolean[] delayed) {
+      myElemAdj = new int[n][];
+      myElemLen = new int[n];
+      myElemVars = new int[n][];
+      myElemVarsLen = new int[n];
+      myElemAlive = new boolean[n];
+      myNv = new int[n];
+      myElim = new boolean[n];
+      myDelayed = new boolean[n];
+      myDegree = new int[n];
+      myHead = new int[n+1];
+      myNext = new int[n];
+      myPrev = new int[n];
+      myChainNext = new int[n];
+      myChainTail = new int[n];
+      myMark = new int[n];
+      myW = new int[n];
+      myWMark = new int[n];
+      myStamp = 0;
+      myNumDense = 0;
+
+      Arrays.fill (myHead, -1);
+      for (int i=0; i<n; i++) {
+         myNv[i] = 1;
+         myElemAdj[i] = new int[4];
+         myChainNext[i] = -1;
+         myChainTail[i] = i;
+         myNext[i] = -1;
+         myPrev[i] = -1;
+         if (delayed != null && delayed[i]) {
+            myDelayed[i] = true;
+         }
+      }
+      compressInitialGraph();
+
+      // variables whose degree exceeds a threshold are treated as dense:
+      // as in AMD, they are removed from the graph and ordered last
+      myDense = new boolean[n];
+      int denseLimit = Math.max (16, (int)(10*Math.sqrt (n)));
+      if (n > denseLimit) {
+         for (int i=0; i<n; i++) {
+            if (myNv[i] > 0 && computeVariableDegree (i) > denseLimit) {
+               myDense[i] = true;
+               myNumDense += myNv[i];
+            }
+         }
+      }
+      for (int i=0; i<n; i++) {
+         if (myNv[i] > 0) {
+            if (myDense[i]) {
+               myVarLen[i] = 0;
+            }
+            else if (myNumDense > 0) {
+               int[] adj = myVarAdj[i];
+               int len = 0;
+               for (int k=0; k<myVarLen[i]; k++) {
+                  if (!myDense[adj[k]]) {
+                     adj[len++] = adj[k];
+                  }
+               }
+               myVarLen[i] = len;
+            }
+         }
+      }
+      myMinDegree = 0;
+      for (int i=0; i<n; i++) {
+         if (myNv[i] > 0 && !myDense[i]) {
+            myDegree[i] = computeVariableDegree (i);
+            if (!myDelayed[i]) {
+               insertInDegreeList (i);
+            }
+         }
+      }
+   }
+
+   private int computeVariableDegree (int i) {
+      int d = 0;
+      for (int k=0; k<myVarLen[i]; k++) {
+         d += myNv[myVarAdj[i][k]];
+      }
+      return d;
+   }
+
+   /**
+    * Merges variables that have identical closed adjacency, such as the
+    * x, y, z components of a FEM node.
+    */
+   private void compressInitialGraph() {
+      long[] hash = new long[n];
+      Integer[] order = new Integer[n];
+      for (int i=0; i<n; i++) {
+         long h = i;
+         for (int k=0; k<myVarLen[i]; k++) {
+            h += myVarAdj[i][k];
+         }
+         hash[i] = h*31 + myVarLen[i];
+         order[i] = i;
+      }
+      Arrays.sort (order, (a,b) -> Long.compare (hash[a], hash[b]));
+      int lo = 0;
+      while (lo < n) {
+         int hi = lo+1;
+         while (hi < n && hash[order[hi]] == hash[order[lo]]) {
+            hi++;
+         }
+         for (int a=lo; a<hi; a++) {
+            int i = order[a];
+            if (myNv[i] == 0) {
+               continue;
+            }
+            for (int b=a+1; b<hi; b++) {
+               int j = order[b];
+               if (myNv[j] != 0 && myDelayed[i] == myDelayed[j] &&
+                   closedAdjacencyEqual (i, j)) {
+                  mergeVariable (i, j);
+               }
+            }
+         }
+         lo = hi;
+      }
+      // remove merged variables from the adjacency lists
+      for (int i=0; i<n; i++) {
+         if (myNv[i] > 0) {
+            int[] adj = myVarAdj[i];
+            int len = 0;
+            for (int k=0; k<myVarLen[i]; k++) {
+               if (myNv[adj[k]] > 0) {
+                  adj[len++] = adj[k];
+               }
+            }
+            myVarLen[i] = len;
+         }
+         else {
+            myVarAdj[i] = null;
+            myVarLen[i] = 0;
+         }
+      }
+   }
+
+   private boolean closedAdjacencyEqual (int i, int j) {
+      if (myVarLen[i] != myVarLen[j]) {
+         return false;
+      }
+      // adjacency lists are sorted; compare adj(i)+{i} with adj(j)+{j}
+      int[] ai = myVarAdj[i];
+      int[] aj = myVarAdj[j];
+      int ki = 0;
+      int kj = 0;
+      boolean iDone = false;
+      boolean jDone = false;
+      int len = myVarLen[i]+1;
+      for (int c=0; c<len; c++) {
+         int vi, vj;
+         if (!iDone && (ki == myVarLen[i] || i < ai[ki])) {
+            vi = i;
+            iDone = true;
+         }
+         else {
+            vi = ai[ki++];
+         }
+         if (!jDone && (kj == myVarLen[j] || j < aj[kj])) {
+            vj = j;
+            jDone = true;
+         }
+         else {
+            vj = aj[kj++];
+         }
+         if (vi != vj) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   private void mergeVariable (int i, int j) {
+      myNv[i] += myNv[j];
+      myNv[j] = 0;
+      myChainNext[myChainTail[i]] = j;
+      myChainTail[i] = myChainTail[j];
+   }
+
+   private void insertInDegreeList (int i) {
+      int d = myDegree[i];
+      myPrev[i] = -1;
+      myNext[i] = myHead[d];
+      if (myHead[d] != -1) {
+         myPrev[myHead[d]] = i;
+      }
+      myHead[d] = i;
+      if (d < myMinDegree) {
+         myMinDegree = d;
+      }
+   }
+
+   private void removeFromDegreeList (int i) {
+      if (myNext[i] != -1) {
+         myPrev[myNext[i]] = myPrev[i];
+      }
+      if (myPrev[i] != -1) {
+         myNext[myPrev[i]] = myNext[i];
+      }
+      else if (myHead[myDegree[i]] == i) {
+         myHead[myDegree[i]] = myNext[i];
+      }
+      myNext[i] = -1;
+      myPrev[i] = -1;
+   }
+
+   private boolean inDegreeList (int i) {
+      return myPrev[i] != -1 || myHead[myDegree[i]] == i;
+   }
+
+   private int selectPivot() {
+      for ( ; myMinDegree<=n; myMinDegree++) {
+         if (myHead[myMinDegree] != -1) {
+            return myHead[myMinDegree];
+         }
+      }
+      return -1;
+   }
+
+   private int addToOrdering (int[] perm, int k, int p) {
+      for (int j=p; j!=-1; j=myChainNext[j]) {
+         perm[k++] = j;
+      }
+      return k;
+   }
+
+   private int nextStamp() {
+      if (++myStamp == Integer.MAX_VALUE) {
+         Arrays.fill (myMark, 0);
+         Arrays.fill (myWMark, 0);
+         myStamp = 1;
+      }
+      return myStamp;
+   }
+
+   private boolean isLiveVariable (int v) {
+      return myNv[v] > 0 && !myElim[v];
+   }
+
+   private void eliminate (int p, int numEliminated) {
+      int stamp = nextStamp();
+
+      // form the boundary Lp of the new element p
+      int[] lp = new int[myVarLen[p] + 8];
+      int lpLen = 0;
+      myMark[p] = stamp;
+      for (int k=0; k<myElemLen[p]; k++) {
+         int e = myElemAdj[p][k];
+         if (!myElemAlive[e]) {
+            continue;
+         }
+         int[] evars = myElemVars[e];
+         for (int m=0; m<myElemVarsLen[e]; m++) {
+            int v = evars[m];
+            if (isLiveVariable (v) && myMark[v] != stamp) {
+               myMark[v] = stamp;
+               if (lpLen == lp.length) {
+                  lp = Arrays.copyOf (lp, 2*lp.length);
+               }
+               lp[lpLen++] = v;
+            }
+         }
+         // element e is absorbed into p
+         myElemAlive[e] = false;
+         myElemVars[e] = null;
+      }
+      for (int k=0; k<myVarLen[p]; k++) {
+         int v = myVarAdj[p][k];
+         if (isLiveVariable (v) && myMark[v] != stamp) {
+            myMark[v] = stamp;
+            if (lpLen == lp.length) {
+               lp = Arrays.copyOf (lp, 2*lp.length);
+            }
+            lp[lpLen++] = v;
+         }
+      }
+      myElim[p] = true;
+      myElemAlive[p] = true;
+      myElemVars[p] = lp;
+      myElemVarsLen[p] = lpLen;
+      myVarAdj[p] = null;
+      myVarLen[p] = 0;
+      myElemAdj[p] = null;
+      myElemLen[p] = 0;
+
+      int degLp = 0;
+      for (int m=0; m<lpLen; m++) {
+         degLp += myNv[lp[m]];
+      }
+
+      // update the adjacency of each variable in Lp
+      for (int m=0; m<lpLen; m++) {
+         int i = lp[m];
+         if (inDegreeList (i)) {
+            removeFromDegreeList (i);
+         }
+         int[] eadj = myElemAdj[i];
+         int len = 0;
+         for (int k=0; k<myElemLen[i]; k++) {
+            if (myElemAlive[eadj[k]]) {
+               eadj[len++] = eadj[k];
+            }
+         }
+         if (len == eadj.length) {
+            eadj = Arrays.copyOf (eadj, 2*eadj.length);
+            myElemAdj[i] = eadj;
+         }
+         eadj[len++] = p;
+         myElemLen[i] = len;
+
+         // variables in Lp are now connected through p
+         int[] vadj = myVarAdj[i];
+         len = 0;
+         for (int k=0; k<myVarLen[i]; k++) {
+            int v = vadj[k];
+            if (isLiveVariable (v) && myMark[v] != stamp) {
+               vadj[len++] = v;
+            }
+         }
+         myVarLen[i] = len;
+      }
+
+      // compute |Le \ Lp| for each element adjacent to Lp
+      int wstamp = stamp;
+      for (int m=0; m<lpLen; m++) {
+         int i = lp[m];
+         for (int k=0; k<myElemLen[i]; k++) {
+            int e = myElemAdj[i][k];
+            if (e == p) {
+               continue;
+            }
+            if (myWMark[e] != wstamp) {
+               myWMark[e] = wstamp;
+               myW[e] = pruneElement (e);
+            }
+            myW[e] -= myNv[i];
+         }
+      }
+
+      // compute approximate external degrees
+      int remaining = n - numEliminated;
+      for (int m=0; m<lpLen; m++) {
+         int i = lp[m];
+         int[] eadj = myElemAdj[i];
+         int d = 0;
+         int len = 0;
+         for (int k=0; k<myElemLen[i]; k++) {
+            int e = eadj[k];
+            if (e != p) {
+               if (myW[e] <= 0) {
+                  // Le is a subset of Lp, so e can be absorbed into p
+                  myElemAlive[e] = false;
+                  myElemVars[e] = null;
+                  continue;
+               }
+               d += myW[e];
+            }
+            eadj[len++] = e;
+         }
+         myElemLen[i] = len;
+         for (int k=0; k<myVarLen[i]; k++) {
+            d += myNv[myVarAdj[i][k]];
+         }
+         d += degLp - myNv[i];
+         int dmax = remaining - myNv[i];
+         if (d > dmax) {
+            d = dmax;
+         }
+         myDegree[i] = Math.max (d, 0);
+      }
+      // removing absorbed elements may have left dead entries in lists
+      for (int m=0; m<lpLen; m++) {
+         int i = lp[m];
+         int[] eadj = myElemAdj[i];
+         int len = 0;
+         for (int k=0; k<myElemLen[i]; k++) {
+            if (myElemAlive[eadj[k]]) {
+               eadj[len++] = eadj[k];
+            }
+         }
+         myElemLen[i] = len;
+      }
+
+      detectSupervariables (lp, lpLen);
+
+      for (int m=0; m<lpLen; m++) {
+         int i = lp[m];
+         if (myNv[i] > 0) {
+            // i is now adjacent to an element and so is no longer delayed
+            myDelayed[i] = false;
+            insertInDegreeList (i);
+         }
+      }
+   }
+
+   /**
+    * Removes dead variables from the boundary of element e, and returns the
+    * weighted size of the boundary.
+    */
+   private int pruneElement (int e) {
+      int[] evars = myElemVars[e];
+      int len = 0;
+      int size = 0;
+      for (int m=0; m<myElemVarsLen[e]; m++) {
+         int v = evars[m];
+         if (isLiveVariable (v)) {
+            evars[len++] = v;
+            size += myNv[v];
+         }
+      }
+      myElemVarsLen[e] = len;
+      return size;
+   }
+
+   private void detectSupervariables (int[] lp, int lpLen) {
+      if (lpLen < 2) {
+         return;
+      }
+      long[] hash = new long[lpLen];
+      Integer[] order = new Integer[lpLen];
+      for (int m=0; m<lpLen; m++) {
+         int i = lp[m];
+         long h = 0;
+         for (int k=0; k<myElemLen[i]; k++) {
+            h += myElemAdj[i][k];
+         }
+         for (int k=0; k<myVarLen[i]; k++) {
+            h += myVarAdj[i][k];
+         }
+         hash[m] = (h*31 + myElemLen[i])*31 + myVarLen[i];
+         order[m] = m;
+      }
+      Arrays.sort (order, (a,b) -> Long.compare (hash[a], hash[b]));
+      int lo = 0;
+      while (lo < lpLen) {
+         int hi = lo+1;
+         while (hi < lpLen && hash[order[hi]] == hash[order[lo]]) {
+            hi++;
+         }
+         if (hi-lo > 1) {
+            // sort candidates so that merging is independent of sort details
+            Arrays.sort (order, lo, hi);
+            for (int a=lo; a<hi; a++) {
+               int i = lp[order[a]];
+               if (myNv[i] == 0) {
+                  continue;
+               }
+               for (int b=a+1; b<hi; b++) {
+                  int j = lp[order[b]];
+                  if (myNv[j] != 0 && myDelayed[i] == myDelayed[j] &&
+                      adjacencyEqual (i, j)) {
+                     myDegree[i] = Math.max (0, myDegree[i]-myNv[j]);
+                     mergeVariable (i, j);
+                     myVarAdj[j] = null;
+                     myVarLen[j] = 0;
+                     myElemAdj[j] = null;
+                     myElemLen[j] = 0;
+                  }
+               }
+            }
+         }
+         lo = hi;
+      }
+   }
+
+   private boolean adjacencyEqual (int i, int j) {
+      if (myElemLen[i] != myElemLen[j] || myVarLen[i] != myVarLen[j]) {
+         return false;
+      }
+      int stamp = nextStamp();
+      for (int k=0; k<myElemLen[i]; k++) {
+         myMark[myElemAdj[i][k]] = stamp;
+      }
+      for (int k=0; k<myElemLen[j]; k++) {
+         if (myMark[myElemAdj[j][k]] != stamp) {
+            return false;
+         }
+      }
+      stamp = nextStamp();
+      for (int k=0; k<myVarLen[i]; k++) {
+         myMark[myVarAdj[i][k]] = stamp;
+      }
+      for (int k=0; k<myVarLen[j]; k++) {
+         if (myMark[myVarAdj[j][k]] != stamp) {
+            return false;
+         }
+      }
+      return true;
+   }
+}
@@ -0,0 +1,791 @@
+package maspack.solvers;
+
+import java.util.Arrays;
+
+import maspack.matrix.*;
+import maspack.matrix.Matrix.Partition;
+
+/**
+ * A QP (Quadratic Program) solver for convex problems of the form
+ * <pre>
+ * {@code
+ * min 1/2 x^T H x + f^T x,  A x >= b,  Aeq x = beq
+ * }
+ * </pre>
+ * that uses a primal active-set method. The constraint matrices are
+ * supplied in sparse form. Rows of {@code A} that contain only a single
+ * non-zero entry are treated as bounds on the corresponding variable, and
+ * are enforced by fixing the variable when active, so that each iteration
+ * only involves a reduced system for the free variables together with the
+ * active general constraints.
+ *
+ * <p>By default, each solve is warm-started from the solution and active
+ * set of the previous solve, provided that the problem dimensions are
+ * unchanged. When the problem changes only slightly between solves, as it
+ * does for a controller that solves a QP at each time step, the solution is
+ * then usually found in only a few iterations.
+ *
+ * <p>A primal method requires a feasible starting point. This is obtained
+ * by clipping the starting point to the variable bounds and projecting it
+ * onto the equality constraints. If the result does not satisfy the general
+ * inequality constraints, the solver returns {@link
+ * Status#NO_FEASIBLE_START}, and the application should use a different
+ * solver such as {@link DantzigQPSolver}.
+ */
+public class ActiveSetQPSolver {
+
+   /**
+    * Describes whether or not a solution was found.
+    */
+   public enum Status {
+      /**
+       * A solution was found.
+       */
+      SOLVED,
+
+      /**
+       * A starting point satisfying the constraints could not be found.
+       */
+      NO_FEASIBLE_START,
+
+      /**
+       * Iteration limit was exceeded, most likely due to numerical
+       * ill-conditioning or degeneracy.
+       */
+      ITERATION_LIMIT_EXCEEDED,
+
+      /**
+       * H, restricted to the free variables, is not symmetric positive
+       * definite.
+       */
+      NOT_SPD,
+
+      /**
+       * The active constraints are linearly dependent within working
+       * precision.
+       */
+      SINGULAR_SYSTEM
+   }
+
+   // variable states
+   private static final int FREE = 0;
+   private static final int AT_LOWER = 1;
+   private static final int AT_UPPER = 2;
+
+   public static double DEFAULT_TOLERANCE = 1e-10;
+   private double myTol = DEFAULT_TOLERANCE;
+   private int myMaxIterations = -1;
+
+   private boolean myWarmStartEnabled = true;
+   private boolean myWarmStarted;
+   private int myIterationCnt;
+
+   // saved state for warm starting
+   private VectorNd myPrevX;
+   private int[] myPrevVarState;
+   private boolean[] myPrevRowActive;
+   private int myPrevNumIneq = -1;
+   private int myPrevNumEq = -1;
+
+   // problem data
+   private int mySize;
+   private int myNumIneq;
+   private int myNumEq;
+   private int[] myRowOffs;      // inequality rows, zero-based CRS
+   private int[] myColIdxs;
+   private double[] myVals;
+   private int[] myEqRowOffs;    // equality rows, zero-based CRS
+   private int[] myEqColIdxs;
+   private double[] myEqVals;
+   private boolean[] myRowIsBound;
+   private double[] myLower;
+   private double[] myUpper;
+
+   // working state
+   private int[] myVarState;
+   private boolean[] myRowActive;
+
+   // workspace
+   private CholeskyDecomposition myCholH = new CholeskyDecomposition();
+   private CholeskyDecomposition myCholS = new CholeskyDecomposition();
+   private MatrixNd myHFF = new MatrixNd();
+   private MatrixNd myAWF = new MatrixNd();
+   private MatrixNd myY = new MatrixNd();
+   private MatrixNd myS = new MatrixNd();
+   private VectorNd myg = new VectorNd();
+   private VectorNd mygF = new VectorNd();
+   private VectorNd myz = new VectorNd();
+   private VectorNd mylam = new VectorNd();
+   private VectorNd myrhs = new VectorNd();
+   private VectorNd mypF = new VectorNd();
+   private VectorNd myp = new VectorNd();
+
+   public ActiveSetQPSolver() {
+   }
+
+   /**
+    * Queries whether warm starting is enabled.
+    *
+    * @return {@code true} if warm starting is enabled
+    */
+   public boolean getWarmStartEnabled() {
+      return myWarmStartEnabled;
+   }
+
+   /**
+    * Sets whether each solve should be warm-started from the solution and
+    * active set of the previous solve. The default value is {@code true}.
+    *
+    * @param enable if {@code true}, enables warm starting
+    */
+   public void setWarmStartEnabled (boolean enable) {
+      myWarmStartEnabled = enable;
+   }
+
+   /**
+    * Clears the information saved for warm starting, so that the next solve
+    * starts from scratch.
+    */
+   public void clearWarmStart() {
+      myPrevX = null;
+      myPrevVarState = null;
+      myPrevRowActive = null;
+      myPrevNumIneq = -1;
+      myPrevNumEq = -1;
+   }
+
+   /**
+    * Queries whether the most recent solve was warm-started.
+    *
+    * @return {@code true} if the last solve was warm-started
+    */
+   public boolean lastSolveWasWarmStarted() {
+      return myWarmStarted;
+   }
+
+   /**
+    * Returns the number of iterations used by the most recent solve.
+    *
+    * @return number of iterations
+    */
+   public int getIterationCount() {
+      return myIterationCnt;
+   }
+
+   /**
+    * Returns the maximum number of iterations allowed per solve. A value
+    * {@code < 0} means that the limit is determined automatically from the
+    * problem size.
+    *
+    * @return maximum number of iterations
+    */
+   public int getMaxIterations() {
+      return myMaxIterations;
+   }
+
+   /**
+    * Sets the maximum number of iterations allowed per solve. A value {@code
+    * < 0} causes the limit to be determined automatically from the problem
+    * size.
+    *
+    * @param max maximum number of iterations
+    */
+   public void setMaxIterations (int max) {
+      myMaxIterations = max;
+   }
+
+   /**
+    * Returns the relative tolerance used for feasibility and optimality
+    * checks.
+    *
+    * @return solution tolerance
+    */
+   public double getTolerance() {
+      return myTol;
+   }
+
+   /**
+    * Sets the relative tolerance used for feasibility and optimality
+    * checks. The default value is {@link #DEFAULT_TOLERANCE}.
+    *
+    * @param tol solution tolerance
+    */
+   public void setTolerance (double tol) {
+      myTol = tol;
+   }
+
+   private void checkProblemDimensions (
+      MatrixNd H, VectorNd f, SparseCRSMatrix A, VectorNd b,
+      SparseCRSMatrix Aeq, VectorNd beq) {
+
+      if (H.rowSize() != H.colSize()) {
+         throw new IllegalArgumentException ("H must be square");
+      }
+      int hsize = H.rowSize();
+      if (f.size() != hsize) {
+         throw new IllegalArgumentException (
+            "f size "+f.size()+" does not equal H size "+hsize);
+      }
+      if (A != null) {
+         if (A.colSize() != hsize) {
+            throw new IllegalArgumentException (
+               "A column size "+A.colSize()+" does not equal H size "+hsize);
+         }
+         if (b == null || A.rowSize() != b.size()) {
+            throw new IllegalArgumentException (
+               "A row size "+A.rowSize()+" does not equal b size");
+         }
+      }
+      if (Aeq != null) {
+         if (Aeq.colSize() != hsize) {
+            throw new IllegalArgumentException (
+               "Aeq column size "+Aeq.colSize()+
+               " does not equal H size "+hsize);
+         }
+         if (beq == null || Aeq.rowSize() != beq.size()) {
+            throw new IllegalArgumentException (
+               "Aeq row size "+Aeq.rowSize()+" does not equal beq size");
+         }
+      }
+   }
+
+   /**
+    * Solves a convex quadratic program with inequality constraints:
+    * <pre>
+    * {@code
+    * min 1/2 x^T H x + f^T x,  A x >= b
+    * }
+    * </pre>
+    *
+    * @param x computed minimum value
+    * @param H quadratic matrix term. Must be symmetric positive definite
+    * @param f linear term
+    * @param A inequality constraint matrix (can be null)
+    * @param b inequality constraint offsets (can be null if A is null)
+    * @return status value.
+    */
+   public Status solve (
+      VectorNd x, MatrixNd H, VectorNd f, SparseCRSMatrix A, VectorNd b) {
+      return solve (x, H, f, A, b, null, null);
+   }
+
+   /**
+    * Solves a convex quadratic program with both equality and inequality
+    * constraints:
+    * <pre>
+    * {@code
+    * min 1/2 x^T H x + f^T x,  A x >= b,  Aeq x = beq
+    * }
+    * </pre>
+    *
+    * @param x computed minimum value
+    * @param H quadratic matrix term. Must be symmetric positive definite
+    * when restricted to the variables that are not fixed by bounds
+    * @param f linear term
+    * @param A inequality constraint matrix (can be null)
+    * @param b inequality constraint offsets (can be null if A is null)
+    * @param Aeq equality constraint matrix (can be null)
+    * @param beq equality constraint offsets (can be null if Aeq is null)
+    * @return status value.
+    */
+   public Status solve (
+      VectorNd x, MatrixNd H, VectorNd f, SparseCRSMatrix A, VectorNd b,
+      SparseCRSMatrix Aeq, VectorNd beq) {
+
+      checkProblemDimensions (H, f, A, b, Aeq, beq);
+      mySize = H.rowSize();
+      myNumIneq = (A != null ? A.rowSize() : 0);
+      myNumEq = (Aeq != null ? Aeq.rowSize() : 0);
+      x.setSize (mySize);
+
+      if (myNumIneq > 0) {
+         myRowOffs = new int[myNumIneq+1];
+         myColIdxs = new int[A.numNonZeroVals()];
+         myVals = new double[myColIdxs.length];
+         getCRS (A, myRowOffs, myColIdxs, myVals);
+      }
+      if (myNumEq > 0) {
+         myEqRowOffs = new int[myNumEq+1];
+         myEqColIdxs = new int[Aeq.numNonZeroVals()];
+         myEqVals = new double[myEqColIdxs.length];
+         getCRS (Aeq, myEqRowOffs, myEqColIdxs, myEqVals);
+      }
+      if (!setBounds (b)) {
+         clearWarmStart();
+         return Status.NO_FEASIBLE_START;
+      }
+      boolean warm = (myWarmStartEnabled && myPrevX != null &&
+                      myPrevX.size() == mySize &&
+                      myPrevNumIneq == myNumIneq && myPrevNumEq == myNumEq);
+      Status status = doSolve (x, H, f, b, beq, warm);
+      if (warm && status != Status.SOLVED) {
+         // previous active set may be inconsistent with the new problem
+         int iters = myIterationCnt;
+         status = doSolve (x, H, f, b, beq, /*warm=*/false);
+         myIterationCnt += iters;
+      }
+      if (status == Status.SOLVED) {
+         myPrevX = new VectorNd (x);
+         myPrevVarState = Arrays.copyOf (myVarState, mySize);
+         myPrevRowActive = Arrays.copyOf (myRowActive, myNumIneq);
+         myPrevNumIneq = myNumIneq;
+         myPrevNumEq = myNumEq;
+      }
+      else {
+         clearWarmStart();
+      }
+      return status;
+   }
+
+   /**
+    * Extracts zero-based CRS structures from a sparse matrix.
+    */
+   private void getCRS (
+      SparseCRSMatrix A, int[] rowOffs, int[] colIdxs, double[] vals) {
+      int nrows = A.rowSize();
+      A.getCRSIndices (colIdxs, rowOffs, Partition.Full, nrows, A.colSize());
+      A.getCRSValues (vals, Partition.Full, nrows, A.colSize());
+      for (int i=0; i<=nrows; i++) {
+         rowOffs[i]--;
+      }
+      for (int k=0; k<colIdxs.length; k++) {
+         colIdxs[k]--;
+      }
+   }
+
+   /**
+    * Determines the variable bounds from the inequality rows that contain a
+    * single non-zero entry. Returns false if the bounds are inconsistent.
+    */
+   private boolean setBounds (VectorNd b) {
+      int n = mySize;
+      myLower = new double[n];
+      myUpper = new double[n];
+      Arrays.fill (myLower, Double.NEGATIVE_INFINITY);
+      Arrays.fill (myUpper, Double.POSITIVE_INFINITY);
+      myRowIsBound = new boolean[myNumIneq];
+      for (int i=0; i<myNumIneq; i++) {
+         // explicitly stored zeros are ignored
+         int nnz = 0;
+         int knz = -1;
+         for (int k=myRowOffs[i]; k<myRowOffs[i+1]; k++) {
+            if (myVals[k] != 0) {
+               nnz++;
+               knz = k;
+            }
+         }
+         if (nnz > 1) {
+            continue;
+         }
+         double bi = b.get(i);
+         myRowIsBound[i] = true;
+         if (nnz == 0) {
+            // row reads 0 >= b
+            if (bi > myTol*(1+Math.abs(bi))) {
+               return false;
+            }
+         }
+         else {
+            double a = myVals[knz];
+            int j = myColIdxs[knz];
+            double val = bi/a;
+            if (a > 0) {
+               myLower[j] = Math.max (myLower[j], val);
+            }
+            else {
+               myUpper[j] = Math.min (myUpper[j], val);
+            }
+         }
+      }
+      for (int j=0; j<n; j++) {
+         if (myLower[j] > myUpper[j]) {
+            double tol = myTol*(1+Math.abs(myLower[j]));
+            if (myLower[j] - myUpper[j] > tol) {
+               return false;
+            }
+            myUpper[j] = myLower[j];
+         }
+      }
+      return true;
+   }
+
+   private double rowDot (int i, VectorNd v) {
+      double[] buf = v.getBuffer();
+      double dot = 0;
+      for (int k=myRowOffs[i]; k<myRowOffs[i+1]; k++) {
+         dot += myVals[k]*buf[myColIdxs[k]];
+      }
+      return dot;
+   }
+
+   private double eqRowDot (int i, VectorNd v) {
+      double[] buf = v.getBuffer();
+      double dot = 0;
+      for (int k=myEqRowOffs[i]; k<myEqRowOffs[i+1]; k++) {
+         dot += myEqVals[k]*buf[myEqColIdxs[k]];
+      }
+      return dot;
+   }
+
+   private boolean isFixed (int j) {
+      return myLower[j] == myUpper[j];
+   }
+
+   /**
+    * Computes the starting point and working set. Returns false if a
+    * feasible starting point could not be found.
+    */
+   private boolean initialize (
+      VectorNd x, VectorNd b, VectorNd beq, boolean warm) {
+
+      int n = mySize;
+      myVarState = new int[n];
+      myRowActive = new boolean[myNumIneq];
+      if (warm) {
+         x.set (myPrevX);
+         for (int j=0; j<n; j++) {
+            myVarState[j] = myPrevVarState[j];
+         }
+      }
+      else {
+         x.setZero();
+      }
+      // clip to the bounds
+      double[] xbuf = x.getBuffer();
+      for (int j=0; j<n; j++) {
+         if (isFixed (j)) {
+            myVarState[j] = AT_LOWER;
+         }
+         else if (myVarState[j] == AT_LOWER &&
+                  myLower[j] == Double.NEGATIVE_INFINITY) {
+            myVarState[j] = FREE;
+         }
+         else if (myVarState[j] == AT_UPPER &&
+                  myUpper[j] == Double.POSITIVE_INFINITY) {
+            myVarState[j] = FREE;
+         }
+         if (myVarState[j] == AT_LOWER) {
+            xbuf[j] = myLower[j];
+         }
+         else if (myVarState[j] == AT_UPPER) {
+            xbuf[j] = myUpper[j];
+         }
+         else {
+            xbuf[j] = Math.min (myUpper[j], Math.max (myLower[j], xbuf[j]));
+         }
+      }
+      // project onto the equality constraints, using the free variables
+      if (myNumEq > 0) {
+         VectorNd r = new VectorNd (myNumEq);
+         double rmax = 0;
+         for (int i=0; i<myNumEq; i++) {
+            double ri = beq.get(i) - eqRowDot (i, x);
+            r.set (i, ri);
+            rmax = Math.max (rmax, Math.abs(ri)/(1+Math.abs(beq.get(i))));
+         }
+         if (rmax > myTol) {
+            MatrixNd AF = new MatrixNd (myNumEq, n);
+            for (int i=0; i<myNumEq; i++) {
+               for (int k=myEqRowOffs[i]; k<myEqRowOffs[i+1]; k++) {
+                  int j = myEqColIdxs[k];
+                  if (myVarState[j] == FREE) {
+                     AF.set (i, j, myEqVals[k]);
+                  }
+               }
+            }
+            MatrixNd AAT = new MatrixNd (myNumEq, myNumEq);
+            AAT.mulTransposeRight (AF, AF);
+            VectorNd w = new VectorNd (myNumEq);
+            try {
+               myCholS.factor (AAT);
+               if (!myCholS.solve (w, r)) {
+                  return false;
+               }
+            }
+            catch (Exception e) {
+               return false;
+            }
+            VectorNd dx = new VectorNd (n);
+            AF.mulTranspose (dx, w);
+            x.add (dx);
+            for (int j=0; j<n; j++) {
+               if (myVarState[j] == FREE) {
+                  double tol = myTol*(1+Math.abs(xbuf[j]));
+                  if (xbuf[j] < myLower[j]-tol || xbuf[j] > myUpper[j]+tol) {
+                     return false;
+                  }
+                  xbuf[j] = Math.min (myUpper[j], Math.max (myLower[j], xbuf[j]));
+               }
+            }
+         }
+      }
+      // check the general inequality constraints
+      for (int i=0; i<myNumIneq; i++) {
+         if (!myRowIsBound[i]) {
+            double bi = b.get(i);
+            double r = rowDot (i, x) - bi;
+            double tol = myTol*(1+Math.abs(bi));
+            if (r < -tol) {
+               return false;
+            }
+            if (warm && myPrevRowActive[i] && r <= tol) {
+               myRowActive[i] = true;
+            }
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Removes from the working set any active rows whose variables are all
+    * fixed, since these would make the reduced system singular.
+    */
+   private void removeFixedRows (int[] activeRows, int na) {
+      for (int a=0; a<na; a++) {
+         int i = activeRows[a];
+         boolean hasFree = false;
+         for (int k=myRowOffs[i]; k<myRowOffs[i+1]; k++) {
+            if (myVarState[myColIdxs[k]] == FREE) {
+               hasFree = true;
+               break;
+            }
+         }
+         if (!hasFree) {
+            myRowActive[i] = false;
+         }
+      }
+   }
+
+   private Status doSolve (
+      VectorNd x, MatrixNd H, VectorNd f, VectorNd b, VectorNd beq,
+      boolean warm) {
+
+      myWarmStarted = warm;
+      myIterationCnt = 0;
+      if (!initialize (x, b, beq, warm)) {
+         return Status.NO_FEASIBLE_START;
+      }
+      int n = mySize;
+      int maxIters = myMaxIterations;
+      if (maxIters < 0) {
+         maxIters = 10*(n+myNumIneq+myNumEq)+100;
+      }
+      double[] xbuf = x.getBuffer();
+      int[] freeIdxs = new int[n];
+      int[] freeMap = new int[n];
+      int[] activeRows = new int[myNumIneq];
+      myg.setSize (n);
+      myp.setSize (n);
+
+      while (myIterationCnt < maxIters) {
+         myIterationCnt++;
+
+         // gradient at x
+         H.mul (myg, x);
+         myg.add (f);
+
+         int nf = 0;
+         for (int j=0; j<n; j++) {
+            if (myVarState[j] == FREE) {
+               freeMap[j] = nf;
+               freeIdxs[nf++] = j;
+            }
+            else {
+               freeMap[j] = -1;
+            }
+         }
+         int na = 0;
+         for (int i=0; i<myNumIneq; i++) {
+            if (myRowActive[i]) {
+               activeRows[na++] = i;
+            }
+         }
+         int nw = myNumEq + na;
+
+         // solve the equality constrained subproblem for the step p
+         myp.setZero();
+         mylam.setSize (nw);
+         if (nf > 0) {
+            myHFF.setSize (nf, nf);
+            mygF.setSize (nf);
+            for (int fi=0; fi<nf; fi++) {
+               int j = freeIdxs[fi];
+               for (int fk=0; fk<nf; fk++) {
+                  myHFF.set (fi, fk, H.get (j, freeIdxs[fk]));
+               }
+               mygF.set (fi, myg.get(j));
+            }
+            try {
+               myCholH.factor (myHFF);
+            }
+            catch (Exception e) {
+               return Status.NOT_SPD;
+            }
+            myz.setSize (nf);
+            if (!myCholH.solve (myz, mygF)) {
+               return Status.NOT_SPD;
+            }
+            mypF.setSize (nf);
+            if (nw > 0) {
+               myAWF.setSize (nw, nf);
+               myAWF.setZero();
+               for (int w=0; w<nw; w++) {
+                  if (w < myNumEq) {
+                     for (int k=myEqRowOffs[w]; k<myEqRowOffs[w+1]; k++) {
+                        int fj = freeMap[myEqColIdxs[k]];
+                        if (fj != -1) {
+                           myAWF.set (w, fj, myEqVals[k]);
+                        }
+                     }
+                  }
+                  else {
+                     int i = activeRows[w-myNumEq];
+                     for (int k=myRowOffs[i]; k<myRowOffs[i+1]; k++) {
+                        int fj = freeMap[myColIdxs[k]];
+                        if (fj != -1) {
+                           myAWF.set (w, fj, myVals[k]);
+                        }
+                     }
+                  }
+               }
+               // range space solve: (A H^-1 A^T) lam = A H^-1 g
+               myY.setSize (nf, nw);
+               myY.transpose (myAWF);
+               if (!myCholH.solve (myY, myY)) {
+                  return Status.NOT_SPD;
+               }
+               myS.setSize (nw, nw);
+               myS.mul (myAWF, myY);
+               myrhs.setSize (nw);
+               myAWF.mul (myrhs, myz);
+               try {
+                  myCholS.factor (myS);
+               }
+               catch (Exception e) {
+                  return Status.SINGULAR_SYSTEM;
+               }
+               if (!myCholS.solve (mylam, myrhs)) {
+                  return Status.SINGULAR_SYSTEM;
+               }
+               myY.mul (mypF, mylam);
+               mypF.sub (myz);
+            }
+            else {
+               mypF.negate (myz);
+            }
+            for (int fi=0; fi<nf; fi++) {
+               myp.set (freeIdxs[fi], mypF.get(fi));
+            }
+         }
+         else {
+            // all variables are fixed by bounds, so the working constraints
+            // are redundant and zero multipliers can be used for them
+            mylam.setZero();
+         }
+
+         double pmax = myp.infinityNorm();
+         if (pmax <= myTol*(1+x.infinityNorm())) {
+            // x is optimal for the current working set. Check the
+            // multipliers of the active inequalities and bounds.
+            double gmax = myg.infinityNorm();
+            double dualTol = myTol*(1+gmax);
+            double minMu = -dualTol;
+            int dropRow = -1;
+            int dropVar = -1;
+            for (int a=0; a<na; a++) {
+               double mu = mylam.get (myNumEq+a);
+               if (mu < minMu) {
+                  minMu = mu;
+                  dropRow = activeRows[a];
+                  dropVar = -1;
+               }
+            }
+            // r = g - A_W^T lam gives the bound multipliers
+            VectorNd r = new VectorNd (myg);
+            for (int w=0; w<nw; w++) {
+               double l = mylam.get(w);
+               if (w < myNumEq) {
+                  for (int k=myEqRowOffs[w]; k<myEqRowOffs[w+1]; k++) {
+                     r.add (myEqColIdxs[k], -l*myEqVals[k]);
+                  }
+               }
+               else {
+                  int i = activeRows[w-myNumEq];
+                  for (int k=myRowOffs[i]; k<myRowOffs[i+1]; k++) {
+                     r.add (myColIdxs[k], -l*myVals[k]);
+                  }
+               }
+            }
+            for (int j=0; j<n; j++) {
+               if (myVarState[j] != FREE && !isFixed (j)) {
+                  double mu = (myVarState[j] == AT_LOWER ? r.get(j) : -r.get(j));
+                  if (mu < minMu) {
+                     minMu = mu;
+                     dropVar = j;
+                     dropRow = -1;
+                  }
+               }
+            }
+            if (dropRow != -1) {
+               myRowActive[dropRow] = false;
+            }
+            else if (dropVar != -1) {
+               myVarState[dropVar] = FREE;
+            }
+            else {
+               return Status.SOLVED;
+            }
+         }
+         else {
+            // take as much of the step as the inactive constraints allow
+            double alpha = 1.0;
+            int blockRow = -1;
+            int blockVar = -1;
+            int blockState = FREE;
+            for (int fi=0; fi<nf; fi++) {
+               int j = freeIdxs[fi];
+               double pj = myp.get(j);
+               double t = Double.POSITIVE_INFINITY;
+               int state = FREE;
+               if (pj < 0 && myLower[j] > Double.NEGATIVE_INFINITY) {
+                  t = (myLower[j]-xbuf[j])/pj;
+                  state = AT_LOWER;
+               }
+               else if (pj > 0 && myUpper[j] < Double.POSITIVE_INFINITY) {
+                  t = (myUpper[j]-xbuf[j])/pj;
+                  state = AT_UPPER;
+               }
+               if (t < alpha) {
+                  alpha = Math.max (0, t);
+                  blockVar = j;
+                  blockState = state;
+               }
+            }
+            for (int i=0; i<myNumIneq; i++) {
+               if (!myRowIsBound[i] && !myRowActive[i]) {
+                  double ap = rowDot (i, myp);
+                  if (ap < -myTol*pmax) {
+                     double t = (b.get(i) - rowDot (i, x))/ap;
+                     if (t < alpha) {
+                        alpha = Math.max (0, t);
+                        blockRow = i;
+                        blockVar = -1;
+                     }
+                  }
+               }
+            }
+            x.scaledAdd (alpha, myp);
+            if (blockVar != -1) {
+               myVarState[blockVar] = blockState;
+               xbuf[blockVar] = (blockState == AT_LOWER ?
+                  myLower[blockVar] : myUpper[blockVar]);
+               removeFixedRows (activeRows, na);
+            }
+            else if (blockRow != -1) {
+               myRowActive[blockRow] = true;
+            }
+         }
+      }
+      return Status.ITERATION_LIMIT_EXCEEDED;
+   }
+}
@@ -0,0 +1,198 @@
+package maspack.solvers;
+
+import maspack.solvers.ActiveSetQPSolver.Status;
+import maspack.matrix.*;
+import maspack.util.*;
+
+/**
+ * Test program for ActiveSetQPSolver, which compares its solutions with
+ * those of DantzigQPSolver.
+ */
+public class ActiveSetQPSolverTest extends UnitTest {
+
+   private static double EPS = 1e-8;
+
+   ActiveSetQPSolver mySolver = new ActiveSetQPSolver();
+   DantzigQPSolver myDantzig = new DantzigQPSolver();
+
+   MatrixNd createH (int n) {
+      MatrixNd J = new MatrixNd (n+2, n);
+      J.setRandom();
+      MatrixNd H = new MatrixNd (n, n);
+      H.mulTransposeLeft (J, J);
+      H.addDiagonal (0.1);
+      return H;
+   }
+
+   /**
+    * Creates inequality constraints consisting of the bounds {@code lo <= x
+    * <= hi} followed by {@code ngen} general constraints that are
+    * satisfied at x = 0.
+    */
+   MatrixNd createA (int n, int ngen, VectorNd b, double lo, double hi) {
+      MatrixNd A = new MatrixNd (2*n+ngen, n);
+      b.setSize (2*n+ngen);
+      for (int i=0; i<n; i++) {
+         A.set (i, i, 1);
+         b.set (i, lo);
+         A.set (n+i, i, -1);
+         b.set (n+i, -hi);
+      }
+      for (int i=0; i<ngen; i++) {
+         for (int j=0; j<n; j++) {
+            if (RandomGenerator.nextDouble() < 0.5) {
+               A.set (2*n+i, j, RandomGenerator.nextDouble (-1, 1));
+            }
+         }
+         b.set (2*n+i, -RandomGenerator.nextDouble (0, 0.5));
+      }
+      return A;
+   }
+
+   void checkSolve (
+      MatrixNd H, VectorNd f, MatrixNd A, VectorNd b,
+      MatrixNd Aeq, VectorNd beq) {
+
+      int n = H.rowSize();
+      VectorNd xchk = new VectorNd (n);
+      DantzigQPSolver.Status dstatus;
+      if (Aeq != null) {
+         dstatus = myDantzig.solve (xchk, H, f, A, b, Aeq, beq);
+      }
+      else {
+         dstatus = myDantzig.solve (xchk, H, f, A, b);
+      }
+      checkEquals ("Dantzig status", dstatus, DantzigQPSolver.Status.SOLVED);
+
+      VectorNd x = new VectorNd (n);
+      Status status = mySolver.solve (
+         x, H, f, new SparseCRSMatrix (A), b,
+         Aeq != null ? new SparseCRSMatrix (Aeq) : null, beq);
+      checkEquals ("status", status, Status.SOLVED);
+      checkEquals ("solution", x, xchk, EPS);
+   }
+
+   public void testRandom() {
+      mySolver.setWarmStartEnabled (false);
+      for (int n : new int[] { 1, 4, 10, 25 }) {
+         for (int ngen : new int[] { 0, 2, 5 }) {
+            for (int k=0; k<10; k++) {
+               MatrixNd H = createH (n);
+               VectorNd f = new VectorNd (n);
+               f.setRandom (-2, 2);
+               VectorNd b = new VectorNd();
+               MatrixNd A = createA (n, ngen, b, 0, 1);
+               checkSolve (H, f, A, b, null, null);
+               if (n > 2) {
+                  // equality constraint sum(x) = 0.5, which is feasible
+                  // within the bounds
+                  MatrixNd Aeq = new MatrixNd (1, n);
+                  for (int j=0; j<n; j++) {
+                     Aeq.set (0, j, 1);
+                  }
+                  VectorNd beq = new VectorNd (1);
+                  beq.set (0, 0.5);
+                  // omit general constraints, which the projection onto
+                  // the equality constraint may violate
+                  A = createA (n, 0, b, 0, 1);
+                  checkSolve (H, f, A, b, Aeq, beq);
+               }
+            }
+         }
+      }
+   }
+
+   public void testWarmStart() {
+      int n = 30;
+      MatrixNd H = createH (n);
+      VectorNd f = new VectorNd (n);
+      f.setRandom (-2, 2);
+      VectorNd b = new VectorNd();
+      MatrixNd A = createA (n, 4, b, 0, 1);
+
+      mySolver.setWarmStartEnabled (true);
+      mySolver.clearWarmStart();
+      checkSolve (H, f, A, b, null, null);
+      check ("first solve was warm started",
+             !mySolver.lastSolveWasWarmStarted());
+      int coldIters = mySolver.getIterationCount();
+
+      // perturb the problem slightly and solve again
+      VectorNd df = new VectorNd (n);
+      df.setRandom (-0.01, 0.01);
+      f.add (df);
+      checkSolve (H, f, A, b, null, null);
+      check ("second solve not warm started",
+             mySolver.lastSolveWasWarmStarted());
+      int warmIters = mySolver.getIterationCount();
+      check ("warm start used more iterations ("+warmIters+
+             ") than cold start ("+coldIters+")", warmIters <= coldIters);
+
+      // changing the problem size should cause a cold start
+      A = createA (n, 2, b, 0, 1);
+      checkSolve (H, f, A, b, null, null);
+      check ("solve with new size was warm started",
+             !mySolver.lastSolveWasWarmStarted());
+   }
+
+   public void testSpecialCases() {
+      int n = 5;
+      MatrixNd H = createH (n);
+      VectorNd f = new VectorNd (n);
+      f.setRandom (-2, 2);
+      VectorNd x = new VectorNd (n);
+
+      // no constraints gives the unconstrained minimum
+      mySolver.setWarmStartEnabled (false);
+      checkEquals (
+         "status", mySolver.solve (x, H, f, null, null), Status.SOLVED);
+      VectorNd xchk = new VectorNd (n);
+      CholeskyDecomposition chol = new CholeskyDecomposition (H);
+      chol.solve (xchk, f);
+      xchk.negate();
+      checkNormedEquals ("unconstrained solution", x, xchk, EPS);
+
+      // inconsistent bounds
+      VectorNd b = new VectorNd();
+      MatrixNd A = createA (n, 0, b, 1, 0);
+      checkEquals (
+         "status",
+         mySolver.solve (x, H, f, new SparseCRSMatrix (A), b),
+         Status.NO_FEASIBLE_START);
+
+      // general constraint not satisfied by the starting point
+      A = createA (n, 1, b, 0, 1);
+      b.set (2*n, 1);
+      checkEquals (
+         "status",
+         mySolver.solve (x, H, f, new SparseCRSMatrix (A), b),
+         Status.NO_FEASIBLE_START);
+
+      // all variables fixed by their bounds
+      A = createA (n, 0, b, 0.5, 0.5);
+      checkEquals (
+         "status",
+         mySolver.solve (x, H, f, new SparseCRSMatrix (A), b),
+         Status.SOLVED);
+      xchk.setSize (n);
+      for (int j=0; j<n; j++) {
+         xchk.set (j, 0.5);
+      }
+      checkNormedEquals ("fixed solution", x, xchk, EPS);
+
+      checkForIllegalArgumentException (
+         () -> mySolver.solve (x, H, new VectorNd(n+1), null, null));
+   }
+
+   public void test() {
+      testRandom();
+      testWarmStart();
+      testSpecialCases();
+   }
+
+   public static void main (String[] args) {
+      ActiveSetQPSolverTest tester = new ActiveSetQPSolverTest();
+      RandomGenerator.setSeed (0x1234);
+      tester.runtest();
+   }
+}
@@ -0,0 +1,220 @@
+package maspack.solvers;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import maspack.matrix.SparseBlockSignature;
+
+/**
+ * Least-recently-used cache of solver objects that have been symbolically
+ * analyzed for particular matrix structures, keyed by the {@link
+ * SparseBlockSignature} of the part of the matrix whose structure varies
+ * (such as the constraint matrix of a KKT system). When a structure recurs,
+ * the solver that was analyzed for it can be retrieved from the cache and
+ * used directly, avoiding another symbolic analysis.
+ *
+ * <p>Signatures are compared using {@link
+ * SparseBlockSignature#structureEquals}. The cache does not know about any
+ * other part of the matrix structure, so the application must call {@link
+ * #clear} whenever that changes.
+ *
+ * @param <T> type of the cached solver objects
+ */
+public class AnalysisCache<T> {
+
+   private int myCapacity;
+   private Consumer<T> myDisposer;
+   private LinkedHashMap<Key,T> myMap;
+
+   private int myHitCnt;
+   private int myMissCnt;
+   private int myEvictionCnt;
+
+   /**
+    * Wraps a signature so that it can be used as a hash key.
+    */
+   private static class Key {
+      SparseBlockSignature mySig;
+      int myHash;
+
+      Key (SparseBlockSignature sig) {
+         mySig = sig;
+         myHash = sig.structureHashCode();
+      }
+
+      @Override
+      public int hashCode() {
+         return myHash;
+      }
+
+      @Override
+      public boolean equals (Object obj) {
+         if (obj instanceof Key) {
+            Key key = (Key)obj;
+            return myHash == key.myHash && mySig.structureEquals (key.mySig);
+         }
+         return false;
+      }
+   }
+
+   /**
+    * Creates a new cache.
+    *
+    * @param capacity maximum number of entries
+    * @param disposer if non-{@code null}, is called for entries that are
+    * evicted or cleared from the cache, so that their resources can be
+    * released
+    */
+   public AnalysisCache (int capacity, Consumer<T> disposer) {
+      myCapacity = Math.max (0, capacity);
+      myDisposer = disposer;
+      // access order, so that iteration starts with the least recently used
+      myMap = new LinkedHashMap<>(16, 0.75f, true);
+   }
+
+   /**
+    * Returns the maximum number of entries in this cache.
+    *
+    * @return cache capacity
+    */
+   public int getCapacity() {
+      return myCapacity;
+   }
+
+   /**
+    * Sets the maximum number of entries in this cache, evicting the least
+    * recently used entries if necessary.
+    *
+    * @param capacity new cache capacity
+    */
+   public void setCapacity (int capacity) {
+      myCapacity = Math.max (0, capacity);
+      evictExcess();
+   }
+
+   /**
+    * Returns the number of entries currently in this cache.
+    *
+    * @return number of entries
+    */
+   public int size() {
+      return myMap.size();
+   }
+
+   /**
+    * Returns the object that was analyzed for the given structure, or {@code
+    * null} if there is none. The returned object becomes the most recently
+    * used entry.
+    *
+    * @param sig signature describing the structure
+    * @return cached object, or {@code null}
+    */
+   public T get (SparseBlockSignature sig) {
+      T obj = myMap.get (new Key (sig));
+      if (obj != null) {
+         myHitCnt++;
+      }
+      else {
+         myMissCnt++;
+      }
+      return obj;
+   }
+
+   /**
+    * Adds an object that has been analyzed for the given structure, evicting
+    * the least recently used entry if the capacity is exceeded. If an entry
+    * for the structure already exists, it is replaced and disposed of, unless
+    * it is the same object. Does nothing if the capacity is 0.
+    *
+    * @param sig signature describing the structure
+    * @param obj object analyzed for the structure
+    */
+   public void put (SparseBlockSignature sig, T obj) {
+      if (myCapacity == 0) {
+         return;
+      }
+      T prev = myMap.put (new Key (sig), obj);
+      if (prev != null && prev != obj) {
+         dispose (prev);
+      }
+      evictExcess();
+   }
+
+   /**
+    * Queries whether an object is currently stored in this cache.
+    *
+    * @param obj object to check
+    * @return {@code true} if {@code obj} is in the cache
+    */
+   public boolean containsValue (T obj) {
+      return myMap.containsValue (obj);
+   }
+
+   private void evictExcess() {
+      Iterator<Map.Entry<Key,T>> it = myMap.entrySet().iterator();
+      while (myMap.size() > myCapacity && it.hasNext()) {
+         T obj = it.next().getValue();
+         it.remove();
+         myEvictionCnt++;
+         dispose (obj);
+      }
+   }
+
+   private void dispose (T obj) {
+      if (myDisposer != null) {
+         myDisposer.accept (obj);
+      }
+   }
+
+   /**
+    * Removes and disposes of all entries. The hit, miss, and eviction counts
+    * are not affected.
+    */
+   public void clear() {
+      ArrayList<T> objs = new ArrayList<>(myMap.values());
+      myMap.clear();
+      for (T obj : objs) {
+         dispose (obj);
+      }
+   }
+
+   /**
+    * Returns the number of calls to {@link #get} that found an entry.
+    *
+    * @return number of cache hits
+    */
+   public int getHitCount() {
+      return myHitCnt;
+   }
+
+   /**
+    * Returns the number of calls to {@link #get} that did not find an entry.
+    *
+    * @return number of cache misses
+    */
+   public int getMissCount() {
+      return myMissCnt;
+   }
+
+   /**
+    * Returns the number of entries that have been evicted to stay within the
+    * capacity.
+    *
+    * @return number of evictions
+    */
+   public int getEvictionCount() {
+      return myEvictionCnt;
+   }
+
+   /**
+    * Resets the hit, miss, and eviction counts to zero.
+    */
+   public void resetCounts() {
+      myHitCnt = 0;
+      myMissCnt = 0;
+      myEvictionCnt = 0;
+   }
+}
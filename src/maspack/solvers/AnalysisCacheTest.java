@@ -0,0 +1,177 @@
+package maspack.solvers;
+
+import java.util.ArrayList;
+
+import maspack.matrix.*;
+import maspack.util.*;
+
+/**
+ * Test program for AnalysisCache.
+ */
+public class AnalysisCacheTest extends UnitTest {
+
+   private static double EPS = 1e-10;
+
+   private int[] createSizes (int num, int size) {
+      int[] sizes = new int[num];
+      for (int i=0; i<num; i++) {
+         sizes[i] = size;
+      }
+      return sizes;
+   }
+
+   /**
+    * Creates a constraint matrix GT with 3 x 1 blocks, where constraint j
+    * acts on the block row rows[j].
+    */
+   SparseBlockMatrix createGT (int nblks, int... rows) {
+      SparseBlockMatrix GT = new SparseBlockMatrix (
+         createSizes (nblks, 3), createSizes (rows.length, 1));
+      for (int j=0; j<rows.length; j++) {
+         Matrix3x1Block blk = new Matrix3x1Block();
+         blk.setRandom();
+         GT.addBlock (rows[j], j, blk);
+      }
+      return GT;
+   }
+
+   SparseBlockMatrix createM (int nblks) {
+      int[] sizes = createSizes (nblks, 3);
+      SparseBlockMatrix M = new SparseBlockMatrix (sizes, sizes);
+      for (int i=0; i<nblks; i++) {
+         Matrix3x3Block blk = new Matrix3x3Block();
+         blk.setRandom();
+         blk.mulTransposeRight (blk, blk);
+         blk.addDiagonal (3);
+         M.addBlock (i, i, blk);
+      }
+      return M;
+   }
+
+   public void testSignatures() {
+      SparseBlockMatrix GT0 = createGT (5, 0, 2, 4);
+      SparseBlockMatrix GT1 = createGT (5, 0, 2, 4);
+      SparseBlockMatrix GT2 = createGT (5, 0, 3, 4);
+      check ("same structure not equal",
+             GT0.getSignature().structureEquals (GT1.getSignature()));
+      check ("same structure has different hash",
+             GT0.getSignature().structureHashCode() ==
+             GT1.getSignature().structureHashCode());
+      check ("different structure equal",
+             !GT0.getSignature().structureEquals (GT2.getSignature()));
+
+      // block pattern is the same, but block sizes differ
+      SparseBlockMatrix GT3 = new SparseBlockMatrix (
+         createSizes (5, 3), new int[] { 1, 2, 1 });
+      GT3.addBlock (0, 0, new Matrix3x1Block());
+      GT3.addBlock (2, 1, new Matrix3x2Block());
+      GT3.addBlock (4, 2, new Matrix3x1Block());
+      check ("different block sizes equal",
+             !GT0.getSignature().structureEquals (GT3.getSignature()));
+   }
+
+   public void testLRU() {
+      ArrayList<String> disposed = new ArrayList<>();
+      AnalysisCache<String> cache =
+         new AnalysisCache<> (2, (s) -> disposed.add (s));
+
+      SparseBlockSignature sigA = createGT (5, 0, 1).getSignature();
+      SparseBlockSignature sigB = createGT (5, 1, 2).getSignature();
+      SparseBlockSignature sigC = createGT (5, 2, 3).getSignature();
+
+      check ("unexpected hit", cache.get (sigA) == null);
+      cache.put (sigA, "A");
+      cache.put (sigB, "B");
+      // structurally equal signature from a different matrix
+      checkEquals ("get A", cache.get (createGT (5, 0, 1).getSignature()), "A");
+      // B is now least recently used
+      cache.put (sigC, "C");
+      checkEquals ("size", cache.size(), 2);
+      check ("B not evicted", cache.get (sigB) == null);
+      checkEquals ("get A", cache.get (sigA), "A");
+      checkEquals ("get C", cache.get (sigC), "C");
+      checkEquals ("hits", cache.getHitCount(), 3);
+      checkEquals ("misses", cache.getMissCount(), 2);
+      checkEquals ("evictions", cache.getEvictionCount(), 1);
+      checkEquals ("disposed", disposed.toString(), "[B]");
+
+      // C is most recently used, so A is evicted
+      cache.setCapacity (1);
+      checkEquals ("disposed", disposed.toString(), "[B, A]");
+      check ("contains C", cache.containsValue ("C"));
+
+      // replacing an entry disposes of the old value
+      cache.put (sigC, "C2");
+      checkEquals ("disposed", disposed.toString(), "[B, A, C]");
+      cache.clear();
+      checkEquals ("size", cache.size(), 0);
+      checkEquals ("disposed", disposed.toString(), "[B, A, C, C2]");
+
+      cache.resetCounts();
+      checkEquals ("hits", cache.getHitCount(), 0);
+      checkEquals ("misses", cache.getMissCount(), 0);
+
+      // zero capacity caches nothing
+      cache.setCapacity (0);
+      cache.put (sigA, "A");
+      checkEquals ("size", cache.size(), 0);
+   }
+
+   /**
+    * Alternates between two constraint structures, reusing KKTSolvers
+    * analyzed for each, and checks that the solutions are correct.
+    */
+   public void testKKTSolvers() {
+      int nblks = 8;
+      SparseBlockMatrix M = createM (nblks);
+      int sizeM = M.rowSize();
+      AnalysisCache<KKTSolver> cache =
+         new AnalysisCache<> (4, (s) -> s.dispose());
+
+      int[][] patterns = new int[][] {
+         { 0, 3, 5 }, { 1, 2, 6, 7 }, { 0, 3, 5 }, { 1, 2, 6, 7 } };
+      for (int[] rows : patterns) {
+         SparseBlockMatrix GT = createGT (nblks, rows);
+         int ncons = GT.colSize();
+         KKTSolver solver = cache.get (GT.getSignature());
+         if (solver == null) {
+            solver = new KKTSolver (SparseSolverId.SupernodalLDLT);
+            solver.analyze (M, sizeM, GT, null, Matrix.SPD);
+            cache.put (GT.getSignature(), solver);
+         }
+         VectorNd bm = new VectorNd (sizeM);
+         VectorNd bg = new VectorNd (ncons);
+         bm.setRandom();
+         bg.setRandom();
+         VectorNd vel = new VectorNd (sizeM);
+         VectorNd lam = new VectorNd (ncons);
+         solver.factor (M, sizeM, GT, null);
+         solver.solve (vel, lam, bm, bg);
+
+         VectorNd res = new VectorNd (sizeM);
+         VectorNd tmp = new VectorNd (sizeM);
+         M.mul (res, vel);
+         GT.mul (tmp, lam);
+         res.sub (tmp);
+         checkNormedEquals ("KKT velocity residual", res, bm, EPS);
+         VectorNd resg = new VectorNd (ncons);
+         GT.mulTranspose (resg, vel);
+         checkNormedEquals ("KKT constraint residual", resg, bg, EPS);
+      }
+      checkEquals ("hits", cache.getHitCount(), 2);
+      checkEquals ("misses", cache.getMissCount(), 2);
+      cache.clear();
+   }
+
+   public void test() {
+      testSignatures();
+      testLRU();
+      testKKTSolvers();
+   }
+
+   public static void main (String[] args) {
+      AnalysisCacheTest tester = new AnalysisCacheTest();
+      RandomGenerator.setSeed (0x1234);
+      tester.runtest();
+   }
+}
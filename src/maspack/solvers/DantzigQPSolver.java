@@ -22,6 +22,7 @@ public class DantzigQPSolver {
    protected VectorNd myq;
    protected VectorNd myy;
    protected VectorNd myz;
+   protected int myIterationCnt;
 
    /**
     * Described whether or not a solution was found. Where appropriate,
@@ -90,6 +91,17 @@ public class DantzigQPSolver {
       myz = new VectorNd();
    }
 
+   /**
+    * Returns the number of pivoting iterations used by the LCP solve within
+    * the most recent call to {@code solve()}. This will be 0 if there were
+    * no inequality constraints.
+    *
+    * @return number of iterations for the last solve
+    */
+   public int getIterationCount() {
+      return myIterationCnt;
+   }
+
    private void checkProblemDimensions (
       MatrixNd H, VectorNd f, MatrixNd A, VectorNd b) {
 
@@ -135,6 +147,7 @@ public class DantzigQPSolver {
       VectorNd x, MatrixNd H, VectorNd f, MatrixNd A, VectorNd b) {
 
       checkProblemDimensions (H, f, A, b);
+      myIterationCnt = 0;
       if (myCholD == null) {
          myCholD = new CholeskyDecomposition();
       }
@@ -175,6 +188,7 @@ public class DantzigQPSolver {
       myy.setSize (H.rowSize());
       Status status = 
          statusFromLCP(myLcp.solve (myz, /*state=*/null, myM, myq));
+      myIterationCnt = myLcp.getIterationCount();
       if (status == Status.SOLVED) {
          A.mulTranspose (myy, myz);
          myy.sub (f);
@@ -269,6 +283,7 @@ public class DantzigQPSolver {
          return solve (x, H, f, A, b);
       }
       checkProblemDimensions (H, f, A, b);
+      myIterationCnt = 0;
       if (Aeq.rowSize() > H.rowSize()) {
          throw new IllegalArgumentException (
             "Number of equality constraints " + Aeq.rowSize() + 
@@ -344,6 +359,7 @@ public class DantzigQPSolver {
       myz.setSize (n);
       Status status = 
          statusFromLCP(myLcp.solve (myz, /*state=*/null, myM, myq));
+      myIterationCnt = myLcp.getIterationCount();
       if (status == Status.SOLVED) {
          A.mulTranspose (myy, myz);
          myy.setSize (hsize+neq);
@@ -18,6 +18,7 @@ import java.util.Arrays;
 public class KKTSolver {
 
    private SparseSolverId mySolverType = SparseSolverId.Pardiso;
+   private SparseSolverId myRequestedSolverType = SparseSolverId.Pardiso;
 
    public static boolean computeResidualMG = false;
    // when building an LCP matrix, use solves with multiple right sides:
@@ -38,6 +39,7 @@ public class KKTSolver {
    SparseBlockMatrix myGT;
    UmfpackSolver myUmfpack;
    PardisoSolver myPardiso;
+   SupernodalLDLTSolver mySupernodal;
    DirectSolver myMatrixSolver;
    boolean myIndices1Based = false;
    boolean myLastSolveWasIterative = false;
@@ -56,6 +58,14 @@ public class KKTSolver {
    int[] myLocalOffs = new int[0];
    double[] myVals = new double[0];
 
+   // Maps the blocks of M to their locations in myVals, so that repeated
+   // factorizations can reload M's values without recomputing offsets.
+   // Reset by analyze, and rebuilt if M changes or is restructured.
+   SparseBlockValueMap myMValueMap;
+   // value of myLocalOffs after M's values are loaded, used when the map
+   // is reused so that the values of GT can be loaded after those of M
+   int[] myLocalOffsAfterM = new int[0];
+
    VectorNd myMGx = new VectorNd();
    VectorNd myMGy = new VectorNd();
 
@@ -99,6 +109,11 @@ public class KKTSolver {
    };
 
    public KKTSolver (SparseSolverId solverType) {
+      createSolver (solverType);
+      myRequestedSolverType = solverType;
+   }
+
+   private void createSolver (SparseSolverId solverType) {
       switch (solverType) {
          case Pardiso: {
             myPardiso = new PardisoSolver();
@@ -110,6 +125,11 @@ public class KKTSolver {
             myMatrixSolver = myUmfpack;
             break;
          }
+         case SupernodalLDLT: {
+            mySupernodal = new SupernodalLDLTSolver();
+            myMatrixSolver = mySupernodal;
+            break;
+         }
          default: {
             throw new IllegalArgumentException (
                "Solver type " + solverType + " not supported");
@@ -118,6 +138,26 @@ public class KKTSolver {
       mySolverType = solverType;
    }
 
+   /**
+    * Makes sure that the current solver can handle a KKT system whose M
+    * matrix has type {@code typeM}. The supernodal LDL^T solver only handles
+    * symmetric systems, so for non-symmetric systems we fall back to Pardiso
+    * (or Umfpack if Pardiso is not available), and return to the requested
+    * solver once the system becomes symmetric again.
+    */
+   private void updateSolverForType (int typeM) {
+      SparseSolverId solverType = myRequestedSolverType;
+      if (!solverType.isCompatible (typeM)) {
+         solverType = (PardisoSolver.isAvailable() ?
+                       SparseSolverId.Pardiso : SparseSolverId.Umfpack);
+      }
+      if (solverType != mySolverType) {
+         dispose();
+         createSolver (solverType);
+         myState = State.NULL;
+      }
+   }
+
    public KKTSolver() {
       this (SparseSolverId.Pardiso);
    }
@@ -133,6 +173,7 @@ public class KKTSolver {
       int numVals = 0;
 
       myTypeM = typeM;
+      updateSolverForType (typeM);
       if ((typeM & Matrix.SYMMETRIC) != 0) {
          myPartitionM = Partition.UpperTriangular;
       }
@@ -182,6 +223,7 @@ public class KKTSolver {
       // are using Pardiso, then the indices will incremented later and
       // myIndices1Based will be set to true.
       myIndices1Based = false;
+      myMValueMap = null;
 
       getCRSRowOffsets (M, sizeM, GT);
       getCRSIndices (M, sizeM, numVals, GT);
@@ -206,7 +248,12 @@ public class KKTSolver {
             myRowOffs[i]++;
          }
          myIndices1Based = true;
-         if ((myTypeM & Matrix.SYMMETRIC) != 0) {
+         if (mySupernodal != null) {
+            // supernodal solver uses the same 1-based indices as Pardiso
+            mySupernodal.analyze (
+               myVals, myColIdxs, myRowOffs, sizeMG, myTypeM);
+         }
+         else if ((myTypeM & Matrix.SYMMETRIC) != 0) {
             // even if myTypeM is SPD, the KKT system won't be, so
             // we need a symmetric solve regardless
             myPardiso.analyze (
@@ -216,7 +263,8 @@ public class KKTSolver {
             myPardiso.analyze (
                myVals, myColIdxs, myRowOffs, sizeMG, Matrix.INDEFINITE);
          }
-         if (myPardiso.getState() == PardisoSolver.UNSET) {
+         if (myPardiso != null &&
+             myPardiso.getState() == PardisoSolver.UNSET) {
             throw new NumericalException (
                "Pardiso: unable to analyze matrix: "+myPardiso.getErrorMessage());
          }
@@ -317,8 +365,20 @@ public class KKTSolver {
          }
       }
       if (M instanceof SparseBlockMatrix) {
-         ((SparseBlockMatrix)M).getBlockCRSValues (
-            myVals, myLocalOffs, myPartitionM, sizeM, sizeM);
+         SparseBlockMatrix S = (SparseBlockMatrix)M;
+         if (myMValueMap == null || !myMValueMap.isValid (S)) {
+            // creating the map advances myLocalOffs past the values of M
+            myMValueMap = new SparseBlockValueMap (
+               S, myLocalOffs, myPartitionM, sizeM, sizeM, /*ccs=*/false);
+            if (myLocalOffsAfterM.length < sizeM) {
+               myLocalOffsAfterM = new int[sizeM];
+            }
+            System.arraycopy (myLocalOffs, 0, myLocalOffsAfterM, 0, sizeM);
+         }
+         else {
+            System.arraycopy (myLocalOffsAfterM, 0, myLocalOffs, 0, sizeM);
+         }
+         myMValueMap.getValues (myVals);
       }
       else {
          // M is a diagonal matrix represented by a VectorNd
@@ -637,6 +697,75 @@ public class KKTSolver {
       return dosolve (vel, lam, null, null, bm, bg, null, null, null, null, null);
    }
 
+   /**
+    * Solves the equality parts of a factored system for multiple right-hand
+    * sides, given by the columns of <code>bm</code> and <code>bg</code>, with
+    * the corresponding solutions returned in the columns of <code>vel</code>
+    * and <code>lam</code>. When the underlying solver is Pardiso or
+    * SupernodalLDLT, all the columns are solved together in a single blocked
+    * solve; otherwise, they are solved one at a time.
+    *
+    * @param vel returns the velocity solutions, one per column. Will be
+    * resized if necessary.
+    * @param lam returns the bilateral constraint impulses, one per column.
+    * Will be resized if necessary.
+    * @param bm velocity right-hand sides
+    * @param bg bilateral constraint right-hand sides. Must have the same
+    * number of columns as <code>bm</code>.
+    */
+   public void solve (MatrixNd vel, MatrixNd lam, MatrixNd bm, MatrixNd bg) {
+      myLastSolveWasIterative = false;
+      if (myState != State.FACTORED) {
+         throw new ImproperStateException ("Factor has not been called");
+      }
+      int nrhs = bm.colSize();
+      if (bm.rowSize() != mySizeM) {
+         throw new IllegalArgumentException (
+            "bm has "+bm.rowSize()+" rows, expected "+mySizeM);
+      }
+      if (bg.rowSize() != myNumG || bg.colSize() != nrhs) {
+         throw new IllegalArgumentException (
+            "bg is "+bg.getSize()+", expected "+myNumG+"x"+nrhs);
+      }
+      vel.setSize (mySizeM, nrhs);
+      lam.setSize (myNumG, nrhs);
+      if (myPardiso != null || mySupernodal != null) {
+         int w = mySizeM+myNumG;
+         // right-hand sides and solutions are stored in column major order
+         double[] buf = new double[w*nrhs];
+         for (int j=0; j<nrhs; j++) {
+            for (int i=0; i<mySizeM; i++) {
+               buf[j*w+i] = bm.get (i, j);
+            }
+            for (int i=0; i<myNumG; i++) {
+               buf[j*w+mySizeM+i] = bg.get (i, j);
+            }
+         }
+         solveMG (buf, buf, nrhs);
+         for (int j=0; j<nrhs; j++) {
+            for (int i=0; i<mySizeM; i++) {
+               vel.set (i, j, buf[j*w+i]);
+            }
+            for (int i=0; i<myNumG; i++) {
+               lam.set (i, j, buf[j*w+mySizeM+i]);
+            }
+         }
+      }
+      else {
+         VectorNd vcol = new VectorNd (mySizeM);
+         VectorNd lcol = new VectorNd (myNumG);
+         VectorNd bmcol = new VectorNd (mySizeM);
+         VectorNd bgcol = new VectorNd (myNumG);
+         for (int j=0; j<nrhs; j++) {
+            bm.getColumn (j, bmcol);
+            bg.getColumn (j, bgcol);
+            solveMG (vcol, lcol, bmcol, bgcol);
+            vel.setColumn (j, vcol);
+            lam.setColumn (j, lcol);
+         }
+      }
+   }
+
    double myDirectTimeMsec = 0;
    int myDirectCnt = 0;
    double myIterativeTimeMsec = 0;
@@ -1278,7 +1407,7 @@ public class KKTSolver {
       myHi.setSize (n);
       myLo.setSize (n);
 
-      if (myPardiso != null && useBlockSolves) {
+      if ((myPardiso != null || mySupernodal != null) && useBlockSolves) {
          MatrixNd ND = new MatrixNd();
          getDenseND (ND, NT, DT);
          solveMG (ND.getBuffer(), ND.getBuffer(), n);
@@ -1609,11 +1738,16 @@ public class KKTSolver {
    }
 
    public void solveMG (double[] Xbuf, double[] Bbuf, int nrhs) {
-      if (myPardiso != null) {
+      if (myPardiso != null || mySupernodal != null) {
          int w = mySizeM+myNumG;
          // NOTE: solve arguments with multiple right hand sides are stored in
          // column major form
-         myPardiso.solve (Xbuf, Bbuf, nrhs);
+         if (myPardiso != null) {
+            myPardiso.solve (Xbuf, Bbuf, nrhs);
+         }
+         else {
+            mySupernodal.solve (Xbuf, Bbuf, nrhs);
+         }
          // negate lam.
          for (int i=0; i<nrhs; i++) {
             for (int j=mySizeM; j<w; j++) {
@@ -1623,7 +1757,8 @@ public class KKTSolver {
       }
       else {
          throw new UnsupportedOperationException (
-            "solve for multiple rhs only supported for Pardiso");
+            "solve for multiple rhs only supported for Pardiso and "+
+            "SupernodalLDLT");
       }
    }
 
@@ -1694,6 +1829,9 @@ public class KKTSolver {
                "Umfpack: Matrix is near singular, solve could fail");
          }
       }
+      else if (mySupernodal != null) {
+         mySupernodal.factor (myVals);
+      }
       else {
          myPardiso.factor (myVals);
          if (myPardiso.getState() != PardisoSolver.FACTORED) {
@@ -1708,6 +1846,9 @@ public class KKTSolver {
    }
 
    public int getNumNonZerosInFactors() {
+      if (mySupernodal != null) {
+         return mySupernodal.getNumNonZerosInFactors();
+      }
       return myPardiso.getNumNonZerosInFactors();
    }
 
@@ -1721,6 +1862,7 @@ public class KKTSolver {
          myMatrixSolver = null;
          myPardiso = null;
          myUmfpack = null;
+         mySupernodal = null;
       }
    }
 
@@ -302,13 +302,15 @@ public class MurtyMechSolver {
    protected int myIterationCnt;     // number of iterations for last solve
    protected int myPivotCnt;         // number of pivots for last solve
    protected int mySolveCnt;         // number of solves of A for last solve
+   protected boolean myWarmStart = true; // start from the supplied N/D states
 
    // sparse solver used to solve the A system
    private SparseSolverId mySolverType = SparseSolverId.Pardiso;
    DirectSolver myMatrixSolver;      // current sparse solver
    UmfpackSolver myUmfpack;          // Umfpack solver, if used
    PardisoSolver myPardiso;          // Pardiso solver, if used
-   int mySavedMaxRefinementSteps;    // saved value of Pardiso refinement steps
+   SupernodalLDLTSolver mySupernodal;// supernodal solver, if used
+   int mySavedMaxRefinementSteps;    // saved value of solver refinement steps
    boolean myAMatrixFactored;        // A matrix factored and ready for solution
    
    // control variables related to hybrid solves
@@ -388,6 +390,11 @@ public class MurtyMechSolver {
    protected int myTotalFactorCnt;
    protected FunctionTimer mySolveTimer;
    protected int myTotalSolveCnt;
+   // cumulative pivoting statistics for all LCP solves
+   protected int myTotalLCPSolveCnt;
+   protected int myTotalWarmStartCnt;
+   protected long myTotalIterationCnt;
+   protected long myTotalPivotCnt;
 
    public static final int SHOW_NONE = 0x00;
    public static final int SHOW_PIVOTS = 0x01;
@@ -546,6 +553,7 @@ public class MurtyMechSolver {
       switch (solverType) {
          case Pardiso: {
             myPardiso = new PardisoSolver();
+            mySupernodal = null;
             myMatrixSolver = myPardiso;
             break;
          }
@@ -554,6 +562,12 @@ public class MurtyMechSolver {
             myMatrixSolver = myUmfpack;
             break;
          }
+         case SupernodalLDLT: {
+            mySupernodal = new SupernodalLDLTSolver();
+            myPardiso = null;
+            myMatrixSolver = mySupernodal;
+            break;
+         }
          default: {
             throw new IllegalArgumentException (
                "Solver type " + solverType + " not supported");
@@ -565,12 +579,18 @@ public class MurtyMechSolver {
    public void setSolver (DirectSolver solver) {
       if (solver instanceof PardisoSolver) {
          myPardiso = (PardisoSolver)solver;
+         mySupernodal = null;
          mySolverType = SparseSolverId.Pardiso;
       }
       else if (solver instanceof UmfpackSolver) {
          myUmfpack = (UmfpackSolver)solver;
          mySolverType = SparseSolverId.Umfpack;
       }
+      else if (solver instanceof SupernodalLDLTSolver) {
+         mySupernodal = (SupernodalLDLTSolver)solver;
+         myPardiso = null;
+         mySolverType = SparseSolverId.SupernodalLDLT;
+      }
       else {
          throw new UnsupportedOperationException ("Unsupported solver "+solver);
       }
@@ -677,6 +697,32 @@ public class MurtyMechSolver {
       return myPivotCnt;
    }
 
+   /**
+    * Queries whether warm starting is enabled. See {@link #setWarmStart}.
+    *
+    * @return {@code true} if warm starting is enabled
+    */
+   public boolean getWarmStart() {
+      return myWarmStart;
+   }
+
+   /**
+    * Enables or disables warm starting. When enabled, the {@code stateN} and
+    * {@code stateD} arguments supplied to {@code solve()} and {@code
+    * contactSolve()} are used as the initial basis for the pivoting loop, so
+    * that if the caller passes in the states from the previous time step,
+    * problems whose active set changes little between steps can be solved
+    * with only a few pivots. When disabled, these arguments are cleared on
+    * input and each solve starts with all N and D constraints non-basic.
+    *
+    * <p>The default value of this setting is {@code true}.
+    *
+    * @param enable if {@code true}, enables warm starting
+    */
+   public void setWarmStart (boolean enable) {
+      myWarmStart = enable;
+   }
+
    /**
     * Returns the number of times that block pivoting failed during the most
     * recent solve. This may be more than 1 if attempts to retart block
@@ -879,7 +925,8 @@ public class MurtyMechSolver {
    }
 
    private void analyzeA (int[] colIdxs) {
-      if (mySolverType == SparseSolverId.Pardiso) {
+      if (mySolverType == SparseSolverId.Pardiso ||
+          mySolverType == SparseSolverId.SupernodalLDLT) {
          int[] rowOffs = Arrays.copyOf (myRowOffsA, mySizeA+1);
          for (int i=0; i<rowOffs.length; i++) {
             rowOffs[i]++;
@@ -891,12 +938,18 @@ public class MurtyMechSolver {
          myARowOffs = rowOffs;
          //getAValues (null, true);
          myAnalyzeTimer.restart();
-         myPardiso.analyze (
-            myValuesA, colIdxs, rowOffs, mySizeA, Matrix.SYMMETRIC);
-         if (myPardiso.getState() == PardisoSolver.UNSET) {
-            throw new NumericalException (
-               "Pardiso: unable to analyze matrix: " +
-               myPardiso.getErrorMessage());
+         if (mySupernodal != null) {
+            mySupernodal.analyze (
+               myValuesA, colIdxs, rowOffs, mySizeA, Matrix.SYMMETRIC);
+         }
+         else {
+            myPardiso.analyze (
+               myValuesA, colIdxs, rowOffs, mySizeA, Matrix.SYMMETRIC);
+            if (myPardiso.getState() == PardisoSolver.UNSET) {
+               throw new NumericalException (
+                  "Pardiso: unable to analyze matrix: " +
+                  myPardiso.getErrorMessage());
+            }
          }
          myAnalyzeTimer.stop();
          //getAValues (null, false);
@@ -946,13 +999,20 @@ public class MurtyMechSolver {
    }
 
    private void factorA () {
-      if (mySolverType == SparseSolverId.Pardiso) {
+      if (mySolverType == SparseSolverId.Pardiso ||
+          mySolverType == SparseSolverId.SupernodalLDLT) {
          myFactorTimer.restart();
-         myPardiso.factor (myValuesA);
-         if (myPardiso.getState() != PardisoSolver.FACTORED) {
-            throw new NumericalException (
-               "Pardiso: unable to factor matrix: size="+mySizeA+", nnz=" +
-               myNumValsA + ", error=" + myPardiso.getErrorMessage());
+         if (mySupernodal != null) {
+            mySupernodal.factor (myValuesA);
+         }
+         else {
+            myPardiso.factor (myValuesA);
+            if (myPardiso.getState() != PardisoSolver.FACTORED) {
+               throw new NumericalException (
+                  "Pardiso: unable to factor matrix: size="+mySizeA+
+                  ", nnz=" + myNumValsA +
+                  ", error=" + myPardiso.getErrorMessage());
+            }
          }
          myFactorTimer.stop();
          myTotalFactorCnt++;
@@ -965,9 +1025,10 @@ public class MurtyMechSolver {
    }
 
    private void solveA (VectorNd y, VectorNd x) {
-      if (mySolverType == SparseSolverId.Pardiso) {
+      if (mySolverType == SparseSolverId.Pardiso ||
+          mySolverType == SparseSolverId.SupernodalLDLT) {
          mySolveTimer.restart();
-         myPardiso.solve (y, x);
+         myMatrixSolver.solve (y, x);
          mySolveTimer.stop();
          mySolveCnt++;
          myTotalSolveCnt++;
@@ -979,10 +1040,16 @@ public class MurtyMechSolver {
    }
 
    private void solveA (MatrixNd Y, MatrixNd X) {
-      if (mySolverType == SparseSolverId.Pardiso) {
+      if (mySolverType == SparseSolverId.Pardiso ||
+          mySolverType == SparseSolverId.SupernodalLDLT) {
          mySolveTimer.restart();
          int nrows= Y.rowSize(); 
-         myPardiso.solve (Y.getBuffer(), X.getBuffer(), nrows);
+         if (mySupernodal != null) {
+            mySupernodal.solve (Y.getBuffer(), X.getBuffer(), nrows);
+         }
+         else {
+            myPardiso.solve (Y.getBuffer(), X.getBuffer(), nrows);
+         }
          mySolveTimer.stop();
          mySolveCnt += nrows;
          myTotalSolveCnt += nrows;
@@ -993,6 +1060,24 @@ public class MurtyMechSolver {
       }
    }
 
+   private int getSolverMaxRefinementSteps() {
+      if (mySupernodal != null) {
+         return mySupernodal.getMaxRefinementSteps();
+      }
+      else {
+         return myPardiso.getMaxRefinementSteps();
+      }
+   }
+
+   private void setSolverMaxRefinementSteps (int nsteps) {
+      if (mySupernodal != null) {
+         mySupernodal.setMaxRefinementSteps (nsteps);
+      }
+      else {
+         myPardiso.setMaxRefinementSteps (nsteps);
+      }
+   }
+
    private boolean canDoHybridSolve() {
       if (myHybridSolves && myPardiso != null &&
           mySizeND == 0 && myAvgDirectTime > 0) {
@@ -2758,6 +2843,48 @@ public class MurtyMechSolver {
       }
    }
 
+   /**
+    * Prepares the N and D states supplied by the caller for use as the
+    * initial basis. If warm starting is disabled, the states are cleared;
+    * otherwise, the solve is counted as warm started if any constraint is
+    * initially basic.
+    */
+   private void prepareInitialState (VectorNi stateN, VectorNi stateD) {
+      if (!myWarmStart) {
+         if (stateN != null) {
+            LCPSolver.clearState (stateN);
+         }
+         if (stateD != null) {
+            LCPSolver.clearState (stateD);
+         }
+      }
+      else if (containsBasic (stateN, mySizeN) ||
+               containsBasic (stateD, mySizeD)) {
+         myTotalWarmStartCnt++;
+      }
+   }
+
+   private boolean containsBasic (VectorNi state, int size) {
+      if (state != null) {
+         int[] buf = state.getBuffer();
+         for (int i=0; i<Math.min(size,state.size()); i++) {
+            if (buf[i] == Z) {
+               return true;
+            }
+         }
+      }
+      return false;
+   }
+
+   /**
+    * Accumulates the pivoting statistics of the most recent solve.
+    */
+   private void updatePivotStatistics() {
+      myTotalLCPSolveCnt++;
+      myTotalIterationCnt += myIterationCnt;
+      myTotalPivotCnt += myPivotCnt;
+   }
+
    protected Status runPivotingLoop (
       VectorNd vel, VectorNd lam, VectorNd the, VectorNd phi) {
 
@@ -2931,9 +3058,10 @@ public class MurtyMechSolver {
 
       myTol = myDefaultTol;
 
-      mySavedMaxRefinementSteps = myPardiso.getMaxRefinementSteps();
-      myPardiso.setMaxRefinementSteps(0);
+      mySavedMaxRefinementSteps = getSolverMaxRefinementSteps();
+      setSolverMaxRefinementSteps(0);
 
+      prepareInitialState (stateN, stateD);
       updateAndSolveA (stateN, stateD);
       myNTActivityFrozen = ((flags & NT_INACTIVE) != 0);
       
@@ -2962,10 +3090,11 @@ public class MurtyMechSolver {
       else {
          extractMGSolution (vel, lam);
       }
-      myPardiso.setMaxRefinementSteps(mySavedMaxRefinementSteps);
+      setSolverMaxRefinementSteps(mySavedMaxRefinementSteps);
       myNTActivityFrozen = false;
       getStateN (stateN);
       getStateD (stateD);
+      updatePivotStatistics();
 
       if ((myDebug & SHOW_RETURNS) != 0) {
          System.out.println (status);
@@ -3016,11 +3145,12 @@ public class MurtyMechSolver {
 
       setFrictionLimits (flim);
 
-      mySavedMaxRefinementSteps = myPardiso.getMaxRefinementSteps();
-      myPardiso.setMaxRefinementSteps(0);
+      mySavedMaxRefinementSteps = getSolverMaxRefinementSteps();
+      setSolverMaxRefinementSteps(0);
       
       myTol = myDefaultTol;
 
+      prepareInitialState (stateN, stateD);
       updateAndSolveA (stateN, stateD);
       myNTActivityFrozen = ((flags & NT_INACTIVE) != 0);
 
@@ -3034,10 +3164,11 @@ public class MurtyMechSolver {
          extractMGSolution (vel, lam);      
       }
       
-      myPardiso.setMaxRefinementSteps(mySavedMaxRefinementSteps);
+      setSolverMaxRefinementSteps(mySavedMaxRefinementSteps);
       myNTActivityFrozen = false;
       getStateN (stateN);
       getStateD (stateD);
+      updatePivotStatistics();
       if ((myDebug & SHOW_RETURNS) != 0) {
          System.out.println (status);
       }
@@ -3138,6 +3269,7 @@ public class MurtyMechSolver {
          myMatrixSolver = null;
          myPardiso = null;
          myUmfpack = null;
+         mySupernodal = null;
       }
    }
 
@@ -3184,6 +3316,62 @@ public class MurtyMechSolver {
       return myTotalFactorCnt;
    }
 
+   /**
+    * Returns the total number of LCP solves (i.e., calls to {@code solve()}
+    * or {@code contactSolve()}) since the last call to {@link #resetTimers}.
+    *
+    * @return total number of LCP solves
+    */
+   public int getTotalLCPSolveCount() {
+      return myTotalLCPSolveCnt;
+   }
+
+   /**
+    * Returns the number of LCP solves since the last call to {@link
+    * #resetTimers} that were warm started, meaning that at least one N or D
+    * constraint was basic in the initial state.
+    *
+    * @return number of warm started LCP solves
+    */
+   public int getTotalWarmStartCount() {
+      return myTotalWarmStartCnt;
+   }
+
+   /**
+    * Returns the total number of pivots performed by all LCP solves since the
+    * last call to {@link #resetTimers}.
+    *
+    * @return total pivot count
+    */
+   public long getTotalPivotCount() {
+      return myTotalPivotCnt;
+   }
+
+   /**
+    * Returns the total number of pivoting iterations performed by all LCP
+    * solves since the last call to {@link #resetTimers}.
+    *
+    * @return total iteration count
+    */
+   public long getTotalIterationCount() {
+      return myTotalIterationCnt;
+   }
+
+   /**
+    * Returns the average number of pivots per LCP solve since the last call
+    * to {@link #resetTimers}.
+    *
+    * @return average pivots per solve
+    */
+   public double getAvgPivotCount() {
+      if (myTotalLCPSolveCnt == 0) {
+         return 0;
+      }
+      else {
+         return myTotalPivotCnt/(double)myTotalLCPSolveCnt;
+      }
+   }
+
    public void resetTimers() {
       mySolveTimer.reset();
       myTotalSolveCnt = 0;
@@ -3191,6 +3379,10 @@ public class MurtyMechSolver {
       myTotalFactorCnt = 0;
       myAnalyzeTimer.reset();
       myTotalAnalyzeCnt = 0;
+      myTotalLCPSolveCnt = 0;
+      myTotalWarmStartCnt = 0;
+      myTotalIterationCnt = 0;
+      myTotalPivotCnt = 0;
    }
 
    public VectorNi getStateA() {
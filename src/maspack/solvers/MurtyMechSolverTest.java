@@ -1902,13 +1902,30 @@ public class MurtyMechSolverTest extends UnitTest {
          stateNChk.set (stateN);
          stateDChk.set (stateD);
 
+         boolean hasBasic = false;
+         for (int i=0; i<sizeN; i++) {
+            hasBasic |= (stateNChk.get(i) == Z);
+         }
+         for (int i=0; i<sizeD; i++) {
+            hasBasic |= (stateDChk.get(i) == Z);
+         }
          for (int i=0; i<2; i++) {
             if (i == 0) {
                versionM++;
             }
+            int nsolves = murty.getTotalLCPSolveCount();
+            int nwarm = murty.getTotalWarmStartCount();
+            long npivsTotal = murty.getTotalPivotCount();
             murty.solve (
                vel, lam, the, phi, M, sizeM, bm, versionM,
                GT, Rg, bg, NT, Rn, bn, stateN, DT, Rd, bd, stateD, flim);
+            checkEquals (
+               "total LCP solves", murty.getTotalLCPSolveCount(), nsolves+1);
+            checkEquals (
+               "total warm starts", murty.getTotalWarmStartCount(),
+               hasBasic ? nwarm+1 : nwarm);
+            checkEquals (
+               "total pivots", murty.getTotalPivotCount(), npivsTotal);
             checkEquals (
                "A structure changed", murty.myAStructureChanged, i==0);
             int niters = murty.getIterationCount();
@@ -1936,6 +1953,23 @@ public class MurtyMechSolverTest extends UnitTest {
             }
          }
 
+         // check that a cold start gives the same solution
+         murty.setWarmStart (false);
+         int nwarm = murty.getTotalWarmStartCount();
+         murty.solve (
+            vel, lam, the, phi, M, sizeM, bm, versionM,
+            GT, Rg, bg, NT, Rn, bn, stateN, DT, Rd, bd, stateD, flim);
+         checkEquals (
+            "total warm starts", murty.getTotalWarmStartCount(), nwarm);
+         if (!stateN.equals (stateNChk)) {
+            throw new TestException ("state N changed after cold start");
+         }
+         if (!stateD.equals (stateDChk)) {
+            throw new TestException ("state D changed after cold start");
+         }
+         checkNormedEquals ("vel", vel, velChk, eps);
+         murty.setWarmStart (true);
+
          // check MGResolve with existing b values
          murty.resolveMG (vel, lam, bm, bg);
 
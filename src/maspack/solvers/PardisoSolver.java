@@ -380,6 +380,8 @@ public class PardisoSolver implements DirectSolver {
    private int myType;
 
    private Matrix myMatrix;
+   // maps the values of myMatrix into myVals, if it is a SparseBlockMatrix
+   private SparseBlockValueMap myValueMap;
 
    // timing information for decided when to use iterative vs. direct solves
    private double myLastIterativeTimeMsec;
@@ -601,6 +603,7 @@ public class PardisoSolver implements DirectSolver {
 
       myType = type;
       myMatrix = M;
+      myValueMap = null;
       if ((type & Matrix.SYMMETRIC) != 0) {
          if ((type & Matrix.POSITIVE_DEFINITE) != 0) {
             setSPDMatrix (myVals, myRowOffs, myColIdxs, size, numVals);
@@ -638,11 +641,31 @@ public class PardisoSolver implements DirectSolver {
          throw new ImproperStateException (
             "analyze(Matrix) or analyzeAndFactor(Matrix) not previously called");
       }
-      Partition part = getPartition (myType);
-      myMatrix.getCRSValues (myVals, part, mySize, mySize);
+      loadMatrixValues();
       factor (myVals);
    }
 
+   /**
+    * Loads the current values of the matrix supplied to {@link
+    * #analyze(Matrix,int,int) analyze(Matrix,int,int)} into myVals. For
+    * sparse block matrices, a value map is used so that the CRS offsets
+    * do not need to be recomputed for each factorization.
+    */
+   private void loadMatrixValues() {
+      Partition part = getPartition (myType);
+      if (myMatrix instanceof SparseBlockMatrix) {
+         SparseBlockMatrix S = (SparseBlockMatrix)myMatrix;
+         if (myValueMap == null || !myValueMap.isValid (S)) {
+            myValueMap = SparseBlockValueMap.createCRSMap (
+               S, myRowOffs, part, mySize, mySize);
+         }
+         myValueMap.getValues (myVals);
+      }
+      else {
+         myMatrix.getCRSValues (myVals, part, mySize, mySize);
+      }
+   }
+
    /**
     * Performs a numeric factorization of the most recently analyzed matrix
     * solver using the supplied numeric values.  After calling this method, the
@@ -1387,6 +1410,7 @@ public class PardisoSolver implements DirectSolver {
  
       myType = type;
       myMatrix = null;
+      myValueMap = null;
       if ((type & Matrix.SYMMETRIC) != 0) {
          if ((type & Matrix.POSITIVE_DEFINITE) != 0) {
             setSPDMatrix (vals, rowOffs, colIdxs, size, numVals);
@@ -1671,8 +1695,7 @@ public class PardisoSolver implements DirectSolver {
          throw new ImproperStateException (
             "analyze(Matrix) or analyzeAndFactor(Matrix) not previously called");
       }  
-      Partition part = getPartition (myType);
-      myMatrix.getCRSValues (myVals, part, mySize, mySize);
+      loadMatrixValues();
       return iterativeSolve (myVals, x, b, tolExp);
    }
 
@@ -0,0 +1,123 @@
+package maspack.solvers;
+
+import maspack.matrix.*;
+import maspack.util.Benchmark;
+
+/**
+ * Benchmarks for the dense and sparse linear solvers. Dense factorizations
+ * use random SPD matrices, while the sparse solvers use the banded block
+ * matrices created by {@link MatrixBenchmark#createBandedMatrix}. Pardiso
+ * benchmarks are included only if Pardiso is available. Run with
+ * <code>-help</code> for options.
+ */
+public class SolverBenchmark {
+
+   static MatrixNd createSPDMatrix (int n) {
+      MatrixNd R = new MatrixNd (n, n);
+      R.setRandom();
+      MatrixNd M = new MatrixNd (n, n);
+      M.mulTransposeLeft (R, R);
+      M.addDiagonal (n);
+      return M;
+   }
+
+   static void addDenseBenchmarks (Benchmark bench, int n) {
+      bench.add ("CholeskyDecomposition.factor/"+n, () -> {
+            MatrixNd M = createSPDMatrix (n);
+            CholeskyDecomposition chol = new CholeskyDecomposition (n);
+            return () -> chol.factor (M);
+         });
+      bench.add ("CholeskyDecomposition.solve/"+n, () -> {
+            CholeskyDecomposition chol =
+               new CholeskyDecomposition (createSPDMatrix (n));
+            VectorNd b = new VectorNd (n);
+            VectorNd x = new VectorNd (n);
+            b.setRandom();
+            return () -> chol.solve (x, b);
+         });
+      bench.add ("LDLTDecomposition.factor/"+n, () -> {
+            MatrixNd M = createSPDMatrix (n);
+            LDLTDecomposition ldlt = new LDLTDecomposition (n);
+            return () -> ldlt.factor (M);
+         });
+      bench.add ("LDLTDecomposition.solve/"+n, () -> {
+            LDLTDecomposition ldlt =
+               new LDLTDecomposition (createSPDMatrix (n));
+            VectorNd b = new VectorNd (n);
+            VectorNd x = new VectorNd (n);
+            b.setRandom();
+            return () -> ldlt.solve (x, b);
+         });
+   }
+
+   static void addSparseBenchmarks (Benchmark bench, int nblks) {
+      if (PardisoSolver.isAvailable()) {
+         bench.add ("PardisoSolver.factor/"+nblks, () -> {
+               SparseBlockMatrix S =
+                  MatrixBenchmark.createBandedMatrix (nblks, 10, 0.5);
+               PardisoSolver pardiso = new PardisoSolver();
+               pardiso.analyze (S, S.rowSize(), Matrix.SPD);
+               return () -> pardiso.factor();
+            });
+         bench.add ("PardisoSolver.solve/"+nblks, () -> {
+               SparseBlockMatrix S =
+                  MatrixBenchmark.createBandedMatrix (nblks, 10, 0.5);
+               PardisoSolver pardiso = new PardisoSolver();
+               pardiso.analyzeAndFactor (S);
+               VectorNd b = new VectorNd (S.rowSize());
+               VectorNd x = new VectorNd (S.rowSize());
+               b.setRandom();
+               return () -> pardiso.solve (x, b);
+            });
+      }
+      bench.add ("SupernodalLDLTSolver.factor/"+nblks, () -> {
+            SparseBlockMatrix S =
+               MatrixBenchmark.createBandedMatrix (nblks, 10, 0.5);
+            SupernodalLDLTSolver solver = new SupernodalLDLTSolver();
+            solver.analyze (S, S.rowSize(), Matrix.SPD);
+            return () -> solver.factor();
+         });
+      bench.add ("SupernodalLDLTSolver.solve/"+nblks, () -> {
+            SparseBlockMatrix S =
+               MatrixBenchmark.createBandedMatrix (nblks, 10, 0.5);
+            SupernodalLDLTSolver solver = new SupernodalLDLTSolver();
+            solver.analyzeAndFactor (S);
+            VectorNd b = new VectorNd (S.rowSize());
+            VectorNd x = new VectorNd (S.rowSize());
+            b.setRandom();
+            return () -> solver.solve (x, b);
+         });
+      bench.add ("CGSolver.solve/"+nblks, () -> {
+            SparseBlockMatrix S =
+               MatrixBenchmark.createBandedMatrix (nblks, 10, 0.5);
+            CGSolver cg = new CGSolver();
+            VectorNd b = new VectorNd (S.rowSize());
+            VectorNd x = new VectorNd (S.rowSize());
+            b.setRandom();
+            return () -> {
+               x.setZero();
+               cg.solve (x, S, b, 1e-8, 10*S.rowSize());
+            };
+         });
+   }
+
+   /**
+    * Adds the benchmarks of this suite to a benchmark harness.
+    *
+    * @param bench harness to add the benchmarks to
+    */
+   public static void addBenchmarks (Benchmark bench) {
+      for (int n : new int[] { 100, 400 }) {
+         addDenseBenchmarks (bench, n);
+      }
+      for (int nblks : new int[] { 1000, 10000 }) {
+         addSparseBenchmarks (bench, nblks);
+      }
+   }
+
+   public static void main (String[] args) {
+      Benchmark bench = new Benchmark();
+      addBenchmarks (bench);
+      System.exit (bench.runAndReport ("maspack.solvers.SolverBenchmark", args));
+   }
+}
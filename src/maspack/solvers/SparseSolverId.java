@@ -16,6 +16,11 @@ public enum SparseSolverId {
     */
    Umfpack (true, Matrix.INDEFINITE),
 
+   /**
+    * Pure Java supernodal LDL^T solver, for symmetric matrices only
+    */
+   SupernodalLDLT (true, Matrix.SYMMETRIC),
+
    /**
     * Conjugate gradient
     */
@@ -81,6 +86,9 @@ public enum SparseSolverId {
          case Umfpack: {
             return new UmfpackSolver();
          }
+         case SupernodalLDLT: {
+            return new SupernodalLDLTSolver();
+         }
          default: {
             return null;
          }
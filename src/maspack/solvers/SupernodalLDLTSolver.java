@@ -0,0 +1,1751 @@
+package maspack.solvers;
+
+import java.util.Arrays;
+
+import maspack.concurrency.ParallelLoop;
+import maspack.matrix.ImproperStateException;
+import maspack.matrix.Matrix;
+import maspack.matrix.Matrix.Partition;
+import maspack.matrix.NumericalException;
+import maspack.matrix.SparseBlockMatrix;
+import maspack.matrix.SparseBlockValueMap;
+import maspack.matrix.VectorNd;
+
+/**
+ * Pure Java sparse direct solver for symmetric matrices, based on a
+ * supernodal LDL^T factorization. It provides an alternative to {@link
+ * PardisoSolver} and {@link UmfpackSolver} which does not require native
+ * libraries.
+ *
+ * <p>The solver works in three phases, in the same way as {@link
+ * PardisoSolver}:
+ *
+ * <ul>
+ * <li><i>Analysis</i>, which computes a fill-reducing ordering using {@link
+ * AMDOrdering}, the elimination tree, and the supernodal structure of the
+ * factor. If the matrix structure is the same as that of the previous
+ * analysis, the existing analysis is reused.
+ * <li><i>Factorization</i>, which computes L and D using a left-looking
+ * supernodal algorithm. If more than one thread is requested, independent
+ * subtrees of the supernodal elimination tree are factored concurrently, and
+ * large supernodes near the root are factored by dividing their rows among
+ * the threads. The arithmetic performed for each entry does not depend on
+ * the number of threads, so that results are identical regardless of the
+ * thread count.
+ * <li><i>Solution</i>, using forward and backward substitution.
+ * </ul>
+ *
+ * <p>No dynamic pivoting is performed. Instead, as with Pardiso's default
+ * setting for symmetric indefinite matrices, pivots whose magnitude is less
+ * than a small fraction of the largest matrix entry are perturbed, and the
+ * solution is then improved using iterative refinement. To avoid zero pivots
+ * in KKT systems, variables whose diagonal entry is zero (or negligible) at
+ * the time of analysis are not eliminated until at least one of their
+ * neighbors has been.
+ *
+ * <p>Matrices are supplied in the same one-based compressed row storage (CRS)
+ * format used by {@link PardisoSolver}, describing only the upper triangular
+ * part of the matrix. Only symmetric matrix types are supported.
+ */
+public class SupernodalLDLTSolver implements DirectSolver {
+
+   /**
+    * Indicates that no matrix is currently set for this solver.
+    */
+   public static final int UNSET = 0;
+
+   /**
+    * Indicates that a matrix has been set and analyzed for this solver.
+    */
+   public static final int ANALYZED = 1;
+
+   /**
+    * Indicates that a matrix has been set, analyzed, and numerically factored
+    * for this solver.
+    */
+   public static final int FACTORED = 2;
+
+   public static double DEFAULT_PIVOT_PERTURBATION = 1e-8;
+   public static int DEFAULT_MAX_REFINEMENT_STEPS = 3;
+
+   // minimum estimated flop count for which factorization is multithreaded
+   static double minParallelFlops = 2e6;
+   // minimum estimated flop count for a single supernode to be factored
+   // by dividing its rows among threads
+   static double minParallelSupernodeFlops = 2e5;
+
+   // number of columns processed together by the dense kernels
+   static final int BLOCK_SIZE = 64;
+   // number of right-hand sides substituted together in multi-rhs solves
+   static final int RHS_BLOCK_SIZE = 16;
+
+   static int myDefaultNumThreads = -1;
+
+   private int myState = UNSET;
+   private int mySize;
+   private int myNumVals;
+   private int myType;
+   private Matrix myMatrix;
+   // maps the values of myMatrix into the CRS value array, if it is a
+   // SparseBlockMatrix
+   private SparseBlockValueMap myValueMap;
+
+   // matrix structure and values, in one-based CRS format
+   private int[] myRowOffs = new int[0];
+   private int[] myColIdxs = new int[0];
+   private boolean[] myDelayed;
+   private double[] myVals;
+
+   private Symbolic mySymbolic;
+   private boolean mySymbolicReused;
+   private int myNumAnalyses;
+   private int myNumSymbolicReuses;
+
+   private double[] myLx;
+   private double[] myD;
+   private int myNumPerturbedPivots;
+   private int myNumNegEigenvalues;
+   private int myNumRefinementSteps;
+   private double myPivotPerturbation = DEFAULT_PIVOT_PERTURBATION;
+   private int myMaxRefinementSteps = DEFAULT_MAX_REFINEMENT_STEPS;
+
+   private int myNumThreads;
+   private ParallelLoop myLoop;
+   private Workspace[] myWorkspaces;
+
+   /**
+    * Symbolic analysis of a sparse symmetric matrix, giving the fill-reducing
+    * permutation and the structure of the supernodal factor. Once created, a
+    * symbolic analysis is not modified and so it may be shared between
+    * solvers.
+    */
+   public static class Symbolic {
+
+      int mySize;
+      int myNumVals;
+      int[] myPerm;        // perm[k] = original index of the k-th pivot
+      int[] myInvPerm;
+
+      int myNumSupernodes;
+      int[] mySnodeCols;   // first column of each supernode
+      int[] mySnodeOf;     // supernode containing each column
+      int[] mySnodeRowOffs;// location of each supernode's rows in mySnodeRows
+      int[] mySnodeRows;   // row indices of each supernode, in ascending order
+      int[] myLxOffs;      // location of each supernode's panel in Lx
+      int[] myParent;      // parent of each supernode, or -1
+
+      // for each supernode s, the supernodes d that update it, along with
+      // the location of the first row of d that lies within s
+      int[] myUpdOffs;
+      int[] myUpdSnodes;
+      int[] myUpdRows;
+
+      // supernodes grouped by their height in the supernodal elimination
+      // tree; supernodes in the same level are independent
+      int[] myLevelOffs;
+      int[] myLevelSnodes;
+
+      int[] myValMap;      // location in Lx of each input CRS value
+      int myMaxCols;
+      double myFlops;
+
+      /**
+       * Performs a symbolic analysis of the symmetric matrix whose upper
+       * triangular structure is given in one-based CRS format. Entries below
+       * the diagonal are ignored.
+       *
+       * @param n size of the matrix
+       * @param rowOffs CRS row offsets
+       * @param colIdxs CRS column indices
+       * @param delayed if non-{@code null}, identifies variables that should
+       * not be eliminated before at least one of their neighbors
+       */
+      public Symbolic (
+         int n, int[] rowOffs, int[] colIdxs, boolean[] delayed) {
+
+         mySize = n;
+         myNumVals = rowOffs[n]-1;
+         AMDOrdering amd = new AMDOrdering();
+         int[] perm = amd.computeOrdering (n, rowOffs, colIdxs, 1, delayed);
+
+         // compute the elimination tree and reorder it in postorder, so that
+         // columns within each supernode will be contiguous
+         int[] iperm = invert (perm);
+         int[][] upper = buildUpperStructure (n, rowOffs, colIdxs, iperm);
+         int[] parent = computeEliminationTree (n, upper[0], upper[1]);
+         int[] post = postorder (n, parent);
+         int[] pperm = new int[n];
+         for (int k=0; k<n; k++) {
+            pperm[k] = perm[post[k]];
+         }
+         myPerm = pperm;
+         myInvPerm = invert (pperm);
+         upper = buildUpperStructure (n, rowOffs, colIdxs, myInvPerm);
+         int[] colPtr = upper[0];
+         int[] rowIdx = upper[1];
+         parent = computeEliminationTree (n, colPtr, rowIdx);
+
+         int[] counts = computeColumnCounts (n, colPtr, rowIdx, parent);
+         int[] structCols = findSupernodes (n, parent, counts);
+         findSupernodeRows (n, colPtr, rowIdx, parent, structCols);
+         computeValueMap (n, rowOffs, colIdxs);
+         computeUpdateLists();
+         computeLevels();
+      }
+
+      private static int[] invert (int[] perm) {
+         int[] iperm = new int[perm.length];
+         for (int k=0; k<perm.length; k++) {
+            iperm[perm[k]] = k;
+         }
+         return iperm;
+      }
+
+      /**
+       * Builds the column structure of the strictly upper triangular part of
+       * the permuted matrix. Returns the column pointers and row indices.
+       */
+      private static int[][] buildUpperStructure (
+         int n, int[] rowOffs, int[] colIdxs, int[] iperm) {
+
+         int[] colPtr = new int[n+1];
+         for (int i=0; i<n; i++) {
+            for (int k=rowOffs[i]-1; k<rowOffs[i+1]-1; k++) {
+               int j = colIdxs[k]-1;
+               if (j > i) {
+                  colPtr[Math.max (iperm[i], iperm[j])+1]++;
+               }
+            }
+         }
+         for (int j=0; j<n; j++) {
+            colPtr[j+1] += colPtr[j];
+         }
+         int[] rowIdx = new int[colPtr[n]];
+         int[] next = Arrays.copyOf (colPtr, n);
+         for (int i=0; i<n; i++) {
+            for (int k=rowOffs[i]-1; k<rowOffs[i+1]-1; k++) {
+               int j = colIdxs[k]-1;
+               if (j > i) {
+                  int pi = iperm[i];
+                  int pj = iperm[j];
+                  if (pi < pj) {
+                     rowIdx[next[pj]++] = pi;
+                  }
+                  else {
+                     rowIdx[next[pi]++] = pj;
+                  }
+               }
+            }
+         }
+         return new int[][] { colPtr, rowIdx };
+      }
+
+      private static int[] computeEliminationTree (
+         int n, int[] colPtr, int[] rowIdx) {
+
+         int[] parent = new int[n];
+         int[] ancestor = new int[n];
+         for (int k=0; k<n; k++) {
+            parent[k] = -1;
+            ancestor[k] = -1;
+            for (int p=colPtr[k]; p<colPtr[k+1]; p++) {
+               int i = rowIdx[p];
+               // traverse from i to the root of its subtree, with path
+               // compression
+               while (i != -1 && i < k) {
+                  int inext = ancestor[i];
+                  ancestor[i] = k;
+                  if (inext == -1) {
+                     parent[i] = k;
+                  }
+                  i = inext;
+               }
+            }
+         }
+         return parent;
+      }
+
+      private static int[] postorder (int n, int[] parent) {
+         // build child lists with children in ascending order
+         int[] head = new int[n];
+         int[] next = new int[n];
+         Arrays.fill (head, -1);
+         for (int j=n-1; j>=0; j--) {
+            if (parent[j] != -1) {
+               next[j] = head[parent[j]];
+               head[parent[j]] = j;
+            }
+         }
+         int[] post = new int[n];
+         int[] stack = new int[n];
+         int k = 0;
+         for (int j=0; j<n; j++) {
+            if (parent[j] != -1) {
+               continue;
+            }
+            int top = 0;
+            stack[0] = j;
+            while (top >= 0) {
+               int p = stack[top];
+               int c = head[p];
+               if (c == -1) {
+                  top--;
+                  post[k++] = p;
+               }
+               else {
+                  head[p] = next[c];
+                  stack[++top] = c;
+               }
+            }
+         }
+         return post;
+      }
+
+      /**
+       * Computes the number of non-zeros in each column of L, including the
+       * diagonal, by traversing the row subtrees of the elimination tree.
+       */
+      private static int[] computeColumnCounts (
+         int n, int[] colPtr, int[] rowIdx, int[] parent) {
+
+         int[] counts = new int[n];
+         int[] mark = new int[n];
+         Arrays.fill (mark, -1);
+         for (int i=0; i<n; i++) {
+            counts[i]++;
+            mark[i] = i;
+            for (int p=colPtr[i]; p<colPtr[i+1]; p++) {
+               for (int j=rowIdx[p]; mark[j]!=i; j=parent[j]) {
+                  mark[j] = i;
+                  counts[j]++;
+               }
+            }
+         }
+         return counts;
+      }
+
+      /**
+       * Finds the supernodes, given the elimination tree and column counts.
+       * Fundamental supernodes are found first, and then a supernode is
+       * merged with its parent when the parent immediately follows it and
+       * the number of explicit zeros that would be introduced is small.
+       * Returns, for each supernode, the first column of the last fundamental
+       * supernode that it contains, whose structure determines the rows.
+       */
+      private int[] findSupernodes (int n, int[] parent, int[] counts) {
+         int[] fcols = new int[n+1];
+         int nf = 0;
+         for (int j=0; j<n; j++) {
+            if (j == 0 ||
+                parent[j-1] != j || counts[j-1] != counts[j]+1) {
+               fcols[nf++] = j;
+            }
+         }
+         fcols[nf] = n;
+         int[] cols = new int[nf+1];
+         int[] structCols = new int[nf];
+         int ns = 0;
+         long gnz = 0; // number of structural non-zeros in current supernode
+         for (int f=0; f<nf; f++) {
+            int c0 = fcols[f];
+            int c1 = fcols[f+1];
+            long fnz = 0;
+            for (int j=c0; j<c1; j++) {
+               fnz += counts[j];
+            }
+            if (ns > 0 && parent[c0-1] >= c0 && parent[c0-1] < c1 &&
+                relaxedMergeOK (c1-cols[ns-1], c0-cols[ns-1]+counts[c0],
+                                gnz+fnz)) {
+               structCols[ns-1] = c0;
+               gnz += fnz;
+            }
+            else {
+               cols[ns] = c0;
+               structCols[ns] = c0;
+               ns++;
+               gnz = fnz;
+            }
+         }
+         cols[ns] = n;
+         myNumSupernodes = ns;
+         mySnodeCols = Arrays.copyOf (cols, ns+1);
+         mySnodeOf = new int[n];
+         myParent = new int[ns];
+         myMaxCols = 0;
+         for (int s=0; s<ns; s++) {
+            for (int j=mySnodeCols[s]; j<mySnodeCols[s+1]; j++) {
+               mySnodeOf[j] = s;
+            }
+            myMaxCols = Math.max (myMaxCols, mySnodeCols[s+1]-mySnodeCols[s]);
+         }
+         for (int s=0; s<ns; s++) {
+            int p = parent[mySnodeCols[s+1]-1];
+            myParent[s] = (p == -1 ? -1 : mySnodeOf[p]);
+         }
+         mySnodeRowOffs = new int[ns+1];
+         myLxOffs = new int[ns+1];
+         long lxsize = 0;
+         myFlops = 0;
+         for (int s=0; s<ns; s++) {
+            int nrows = structCols[s]-mySnodeCols[s] + counts[structCols[s]];
+            int ncols = mySnodeCols[s+1]-mySnodeCols[s];
+            mySnodeRowOffs[s+1] = mySnodeRowOffs[s] + nrows;
+            lxsize += (long)nrows*ncols;
+            if (lxsize > Integer.MAX_VALUE) {
+               throw new NumericalException (
+                  "Factor size exceeds maximum array size");
+            }
+            myLxOffs[s+1] = (int)lxsize;
+            myFlops += (double)nrows*nrows*ncols;
+         }
+         return Arrays.copyOf (structCols, ns);
+      }
+
+      /**
+       * Decides whether a merged supernode with a given number of columns,
+       * rows and structural non-zeros should be accepted. The thresholds
+       * are the defaults used by CHOLMOD.
+       */
+      private static boolean relaxedMergeOK (int ncols, int nrows, long nnz) {
+         long total = (long)ncols*nrows - (long)ncols*(ncols-1)/2;
+         double zeroFrac = (total-nnz)/(double)total;
+         if (ncols <= 4) {
+            return true;
+         }
+         else if (ncols <= 16) {
+            return zeroFrac < 0.8;
+         }
+         else if (ncols <= 48) {
+            return zeroFrac < 0.1;
+         }
+         else {
+            return zeroFrac < 0.05;
+         }
+      }
+
+      private void findSupernodeRows (
+         int n, int[] colPtr, int[] rowIdx, int[] parent, int[] structCols) {
+
+         int[] rows = new int[mySnodeRowOffs[myNumSupernodes]];
+         int[] next = new int[myNumSupernodes];
+         for (int s=0; s<myNumSupernodes; s++) {
+            next[s] = mySnodeRowOffs[s];
+            for (int j=mySnodeCols[s]; j<=structCols[s]; j++) {
+               rows[next[s]++] = j;
+            }
+         }
+         // add the rows of each structure column, found by traversing the
+         // row subtrees
+         int[] mark = new int[n];
+         Arrays.fill (mark, -1);
+         for (int i=0; i<n; i++) {
+            mark[i] = i;
+            for (int p=colPtr[i]; p<colPtr[i+1]; p++) {
+               for (int j=rowIdx[p]; mark[j]!=i; j=parent[j]) {
+                  mark[j] = i;
+                  int s = mySnodeOf[j];
+                  if (structCols[s] == j) {
+                     rows[next[s]++] = i;
+                  }
+               }
+            }
+         }
+         mySnodeRows = rows;
+      }
+
+      private void computeValueMap (int n, int[] rowOffs, int[] colIdxs) {
+         myValMap = new int[myNumVals];
+         // each value (i,j) maps to row max(i,j) and column min(i,j) of the
+         // supernode containing min(i,j), after permutation
+         for (int i=0; i<n; i++) {
+            for (int k=rowOffs[i]-1; k<rowOffs[i+1]-1; k++) {
+               int j = colIdxs[k]-1;
+               if (j < i) {
+                  myValMap[k] = -1;
+                  continue;
+               }
+               int pi = myInvPerm[i];
+               int pj = myInvPerm[j];
+               int lo = Math.min (pi, pj);
+               int hi = Math.max (pi, pj);
+               int s = mySnodeOf[lo];
+               int f = mySnodeCols[s];
+               int nc = mySnodeCols[s+1]-f;
+               int r = findRow (s, hi);
+               myValMap[k] = myLxOffs[s] + r*nc + (lo-f);
+            }
+         }
+      }
+
+      int findRow (int s, int row) {
+         int r = Arrays.binarySearch (
+            mySnodeRows, mySnodeRowOffs[s], mySnodeRowOffs[s+1], row);
+         if (r < 0) {
+            throw new InternalError (
+               "row "+row+" not found in supernode "+s);
+         }
+         return r-mySnodeRowOffs[s];
+      }
+
+      private void computeUpdateLists() {
+         int ns = myNumSupernodes;
+         int[] cnt = new int[ns+1];
+         for (int d=0; d<ns; d++) {
+            int last = -1;
+            int nc = mySnodeCols[d+1]-mySnodeCols[d];
+            for (int p=mySnodeRowOffs[d]+nc; p<mySnodeRowOffs[d+1]; p++) {
+               int t = mySnodeOf[mySnodeRows[p]];
+               if (t != last) {
+                  cnt[t+1]++;
+                  last = t;
+               }
+            }
+         }
+         for (int s=0; s<ns; s++) {
+            cnt[s+1] += cnt[s];
+         }
+         myUpdOffs = cnt;
+         myUpdSnodes = new int[cnt[ns]];
+         myUpdRows = new int[cnt[ns]];
+         int[] next = Arrays.copyOf (cnt, ns);
+         for (int d=0; d<ns; d++) {
+            int last = -1;
+            int nc = mySnodeCols[d+1]-mySnodeCols[d];
+            for (int p=mySnodeRowOffs[d]+nc; p<mySnodeRowOffs[d+1]; p++) {
+               int t = mySnodeOf[mySnodeRows[p]];
+               if (t != last) {
+                  myUpdSnodes[next[t]] = d;
+                  myUpdRows[next[t]] = p-mySnodeRowOffs[d];
+                  next[t]++;
+                  last = t;
+               }
+            }
+         }
+      }
+
+      private void computeLevels() {
+         int ns = myNumSupernodes;
+         int[] level = new int[ns];
+         int nlevels = 0;
+         // children precede their parents, so levels can be computed in
+         // a single pass
+         for (int s=0; s<ns; s++) {
+            int p = myParent[s];
+            if (p != -1) {
+               level[p] = Math.max (level[p], level[s]+1);
+            }
+            nlevels = Math.max (nlevels, level[s]+1);
+         }
+         myLevelOffs = new int[nlevels+1];
+         for (int s=0; s<ns; s++) {
+            myLevelOffs[level[s]+1]++;
+         }
+         for (int l=0; l<nlevels; l++) {
+            myLevelOffs[l+1] += myLevelOffs[l];
+         }
+         myLevelSnodes = new int[ns];
+         int[] next = Arrays.copyOf (myLevelOffs, nlevels);
+         for (int s=0; s<ns; s++) {
+            myLevelSnodes[next[level[s]]++] = s;
+         }
+      }
+
+      /**
+       * Returns the size of the analyzed matrix.
+       *
+       * @return matrix size
+       */
+      public int getSize() {
+         return mySize;
+      }
+
+      /**
+       * Returns the number of supernodes in the factor.
+       *
+       * @return number of supernodes
+       */
+      public int numSupernodes() {
+         return myNumSupernodes;
+      }
+
+      /**
+       * Returns the number of non-zero entries in the factor L, including the
+       * diagonal.
+       *
+       * @return number of non-zeros in L
+       */
+      public long getNumNonZerosInFactor() {
+         long nnz = 0;
+         for (int s=0; s<myNumSupernodes; s++) {
+            long nc = mySnodeCols[s+1]-mySnodeCols[s];
+            long nr = mySnodeRowOffs[s+1]-mySnodeRowOffs[s];
+            nnz += nr*nc - nc*(nc-1)/2;
+         }
+         return nnz;
+      }
+
+      /**
+       * Returns the fill-reducing permutation, such that entry {@code k}
+       * gives the index of the {@code k}-th variable to be eliminated.
+       *
+       * @return fill-reducing permutation
+       */
+      public int[] getPermutation() {
+         return Arrays.copyOf (myPerm, mySize);
+      }
+   }
+
+   /**
+    * Per-thread storage used during numeric factorization.
+    */
+   private static class Workspace {
+      int[] myRel;             // row location within the current supernode
+      double[] myWD;           // products of L and D for a block of rows
+      int myNumPerturbed;
+      int myNumNegative;
+
+      Workspace (int n, int wdsize) {
+         myRel = new int[n];
+         myWD = new double[wdsize];
+      }
+   }
+
+   /**
+    * Creates a new SupernodalLDLTSolver.
+    */
+   public SupernodalLDLTSolver() {
+      myNumThreads = myDefaultNumThreads;
+   }
+
+   /**
+    * Sets the default number of threads that are assigned to a
+    * <code>SupernodalLDLTSolver</code> when it is created. Setting
+    * <code>num</code> to a value {@code <=} 0 will cause the solver to use
+    * the number of available processors.
+    *
+    * @param num default number of threads to use
+    * @see #getDefaultNumThreads
+    */
+   public static void setDefaultNumThreads (int num) {
+      myDefaultNumThreads = num;
+   }
+
+   /**
+    * Returns the default number of threads that are assigned to a
+    * <code>SupernodalLDLTSolver</code> when it is created.
+    *
+    * @return default number of threads
+    * @see #setDefaultNumThreads
+    */
+   public static int getDefaultNumThreads () {
+      return myDefaultNumThreads;
+   }
+
+   /**
+    * Sets the number of threads used for numeric factorization. Setting
+    * <code>num</code> to a value {@code <=} 0 will cause the solver to use
+    * the number of available processors.
+    *
+    * @param num number of threads to use
+    * @see #getNumThreads
+    */
+   public synchronized void setNumThreads (int num) {
+      myNumThreads = num;
+      if (myLoop != null) {
+         myLoop.dispose();
+         myLoop = null;
+         myWorkspaces = null;
+      }
+   }
+
+   /**
+    * Returns the number of threads used for numeric factorization.
+    *
+    * @return number of threads to use
+    * @see #setNumThreads
+    */
+   public synchronized int getNumThreads () {
+      if (myNumThreads <= 0) {
+         return ParallelLoop.numAvailableProcessors();
+      }
+      else {
+         return myNumThreads;
+      }
+   }
+
+   /**
+    * Sets the threshold for perturbing small pivots, relative to the
+    * largest absolute value of the matrix entries. The default value
+    * is given by {@link #DEFAULT_PIVOT_PERTURBATION}.
+    *
+    * @param eps relative pivot perturbation threshold
+    * @see #getPivotPerturbation
+    */
+   public synchronized void setPivotPerturbation (double eps) {
+      myPivotPerturbation = eps;
+   }
+
+   /**
+    * Returns the threshold for perturbing small pivots.
+    *
+    * @return relative pivot perturbation threshold
+    * @see #setPivotPerturbation
+    */
+   public synchronized double getPivotPerturbation () {
+      return myPivotPerturbation;
+   }
+
+   /**
+    * Sets the maximum number of iterative refinement steps performed by
+    * a solve when the factorization contains perturbed pivots. Setting this
+    * to 0 disables iterative refinement.
+    *
+    * @param nsteps maximum number of iterative refinement steps
+    * @see #getMaxRefinementSteps
+    */
+   public synchronized void setMaxRefinementSteps (int nsteps) {
+      myMaxRefinementSteps = nsteps;
+   }
+
+   /**
+    * Returns the maximum number of iterative refinement steps.
+    *
+    * @return maximum number of iterative refinement steps
+    * @see #setMaxRefinementSteps
+    */
+   public synchronized int getMaxRefinementSteps () {
+      return myMaxRefinementSteps;
+   }
+
+   /**
+    * Returns the number of iterative refinement steps performed by the most
+    * recent solve.
+    *
+    * @return number of iterative refinement steps
+    */
+   public synchronized int getNumRefinementSteps () {
+      return myNumRefinementSteps;
+   }
+
+   /**
+    * Returns the number of pivots that were perturbed during the most recent
+    * factorization.
+    *
+    * @return number of perturbed pivots
+    */
+   public synchronized int getNumPerturbedPivots () {
+      return myNumPerturbedPivots;
+   }
+
+   /**
+    * Returns the number of negative eigenvalues found during the most recent
+    * factorization, which is the number of negative entries in D.
+    *
+    * @return number of negative eigenvalues
+    */
+   public synchronized int getNumNegEigenvalues () {
+      return myNumNegEigenvalues;
+   }
+
+   /**
+    * Returns the number of positive eigenvalues found during the most recent
+    * factorization, which is the number of positive entries in D.
+    *
+    * @return number of positive eigenvalues
+    */
+   public synchronized int getNumPosEigenvalues () {
+      return myState == FACTORED ? mySize-myNumNegEigenvalues : 0;
+   }
+
+   /**
+    * Returns the number of non-zero entries in the factor L, or -1 if no
+    * matrix has been analyzed.
+    *
+    * @return number of non-zeros in the factor
+    */
+   public synchronized int getNumNonZerosInFactors () {
+      if (mySymbolic == null) {
+         return -1;
+      }
+      return (int)Math.min (
+         mySymbolic.getNumNonZerosInFactor(), Integer.MAX_VALUE);
+   }
+
+   /**
+    * Returns the symbolic analysis for the currently analyzed matrix, or
+    * {@code null} if there is none.
+    *
+    * @return current symbolic analysis
+    */
+   public synchronized Symbolic getSymbolic() {
+      return mySymbolic;
+   }
+
+   /**
+    * Queries whether the most recent analysis reused the previous symbolic
+    * analysis because the matrix structure was unchanged.
+    *
+    * @return {@code true} if the previous analysis was reused
+    */
+   public synchronized boolean symbolicWasReused() {
+      return mySymbolicReused;
+   }
+
+   /**
+    * Returns the number of times {@code analyze} has been called since this
+    * solver was created.
+    *
+    * @return number of analyze calls
+    */
+   public synchronized int numAnalyses() {
+      return myNumAnalyses;
+   }
+
+   /**
+    * Returns the number of times {@code analyze} was able to reuse the
+    * existing symbolic analysis.
+    *
+    * @return number of symbolic analysis reuses
+    */
+   public synchronized int numSymbolicReuses() {
+      return myNumSymbolicReuses;
+   }
+
+   /**
+    * Returns the current state for this solver. Possible states are
+    * {@link #UNSET UNSET}, {@link #ANALYZED ANALYZED}, and
+    * {@link #FACTORED FACTORED}.
+    *
+    * @return state for this solver.
+    */
+   public int getState() {
+      return myState;
+   }
+
+   private void checkType (int type) {
+      if ((type & Matrix.SYMMETRIC) == 0) {
+         throw new IllegalArgumentException (
+            "SupernodalLDLTSolver only supports symmetric matrices");
+      }
+   }
+
+   /**
+    * Sets the matrix associated with this solver and performs symbolic
+    * analysis on it. The matrix is assumed to be square and symmetric,
+    * and only its upper triangular part is used. If <code>size</code> is less
+    * than the actual matrix size, then the analysis is done on the principal
+    * submatrix of M defined by the first <code>size</code> rows and columns.
+    *
+    * @param M supples the matrix to be analyzed
+    * @param size size of the matrix to be analyzed
+    * @param type type of the matrix to be analyzed, which must include
+    * {@link Matrix#SYMMETRIC SYMMETRIC}
+    * @throws IllegalArgumentException if the matrix is not square, if
+    * <code>size</code> is out of bounds, or if the type is not symmetric
+    */
+   public synchronized void analyze (Matrix M, int size, int type) {
+      if (M.rowSize() != M.colSize()) {
+         throw new IllegalArgumentException ("Matrix is not square");
+      }
+      if (size < 0 || size > M.rowSize()) {
+         throw new IllegalArgumentException (
+            "Requested size " + size + " is out of bounds");
+      }
+      checkType (type);
+      int numVals = M.numNonZeroVals (Partition.UpperTriangular, size, size);
+      int[] colIdxs = new int[numVals];
+      int[] rowOffs = new int[size+1];
+      double[] vals = new double[numVals];
+      M.getCRSIndices (colIdxs, rowOffs, Partition.UpperTriangular, size, size);
+      M.getCRSValues (vals, Partition.UpperTriangular, size, size);
+      analyze (vals, colIdxs, rowOffs, size, type);
+      myMatrix = M;
+      myValueMap = null;
+   }
+
+   /**
+    * Sets the matrix associated with this solver and performs symbolic
+    * analysis on it. The matrix is described in one-based compressed row
+    * storage (CRS) format, using only the upper triangular part. If the
+    * structure is the same as that of the previously analyzed matrix, the
+    * previous analysis is reused.
+    *
+    * <p>The values are not required for the analysis, but if present, they
+    * are used to identify rows whose diagonal entries are zero (such as the
+    * constraint rows of KKT systems) so that they are not eliminated too
+    * early.
+    *
+    * @param vals if non-{@code null}, supplies the non-zero values
+    * @param colIdxs CRS column indices
+    * @param rowOffs CRS row offsets
+    * @param size size of the matrix
+    * @param type type of the matrix, which must include {@link
+    * Matrix#SYMMETRIC SYMMETRIC}
+    * @throws IllegalArgumentException if the arguments are inconsistent or if
+    * the type is not symmetric
+    */
+   public synchronized void analyze (
+      double[] vals, int[] colIdxs, int[] rowOffs, int size, int type) {
+
+      checkType (type);
+      if (rowOffs.length < size+1) {
+         throw new IllegalArgumentException (
+            "rowOffs length " + rowOffs.length + " less than size+1");
+      }
+      int numVals = rowOffs[size]-1;
+      if (colIdxs.length < numVals) {
+         throw new IllegalArgumentException (
+            "colIdxs length " + colIdxs.length + " less than number of " +
+            "values " + numVals);
+      }
+      boolean[] delayed = findZeroDiagonals (vals, colIdxs, rowOffs, size);
+      myMatrix = null;
+      myValueMap = null;
+      myNumAnalyses++;
+      if (mySymbolic != null && size == mySize && numVals == myNumVals &&
+          Arrays.equals (delayed, myDelayed) &&
+          prefixEquals (rowOffs, myRowOffs, size+1) &&
+          prefixEquals (colIdxs, myColIdxs, numVals)) {
+         mySymbolicReused = true;
+         myNumSymbolicReuses++;
+      }
+      else {
+         Symbolic symb = new Symbolic (size, rowOffs, colIdxs, delayed);
+         setSymbolic (symb, colIdxs, rowOffs, delayed);
+         mySymbolicReused = false;
+      }
+      myType = type;
+      myState = ANALYZED;
+   }
+
+   /**
+    * Returns true if the first {@code len} entries of {@code a} and {@code b}
+    * are equal.
+    */
+   private static boolean prefixEquals (int[] a, int[] b, int len) {
+      if (a.length < len || b.length < len) {
+         return false;
+      }
+      for (int i=0; i<len; i++) {
+         if (a[i] != b[i]) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   private void setSymbolic (
+      Symbolic symb, int[] colIdxs, int[] rowOffs, boolean[] delayed) {
+      int size = symb.mySize;
+      int numVals = symb.myNumVals;
+      mySymbolic = symb;
+      mySize = size;
+      myNumVals = numVals;
+      myRowOffs = Arrays.copyOf (rowOffs, size+1);
+      myColIdxs = Arrays.copyOf (colIdxs, numVals);
+      myDelayed = delayed;
+      int lxsize = symb.myLxOffs[symb.myNumSupernodes];
+      if (myLx == null || myLx.length < lxsize) {
+         myLx = new double[lxsize];
+      }
+      if (myD == null || myD.length < size) {
+         myD = new double[size];
+      }
+   }
+
+   /**
+    * Identifies rows whose diagonal entry is missing, or whose magnitude is
+    * below the pivot perturbation threshold. Returns {@code null} if there
+    * are none.
+    */
+   private boolean[] findZeroDiagonals (
+      double[] vals, int[] colIdxs, int[] rowOffs, int size) {
+      int numVals = rowOffs[size]-1;
+      double tol = 0;
+      if (vals != null) {
+         double maxAbs = 0;
+         for (int k=0; k<numVals; k++) {
+            maxAbs = Math.max (maxAbs, Math.abs (vals[k]));
+         }
+         tol = myPivotPerturbation*maxAbs;
+      }
+      boolean[] zero = null;
+      for (int i=0; i<size; i++) {
+         boolean found = false;
+         for (int k=rowOffs[i]-1; k<rowOffs[i+1]-1; k++) {
+            if (colIdxs[k]-1 == i) {
+               found = (vals == null || Math.abs (vals[k]) > tol);
+               break;
+            }
+         }
+         if (!found) {
+            if (zero == null) {
+               zero = new boolean[size];
+            }
+            zero[i] = true;
+         }
+      }
+      return zero;
+   }
+
+   /**
+    * Performs a numeric factorization of the matrix supplied by a previous
+    * call to {@link #analyze(Matrix,int,int) analyze(Matrix,int,int)},
+    * using its current values.
+    *
+    * @throws ImproperStateException if not preceded by a call to
+    * {@link #analyze(Matrix,int,int) analyze(Matrix,int,int)} or
+    * {@link #analyzeAndFactor(Matrix) analyzeAndFactor(Matrix)}
+    * @throws NumericalException if the matrix cannot be factored for numeric
+    * reasons.
+    */
+   public synchronized void factor() {
+      if (myMatrix == null) {
+         throw new ImproperStateException (
+            "analyze(Matrix) or analyzeAndFactor(Matrix) not previously " +
+            "called");
+      }
+      double[] vals = (myVals != null && myVals.length >= myNumVals ?
+                       myVals : new double[myNumVals]);
+      if (myMatrix instanceof SparseBlockMatrix) {
+         SparseBlockMatrix S = (SparseBlockMatrix)myMatrix;
+         if (myValueMap == null || !myValueMap.isValid (S)) {
+            myValueMap = SparseBlockValueMap.createCRSMap (
+               S, myRowOffs, Partition.UpperTriangular, mySize, mySize);
+         }
+         myValueMap.getValues (vals);
+      }
+      else {
+         myMatrix.getCRSValues (
+            vals, Partition.UpperTriangular, mySize, mySize);
+      }
+      factor (vals);
+   }
+
+   /**
+    * Performs a numeric factorization of the most recently analyzed matrix
+    * using the supplied values, which should be arranged in the same CRS
+    * format used for the analysis. The values array is retained and used
+    * for iterative refinement, and so it should not be modified before
+    * subsequent solves.
+    *
+    * @param vals non-zero matrix element values
+    * @throws IllegalStateException if no matrix has been analyzed
+    * @throws IllegalArgumentException if the number of supplied values is less
+    * than the number of values in the analyzed matrix
+    * @throws NumericalException if the factorization produces non-finite
+    * values
+    */
+   public synchronized void factor (double[] vals) {
+      if (myState == UNSET) {
+         throw new IllegalStateException ("No matrix currently set");
+      }
+      if (vals.length < myNumVals) {
+         throw new IllegalArgumentException (
+            "Not enough values: vals.length=" + vals.length +
+            ", expected number is " + myNumVals);
+      }
+      Symbolic symb = mySymbolic;
+      double[] Lx = myLx;
+      int lxsize = symb.myLxOffs[symb.myNumSupernodes];
+      Arrays.fill (Lx, 0, lxsize, 0);
+      int[] valMap = symb.myValMap;
+      double maxAbs = 0;
+      for (int k=0; k<myNumVals; k++) {
+         double v = vals[k];
+         if (valMap[k] != -1) {
+            Lx[valMap[k]] += v;
+            double a = Math.abs (v);
+            if (a > maxAbs) {
+               maxAbs = a;
+            }
+         }
+      }
+      double eps = myPivotPerturbation*(maxAbs > 0 ? maxAbs : 1.0);
+
+      int nthreads = (symb.myFlops >= minParallelFlops ? getNumThreads() : 1);
+      Workspace[] wss = getWorkspaces (nthreads);
+      for (Workspace ws : wss) {
+         ws.myNumPerturbed = 0;
+         ws.myNumNegative = 0;
+      }
+      int nlevels = symb.myLevelOffs.length-1;
+      for (int l=0; l<nlevels; l++) {
+         int lo = symb.myLevelOffs[l];
+         int hi = symb.myLevelOffs[l+1];
+         if (nthreads > 1 && hi-lo > 1) {
+            myLoop.forEach (lo, hi, 1, (klo, khi, w) -> {
+               for (int k=klo; k<khi; k++) {
+                  factorSupernode (symb.myLevelSnodes[k], wss[w], eps);
+               }
+            });
+         }
+         else {
+            for (int k=lo; k<hi; k++) {
+               int s = symb.myLevelSnodes[k];
+               if (nthreads > 1 &&
+                   supernodeFlops (s) > minParallelSupernodeFlops) {
+                  factorSupernodeConcurrently (s, wss, eps);
+               }
+               else {
+                  factorSupernode (s, wss[0], eps);
+               }
+            }
+         }
+      }
+      myNumPerturbedPivots = 0;
+      myNumNegEigenvalues = 0;
+      for (Workspace ws : wss) {
+         myNumPerturbedPivots += ws.myNumPerturbed;
+         myNumNegEigenvalues += ws.myNumNegative;
+      }
+      for (int j=0; j<mySize; j++) {
+         if (!Double.isFinite (myD[j])) {
+            myState = ANALYZED;
+            throw new NumericalException (
+               "SupernodalLDLTSolver: non-finite pivot encountered");
+         }
+      }
+      myVals = vals;
+      myState = FACTORED;
+   }
+
+   private Workspace[] getWorkspaces (int nthreads) {
+      int wdsize = BLOCK_SIZE*mySymbolic.myMaxCols;
+      if (myWorkspaces == null || myWorkspaces.length < nthreads ||
+          myWorkspaces[0].myRel.length < mySize ||
+          myWorkspaces[0].myWD.length < wdsize) {
+         Workspace[] wss = new Workspace[nthreads];
+         for (int w=0; w<nthreads; w++) {
+            wss[w] = new Workspace (mySize, wdsize);
+         }
+         myWorkspaces = wss;
+      }
+      if (nthreads > 1) {
+         getLoop (nthreads);
+      }
+      return myWorkspaces;
+   }
+
+   private ParallelLoop getLoop (int nthreads) {
+      if (myLoop == null) {
+         myLoop = new ParallelLoop ("SupernodalLDLT", nthreads);
+      }
+      else {
+         myLoop.setNumThreads (nthreads);
+      }
+      return myLoop;
+   }
+
+   private double supernodeFlops (int s) {
+      Symbolic symb = mySymbolic;
+      double nc = symb.mySnodeCols[s+1]-symb.mySnodeCols[s];
+      double nr = symb.mySnodeRowOffs[s+1]-symb.mySnodeRowOffs[s];
+      return nr*nc*nc;
+   }
+
+   private void setRelativeRows (int s, int[] rel) {
+      Symbolic symb = mySymbolic;
+      int off = symb.mySnodeRowOffs[s];
+      for (int p=off; p<symb.mySnodeRowOffs[s+1]; p++) {
+         rel[symb.mySnodeRows[p]] = p-off;
+      }
+   }
+
+   private void factorSupernode (int s, Workspace ws, double eps) {
+      Symbolic symb = mySymbolic;
+      int nrows = symb.mySnodeRowOffs[s+1]-symb.mySnodeRowOffs[s];
+      int ncols = symb.mySnodeCols[s+1]-symb.mySnodeCols[s];
+      setRelativeRows (s, ws.myRel);
+      applyUpdates (s, ws, 0, nrows);
+      for (int j0=0; j0<ncols; j0+=BLOCK_SIZE) {
+         int j1 = Math.min (j0+BLOCK_SIZE, ncols);
+         factorDiagonalColumns (s, j0, j1, ws, eps);
+         solveColumns (s, j0, j1, j1, nrows, ws.myWD);
+      }
+   }
+
+   private void factorSupernodeConcurrently (
+      int s, Workspace[] wss, double eps) {
+      Symbolic symb = mySymbolic;
+      int nrows = symb.mySnodeRowOffs[s+1]-symb.mySnodeRowOffs[s];
+      int ncols = symb.mySnodeCols[s+1]-symb.mySnodeCols[s];
+      myLoop.forRange (0, nrows, (lo, hi, w) -> {
+         setRelativeRows (s, wss[w].myRel);
+         applyUpdates (s, wss[w], lo, hi);
+      });
+      for (int j0=0; j0<ncols; j0+=BLOCK_SIZE) {
+         final int jlo = j0;
+         final int jhi = Math.min (j0+BLOCK_SIZE, ncols);
+         factorDiagonalColumns (s, jlo, jhi, wss[0], eps);
+         final double[] WD = wss[0].myWD;
+         myLoop.forRange (jhi, nrows, (lo, hi, w) -> {
+            solveColumns (s, jlo, jhi, lo, hi, WD);
+         });
+      }
+   }
+
+   /**
+    * Applies the updates from all descendant supernodes to rows [rlo, rhi)
+    * of the panel for supernode s. Descendant rows are processed in blocks,
+    * for each of which the products of L and D are formed once in the
+    * workspace.
+    */
+   private void applyUpdates (int s, Workspace ws, int rlo, int rhi) {
+      Symbolic symb = mySymbolic;
+      double[] Lx = myLx;
+      double[] D = myD;
+      double[] WD = ws.myWD;
+      int[] rel = ws.myRel;
+      int[] rows = symb.mySnodeRows;
+      int fs = symb.mySnodeCols[s];
+      int ls = symb.mySnodeCols[s+1];
+      int ncs = ls-fs;
+      int nrs = symb.mySnodeRowOffs[s+1]-symb.mySnodeRowOffs[s];
+      int offs = symb.myLxOffs[s];
+      int rowLo = rows[symb.mySnodeRowOffs[s]+rlo];
+      int rowHi = (rhi < nrs ? rows[symb.mySnodeRowOffs[s]+rhi] : -1);
+
+      for (int u=symb.myUpdOffs[s]; u<symb.myUpdOffs[s+1]; u++) {
+         int d = symb.myUpdSnodes[u];
+         int rd = symb.mySnodeRowOffs[d];
+         int nrd = symb.mySnodeRowOffs[d+1]-rd;
+         int fd = symb.mySnodeCols[d];
+         int ncd = symb.mySnodeCols[d+1]-fd;
+         int offd = symb.myLxOffs[d];
+         // rows [p1, p2) of d lie within the columns of s
+         int p1 = symb.myUpdRows[u];
+         int p2 = lowerBound (rows, rd+p1, rd+nrd, ls)-rd;
+         // rows [iilo, iihi) of d map into rows [rlo, rhi) of s
+         int iilo = p1;
+         int iihi = nrd;
+         if (rlo > 0) {
+            iilo = lowerBound (rows, rd+p1, rd+nrd, rowLo)-rd;
+         }
+         if (rowHi != -1) {
+            iihi = lowerBound (rows, rd+iilo, rd+nrd, rowHi)-rd;
+         }
+         for (int jb=p1; jb<p2; jb+=BLOCK_SIZE) {
+            int je = Math.min (jb+BLOCK_SIZE, p2);
+            for (int jj=jb; jj<je; jj++) {
+               int bj = offd + jj*ncd;
+               int wj = (jj-jb)*ncd;
+               for (int k=0; k<ncd; k++) {
+                  WD[wj+k] = Lx[bj+k]*D[fd+k];
+               }
+            }
+            for (int ii=Math.max(jb,iilo); ii<iihi; ii++) {
+               int bi = offd + ii*ncd;
+               int tr = offs + rel[rows[rd+ii]]*ncs - fs;
+               int jjmax = Math.min (ii+1, je);
+               for (int jj=jb; jj<jjmax; jj++) {
+                  int wj = (jj-jb)*ncd;
+                  Lx[tr + rows[rd+jj]] -= dot (Lx, bi, WD, wj, ncd);
+               }
+            }
+         }
+      }
+   }
+
+   /**
+    * Computes the dot product of n elements of a and b, starting at aoff and
+    * boff. Separate partial sums are used to reduce the dependency between
+    * successive additions.
+    */
+   private static double dot (
+      double[] a, int aoff, double[] b, int boff, int n) {
+      double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+      int k = 0;
+      for ( ; k<n-3; k+=4) {
+         s0 += a[aoff+k]*b[boff+k];
+         s1 += a[aoff+k+1]*b[boff+k+1];
+         s2 += a[aoff+k+2]*b[boff+k+2];
+         s3 += a[aoff+k+3]*b[boff+k+3];
+      }
+      for ( ; k<n; k++) {
+         s0 += a[aoff+k]*b[boff+k];
+      }
+      return (s0+s1)+(s2+s3);
+   }
+
+   private static int lowerBound (int[] a, int lo, int hi, int key) {
+      while (lo < hi) {
+         int mid = (lo+hi) >>> 1;
+         if (a[mid] < key) {
+            lo = mid+1;
+         }
+         else {
+            hi = mid;
+         }
+      }
+      return lo;
+   }
+
+   /**
+    * Factors columns [j0, j1) of the diagonal block of supernode s, and
+    * stores the products of L and D for rows [j0, j1) in the workspace.
+    */
+   private void factorDiagonalColumns (
+      int s, int j0, int j1, Workspace ws, double eps) {
+      Symbolic symb = mySymbolic;
+      double[] Lx = myLx;
+      double[] D = myD;
+      double[] WD = ws.myWD;
+      int f = symb.mySnodeCols[s];
+      int nc = symb.mySnodeCols[s+1]-f;
+      int off = symb.myLxOffs[s];
+      for (int j=j0; j<j1; j++) {
+         int bj = off + j*nc;
+         int wj = (j-j0)*nc;
+         double dj = Lx[bj+j];
+         for (int k=0; k<j; k++) {
+            double w = Lx[bj+k]*D[f+k];
+            WD[wj+k] = w;
+            dj -= w*Lx[bj+k];
+         }
+         if (Math.abs (dj) < eps) {
+            dj = (dj < 0 ? -eps : eps);
+            ws.myNumPerturbed++;
+         }
+         if (dj < 0) {
+            ws.myNumNegative++;
+         }
+         D[f+j] = dj;
+         Lx[bj+j] = 1;
+         for (int i=j+1; i<j1; i++) {
+            int bi = off + i*nc;
+            Lx[bi+j] = (Lx[bi+j] - dot (Lx, bi, WD, wj, j))/dj;
+         }
+      }
+   }
+
+   /**
+    * Computes columns [j0, j1) of rows [rlo, rhi) of L for supernode s, with
+    * rlo {@code >=} j1, after columns [j0, j1) of the diagonal block have
+    * been factored.
+    */
+   private void solveColumns (
+      int s, int j0, int j1, int rlo, int rhi, double[] WD) {
+      Symbolic symb = mySymbolic;
+      double[] Lx = myLx;
+      double[] D = myD;
+      int f = symb.mySnodeCols[s];
+      int nc = symb.mySnodeCols[s+1]-f;
+      int off = symb.myLxOffs[s];
+      for (int i=rlo; i<rhi; i++) {
+         int bi = off + i*nc;
+         for (int j=j0; j<j1; j++) {
+            int wj = (j-j0)*nc;
+            Lx[bi+j] = (Lx[bi+j] - dot (Lx, bi, WD, wj, j))/D[f+j];
+         }
+      }
+   }
+
+   /**
+    * Convenience method that sets the matrix associated with this solver,
+    * performs symbolic analysis on it, and factors it. The matrix is
+    * assumed to be symmetric.
+    *
+    * @param M matrix to analyze and factor
+    * @throws NumericalException if the matrix cannot be factored for numeric
+    * reasons.
+    */
+   public void analyzeAndFactor (Matrix M) {
+      analyze (M, M.rowSize(), Matrix.SYMMETRIC);
+      factor();
+   }
+
+   private void checkFactored() {
+      if (myState != FACTORED) {
+         throw new ImproperStateException ("Matrix not factored");
+      }
+   }
+
+   private void checkSolveArgs (double[] x, double[] b, int nrhs) {
+      if (x.length < mySize*nrhs) {
+         throw new IllegalArgumentException (
+            "x is too small: length=" + x.length +
+            ", expected " + mySize*nrhs);
+      }
+      if (b.length < mySize*nrhs) {
+         throw new IllegalArgumentException (
+            "b is too small: length=" + b.length +
+            ", expected " + mySize*nrhs);
+      }
+   }
+
+   /**
+    * Solves the matrix associated with this solver for x, given a specific
+    * right-hand side b. It is assumed that the matrix has been factored. If
+    * any pivots were perturbed during factorization, iterative refinement is
+    * applied to improve the solution.
+    *
+    * @param x returns the solution value
+    * @param b supplies the right-hand side
+    * @throws ImproperStateException if the matrix has not been factored
+    * @throws IllegalArgumentException if the dimensions of <code>x</code> or
+    * <code>b</code> are incompatible with the matrix size.
+    */
+   public synchronized void solve (VectorNd x, VectorNd b) {
+      if (x.size() < mySize) {
+         x.setSize (mySize);
+      }
+      solve (x.getBuffer(), b.getBuffer());
+   }
+
+   /**
+    * Solves the matrix associated with this solver for x, given a specific
+    * right-hand side b. It is assumed that the matrix has been factored.
+    *
+    * @param x returns the solution value
+    * @param b supplies the right-hand side
+    * @throws ImproperStateException if the matrix has not been factored
+    * @throws IllegalArgumentException if the dimensions of <code>x</code> or
+    * <code>b</code> are incompatible with the matrix size.
+    */
+   public synchronized void solve (double[] x, double[] b) {
+      checkFactored();
+      checkSolveArgs (x, b, 1);
+      solve (x, 0, b, 0, new double[mySize]);
+   }
+
+   /**
+    * Solves the matrix associated with this solver for a set of vectors X,
+    * given a set of right-hand sides B. Both {@code X} and {@code B} should
+    * be stored in column major order, as with {@link
+    * PardisoSolver#solve(double[],double[],int)}.
+    *
+    * @param X returns the solutions in column major order
+    * @param B supplies the right-hand sides in column major order
+    * @param nrhs number of right-hand sides to solve for
+    * @throws ImproperStateException if the matrix has not been factored
+    * @throws IllegalArgumentException if the dimensions of <code>X</code> or
+    * <code>B</code> are incompatible with the matrix size and {@code rhs}.
+    */
+   public synchronized void solve (double[] X, double[] B, int nrhs) {
+      checkFactored();
+      checkSolveArgs (X, B, nrhs);
+      if (myNumPerturbedPivots > 0 && myMaxRefinementSteps > 0) {
+         // iterative refinement is done one column at a time
+         double[] y = new double[mySize];
+         for (int r=0; r<nrhs; r++) {
+            solve (X, r*mySize, B, r*mySize, y);
+         }
+         myNumRefinementSteps = 0;
+         return;
+      }
+      // right-hand sides are processed in blocks, so that each pass over
+      // the factor is shared by all the columns of a block, with
+      // different blocks handled by different threads
+      int nblks = (nrhs+RHS_BLOCK_SIZE-1)/RHS_BLOCK_SIZE;
+      int nthreads = 1;
+      if (nblks > 1 && mySymbolic.myFlops >= minParallelFlops) {
+         nthreads = Math.min (nblks, getNumThreads());
+      }
+      if (nthreads > 1) {
+         ParallelLoop loop = getLoop (nthreads);
+         double[][] ybufs = new double[nthreads][];
+         loop.forEach (0, nblks, 1, (klo, khi, w) -> {
+            if (ybufs[w] == null) {
+               ybufs[w] = new double[mySize*RHS_BLOCK_SIZE];
+            }
+            for (int k=klo; k<khi; k++) {
+               int r0 = k*RHS_BLOCK_SIZE;
+               int r1 = Math.min (nrhs, r0+RHS_BLOCK_SIZE);
+               solveFactored (X, B, r0, r1, ybufs[w]);
+            }
+         });
+      }
+      else {
+         double[] Y = new double[mySize*Math.min (nrhs, RHS_BLOCK_SIZE)];
+         for (int r0=0; r0<nrhs; r0+=RHS_BLOCK_SIZE) {
+            solveFactored (X, B, r0, Math.min (nrhs, r0+RHS_BLOCK_SIZE), Y);
+         }
+      }
+      myNumRefinementSteps = 0;
+   }
+
+   private void solve (double[] x, int xoff, double[] b, int boff, double[] y) {
+      int n = mySize;
+      // b is saved for computing residuals, since x and b may be the same
+      double[] bcopy = null;
+      if (myNumPerturbedPivots > 0 && myMaxRefinementSteps > 0) {
+         bcopy = Arrays.copyOfRange (b, boff, boff+n);
+      }
+      solveFactored (x, xoff, b, boff, y);
+      myNumRefinementSteps = 0;
+      if (bcopy != null) {
+         double[] r = new double[n];
+         double[] dx = new double[n];
+         double rnorm = computeResidual (r, x, xoff, bcopy);
+         double bnorm = 0;
+         for (int i=0; i<n; i++) {
+            bnorm = Math.max (bnorm, Math.abs (bcopy[i]));
+         }
+         while (myNumRefinementSteps < myMaxRefinementSteps &&
+                rnorm > 1e-15*bnorm) {
+            solveFactored (dx, 0, r, 0, y);
+            for (int i=0; i<n; i++) {
+               x[xoff+i] += dx[i];
+            }
+            myNumRefinementSteps++;
+            double newNorm = computeResidual (r, x, xoff, bcopy);
+            if (newNorm >= rnorm) {
+               if (newNorm > rnorm) {
+                  // refinement made things worse, so undo the last step
+                  for (int i=0; i<n; i++) {
+                     x[xoff+i] -= dx[i];
+                  }
+               }
+               break;
+            }
+            rnorm = newNorm;
+         }
+      }
+   }
+
+   /**
+    * Computes r = b - A x using the values supplied to the last
+    * factorization, and returns the infinity norm of r.
+    */
+   private double computeResidual (
+      double[] r, double[] x, int xoff, double[] b) {
+      int n = mySize;
+      double[] vals = myVals;
+      for (int i=0; i<n; i++) {
+         r[i] = b[i];
+      }
+      for (int i=0; i<n; i++) {
+         double xi = x[xoff+i];
+         double sum = 0;
+         for (int k=myRowOffs[i]-1; k<myRowOffs[i+1]-1; k++) {
+            int j = myColIdxs[k]-1;
+            if (j > i) {
+               sum += vals[k]*x[xoff+j];
+               r[j] -= vals[k]*xi;
+            }
+            else if (j == i) {
+               sum += vals[k]*xi;
+            }
+         }
+         r[i] -= sum;
+      }
+      double norm = 0;
+      for (int i=0; i<n; i++) {
+         norm = Math.max (norm, Math.abs (r[i]));
+      }
+      return norm;
+   }
+
+   /**
+    * Solves P^T L D L^T P x = b using the current factorization.
+    */
+   private void solveFactored (
+      double[] x, int xoff, double[] b, int boff, double[] y) {
+
+      Symbolic symb = mySymbolic;
+      double[] Lx = myLx;
+      double[] D = myD;
+      int[] perm = symb.myPerm;
+      int[] rows = symb.mySnodeRows;
+      int n = mySize;
+      for (int k=0; k<n; k++) {
+         y[k] = b[boff+perm[k]];
+      }
+      int ns = symb.myNumSupernodes;
+      // forward substitution with L
+      for (int s=0; s<ns; s++) {
+         int f = symb.mySnodeCols[s];
+         int nc = symb.mySnodeCols[s+1]-f;
+         int rs = symb.mySnodeRowOffs[s];
+         int nr = symb.mySnodeRowOffs[s+1]-rs;
+         int off = symb.myLxOffs[s];
+         for (int i=1; i<nc; i++) {
+            int bi = off + i*nc;
+            double sum = 0;
+            for (int k=0; k<i; k++) {
+               sum += Lx[bi+k]*y[f+k];
+            }
+            y[f+i] -= sum;
+         }
+         for (int i=nc; i<nr; i++) {
+            int bi = off + i*nc;
+            double sum = 0;
+            for (int k=0; k<nc; k++) {
+               sum += Lx[bi+k]*y[f+k];
+            }
+            y[rows[rs+i]] -= sum;
+         }
+      }
+      for (int k=0; k<n; k++) {
+         y[k] /= D[k];
+      }
+      // backward substitution with L^T
+      for (int s=ns-1; s>=0; s--) {
+         int f = symb.mySnodeCols[s];
+         int nc = symb.mySnodeCols[s+1]-f;
+         int rs = symb.mySnodeRowOffs[s];
+         int nr = symb.mySnodeRowOffs[s+1]-rs;
+         int off = symb.myLxOffs[s];
+         for (int i=nc; i<nr; i++) {
+            int bi = off + i*nc;
+            double yi = y[rows[rs+i]];
+            if (yi != 0) {
+               for (int k=0; k<nc; k++) {
+                  y[f+k] -= Lx[bi+k]*yi;
+               }
+            }
+         }
+         for (int i=nc-1; i>0; i--) {
+            int bi = off + i*nc;
+            double yi = y[f+i];
+            for (int k=0; k<i; k++) {
+               y[f+k] -= Lx[bi+k]*yi;
+            }
+         }
+      }
+      for (int k=0; k<n; k++) {
+         x[xoff+perm[k]] = y[k];
+      }
+   }
+
+   /**
+    * Solves the factored system for the columns r0 to r1-1 of the column
+    * major right-hand sides B, storing the results in the same columns of
+    * X. Y is a work array of size at least n*(r1-r0), in which the permuted
+    * right-hand sides are stored row-wise, so that each entry of the factor
+    * is applied to all of the columns with a single contiguous update.
+    */
+   private void solveFactored (
+      double[] X, double[] B, int r0, int r1, double[] Y) {
+
+      Symbolic symb = mySymbolic;
+      double[] Lx = myLx;
+      double[] D = myD;
+      int[] perm = symb.myPerm;
+      int[] rows = symb.mySnodeRows;
+      int n = mySize;
+      int m = r1-r0;
+      for (int r=0; r<m; r++) {
+         int boff = (r0+r)*n;
+         for (int k=0; k<n; k++) {
+            Y[k*m+r] = B[boff+perm[k]];
+         }
+      }
+      // the arithmetic is ordered as in the single column solve, so that
+      // the results are identical
+      double[] sums = new double[m];
+      int ns = symb.myNumSupernodes;
+      // forward substitution with L
+      for (int s=0; s<ns; s++) {
+         int f = symb.mySnodeCols[s];
+         int nc = symb.mySnodeCols[s+1]-f;
+         int rs = symb.mySnodeRowOffs[s];
+         int nr = symb.mySnodeRowOffs[s+1]-rs;
+         int off = symb.myLxOffs[s];
+         for (int i=1; i<nr; i++) {
+            int bi = off + i*nc;
+            int yi = (i < nc ? f+i : rows[rs+i])*m;
+            int kmax = (i < nc ? i : nc);
+            for (int r=0; r<m; r++) {
+               sums[r] = 0;
+            }
+            for (int k=0; k<kmax; k++) {
+               double l = Lx[bi+k];
+               int yk = (f+k)*m;
+               for (int r=0; r<m; r++) {
+                  sums[r] += l*Y[yk+r];
+               }
+            }
+            for (int r=0; r<m; r++) {
+               Y[yi+r] -= sums[r];
+            }
+         }
+      }
+      for (int k=0; k<n; k++) {
+         double d = D[k];
+         for (int r=k*m; r<(k+1)*m; r++) {
+            Y[r] /= d;
+         }
+      }
+      // backward substitution with L^T
+      for (int s=ns-1; s>=0; s--) {
+         int f = symb.mySnodeCols[s];
+         int nc = symb.mySnodeCols[s+1]-f;
+         int rs = symb.mySnodeRowOffs[s];
+         int nr = symb.mySnodeRowOffs[s+1]-rs;
+         int off = symb.myLxOffs[s];
+         for (int i=nc; i<nr; i++) {
+            int bi = off + i*nc;
+            int yi = rows[rs+i]*m;
+            for (int k=0; k<nc; k++) {
+               double l = Lx[bi+k];
+               int yk = (f+k)*m;
+               for (int r=0; r<m; r++) {
+                  Y[yk+r] -= l*Y[yi+r];
+               }
+            }
+         }
+         for (int i=nc-1; i>0; i--) {
+            int bi = off + i*nc;
+            int yi = (f+i)*m;
+            for (int k=0; k<i; k++) {
+               double l = Lx[bi+k];
+               int yk = (f+k)*m;
+               for (int r=0; r<m; r++) {
+                  Y[yk+r] -= l*Y[yi+r];
+               }
+            }
+         }
+      }
+      for (int r=0; r<m; r++) {
+         int xoff = (r0+r)*n;
+         for (int k=0; k<n; k++) {
+            X[xoff+perm[k]] = Y[k*m+r];
+         }
+      }
+   }
+
+   /**
+    * Factors the matrix and then solves for x. Since this solver does not
+    * support automatic iterative solving, <code>tolExp</code> is ignored.
+    *
+    * @param x returns the solution value
+    * @param b supplies the right-hand side
+    * @param tolExp ignored
+    */
+   public void autoFactorAndSolve (VectorNd x, VectorNd b, int tolExp) {
+      factor();
+      solve (x, b);
+   }
+
+   /**
+    * Returns <code>false</code>, since this solver does not support
+    * automatic iterative solving.
+    *
+    * @return <code>false</code>
+    */
+   public boolean hasAutoIterativeSolving() {
+      return false;
+   }
+
+   /**
+    * Releases the factorization and any worker threads used by this solver.
+    */
+   public synchronized void dispose() {
+      if (myLoop != null) {
+         myLoop.dispose();
+         myLoop = null;
+      }
+      myWorkspaces = null;
+      mySymbolic = null;
+      myLx = null;
+      myD = null;
+      myVals = null;
+      myMatrix = null;
+      myValueMap = null;
+      mySize = 0;
+      myNumVals = 0;
+      myState = UNSET;
+   }
+}
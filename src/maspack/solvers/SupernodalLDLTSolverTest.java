@@ -0,0 +1,419 @@
+package maspack.solvers;
+
+import maspack.matrix.*;
+import maspack.util.*;
+
+/**
+ * Test and timing program for SupernodalLDLTSolver.
+ */
+public class SupernodalLDLTSolverTest extends UnitTest {
+
+   private static double EPS = 1e-10;
+
+   /**
+    * Creates a random sparse symmetric matrix. If <code>spd</code> is
+    * <code>true</code>, the matrix is made diagonally dominant so that it is
+    * positive definite. Otherwise, the last <code>nzero</code> diagonal
+    * entries are set to zero.
+    */
+   SparseMatrixNd createRandomMatrix (
+      int n, double density, boolean spd, int nzero) {
+      SparseMatrixNd M = new SparseMatrixNd (n, n);
+      for (int i=0; i<n; i++) {
+         for (int j=i+1; j<n; j++) {
+            if (RandomGenerator.nextDouble() < density) {
+               double v = RandomGenerator.nextDouble (-1, 1);
+               M.set (i, j, v);
+               M.set (j, i, v);
+            }
+         }
+      }
+      for (int i=0; i<n; i++) {
+         if (spd) {
+            M.set (i, i, n*density+2+RandomGenerator.nextDouble());
+         }
+         else if (i < n-nzero) {
+            M.set (i, i, RandomGenerator.nextDouble (-1, 1));
+         }
+      }
+      return M;
+   }
+
+   /**
+    * Creates a KKT matrix for a grid of 3 DOF nodes, with each node coupled
+    * to its neighbors, together with <code>ncons</code> constraints that
+    * each involve several random DOFs.
+    */
+   SparseMatrixNd createGridKKTMatrix (int nx, int ny, int ncons) {
+      int nnodes = nx*ny;
+      int sizeM = 3*nnodes;
+      SparseMatrixNd M = new SparseMatrixNd (sizeM+ncons, sizeM+ncons);
+      for (int i=0; i<nnodes; i++) {
+         for (int a=0; a<3; a++) {
+            for (int b=a; b<3; b++) {
+               double v = (a == b ?
+                  10+RandomGenerator.nextDouble() :
+                  RandomGenerator.nextDouble (-0.5, 0.5));
+               M.set (3*i+a, 3*i+b, v);
+               M.set (3*i+b, 3*i+a, v);
+            }
+         }
+      }
+      for (int x=0; x<nx; x++) {
+         for (int y=0; y<ny; y++) {
+            int i = x*ny+y;
+            int[] nbrs = new int[] {
+               (x+1 < nx ? i+ny : -1), (y+1 < ny ? i+1 : -1) };
+            for (int j : nbrs) {
+               if (j != -1) {
+                  for (int a=0; a<3; a++) {
+                     for (int b=0; b<3; b++) {
+                        double v = RandomGenerator.nextDouble (-0.5, 0.5);
+                        M.set (3*i+a, 3*j+b, v);
+                        M.set (3*j+b, 3*i+a, v);
+                     }
+                  }
+               }
+            }
+         }
+      }
+      for (int c=0; c<ncons; c++) {
+         // constraint involves all three DOFs of two random nodes
+         for (int k=0; k<2; k++) {
+            int i = RandomGenerator.nextInt (nnodes);
+            for (int a=0; a<3; a++) {
+               double v = RandomGenerator.nextDouble (0.1, 1.0);
+               M.set (sizeM+c, 3*i+a, v);
+               M.set (3*i+a, sizeM+c, v);
+            }
+         }
+      }
+      return M;
+   }
+
+   VectorNd solveDense (Matrix M, VectorNd b) {
+      LUDecomposition lu = new LUDecomposition (new MatrixNd (M));
+      VectorNd x = new VectorNd (b.size());
+      lu.solve (x, b);
+      return x;
+   }
+
+   void checkSolve (SparseMatrixNd M, int nthreads, boolean checkDense) {
+      int n = M.rowSize();
+      SupernodalLDLTSolver solver = new SupernodalLDLTSolver();
+      solver.setNumThreads (nthreads);
+      solver.analyzeAndFactor (M);
+      VectorNd b = new VectorNd (n);
+      b.setRandom();
+      VectorNd x = new VectorNd (n);
+      solver.solve (x, b);
+      VectorNd res = new VectorNd (n);
+      M.mul (res, x);
+      res.sub (b);
+      if (res.infinityNorm() > EPS*M.infinityNorm()*x.infinityNorm()) {
+         throw new TestException (
+            "residual for size "+n+" matrix is "+res.infinityNorm());
+      }
+      if (checkDense) {
+         checkNormedEquals ("solution", x, solveDense (M, b), EPS);
+      }
+      solver.dispose();
+   }
+
+   public void testRandom() {
+      for (int n : new int[] { 1, 2, 5, 20, 100 }) {
+         for (double density : new double[] { 0.05, 0.2, 1.0 }) {
+            checkSolve (createRandomMatrix (n, density, true, 0), 1, true);
+            checkSolve (createRandomMatrix (n, density, true, 0), 4, true);
+         }
+      }
+      // dense indefinite matrices, with some zero diagonal entries
+      for (int n : new int[] { 10, 50 }) {
+         SparseMatrixNd M = createRandomMatrix (n, 1.0, false, n/5);
+         checkSolve (M, 1, true);
+      }
+   }
+
+   public void testKKT() {
+      checkSolve (createGridKKTMatrix (1, 1, 1), 1, true);
+      checkSolve (createGridKKTMatrix (3, 3, 4), 1, true);
+      checkSolve (createGridKKTMatrix (10, 8, 20), 1, true);
+      checkSolve (createGridKKTMatrix (30, 30, 100), 1, false);
+      SparseMatrixNd M = createGridKKTMatrix (10, 10, 25);
+      SupernodalLDLTSolver solver = new SupernodalLDLTSolver();
+      solver.analyzeAndFactor (M);
+      checkEquals (
+         "num negative eigenvalues", solver.getNumNegEigenvalues(), 25);
+   }
+
+   /**
+    * Checks that results are identical for different thread counts, with
+    * the parallel flop thresholds lowered so that the threaded code paths
+    * are exercised even for small problems.
+    */
+   public void testThreading() {
+      double saveMinFlops = SupernodalLDLTSolver.minParallelFlops;
+      double saveMinSnodeFlops =
+         SupernodalLDLTSolver.minParallelSupernodeFlops;
+      try {
+         SupernodalLDLTSolver.minParallelFlops = 0;
+         SupernodalLDLTSolver.minParallelSupernodeFlops = 0;
+         SparseMatrixNd M = createGridKKTMatrix (25, 25, 60);
+         int n = M.rowSize();
+         VectorNd b = new VectorNd (n);
+         b.setRandom();
+         int nrhs = 50;
+         MatrixNd B = new MatrixNd (nrhs, n);
+         B.setRandom();
+         VectorNd xchk = null;
+         MatrixNd Xchk = null;
+         for (int nthreads : new int[] { 1, 2, 3, 4, 7 }) {
+            SupernodalLDLTSolver solver = new SupernodalLDLTSolver();
+            solver.setNumThreads (nthreads);
+            solver.analyzeAndFactor (M);
+            VectorNd x = new VectorNd (n);
+            solver.solve (x, b);
+            MatrixNd X = new MatrixNd (nrhs, n);
+            solver.solve (X.getBuffer(), B.getBuffer(), nrhs);
+            if (xchk == null) {
+               xchk = x;
+               Xchk = X;
+            }
+            else {
+               checkEquals ("solution with "+nthreads+" threads", x, xchk, 0);
+               checkEquals (
+                  "multiple rhs solution with "+nthreads+" threads",
+                  X, Xchk, 0);
+            }
+            solver.dispose();
+         }
+      }
+      finally {
+         SupernodalLDLTSolver.minParallelFlops = saveMinFlops;
+         SupernodalLDLTSolver.minParallelSupernodeFlops = saveMinSnodeFlops;
+      }
+   }
+
+   public void testSymbolicReuse() {
+      SparseMatrixNd M = createGridKKTMatrix (8, 8, 10);
+      int n = M.rowSize();
+      SupernodalLDLTSolver solver = new SupernodalLDLTSolver();
+      solver.analyze (M, n, Matrix.SYMMETRIC);
+      check ("symbolic reused on first analyze", !solver.symbolicWasReused());
+
+      // changing values but not structure should reuse the analysis
+      M.set (0, 0, 20.0);
+      solver.analyze (M, n, Matrix.SYMMETRIC);
+      check ("symbolic not reused", solver.symbolicWasReused());
+      solver.factor();
+      VectorNd b = new VectorNd (n);
+      b.setRandom();
+      VectorNd x = new VectorNd (n);
+      solver.solve (x, b);
+      checkNormedEquals ("solution", x, solveDense (M, b), EPS);
+
+      // changing the structure should not
+      M.set (0, n-1, 0.5);
+      M.set (n-1, 0, 0.5);
+      solver.analyze (M, n, Matrix.SYMMETRIC);
+      check ("symbolic reused after structure change",
+             !solver.symbolicWasReused());
+      solver.factor();
+      solver.solve (x, b);
+      checkNormedEquals ("solution", x, solveDense (M, b), EPS);
+      checkEquals ("number of analyses", solver.numAnalyses(), 3);
+      checkEquals ("number of reuses", solver.numSymbolicReuses(), 1);
+   }
+
+   public void testMultipleRhs() {
+      SparseMatrixNd M = createGridKKTMatrix (6, 6, 8);
+      int n = M.rowSize();
+      SupernodalLDLTSolver solver = new SupernodalLDLTSolver();
+      solver.analyzeAndFactor (M);
+      // use enough right hand sides to span several blocks
+      for (int nrhs : new int[] { 1, 5, 37 }) {
+         MatrixNd B = new MatrixNd (nrhs, n);
+         B.setRandom();
+         MatrixNd X = new MatrixNd (nrhs, n);
+         // rows of B and X give column-major storage of the right hand sides
+         solver.solve (X.getBuffer(), B.getBuffer(), nrhs);
+         for (int k=0; k<nrhs; k++) {
+            VectorNd b = new VectorNd (n);
+            VectorNd x = new VectorNd (n);
+            B.getRow (k, b);
+            solver.solve (x, b);
+            VectorNd xk = new VectorNd (n);
+            X.getRow (k, xk);
+            checkEquals ("solution "+k, xk, x, 0);
+         }
+         // solve in place
+         X.set (B);
+         solver.solve (X.getBuffer(), X.getBuffer(), nrhs);
+         MatrixNd Xchk = new MatrixNd (nrhs, n);
+         solver.solve (Xchk.getBuffer(), B.getBuffer(), nrhs);
+         checkEquals ("in place solution", X, Xchk, 0);
+      }
+   }
+
+   public void testKKTSolver() {
+      int nblks = 10;
+      int ncons = 4;
+      int[] rowSizes = new int[nblks];
+      int[] colSizesGT = new int[ncons];
+      for (int i=0; i<nblks; i++) {
+         rowSizes[i] = 3;
+      }
+      for (int i=0; i<ncons; i++) {
+         colSizesGT[i] = 1;
+      }
+      SparseBlockMatrix M = new SparseBlockMatrix (rowSizes, rowSizes);
+      for (int i=0; i<nblks; i++) {
+         Matrix3x3Block blk = new Matrix3x3Block();
+         blk.setRandom();
+         blk.mulTransposeRight (blk, blk);
+         blk.addDiagonal (3);
+         M.addBlock (i, i, blk);
+         if (i > 0) {
+            Matrix3x3Block off = new Matrix3x3Block();
+            off.setRandom();
+            off.scale (0.2);
+            Matrix3x3Block offT = new Matrix3x3Block();
+            offT.transpose (off);
+            M.addBlock (i-1, i, off);
+            M.addBlock (i, i-1, offT);
+         }
+      }
+      SparseBlockMatrix GT = new SparseBlockMatrix (rowSizes, colSizesGT);
+      for (int j=0; j<ncons; j++) {
+         Matrix3x1Block blk = new Matrix3x1Block();
+         blk.setRandom();
+         GT.addBlock (2*j, j, blk);
+      }
+      int sizeM = M.rowSize();
+      VectorNd bm = new VectorNd (sizeM);
+      VectorNd bg = new VectorNd (ncons);
+      bm.setRandom();
+      bg.setRandom();
+      VectorNd vel = new VectorNd (sizeM);
+      VectorNd lam = new VectorNd (ncons);
+
+      KKTSolver solver = new KKTSolver (SparseSolverId.SupernodalLDLT);
+      solver.analyze (M, sizeM, GT, null, Matrix.SPD);
+      solver.factor (M, sizeM, GT, null);
+      solver.solve (vel, lam, bm, bg);
+
+      // check that M vel - GT lam = bm and G vel = bg
+      VectorNd res = new VectorNd (sizeM);
+      VectorNd tmp = new VectorNd (sizeM);
+      M.mul (res, vel);
+      GT.mul (tmp, lam);
+      res.sub (tmp);
+      checkNormedEquals ("KKT velocity residual", res, bm, EPS);
+      VectorNd resg = new VectorNd (ncons);
+      GT.mulTranspose (resg, vel);
+      checkNormedEquals ("KKT constraint residual", resg, bg, EPS);
+
+      // multiple right hand sides should give the same columns as
+      // individual solves
+      int nrhs = 7;
+      MatrixNd Bm = new MatrixNd (sizeM, nrhs);
+      MatrixNd Bg = new MatrixNd (ncons, nrhs);
+      Bm.setRandom();
+      Bg.setRandom();
+      MatrixNd Vel = new MatrixNd();
+      MatrixNd Lam = new MatrixNd();
+      solver.solve (Vel, Lam, Bm, Bg);
+      for (int j=0; j<nrhs; j++) {
+         Bm.getColumn (j, bm);
+         Bg.getColumn (j, bg);
+         solver.solve (vel, lam, bm, bg);
+         VectorNd col = new VectorNd();
+         Vel.getColumn (j, col);
+         checkEquals ("multiple rhs velocity "+j, col, vel, 0);
+         Lam.getColumn (j, col);
+         checkEquals ("multiple rhs impulse "+j, col, lam, 0);
+      }
+      solver.dispose();
+   }
+
+   public void testExceptions() {
+      SupernodalLDLTSolver solver = new SupernodalLDLTSolver();
+      checkForException (
+         new ImproperStateException(), () -> solver.factor());
+      checkForIllegalArgumentException (
+         () -> solver.analyze (
+            new MatrixNd (3, 3), 3, Matrix.INDEFINITE));
+      checkForIllegalArgumentException (
+         () -> solver.analyze (
+            new MatrixNd (3, 4), 3, Matrix.SYMMETRIC));
+   }
+
+   /**
+    * Compares factorization times with those of Pardiso, if available.
+    */
+   public void timing (int nx, int ny, int ncons, int nthreads) {
+      SparseMatrixNd M = createGridKKTMatrix (nx, ny, ncons);
+      int n = M.rowSize();
+      int cnt = 10;
+      FunctionTimer timer = new FunctionTimer();
+
+      SupernodalLDLTSolver solver = new SupernodalLDLTSolver();
+      solver.setNumThreads (nthreads);
+      timer.start();
+      solver.analyze (M, n, Matrix.SYMMETRIC);
+      timer.stop();
+      System.out.println (
+         "SupernodalLDLT: size=" + n + " nnzL=" +
+         solver.getNumNonZerosInFactors() +
+         " analyze=" + timer.result(1));
+      solver.factor();
+      timer.start();
+      for (int i=0; i<cnt; i++) {
+         solver.factor();
+      }
+      timer.stop();
+      System.out.println ("SupernodalLDLT: factor=" + timer.result(cnt));
+      solver.dispose();
+
+      if (PardisoSolver.isAvailable()) {
+         PardisoSolver pardiso = new PardisoSolver();
+         pardiso.setNumThreads (nthreads);
+         timer.start();
+         pardiso.analyze (M, n, Matrix.SYMMETRIC);
+         timer.stop();
+         System.out.println (
+            "Pardiso: nnzL=" + pardiso.getNumNonZerosInFactors() +
+            " analyze=" + timer.result(1));
+         pardiso.factor();
+         timer.start();
+         for (int i=0; i<cnt; i++) {
+            pardiso.factor();
+         }
+         timer.stop();
+         System.out.println ("Pardiso: factor=" + timer.result(cnt));
+         pardiso.dispose();
+      }
+   }
+
+   public void test() {
+      testRandom();
+      testKKT();
+      testThreading();
+      testSymbolicReuse();
+      testMultipleRhs();
+      testKKTSolver();
+      testExceptions();
+   }
+
+   public static void main (String[] args) {
+      SupernodalLDLTSolverTest tester = new SupernodalLDLTSolverTest();
+      RandomGenerator.setSeed (0x1234);
+      if (args.length > 0 && args[0].equals ("-timing")) {
+         int nthreads = (args.length > 1 ? Integer.parseInt (args[1]) : 1);
+         tester.timing (100, 100, 500, nthreads);
+      }
+      else {
+         tester.runtest();
+      }
+   }
+}
@@ -0,0 +1,556 @@
+package maspack.util;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Simple harness for running repeatable micro-benchmarks, mainly intended for
+ * catching performance regressions in numeric kernels.
+ *
+ * <p>Each benchmark is described by a name and a factory that creates the
+ * benchmark's data and returns a body to be timed. The factory is called
+ * only when the benchmark is run, just after {@link RandomGenerator} has been
+ * seeded with a fixed value, so that each run operates on the same data. The
+ * body is first executed for a number of warmup samples, which allow the JIT
+ * compiler to settle, and then for a number of measurement samples. Each
+ * sample executes the body enough times to take at least a prescribed sample
+ * time, and the results report the median, minimum, and standard deviation
+ * of the per-execution times across all measurement samples.
+ *
+ * <p>Results can be saved to a file and compared against a previously saved
+ * file, in which case benchmarks whose median time has increased by more than
+ * a given tolerance are reported as regressions. The method {@link
+ * #runAndReport} implements a command line interface for all of this, and is
+ * intended to be called from the <code>main</code> method of a benchmark
+ * suite.
+ */
+public class Benchmark {
+
+   /**
+    * Default number of warmup samples.
+    */
+   public static int DEFAULT_NUM_WARMUP_SAMPLES = 5;
+
+   /**
+    * Default number of measurement samples.
+    */
+   public static int DEFAULT_NUM_SAMPLES = 10;
+
+   /**
+    * Default minimum time for each sample, in seconds.
+    */
+   public static double DEFAULT_SAMPLE_TIME = 0.1;
+
+   /**
+    * Default seed used to initialize {@link RandomGenerator} before creating
+    * each benchmark.
+    */
+   public static int DEFAULT_SEED = 0x1234;
+
+   /**
+    * Default tolerance used when comparing results with a baseline.
+    */
+   public static double DEFAULT_TOLERANCE = 0.1;
+
+   private int myNumWarmupSamples = DEFAULT_NUM_WARMUP_SAMPLES;
+   private int myNumSamples = DEFAULT_NUM_SAMPLES;
+   private double mySampleTime = DEFAULT_SAMPLE_TIME;
+   private int mySeed = DEFAULT_SEED;
+   private PrintStream myOut = System.out;
+
+   private ArrayList<Case> myCases = new ArrayList<>();
+
+   private class Case {
+      String myName;
+      Supplier<Runnable> myFactory;
+
+      Case (String name, Supplier<Runnable> factory) {
+         myName = name;
+         myFactory = factory;
+      }
+   }
+
+   /**
+    * Timing results for a single benchmark.
+    */
+   public static class Result {
+      String myName;
+      int myNumExecs;      // number of body executions per sample
+      double[] mySamples;  // sorted per-execution sample times, in usec
+
+      Result (String name, int numExecs, double[] samples) {
+         myName = name;
+         myNumExecs = numExecs;
+         mySamples = Arrays.copyOf (samples, samples.length);
+         Arrays.sort (mySamples);
+      }
+
+      /**
+       * Returns the name of the benchmark.
+       *
+       * @return benchmark name
+       */
+      public String getName() {
+         return myName;
+      }
+
+      /**
+       * Returns the number of times the benchmark body was executed for each
+       * sample.
+       *
+       * @return number of executions per sample
+       */
+      public int numExecutionsPerSample() {
+         return myNumExecs;
+      }
+
+      /**
+       * Returns the median execution time, in microseconds.
+       *
+       * @return median execution time
+       */
+      public double getMedian() {
+         int n = mySamples.length;
+         if ((n % 2) == 1) {
+            return mySamples[n/2];
+         }
+         else {
+            return (mySamples[n/2-1] + mySamples[n/2])/2;
+         }
+      }
+
+      /**
+       * Returns the minimum execution time, in microseconds.
+       *
+       * @return minimum execution time
+       */
+      public double getMin() {
+         return mySamples[0];
+      }
+
+      /**
+       * Returns the mean execution time, in microseconds.
+       *
+       * @return mean execution time
+       */
+      public double getMean() {
+         double sum = 0;
+         for (double s : mySamples) {
+            sum += s;
+         }
+         return sum/mySamples.length;
+      }
+
+      /**
+       * Returns the standard deviation of the execution time, in
+       * microseconds.
+       *
+       * @return standard deviation of the execution time
+       */
+      public double getStdDev() {
+         double mean = getMean();
+         double sum = 0;
+         for (double s : mySamples) {
+            sum += (s-mean)*(s-mean);
+         }
+         return mySamples.length > 1 ? Math.sqrt (sum/(mySamples.length-1)) : 0;
+      }
+
+      public String toString() {
+         return String.format (
+            "%-48s %12.3f %12.3f %7.1f%%",
+            myName, getMedian(), getMin(), 100*getStdDev()/getMedian());
+      }
+   }
+
+   public Benchmark() {
+   }
+
+   /**
+    * Returns the number of warmup samples for each benchmark.
+    *
+    * @return number of warmup samples
+    */
+   public int getNumWarmupSamples() {
+      return myNumWarmupSamples;
+   }
+
+   /**
+    * Sets the number of warmup samples for each benchmark.
+    *
+    * @param num number of warmup samples
+    */
+   public void setNumWarmupSamples (int num) {
+      myNumWarmupSamples = Math.max (0, num);
+   }
+
+   /**
+    * Returns the number of measurement samples for each benchmark.
+    *
+    * @return number of measurement samples
+    */
+   public int getNumSamples() {
+      return myNumSamples;
+   }
+
+   /**
+    * Sets the number of measurement samples for each benchmark.
+    *
+    * @param num number of measurement samples
+    */
+   public void setNumSamples (int num) {
+      myNumSamples = Math.max (1, num);
+   }
+
+   /**
+    * Returns the minimum time for each sample, in seconds.
+    *
+    * @return minimum sample time
+    */
+   public double getSampleTime() {
+      return mySampleTime;
+   }
+
+   /**
+    * Sets the minimum time for each sample, in seconds. The number of
+    * times the benchmark body is executed per sample is determined from
+    * this when the benchmark is started.
+    *
+    * @param time minimum sample time
+    */
+   public void setSampleTime (double time) {
+      mySampleTime = time;
+   }
+
+   /**
+    * Returns the seed used to initialize {@link RandomGenerator} before
+    * creating each benchmark.
+    *
+    * @return random seed
+    */
+   public int getSeed() {
+      return mySeed;
+   }
+
+   /**
+    * Sets the seed used to initialize {@link RandomGenerator} before creating
+    * each benchmark.
+    *
+    * @param seed random seed
+    */
+   public void setSeed (int seed) {
+      mySeed = seed;
+   }
+
+   /**
+    * Sets the stream to which progress and results are printed. Specifying
+    * <code>null</code> disables printing.
+    *
+    * @param out output stream
+    */
+   public void setOutput (PrintStream out) {
+      myOut = out;
+   }
+
+   /**
+    * Adds a benchmark to this harness. The factory should create any data
+    * used by the benchmark and return the body to be timed. It is not called
+    * until the benchmark is run.
+    *
+    * @param name benchmark name, which must be unique and contain no
+    * whitespace
+    * @param factory creates the benchmark body
+    */
+   public void add (String name, Supplier<Runnable> factory) {
+      if (name.length() == 0 || Pattern.compile ("\\s").matcher(name).find()) {
+         throw new IllegalArgumentException (
+            "Benchmark name '"+name+"' is empty or contains whitespace");
+      }
+      for (Case c : myCases) {
+         if (c.myName.equals (name)) {
+            throw new IllegalArgumentException (
+               "Benchmark '"+name+"' already exists");
+         }
+      }
+      myCases.add (new Case (name, factory));
+   }
+
+   /**
+    * Returns the number of benchmarks in this harness.
+    *
+    * @return number of benchmarks
+    */
+   public int numBenchmarks() {
+      return myCases.size();
+   }
+
+   /**
+    * Returns the names of the benchmarks in this harness.
+    *
+    * @return benchmark names
+    */
+   public ArrayList<String> getNames() {
+      ArrayList<String> names = new ArrayList<>();
+      for (Case c : myCases) {
+         names.add (c.myName);
+      }
+      return names;
+   }
+
+   private double timeExecutions (Runnable body, int num) {
+      long t0 = System.nanoTime();
+      for (int i=0; i<num; i++) {
+         body.run();
+      }
+      return (System.nanoTime()-t0)*1e-9;
+   }
+
+   private Result run (Case c) {
+      RandomGenerator.setSeed (mySeed);
+      Runnable body = c.myFactory.get();
+
+      // find the number of executions needed to fill the sample time
+      int num = 1;
+      double time = timeExecutions (body, num);
+      while (time < mySampleTime/4 && num < Integer.MAX_VALUE/2) {
+         num *= 2;
+         time = timeExecutions (body, num);
+      }
+      if (time < mySampleTime) {
+         num = (int)Math.min (
+            Integer.MAX_VALUE, Math.ceil (num*mySampleTime/time));
+      }
+      for (int k=0; k<myNumWarmupSamples; k++) {
+         timeExecutions (body, num);
+      }
+      double[] samples = new double[myNumSamples];
+      for (int k=0; k<myNumSamples; k++) {
+         samples[k] = 1e6*timeExecutions (body, num)/num;
+      }
+      return new Result (c.myName, num, samples);
+   }
+
+   /**
+    * Runs all benchmarks whose names match a regular expression, and returns
+    * the results.
+    *
+    * @param regex regular expression used to select benchmarks. A benchmark
+    * is selected if any part of its name matches. If <code>null</code>, all
+    * benchmarks are run.
+    * @return results for the selected benchmarks
+    */
+   public ArrayList<Result> run (String regex) {
+      Pattern pattern = (regex != null ? Pattern.compile (regex) : null);
+      ArrayList<Result> results = new ArrayList<>();
+      if (myOut != null) {
+         myOut.printf (
+            "%-48s %12s %12s %8s\n", "benchmark", "median(usec)", "min(usec)",
+            "stddev");
+      }
+      for (Case c : myCases) {
+         if (pattern == null || pattern.matcher(c.myName).find()) {
+            Result res = run (c);
+            results.add (res);
+            if (myOut != null) {
+               myOut.println (res);
+            }
+         }
+      }
+      return results;
+   }
+
+   /**
+    * Writes a set of results to a print writer, one per line, giving the
+    * name, median, minimum and standard deviation for each. The output can be
+    * read back using {@link #readMedians}.
+    *
+    * @param pw writer to write results to
+    * @param results results to write
+    */
+   public static void write (PrintWriter pw, List<Result> results) {
+      pw.println ("# name median(usec) min(usec) stddev(usec)");
+      for (Result res : results) {
+         pw.println (
+            res.getName()+" "+res.getMedian()+" "+res.getMin()+" "+
+            res.getStdDev());
+      }
+      pw.flush();
+   }
+
+   /**
+    * Reads the median times from a set of results previously written by
+    * {@link #write}.
+    *
+    * @param file file containing the results
+    * @return map from benchmark names to median times
+    * @throws IOException if an I/O or format error occurs
+    */
+   public static LinkedHashMap<String,Double> readMedians (File file)
+      throws IOException {
+      LinkedHashMap<String,Double> medians = new LinkedHashMap<>();
+      try (BufferedReader reader = new BufferedReader (new FileReader (file))) {
+         String line;
+         int lineno = 0;
+         while ((line = reader.readLine()) != null) {
+            lineno++;
+            line = line.trim();
+            if (line.length() == 0 || line.startsWith ("#")) {
+               continue;
+            }
+            String[] fields = line.split ("\\s+");
+            try {
+               medians.put (fields[0], Double.parseDouble (fields[1]));
+            }
+            catch (Exception e) {
+               throw new IOException (
+                  "Malformed result at line "+lineno+" of "+file);
+            }
+         }
+      }
+      return medians;
+   }
+
+   /**
+    * Compares a set of results against the median times of a baseline, and
+    * prints the relative change of each benchmark that is present in the
+    * baseline. A benchmark is a regression if its median time exceeds the
+    * baseline time by more than a relative tolerance.
+    *
+    * @param out stream for printing the comparison (may be
+    * <code>null</code>)
+    * @param results results to compare
+    * @param baseline baseline median times
+    * @param tol relative tolerance
+    * @return number of regressions
+    */
+   public static int compare (
+      PrintStream out, List<Result> results,
+      LinkedHashMap<String,Double> baseline, double tol) {
+
+      int nregressions = 0;
+      for (Result res : results) {
+         Double base = baseline.get (res.getName());
+         if (base == null) {
+            continue;
+         }
+         double change = (res.getMedian()-base)/base;
+         boolean regression = (change > tol);
+         if (regression) {
+            nregressions++;
+         }
+         if (out != null) {
+            out.printf (
+               "%-48s %12.3f %12.3f %+7.1f%%%s\n",
+               res.getName(), base, res.getMedian(), 100*change,
+               regression ? "  REGRESSION" : "");
+         }
+      }
+      return nregressions;
+   }
+
+   private static String usage (String progName) {
+      return
+         "Usage: java "+progName+" [options]\n"+
+         "  -filter <regex>     only run benchmarks whose names match regex\n"+
+         "  -warmup <n>         number of warmup samples\n"+
+         "  -samples <n>        number of measurement samples\n"+
+         "  -sampleTime <sec>   minimum time per sample\n"+
+         "  -seed <n>           random seed used to create benchmark data\n"+
+         "  -save <file>        save results to file\n"+
+         "  -compare <file>     compare results with those saved in file\n"+
+         "  -tol <frac>         relative tolerance for regressions\n"+
+         "  -list               list benchmark names and exit";
+   }
+
+   /**
+    * Runs the benchmarks in this harness using settings specified by command
+    * line arguments. Run with <code>-help</code> to see the available
+    * options. Results are printed, and are optionally saved to a file
+    * and/or compared with a baseline read from a file.
+    *
+    * @param progName name of the program, for use in the usage message
+    * @param args command line arguments
+    * @return exit status, which is 0 on success, 1 if any regressions
+    * were found, and 2 if there was an argument or I/O error
+    */
+   public int runAndReport (String progName, String[] args) {
+      String filter = null;
+      String saveFile = null;
+      String compareFile = null;
+      double tol = DEFAULT_TOLERANCE;
+      boolean list = false;
+      try {
+         for (int i=0; i<args.length; i++) {
+            String arg = args[i];
+            if (arg.equals ("-list")) {
+               list = true;
+               continue;
+            }
+            else if (arg.equals ("-help")) {
+               System.out.println (usage (progName));
+               return 0;
+            }
+            if (i == args.length-1) {
+               throw new IllegalArgumentException (
+                  "option "+arg+" needs a value");
+            }
+            String value = args[++i];
+            switch (arg) {
+               case "-filter": filter = value; break;
+               case "-warmup": setNumWarmupSamples (Integer.parseInt(value)); break;
+               case "-samples": setNumSamples (Integer.parseInt(value)); break;
+               case "-sampleTime": setSampleTime (Double.parseDouble(value)); break;
+               case "-seed": setSeed (Integer.decode(value)); break;
+               case "-save": saveFile = value; break;
+               case "-compare": compareFile = value; break;
+               case "-tol": tol = Double.parseDouble(value); break;
+               default: {
+                  throw new IllegalArgumentException (
+                     "unrecognized option "+arg);
+               }
+            }
+         }
+      }
+      catch (IllegalArgumentException e) {
+         System.err.println ("Error: " + e.getMessage());
+         System.err.println (usage (progName));
+         return 2;
+      }
+      if (list) {
+         for (String name : getNames()) {
+            System.out.println (name);
+         }
+         return 0;
+      }
+      try {
+         LinkedHashMap<String,Double> baseline = null;
+         if (compareFile != null) {
+            baseline = readMedians (new File (compareFile));
+         }
+         ArrayList<Result> results = run (filter);
+         if (saveFile != null) {
+            try (PrintWriter pw = new PrintWriter (new FileWriter (saveFile))) {
+               write (pw, results);
+            }
+         }
+         if (baseline != null) {
+            System.out.println ("\nComparison with " + compareFile + ":");
+            int nreg = compare (System.out, results, baseline, tol);
+            if (nreg > 0) {
+               System.out.println (nreg + " regression(s) found");
+               return 1;
+            }
+         }
+      }
+      catch (IOException e) {
+         System.err.println ("Error: " + e.getMessage());
+         return 2;
+      }
+      return 0;
+   }
+}
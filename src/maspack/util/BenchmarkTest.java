@@ -0,0 +1,97 @@
+package maspack.util;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/**
+ * Test program for Benchmark.
+ */
+public class BenchmarkTest extends UnitTest {
+
+   public void testRun() {
+      Benchmark bench = new Benchmark();
+      bench.setOutput (null);
+      bench.setNumWarmupSamples (1);
+      bench.setNumSamples (3);
+      bench.setSampleTime (0.002);
+      double[] data = new double[1000];
+      int[] numCreated = new int[1];
+      bench.add ("sum/1000", () -> {
+            numCreated[0]++;
+            for (int i=0; i<data.length; i++) {
+               data[i] = RandomGenerator.nextDouble();
+            }
+            return () -> {
+               double sum = 0;
+               for (int i=0; i<data.length; i++) {
+                  sum += data[i];
+               }
+               data[0] = sum-data[0];
+            };
+         });
+      bench.add ("noop", () -> () -> {});
+      checkEquals ("numCreated", numCreated[0], 0);
+      checkEquals ("numBenchmarks", bench.numBenchmarks(), 2);
+
+      ArrayList<Benchmark.Result> results = bench.run ("^sum");
+      checkEquals ("num results", results.size(), 1);
+      checkEquals ("numCreated", numCreated[0], 1);
+      Benchmark.Result res = results.get(0);
+      checkEquals ("name", res.getName(), "sum/1000");
+      check ("min > median", res.getMin() <= res.getMedian());
+      check ("min <= 0", res.getMin() > 0);
+      check ("numExecutions < 1", res.numExecutionsPerSample() >= 1);
+
+      results = bench.run (null);
+      checkEquals ("num results", results.size(), 2);
+
+      checkForIllegalArgumentException (
+         () -> bench.add ("bad name", () -> () -> {}));
+      checkForIllegalArgumentException (
+         () -> bench.add ("noop", () -> () -> {}));
+   }
+
+   public void testSaveAndCompare() throws IOException {
+      Benchmark bench = new Benchmark();
+      bench.setOutput (null);
+      bench.setNumWarmupSamples (0);
+      bench.setNumSamples (2);
+      bench.setSampleTime (0.001);
+      bench.add ("noop", () -> () -> {});
+      ArrayList<Benchmark.Result> results = bench.run (null);
+
+      File file = File.createTempFile ("bench", ".txt");
+      file.deleteOnExit();
+      try (PrintWriter pw = new PrintWriter (new FileWriter (file))) {
+         Benchmark.write (pw, results);
+      }
+      LinkedHashMap<String,Double> medians = Benchmark.readMedians (file);
+      checkEquals ("num medians", medians.size(), 1);
+      checkEquals ("median", medians.get("noop"), results.get(0).getMedian());
+
+      checkEquals (
+         "num regressions",
+         Benchmark.compare (null, results, medians, 0.1), 0);
+      medians.put ("noop", results.get(0).getMedian()/2);
+      checkEquals (
+         "num regressions",
+         Benchmark.compare (null, results, medians, 0.1), 1);
+      medians.clear();
+      medians.put ("other", 1.0);
+      checkEquals (
+         "num regressions",
+         Benchmark.compare (null, results, medians, 0.1), 0);
+   }
+
+   public void test() throws IOException {
+      testRun();
+      testSaveAndCompare();
+   }
+
+   public static void main (String[] args) {
+      BenchmarkTest tester = new BenchmarkTest();
+      RandomGenerator.setSeed (0x1234);
+      tester.runtest();
+   }
+}